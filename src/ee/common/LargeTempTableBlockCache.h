@@ -81,6 +81,12 @@ class LargeTempTableBlockCache {
     /** Called from LargeTempTableBlock destructor. */
     void decreaseAllocatedMemory(int64_t numBytes);
 
+    /** Set the amount of memory all caches may use before storing
+        blocks to disk.  Called from Java at startup. */
+    static void setCacheSizeInBytes(int64_t cacheSizeInBytes) {
+        CACHE_SIZE_IN_BYTES() = cacheSizeInBytes;
+    }
+
     size_t numPinnedEntries() const {
         size_t cnt = 0;
         BOOST_FOREACH(auto &block, m_blockList) {
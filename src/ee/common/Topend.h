@@ -99,6 +99,11 @@ class Topend {
     // The VoltDBEngine will serialize them into the buffer before calling this function.
     virtual int32_t callJavaUserDefinedFunction() = 0;
 
+    // Same as callJavaUserDefinedFunction(), but the shared buffer holds a row count
+    // after the function ID, followed by that many argument tuples.
+    // The top end writes back one return value per argument tuple.
+    virtual int32_t callJavaUserDefinedFunctionBatch() = 0;
+
     // Call into the Java top end to resize the ByteBuffer allocated for the UDF
     // when the current buffer size is not large enough to hold all the parameters.
     // All the buffers in the IPC mode have the same size as MAX_MSG_SZ = 10MB.
@@ -152,6 +157,7 @@ public:
     virtual bool releaseLargeTempTableBlock(int64_t blockId);
 
     int32_t callJavaUserDefinedFunction();
+    int32_t callJavaUserDefinedFunctionBatch();
     void resizeUDFBuffer(int32_t size);
 
     std::queue<int32_t> partitionIds;
@@ -20,6 +20,7 @@
 
 #include "common/debuglog.h"
 #include "common/StreamBlock.h"
+#include "storage/LargeTempTableBlock.h"
 #include "storage/table.h"
 
 using namespace std;
@@ -99,6 +100,14 @@ JNITopend::JNITopend(JNIEnv *env, jobject caller) : m_jniEnv(env), m_javaExecuti
         throw std::exception();
     }
 
+    m_callJavaUserDefinedFunctionBatchMID = m_jniEnv->GetMethodID(
+            jniClass, "callJavaUserDefinedFunctionBatch", "()I");
+    if (m_callJavaUserDefinedFunctionBatchMID == NULL) {
+        m_jniEnv->ExceptionDescribe();
+        assert(m_callJavaUserDefinedFunctionBatchMID != 0);
+        throw std::exception();
+    }
+
     m_resizeUDFBufferMID = m_jniEnv->GetMethodID(
             jniClass, "resizeUDFBuffer", "(I)V");
     if (m_resizeUDFBufferMID == NULL) {
@@ -107,6 +116,30 @@ JNITopend::JNITopend(JNIEnv *env, jobject caller) : m_jniEnv(env), m_javaExecuti
         throw std::exception();
     }
 
+    m_storeLargeTempTableBlockMID = m_jniEnv->GetMethodID(
+            jniClass, "storeLargeTempTableBlock", "(JLjava/nio/ByteBuffer;)Z");
+    if (m_storeLargeTempTableBlockMID == NULL) {
+        m_jniEnv->ExceptionDescribe();
+        assert(m_storeLargeTempTableBlockMID != 0);
+        throw std::exception();
+    }
+
+    m_loadLargeTempTableBlockMID = m_jniEnv->GetMethodID(
+            jniClass, "loadLargeTempTableBlock", "(J)Ljava/nio/ByteBuffer;");
+    if (m_loadLargeTempTableBlockMID == NULL) {
+        m_jniEnv->ExceptionDescribe();
+        assert(m_loadLargeTempTableBlockMID != 0);
+        throw std::exception();
+    }
+
+    m_releaseLargeTempTableBlockMID = m_jniEnv->GetMethodID(
+            jniClass, "releaseLargeTempTableBlock", "(J)Z");
+    if (m_releaseLargeTempTableBlockMID == NULL) {
+        m_jniEnv->ExceptionDescribe();
+        assert(m_releaseLargeTempTableBlockMID != 0);
+        throw std::exception();
+    }
+
     m_nextDependencyMID = m_jniEnv->GetMethodID(jniClass, "nextDependencyAsBytes", "(I)[B");
     if (m_nextDependencyMID == NULL) {
         m_jniEnv->ExceptionDescribe();
@@ -388,10 +421,86 @@ int32_t JNITopend::callJavaUserDefinedFunction() {
                                             m_callJavaUserDefinedFunctionMID);
 }
 
+int32_t JNITopend::callJavaUserDefinedFunctionBatch() {
+    return (int32_t)m_jniEnv->CallIntMethod(m_javaExecutionEngine,
+                                            m_callJavaUserDefinedFunctionBatchMID);
+}
+
 void JNITopend::resizeUDFBuffer(int32_t size) {
     m_jniEnv->CallVoidMethod(m_javaExecutionEngine, m_resizeUDFBufferMID, size);
 }
 
+bool JNITopend::storeLargeTempTableBlock(int64_t blockId, LargeTempTableBlock* block) {
+    JNILocalFrameBarrier jni_frame = JNILocalFrameBarrier(m_jniEnv, 1);
+    if (jni_frame.checkResult() < 0) {
+        VOLT_ERROR("Unable to store large temp table block: jni frame error.");
+        throw std::exception();
+    }
+
+    // Java writes the block straight out of this buffer
+    CopySerializeOutput output;
+    block->serializeTo(output);
+    jobject blockBuffer = m_jniEnv->NewDirectByteBuffer(const_cast<char*>(output.data()), output.size());
+    if (blockBuffer == NULL) {
+        m_jniEnv->ExceptionDescribe();
+        throw std::exception();
+    }
+
+    jboolean stored = m_jniEnv->CallBooleanMethod(m_javaExecutionEngine,
+                                                  m_storeLargeTempTableBlockMID,
+                                                  blockId,
+                                                  blockBuffer);
+    if (m_jniEnv->ExceptionCheck()) {
+        m_jniEnv->ExceptionDescribe();
+        throw std::exception();
+    }
+    if (stored != JNI_TRUE) {
+        return false;
+    }
+
+    // The data now lives in the spill file, free the tuple block and pool
+    block->releaseData();
+    return true;
+}
+
+bool JNITopend::loadLargeTempTableBlock(int64_t blockId, LargeTempTableBlock* block) {
+    JNILocalFrameBarrier jni_frame = JNILocalFrameBarrier(m_jniEnv, 1);
+    if (jni_frame.checkResult() < 0) {
+        VOLT_ERROR("Unable to load large temp table block: jni frame error.");
+        throw std::exception();
+    }
+
+    // The returned buffer maps the spill file and is only valid until
+    // the next call into the block store
+    jobject blockBuffer = m_jniEnv->CallObjectMethod(m_javaExecutionEngine,
+                                                     m_loadLargeTempTableBlockMID,
+                                                     blockId);
+    if (m_jniEnv->ExceptionCheck()) {
+        m_jniEnv->ExceptionDescribe();
+        throw std::exception();
+    }
+    if (blockBuffer == NULL) {
+        return false;
+    }
+
+    const char* data = static_cast<const char*>(m_jniEnv->GetDirectBufferAddress(blockBuffer));
+    jlong length = m_jniEnv->GetDirectBufferCapacity(blockBuffer);
+    ReferenceSerializeInputBE input(data, static_cast<size_t>(length));
+    block->deserializeFrom(input);
+    return true;
+}
+
+bool JNITopend::releaseLargeTempTableBlock(int64_t blockId) {
+    jboolean released = m_jniEnv->CallBooleanMethod(m_javaExecutionEngine,
+                                                    m_releaseLargeTempTableBlockMID,
+                                                    blockId);
+    if (m_jniEnv->ExceptionCheck()) {
+        m_jniEnv->ExceptionDescribe();
+        throw std::exception();
+    }
+    return released == JNI_TRUE;
+}
+
 void JNITopend::crashVoltDB(FatalException e) {
     //Enough references for the reason string, traces array, and traces strings
     JNILocalFrameBarrier jni_frame =
@@ -64,22 +64,14 @@ public:
 
     std::string decodeBase64AndDecompress(const std::string& buffer);
 
-    bool storeLargeTempTableBlock(int64_t blockId, LargeTempTableBlock* block) {
-        throw std::logic_error("unimplemented method called!");
-        return false;
-    }
+    bool storeLargeTempTableBlock(int64_t blockId, LargeTempTableBlock* block);
 
-    bool loadLargeTempTableBlock(int64_t blockId, LargeTempTableBlock* block) {
-        throw std::logic_error("unimplemented method called!");
-        return false;;
-    }
+    bool loadLargeTempTableBlock(int64_t blockId, LargeTempTableBlock* block);
 
-    bool releaseLargeTempTableBlock(int64_t blockId) {
-        throw std::logic_error("unimplemented method called!");
-        return false;
-    }
+    bool releaseLargeTempTableBlock(int64_t blockId);
 
     int32_t callJavaUserDefinedFunction();
+    int32_t callJavaUserDefinedFunctionBatch();
     void resizeUDFBuffer(int32_t size);
 
 private:
@@ -102,7 +94,11 @@ private:
     jmethodID m_reportDRConflictMID;
     jmethodID m_decodeBase64AndDecompressToBytesMID;
     jmethodID m_callJavaUserDefinedFunctionMID;
+    jmethodID m_callJavaUserDefinedFunctionBatchMID;
     jmethodID m_resizeUDFBufferMID;
+    jmethodID m_storeLargeTempTableBlockMID;
+    jmethodID m_loadLargeTempTableBlockMID;
+    jmethodID m_releaseLargeTempTableBlockMID;
     jclass m_exportManagerClass;
     jclass m_partitionDRGatewayClass;
     jclass m_decompressionClass;
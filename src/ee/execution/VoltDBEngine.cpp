@@ -385,13 +385,9 @@ int VoltDBEngine::executePlanFragments(int32_t numFragments,
 
     // reset these at the start of each batch
     m_executorContext->m_progressStats.resetForNewBatch();
-    NValueArray &params = m_executorContext->getParameterContainer();
 
     // Reserve the space to track the number of succeeded fragments.
     size_t succeededFragmentsCountOffset = m_perFragmentStatsOutput.reserveBytes(sizeof(int32_t));
-    // All the time measurements use nanoseconds.
-    std::chrono::high_resolution_clock::time_point startTime, endTime;
-    std::chrono::duration<int64_t, std::nano> elapsedNanoseconds;
     ReferenceSerializeInputBE perFragmentStatsBufferIn(getPerFragmentStatsBuffer(),
                                                        getPerFragmentStatsBufferCapacity());
     // There is a byte at the very begining of the per-fragment stats buffer indicating
@@ -400,47 +396,133 @@ int VoltDBEngine::executePlanFragments(int32_t numFragments,
     bool perFragmentTimingEnabled = perFragmentStatsBufferIn.readByte() > 0;
 
     for (m_currentIndexInBatch = 0; m_currentIndexInBatch < numFragments; ++m_currentIndexInBatch) {
-        int usedParamcnt = serialInput.readShort();
-        m_executorContext->setUsedParameterCount(usedParamcnt);
-        if (usedParamcnt < 0) {
-            throwFatalException("parameter count is negative: %d", usedParamcnt);
-        }
-        assert (usedParamcnt < MAX_PARAM_COUNT);
-
-        for (int j = 0; j < usedParamcnt; ++j) {
-            params[j].deserializeFromAllocateForStorage(serialInput, &m_stringPool);
-        }
-
-        if (perFragmentTimingEnabled) {
-            startTime = std::chrono::high_resolution_clock::now();
-        }
         // success is 0 and error is 1.
-        if (executePlanFragment(planfragmentIds[m_currentIndexInBatch],
-                                inputDependencyIds ? inputDependencyIds[m_currentIndexInBatch] : -1,
-                                m_currentIndexInBatch == 0,
-                                m_currentIndexInBatch == (numFragments - 1),
-                                traceOn)) {
+        if (executeFragmentOfBatch(planfragmentIds[m_currentIndexInBatch],
+                                   inputDependencyIds ? inputDependencyIds[m_currentIndexInBatch] : -1,
+                                   m_currentIndexInBatch == 0,
+                                   m_currentIndexInBatch == (numFragments - 1),
+                                   serialInput,
+                                   perFragmentTimingEnabled,
+                                   traceOn)) {
             ++failures;
-        }
-        if (perFragmentTimingEnabled) {
-            endTime = std::chrono::high_resolution_clock::now();
-            elapsedNanoseconds = std::chrono::duration_cast<std::chrono::nanoseconds>(endTime - startTime);
-            // Write the execution time to the per-fragment stats buffer.
-            m_perFragmentStatsOutput.writeLong(elapsedNanoseconds.count());
-        }
-        if (failures > 0) {
             break;
         }
+    }
+    m_perFragmentStatsOutput.writeIntAt(succeededFragmentsCountOffset, m_currentIndexInBatch);
+
+    m_currentIndexInBatch = -1;
+
+    shrinkUDFBufferAfterBatch();
+
+    return failures;
+}
+
+/**
+ * Execute the single plan fragment of each of several consecutive
+ * single-partition transactions in one call.
+ *
+ * @param numTransactions       The number of transactions, one fragment each.
+ * @param planfragmentIds       The fragment id of each transaction.
+ * @param serialInput           For each transaction, its txnId, spHandle,
+ *                              lastCommittedSpHandle, uniqueId and undo token,
+ *                              followed by its parameters.
+ * @param traceOn               True to turn per-transaction tracing on.
+ * @return 1 if a fragment failed, in which case the transactions after
+ *         it were not executed, and 0 otherwise.
+ */
+int VoltDBEngine::executeSinglePartitionBatch(int32_t numTransactions,
+                                              int64_t planfragmentIds[],
+                                              ReferenceSerializeInputBE &serialInput,
+                                              bool traceOn)
+{
+    int failures = 0;
 
-        // at the end of each frag, rollup and reset counters
-        m_executorContext->m_progressStats.rollUpForPlanFragment();
+    size_t succeededFragmentsCountOffset = m_perFragmentStatsOutput.reserveBytes(sizeof(int32_t));
+    ReferenceSerializeInputBE perFragmentStatsBufferIn(getPerFragmentStatsBuffer(),
+                                                       getPerFragmentStatsBufferCapacity());
+    bool perFragmentTimingEnabled = perFragmentStatsBufferIn.readByte() > 0;
 
-        m_stringPool.purge();
+    for (m_currentIndexInBatch = 0; m_currentIndexInBatch < numTransactions; ++m_currentIndexInBatch) {
+        // Each transaction's parameters are preceded by its own context,
+        // so that it gets its own undo quantum, as if it had been executed alone.
+        int64_t txnId = serialInput.readLong();
+        int64_t spHandle = serialInput.readLong();
+        int64_t lastCommittedSpHandle = serialInput.readLong();
+        int64_t uniqueId = serialInput.readLong();
+        int64_t undoToken = serialInput.readLong();
+
+        setUndoToken(undoToken);
+        m_executorContext->setupForPlanFragments(getCurrentUndoQuantum(),
+                                                 txnId,
+                                                 spHandle,
+                                                 lastCommittedSpHandle,
+                                                 uniqueId,
+                                                 traceOn);
+        m_executorContext->checkTransactionForDR();
+        m_executorContext->m_progressStats.resetForNewBatch();
+
+        // Every transaction is a batch of one fragment, with its own result header.
+        if (executeFragmentOfBatch(planfragmentIds[m_currentIndexInBatch], -1, true, true,
+                                   serialInput, perFragmentTimingEnabled, traceOn)) {
+            ++failures;
+            break;
+        }
     }
     m_perFragmentStatsOutput.writeIntAt(succeededFragmentsCountOffset, m_currentIndexInBatch);
 
     m_currentIndexInBatch = -1;
 
+    shrinkUDFBufferAfterBatch();
+
+    return failures;
+}
+
+bool VoltDBEngine::executeFragmentOfBatch(int64_t planfragmentId,
+                                          int64_t inputDependencyId,
+                                          bool first,
+                                          bool last,
+                                          ReferenceSerializeInputBE &serialInput,
+                                          bool perFragmentTimingEnabled,
+                                          bool traceOn)
+{
+    NValueArray &params = m_executorContext->getParameterContainer();
+    int usedParamcnt = serialInput.readShort();
+    m_executorContext->setUsedParameterCount(usedParamcnt);
+    if (usedParamcnt < 0) {
+        throwFatalException("parameter count is negative: %d", usedParamcnt);
+    }
+    assert (usedParamcnt < MAX_PARAM_COUNT);
+
+    for (int j = 0; j < usedParamcnt; ++j) {
+        params[j].deserializeFromAllocateForStorage(serialInput, &m_stringPool);
+    }
+
+    // All the time measurements use nanoseconds.
+    std::chrono::high_resolution_clock::time_point startTime;
+    if (perFragmentTimingEnabled) {
+        startTime = std::chrono::high_resolution_clock::now();
+    }
+    bool failed = executePlanFragment(planfragmentId, inputDependencyId, first, last, traceOn) != 0;
+    if (perFragmentTimingEnabled) {
+        std::chrono::duration<int64_t, std::nano> elapsedNanoseconds =
+            std::chrono::duration_cast<std::chrono::nanoseconds>(
+                    std::chrono::high_resolution_clock::now() - startTime);
+        // Write the execution time to the per-fragment stats buffer.
+        m_perFragmentStatsOutput.writeLong(elapsedNanoseconds.count());
+    }
+    if (failed) {
+        return true;
+    }
+
+    // at the end of each frag, rollup and reset counters
+    m_executorContext->m_progressStats.rollUpForPlanFragment();
+
+    m_stringPool.purge();
+    return false;
+}
+
+void VoltDBEngine::shrinkUDFBufferAfterBatch()
+{
     // If we were expanding the UDF buffer too much, shrink it back a little bit.
     // We check this at the end of every batch execution. So we won't resize the buffer
     // too frequently if most of the workload in the same batch requires a much larger buffer.
@@ -449,8 +531,6 @@ int VoltDBEngine::executePlanFragments(int32_t numFragments,
     if (m_udfBufferCapacity > MAX_UDF_BUFFER_SIZE) {
         m_topend->resizeUDFBuffer(MAX_UDF_BUFFER_SIZE);
     }
-
-    return failures;
 }
 
 int VoltDBEngine::executePlanFragment(int64_t planfragmentId,
@@ -632,6 +712,77 @@ NValue VoltDBEngine::callJavaUserDefinedFunction(int32_t functionId, std::vector
     }
 }
 
+void VoltDBEngine::callJavaUserDefinedFunctionBatch(int32_t functionId,
+                                                    std::vector<std::vector<NValue> >& argumentRows,
+                                                    std::vector<NValue>& results) {
+    UserDefinedFunctionInfo *info = findInMapOrNull(functionId, m_functionInfo);
+    if (info == NULL) {
+        // There must be serious inconsistency in the catalog if this could happen.
+        throwFatalException("The execution engine lost track of the user-defined function (id = %d)", functionId);
+    }
+
+    // Same layout as callJavaUserDefinedFunction(), with the row count after the function ID:
+    //   * size of the buffer (function ID + row count + parameters)
+    //   * function ID (int32_t)
+    //   * row count (int32_t)
+    //   * parameters of every row, back to back.
+    std::vector<size_t> rowSizes(argumentRows.size(), 0);
+    size_t totalSizeNeeded = 2 * sizeof(int32_t);
+    for (int row = 0; row < argumentRows.size(); row++) {
+        std::vector<NValue>& arguments = argumentRows[row];
+        for (int i = 0; i < arguments.size(); i++) {
+            arguments[i] = arguments[i].castAs(info->paramTypes[i]);
+            rowSizes[row] += arguments[i].serializedSize();
+        }
+        totalSizeNeeded += rowSizes[row];
+    }
+
+    if (totalSizeNeeded + sizeof(int32_t) > m_udfBufferCapacity) {
+        m_topend->resizeUDFBuffer(totalSizeNeeded + sizeof(int32_t));
+    }
+
+    results.reserve(results.size() + argumentRows.size());
+    // The IPC top end can not grow its buffer, so the rows that do not fit
+    // go in the following round trips.
+    size_t firstRow = 0;
+    while (firstRow < argumentRows.size()) {
+        size_t bufferSizeNeeded = 2 * sizeof(int32_t) + rowSizes[firstRow];
+        size_t endRow = firstRow + 1;
+        while (endRow < argumentRows.size() &&
+               bufferSizeNeeded + rowSizes[endRow] + sizeof(int32_t) <= m_udfBufferCapacity) {
+            bufferSizeNeeded += rowSizes[endRow];
+            endRow++;
+        }
+
+        resetUDFOutputBuffer();
+        m_udfOutput.writeInt(bufferSizeNeeded);
+        m_udfOutput.writeInt(functionId);
+        m_udfOutput.writeInt(static_cast<int32_t>(endRow - firstRow));
+        for (size_t row = firstRow; row < endRow; row++) {
+            std::vector<NValue>& arguments = argumentRows[row];
+            for (int i = 0; i < arguments.size(); i++) {
+                arguments[i].serializeTo(m_udfOutput);
+            }
+        }
+        assert(bufferSizeNeeded + sizeof(int32_t) == m_udfOutput.position());
+
+        int32_t returnCode = m_topend->callJavaUserDefinedFunctionBatch();
+        // Note that the buffer may already be resized after the execution.
+        ReferenceSerializeInputBE udfResultIn(m_udfBuffer, m_udfBufferCapacity);
+        if (returnCode != 0) {
+            // Error handling
+            string errorMsg = udfResultIn.readTextString();
+            throw SQLException(SQLException::volt_user_defined_function_error, errorMsg);
+        }
+        for (size_t row = firstRow; row < endRow; row++) {
+            NValue retval = ValueFactory::getNValueOfType(info->returnType);
+            retval.deserializeFromAllocateForStorage(udfResultIn, &m_stringPool);
+            results.push_back(retval);
+        }
+        firstRow = endRow;
+    }
+}
+
 void VoltDBEngine::releaseUndoToken(int64_t undoToken) {
     if (m_currentUndoQuantum != NULL && m_currentUndoQuantum->getUndoToken() == undoToken) {
         m_currentUndoQuantum = NULL;
@@ -2050,6 +2201,21 @@ size_t VoltDBEngine::tableHashCode(int32_t tableId) {
     return table->hashCode();
 }
 
+int64_t VoltDBEngine::tableModificationCount(int32_t tableId) {
+    Table* found = getTableById(tableId);
+    if (! found) {
+        throwFatalException("Tried to get the modification count of a table that doesn't exist with id %d\n", tableId);
+    }
+
+    PersistentTable *table = dynamic_cast<PersistentTable*>(found);
+    if (table == NULL) {
+        throwFatalException(
+                "Tried to get the modification count of a table that is not a persistent table id %d\n",
+                tableId);
+    }
+    return table->modificationCount();
+}
+
 void VoltDBEngine::setHashinator(TheHashinator* hashinator) {
     m_hashinator.reset(hashinator);
 }
@@ -200,6 +200,16 @@ class __attribute__((visibility("default"))) VoltDBEngine {
                                  int64_t undoToken,
                                  bool traceOn);
 
+        /**
+         * Execute one plan fragment for each of a batch of single-partition
+         * transactions, switching the transaction context and undo quantum
+         * between them. Each transaction gets its own result header.
+         */
+        int executeSinglePartitionBatch(int32_t numTransactions,
+                                        int64_t planfragmentIds[],
+                                        ReferenceSerializeInputBE& serialize_in,
+                                        bool traceOn);
+
         /**
          * Execute a single, top-level plan fragment.  This method is
          * used both internally to execute fragments in a batch, and
@@ -222,6 +232,12 @@ class __attribute__((visibility("default"))) VoltDBEngine {
         // Call user-defined function
         NValue callJavaUserDefinedFunction(int32_t functionId, std::vector<NValue>& arguments);
 
+        // Call user-defined function once for each row of arguments with a single round trip
+        // to the Java top end. The return values are appended to results in row order.
+        void callJavaUserDefinedFunctionBatch(int32_t functionId,
+                                              std::vector<std::vector<NValue> >& argumentRows,
+                                              std::vector<NValue>& results);
+
         // Created to transition existing unit tests to context abstraction.
         // If using this somewhere new, consider if you're being lazy.
         void updateExecutorContextUndoQuantumForTest();
@@ -483,6 +499,11 @@ class __attribute__((visibility("default"))) VoltDBEngine {
          */
         size_t tableHashCode(int32_t tableId);
 
+        /**
+         * Retrieve the modification count of the specified table
+         */
+        int64_t tableModificationCount(int32_t tableId);
+
         void updateHashinator(HashinatorType type, char const* config,
                               int32_t* configPtr, uint32_t numTokens);
 
@@ -546,6 +567,20 @@ class __attribute__((visibility("default"))) VoltDBEngine {
                                 bool last,
                                 bool traceOn);
 
+        /**
+         * Deserialize the parameters of the next fragment of a batch, execute it
+         * and record its execution time if requested. Returns true on failure.
+         */
+        bool executeFragmentOfBatch(int64_t planfragmentId,
+                                    int64_t inputDependencyId,
+                                    bool first,
+                                    bool last,
+                                    ReferenceSerializeInputBE& serialInput,
+                                    bool perFragmentTimingEnabled,
+                                    bool traceOn);
+
+        void shrinkUDFBufferAfterBatch();
+
         /**
          * Set up the vector of executors for a given fragment id.
          * Get the vector from the cache if the fragment id is there.
@@ -0,0 +1,448 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+#include "hashjoinexecutor.h"
+
+#include "common/debuglog.h"
+#include "common/tabletuple.h"
+#include "executors/aggregateexecutor.h"
+#include "executors/executorutil.h"
+#include "execution/ProgressMonitorProxy.h"
+#include "expressions/abstractexpression.h"
+#include "plannodes/hashjoinnode.h"
+#include "plannodes/limitnode.h"
+#include "storage/LargeTempTable.h"
+#include "storage/LargeTempTableIterator.h"
+#include "storage/TempTableLimits.h"
+#include "storage/tablefactory.h"
+#include "storage/tableiterator.h"
+#include "storage/temptable.h"
+
+#include "boost/scoped_ptr.hpp"
+
+#include <climits>
+
+using namespace std;
+using namespace voltdb;
+
+// Probe tuples are hashed and their buckets prefetched this many at a time.
+const static int PROBE_BATCH_SIZE = 256;
+// Upper bound on the number of build partitions of a spilled join.
+// Each one pins a large temp table block while the build input is split.
+const static int MAX_PARTITION_COUNT = 64;
+
+/** The per-execution state shared by the build and probe loops. */
+struct HashJoinExecutor::JoinState {
+    Table* m_probeTable;
+    bool m_buildOuter;
+    const vector<AbstractExpression*>* m_buildKeys;
+    const vector<AbstractExpression*>* m_probeKeys;
+    const AbstractExpression* m_preJoinPredicate;
+    const AbstractExpression* m_joinPredicate;
+    CountingPostfilter* m_postfilter;
+    TableTuple* m_joinTuple;
+    ProgressMonitorProxy* m_pmp;
+    int m_outerCols;
+    int m_innerCols;
+};
+
+/**
+ * Hash the join keys of a tuple. The combined value hash is finalized
+ * so that both its low bits (buckets) and high bits (partitions) are well mixed.
+ * Returns false if any key is NULL, since such a tuple can not match.
+ */
+static inline bool hashKeys(const vector<AbstractExpression*>& keys, const TableTuple& tuple, size_t& hash)
+{
+    size_t seed = 0;
+    for (int ii = 0; ii < keys.size(); ii++) {
+        const NValue value = keys[ii]->eval(&tuple, NULL);
+        if (value.isNull()) {
+            return false;
+        }
+        value.hashCombine(seed);
+    }
+    uint64_t mixed = seed;
+    mixed ^= mixed >> 33;
+    mixed *= 0xff51afd7ed558ccdULL;
+    mixed ^= mixed >> 33;
+    mixed *= 0xc4ceb9fe1a85ec53ULL;
+    mixed ^= mixed >> 33;
+    hash = static_cast<size_t>(mixed);
+    return true;
+}
+
+static inline int partitionOf(size_t hash, int partitionCount)
+{
+    // The bucket index uses the low bits.
+    return static_cast<int>((static_cast<uint64_t>(hash) >> 40) & (partitionCount - 1));
+}
+
+/**
+ * Sizes the hash table for a build input and counts it against the temp table limits
+ * (which may throw) for as long as it is in use.
+ */
+struct HashJoinExecutor::HashTableReservation {
+    HashTableReservation(HashTable& hashTable, TempTableLimits* limits, int64_t tupleCount)
+        : m_hashTable(hashTable)
+        , m_limits(limits)
+        , m_bytes(static_cast<int>(min<int64_t>(HashTable::bytesFor(tupleCount), INT_MAX)))
+    {
+        m_limits->increaseAllocated(m_bytes);
+        m_hashTable.reset(tupleCount);
+    }
+
+    ~HashTableReservation()
+    {
+        m_hashTable.release();
+        m_limits->reduceAllocated(m_bytes);
+    }
+
+    HashTable& m_hashTable;
+    TempTableLimits* m_limits;
+    const int m_bytes;
+};
+
+const uint32_t HashJoinExecutor::HashTable::NO_ENTRY;
+
+size_t HashJoinExecutor::HashTable::bucketCountFor(int64_t tupleCount)
+{
+    // A power of two, no more than half full.
+    size_t buckets = 16;
+    while (buckets < static_cast<size_t>(tupleCount) * 2) {
+        buckets <<= 1;
+    }
+    return buckets;
+}
+
+void HashJoinExecutor::HashTable::reset(int64_t tupleCount)
+{
+    m_buckets.assign(bucketCountFor(tupleCount), NO_ENTRY);
+    m_mask = m_buckets.size() - 1;
+    m_entries.clear();
+    m_entries.reserve(tupleCount);
+}
+
+void HashJoinExecutor::HashTable::release()
+{
+    vector<uint32_t>().swap(m_buckets);
+    vector<Entry>().swap(m_entries);
+}
+
+bool HashJoinExecutor::p_init(AbstractPlanNode* abstractNode,
+                              TempTableLimits* limits)
+{
+    VOLT_TRACE("init HashJoin Executor");
+    assert(limits);
+
+    HashJoinPlanNode* node = dynamic_cast<HashJoinPlanNode*>(m_abstractNode);
+    assert(node);
+
+    // Init parent first
+    if (!AbstractJoinExecutor::p_init(abstractNode, limits)) {
+        return false;
+    }
+    assert(m_joinType == JOIN_TYPE_INNER || m_joinType == JOIN_TYPE_LEFT);
+    assert( ! node->getOuterHashExpressions().empty());
+
+    m_limits = limits;
+
+    // NULL tuples for left joins
+    p_init_null_tuples(node->getInputTable(), node->getInputTable(1));
+
+    return true;
+}
+
+int HashJoinExecutor::partitionCountFor(Table* buildTable) const
+{
+    int64_t memoryLimit = m_limits->getMemoryLimit();
+    if (memoryLimit < 0) {
+        return 1;
+    }
+    int64_t tupleCount = buildTable->activeTupleCount();
+    int64_t hashBytes = HashTable::bytesFor(tupleCount);
+    if (m_limits->getAllocated() + hashBytes <= memoryLimit) {
+        return 1;
+    }
+    // Splitting the build input frees its temp table memory. Size the partitions
+    // so that each one, with its hash table, takes at most half of what is left.
+    int64_t buildBytes = tupleCount * buildTable->getTupleLength() + buildTable->nonInlinedMemorySize();
+    int64_t available = max<int64_t>(memoryLimit - m_limits->getAllocated() + buildBytes, 0) / 2;
+    int partitionCount = 2;
+    while (partitionCount < MAX_PARTITION_COUNT &&
+           (buildBytes + hashBytes) / partitionCount > available) {
+        partitionCount <<= 1;
+    }
+    return partitionCount;
+}
+
+bool HashJoinExecutor::p_execute(const NValueArray &params) {
+    VOLT_DEBUG("executing HashJoin...");
+
+    HashJoinPlanNode* node = dynamic_cast<HashJoinPlanNode*>(m_abstractNode);
+    assert(node);
+    assert(node->getInputTableCount() == 2);
+
+    // output table must be a temp table
+    assert(m_tmpOutputTable);
+
+    Table* outer_table = node->getInputTable();
+    assert(outer_table);
+
+    Table* inner_table = node->getInputTable(1);
+    assert(inner_table);
+
+    VOLT_TRACE ("input table left:\n %s", outer_table->debug().c_str());
+    VOLT_TRACE ("input table right:\n %s", inner_table->debug().c_str());
+
+    LimitPlanNode* limit_node = dynamic_cast<LimitPlanNode*>(node->getInlinePlanNode(PLAN_NODE_TYPE_LIMIT));
+    int limit = CountingPostfilter::NO_LIMIT;
+    int offset = CountingPostfilter::NO_OFFSET;
+    if (limit_node) {
+        limit_node->getLimitAndOffsetByReference(params, limit, offset);
+    }
+
+    ProgressMonitorProxy pmp(m_engine->getExecutorContext(), this);
+    // Init the postfilter
+    CountingPostfilter postfilter(m_tmpOutputTable, node->getWherePredicate(), limit, offset);
+
+    TableTuple join_tuple;
+    if (m_aggExec != NULL) {
+        VOLT_TRACE("Init inline aggregate...");
+        const TupleSchema * aggInputSchema = node->getTupleSchemaPreAgg();
+        join_tuple = m_aggExec->p_execute_init(params, &pmp, aggInputSchema, m_tmpOutputTable, &postfilter);
+    } else {
+        join_tuple = m_tmpOutputTable->tempTuple();
+    }
+
+    // Unmatched outer tuples of a LEFT join are found by probing with them,
+    // so only an inner join may build on its (smaller) outer side.
+    JoinState state;
+    state.m_buildOuter = m_joinType == JOIN_TYPE_INNER &&
+            outer_table->activeTupleCount() < inner_table->activeTupleCount();
+    state.m_probeTable = state.m_buildOuter ? inner_table : outer_table;
+    state.m_buildKeys = state.m_buildOuter ?
+            &node->getOuterHashExpressions() : &node->getInnerHashExpressions();
+    state.m_probeKeys = state.m_buildOuter ?
+            &node->getInnerHashExpressions() : &node->getOuterHashExpressions();
+    state.m_preJoinPredicate = node->getPreJoinPredicate();
+    state.m_joinPredicate = node->getJoinPredicate();
+    state.m_postfilter = &postfilter;
+    state.m_joinTuple = &join_tuple;
+    state.m_pmp = &pmp;
+    state.m_outerCols = outer_table->columnCount();
+    state.m_innerCols = inner_table->columnCount();
+
+    Table* buildTable = state.m_buildOuter ? outer_table : inner_table;
+    int partitionCount = partitionCountFor(buildTable);
+    if (partitionCount == 1) {
+        joinPartition(state, buildTable, 0, 1);
+    }
+    else {
+        VOLT_DEBUG("hash join build input of %jd tuples split into %d partitions",
+                   (intmax_t)buildTable->activeTupleCount(), partitionCount);
+        joinPartitioned(state, partitionCount);
+    }
+
+    if (m_aggExec != NULL) {
+        m_aggExec->p_execute_finish();
+    }
+
+    cleanupInputTempTable(inner_table);
+    cleanupInputTempTable(outer_table);
+
+    return (true);
+}
+
+void HashJoinExecutor::joinPartitioned(JoinState& state, int partitionCount)
+{
+    HashJoinPlanNode* node = static_cast<HashJoinPlanNode*>(m_abstractNode);
+    Table* buildTable = state.m_buildOuter ? node->getInputTable() : node->getInputTable(1);
+
+    // Split the build input by hash. Tuples that can not match anything are dropped here.
+    vector<LargeTempTable*> partitions;
+    try {
+        for (int ii = 0; ii < partitionCount; ii++) {
+            partitions.push_back(TableFactory::buildLargeTempTable(buildTable->name(),
+                                                                   TupleSchema::createTupleSchema(buildTable->schema()),
+                                                                   buildTable->getColumnNames()));
+        }
+
+        TableTuple build_tuple(buildTable->schema());
+        TableIterator iterator = buildTable->iterator();
+        while (iterator.next(build_tuple)) {
+            state.m_pmp->countdownProgress();
+            if (state.m_buildOuter && state.m_preJoinPredicate != NULL &&
+                ! state.m_preJoinPredicate->eval(&build_tuple, NULL).isTrue()) {
+                continue;
+            }
+            size_t hash;
+            if ( ! hashKeys(*state.m_buildKeys, build_tuple, hash)) {
+                continue;
+            }
+            partitions[partitionOf(hash, partitionCount)]->insertTuple(build_tuple);
+        }
+        for (int ii = 0; ii < partitionCount; ii++) {
+            partitions[ii]->finishInserts();
+        }
+
+        // The partitions now hold the only copy that is needed.
+        cleanupInputTempTable(buildTable);
+
+        for (int ii = 0; ii < partitionCount && state.m_postfilter->isUnderLimit(); ii++) {
+            boost::scoped_ptr<TempTable> partitionTable(
+                    TableFactory::buildCopiedTempTable(buildTable->name(), buildTable, m_limits));
+            LargeTempTableIterator partitionIterator = partitions[ii]->largeIterator();
+            TableTuple partition_tuple(buildTable->schema());
+            while (partitionIterator.next(partition_tuple)) {
+                // The spilled block may be evicted once the iterator moves on.
+                partitionTable->insertTempTupleDeepCopy(partition_tuple, &m_memoryPool);
+            }
+            delete partitions[ii];
+            partitions[ii] = NULL;
+
+            joinPartition(state, partitionTable.get(), ii, partitionCount);
+
+            partitionTable.reset();
+            m_memoryPool.purge();
+        }
+    }
+    catch (...) {
+        for (int ii = 0; ii < partitions.size(); ii++) {
+            delete partitions[ii];
+        }
+        m_memoryPool.purge();
+        throw;
+    }
+
+    for (int ii = 0; ii < partitions.size(); ii++) {
+        delete partitions[ii];
+    }
+}
+
+void HashJoinExecutor::joinPartition(JoinState& state, Table* buildTable, int partition, int partitionCount)
+{
+    CountingPostfilter& postfilter = *state.m_postfilter;
+    ProgressMonitorProxy& pmp = *state.m_pmp;
+    TableTuple& join_tuple = *state.m_joinTuple;
+    const bool buildOuter = state.m_buildOuter;
+    const AbstractExpression* preJoinPredicate = state.m_preJoinPredicate;
+    const AbstractExpression* joinPredicate = state.m_joinPredicate;
+
+    //
+    // Build
+    //
+    HashTableReservation reservation(m_hashTable, m_limits, buildTable->activeTupleCount());
+
+
+    TableTuple build_tuple(buildTable->schema());
+    TableIterator buildIterator = buildTable->iterator();
+    while (buildIterator.next(build_tuple)) {
+        pmp.countdownProgress();
+        // For inner joins, outer tuples that fail the pre-join predicate can't match.
+        if (buildOuter && preJoinPredicate != NULL &&
+            ! preJoinPredicate->eval(&build_tuple, NULL).isTrue()) {
+            continue;
+        }
+        size_t hash;
+        if (hashKeys(*state.m_buildKeys, build_tuple, hash)) {
+            m_hashTable.insert(hash, build_tuple.address());
+        }
+    }
+
+    //
+    // Probe
+    //
+    Table* probeTable = state.m_probeTable;
+    TableTuple probe_tuple(probeTable->schema());
+    TableIterator probeIterator = probeTable->iterator();
+    const TableTuple& null_inner_tuple = m_null_inner_tuple.tuple();
+
+    char* batchTuples[PROBE_BATCH_SIZE];
+    size_t batchHashes[PROBE_BATCH_SIZE];
+    bool batchHasKeys[PROBE_BATCH_SIZE];
+    bool more = true;
+    while (more && postfilter.isUnderLimit()) {
+        // Hash a batch of probe tuples and prefetch their buckets.
+        int batchSize = 0;
+        while (batchSize < PROBE_BATCH_SIZE && (more = probeIterator.next(probe_tuple))) {
+            pmp.countdownProgress();
+            size_t hash = 0;
+            // For outer joins if outer tuple fails pre-join predicate
+            // (join expression based on the outer table only)
+            // it can't match any of inner tuples
+            bool hasKeys = (buildOuter || preJoinPredicate == NULL ||
+                            preJoinPredicate->eval(&probe_tuple, NULL).isTrue()) &&
+                    hashKeys(*state.m_probeKeys, probe_tuple, hash);
+            // Every probe tuple is handled in exactly one partition's pass.
+            // Those that can't match go with the first.
+            int probePartition = hasKeys ? partitionOf(hash, partitionCount) : 0;
+            if (probePartition != partition) {
+                continue;
+            }
+            if (hasKeys) {
+                m_hashTable.prefetch(hash);
+            }
+            batchTuples[batchSize] = probe_tuple.address();
+            batchHashes[batchSize] = hash;
+            batchHasKeys[batchSize] = hasKeys;
+            ++batchSize;
+        }
+
+        for (int ii = 0; ii < batchSize && postfilter.isUnderLimit(); ii++) {
+            probe_tuple.move(batchTuples[ii]);
+            const TableTuple& outer_tuple = buildOuter ? build_tuple : probe_tuple;
+            const TableTuple& inner_tuple = buildOuter ? probe_tuple : build_tuple;
+
+            // did this probe tuple find at least one match?
+            bool probeMatch = false;
+            if (batchHasKeys[ii]) {
+                const size_t hash = batchHashes[ii];
+                for (uint32_t entryIndex = m_hashTable.first(hash);
+                     entryIndex != HashTable::NO_ENTRY && postfilter.isUnderLimit();
+                     entryIndex = m_hashTable.entry(entryIndex).m_next) {
+                    const HashTable::Entry& entry = m_hashTable.entry(entryIndex);
+                    if (entry.m_hash != hash) {
+                        continue;
+                    }
+                    build_tuple.move(entry.m_tuple);
+                    // The join predicate rechecks the keys, so collisions are harmless.
+                    if (joinPredicate == NULL || joinPredicate->eval(&outer_tuple, &inner_tuple).isTrue()) {
+                        probeMatch = true;
+                        // Filter the joined tuple
+                        if (postfilter.eval(&outer_tuple, &inner_tuple)) {
+                            join_tuple.setNValues(0, outer_tuple, 0, state.m_outerCols);
+                            join_tuple.setNValues(state.m_outerCols, inner_tuple, 0, state.m_innerCols);
+                            outputTuple(postfilter, join_tuple, pmp);
+                        }
+                    }
+                }
+            }
+
+            //
+            // Left Outer Join
+            //
+            if (m_joinType == JOIN_TYPE_LEFT && !probeMatch && postfilter.isUnderLimit()) {
+                assert( ! buildOuter);
+                // Still needs to pass the filter
+                if (postfilter.eval(&probe_tuple, &null_inner_tuple)) {
+                    join_tuple.setNValues(0, probe_tuple, 0, state.m_outerCols);
+                    join_tuple.setNValues(state.m_outerCols, null_inner_tuple, 0, state.m_innerCols);
+                    outputTuple(postfilter, join_tuple, pmp);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+#ifndef HSTOREHASHJOINEXECUTOR_H
+#define HSTOREHASHJOINEXECUTOR_H
+
+#include "common/common.h"
+#include "common/Pool.hpp"
+#include "common/valuevector.h"
+#include "executors/abstractjoinexecutor.h"
+
+#include <vector>
+
+namespace voltdb {
+
+class AbstractExpression;
+
+/**
+ * Executor for a HashJoinPlanNode.
+ *
+ * The build side (the inner input for LEFT joins, otherwise the smaller input)
+ * is hashed on its join keys into a chained hash table of tuple addresses,
+ * then the other input probes it in batches. Probe hashes are computed and their
+ * buckets prefetched for a whole batch before any bucket is walked.
+ *
+ * If the hash table and the build input would not fit within the temp table
+ * limit, the build input is first split by hash into large temp tables, which
+ * the large temp table block cache may spill, and the probe input is joined
+ * against one partition at a time.
+ */
+class HashJoinExecutor : public AbstractJoinExecutor {
+    public:
+        HashJoinExecutor(VoltDBEngine *engine, AbstractPlanNode* abstract_node) :
+            AbstractJoinExecutor(engine, abstract_node), m_limits(NULL) { }
+
+    private:
+        struct JoinState;
+        struct HashTableReservation;
+
+        /** A chained hash table of build tuple addresses. */
+        class HashTable {
+            public:
+                static const uint32_t NO_ENTRY = 0xffffffff;
+
+                struct Entry {
+                    size_t m_hash;
+                    char* m_tuple;
+                    uint32_t m_next;
+                };
+
+                /** An estimate of the memory needed to hash the given number of tuples. */
+                static int64_t bytesFor(int64_t tupleCount) {
+                    return tupleCount * sizeof(Entry) + bucketCountFor(tupleCount) * sizeof(uint32_t);
+                }
+
+                void reset(int64_t tupleCount);
+                void release();
+
+                void insert(size_t hash, char* tuple) {
+                    uint32_t& head = m_buckets[hash & m_mask];
+                    Entry entry = { hash, tuple, head };
+                    m_entries.push_back(entry);
+                    head = static_cast<uint32_t>(m_entries.size() - 1);
+                }
+
+                void prefetch(size_t hash) const {
+                    __builtin_prefetch(&m_buckets[hash & m_mask]);
+                }
+
+                uint32_t first(size_t hash) const { return m_buckets[hash & m_mask]; }
+                const Entry& entry(uint32_t index) const { return m_entries[index]; }
+
+            private:
+                static size_t bucketCountFor(int64_t tupleCount);
+
+                std::vector<uint32_t> m_buckets;
+                std::vector<Entry> m_entries;
+                size_t m_mask;
+        };
+
+        bool p_init(AbstractPlanNode*, TempTableLimits* limits);
+        bool p_execute(const NValueArray &params);
+
+        int partitionCountFor(Table* buildTable) const;
+
+        void joinPartitioned(JoinState& state, int partitionCount);
+
+        void joinPartition(JoinState& state, Table* buildTable, int partition, int partitionCount);
+
+        TempTableLimits* m_limits;
+        HashTable m_hashTable;
+        // Holds the out-of-line values of a build partition read back from a large temp table
+        Pool m_memoryPool;
+};
+
+}
+
+#endif
@@ -49,6 +49,7 @@
 #include "common/tabletuple.h"
 #include "expressions/abstractexpression.h"
 #include "expressions/expressionutil.h"
+#include "expressions/functionexpression.h"
 #include "plannodes/projectionnode.h"
 #include "storage/table.h"
 #include "storage/tableiterator.h"
@@ -57,6 +58,9 @@
 
 namespace voltdb {
 
+// Input rows evaluated together by each user-defined function call into the Java top end
+static const size_t UDF_BATCH_ROWS = 1024;
+
 bool ProjectionExecutor::p_init(AbstractPlanNode *abstractNode,
                                 TempTableLimits* limits)
 {
@@ -82,6 +86,7 @@ bool ProjectionExecutor::p_init(AbstractPlanNode *abstractNode,
     typedef AbstractExpression* ExpRawPtr;
     expression_array_ptr = boost::shared_array<ExpRawPtr>(new ExpRawPtr[m_columnCount]);
     expression_array = expression_array_ptr.get();
+    m_udfColumns.clear();
     for (int ctr = 0; ctr < m_columnCount; ctr++) {
         assert (node->getOutputColumnExpressions()[ctr] != NULL);
 
@@ -90,7 +95,11 @@ bool ProjectionExecutor::p_init(AbstractPlanNode *abstractNode,
 
         expression_array_ptr[ctr] = node->getOutputColumnExpressions()[ctr];
         needs_substitute_ptr[ctr] = node->getOutputColumnExpressions()[ctr]->hasParameter();
+        if (dynamic_cast<UserDefinedFunctionExpression*>(expression_array_ptr[ctr]) != NULL) {
+            m_udfColumns.push_back(ctr);
+        }
     }
+    m_udfResults.resize(m_udfColumns.size());
 
 
     output_table = dynamic_cast<TempTable*>(node->getOutputTable()); //output table should be temptable
@@ -125,6 +134,12 @@ bool ProjectionExecutor::p_execute(const NValueArray &params) {
         }
     }
 
+    if (!m_udfColumns.empty()) {
+        projectWithUserDefinedFunctions(input_table);
+        cleanupInputTempTable(input_table);
+        return true;
+    }
+
     //
     // Now loop through all the tuples and push them through our output
     // expression This will generate new tuple values that we will insert into
@@ -162,6 +177,49 @@ bool ProjectionExecutor::p_execute(const NValueArray &params) {
     return (true);
 }
 
+void ProjectionExecutor::projectWithUserDefinedFunctions(Table* input_table) {
+    // The tuples of a batch are read again after the user-defined functions ran,
+    // so the input blocks can not be released as the iterator moves on.
+    TableIterator iterator = input_table->iterator();
+    std::vector<TableTuple> inputTuples;
+    inputTuples.reserve(UDF_BATCH_ROWS);
+    while (iterator.next(tuple)) {
+        inputTuples.push_back(tuple);
+        if (inputTuples.size() == UDF_BATCH_ROWS) {
+            insertBatch(inputTuples);
+            inputTuples.clear();
+        }
+    }
+    if (!inputTuples.empty()) {
+        insertBatch(inputTuples);
+    }
+}
+
+void ProjectionExecutor::insertBatch(const std::vector<TableTuple>& inputTuples) {
+    for (int udf = 0; udf < m_udfColumns.size(); udf++) {
+        m_udfResults[udf].clear();
+        static_cast<UserDefinedFunctionExpression*>(expression_array[m_udfColumns[udf]])->
+                evalBatch(inputTuples, m_udfResults[udf]);
+        assert(m_udfResults[udf].size() == inputTuples.size());
+    }
+
+    for (int row = 0; row < inputTuples.size(); row++) {
+        TableTuple &temp_tuple = output_table->tempTuple();
+        // m_udfColumns is in ascending order, walk it backwards along with the columns
+        int udf = static_cast<int>(m_udfColumns.size()) - 1;
+        for (int ctr = m_columnCount - 1; ctr >= 0; --ctr) {
+            if (udf >= 0 && m_udfColumns[udf] == ctr) {
+                temp_tuple.setNValue(ctr, m_udfResults[udf][row]);
+                udf--;
+            }
+            else {
+                temp_tuple.setNValue(ctr, expression_array[ctr]->eval(&inputTuples[row], NULL));
+            }
+        }
+        output_table->insertTempTuple(temp_tuple);
+    }
+}
+
 ProjectionExecutor::~ProjectionExecutor() {
 }
 
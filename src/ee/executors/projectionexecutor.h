@@ -74,6 +74,9 @@ class ProjectionExecutor : public AbstractExecutor {
         bool p_execute(const NValueArray &params);
 
     private:
+        void projectWithUserDefinedFunctions(Table* input_table);
+        void insertBatch(const std::vector<TableTuple>& inputTuples);
+
         TempTable* output_table;
         int m_columnCount;
         boost::shared_array<int> all_tuple_array_ptr;
@@ -86,6 +89,11 @@ class ProjectionExecutor : public AbstractExecutor {
 
         boost::shared_array<AbstractExpression*> expression_array_ptr;
         AbstractExpression** expression_array;
+
+        // Output columns that are a Java user-defined function call. They are
+        // evaluated for a batch of input rows at a time, with their results per column.
+        std::vector<int> m_udfColumns;
+        std::vector<std::vector<NValue> > m_udfResults;
 };
 
 }
@@ -190,60 +190,59 @@ private:
     const std::vector<AbstractExpression *>& m_args;
 };
 
-/*
- * User-defined scalar function.
- */
-class UserDefinedFunctionExpression : public AbstractExpression {
-public:
-    UserDefinedFunctionExpression(int functionId, const std::vector<AbstractExpression *>& args)
-        : AbstractExpression(EXPRESSION_TYPE_FUNCTION),
-          m_functionId(functionId),
-          m_args(args),
-          m_engine(ExecutorContext::getEngine()) {}
+}
 
-    virtual ~UserDefinedFunctionExpression() {
-        size_t i = m_args.size();
-        while (i--) {
-            delete m_args[i];
-        }
-        delete &m_args;
-    }
+using namespace functionexpression;
 
-    virtual bool hasParameter() const {
-        for (size_t i = 0; i < m_args.size(); i++) {
-            assert(m_args[i]);
-            if (m_args[i]->hasParameter()) {
-                return true;
-            }
-        }
-        return false;
+UserDefinedFunctionExpression::UserDefinedFunctionExpression(int functionId,
+                                                             const std::vector<AbstractExpression *>& args)
+    : AbstractExpression(EXPRESSION_TYPE_FUNCTION),
+      m_functionId(functionId),
+      m_args(args),
+      m_engine(ExecutorContext::getEngine()) {}
+
+UserDefinedFunctionExpression::~UserDefinedFunctionExpression() {
+    size_t i = m_args.size();
+    while (i--) {
+        delete m_args[i];
     }
+    delete &m_args;
+}
 
-    NValue eval(const TableTuple *tuple1, const TableTuple *tuple2) const {
-        std::vector<NValue> nValue(m_args.size());
-        for (int i = 0; i < m_args.size(); ++i) {
-            nValue[i] = m_args[i]->eval(tuple1, tuple2);
+bool UserDefinedFunctionExpression::hasParameter() const {
+    for (size_t i = 0; i < m_args.size(); i++) {
+        assert(m_args[i]);
+        if (m_args[i]->hasParameter()) {
+            return true;
         }
-        return m_engine->callJavaUserDefinedFunction(m_functionId, nValue);
     }
+    return false;
+}
 
-    std::string debugInfo(const std::string &spacer) const {
-        std::stringstream buffer;
-        buffer << spacer << "UserDefinedFunctionExpression (function ID = " << m_functionId << ")" << std::endl;
-        return (buffer.str());
+NValue UserDefinedFunctionExpression::eval(const TableTuple *tuple1, const TableTuple *tuple2) const {
+    std::vector<NValue> nValue(m_args.size());
+    for (int i = 0; i < m_args.size(); ++i) {
+        nValue[i] = m_args[i]->eval(tuple1, tuple2);
     }
+    return m_engine->callJavaUserDefinedFunction(m_functionId, nValue);
+}
 
-private:
-    int m_functionId;
-    const std::vector<AbstractExpression *>& m_args;
-    // We need the help from the VoltDBEngine to initiate the call into the Java top end for UDF execution.
-    // So we cache a pointer to the engine object that is tied to the current site thread for direct access.
-    VoltDBEngine* m_engine;
-};
-
+void UserDefinedFunctionExpression::evalBatch(const std::vector<TableTuple>& tuples,
+                                              std::vector<NValue>& results) const {
+    std::vector<std::vector<NValue> > argumentRows(tuples.size(), std::vector<NValue>(m_args.size()));
+    for (int row = 0; row < tuples.size(); ++row) {
+        for (int i = 0; i < m_args.size(); ++i) {
+            argumentRows[row][i] = m_args[i]->eval(&tuples[row], NULL);
+        }
+    }
+    m_engine->callJavaUserDefinedFunctionBatch(m_functionId, argumentRows, results);
 }
 
-using namespace functionexpression;
+std::string UserDefinedFunctionExpression::debugInfo(const std::string &spacer) const {
+    std::stringstream buffer;
+    buffer << spacer << "UserDefinedFunctionExpression (function ID = " << m_functionId << ")" << std::endl;
+    return (buffer.str());
+}
 
 AbstractExpression*
 ExpressionUtil::functionFactory(int functionId, const std::vector<AbstractExpression*>* arguments) {
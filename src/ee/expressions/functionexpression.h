@@ -305,6 +305,35 @@ static const int FUNC_TRIM_BOTH_CHAR                  = SQL_TRIM_VOLT_FUNC_OFFSE
 static const int FUNC_VOLT_UDF_ID_START                = 1000000;
 #define IS_USER_DEFINED_ID(id) (FUNC_VOLT_UDF_ID_START <= (id))
 
+class VoltDBEngine;
+
+/*
+ * User-defined scalar function.
+ */
+class UserDefinedFunctionExpression : public AbstractExpression {
+public:
+    UserDefinedFunctionExpression(int functionId, const std::vector<AbstractExpression *>& args);
+
+    virtual ~UserDefinedFunctionExpression();
+
+    virtual bool hasParameter() const;
+
+    NValue eval(const TableTuple *tuple1, const TableTuple *tuple2) const;
+
+    // Evaluate the function for each of the tuples with a single call into the Java top end.
+    // The return values are appended to results in the order of the tuples.
+    void evalBatch(const std::vector<TableTuple>& tuples, std::vector<NValue>& results) const;
+
+    std::string debugInfo(const std::string &spacer) const;
+
+private:
+    int m_functionId;
+    const std::vector<AbstractExpression *>& m_args;
+    // We need the help from the VoltDBEngine to initiate the call into the Java top end for UDF execution.
+    // So we cache a pointer to the engine object that is tied to the current site thread for direct access.
+    VoltDBEngine* m_engine;
+};
+
 }
 
 // All of these "...functions.h" files need to be included AFTER the above definitions
@@ -22,6 +22,7 @@ namespace voltdb {
 
 LargeTempTableBlock::LargeTempTableBlock(int64_t id, LargeTempTable *ltt)
     : m_id(id)
+    , m_ltt(ltt)
     , m_pool(new Pool(ltt->getTableAllocationSize() / 4, 1))
     , m_tupleBlockPointer(new TupleBlock(ltt, TBBucketPtr()))
     , m_isPinned(false)
@@ -95,4 +96,40 @@ void LargeTempTableBlock::setData(TBPtr tbptr, std::unique_ptr<Pool> pool) {
     lttBlockCache->increaseAllocatedMemory(m_pool->getAllocatedMemory());
 }
 
+void LargeTempTableBlock::serializeTo(SerializeOutput& output) const {
+    assert(isResident());
+    const uint32_t tupleLength = m_ltt->getTupleLength();
+    const uint32_t boundary = m_tupleBlockPointer->unusedTupleBoundary();
+    char* storage = m_tupleBlockPointer->address();
+
+    output.writeInt(static_cast<int32_t>(m_tupleBlockPointer->activeTuples()));
+    TableTuple tuple(m_ltt->schema());
+    for (uint32_t i = 0; i < boundary; ++i) {
+        tuple.move(storage + i * tupleLength);
+        if (tuple.isActive()) {
+            tuple.serializeTo(output);
+        }
+    }
+}
+
+void LargeTempTableBlock::deserializeFrom(SerializeInputBE& input) {
+    assert(!isResident());
+    TBPtr tbptr(new TupleBlock(m_ltt, TBBucketPtr()));
+    std::unique_ptr<Pool> pool(new Pool(m_ltt->getTableAllocationSize() / 4, 1));
+
+    const int32_t tupleCount = input.readInt();
+    TableTuple target(m_ltt->schema());
+    for (int32_t i = 0; i < tupleCount; ++i) {
+        char* data;
+        std::tie(data, std::ignore) = tbptr->nextFreeTuple();
+        ::memset(data, 0, TUPLE_HEADER_SIZE);
+        target.move(data);
+        target.deserializeFrom(input, pool.get());
+        target.setActiveTrue();
+    }
+
+    // Reports the memory to the cache and pins the block
+    setData(tbptr, std::move(pool));
+}
+
 } // end namespace voltdb
@@ -21,6 +21,7 @@
 #include <utility>
 
 #include "common/Pool.hpp"
+#include "common/serializeio.h"
 
 #include "storage/TupleBlock.h"
 
@@ -67,6 +68,16 @@ class LargeTempTableBlock {
 
     void setData(TBPtr block, std::unique_ptr<Pool> pool);
 
+    /** Write the tuples in this block, including their
+        variable-length data, so the block can be stored outside the
+        EE.  The block must be resident. */
+    void serializeTo(SerializeOutput& output) const;
+
+    /** Rebuild the tuple block and pool of a block that was stored
+        from data written by serializeTo.  Like setData, this pins
+        the block. */
+    void deserializeFrom(SerializeInputBE& input);
+
     virtual ~LargeTempTableBlock();
 
     bool isPinned() const {
@@ -97,6 +108,7 @@ class LargeTempTableBlock {
  private:
 
     int64_t m_id;
+    LargeTempTable* m_ltt;
     std::unique_ptr<Pool> m_pool;
     TBPtr m_tupleBlockPointer;
     bool m_isPinned;
@@ -124,6 +124,7 @@ PersistentTable::PersistentTable(int partitionColumn, char const* signature, boo
     m_stats(this),
     m_failedCompactionCount(0),
     m_invisibleTuplesPendingDeleteCount(0),
+    m_modificationCount(0),
     m_surgeon(*this),
     m_tableForStreamIndexing(NULL),
     m_isMaterialized(isMaterialized),
@@ -479,6 +480,7 @@ void PersistentTable::truncateTable(VoltDBEngine* engine, bool fallible) {
     PersistentTable* emptyTable = tcd->getPersistentTable();
     assert(emptyTable);
     assert(emptyTable->views().size() == 0);
+    emptyTable->m_modificationCount = m_modificationCount + 1;
     if (m_tableStreamer &&
         m_tableStreamer->hasStreamType(TABLE_STREAM_ELASTIC_INDEX)) {
         // There is Elastic Index work going on and
@@ -493,6 +495,7 @@ void PersistentTable::truncateTable(VoltDBEngine* engine, bool fallible) {
         catalog::Table* catalogViewTable = engine->getCatalogTable(destTable->name());
         PersistentTable* destEmptyTable = constructEmptyDestTable(engine,
                 destTable, catalogViewTable, originalView);
+        destEmptyTable->m_modificationCount = destTable->m_modificationCount + 1;
 
         MaterializedViewTriggerForWrite::build(emptyTable, destEmptyTable,
                 originalView->getMaterializedViewInfo());
@@ -503,6 +506,7 @@ void PersistentTable::truncateTable(VoltDBEngine* engine, bool fallible) {
         catalog::Table* catalogViewTable = engine->getCatalogTable(destTable->name());
         PersistentTable* destEmptyTable = constructEmptyDestTable(engine,
                 destTable, catalogViewTable, viewHandler);
+        destEmptyTable->m_modificationCount = destTable->m_modificationCount + 1;
 
         auto mvHandlerInfo = catalogViewTable->mvHandlerInfo().get("mvHandlerInfo");
         auto newHandler = new MaterializedViewHandler(destEmptyTable,
@@ -679,6 +683,10 @@ void PersistentTable::swapTableState(PersistentTable* otherTable) {
 
     std::swap(m_name, otherTable->m_name);
 
+    // Each name now refers to different content, move both counts past either one.
+    m_modificationCount = std::max(m_modificationCount, otherTable->m_modificationCount) + 1;
+    otherTable->m_modificationCount = m_modificationCount;
+
     if (m_tableStreamer &&
             m_tableStreamer->hasStreamType(TABLE_STREAM_ELASTIC_INDEX)) {
         // There is Elastic Index work going on and
@@ -808,6 +816,8 @@ void PersistentTable::insertTupleCommon(TableTuple& source, TableTuple& target,
 
     }
 
+    ++m_modificationCount;
+
     // Write to DR stream before everything else to ensure nothing gets left in
     // the index if the append fails.
     ExecutorContext* ec = ExecutorContext::getExecutorContext();
@@ -903,6 +913,7 @@ void PersistentTable::insertTupleForUndo(char* tuple) {
     target.setPendingDeleteOnUndoReleaseFalse();
     --m_tuplesPinnedByUndo;
     --m_invisibleTuplesPendingDeleteCount;
+    ++m_modificationCount;
 
     /*
      * The only thing to do is reinsert the tuple into the indexes. It was never moved,
@@ -932,6 +943,7 @@ void PersistentTable::updateTupleWithSpecificIndexes(TableTuple& targetTupleToUp
                                                      std::vector<TableIndex*> const& indexesToUpdate,
                                                      bool fallible,
                                                      bool updateDRTimestamp) {
+    ++m_modificationCount;
     UndoQuantum* uq = NULL;
     char* oldTupleData = NULL;
     int tupleLength = targetTupleToUpdate.tupleLength();
@@ -1123,6 +1135,7 @@ void PersistentTable::updateTupleWithSpecificIndexes(TableTuple& targetTupleToUp
 void PersistentTable::updateTupleForUndo(char* tupleWithUnwantedValues,
                                          char* sourceTupleDataWithNewValues,
                                          bool revertIndexes) {
+    ++m_modificationCount;
     TableTuple matchable(m_schema);
     // Get the address of the tuple in the table from one of the copies on hand.
     // Any TableScan OR a primary key lookup on an already updated index will find the tuple
@@ -1185,6 +1198,8 @@ void PersistentTable::deleteTuple(TableTuple& target, bool fallible) {
     // The tempTuple is forever!
     assert(&target != &m_tempTuple);
 
+    ++m_modificationCount;
+
     // Write to the DR stream before doing anything else to ensure nothing will
     // be left forgotten in case this throws.
     ExecutorContext* ec = ExecutorContext::getExecutorContext();
@@ -1335,6 +1350,7 @@ void PersistentTable::deleteTupleForUndo(char* tupleData, bool skipLookup) {
     // Make sure that they are not trying to delete the same tuple twice
     assert(target.isActive());
 
+    ++m_modificationCount;
     deleteFromAllIndexes(&target);
     deleteTupleFinalize(target); // also frees object columns
 }
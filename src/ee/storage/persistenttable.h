@@ -423,6 +423,13 @@ public:
      */
     size_t hashCode();
 
+    /**
+     * Number of inserts, updates, deletes and undos applied to the table so far.
+     * Tables that replace this one by truncate or swap continue from a higher count,
+     * so an unchanged count means the content is the same as when it was last read.
+     */
+    int64_t modificationCount() const { return m_modificationCount; }
+
     size_t getBlocksNotPendingSnapshotCount() {
         return m_blocksNotPendingSnapshot.size();
     }
@@ -747,6 +754,9 @@ private:
     // This is a testability feature not intended for use in product logic.
     int m_invisibleTuplesPendingDeleteCount;
 
+    // Incremented by every change to the table content, see modificationCount()
+    int64_t m_modificationCount;
+
     // Surgeon passed to classes requiring "deep" access to avoid excessive friendship.
     PersistentTableSurgeon m_surgeon;
 
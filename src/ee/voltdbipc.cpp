@@ -71,6 +71,7 @@ public:
         kErrorCode_getQueuedExportBytes = 105,         // Retrieve value for stats
         kErrorCode_pushPerFragmentStatsBuffer = 106,   // Indication that per-fragment statistics buffer is next
         kErrorCode_callJavaUserDefinedFunction = 107,  // Notify the frontend to call a Java user-defined function.
+        kErrorCode_callJavaUserDefinedFunctionBatch = 108, // Same as 107, for a batch of argument tuples.
         kErrorCode_needPlan = 110,                     // fetch a plan from java for a fragment
         kErrorCode_progressUpdate = 111,               // Update Java on execution progress
         kErrorCode_decodeBase64AndDecompress = 112     // Decode base64, compressed data
@@ -182,6 +183,8 @@ private:
 
     void tableHashCode( struct ipc_command *cmd);
 
+    void tableModificationCount( struct ipc_command *cmd);
+
     void hashinate(struct ipc_command* cmd);
 
     void updateHashinator(struct ipc_command *cmd);
@@ -196,6 +199,11 @@ private:
 
     int callJavaUserDefinedFunction();
 
+    int callJavaUserDefinedFunctionBatch();
+
+    // Ship the UDF buffer to the frontend with the given status code and wait for the results.
+    int exchangeUDFBuffer(int8_t statusCode);
+
     // We do not adjust the UDF buffer size in the IPC mode.
     // The buffer sizes are always MAX_MSG_SZ (10M)
     void resizeUDFBuffer(int32_t size) {
@@ -541,6 +549,10 @@ bool VoltDBIPC::execute(struct ipc_command *cmd) {
           applyBinaryLog(cmd);
           result = kErrorCode_None;
           break;
+      case 30:
+          tableModificationCount(cmd);
+          result = kErrorCode_None;
+          break;
       default:
         result = stub(cmd);
     }
@@ -869,8 +881,15 @@ void checkBytesRead(ssize_t byteCountExpected, ssize_t byteCountRead, std::strin
 }
 
 int VoltDBIPC::callJavaUserDefinedFunction() {
+    return exchangeUDFBuffer(static_cast<int8_t>(kErrorCode_callJavaUserDefinedFunction));
+}
+
+int VoltDBIPC::callJavaUserDefinedFunctionBatch() {
+    return exchangeUDFBuffer(static_cast<int8_t>(kErrorCode_callJavaUserDefinedFunctionBatch));
+}
+
+int VoltDBIPC::exchangeUDFBuffer(int8_t statusCode) {
     // Send a special status code indicating that a UDF invocation request is coming on the wire.
-    int8_t statusCode = static_cast<int8_t>(kErrorCode_callJavaUserDefinedFunction);
     writeOrDie(m_fd, (unsigned char*)&statusCode, sizeof(int8_t));
 
     // Get the UDF buffer size.
@@ -1440,6 +1459,16 @@ void VoltDBIPC::tableHashCode( struct ipc_command *cmd) {
     writeOrDie(m_fd, (unsigned char*)response, 9);
 }
 
+void VoltDBIPC::tableModificationCount( struct ipc_command *cmd) {
+    table_hash_code *countRequest = (table_hash_code*) cmd;
+    const int32_t tableId = ntohl(countRequest->tableId);
+    int64_t modificationCount = m_engine->tableModificationCount(tableId);
+    char response[9];
+    response[0] = kErrorCode_Success;
+    *reinterpret_cast<int64_t*>(&response[1]) = htonll(modificationCount);
+    writeOrDie(m_fd, (unsigned char*)response, 9);
+}
+
 void VoltDBIPC::exportAction(struct ipc_command *cmd) {
     export_action *action = (export_action*)cmd;
 
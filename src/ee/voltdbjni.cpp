@@ -110,6 +110,7 @@
 #include "common/RecoveryProtoMessage.h"
 #include "common/LegacyHashinator.h"
 #include "common/ElasticHashinator.h"
+#include "common/LargeTempTableBlockCache.h"
 #include "storage/DRTupleStream.h"
 #include "murmur3/MurmurHash3.h"
 #include "execution/VoltDBEngine.h"
@@ -630,6 +631,54 @@ SHAREDLIB_JNIEXPORT jint JNICALL Java_org_voltdb_jni_ExecutionEngine_nativeExecu
     return org_voltdb_jni_ExecutionEngine_ERRORCODE_ERROR;
 }
 
+/**
+ * Executes the single plan fragment of each of several single-partition
+ * transactions. The transaction context of each one precedes its parameters
+ * in the parameter buffer.
+ * @param pointer the VoltDBEngine pointer
+ * @param num_transactions number of transactions in the batch
+ * @param plan_fragment_ids ID of the plan fragment of each transaction
+ * @return error code
+*/
+SHAREDLIB_JNIEXPORT jint JNICALL Java_org_voltdb_jni_ExecutionEngine_nativeExecuteSinglePartitionBatch
+(JNIEnv *env,
+        jobject obj,
+        jlong engine_ptr,
+        jint num_transactions,
+        jlongArray plan_fragment_ids,
+        jboolean traceOn)
+{
+    VoltDBEngine *engine = castToEngine(engine_ptr);
+    assert(engine);
+    Topend *topend = static_cast<JNITopend*>(engine->getTopend())->updateJNIEnv(env);
+    try {
+        updateJNILogProxy(engine); //JNIEnv pointer can change between calls, must be updated
+        engine->resetPerFragmentStatsOutputBuffer();
+        engine->resetReusedResultOutputBuffer(0, 0);
+
+        assert (num_transactions <= MAX_BATCH_COUNT);
+        jlong* fragmentIdsBuffer = engine->getBatchFragmentIdsContainer();
+        env->GetLongArrayRegion(plan_fragment_ids, 0, num_transactions, fragmentIdsBuffer);
+
+        ReferenceSerializeInputBE serialize_in(engine->getParameterBuffer(), engine->getParameterBufferCapacity());
+
+        int failures = engine->executeSinglePartitionBatch(num_transactions,
+                                                           fragmentIdsBuffer,
+                                                           serialize_in,
+                                                           traceOn == JNI_TRUE);
+        if (failures > 0) {
+            return org_voltdb_jni_ExecutionEngine_ERRORCODE_ERROR;
+        }
+        else {
+            return org_voltdb_jni_ExecutionEngine_ERRORCODE_SUCCESS;
+        }
+    }
+    catch (const FatalException &e) {
+        topend->crashVoltDB(e);
+    }
+    return org_voltdb_jni_ExecutionEngine_ERRORCODE_ERROR;
+}
+
 /**
  * Serialize the result temporary table.
  * @param engine_ptr the VoltDBEngine pointer
@@ -950,6 +999,16 @@ SHAREDLIB_JNIEXPORT jboolean JNICALL Java_org_voltdb_jni_ExecutionEngine_nativeS
     return false;
 }
 
+/*
+ * Class:     org_voltdb_jni_ExecutionEngine
+ * Method:    nativeSetLargeTempTableCacheSize
+ * Signature: (J)V
+ */
+SHAREDLIB_JNIEXPORT void JNICALL Java_org_voltdb_jni_ExecutionEngine_nativeSetLargeTempTableCacheSize
+  (JNIEnv *env, jclass clazz, jlong cacheSizeInBytes) {
+    LargeTempTableBlockCache::setCacheSizeInBytes(cacheSizeInBytes);
+}
+
 /*
  * Class:     org_voltdb_jni_ExecutionEngine
  * Method:    nativeActivateTableStream
@@ -1088,6 +1147,28 @@ SHAREDLIB_JNIEXPORT jlong JNICALL Java_org_voltdb_jni_ExecutionEngine_nativeTabl
     return 0;
 }
 
+/*
+ * Class:     org_voltdb_jni_ExecutionEngine
+ * Method:    nativeTableModificationCount
+ * Signature: (JI)J
+ */
+SHAREDLIB_JNIEXPORT jlong JNICALL Java_org_voltdb_jni_ExecutionEngine_nativeTableModificationCount
+  (JNIEnv *env, jobject obj, jlong engine_ptr, jint tableId) {
+    VOLT_DEBUG("nativeTableModificationCount in C++ called");
+    VoltDBEngine *engine = castToEngine(engine_ptr);
+    Topend *topend = static_cast<JNITopend*>(engine->getTopend())->updateJNIEnv(env);
+    try {
+        try {
+            return engine->tableModificationCount(tableId);
+        } catch (const SQLException &e) {
+            throwFatalException("%s", e.message().c_str());
+        }
+    } catch (const FatalException &e) {
+        topend->crashVoltDB(e);
+    }
+    return 0;
+}
+
 /*
  * Class:     org_voltdb_jni_ExecutionEngine
  * Method:    nativeExportAction
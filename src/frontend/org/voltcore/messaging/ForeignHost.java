@@ -23,8 +23,11 @@ import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.nio.ByteBuffer;
 import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
 import java.util.Set;
 import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
@@ -73,11 +76,41 @@ public class ForeignHost {
 
     public static final int POISON_PILL = -1;
     public static final int STOPNODE_NOTICE = -2;
+    public static final int COALESCED_FRAME = -3;
 
     public static final int CRASH_ALL = 0;
     public static final int CRASH_ME = 1;
     public static final int CRASH_SPECIFIED = 2;
 
+    /*
+     * Messages sent while the previous frame for this host has not been serialized
+     * yet are appended to it, up to this many bytes. Zero sends every message in its
+     * own frame. A frame holding a single message is sent in the plain message format.
+     * Coalescing is off by default because hosts running an older version do not
+     * understand COALESCED_FRAME, so only set it when every host in the cluster does.
+     */
+    static final int COALESCE_MAX_BYTES = Integer.getInteger("FH_COALESCE_MAX_BYTES", 0);
+    /*
+     * When positive, a new frame waits this long for more messages before it is
+     * handed to the network thread, unless it fills up first.
+     */
+    static final long COALESCE_WINDOW_MICROS = Long.getLong("FH_COALESCE_WINDOW_MICROS", 0);
+    private static ScheduledExecutorService s_coalesceTimer;
+
+    private static synchronized ScheduledExecutorService getCoalesceTimer() {
+        if (s_coalesceTimer == null) {
+            s_coalesceTimer = CoreUtils.getScheduledThreadPoolExecutor("ForeignHost frame timer", 1,
+                    CoreUtils.SMALL_STACK_SIZE);
+        }
+        return s_coalesceTimer;
+    }
+
+    // Guards m_openFrame and the state of every frame of this host
+    private final Object m_frameLock = new Object();
+    private CoalescedFrame m_openFrame;
+    // COALESCE_MAX_BYTES unless a test changes it for this host
+    int m_coalesceMaxBytes = COALESCE_MAX_BYTES;
+
     /** ForeignHost's implementation of InputHandler */
     public class FHInputHandler extends VoltProtocolHandler {
 
@@ -229,42 +262,36 @@ public class ForeignHost {
 
         // if this link is "gone silent" for partition tests, just drop the message on the floor
         if (!m_linkCutForTest.get()) {
-            m_network.enqueue(
-                    new DeferredSerialization() {
-                        @Override
-                        public final void serialize(final ByteBuffer buf) throws IOException {
-                            buf.putInt(buf.capacity() - 4);
-                            buf.putLong(message.m_sourceHSId);
-                            buf.putInt(destinations.length);
-                            for (int ii = 0; ii < destinations.length; ii++) {
-                                buf.putLong(destinations[ii]);
-                            }
-                            message.flattenToBuffer(buf);
-                            buf.flip();
-                        }
-
-                        @Override
-                        public final void cancel() {
-                        /*
-                         * Can this be removed?
-                         */
-                        }
-
-                        @Override
-                        public String toString() {
-                            return message.getClass().getName();
-                        }
-
-                        @Override
-                        public int getSerializedSize() {
-                            final int len = 4            /* length prefix */
-                                    + 8            /* source hsid */
-                                    + 4            /* destinationCount */
-                                    + 8 * destinations.length  /* destination list */
-                                    + message.getSerializedSize();
-                            return len;
-                        }
-                    });
+            if (m_coalesceMaxBytes > 0) {
+                coalesce(destinations, message);
+            } else {
+                m_network.enqueue(new DeferredSerialization() {
+                    @Override
+                    public final void serialize(final ByteBuffer buf) throws IOException {
+                        buf.putInt(buf.capacity() - 4);
+                        putMessage(buf, destinations, message);
+                        buf.flip();
+                        m_network.recordFrame(1, 0);
+                    }
+
+                    @Override
+                    public final void cancel() {
+                    /*
+                     * Can this be removed?
+                     */
+                    }
+
+                    @Override
+                    public String toString() {
+                        return message.getClass().getName();
+                    }
+
+                    @Override
+                    public int getSerializedSize() {
+                        return 4 /* length prefix */ + messageSize(destinations, message);
+                    }
+                });
+            }
         }
 
         long current_time = EstTime.currentTimeMillis();
@@ -298,6 +325,163 @@ public class ForeignHost {
         }
     }
 
+    /** Size of a message with its routing header, not counting the length prefix */
+    private static int messageSize(long destinations[], VoltMessage message) {
+        return 8                        /* source hsid */
+                + 4                     /* destinationCount */
+                + 8 * destinations.length  /* destination list */
+                + message.getSerializedSize();
+    }
+
+    private static void putMessage(ByteBuffer buf, long destinations[], VoltMessage message)
+            throws IOException {
+        buf.putLong(message.m_sourceHSId);
+        buf.putInt(destinations.length);
+        for (int ii = 0; ii < destinations.length; ii++) {
+            buf.putLong(destinations[ii]);
+        }
+        message.flattenToBuffer(buf);
+    }
+
+    /**
+     * Append the message to the open frame, or open a new frame for it if there is
+     * none or the message does not fit.
+     */
+    private void coalesce(long destinations[], VoltMessage message) {
+        final int size = messageSize(destinations, message);
+        final long now = System.nanoTime();
+        CoalescedFrame newFrame = null;
+        synchronized (m_frameLock) {
+            CoalescedFrame frame = m_openFrame;
+            if (frame != null && frame.tryAdd(destinations, message, size, now)) {
+                return;
+            }
+            if (frame != null) {
+                // Full, so stop waiting for more messages
+                frame.m_closed = true;
+                enqueueFrame(frame);
+            }
+            newFrame = new CoalescedFrame();
+            newFrame.tryAdd(destinations, message, size, now);
+            m_openFrame = newFrame;
+            if (COALESCE_WINDOW_MICROS <= 0) {
+                enqueueFrame(newFrame);
+                return;
+            }
+        }
+        final CoalescedFrame timedFrame = newFrame;
+        getCoalesceTimer().schedule(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (m_frameLock) {
+                    enqueueFrame(timedFrame);
+                }
+            }
+        }, COALESCE_WINDOW_MICROS, TimeUnit.MICROSECONDS);
+    }
+
+    /**
+     * Hand the frame to the network thread unless that was already done. It stays open
+     * for more messages until the network thread serializes it. Enqueueing while holding
+     * m_frameLock keeps the frames in the order they were opened.
+     */
+    private void enqueueFrame(CoalescedFrame frame) {
+        assert(Thread.holdsLock(m_frameLock));
+        if (!frame.m_enqueued) {
+            frame.m_enqueued = true;
+            m_network.enqueue(frame);
+        }
+    }
+
+    /**
+     * Make sure nothing sent later is added to a frame that is already queued,
+     * so the frame is written ahead of whatever is enqueued next.
+     */
+    private void closeOpenFrame() {
+        synchronized (m_frameLock) {
+            if (m_openFrame != null) {
+                m_openFrame.m_closed = true;
+                enqueueFrame(m_openFrame);
+                m_openFrame = null;
+            }
+        }
+    }
+
+    /**
+     * Messages to this host, serialized together by the network thread with one length
+     * prefix. The frame is [length][-1][COALESCED_FRAME][count] followed by count times
+     * [message length][source hsid][destination count][destinations][message].
+     */
+    private class CoalescedFrame implements DeferredSerialization {
+        private final ArrayList<long[]> m_destinations = new ArrayList<>();
+        private final ArrayList<VoltMessage> m_messages = new ArrayList<>();
+        private final ArrayList<Integer> m_messageSizes = new ArrayList<>();
+        private long m_enqueueNanosTotal;
+        private int m_size = 8 + 4 + 4; /* source hsid, COALESCED_FRAME and count */
+        boolean m_enqueued;
+        boolean m_closed;
+
+        boolean tryAdd(long destinations[], VoltMessage message, int messageSize, long nowNanos) {
+            if (m_closed || (!m_messages.isEmpty() && m_size + 4 + messageSize > m_coalesceMaxBytes)) {
+                return false;
+            }
+            m_destinations.add(destinations);
+            m_messages.add(message);
+            m_messageSizes.add(messageSize);
+            m_enqueueNanosTotal += nowNanos;
+            m_size += 4 + messageSize;
+            return true;
+        }
+
+        @Override
+        public int getSerializedSize() {
+            // The network thread is about to serialize the frame, nothing may be added anymore
+            synchronized (m_frameLock) {
+                m_closed = true;
+                if (m_openFrame == this) {
+                    m_openFrame = null;
+                }
+                if (m_messages.size() == 1) {
+                    return 4 /* length prefix */ + m_size - (8 + 4 + 4) - 4;
+                }
+                return 4 /* length prefix */ + m_size;
+            }
+        }
+
+        @Override
+        public void serialize(ByteBuffer buf) throws IOException {
+            buf.putInt(buf.capacity() - 4);
+            final int count = m_messages.size();
+            if (count == 1) {
+                putMessage(buf, m_destinations.get(0), m_messages.get(0));
+            } else {
+                buf.putLong(-1);
+                buf.putInt(COALESCED_FRAME);
+                buf.putInt(count);
+                for (int ii = 0; ii < count; ii++) {
+                    final int size = m_messageSizes.get(ii);
+                    buf.putInt(size);
+                    // Messages expect to be flattened into a buffer that ends where they do
+                    final ByteBuffer message = buf.slice();
+                    message.limit(size);
+                    putMessage(message.slice(), m_destinations.get(ii), m_messages.get(ii));
+                    buf.position(buf.position() + size);
+                }
+            }
+            buf.flip();
+            m_network.recordFrame(count, count * System.nanoTime() - m_enqueueNanosTotal);
+        }
+
+        @Override
+        public void cancel() {}
+
+        @Override
+        public String toString() {
+            return "CoalescedFrame of " + m_messages.size() + " messages, first " +
+                    (m_messages.isEmpty() ? "none" : m_messages.get(0).getClass().getName());
+        }
+    }
+
     String hostnameAndIPAndPort() {
         return m_network.getHostnameAndIPAndPort();
     }
@@ -355,7 +539,18 @@ public class ForeignHost {
 
         final long sourceHSId = in.getLong();
         final int destCount = in.getInt();
-        if (destCount == POISON_PILL) {//This is a poison pill
+        if (destCount == COALESCED_FRAME) {
+            final int count = in.getInt();
+            for (int ii = 0; ii < count; ii++) {
+                final int length = in.getInt();
+                // Messages expect to be read from a buffer that ends where they do
+                final ByteBuffer message = in.slice();
+                message.limit(length);
+                in.position(in.position() + length);
+                handleRead(message.slice(), c);
+            }
+            return;
+        } else if (destCount == POISON_PILL) {//This is a poison pill
             //Ignore poison pill during shutdown, in tests we receive crash messages from
             //leader appointer during shutdown
             if (VoltDB.instance().getMode() == OperationMode.SHUTTINGDOWN) {
@@ -429,6 +624,7 @@ public class ForeignHost {
             e.printStackTrace();
             return;
         }
+        closeOpenFrame();
         ByteBuffer message = ByteBuffer.allocate(24 + errBytes.length);
         message.putInt(message.capacity() - 4);
         message.putLong(-1);
@@ -445,6 +641,7 @@ public class ForeignHost {
         if (m_linkCutForTest.get()) {
             return null;
         }
+        closeOpenFrame();
         ByteBuffer message = ByteBuffer.allocate(20);
         message.putInt(message.capacity() - 4);
         message.putLong(-1);
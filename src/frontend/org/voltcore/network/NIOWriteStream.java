@@ -24,6 +24,7 @@ import java.nio.channels.SelectionKey;
 import java.util.ArrayDeque;
 
 import org.voltcore.logging.VoltLogger;
+import org.voltcore.utils.DBBPool.BBContainer;
 import org.voltcore.utils.DeferredSerialization;
 import org.voltcore.utils.EstTime;
 
@@ -76,6 +77,34 @@ public class NIOWriteStream extends NIOWriteStreamBase implements WriteStream {
      */
     protected long m_lastPendingWriteTime = -1;
 
+    /**
+     * Upper bound on the buffers handed to one gathering write, well under the
+     * iovec limit of writev
+     */
+    static final int MAX_GATHERED_BUFFERS = 64;
+
+    /*
+     * Scratch arrays for gathering writes. Streams are only drained from
+     * their network thread so one set per thread is enough.
+     */
+    private static final ThreadLocal<BBContainer[]> m_gatherContainers = new ThreadLocal<BBContainer[]>() {
+        @Override
+        protected BBContainer[] initialValue() {
+            return new BBContainer[MAX_GATHERED_BUFFERS];
+        }
+    };
+    private static final ThreadLocal<ByteBuffer[]> m_gatherBuffers = new ThreadLocal<ByteBuffer[]>() {
+        @Override
+        protected ByteBuffer[] initialValue() {
+            return new ByteBuffer[MAX_GATHERED_BUFFERS];
+        }
+    };
+
+    /**
+     * Drain all pending buffers with one gathering write instead of one write per buffer
+     */
+    boolean m_gatherWrites = VoltNetwork.COALESCE_WRITES;
+
     NIOWriteStream(VoltPort port) {
         this(port, null, null, null);
     }
@@ -320,6 +349,9 @@ public class NIOWriteStream extends NIOWriteStreamBase implements WriteStream {
      */
     @Override
     int drainTo (final GatheringByteChannel channel) throws IOException {
+        if (m_gatherWrites) {
+            return gatheringDrainTo(channel);
+        }
         int bytesWritten = 0;
         try {
             long rc = 0;
@@ -341,6 +373,7 @@ public class NIOWriteStream extends NIOWriteStreamBase implements WriteStream {
                 }
 
                 rc = channel.write(buffer);
+                m_writeCalls++;
 
                 //Discard the buffer back to a pool if no data remains
                 if (buffer.hasRemaining()) {
@@ -356,24 +389,100 @@ public class NIOWriteStream extends NIOWriteStreamBase implements WriteStream {
 
             } while (rc > 0);
         } finally {
-            //We might fail after writing few bytes. make sure the ones that are written accounted for.
-            //Not sure if we need to do any backpressure magic as client is dead and so no backpressure on this may be needed.
-            if (m_queuedBuffers.isEmpty() && m_hadBackPressure && m_queuedWrites.size() <= m_maxQueuedWritesBeforeBackpressure) {
-                backpressureEnded();
-            }
-            //Same here I dont know if we do need to do this housekeeping??
-            if (!isEmpty()) {
-                if (bytesWritten > 0) {
-                    m_lastPendingWriteTime = EstTime.currentTimeMillis();
+            drainCompleted(bytesWritten);
+        }
+        return bytesWritten;
+    }
+
+    /**
+     * Write the current buffer and as many queued buffers as fit in the scratch
+     * arrays with a single gathering write, repeating until the channel stops
+     * accepting data.
+     */
+    private int gatheringDrainTo(final GatheringByteChannel channel) throws IOException {
+        final BBContainer[] containers = m_gatherContainers.get();
+        final ByteBuffer[] buffers = m_gatherBuffers.get();
+        int bytesWritten = 0;
+        try {
+            long rc = 0;
+            do {
+                int count = 0;
+                if (m_currentWriteBuffer != null) {
+                    containers[count] = m_currentWriteBuffer;
+                    buffers[count++] = m_currentWriteBuffer.b();
+                    m_currentWriteBuffer = null;
                 }
-            } else {
-                m_lastPendingWriteTime = -1;
+                BBContainer next;
+                while (count < MAX_GATHERED_BUFFERS && (next = m_queuedBuffers.poll()) != null) {
+                    next.b().flip();
+                    containers[count] = next;
+                    buffers[count++] = next.b();
+                }
+                if (count == 0) {
+                    return bytesWritten;
+                }
+
+                try {
+                    rc = channel.write(buffers, 0, count);
+                    m_writeCalls++;
+                } finally {
+                    // Hand unwritten buffers back even on failure so shutdown() can release them
+                    requeueUnwritten(containers, buffers, count);
+                }
+                bytesWritten += rc;
+            } while (rc > 0);
+        } finally {
+            drainCompleted(bytesWritten);
+        }
+        return bytesWritten;
+    }
+
+    /**
+     * Discard the fully written buffers of a gathering write. The first buffer with data remaining
+     * becomes the current write buffer and the untouched ones after it go back to the head of the
+     * queue in their unflipped state.
+     */
+    private void requeueUnwritten(BBContainer[] containers, ByteBuffer[] buffers, int count) {
+        int ii = 0;
+        for (; ii < count && !buffers[ii].hasRemaining(); ii++) {
+            containers[ii].discard();
+            m_messagesWritten++;
+        }
+        if (ii < count) {
+            m_currentWriteBuffer = containers[ii];
+            for (int jj = count - 1; jj > ii; jj--) {
+                final ByteBuffer b = buffers[jj];
+                b.position(b.limit());
+                b.limit(b.capacity());
+                m_queuedBuffers.offerFirst(containers[jj]);
             }
+            if (!m_hadBackPressure) {
+                backpressureStarted();
+            }
+        }
+        for (int jj = 0; jj < count; jj++) {
+            containers[jj] = null;
+            buffers[jj] = null;
+        }
+    }
+
+    private void drainCompleted(int bytesWritten) {
+        //We might fail after writing few bytes. make sure the ones that are written accounted for.
+        //Not sure if we need to do any backpressure magic as client is dead and so no backpressure on this may be needed.
+        if (m_queuedBuffers.isEmpty() && m_hadBackPressure && m_queuedWrites.size() <= m_maxQueuedWritesBeforeBackpressure) {
+            backpressureEnded();
+        }
+        //Same here I dont know if we do need to do this housekeeping??
+        if (!isEmpty()) {
             if (bytesWritten > 0) {
-                updateQueued(-bytesWritten, false);
-                m_bytesWritten += bytesWritten;
+                m_lastPendingWriteTime = EstTime.currentTimeMillis();
             }
+        } else {
+            m_lastPendingWriteTime = -1;
+        }
+        if (bytesWritten > 0) {
+            updateQueued(-bytesWritten, false);
+            m_bytesWritten += bytesWritten;
         }
-        return bytesWritten;
     }
 }
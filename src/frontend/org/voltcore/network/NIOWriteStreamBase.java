@@ -29,6 +29,7 @@ import org.voltcore.logging.VoltLogger;
 import org.voltcore.utils.DBBPool.BBContainer;
 import org.voltcore.utils.DeferredSerialization;
 import org.voltcore.utils.RateLimitedLogger;
+import org.voltcore.utils.ZeroCopySerialization;
 
 /**
 *
@@ -50,6 +51,8 @@ public abstract class NIOWriteStreamBase {
 
     protected long m_bytesWritten = 0;
     protected long m_messagesWritten = 0;
+    // Number of write calls made against the channel
+    protected long m_writeCalls = 0;
 
     /*
      * Used to provide incremental reads of the amount of
@@ -59,7 +62,11 @@ public abstract class NIOWriteStreamBase {
      */
     private long m_lastBytesWritten = 0;
     private long m_lastMessagesWritten = 0;
+    private long m_lastWriteCalls = 0;
 
+    /**
+     * @return bytes written, messages written and write calls made
+     */
     long[] getBytesAndMessagesWritten(boolean interval) {
         if (interval) {
             final long bytesWrittenThisTime = m_bytesWritten - m_lastBytesWritten;
@@ -67,9 +74,12 @@ public abstract class NIOWriteStreamBase {
 
             final long messagesWrittenThisTime = m_messagesWritten - m_lastMessagesWritten;
             m_lastMessagesWritten = m_messagesWritten;
-            return new long[] { bytesWrittenThisTime, messagesWrittenThisTime };
+
+            final long writeCallsThisTime = m_writeCalls - m_lastWriteCalls;
+            m_lastWriteCalls = m_writeCalls;
+            return new long[] { bytesWrittenThisTime, messagesWrittenThisTime, writeCallsThisTime };
         } else {
-            return new long[] {m_bytesWritten, m_messagesWritten};
+            return new long[] {m_bytesWritten, m_messagesWritten, m_writeCalls};
         }
     }
 
@@ -107,6 +117,13 @@ public abstract class NIOWriteStreamBase {
             processedWrites++;
             final int serializedSize = ds.getSerializedSize();
             if (serializedSize == DeferredSerialization.EMPTY_MESSAGE_LENGTH) continue;
+            if (ds instanceof ZeroCopySerialization) {
+                final BBContainer trailing = ((ZeroCopySerialization)ds).takeTrailingBuffer();
+                if (trailing != null) {
+                    bytesQueued += queueZeroCopy(pool, (ZeroCopySerialization)ds, serializedSize, trailing);
+                    continue;
+                }
+            }
             BBContainer outCont = m_queuedBuffers.peekLast();
             ByteBuffer outbuf = null;
             if (outCont == null || !outCont.b().hasRemaining()) {
@@ -135,29 +152,71 @@ public abstract class NIOWriteStreamBase {
                 checkSloppySerialization(buf, ds);
                 buf.position(0);
                 bytesQueued += buf.remaining();
-                // Copy data allocated in heap buffer to direct buffer
-                while (buf.hasRemaining()) {
-                    if (!outbuf.hasRemaining()) {
-                        outCont = pool.acquire();
-                        outbuf = outCont.b();
-                        outbuf.clear();
-                        m_queuedBuffers.offer(outCont);
-                    }
-                    if (outbuf.remaining() >= buf.remaining()) {
-                        outbuf.put(buf);
-                    } else {
-                        final int oldLimit = buf.limit();
-                        buf.limit(buf.position() + outbuf.remaining());
-                        outbuf.put(buf);
-                        buf.limit(oldLimit);
-                    }
-                }
+                copyToQueuedBuffers(pool, buf);
             }
         }
         updateQueued(bytesQueued, true);
         return processedWrites;
     }
 
+    /**
+     * Copy the remaining bytes of buf to the end of the pending pool buffers
+     */
+    private void copyToQueuedBuffers(final NetworkDBBPool pool, ByteBuffer buf) {
+        BBContainer outCont = m_queuedBuffers.peekLast();
+        ByteBuffer outbuf = outCont == null ? null : outCont.b();
+        while (buf.hasRemaining()) {
+            if (outbuf == null || !outbuf.hasRemaining()) {
+                outCont = pool.acquire();
+                outbuf = outCont.b();
+                outbuf.clear();
+                m_queuedBuffers.offer(outCont);
+            }
+            if (outbuf.remaining() >= buf.remaining()) {
+                outbuf.put(buf);
+            } else {
+                final int oldLimit = buf.limit();
+                buf.limit(buf.position() + outbuf.remaining());
+                outbuf.put(buf);
+                buf.limit(oldLimit);
+            }
+        }
+    }
+
+    /**
+     * Copy the leading part of a zero copy message to the pool buffers and queue its
+     * trailing buffer behind them without copying. The trailing container is discarded
+     * by the drain once written, or by shutdown.
+     * @return number of bytes queued
+     */
+    private int queueZeroCopy(final NetworkDBBPool pool, ZeroCopySerialization ds,
+            int serializedSize, final BBContainer trailing) throws IOException {
+        final ByteBuffer body = trailing.b();
+        final int bodySize = body.remaining();
+        final ByteBuffer header = ByteBuffer.allocate(serializedSize - bodySize);
+        try {
+            ds.serializeHeader(header);
+        } catch (IOException | RuntimeException e) {
+            trailing.discard();
+            throw e;
+        }
+        checkSloppySerialization(header, ds);
+        header.position(0);
+        copyToQueuedBuffers(pool, header);
+
+        // Queued buffers hold their data below position until the drain flips them
+        final ByteBuffer slice = body.slice();
+        slice.position(slice.limit());
+        m_queuedBuffers.offer(new BBContainer(slice) {
+            @Override
+            public void discard() {
+                checkDoubleFree();
+                trailing.discard();
+            }
+        });
+        return serializedSize;
+    }
+
     private static final boolean ASSERT_ON;
     static {
         boolean assertOn = false;
@@ -79,6 +79,7 @@ import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Future;
 import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
 
 import org.voltcore.logging.VoltLogger;
 import org.voltcore.network.VoltNetworkPool.IOStatsIntf;
@@ -104,6 +105,14 @@ public class PicoNetwork implements Runnable, Connection, IOStatsIntf
     private final ConcurrentLinkedQueue<Runnable> m_tasks = new ConcurrentLinkedQueue<Runnable>();
     private volatile boolean m_shouldStop = false;//volatile boolean is sufficient
     private long m_messagesRead;
+    // Frames written by the input handler's owner, the messages they held and the
+    // nanoseconds those messages waited before their frame was serialized
+    private long m_framesWritten;
+    private long m_framedMessages;
+    private long m_coalesceDelayNanos;
+    private long m_lastFramesWritten;
+    private long m_lastFramedMessages;
+    private long m_lastCoalesceDelayNanos;
     private int m_interestOps = 0;
     private final SocketChannel m_sc;
     private final SelectionKey m_key;
@@ -386,6 +395,18 @@ public class PicoNetwork implements Runnable, Connection, IOStatsIntf
             final long read = m_readStream.getBytesRead(interval);
             final long writeInfo[] = m_writeStream.getBytesAndMessagesWritten(interval);
             final long messagesRead = m_messagesRead;
+            long framesWritten = m_framesWritten;
+            long framedMessages = m_framedMessages;
+            long coalesceDelayNanos = m_coalesceDelayNanos;
+            if (interval) {
+                framesWritten -= m_lastFramesWritten;
+                framedMessages -= m_lastFramedMessages;
+                coalesceDelayNanos -= m_lastCoalesceDelayNanos;
+                m_lastFramesWritten = m_framesWritten;
+                m_lastFramedMessages = m_framedMessages;
+                m_lastCoalesceDelayNanos = m_coalesceDelayNanos;
+            }
+            final long coalesceDelayMicros = TimeUnit.NANOSECONDS.toMicros(coalesceDelayNanos);
             retval.put(
                     m_ih.connectionId(),
                     Pair.of(
@@ -394,7 +415,13 @@ public class PicoNetwork implements Runnable, Connection, IOStatsIntf
                                     read,
                                     messagesRead,
                                     writeInfo[0],
-                                    writeInfo[1]}));
+                                    writeInfo[1],
+                                    writeInfo[2],
+                                    0,
+                                    0,
+                                    framesWritten,
+                                    framedMessages,
+                                    coalesceDelayMicros}));
             retval.put(
                     -1L,
                     Pair.of(
@@ -403,7 +430,13 @@ public class PicoNetwork implements Runnable, Connection, IOStatsIntf
                                     read,
                                     messagesRead,
                                     writeInfo[0],
-                                    writeInfo[1] }));
+                                    writeInfo[1],
+                                    writeInfo[2],
+                                    0,
+                                    0,
+                                    framesWritten,
+                                    framedMessages,
+                                    coalesceDelayMicros }));
             return retval;
     }
 
@@ -507,6 +540,18 @@ public class PicoNetwork implements Runnable, Connection, IOStatsIntf
         throw new UnsupportedOperationException();
     }
 
+    /**
+     * Count a frame of messages being serialized for writing. Only call this from
+     * the network thread, which serializes the queued writes.
+     * @param messages      number of messages in the frame
+     * @param delayNanos    nanoseconds the messages spent waiting for the frame, summed
+     */
+    public void recordFrame(int messages, long delayNanos) {
+        m_framesWritten++;
+        m_framedMessages += messages;
+        m_coalesceDelayNanos += delayNanos;
+    }
+
     public void enqueue(final DeferredSerialization ds) {
         m_tasks.offer(new Runnable() {
             @Override
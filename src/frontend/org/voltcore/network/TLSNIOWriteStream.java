@@ -259,6 +259,7 @@ public class TLSNIOWriteStream extends NIOWriteStream {
                 }
 
                 rc = m_outbuf.readBytes(channel, m_outbuf.readableBytes());
+                m_writeCalls++;
                 m_outbuf.discardReadComponents();
                 written += rc;
 
@@ -70,6 +70,7 @@ import java.nio.channels.ClosedChannelException;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -96,6 +97,13 @@ import jsr166y.ThreadLocalRandom;
 /** Produces work for registered ports that are selected for read, write */
 class VoltNetwork implements Runnable, IOStatsIntf
 {
+    /**
+     * Coalesce writes: ports that have output queued are drained once at the end of the
+     * selection round, and each drain uses a single gathering write for all pending buffers.
+     */
+    static final boolean COALESCE_WRITES =
+            Boolean.valueOf(System.getProperty("NETWORK_COALESCE_WRITES", "false"));
+
     private final Selector m_selector;
     private static final VoltLogger m_logger = new VoltLogger(VoltNetwork.class.getName());
     private static final VoltLogger networkLog = new VoltLogger("NETWORK");
@@ -110,6 +118,16 @@ class VoltNetwork implements Runnable, IOStatsIntf
 
     private final NinjaKeySet m_ninjaSelectedKeys;
 
+    // Ports with writes queued during the current selection round, network thread only
+    private ArrayList<VoltPort> m_deferredWritePorts = new ArrayList<VoltPort>();
+    private ArrayList<VoltPort> m_spareWritePorts = new ArrayList<VoltPort>();
+
+    // Selection counters for IOStats, network thread only
+    private long m_selects = 0;
+    private long m_lastSelects = 0;
+    private final long m_startTime = System.currentTimeMillis();
+    private long m_lastStatsTime = m_startTime;
+
     /**
      * Start this VoltNetwork's thread;
      */
@@ -281,7 +299,14 @@ class VoltNetwork implements Runnable, IOStatsIntf
 
     /** Set interest registrations for a port */
     void addToChangeList(final VoltPort port, final boolean runFirst) {
-        if (runFirst) {
+        if (runFirst && COALESCE_WRITES) {
+            m_tasks.offer(new Runnable() {
+                @Override
+                public void run() {
+                    m_deferredWritePorts.add(port);
+                }
+            });
+        } else if (runFirst) {
             m_tasks.offer(new Runnable() {
                 @Override
                 public void run() {
@@ -314,6 +339,7 @@ class VoltNetwork implements Runnable, IOStatsIntf
                         LatencyWatchdog.pet();
 
                         final int readyKeys = m_selector.select();
+                        m_selects++;
 
                         /*
                          * Run the task queue immediately after selection to catch
@@ -340,6 +366,10 @@ class VoltNetwork implements Runnable, IOStatsIntf
                         while ((task = m_tasks.poll()) != null) {
                             task.run();
                         }
+
+                        if (COALESCE_WRITES) {
+                            flushDeferredWrites();
+                        }
                     }
                 } catch (Throwable ex) {
                     ex.printStackTrace();
@@ -381,6 +411,29 @@ class VoltNetwork implements Runnable, IOStatsIntf
         }
     }
 
+    /**
+     * Drain every port that had output queued during this selection round. Responses
+     * produced while handling the round's reads go out together, one gathering write per port.
+     */
+    private void flushDeferredWrites() {
+        if (m_deferredWritePorts.isEmpty()) {
+            return;
+        }
+        final ArrayList<VoltPort> ports = m_deferredWritePorts;
+        m_deferredWritePorts = m_spareWritePorts;
+        try {
+            for (VoltPort port : ports) {
+                // The port may have been unregistered since its write was queued
+                if (m_ports.contains(port)) {
+                    callPort(port);
+                }
+            }
+        } finally {
+            ports.clear();
+            m_spareWritePorts = ports;
+        }
+    }
+
     void installInterests(VoltPort port) {
         try {
             if (port.isRunning()) {
@@ -505,6 +558,7 @@ class VoltNetwork implements Runnable, IOStatsIntf
         long totalMessagesRead = 0;
         long totalWritten = 0;
         long totalMessagesWritten = 0;
+        long totalWriteCalls = 0;
         for (VoltPort p : m_ports) {
             final long read = p.readStream().getBytesRead(interval);
             final long writeInfo[] = p.writeStream().getBytesAndMessagesWritten(interval);
@@ -513,6 +567,7 @@ class VoltNetwork implements Runnable, IOStatsIntf
             totalMessagesRead += messagesRead;
             totalWritten += writeInfo[0];
             totalMessagesWritten += writeInfo[1];
+            totalWriteCalls += writeInfo[2];
             retval.put(
                     p.connectionId(),
                     Pair.of(
@@ -521,17 +576,40 @@ class VoltNetwork implements Runnable, IOStatsIntf
                                     read,
                                     messagesRead,
                                     writeInfo[0],
-                                    writeInfo[1] }));
+                                    writeInfo[1],
+                                    writeInfo[2],
+                                    0,
+                                    0,
+                                    0,
+                                    0,
+                                    0 }));
+        }
+
+        final long now = System.currentTimeMillis();
+        long selects = m_selects;
+        long elapsed = now - m_startTime;
+        if (interval) {
+            elapsed = now - m_lastStatsTime;
+            selects -= m_lastSelects;
+            m_lastSelects = m_selects;
+            m_lastStatsTime = now;
+        }
+        final long[] totals = new long[] {
+                totalRead,
+                totalMessagesRead,
+                totalWritten,
+                totalMessagesWritten,
+                totalWriteCalls,
+                selects,
+                elapsed,
+                0,
+                0,
+                0 };
+        if (m_thread != null) {
+            // One row per network thread, keyed below the GLOBAL row
+            retval.put(-1L - m_thread.getId(), Pair.of(networkThreadName, totals));
         }
-        retval.put(
-                -1L,
-                Pair.of(
-                        "GLOBAL",
-                        new long[] {
-                                totalRead,
-                                totalMessagesRead,
-                                totalWritten,
-                                totalMessagesWritten }));
+        retval.put(-1L, Pair.of("GLOBAL", totals.clone()));
         return retval;
     }
 
@@ -41,10 +41,23 @@ import org.voltcore.utils.Pair;
 
 public class VoltNetworkPool {
 
+    /**
+     * Per connection counters are bytes read, messages read, bytes written, messages written,
+     * write calls, selects and the milliseconds the counters cover. The selects and milliseconds
+     * are only maintained for the per network thread rows and the GLOBAL row.
+     * They are followed by the frames written, the messages sent in those frames and the
+     * microseconds those messages waited to be coalesced, which only host connections maintain.
+     */
     public interface IOStatsIntf {
         Future<Map<Long, Pair<String, long[]>>> getIOStats(final boolean interval);
     }
 
+    static final int IO_STATS_ELAPSED_MILLIS = 6;
+    public static final int IO_STATS_FRAMES_WRITTEN = 7;
+    public static final int IO_STATS_FRAMED_MESSAGES = 8;
+    public static final int IO_STATS_COALESCE_DELAY_MICROS = 9;
+    public static final int IO_STATS_COUNT = 10;
+
     private static final VoltLogger m_logger = new VoltLogger(VoltNetworkPool.class.getName());
 
     private final VoltNetwork m_networks[];
@@ -146,7 +159,12 @@ public class VoltNetworkPool {
                 } else {
                     final long localStats[] = stats.get(-1L).getSecond();
                     for (int ii = 0; ii < localStats.length; ii++) {
-                        globalStats[ii] += localStats[ii];
+                        if (ii == IO_STATS_ELAPSED_MILLIS) {
+                            // The threads cover the same period, don't add it up
+                            globalStats[ii] = Math.max(globalStats[ii], localStats[ii]);
+                        } else {
+                            globalStats[ii] += localStats[ii];
+                        }
                     }
                 }
                 retval.putAll(stats);
@@ -0,0 +1,62 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltcore.utils;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The compression codecs the server can read and write. Kept apart from
+ * {@link CompressionStrategy} because the client jar ships without the LZ4 codec
+ * and its library.
+ */
+public class CompressionCodecs {
+
+    private static final List<CompressionStrategy> CODECS = Collections.unmodifiableList(Arrays.asList(
+            CompressionStrategySnappy.INSTANCE,
+            CompressionStrategyLZ4.FAST,
+            CompressionStrategyLZ4.HIGH));
+
+    private CompressionCodecs() {}
+
+    public static List<CompressionStrategy> codecs() {
+        return CODECS;
+    }
+
+    /**
+     * @return the codec with the given id, or null if no codec has that id
+     */
+    public static CompressionStrategy forId(int id) {
+        for (CompressionStrategy codec : CODECS) {
+            if (codec.id() == id) {
+                return codec;
+            }
+        }
+        return null;
+    }
+
+    public static CompressionStrategy forName(String name) {
+        for (CompressionStrategy codec : CODECS) {
+            if (codec.name().equalsIgnoreCase(name)) {
+                return codec;
+            }
+        }
+        throw new IllegalArgumentException("Unknown compression codec " + name);
+    }
+}
@@ -18,14 +18,133 @@
 package org.voltcore.utils;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
 
 
 /**
- * Utility class for accessing a variety of com.sun.misc.Unsafe stuff
+ * A compression codec. Every codec has an id that is recorded by the file formats
+ * that let the codec vary (PBD entries, snapshot headers), so ids must never be reused.
+ * Servers look codecs up by id or name with CompressionCodecs, which the client jar leaves out.
+ *
+ * The ByteBuffer methods follow the conventions of the Snappy ByteBuffer API: the input
+ * is read from position to limit without moving its position, output is written starting
+ * at the output position, and the output limit is set to the end of what was written.
+ *
+ * Each codec counts the bytes it processes and the time spent in it for @Statistics COMPRESSION.
  */
 public abstract class CompressionStrategy {
 
-    public abstract byte[] compress(byte data[]) throws IOException;
-    public abstract byte[] uncompress(byte data[]) throws IOException;
+    private final int m_id;
+    private final String m_name;
+
+    private final AtomicLong m_bytesCompressed = new AtomicLong();
+    private final AtomicLong m_compressedBytes = new AtomicLong();
+    private final AtomicLong m_compressNanos = new AtomicLong();
+    private final AtomicLong m_bytesDecompressed = new AtomicLong();
+    private final AtomicLong m_decompressNanos = new AtomicLong();
+
+    protected CompressionStrategy(int id, String name) {
+        m_id = id;
+        m_name = name;
+    }
+
+    public final int id() {
+        return m_id;
+    }
+
+    public final String name() {
+        return m_name;
+    }
+
+    public final byte[] compress(byte data[]) throws IOException {
+        final long start = System.nanoTime();
+        final byte[] compressed = compressBytes(data);
+        accountCompression(data.length, compressed.length, start);
+        return compressed;
+    }
+
+    public final byte[] uncompress(byte data[]) throws IOException {
+        final long start = System.nanoTime();
+        final byte[] uncompressed = uncompressBytes(data);
+        accountDecompression(uncompressed.length, start);
+        return uncompressed;
+    }
+
+    /**
+     * Compress the remaining bytes of input into output.
+     * @return the compressed length
+     */
+    public final int compressBuffer(ByteBuffer input, ByteBuffer output) throws IOException {
+        final long start = System.nanoTime();
+        final int length = input.remaining();
+        final int compressedLength = compressBufferInternal(input, output);
+        accountCompression(length, compressedLength, start);
+        return compressedLength;
+    }
+
+    /**
+     * Decompress the remaining bytes of compressed into uncompressed.
+     * @return the uncompressed length
+     */
+    public final int decompressBuffer(ByteBuffer compressed, ByteBuffer uncompressed) throws IOException {
+        final long start = System.nanoTime();
+        final int length = decompressBufferInternal(compressed, uncompressed);
+        accountDecompression(length, start);
+        return length;
+    }
+
+    public abstract int maxCompressedLength(int uncompressedSize);
+
+    public abstract int uncompressedLength(ByteBuffer compressed) throws IOException;
+
+    protected abstract byte[] compressBytes(byte data[]) throws IOException;
+    protected abstract byte[] uncompressBytes(byte data[]) throws IOException;
+    protected abstract int compressBufferInternal(ByteBuffer input, ByteBuffer output) throws IOException;
+    protected abstract int decompressBufferInternal(ByteBuffer compressed, ByteBuffer uncompressed) throws IOException;
+
+    private void accountCompression(int length, int compressedLength, long startNanos) {
+        m_compressNanos.addAndGet(System.nanoTime() - startNanos);
+        m_bytesCompressed.addAndGet(length);
+        m_compressedBytes.addAndGet(compressedLength);
+    }
+
+    private void accountDecompression(int length, long startNanos) {
+        m_decompressNanos.addAndGet(System.nanoTime() - startNanos);
+        m_bytesDecompressed.addAndGet(length);
+    }
+
+    /**
+     * Uncompressed bytes passed to the compressor
+     */
+    public long getBytesCompressed() {
+        return m_bytesCompressed.get();
+    }
+
+    /**
+     * Bytes produced by the compressor
+     */
+    public long getCompressedBytes() {
+        return m_compressedBytes.get();
+    }
+
+    public long getCompressNanos() {
+        return m_compressNanos.get();
+    }
+
+    /**
+     * Uncompressed bytes produced by the decompressor
+     */
+    public long getBytesDecompressed() {
+        return m_bytesDecompressed.get();
+    }
+
+    public long getDecompressNanos() {
+        return m_decompressNanos.get();
+    }
 
+    @Override
+    public String toString() {
+        return m_name;
+    }
 }
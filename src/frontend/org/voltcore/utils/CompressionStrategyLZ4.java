@@ -0,0 +1,190 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltcore.utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Exception;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
+
+/**
+ * LZ4 block compression, using the JNI bindings when they load and the pure Java
+ * implementation otherwise. LZ4 is the fast codec, LZ4HC compresses tighter at a
+ * higher compression cost and decompresses just as fast.
+ *
+ * LZ4 blocks don't record their uncompressed length so each one is prefixed with it.
+ * The bound from {@link #maxCompressedLength(int)} is always below Snappy's, so buffers
+ * sized for Snappy output hold LZ4 output too.
+ */
+public class CompressionStrategyLZ4 extends CompressionStrategy {
+
+    public static final CompressionStrategyLZ4 FAST = new CompressionStrategyLZ4(1, "LZ4", false);
+    public static final CompressionStrategyLZ4 HIGH = new CompressionStrategyLZ4(2, "LZ4HC", true);
+
+    private static final int LENGTH_PREFIX_BYTES = 4;
+
+    // The library only works on arrays, direct buffers are staged through these
+    private static final ThreadLocal<byte[][]> s_scratch = new ThreadLocal<byte[][]>() {
+        @Override
+        protected byte[][] initialValue() {
+            return new byte[2][];
+        }
+    };
+
+    private final LZ4Compressor m_compressor;
+    private final LZ4FastDecompressor m_decompressor;
+
+    private CompressionStrategyLZ4(int id, String name, boolean high) {
+        super(id, name);
+        final LZ4Factory factory = LZ4Factory.fastestInstance();
+        m_compressor = high ? factory.highCompressor() : factory.fastCompressor();
+        m_decompressor = factory.fastDecompressor();
+    }
+
+    private static byte[] scratch(int index, int size) {
+        final byte[][] scratch = s_scratch.get();
+        if (scratch[index] == null || scratch[index].length < size) {
+            scratch[index] = new byte[size];
+        }
+        return scratch[index];
+    }
+
+    @Override
+    public int maxCompressedLength(int uncompressedSize) {
+        return m_compressor.maxCompressedLength(uncompressedSize) + LENGTH_PREFIX_BYTES;
+    }
+
+    @Override
+    public int uncompressedLength(ByteBuffer compressed) throws IOException {
+        if (compressed.remaining() < LENGTH_PREFIX_BYTES) {
+            throw new IOException("LZ4 data is missing its length prefix");
+        }
+        return compressed.getInt(compressed.position());
+    }
+
+    @Override
+    protected byte[] compressBytes(byte data[]) throws IOException {
+        final byte[] compressed = new byte[maxCompressedLength(data.length)];
+        ByteBuffer.wrap(compressed).putInt(data.length);
+        try {
+            final int length = m_compressor.compress(data, 0, data.length,
+                    compressed, LENGTH_PREFIX_BYTES, compressed.length - LENGTH_PREFIX_BYTES);
+            return Arrays.copyOf(compressed, length + LENGTH_PREFIX_BYTES);
+        } catch (LZ4Exception e) {
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    protected byte[] uncompressBytes(byte data[]) throws IOException {
+        final ByteBuffer compressed = ByteBuffer.wrap(data);
+        final byte[] uncompressed = new byte[uncompressedLength(compressed)];
+        decompress(data, LENGTH_PREFIX_BYTES, data.length - LENGTH_PREFIX_BYTES, uncompressed, 0, uncompressed.length);
+        return uncompressed;
+    }
+
+    @Override
+    protected int compressBufferInternal(ByteBuffer input, ByteBuffer output) throws IOException {
+        final int length = input.remaining();
+        final byte[] src;
+        final int srcOffset;
+        if (input.hasArray()) {
+            src = input.array();
+            srcOffset = input.arrayOffset() + input.position();
+        } else {
+            src = scratch(0, length);
+            srcOffset = 0;
+            input.duplicate().get(src, 0, length);
+        }
+
+        final int outPosition = output.position();
+        final int dataPosition = outPosition + LENGTH_PREFIX_BYTES;
+        final int compressedLength;
+        try {
+            if (output.hasArray()) {
+                compressedLength = m_compressor.compress(src, srcOffset, length,
+                        output.array(), output.arrayOffset() + dataPosition, output.limit() - dataPosition);
+            } else {
+                final int maxLength = m_compressor.maxCompressedLength(length);
+                final byte[] dst = scratch(1, maxLength);
+                compressedLength = m_compressor.compress(src, srcOffset, length, dst, 0, maxLength);
+                final ByteBuffer dup = output.duplicate();
+                dup.position(dataPosition);
+                dup.put(dst, 0, compressedLength);
+            }
+        } catch (LZ4Exception e) {
+            throw new IOException(e);
+        }
+        output.putInt(outPosition, length);
+        output.limit(dataPosition + compressedLength);
+        return compressedLength + LENGTH_PREFIX_BYTES;
+    }
+
+    @Override
+    protected int decompressBufferInternal(ByteBuffer compressed, ByteBuffer uncompressed) throws IOException {
+        final int length = uncompressedLength(compressed);
+        final int compressedLength = compressed.remaining() - LENGTH_PREFIX_BYTES;
+        final int outPosition = uncompressed.position();
+        if (length < 0 || length > uncompressed.limit() - outPosition) {
+            throw new IOException("LZ4 data uncompresses to " + length + " bytes, " +
+                    (uncompressed.limit() - outPosition) + " bytes available");
+        }
+
+        final byte[] src;
+        final int srcOffset;
+        if (compressed.hasArray()) {
+            src = compressed.array();
+            srcOffset = compressed.arrayOffset() + compressed.position() + LENGTH_PREFIX_BYTES;
+        } else {
+            src = scratch(0, compressedLength);
+            srcOffset = 0;
+            final ByteBuffer dup = compressed.duplicate();
+            dup.position(dup.position() + LENGTH_PREFIX_BYTES);
+            dup.get(src, 0, compressedLength);
+        }
+
+        if (uncompressed.hasArray()) {
+            decompress(src, srcOffset, compressedLength, uncompressed.array(), uncompressed.arrayOffset() + outPosition, length);
+        } else {
+            final byte[] dst = scratch(1, length);
+            decompress(src, srcOffset, compressedLength, dst, 0, length);
+            final ByteBuffer dup = uncompressed.duplicate();
+            dup.put(dst, 0, length);
+        }
+        uncompressed.limit(outPosition + length);
+        return length;
+    }
+
+    private void decompress(byte[] src, int srcOffset, int srcLength, byte[] dst, int dstOffset, int length)
+            throws IOException {
+        try {
+            final int read = m_decompressor.decompress(src, srcOffset, dst, dstOffset, length);
+            if (read != srcLength) {
+                throw new IOException("Corrupt LZ4 data, used " + read + " of " + srcLength + " compressed bytes");
+            }
+        } catch (LZ4Exception e) {
+            throw new IOException(e);
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IOException("Corrupt LZ4 data", e);
+        }
+    }
+}
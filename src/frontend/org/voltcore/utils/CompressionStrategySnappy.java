@@ -18,26 +18,51 @@
 package org.voltcore.utils;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 import org.xerial.snappy.Snappy;
 
 
 /**
- * Utility class for accessing a variety of com.sun.misc.Unsafe stuff
+ * Snappy, the codec everything was compressed with before codecs could be chosen.
+ * Its id is 0 so formats that predate the codec tag read as Snappy.
  */
 public class CompressionStrategySnappy extends CompressionStrategy {
 
+    public static final int ID = 0;
     public static final CompressionStrategySnappy INSTANCE = new CompressionStrategySnappy();
 
-    private CompressionStrategySnappy() {}
+    private CompressionStrategySnappy() {
+        super(ID, "SNAPPY");
+    }
 
     @Override
-    public byte[] compress(byte data[]) throws IOException {
+    protected byte[] compressBytes(byte data[]) throws IOException {
         return Snappy.compress(data);
     }
 
     @Override
-    public byte[] uncompress(byte data[]) throws IOException {
+    protected byte[] uncompressBytes(byte data[]) throws IOException {
         return Snappy.uncompress(data);
     }
+
+    @Override
+    public int maxCompressedLength(int uncompressedSize) {
+        return Snappy.maxCompressedLength(uncompressedSize);
+    }
+
+    @Override
+    public int uncompressedLength(ByteBuffer compressed) throws IOException {
+        return Snappy.uncompressedLength(compressed);
+    }
+
+    @Override
+    protected int compressBufferInternal(ByteBuffer input, ByteBuffer output) throws IOException {
+        return Snappy.compress(input, output);
+    }
+
+    @Override
+    protected int decompressBufferInternal(ByteBuffer compressed, ByteBuffer uncompressed) throws IOException {
+        return Snappy.uncompress(compressed, uncompressed);
+    }
 }
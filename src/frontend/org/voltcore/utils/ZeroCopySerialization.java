@@ -0,0 +1,44 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltcore.utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.voltcore.utils.DBBPool.BBContainer;
+
+/**
+ * A DeferredSerialization whose serialized form ends with bytes that already sit in a
+ * buffer laid out for the wire. Write streams that understand it serialize only the
+ * leading part and queue the trailing buffer as is. Everyone else calls
+ * {@link #serialize(ByteBuffer)}, which copies the trailing bytes.
+ */
+public interface ZeroCopySerialization extends DeferredSerialization {
+    /**
+     * Called after {@link #getSerializedSize()}. Returns the trailing bytes of the serialized
+     * form, between position and limit, or null if there are none and the message should be
+     * serialized normally. Ownership passes to the caller, which discards the container once
+     * the bytes are written.
+     */
+    BBContainer takeTrailingBuffer();
+
+    /**
+     * Serialize everything before the trailing buffer
+     */
+    void serializeHeader(ByteBuffer buf) throws IOException;
+}
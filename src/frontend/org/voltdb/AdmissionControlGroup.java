@@ -56,6 +56,24 @@ public class AdmissionControlGroup implements org.voltcore.network.QueueMonitor
 
     private static final VoltLogger hostLog = new VoltLogger("HOST");
 
+    /*
+     * In adaptive mode the pending transaction limit moves between MIN and MAX_ADAPTIVE_PENDING_TXNS
+     * following an AIMD rule. Completed transactions are grouped into windows. A window whose
+     * average latency exceeds the lowest window average seen so far by LATENCY_TOLERANCE, or
+     * during which the oldest task queued at a site waited longer than the queue wait target,
+     * multiplies the limit by LIMIT_DECREASE_FACTOR. A window in which the limit was nearly
+     * reached without either happening raises it by LIMIT_INCREASE.
+     */
+    static final boolean ADAPTIVE_ADMISSION_CONTROL =
+            Boolean.valueOf(System.getProperty("ADAPTIVE_ADMISSION_CONTROL", "false"));
+    static final long ADAPTIVE_WINDOW_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    static final int ADAPTIVE_WINDOW_MIN_TXNS = 20;
+    static final double LATENCY_TOLERANCE = 2.0;
+    static final long QUEUE_WAIT_TARGET_NANOS =
+            TimeUnit.MILLISECONDS.toNanos(Integer.getInteger("ADMISSION_CONTROL_QUEUE_WAIT_TARGET_MS", 20));
+    static final double LIMIT_DECREASE_FACTOR = 0.75;
+    static final int LIMIT_INCREASE = 8;
+
     private int m_pendingTxnCount = 0;
     private long m_pendingTxnBytes = 0;
     private boolean m_hadBackPressure = false;
@@ -101,16 +119,46 @@ public class AdmissionControlGroup implements org.voltcore.network.QueueMonitor
 
     private final AbstractHistogram m_latencyInfo = LatencyHistogramStats.constructHistogram(true);
 
+    /*
+     * The pending transaction limit in effect, fixed at MAX_DESIRED_PENDING_TXNS unless adaptive
+     */
+    private final boolean m_adaptive;
+    private final int MIN_ADAPTIVE_PENDING_TXNS;
+    private final int MAX_ADAPTIVE_PENDING_TXNS;
+    private int m_pendingTxnLimit;
+    private int m_lessThanPendingTxnLimit;
+
+    // Current adaptive window
+    private long m_windowStartNanos = System.nanoTime();
+    private long m_windowLatencyMicros = 0;
+    private int m_windowTxns = 0;
+    private int m_windowPeakPendingTxns = 0;
+
+    private long m_baselineLatencyMicros = Long.MAX_VALUE;
+    private long m_lastWindowLatencyMicros = 0;
+    private long m_limitIncreases = 0;
+    private long m_limitDecreases = 0;
+
     public AdmissionControlGroup(int maxBytes, int maxRequests)
+    {
+        this(maxBytes, maxRequests, ADAPTIVE_ADMISSION_CONTROL);
+    }
+
+    public AdmissionControlGroup(int maxBytes, int maxRequests, boolean adaptive)
     {
         MAX_DESIRED_PENDING_BYTES = maxBytes;
         LESS_THAN_MAX_DESIRED_PENDING_BYTES = (int)(MAX_DESIRED_PENDING_BYTES * .8);
         MAX_DESIRED_PENDING_TXNS = maxRequests;
         LESS_THAN_MAX_DESIRED_PENDING_TXNS = (int)(MAX_DESIRED_PENDING_TXNS * .8);
+        m_adaptive = adaptive;
+        MIN_ADAPTIVE_PENDING_TXNS = Math.max(1, maxRequests / 20);
+        MAX_ADAPTIVE_PENDING_TXNS = (int)Math.min(Integer.MAX_VALUE, maxRequests * 4L);
+        m_pendingTxnLimit = MAX_DESIRED_PENDING_TXNS;
+        m_lessThanPendingTxnLimit = LESS_THAN_MAX_DESIRED_PENDING_TXNS;
     }
 
     public static AdmissionControlGroup getDummy() {
-        return new AdmissionControlGroup(Integer.MAX_VALUE, Integer.MAX_VALUE) {
+        return new AdmissionControlGroup(Integer.MAX_VALUE, Integer.MAX_VALUE, false) {
             @Override
             public void addMember(ACGMember member) {}
             @Override
@@ -150,15 +198,30 @@ public class AdmissionControlGroup implements org.voltcore.network.QueueMonitor
         }
         m_pendingTxnBytes += messageSize;
         m_pendingTxnCount++;
+        m_windowPeakPendingTxns = Math.max(m_windowPeakPendingTxns, m_pendingTxnCount);
 
         checkAndLogInvariants();
-        if (m_pendingTxnBytes > MAX_DESIRED_PENDING_BYTES || m_pendingTxnCount > MAX_DESIRED_PENDING_TXNS) {
-            if (!m_hadBackPressure) {
-                hostLog.debug("TXN back pressure began");
-                m_hadBackPressure = true;
-                for (ACGMember m : m_members) {
-                    m.onBackpressure();
-                }
+        if (m_pendingTxnBytes > MAX_DESIRED_PENDING_BYTES || m_pendingTxnCount > m_pendingTxnLimit) {
+            startBackpressure();
+        }
+    }
+
+    private void startBackpressure() {
+        if (!m_hadBackPressure) {
+            hostLog.debug("TXN back pressure began");
+            m_hadBackPressure = true;
+            for (ACGMember m : m_members) {
+                m.onBackpressure();
+            }
+        }
+    }
+
+    private void endBackpressure() {
+        if (m_hadBackPressure) {
+            hostLog.debug("TXN backpressure ended");
+            m_hadBackPressure = false;
+            for (ACGMember m : m_members) {
+                m.offBackpressure();
             }
         }
     }
@@ -214,15 +277,9 @@ public class AdmissionControlGroup implements org.voltcore.network.QueueMonitor
         checkAndLogInvariants();
 
         if ((m_pendingTxnBytes < LESS_THAN_MAX_DESIRED_PENDING_BYTES) &&
-            (m_pendingTxnCount < LESS_THAN_MAX_DESIRED_PENDING_TXNS))
+            (m_pendingTxnCount < m_lessThanPendingTxnLimit))
         {
-            if (m_hadBackPressure) {
-                hostLog.debug("TXN backpressure ended");
-                m_hadBackPressure = false;
-                for (ACGMember m : m_members) {
-                    m.offBackpressure();
-                }
-            }
+            endBackpressure();
         }
     }
 
@@ -257,23 +314,11 @@ public class AdmissionControlGroup implements org.voltcore.network.QueueMonitor
         checkAndLogInvariants();
 
         if (m_pendingTxnBytes > MAX_DESIRED_PENDING_BYTES) {
-            if (!m_hadBackPressure) {
-                hostLog.debug("TXN back pressure began");
-                m_hadBackPressure = true;
-                for (ACGMember m : m_members) {
-                    m.onBackpressure();
-                }
-            }
+            startBackpressure();
         }
         else if ((m_pendingTxnBytes < LESS_THAN_MAX_DESIRED_PENDING_BYTES) &&
-                (m_pendingTxnCount < LESS_THAN_MAX_DESIRED_PENDING_TXNS)) {
-            if (m_hadBackPressure) {
-                hostLog.debug("TXN backpressure ended");
-                m_hadBackPressure = false;
-                for (ACGMember m : m_members) {
-                    m.offBackpressure();
-                }
-            }
+                (m_pendingTxnCount < m_lessThanPendingTxnLimit)) {
+            endBackpressure();
         }
 
         return false;
@@ -300,13 +345,106 @@ public class AdmissionControlGroup implements org.voltcore.network.QueueMonitor
         // ENG-7209 This is to not log the latency value for a snapshot restore, as this just creates
         // a large initial value in the graph which is not actually relevant to the user.
         if (!procedureName.equals("@SnapshotRestore")) {
-            m_latencyInfo.recordValue(Math.max(1, Math.min(TimeUnit.NANOSECONDS.toMicros(deltaNanos), m_latencyInfo.getHighestTrackableValue())));
+            final long latencyMicros = TimeUnit.NANOSECONDS.toMicros(deltaNanos);
+            m_latencyInfo.recordValue(Math.max(1, Math.min(latencyMicros, m_latencyInfo.getHighestTrackableValue())));
+            if (m_adaptive) {
+                adaptPendingTxnLimit(latencyMicros, System.nanoTime());
+            }
         }
         if (needToInsert) {
             m_connectionStates.put(connectionId, procInfoMap);
         }
     }
 
+    /*
+     * Add a completed transaction to the current window and adjust the limit once the window is over
+     */
+    void adaptPendingTxnLimit(long latencyMicros, long nowNanos) {
+        assert(m_expectedThreadId == Thread.currentThread().getId());
+        m_windowLatencyMicros += latencyMicros;
+        m_windowTxns++;
+        if (m_windowTxns < ADAPTIVE_WINDOW_MIN_TXNS || nowNanos - m_windowStartNanos < ADAPTIVE_WINDOW_NANOS) {
+            return;
+        }
+
+        final long windowLatencyMicros = m_windowLatencyMicros / m_windowTxns;
+        m_lastWindowLatencyMicros = windowLatencyMicros;
+        if (windowLatencyMicros < m_baselineLatencyMicros) {
+            m_baselineLatencyMicros = windowLatencyMicros;
+        } else {
+            // Let the baseline creep up so one unusually fast window isn't the reference forever
+            m_baselineLatencyMicros += (windowLatencyMicros - m_baselineLatencyMicros) / 256;
+        }
+
+        if (windowLatencyMicros > m_baselineLatencyMicros * LATENCY_TOLERANCE ||
+            QueueDepthTracker.getMaxCurrentWaitNanos() > QUEUE_WAIT_TARGET_NANOS) {
+            setPendingTxnLimit((int)(m_pendingTxnLimit * LIMIT_DECREASE_FACTOR));
+        } else if (m_windowPeakPendingTxns >= m_lessThanPendingTxnLimit) {
+            setPendingTxnLimit(m_pendingTxnLimit + LIMIT_INCREASE);
+        }
+
+        m_windowStartNanos = nowNanos;
+        m_windowLatencyMicros = 0;
+        m_windowTxns = 0;
+        m_windowPeakPendingTxns = m_pendingTxnCount;
+    }
+
+    private void setPendingTxnLimit(int limit) {
+        limit = Math.max(MIN_ADAPTIVE_PENDING_TXNS, Math.min(MAX_ADAPTIVE_PENDING_TXNS, limit));
+        if (limit == m_pendingTxnLimit) {
+            return;
+        }
+        if (limit > m_pendingTxnLimit) {
+            m_limitIncreases++;
+        } else {
+            m_limitDecreases++;
+        }
+        m_pendingTxnLimit = limit;
+        m_lessThanPendingTxnLimit = (int)(limit * .8);
+
+        if (m_pendingTxnCount > m_pendingTxnLimit) {
+            startBackpressure();
+        } else if ((m_pendingTxnBytes < LESS_THAN_MAX_DESIRED_PENDING_BYTES) &&
+                   (m_pendingTxnCount < m_lessThanPendingTxnLimit)) {
+            endBackpressure();
+        }
+    }
+
+    public boolean isAdaptive() {
+        return m_adaptive;
+    }
+
+    public int getPendingTxnCount() {
+        return m_pendingTxnCount;
+    }
+
+    public int getPendingTxnLimit() {
+        return m_pendingTxnLimit;
+    }
+
+    /**
+     * @return average latency in microseconds of the lowest latency window, or 0 if none completed
+     */
+    public long getBaselineLatencyMicros() {
+        return m_baselineLatencyMicros == Long.MAX_VALUE ? 0 : m_baselineLatencyMicros;
+    }
+
+    public long getLastWindowLatencyMicros() {
+        return m_lastWindowLatencyMicros;
+    }
+
+    public long getLimitIncreases() {
+        return m_limitIncreases;
+    }
+
+    public long getLimitDecreases() {
+        return m_limitDecreases;
+    }
+
+    public long getThreadId() {
+        return m_expectedThreadId;
+    }
+
     public Iterator<Map.Entry<Long, Map<String, InvocationInfo>>> getInitiationStatsIterator() {
         return m_connectionStates.entrySet().iterator();
     }
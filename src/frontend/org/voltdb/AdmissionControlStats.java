@@ -0,0 +1,86 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.voltdb.VoltTable.ColumnInfo;
+
+/**
+ * Reports the state of each admission control group of the client interface,
+ * one per network thread, as @Statistics ADMISSION. The pending transaction
+ * limit only moves when adaptive admission control is enabled.
+ */
+public class AdmissionControlStats extends StatsSource
+{
+    private List<AdmissionControlGroup> m_groups = new ArrayList<AdmissionControlGroup>();
+
+    public AdmissionControlStats() {
+        super(false);
+    }
+
+    @Override
+    protected void populateColumnSchema(ArrayList<ColumnInfo> columns) {
+        super.populateColumnSchema(columns);
+        columns.add(new ColumnInfo("THREAD_ID", VoltType.BIGINT));
+        columns.add(new ColumnInfo("ADAPTIVE", VoltType.TINYINT));
+        columns.add(new ColumnInfo("PENDING_TXNS", VoltType.INTEGER));
+        columns.add(new ColumnInfo("PENDING_BYTES", VoltType.BIGINT));
+        columns.add(new ColumnInfo("TXN_LIMIT", VoltType.INTEGER));
+        columns.add(new ColumnInfo("BACKPRESSURE", VoltType.TINYINT));
+        columns.add(new ColumnInfo("BASELINE_LATENCY", VoltType.BIGINT));
+        columns.add(new ColumnInfo("RECENT_LATENCY", VoltType.BIGINT));
+        columns.add(new ColumnInfo("LIMIT_INCREASES", VoltType.BIGINT));
+        columns.add(new ColumnInfo("LIMIT_DECREASES", VoltType.BIGINT));
+    }
+
+    @Override
+    protected void updateStatsRow(Object rowKey, Object[] rowValues) {
+        // The groups are read without synchronizing with their network threads
+        final AdmissionControlGroup acg = m_groups.get((Integer)rowKey);
+        rowValues[columnNameToIndex.get("THREAD_ID")] = acg.getThreadId();
+        rowValues[columnNameToIndex.get("ADAPTIVE")] = (byte)(acg.isAdaptive() ? 1 : 0);
+        rowValues[columnNameToIndex.get("PENDING_TXNS")] = acg.getPendingTxnCount();
+        rowValues[columnNameToIndex.get("PENDING_BYTES")] = acg.getPendingBytes();
+        rowValues[columnNameToIndex.get("TXN_LIMIT")] = acg.getPendingTxnLimit();
+        rowValues[columnNameToIndex.get("BACKPRESSURE")] = (byte)(acg.hasBackPressure() ? 1 : 0);
+        // latencies are in microseconds
+        rowValues[columnNameToIndex.get("BASELINE_LATENCY")] = acg.getBaselineLatencyMicros();
+        rowValues[columnNameToIndex.get("RECENT_LATENCY")] = acg.getLastWindowLatencyMicros();
+        rowValues[columnNameToIndex.get("LIMIT_INCREASES")] = acg.getLimitIncreases();
+        rowValues[columnNameToIndex.get("LIMIT_DECREASES")] = acg.getLimitDecreases();
+        super.updateStatsRow(rowKey, rowValues);
+    }
+
+    @Override
+    protected Iterator<Object> getStatsRowKeyIterator(boolean interval)
+    {
+        m_groups = new ArrayList<AdmissionControlGroup>();
+        ClientInterface ci = VoltDB.instance().getClientInterface();
+        if (ci != null) {
+            m_groups.addAll(ci.getAdmissionControlGroups());
+        }
+        final List<Object> keys = new ArrayList<Object>();
+        for (int i = 0; i < m_groups.size(); i++) {
+            keys.add(i);
+        }
+        return keys.iterator();
+    }
+}
@@ -39,6 +39,7 @@ import org.voltdb.catalog.Deployment;
 import org.voltdb.catalog.Procedure;
 import org.voltdb.catalog.SnapshotSchedule;
 import org.voltdb.catalog.Table;
+import org.voltdb.compiler.PlannerPool;
 import org.voltdb.compiler.PlannerTool;
 import org.voltdb.compiler.deploymentfile.DeploymentType;
 import org.voltdb.settings.ClusterSettings;
@@ -127,7 +128,9 @@ public class CatalogContext {
     // Default procs are loaded on the fly
     public final DefaultProcedureManager m_defaultProcs;
 
-    // Planner associated with this catalog version, Not thread-safe
+    // Planners associated with this catalog version, used for ad hoc SQL
+    public final PlannerPool m_plannerPool;
+    // Primary planner of the pool, synchronized
     public final PlannerTool m_ptool;
     public final JdbcDatabaseMetaDataGenerator m_jdbc;
     public final HostMessenger m_messenger;
@@ -139,7 +142,7 @@ public class CatalogContext {
 
     /**
      * Constructor especially used during @CatalogContext update when @param hasSchemaChange is false.
-     * When @param hasSchemaChange is true, @param defaultProcManager and @param plannerTool will be created as new.
+     * When @param hasSchemaChange is true, @param defaultProcManager and @param plannerPool will be created as new.
      * Otherwise, it will try to use the ones passed in to save CPU cycles for performance reason.
      * @param genId
      * @param catalog
@@ -149,7 +152,7 @@ public class CatalogContext {
      * @param messenger
      * @param hasSchemaChange
      * @param defaultProcManager
-     * @param plannerTool
+     * @param plannerPool
      */
     public CatalogContext(
             Catalog catalog,
@@ -158,7 +161,7 @@ public class CatalogContext {
             long genId,
             CatalogInfo catalogInfo,
             DefaultProcedureManager defaultProcManager,
-            PlannerTool plannerTool,
+            PlannerPool plannerPool,
             HostMessenger messenger,
             boolean hasSchemaChange)
     {
@@ -189,11 +192,12 @@ public class CatalogContext {
         // by applying the existing schema, which are costly in the UAC MP blocking path.
         if (hasSchemaChange) {
             m_defaultProcs = new DefaultProcedureManager(database);
-            m_ptool = new PlannerTool(database, m_catalogInfo.m_catalogHash);
+            m_plannerPool = new PlannerPool(database, m_catalogInfo.m_catalogHash);
         } else {
             m_defaultProcs = defaultProcManager;
-            m_ptool = plannerTool.updateWhenNoSchemaChange(database, m_catalogInfo.m_catalogHash);;
+            m_plannerPool = plannerPool.updateWhenNoSchemaChange(database, m_catalogInfo.m_catalogHash);
         }
+        m_ptool = m_plannerPool.getPrimary();
 
         m_jdbc = new JdbcDatabaseMetaDataGenerator(catalog, m_defaultProcs, m_catalogInfo.m_jarfile);
         m_messenger = messenger;
@@ -292,7 +296,7 @@ public class CatalogContext {
                     genId,
                     catalogInfo,
                     m_defaultProcs,
-                    m_ptool,
+                    m_plannerPool,
                     messenger,
                     hasSchemaChange);
         return retval;
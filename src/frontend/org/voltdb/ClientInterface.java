@@ -69,10 +69,12 @@ import org.voltcore.network.VoltPort;
 import org.voltcore.network.VoltProtocolHandler;
 import org.voltcore.network.WriteStream;
 import org.voltcore.utils.CoreUtils;
+import org.voltcore.utils.DBBPool.BBContainer;
 import org.voltcore.utils.DeferredSerialization;
 import org.voltcore.utils.EstTime;
 import org.voltcore.utils.Pair;
 import org.voltcore.utils.RateLimitedLogger;
+import org.voltcore.utils.ZeroCopySerialization;
 import org.voltcore.utils.ssl.MessagingChannel;
 import org.voltcore.utils.ssl.SSLConfiguration;
 import org.voltdb.AuthSystem.AuthProvider;
@@ -903,11 +905,17 @@ public class ClientInterface implements SnapshotDaemon.DaemonInitiator {
      * Runs on the network thread to prepare client response. If a transaction needs to be
      * restarted, it will get restarted here.
      */
-    public class ClientResponseWork implements DeferredSerialization {
+    /**
+     * Writes a transaction response to its client. When the result tables were left
+     * in a pooled direct buffer by the site the network thread writes them straight from
+     * there, see {@link ClientResponseImpl#setPooledResults}.
+     */
+    public class ClientResponseWork implements ZeroCopySerialization {
         private final ClientInterfaceHandleManager cihm;
         private final InitiateResponseMessage response;
         private final Procedure catProc;
         private ClientResponseImpl clientResponse;
+        private int serializedSize = 0;
 
         private ClientResponseWork(InitiateResponseMessage response,
                                    ClientInterfaceHandleManager cihm,
@@ -924,14 +932,38 @@ public class ClientInterface implements SnapshotDaemon.DaemonInitiator {
         {
             buf.putInt(buf.capacity() - 4);
             clientResponse.flattenToBuffer(buf);
+            clientResponse.releasePooledResults();
+        }
+
+        @Override
+        public BBContainer takeTrailingBuffer() {
+            return clientResponse.takePooledResults();
+        }
+
+        @Override
+        public void serializeHeader(ByteBuffer buf) throws IOException
+        {
+            buf.putInt(serializedSize - 4);
+            clientResponse.flattenHeaderToBuffer(buf);
         }
 
         @Override
         public void cancel() {
+            if (clientResponse != null) {
+                clientResponse.releasePooledResults();
+            }
         }
 
         @Override
         public int getSerializedSize() throws IOException {
+            serializedSize = computeSerializedSize();
+            if (serializedSize == DeferredSerialization.EMPTY_MESSAGE_LENGTH) {
+                cancel();
+            }
+            return serializedSize;
+        }
+
+        private int computeSerializedSize() {
             // HACK-O-RIFFIC
             // For now, figure out if this is a transaction that was ignored
             // by the ReplaySequencer and just remove the handle from the CIHM
@@ -1183,6 +1215,8 @@ public class ClientInterface implements SnapshotDaemon.DaemonInitiator {
                         //Pass it to the network thread like a ninja
                         //Only the network can use the CIHM
                         cihm.connection.writeStream().fastEnqueue(new ClientResponseWork(response, cihm, procedure));
+                    } else if (response.getClientResponseData() != null) {
+                        response.getClientResponseData().releasePooledResults();
                     }
                 }
                 else if (message instanceof BinaryPayloadMessage) {
@@ -1966,6 +2000,10 @@ public class ClientInterface implements SnapshotDaemon.DaemonInitiator {
         return statsIterators;
     }
 
+    public List<AdmissionControlGroup> getAdmissionControlGroups() {
+        return new ArrayList<AdmissionControlGroup>(m_allACGs);
+    }
+
     public List<AbstractHistogram> getLatencyStats() {
         List<AbstractHistogram> latencyStats = new ArrayList<AbstractHistogram>();
         for (AdmissionControlGroup acg : m_allACGs) {
@@ -24,6 +24,8 @@ import java.util.concurrent.TimeUnit;
 import org.json_voltpatches.JSONException;
 import org.json_voltpatches.JSONString;
 import org.json_voltpatches.JSONStringer;
+import org.voltcore.utils.DBBPool.BBContainer;
+import org.voltcore.utils.DBBPool.RefCountedContainer;
 import org.voltdb.client.ClientResponse;
 import org.voltdb.client.ClientUtils;
 import org.voltdb.common.Constants;
@@ -44,6 +46,9 @@ public class ClientResponseImpl implements ClientResponse, JSONString {
     private byte encodedAppStatusString[];
     private VoltTable[] results = new VoltTable[0];
     private int[] m_hashes = null;
+    // The flattened result tables when they live in a pooled direct buffer, see setPooledResults()
+    private RefCountedContainer m_pooledResults = null;
+    private int m_pooledResultsSize = 0;
 
     private int clusterRoundTripTime = 0;
     private int clientRoundTripTime = 0;
@@ -222,6 +227,20 @@ public class ClientResponseImpl implements ClientResponse, JSONString {
      * @return buf to allow call chaining.
      */
     public ByteBuffer flattenToBuffer(ByteBuffer buf) {
+        flattenHeaderToBuffer(buf);
+        for (VoltTable vt : results)
+        {
+            vt.flattenToBuffer(buf);
+        }
+        return buf;
+    }
+
+    /**
+     * Serialize everything up to and including the result table count. The flattened
+     * tables follow it on the wire.
+     * @return buf to allow call chaining.
+     */
+    public ByteBuffer flattenHeaderToBuffer(ByteBuffer buf) {
         assert setProperly;
         buf.put((byte)0); //version
         buf.putLong(clientHandle);
@@ -255,13 +274,51 @@ public class ClientResponseImpl implements ClientResponse, JSONString {
             }
         }
         buf.putShort((short) results.length);
-        for (VoltTable vt : results)
-        {
-            vt.flattenToBuffer(buf);
-        }
         return buf;
     }
 
+    /**
+     * Record that the result tables are views of a pooled direct buffer holding them
+     * flattened back to back, as they appear on the wire. The response takes over the
+     * caller's reference and gives it up in {@link #takePooledResults()} or
+     * {@link #releasePooledResults()}.
+     */
+    public void setPooledResults(RefCountedContainer pooled, int size) {
+        assert m_pooledResults == null;
+        m_pooledResults = pooled;
+        m_pooledResultsSize = size;
+    }
+
+    public boolean hasPooledResults() {
+        return m_pooledResults != null;
+    }
+
+    /**
+     * Hand the flattened result tables to a writer. The returned container holds its own
+     * reference to the pooled buffer, so the tables stay readable until it is discarded.
+     * @return null if the results are not pooled
+     */
+    public BBContainer takePooledResults() {
+        if (m_pooledResults == null) {
+            return null;
+        }
+        final BBContainer flattened = m_pooledResults.retain(0, m_pooledResultsSize);
+        releasePooledResults();
+        return flattened;
+    }
+
+    /**
+     * Drop this response's reference to the pooled results. The result tables must not be
+     * read afterwards unless someone else still holds a reference.
+     */
+    public void releasePooledResults() {
+        if (m_pooledResults != null) {
+            m_pooledResults.discard();
+            m_pooledResults = null;
+            m_pooledResultsSize = 0;
+        }
+    }
+
     @Override
     public int getClusterRoundtrip() {
         return clusterRoundTripTime;
@@ -347,6 +404,7 @@ public class ClientResponseImpl implements ClientResponse, JSONString {
     }
 
     public void dropResultTable() {
+        releasePooledResults();
         results = new VoltTable[] {};
     }
 }
@@ -173,6 +173,11 @@ public interface CommandLog {
          * @param completionChecks
          */
         void processDurabilityChecks(CompletionChecks completionChecks);
+
+        /**
+         * The partition of the scheduler that owns this listener
+         */
+        public int getPartitionId();
     }
 
     /**
@@ -0,0 +1,99 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.voltcore.utils.CompressionCodecs;
+import org.voltcore.utils.CompressionStrategy;
+import org.voltdb.VoltTable.ColumnInfo;
+
+/**
+ * Reports the work done by each compression codec on this host as
+ * @Statistics COMPRESSION. Times are the wall clock time spent inside
+ * the codec by the calling threads, in milliseconds.
+ */
+public class CompressionStats extends StatsSource
+{
+    private static final int BYTES_COMPRESSED = 0;
+    private static final int COMPRESSED_BYTES = 1;
+    private static final int COMPRESS_NANOS = 2;
+    private static final int BYTES_DECOMPRESSED = 3;
+    private static final int DECOMPRESS_NANOS = 4;
+
+    // Counter values at the last interval poll, per codec id
+    private final Map<Integer, long[]> m_lastInterval = new HashMap<Integer, long[]>();
+    private boolean m_interval = false;
+
+    public CompressionStats() {
+        super(false);
+    }
+
+    @Override
+    protected void populateColumnSchema(ArrayList<ColumnInfo> columns) {
+        super.populateColumnSchema(columns);
+        columns.add(new ColumnInfo("CODEC", VoltType.STRING));
+        columns.add(new ColumnInfo("BYTES_COMPRESSED", VoltType.BIGINT));
+        columns.add(new ColumnInfo("COMPRESSED_BYTES", VoltType.BIGINT));
+        columns.add(new ColumnInfo("COMPRESSION_RATIO", VoltType.FLOAT));
+        columns.add(new ColumnInfo("COMPRESS_TIME", VoltType.BIGINT));
+        columns.add(new ColumnInfo("BYTES_DECOMPRESSED", VoltType.BIGINT));
+        columns.add(new ColumnInfo("DECOMPRESS_TIME", VoltType.BIGINT));
+    }
+
+    private static long[] counters(CompressionStrategy codec) {
+        return new long[] { codec.getBytesCompressed(), codec.getCompressedBytes(), codec.getCompressNanos(),
+                            codec.getBytesDecompressed(), codec.getDecompressNanos() };
+    }
+
+    @Override
+    protected void updateStatsRow(Object rowKey, Object[] rowValues) {
+        final CompressionStrategy codec = (CompressionStrategy)rowKey;
+        final long[] values = counters(codec);
+        if (m_interval) {
+            final long[] last = m_lastInterval.put(codec.id(), values.clone());
+            if (last != null) {
+                for (int i = 0; i < values.length; i++) {
+                    values[i] -= last[i];
+                }
+            }
+        }
+        rowValues[columnNameToIndex.get("CODEC")] = codec.name();
+        rowValues[columnNameToIndex.get("BYTES_COMPRESSED")] = values[BYTES_COMPRESSED];
+        rowValues[columnNameToIndex.get("COMPRESSED_BYTES")] = values[COMPRESSED_BYTES];
+        rowValues[columnNameToIndex.get("COMPRESSION_RATIO")] = values[COMPRESSED_BYTES] == 0 ?
+                0.0 : (double)values[BYTES_COMPRESSED] / values[COMPRESSED_BYTES];
+        rowValues[columnNameToIndex.get("COMPRESS_TIME")] = TimeUnit.NANOSECONDS.toMillis(values[COMPRESS_NANOS]);
+        rowValues[columnNameToIndex.get("BYTES_DECOMPRESSED")] = values[BYTES_DECOMPRESSED];
+        rowValues[columnNameToIndex.get("DECOMPRESS_TIME")] = TimeUnit.NANOSECONDS.toMillis(values[DECOMPRESS_NANOS]);
+        super.updateStatsRow(rowKey, rowValues);
+    }
+
+    @Override
+    protected Iterator<Object> getStatsRowKeyIterator(boolean interval)
+    {
+        m_interval = interval;
+        final List<Object> keys = new ArrayList<Object>(CompressionCodecs.codecs());
+        return keys.iterator();
+    }
+}
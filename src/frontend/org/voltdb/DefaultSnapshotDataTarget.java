@@ -41,6 +41,8 @@ import org.json_voltpatches.JSONObject;
 import org.json_voltpatches.JSONStringer;
 import org.voltcore.logging.VoltLogger;
 import org.voltcore.utils.Bits;
+import org.voltcore.utils.CompressionCodecs;
+import org.voltcore.utils.CompressionStrategy;
 import org.voltcore.utils.CoreUtils;
 import org.voltcore.utils.DBBPool;
 import org.voltcore.utils.DBBPool.BBContainer;
@@ -111,6 +113,9 @@ public class DefaultSnapshotDataTarget implements SnapshotDataTarget {
 
     public static final int SNAPSHOT_SYNC_FREQUENCY = Integer.getInteger("SNAPSHOT_SYNC_FREQUENCY", 500);
     public static final int SNAPSHOT_FADVISE_BYTES = Integer.getInteger("SNAPSHOT_FADVISE_BYTES", 1024 * 1024 * 2);
+    // Recorded in the table header, restore reads whichever codec wrote the file
+    public static final CompressionStrategy SNAPSHOT_COMPRESSION_CODEC =
+            CompressionCodecs.forName(System.getProperty("SNAPSHOT_COMPRESSION_CODEC", "SNAPPY"));
     public static final int SNAPSHOT_RATELIMIT_MEGABYTES;
     public static final boolean USE_SNAPSHOT_RATELIMIT;
 
@@ -163,7 +168,44 @@ public class DefaultSnapshotDataTarget implements SnapshotDataTarget {
                 schemaTable,
                 txnId,
                 timestamp,
-                new int[] { 0, 0, 0, 2 });
+                new int[] { 0, 0, 0, 2 },
+                null);
+    }
+
+    /**
+     * Create a target for a table that is unchanged since an earlier snapshot. No rows are
+     * written, the header names the file of the earlier snapshot that holds them instead.
+     * The base file must be in the same directory. Only its name is recorded, so the
+     * snapshot directory can be copied or moved as a whole.
+     * The target is always closed by the snapshot terminator since no site writes to it.
+     */
+    public DefaultSnapshotDataTarget(
+            final File file,
+            final int hostId,
+            final String clusterName,
+            final String databaseName,
+            final String tableName,
+            final int numPartitions,
+            final boolean isReplicated,
+            final List<Integer> partitionIds,
+            final VoltTable schemaTable,
+            final long txnId,
+            final long timestamp,
+            final File baseFile) throws IOException {
+        this(
+                file,
+                hostId,
+                clusterName,
+                databaseName,
+                tableName,
+                numPartitions,
+                isReplicated,
+                partitionIds,
+                schemaTable,
+                txnId,
+                timestamp,
+                new int[] { 0, 0, 0, 2 },
+                baseFile);
     }
 
     public DefaultSnapshotDataTarget(
@@ -180,12 +222,45 @@ public class DefaultSnapshotDataTarget implements SnapshotDataTarget {
             final long timestamp,
             int version[]
             ) throws IOException {
+        this(
+                file,
+                hostId,
+                clusterName,
+                databaseName,
+                tableName,
+                numPartitions,
+                isReplicated,
+                partitionIds,
+                schemaTable,
+                txnId,
+                timestamp,
+                version,
+                null);
+    }
+
+    private DefaultSnapshotDataTarget(
+            final File file,
+            final int hostId,
+            final String clusterName,
+            final String databaseName,
+            final String tableName,
+            final int numPartitions,
+            final boolean isReplicated,
+            final List<Integer> partitionIds,
+            final VoltTable schemaTable,
+            final long txnId,
+            final long timestamp,
+            int version[],
+            final File baseFile
+            ) throws IOException {
+        assert(baseFile == null ||
+                baseFile.getAbsoluteFile().getParentFile().equals(file.getAbsoluteFile().getParentFile()));
         String hostname = CoreUtils.getHostnameOrAddress();
         m_file = file;
         m_tableName = tableName;
         m_fos = new FileOutputStream(file);
         m_channel = m_fos.getChannel();
-        m_needsFinalClose = !isReplicated;
+        m_needsFinalClose = !isReplicated || baseFile != null;
         final FastSerializer fs = new FastSerializer();
         fs.writeInt(0);//CRC
         fs.writeInt(0);//Header length placeholder
@@ -205,6 +280,7 @@ public class DefaultSnapshotDataTarget implements SnapshotDataTarget {
             stringer.keySymbolValuePair("tableName", tableName.toUpperCase());
             stringer.keySymbolValuePair("isReplicated", isReplicated);
             stringer.keySymbolValuePair("isCompressed", true);
+            stringer.keySymbolValuePair("compressionCodec", SNAPSHOT_COMPRESSION_CODEC.name());
             stringer.keySymbolValuePair("checksumType", "CRC32C");
             stringer.keySymbolValuePair("timestamp", timestamp);
             /*
@@ -221,6 +297,9 @@ public class DefaultSnapshotDataTarget implements SnapshotDataTarget {
 
                 stringer.keySymbolValuePair("numPartitions", numPartitions);
             }
+            if (baseFile != null) {
+                stringer.keySymbolValuePair("baseFile", baseFile.getName());
+            }
             stringer.endObject();
             String jsonString = stringer.toString();
             JSONObject jsonObj = new JSONObject(jsonString);
@@ -445,7 +524,7 @@ public class DefaultSnapshotDataTarget implements SnapshotDataTarget {
              * that is 16 bytes, but 4 of those are done by CompressionService
              */
             cont.b().position(12);
-            compressionTask = CompressionService.compressAndCRC32cBufferAsync(tupleData, cont);
+            compressionTask = CompressionService.compressAndCRC32cBufferAsync(SNAPSHOT_COMPRESSION_CODEC, tupleData, cont);
         }
         final Future<BBContainer> compressionTaskFinal = compressionTask;
 
@@ -59,6 +59,12 @@ public class ExtensibleSnapshotDigestData {
      */
     private long m_terminus;
 
+    /**
+     * For an incremental snapshot, the snapshot it is based on and the tables whose
+     * data is read from that snapshot's files. Null if every table was written.
+     */
+    private JSONObject m_incrementalBase = null;
+
     public ExtensibleSnapshotDigestData(
             Map<String, Map<Integer, Pair<Long, Long>>> exportSequenceNumbers,
             Map<Integer, TupleStreamStateInfo> drTupleStreamInfo,
@@ -315,9 +321,21 @@ public class ExtensibleSnapshotDigestData {
         }
     }
 
+    private void writeIncrementalBaseToSnapshot(JSONStringer stringer) throws IOException {
+        if (m_incrementalBase == null) {
+            return;
+        }
+        try {
+            stringer.key("incrementalBase").value(m_incrementalBase);
+        } catch (JSONException e) {
+            throw new IOException(e);
+        }
+    }
+
     public void writeToSnapshotDigest(JSONStringer stringer) throws IOException {
         writeExportSequenceNumbersToSnapshot(stringer);
         writeDRStateToSnapshot(stringer);
+        writeIncrementalBaseToSnapshot(stringer);
     }
 
     public void mergeToZooKeeper(JSONObject jsonObj, VoltLogger log) throws JSONException {
@@ -330,4 +348,8 @@ public class ExtensibleSnapshotDigestData {
     public long getTerminus() {
         return m_terminus;
     }
+
+    public void setIncrementalBase(JSONObject incrementalBase) {
+        m_incrementalBase = incrementalBase;
+    }
 }
@@ -0,0 +1,792 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+import org.apache.zookeeper_voltpatches.CreateMode;
+import org.apache.zookeeper_voltpatches.KeeperException;
+import org.apache.zookeeper_voltpatches.ZooDefs.Ids;
+import org.voltcore.logging.VoltLogger;
+import org.voltcore.utils.InstanceId;
+import org.voltcore.utils.Pair;
+import org.voltdb.iv2.TransactionTask;
+import org.voltdb.messaging.Iv2InitiateTaskMessage;
+import org.voltdb.messaging.VoltDbMessageFactory;
+
+import com.google_voltpatches.common.util.concurrent.Futures;
+import com.google_voltpatches.common.util.concurrent.ListenableFuture;
+import com.google_voltpatches.common.util.concurrent.SettableFuture;
+
+/**
+ * Command log that appends initiate task messages to per-host segment files
+ * and makes them durable with group commit: a single writer thread collects
+ * everything logged since the previous flush, writes it with one gathering
+ * write and covers the whole batch with one fsync. The flush happens when the
+ * configured fsync interval has elapsed since the previous one, or earlier if
+ * the configured maximum number of transactions is waiting.
+ *
+ * In synchronous mode the scheduler does not offer a task until the batch
+ * holding it has been fsynced; the durability listener's completion checks
+ * release the tasks. In asynchronous mode tasks run immediately and the
+ * returned future only applies backpressure when the writer falls behind.
+ *
+ * Segment files are replayed by {@link GroupCommitCommandLogReinitiator}.
+ */
+public class GroupCommitCommandLog implements CommandLog, SnapshotCompletionInterest {
+    private static final VoltLogger LOG = new VoltLogger("LOGGING");
+
+    static final String SEGMENT_PREFIX = "command_log_";
+    static final String SEGMENT_SUFFIX = ".vcl";
+    private static final Pattern SEGMENT_PATTERN =
+            Pattern.compile(Pattern.quote(SEGMENT_PREFIX) + "(\\d+)" + Pattern.quote(SEGMENT_SUFFIX));
+
+    static final int SEGMENT_MAGIC = 0x56434C47; // "VCLG"
+    static final int SEGMENT_VERSION = 1;
+    static final byte RECORD_TXN = 1;
+    static final byte RECORD_FAULT = 2;
+
+    // A segment is rolled once it grows past this size
+    static final long SEGMENT_BYTES = 64L * 1024 * 1024;
+
+    private static final ListenableFuture<Object> DURABLE_FUTURE = Futures.immediateFuture(null);
+
+    private final boolean m_synchronous;
+    private final int m_fsyncInterval;
+    private final int m_maxTxns;
+    private final File m_logDir;
+
+    /*
+     * Everything logged since the last flush, guarded by m_lock. The writer
+     * swaps these out under the lock and does the IO without holding it.
+     */
+    private final Object m_lock = new Object();
+    private ArrayList<ByteBuffer> m_pendingRecords = new ArrayList<ByteBuffer>();
+    private ArrayList<SettableFuture<Boolean>> m_pendingFaults = new ArrayList<SettableFuture<Boolean>>();
+    private Set<DurabilityListener> m_pendingListeners =
+            Collections.newSetFromMap(new IdentityHashMap<DurabilityListener, Boolean>());
+    private long m_pendingBytes = 0;
+    private int m_pendingTxns = 0;
+    private SettableFuture<Object> m_backpressureFuture = null;
+    private boolean m_shutdown = false;
+
+    private final Thread m_writer;
+    private volatile boolean m_initialized = false;
+
+    // Segment state, only touched by the writer thread once initialized
+    private int m_hostId;
+    private InstanceId m_instanceId;
+    private long m_initialTxnId;
+    private Map<Integer, Long> m_initialPartitionTxnIds = new TreeMap<Integer, Long>();
+    private long m_logSizeBytes;
+    private FileChannel m_channel = null;
+    private volatile long m_currentSegmentId = 0;
+    private long m_currentSegmentBytes = 0;
+    private final TreeMap<Long, Long> m_liveSegments = new TreeMap<Long, Long>();
+    private volatile int m_liveSegmentCount = 0;
+
+    // Truncation bookkeeping
+    private final Object m_truncationLock = new Object();
+    private boolean m_truncationPending = false;
+    private long m_truncationBoundary = -1;
+    private volatile long m_truncatableBoundary = -1;
+
+    // Statistics, written by the writer thread only
+    private volatile long m_batchCount = 0;
+    private volatile long m_batchedTxnCount = 0;
+    private volatile long m_fsyncCount = 0;
+    private volatile long m_totalFsyncNanos = 0;
+    private volatile long m_maxFsyncNanos = 0;
+    private volatile long m_firstFlushNanos = 0;
+    private volatile long m_lastFlushNanos = 0;
+
+    public GroupCommitCommandLog(boolean synchronous, int fsyncInterval, int maxTxns,
+                                 String logPath, String snapshotPath) {
+        m_synchronous = synchronous;
+        m_fsyncInterval = Math.max(1, fsyncInterval);
+        m_maxTxns = Math.max(1, maxTxns);
+        m_logDir = new File(logPath);
+        if (!m_logDir.exists() && !m_logDir.mkdirs()) {
+            VoltDB.crashLocalVoltDB("Unable to create command log directory " + m_logDir, false, null);
+        }
+        if (snapshotPath != null) {
+            File snapshotDir = new File(snapshotPath);
+            if (!snapshotDir.exists() && !snapshotDir.mkdirs()) {
+                VoltDB.crashLocalVoltDB("Unable to create command log snapshot directory " + snapshotDir,
+                                        false, null);
+            }
+        }
+
+        m_writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                runWriter();
+            }
+        }, "Command log writer");
+        m_writer.setDaemon(true);
+        m_writer.start();
+    }
+
+    @Override
+    public void init(int logSize, long txnId, int partitionCount, String coreBinding,
+                     Map<Integer, Long> perPartitionTxnId) {
+        initSegments(logSize, txnId, perPartitionTxnId,
+                     !VoltDB.instance().getConfig().m_startAction.doesRecover());
+    }
+
+    @Override
+    public void initForRejoin(int logSize, long txnId, int partitionCount, boolean isRejoin,
+                              String coreBinding, Map<Integer, Long> perPartitionTxnId) {
+        initSegments(logSize, txnId, perPartitionTxnId, true);
+    }
+
+    /**
+     * Open the first segment. Until this has run, logged transactions are
+     * acknowledged without being written.
+     *
+     * On recover the replayed segments are deleted by the reinitiator once the
+     * truncation snapshot covers them, so any segment still here was never
+     * replayed and is kept. A new database, or a rejoining node that gets its
+     * data from the cluster, discards the old log.
+     */
+    private void initSegments(int logSize, long txnId, Map<Integer, Long> perPartitionTxnId,
+                              boolean discardPreviousLog) {
+        synchronized (m_lock) {
+            if (m_initialized) {
+                return;
+            }
+            m_hostId = VoltDB.instance().getHostMessenger().getHostId();
+            m_instanceId = VoltDB.instance().getHostMessenger().getInstanceId();
+            m_initialTxnId = txnId;
+            if (perPartitionTxnId != null) {
+                m_initialPartitionTxnIds = new TreeMap<Integer, Long>(perPartitionTxnId);
+            }
+            m_logSizeBytes = Math.max(1, logSize) * 1024L * 1024L;
+
+            for (File f : listSegments(m_logDir)) {
+                if (!discardPreviousLog) {
+                    VoltDB.crashLocalVoltDB("Command log segment " + f + " was not replayed. Recover from it, " +
+                            "or move it out of " + m_logDir + " to start without it", false, null);
+                }
+                LOG.info("Discarding command log segment " + f + " of the previous database");
+                if (!f.delete()) {
+                    VoltDB.crashLocalVoltDB("Unable to delete stale command log segment " + f, false, null);
+                }
+            }
+            try {
+                openSegment(1);
+            } catch (IOException e) {
+                VoltDB.crashLocalVoltDB("Unable to create command log segment in " + m_logDir, true, e);
+            }
+            m_initialized = true;
+        }
+        VoltDB.instance().getSnapshotCompletionMonitor().addInterest(this);
+    }
+
+    @Override
+    public boolean needsInitialization() {
+        return !m_initialized;
+    }
+
+    @Override
+    public ListenableFuture<Object> log(
+            Iv2InitiateTaskMessage message,
+            long spHandle,
+            int[] involvedPartitions,
+            DurabilityListener listener,
+            TransactionTask durabilityHandle) {
+        // Serialize outside of the lock, the writer only needs the bytes
+        ByteBuffer record = null;
+        if (message != null && m_initialized && isReplayable(message)) {
+            try {
+                record = serializeTxn(message, spHandle, listener.getPartitionId(), involvedPartitions);
+            } catch (IOException e) {
+                VoltDB.crashLocalVoltDB("Unable to serialize transaction for the command log", true, e);
+            }
+        }
+
+        synchronized (m_lock) {
+            if (record != null) {
+                m_pendingRecords.add(record);
+                m_pendingBytes += record.remaining();
+            }
+            listener.addTransaction(durabilityHandle);
+            m_pendingListeners.add(listener);
+            if (++m_pendingTxns == 1 || m_pendingTxns == m_maxTxns) {
+                m_lock.notify();
+            }
+
+            if (m_synchronous) {
+                return null;
+            }
+            if (m_pendingTxns <= m_maxTxns) {
+                return DURABLE_FUTURE;
+            }
+            if (m_backpressureFuture == null) {
+                m_backpressureFuture = SettableFuture.create();
+            }
+            return m_backpressureFuture;
+        }
+    }
+
+    @Override
+    public SettableFuture<Boolean> logIv2Fault(long writerHSId, Set<Long> survivorHSId,
+                                               int partitionId, long spHandle) {
+        SettableFuture<Boolean> written = SettableFuture.create();
+        ByteBuffer record = null;
+        if (m_initialized) {
+            record = serializeFault(writerHSId, survivorHSId, partitionId, spHandle);
+        }
+        synchronized (m_lock) {
+            if (record != null) {
+                m_pendingRecords.add(record);
+                m_pendingBytes += record.remaining();
+            }
+            m_pendingFaults.add(written);
+            m_lock.notify();
+        }
+        return written;
+    }
+
+    @Override
+    public void initializeLastDurableUniqueId(DurabilityListener listener, long uniqueId) {
+        synchronized (m_lock) {
+            listener.initializeLastDurableUniqueId(uniqueId);
+        }
+    }
+
+    @Override
+    public void shutdown() throws InterruptedException {
+        synchronized (m_lock) {
+            m_shutdown = true;
+            m_lock.notify();
+        }
+        m_writer.join();
+        if (m_initialized) {
+            VoltDB.instance().getSnapshotCompletionMonitor().removeInterest(this);
+        }
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+
+    @Override
+    public boolean isSynchronous() {
+        return m_synchronous;
+    }
+
+    @Override
+    public boolean canOfferTask() {
+        // Sync logging offers the task from the completion checks once it is durable
+        return !m_synchronous;
+    }
+
+    @Override
+    public void registerDurabilityListener(DurabilityListener durabilityListener) {
+    }
+
+    /*
+     * Writer thread
+     */
+
+    private static class Batch {
+        ArrayList<ByteBuffer> m_records;
+        ArrayList<SettableFuture<Boolean>> m_faults;
+        ArrayList<Pair<DurabilityListener, CompletionChecks>> m_checks;
+        SettableFuture<Object> m_backpressure;
+        long m_bytes;
+        int m_txns;
+    }
+
+    private void runWriter() {
+        final long intervalNanos = TimeUnit.MILLISECONDS.toNanos(m_fsyncInterval);
+        long lastFlush = System.nanoTime() - intervalNanos;
+        try {
+            while (true) {
+                Batch batch = nextBatch(lastFlush + intervalNanos);
+                if (batch == null) {
+                    break;
+                }
+                lastFlush = System.nanoTime();
+                flush(batch);
+            }
+            closeSegment();
+        } catch (InterruptedException e) {
+            LOG.warn("Command log writer interrupted", e);
+        } catch (Throwable t) {
+            VoltDB.crashLocalVoltDB("Command log writer failed", true, t);
+        }
+    }
+
+    /**
+     * Wait for the next flush to become due and take everything logged so
+     * far. The flush is due at the deadline, or immediately once maxTxns
+     * transactions are waiting. Returns null on shutdown with nothing left
+     * to write.
+     */
+    private Batch nextBatch(long deadline) throws InterruptedException {
+        synchronized (m_lock) {
+            while (true) {
+                final boolean hasWork = m_pendingTxns > 0 || !m_pendingFaults.isEmpty();
+                if (m_shutdown) {
+                    if (!hasWork) {
+                        return null;
+                    }
+                    break;
+                }
+                if (hasWork) {
+                    final long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0 || m_pendingTxns >= m_maxTxns) {
+                        break;
+                    }
+                    TimeUnit.NANOSECONDS.timedWait(m_lock, remaining);
+                } else {
+                    m_lock.wait();
+                }
+            }
+
+            Batch batch = new Batch();
+            batch.m_records = m_pendingRecords;
+            batch.m_faults = m_pendingFaults;
+            batch.m_bytes = m_pendingBytes;
+            batch.m_txns = m_pendingTxns;
+            batch.m_backpressure = m_backpressureFuture;
+            batch.m_checks = new ArrayList<Pair<DurabilityListener, CompletionChecks>>(m_pendingListeners.size());
+            for (DurabilityListener listener : m_pendingListeners) {
+                CompletionChecks checks = listener.startNewTaskList(listener.getNumberOfTasks());
+                batch.m_checks.add(Pair.of(listener, checks));
+            }
+
+            m_pendingRecords = new ArrayList<ByteBuffer>(Math.max(16, batch.m_records.size()));
+            m_pendingFaults = new ArrayList<SettableFuture<Boolean>>();
+            m_pendingListeners.clear();
+            m_pendingBytes = 0;
+            m_pendingTxns = 0;
+            m_backpressureFuture = null;
+            return batch;
+        }
+    }
+
+    private void flush(Batch batch) throws IOException {
+        if (m_initialized && !batch.m_records.isEmpty()) {
+            if (m_currentSegmentBytes >= SEGMENT_BYTES) {
+                openSegment(m_currentSegmentId + 1);
+            }
+            ByteBuffer[] buffers = batch.m_records.toArray(new ByteBuffer[batch.m_records.size()]);
+            long written = 0;
+            while (written < batch.m_bytes) {
+                written += m_channel.write(buffers);
+            }
+            m_currentSegmentBytes += written;
+            m_liveSegments.put(m_currentSegmentId, m_currentSegmentBytes);
+
+            final long start = System.nanoTime();
+            m_channel.force(false);
+            final long fsyncNanos = System.nanoTime() - start;
+            m_fsyncCount++;
+            m_totalFsyncNanos += fsyncNanos;
+            if (fsyncNanos > m_maxFsyncNanos) {
+                m_maxFsyncNanos = fsyncNanos;
+            }
+        }
+
+        for (Pair<DurabilityListener, CompletionChecks> check : batch.m_checks) {
+            check.getFirst().processDurabilityChecks(check.getSecond());
+        }
+        for (SettableFuture<Boolean> fault : batch.m_faults) {
+            fault.set(true);
+        }
+        if (batch.m_backpressure != null) {
+            batch.m_backpressure.set(null);
+        }
+
+        final long now = System.nanoTime();
+        if (m_batchCount == 0) {
+            m_firstFlushNanos = now;
+        }
+        m_lastFlushNanos = now;
+        m_batchCount++;
+        m_batchedTxnCount += batch.m_txns;
+
+        deleteTruncatedSegments();
+        if (m_initialized && liveBytes() > m_logSizeBytes) {
+            requestTruncationSnapshot(false);
+        }
+    }
+
+    private long liveBytes() {
+        long bytes = 0;
+        for (long segmentBytes : m_liveSegments.values()) {
+            bytes += segmentBytes;
+        }
+        return bytes;
+    }
+
+    private void openSegment(long segmentId) throws IOException {
+        closeSegment();
+        File file = new File(m_logDir, segmentFileName(segmentId));
+        @SuppressWarnings("resource")
+        FileChannel channel = new RandomAccessFile(file, "rw").getChannel();
+        ByteBuffer header = serializeHeader(m_hostId, segmentId, m_instanceId,
+                                            m_initialTxnId, m_initialPartitionTxnIds);
+        while (header.hasRemaining()) {
+            channel.write(header);
+        }
+        channel.force(true);
+        m_channel = channel;
+        m_currentSegmentId = segmentId;
+        m_currentSegmentBytes = header.capacity();
+        m_liveSegments.put(segmentId, m_currentSegmentBytes);
+        m_liveSegmentCount = m_liveSegments.size();
+    }
+
+    private void closeSegment() throws IOException {
+        if (m_channel != null) {
+            m_channel.force(false);
+            m_channel.close();
+            m_channel = null;
+        }
+    }
+
+    /**
+     * Delete the segments that were already closed when the last successful
+     * truncation snapshot was requested; the snapshot covers all of them.
+     */
+    private void deleteTruncatedSegments() {
+        final long boundary = m_truncatableBoundary;
+        while (!m_liveSegments.isEmpty() && m_liveSegments.firstKey() < boundary) {
+            long segmentId = m_liveSegments.pollFirstEntry().getKey();
+            File file = new File(m_logDir, segmentFileName(segmentId));
+            if (!file.delete()) {
+                LOG.warn("Unable to delete truncated command log segment " + file);
+            }
+        }
+        m_liveSegmentCount = m_liveSegments.size();
+    }
+
+    /*
+     * Truncation
+     */
+
+    @Override
+    public void requestTruncationSnapshot(final boolean queueIfPending) {
+        synchronized (m_truncationLock) {
+            if (m_truncationPending && !queueIfPending) {
+                return;
+            }
+            m_truncationPending = true;
+            m_truncationBoundary = m_currentSegmentId;
+        }
+        VoltDB.instance().getSES(false).execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    VoltDB.instance().getHostMessenger().getZK().create(
+                            VoltZK.request_truncation_snapshot_node, null,
+                            Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT_SEQUENTIAL);
+                } catch (KeeperException.NodeExistsException e) {
+                    LOG.info("Truncation snapshot already requested");
+                } catch (Exception e) {
+                    LOG.error("Unable to request a command log truncation snapshot", e);
+                    synchronized (m_truncationLock) {
+                        m_truncationPending = false;
+                    }
+                }
+            }
+        });
+    }
+
+    @Override
+    public CountDownLatch snapshotCompleted(SnapshotCompletionEvent event) {
+        if (event.truncationSnapshot && event.didSucceed) {
+            synchronized (m_truncationLock) {
+                if (m_truncationPending) {
+                    m_truncatableBoundary = m_truncationBoundary;
+                    m_truncationPending = false;
+                }
+            }
+        }
+        return new CountDownLatch(0);
+    }
+
+    /*
+     * Statistics
+     */
+
+    @Override
+    public void populateCommandLogStats(Map<String, Integer> columnNameToIndex, Object[] rowValues) {
+        final long pendingBytes;
+        final long pendingTxns;
+        synchronized (m_lock) {
+            pendingBytes = m_pendingBytes;
+            pendingTxns = m_pendingTxns;
+        }
+        final long batches = m_batchCount;
+        final long fsyncs = m_fsyncCount;
+        final long fsyncInterval = batches > 1 ?
+                TimeUnit.NANOSECONDS.toMillis(m_lastFlushNanos - m_firstFlushNanos) / (batches - 1) : 0;
+
+        rowValues[columnNameToIndex.get(CommandLogStats.StatName.OUTSTANDING_BYTES.name())] = pendingBytes;
+        rowValues[columnNameToIndex.get(CommandLogStats.StatName.OUTSTANDING_TXNS.name())] = pendingTxns;
+        rowValues[columnNameToIndex.get(CommandLogStats.StatName.IN_USE_SEGMENT_COUNT.name())] = m_liveSegmentCount;
+        rowValues[columnNameToIndex.get(CommandLogStats.StatName.SEGMENT_COUNT.name())] =
+                (int) m_currentSegmentId;
+        rowValues[columnNameToIndex.get(CommandLogStats.StatName.FSYNC_INTERVAL.name())] = (int) fsyncInterval;
+        rowValues[columnNameToIndex.get(CommandLogStats.StatName.AVG_BATCH_TXNS.name())] =
+                batches > 0 ? (int) (m_batchedTxnCount / batches) : 0;
+        rowValues[columnNameToIndex.get(CommandLogStats.StatName.AVG_FSYNC_LATENCY.name())] =
+                fsyncs > 0 ? TimeUnit.NANOSECONDS.toMicros(m_totalFsyncNanos / fsyncs) : 0L;
+        rowValues[columnNameToIndex.get(CommandLogStats.StatName.MAX_FSYNC_LATENCY.name())] =
+                TimeUnit.NANOSECONDS.toMicros(m_maxFsyncNanos);
+    }
+
+    /*
+     * Serialization
+     */
+
+    /**
+     * Reads and sysprocs that don't change the database never need to be
+     * replayed. They are still tracked for durability ordering.
+     */
+    static boolean isReplayable(Iv2InitiateTaskMessage message) {
+        if (message.isReadOnly()) {
+            return false;
+        }
+        final String procName = message.getStoredProcedureName();
+        if (procName.startsWith("@")) {
+            SystemProcedureCatalog.Config sysProc = SystemProcedureCatalog.listing.get(procName);
+            return sysProc != null && sysProc.durable;
+        }
+        return true;
+    }
+
+    static String segmentFileName(long segmentId) {
+        return String.format("%s%010d%s", SEGMENT_PREFIX, segmentId, SEGMENT_SUFFIX);
+    }
+
+    /**
+     * @return the segment files in the directory, ordered by segment id
+     */
+    static List<File> listSegments(File dir) {
+        TreeMap<Long, File> segments = new TreeMap<Long, File>();
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                Matcher m = SEGMENT_PATTERN.matcher(f.getName());
+                if (f.isFile() && m.matches()) {
+                    segments.put(Long.parseLong(m.group(1)), f);
+                }
+            }
+        }
+        return new ArrayList<File>(segments.values());
+    }
+
+    static ByteBuffer serializeHeader(int hostId, long segmentId, InstanceId instanceId,
+                                      long initialTxnId, Map<Integer, Long> initialPartitionTxnIds) {
+        ByteBuffer buf = ByteBuffer.allocate(4 + 4 + 4 + 8 + 4 + 8 + 8 + 4 + initialPartitionTxnIds.size() * 12);
+        buf.putInt(SEGMENT_MAGIC);
+        buf.putInt(SEGMENT_VERSION);
+        buf.putInt(hostId);
+        buf.putLong(segmentId);
+        buf.putInt(instanceId.getCoord());
+        buf.putLong(instanceId.getTimestamp());
+        buf.putLong(initialTxnId);
+        buf.putInt(initialPartitionTxnIds.size());
+        for (Map.Entry<Integer, Long> e : initialPartitionTxnIds.entrySet()) {
+            buf.putInt(e.getKey());
+            buf.putLong(e.getValue());
+        }
+        buf.flip();
+        return buf;
+    }
+
+    /**
+     * Records are framed as [length][crc32 of body][body] so that a torn
+     * write at the tail of the last segment can be detected on replay.
+     */
+    private static ByteBuffer frame(ByteBuffer body) {
+        body.flip();
+        CRC32 crc = new CRC32();
+        crc.update(body.duplicate());
+        ByteBuffer framed = ByteBuffer.allocate(8 + body.remaining());
+        framed.putInt(body.remaining());
+        framed.putInt((int) crc.getValue());
+        framed.put(body);
+        framed.flip();
+        return framed;
+    }
+
+    static ByteBuffer serializeTxn(Iv2InitiateTaskMessage message, long spHandle, int partitionId,
+                                   int[] involvedPartitions) throws IOException {
+        final int involved = involvedPartitions == null ? 0 : involvedPartitions.length;
+        final int messageSize = message.getSerializedSize();
+        ByteBuffer body = ByteBuffer.allocate(1 + 8 + 4 + 4 + involved * 4 + messageSize);
+        body.put(RECORD_TXN);
+        body.putLong(spHandle);
+        body.putInt(partitionId);
+        body.putInt(involved);
+        for (int i = 0; i < involved; i++) {
+            body.putInt(involvedPartitions[i]);
+        }
+        // The message asserts that it fills the buffer it is given exactly
+        ByteBuffer messageBuf = body.slice();
+        message.flattenToBuffer(messageBuf);
+        body.position(body.capacity());
+        return frame(body);
+    }
+
+    static ByteBuffer serializeFault(long writerHSId, Set<Long> survivorHSId, int partitionId, long spHandle) {
+        ByteBuffer body = ByteBuffer.allocate(1 + 8 + 4 + 8 + 4 + survivorHSId.size() * 8);
+        body.put(RECORD_FAULT);
+        body.putLong(writerHSId);
+        body.putInt(partitionId);
+        body.putLong(spHandle);
+        body.putInt(survivorHSId.size());
+        for (long hsId : survivorHSId) {
+            body.putLong(hsId);
+        }
+        return frame(body);
+    }
+
+    /**
+     * A transaction read back from a segment.
+     */
+    static class TxnRecord {
+        final long m_spHandle;
+        final int m_partitionId;
+        final int[] m_involvedPartitions;
+        final Iv2InitiateTaskMessage m_message;
+
+        TxnRecord(long spHandle, int partitionId, int[] involvedPartitions, Iv2InitiateTaskMessage message) {
+            m_spHandle = spHandle;
+            m_partitionId = partitionId;
+            m_involvedPartitions = involvedPartitions;
+            m_message = message;
+        }
+    }
+
+    /**
+     * Sequential reader for one segment file. Fault records are skipped,
+     * and reading stops at the first incomplete or corrupt record.
+     */
+    static class SegmentReader implements Closeable {
+        private final File m_file;
+        private final FileChannel m_channel;
+        private final ByteBuffer m_buf;
+        private final VoltDbMessageFactory m_factory = new VoltDbMessageFactory();
+
+        final int m_hostId;
+        final long m_segmentId;
+        final InstanceId m_instanceId;
+        final long m_initialTxnId;
+        final Map<Integer, Long> m_initialPartitionTxnIds = new TreeMap<Integer, Long>();
+
+        @SuppressWarnings("resource")
+        SegmentReader(File file) throws IOException {
+            m_file = file;
+            m_channel = new RandomAccessFile(file, "r").getChannel();
+            m_buf = m_channel.map(FileChannel.MapMode.READ_ONLY, 0, m_channel.size());
+            try {
+                if (m_buf.getInt() != SEGMENT_MAGIC) {
+                    throw new IOException("Not a command log segment: " + file);
+                }
+                final int version = m_buf.getInt();
+                if (version != SEGMENT_VERSION) {
+                    throw new IOException("Unsupported command log segment version " + version + ": " + file);
+                }
+                m_hostId = m_buf.getInt();
+                m_segmentId = m_buf.getLong();
+                final int coord = m_buf.getInt();
+                m_instanceId = new InstanceId(coord, m_buf.getLong());
+                m_initialTxnId = m_buf.getLong();
+                final int partitions = m_buf.getInt();
+                for (int i = 0; i < partitions; i++) {
+                    m_initialPartitionTxnIds.put(m_buf.getInt(), m_buf.getLong());
+                }
+            } catch (RuntimeException e) {
+                m_channel.close();
+                throw new IOException("Truncated command log segment header: " + file, e);
+            }
+        }
+
+        /**
+         * @return the next transaction in the segment, or null at its end
+         */
+        TxnRecord next() throws IOException {
+            while (m_buf.remaining() >= 8) {
+                final int length = m_buf.getInt();
+                final int checksum = m_buf.getInt();
+                if (length <= 0 || length > m_buf.remaining()) {
+                    LOG.warn("Ignoring incomplete record at the end of command log segment " + m_file);
+                    return null;
+                }
+                ByteBuffer body = ByteBuffer.allocate(length);
+                ByteBuffer src = m_buf.duplicate();
+                src.limit(src.position() + length);
+                body.put(src);
+                body.flip();
+                m_buf.position(m_buf.position() + length);
+
+                CRC32 crc = new CRC32();
+                crc.update(body.duplicate());
+                if ((int) crc.getValue() != checksum) {
+                    LOG.warn("Ignoring corrupt record at the end of command log segment " + m_file);
+                    return null;
+                }
+
+                if (body.get() != RECORD_TXN) {
+                    continue;
+                }
+                final long spHandle = body.getLong();
+                final int partitionId = body.getInt();
+                int[] involved = new int[body.getInt()];
+                for (int i = 0; i < involved.length; i++) {
+                    involved[i] = body.getInt();
+                }
+                Iv2InitiateTaskMessage message =
+                        (Iv2InitiateTaskMessage) m_factory.createMessageFromBuffer(body.slice(), -1);
+                return new TxnRecord(spHandle, partitionId, involved, message);
+            }
+            return null;
+        }
+
+        @Override
+        public void close() throws IOException {
+            m_channel.close();
+        }
+    }
+}
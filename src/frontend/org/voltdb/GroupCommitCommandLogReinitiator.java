@@ -0,0 +1,378 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.apache.zookeeper_voltpatches.CreateMode;
+import org.apache.zookeeper_voltpatches.ZooDefs.Ids;
+import org.apache.zookeeper_voltpatches.ZooKeeper;
+import org.voltcore.logging.VoltLogger;
+import org.voltcore.messaging.HostMessenger;
+import org.voltcore.utils.CoreUtils;
+import org.voltcore.utils.InstanceId;
+import org.voltcore.zk.ZKCountdownLatch;
+import org.voltcore.zk.ZKUtil;
+import org.voltdb.dtxn.TransactionCreator;
+import org.voltdb.iv2.LeaderCache;
+import org.voltdb.iv2.MpInitiator;
+import org.voltdb.messaging.Iv2InitiateTaskMessage;
+
+/**
+ * Replays the segments written by {@link GroupCommitCommandLog}.
+ *
+ * Every host replays its own log. Single partition transactions are replayed
+ * by the host that currently holds the partition master, and that host also
+ * places a sentinel in the partition's stream for every multi-partition
+ * transaction it logged.
+ *
+ * A multi-partition transaction is only in the logs of the hosts whose partitions
+ * took part in it. The master of the lowest partition involved publishes it in ZK,
+ * and after all hosts have finished reading their logs the host running the MPI
+ * initiates all of them in transaction id order, then sends the end of log message.
+ */
+public class GroupCommitCommandLogReinitiator implements CommandLogReinitiator {
+    private static final VoltLogger LOG = new VoltLogger("LOGGING");
+
+    // Stay well below the ZooKeeper node size limit
+    private static final int MP_TXN_CHUNK_SIZE = 512 * 1024;
+
+    private final int m_hostId;
+    private final HostMessenger m_messenger;
+    private final int m_liveHostCount;
+    private final List<File> m_segments;
+
+    private InstanceId m_instanceId = null;
+    private Long m_initialTxnId = null;
+    private Map<Integer, Long> m_initialPartitionTxnIds = null;
+
+    private Callback m_callback;
+    private TransactionCreator m_initiator;
+    private RestoreAgent.SnapshotInfo m_snapshotInfo = null;
+    private volatile long m_replayedTxns = 0;
+
+    /**
+     * A multi-partition transaction read from a log, to be initiated by the MPI host
+     */
+    private static class MpTxn {
+        final long m_txnId;
+        final long m_uniqueId;
+        final StoredProcedureInvocation m_invocation;
+
+        MpTxn(long txnId, long uniqueId, StoredProcedureInvocation invocation) {
+            m_txnId = txnId;
+            m_uniqueId = uniqueId;
+            m_invocation = invocation;
+        }
+    }
+
+    public GroupCommitCommandLogReinitiator(int hostId, StartAction action, HostMessenger messenger,
+                                            String clPath, Set<Integer> liveHosts) {
+        m_hostId = hostId;
+        m_messenger = messenger;
+        m_liveHostCount = liveHosts.size();
+        m_segments = GroupCommitCommandLog.listSegments(new File(clPath));
+
+        if (!m_segments.isEmpty()) {
+            try (GroupCommitCommandLog.SegmentReader reader =
+                    new GroupCommitCommandLog.SegmentReader(m_segments.get(0))) {
+                m_instanceId = reader.m_instanceId;
+                m_initialTxnId = reader.m_initialTxnId;
+                m_initialPartitionTxnIds = reader.m_initialPartitionTxnIds;
+            } catch (IOException e) {
+                VoltDB.crashLocalVoltDB("Unable to read command log segment " + m_segments.get(0), true, e);
+            }
+        }
+    }
+
+    @Override
+    public void setSnapshotTxnId(RestoreAgent.SnapshotInfo info) {
+        m_snapshotInfo = info;
+    }
+
+    @Override
+    public void setCallback(Callback callback) {
+        m_callback = callback;
+    }
+
+    @Override
+    public void setInitiator(TransactionCreator initiator) {
+        m_initiator = initiator;
+    }
+
+    @Override
+    public void initPartitionTracking() {}
+
+    /**
+     * Check that the local segments form one unbroken log of a single database
+     * instance, so that a damaged log fails the recover before the snapshot is restored
+     * rather than part way through the replay. Which partitions this host
+     * replays, and whether it runs the MPI, is read from the leader caches once
+     * the replay starts, because the initiators are placed after this is called.
+     */
+    @Override
+    public void generateReplayPlan(long snapshotTimeStamp, long snapshotTxnId,
+                                   int newPartitionCount, boolean isMPINode) {
+        long expectedSegmentId = -1;
+        for (File segment : m_segments) {
+            try (GroupCommitCommandLog.SegmentReader reader = new GroupCommitCommandLog.SegmentReader(segment)) {
+                if (!reader.m_instanceId.equals(m_instanceId)) {
+                    VoltDB.crashLocalVoltDB("Command log segment " + segment +
+                            " belongs to a different database instance than " + m_segments.get(0), false, null);
+                }
+                if (expectedSegmentId != -1 && reader.m_segmentId != expectedSegmentId) {
+                    VoltDB.crashLocalVoltDB("Command log segment " +
+                            GroupCommitCommandLog.segmentFileName(expectedSegmentId) + " is missing", false, null);
+                }
+                expectedSegmentId = reader.m_segmentId + 1;
+            } catch (IOException e) {
+                VoltDB.crashLocalVoltDB("Unable to read command log segment " + segment, true, e);
+            }
+        }
+    }
+
+    @Override
+    public void replay() {
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    replayLocalSegments();
+                } catch (Exception e) {
+                    VoltDB.crashGlobalVoltDB("Failed to replay the command log", true, e);
+                }
+                if (m_callback != null) {
+                    m_callback.onReplayCompletion();
+                }
+            }
+        }, "Command log replay").start();
+    }
+
+    private void replayLocalSegments() throws Exception {
+        final Set<Integer> masters = new HashSet<Integer>();
+        for (Map.Entry<Integer, Long> e : readLeaders(VoltZK.iv2masters).entrySet()) {
+            if (CoreUtils.getHostIdFromHSId(e.getValue()) == m_hostId) {
+                masters.add(e.getKey());
+            }
+        }
+        final Long mpiHSId = readLeaders(VoltZK.iv2mpi).get(MpInitiator.MP_INIT_PID);
+        final boolean isMPINode = mpiHSId != null && CoreUtils.getHostIdFromHSId(mpiHSId) == m_hostId;
+        final TreeMap<Long, MpTxn> mpTxns = new TreeMap<Long, MpTxn>();
+
+        long replayed = 0;
+        for (File segment : m_segments) {
+            LOG.info("Replaying command log segment " + segment);
+            try (GroupCommitCommandLog.SegmentReader reader = new GroupCommitCommandLog.SegmentReader(segment)) {
+                GroupCommitCommandLog.TxnRecord record;
+                while ((record = reader.next()) != null) {
+                    final Iv2InitiateTaskMessage msg = record.m_message;
+                    final StoredProcedureInvocation invocation = msg.getStoredProcedureInvocation();
+                    if (msg.isSinglePartition()) {
+                        if (!masters.contains(record.m_partitionId) ||
+                            isInSnapshot(record.m_partitionId, record.m_spHandle)) {
+                            continue;
+                        }
+                        m_initiator.createTransaction(ClientInterface.RESTORE_AGENT_CID,
+                                msg.getTxnId(), msg.getUniqueId(), invocation, false, true, false,
+                                record.m_partitionId, invocation.getSerializedSize(), System.nanoTime());
+                        replayed++;
+                    } else {
+                        if (isInSnapshot(MpInitiator.MP_INIT_PID, msg.getTxnId())) {
+                            continue;
+                        }
+                        if (masters.contains(record.m_partitionId)) {
+                            m_initiator.sendSentinel(msg.getUniqueId(), record.m_partitionId);
+                        }
+                        if (masters.contains(owningPartition(record)) && !mpTxns.containsKey(msg.getTxnId())) {
+                            mpTxns.put(msg.getTxnId(), new MpTxn(msg.getTxnId(), msg.getUniqueId(), invocation));
+                        }
+                    }
+                }
+            }
+        }
+        LOG.info("Replayed " + replayed + " single partition transactions from " + m_segments.size() +
+                 " command log segments");
+
+        if (!isMPINode) {
+            publishMpTxns(mpTxns.values());
+        }
+
+        // Sentinels and multi-partition transactions from every host must be out
+        // before the MPI releases the partitions
+        ZKCountdownLatch latch = new ZKCountdownLatch(m_messenger.getZK(),
+                VoltZK.commandlog_replay_barrier, m_liveHostCount);
+        latch.countDown(true);
+        latch.await();
+
+        if (isMPINode) {
+            collectMpTxns(mpTxns);
+            for (MpTxn txn : mpTxns.values()) {
+                m_initiator.createTransaction(ClientInterface.RESTORE_AGENT_CID,
+                        txn.m_txnId, txn.m_uniqueId, txn.m_invocation, false, false,
+                        isEverySite(txn.m_invocation.getProcName()), MpInitiator.MP_INIT_PID,
+                        txn.m_invocation.getSerializedSize(), System.nanoTime());
+                replayed++;
+            }
+            LOG.info("Replayed " + mpTxns.size() + " multi-partition transactions logged across the cluster");
+            m_initiator.sendEOLMessage(MpInitiator.MP_INIT_PID);
+        }
+        m_replayedTxns = replayed;
+    }
+
+    /**
+     * Every partition involved in a multi-partition transaction logs it. The master
+     * of the lowest of them is the one that hands it to the MPI.
+     */
+    private static int owningPartition(GroupCommitCommandLog.TxnRecord record) {
+        int owner = record.m_partitionId;
+        for (int partitionId : record.m_involvedPartitions) {
+            owner = Math.min(owner, partitionId);
+        }
+        return owner;
+    }
+
+    private void publishMpTxns(Iterable<MpTxn> txns) throws Exception {
+        final ZooKeeper zk = m_messenger.getZK();
+        final String prefix = ZKUtil.joinZKPath(VoltZK.commandlog_replay_mp_txns, "host_" + m_hostId + "_");
+        ByteBuffer chunk = ByteBuffer.allocate(MP_TXN_CHUNK_SIZE);
+        for (MpTxn txn : txns) {
+            final int size = 8 + 8 + 4 + txn.m_invocation.getSerializedSize();
+            if (size > chunk.remaining()) {
+                if (chunk.position() > 0) {
+                    zk.create(prefix, Arrays.copyOf(chunk.array(), chunk.position()),
+                              Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT_SEQUENTIAL);
+                    chunk.clear();
+                }
+                if (size > chunk.capacity()) {
+                    chunk = ByteBuffer.allocate(size);
+                }
+            }
+            chunk.putLong(txn.m_txnId);
+            chunk.putLong(txn.m_uniqueId);
+            chunk.putInt(txn.m_invocation.getSerializedSize());
+            txn.m_invocation.flattenToBuffer(chunk);
+        }
+        if (chunk.position() > 0) {
+            zk.create(prefix, Arrays.copyOf(chunk.array(), chunk.position()),
+                      Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT_SEQUENTIAL);
+        }
+    }
+
+    /**
+     * Add the multi-partition transactions published by the other hosts, and remove them from ZK
+     */
+    private void collectMpTxns(TreeMap<Long, MpTxn> txns) throws Exception {
+        final ZooKeeper zk = m_messenger.getZK();
+        final List<String> children = zk.getChildren(VoltZK.commandlog_replay_mp_txns, false);
+        for (String child : children) {
+            final String path = ZKUtil.joinZKPath(VoltZK.commandlog_replay_mp_txns, child);
+            final ByteBuffer buf = ByteBuffer.wrap(zk.getData(path, false, null));
+            while (buf.hasRemaining()) {
+                final long txnId = buf.getLong();
+                final long uniqueId = buf.getLong();
+                final int size = buf.getInt();
+                final ByteBuffer invocationBuf = buf.slice();
+                invocationBuf.limit(size);
+                buf.position(buf.position() + size);
+                if (!txns.containsKey(txnId)) {
+                    final StoredProcedureInvocation invocation = new StoredProcedureInvocation();
+                    invocation.initFromBuffer(invocationBuf);
+                    txns.put(txnId, new MpTxn(txnId, uniqueId, invocation));
+                }
+            }
+            zk.delete(path, -1);
+        }
+    }
+
+    private Map<Integer, Long> readLeaders(String path) throws Exception {
+        LeaderCache cache = new LeaderCache(m_messenger.getZK(), path);
+        cache.start(true);
+        try {
+            return cache.pointInTimeCache();
+        } finally {
+            cache.shutdown();
+        }
+    }
+
+    private boolean isInSnapshot(int partitionId, long txnId) {
+        if (m_snapshotInfo == null) {
+            return false;
+        }
+        if (partitionId == MpInitiator.MP_INIT_PID) {
+            return txnId <= m_snapshotInfo.txnId;
+        }
+        Long snapshotTxnId = m_snapshotInfo.partitionToTxnId.get(partitionId);
+        return snapshotTxnId != null && txnId <= snapshotTxnId;
+    }
+
+    private static boolean isEverySite(String procName) {
+        SystemProcedureCatalog.Config sysProc = SystemProcedureCatalog.listing.get(procName);
+        return sysProc != null && sysProc.everySite;
+    }
+
+    @Override
+    public boolean hasReplayedSegments() {
+        return !m_segments.isEmpty();
+    }
+
+    @Override
+    public boolean hasReplayedTxns() {
+        return m_replayedTxns > 0;
+    }
+
+    @Override
+    public Long getMaxLastSeenTxn() {
+        return m_initialTxnId;
+    }
+
+    @Override
+    public Map<Integer, Long> getMaxLastSeenTxnByPartition() {
+        return m_initialPartitionTxnIds;
+    }
+
+    @Override
+    public InstanceId getInstanceId() {
+        return m_instanceId;
+    }
+
+    /**
+     * Called once a snapshot covers everything in the log, either the truncation
+     * snapshot taken after the replay or the terminus snapshot of a shutdown --save.
+     */
+    @Override
+    public void returnAllSegments() {
+        for (File segment : m_segments) {
+            if (segment.exists() && !segment.delete()) {
+                VoltDB.crashLocalVoltDB("Unable to delete replayed command log segment " + segment, false, null);
+            }
+        }
+    }
+
+    @Override
+    public boolean checkAndBalancePartitions() {
+        return true;
+    }
+}
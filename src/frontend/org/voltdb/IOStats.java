@@ -23,6 +23,7 @@ import java.util.Iterator;
 import java.util.Map;
 
 import org.voltdb.VoltTable.ColumnInfo;
+import org.voltcore.network.VoltNetworkPool;
 import org.voltcore.utils.Pair;
 
 public class IOStats extends StatsSource {
@@ -69,7 +70,13 @@ public class IOStats extends StatsSource {
         columns.add(new ColumnInfo("MESSAGES_READ", VoltType.BIGINT));
         columns.add(new ColumnInfo("BYTES_WRITTEN", VoltType.BIGINT));
         columns.add(new ColumnInfo("MESSAGES_WRITTEN", VoltType.BIGINT));
-
+        columns.add(new ColumnInfo("WRITE_CALLS", VoltType.BIGINT));
+        columns.add(new ColumnInfo("AVG_BYTES_PER_WRITE", VoltType.BIGINT));
+        columns.add(new ColumnInfo("SELECTS", VoltType.BIGINT));
+        columns.add(new ColumnInfo("SELECTS_PER_SECOND", VoltType.BIGINT));
+        columns.add(new ColumnInfo("AVG_WRITES_PER_SELECT", VoltType.FLOAT));
+        columns.add(new ColumnInfo("MESSAGES_PER_FRAME", VoltType.FLOAT));
+        columns.add(new ColumnInfo("AVG_COALESCE_DELAY", VoltType.BIGINT));
     }
 
     @Override
@@ -83,6 +90,24 @@ public class IOStats extends StatsSource {
         rowValues[columnNameToIndex.get("MESSAGES_READ")] = counters[1];
         rowValues[columnNameToIndex.get("BYTES_WRITTEN")] = counters[2];
         rowValues[columnNameToIndex.get("MESSAGES_WRITTEN")] = counters[3];
+        // Network thread and GLOBAL rows also carry selection counters
+        final long writeCalls = counters[4];
+        final long selects = counters[5];
+        final long elapsedMillis = counters[6];
+        rowValues[columnNameToIndex.get("WRITE_CALLS")] = writeCalls;
+        rowValues[columnNameToIndex.get("AVG_BYTES_PER_WRITE")] = writeCalls == 0 ? 0L : counters[2] / writeCalls;
+        rowValues[columnNameToIndex.get("SELECTS")] = selects;
+        rowValues[columnNameToIndex.get("SELECTS_PER_SECOND")] =
+                elapsedMillis == 0 ? 0L : selects * 1000 / elapsedMillis;
+        rowValues[columnNameToIndex.get("AVG_WRITES_PER_SELECT")] =
+                selects == 0 ? 0.0 : (double) writeCalls / selects;
+        // Host connections send their messages in frames, see ForeignHost
+        final long frames = counters[VoltNetworkPool.IO_STATS_FRAMES_WRITTEN];
+        final long framedMessages = counters[VoltNetworkPool.IO_STATS_FRAMED_MESSAGES];
+        rowValues[columnNameToIndex.get("MESSAGES_PER_FRAME")] =
+                frames == 0 ? 0.0 : (double) framedMessages / frames;
+        rowValues[columnNameToIndex.get("AVG_COALESCE_DELAY")] = framedMessages == 0 ? 0L :
+                counters[VoltNetworkPool.IO_STATS_COALESCE_DELAY_MICROS] / framedMessages;
         super.updateStatsRow(rowKey, rowValues);
     }
 
@@ -0,0 +1,265 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
+import org.voltcore.logging.VoltLogger;
+import org.voltcore.utils.CoreUtils;
+import org.voltdb.catalog.Procedure;
+import org.voltdb.catalog.Table;
+import org.voltdb.client.ClientResponse;
+import org.voltdb.client.ProcedureCallback;
+import org.voltdb.importer.AbstractImporter;
+import org.voltdb.importer.ImporterRowBatcher;
+import org.voltdb.importer.Invocation;
+import org.voltdb.iv2.MpInitiator;
+import org.voltdb.utils.CatalogUtil;
+
+/**
+ * Batches the rows an importer inserts through a table's default insert or upsert
+ * procedure. Rows are grouped by the partition their partition column hashes to and
+ * each group is inserted with one @LoadSinglepartitionTable transaction, or
+ * @LoadMultipartitionTable for replicated tables, the way VoltBulkLoader does.
+ *
+ * A batch that fails is re-inserted row by row through the original procedure, so
+ * that one bad row only fails itself and each row callback gets its own response.
+ */
+public class ImporterRowBatcherImpl implements ImporterRowBatcher {
+    private static final VoltLogger importLog = new VoltLogger("IMPORT");
+
+    private final AbstractImporter m_importer;
+    // The procedure rows are re-inserted with when they can't be batched
+    private final String m_procName;
+    private final String m_loadProcName;
+    private final String m_tableName;
+    private final byte m_upsert;
+    private final int m_batchSize;
+    private final VoltTable.ColumnInfo[] m_columnInfo;
+    private final Class<?>[] m_columnClasses;
+    // -1 for replicated tables
+    private final int m_partitionColumnIndex;
+    private final VoltType m_partitionColumnType;
+    // Batches being filled, by partition id. Only touched by the importer thread.
+    private final Map<Integer, Batch> m_batches = new HashMap<>();
+    // Re-inserts the rows of failed batches, off the response thread
+    private final ExecutorService m_es;
+
+    /**
+     * Rows of one partition, and the callback of the transaction inserting them.
+     */
+    private final class Batch implements ProcedureCallback {
+        final VoltTable m_table = new VoltTable(m_columnInfo);
+        final List<Object[]> m_rows = new ArrayList<>(m_batchSize);
+        final List<ProcedureCallback> m_callbacks = new ArrayList<>(m_batchSize);
+        final byte[] m_partitionParam;
+
+        Batch(byte[] partitionParam) {
+            m_partitionParam = partitionParam;
+        }
+
+        void add(Object[] convertedRow, ProcedureCallback callback) {
+            m_table.addRow(convertedRow);
+            m_rows.add(convertedRow);
+            m_callbacks.add(callback);
+        }
+
+        int size() {
+            return m_rows.size();
+        }
+
+        Object[] getParams() {
+            if (m_partitionParam == null) {
+                return new Object[] { m_tableName, m_upsert, m_table };
+            }
+            return new Object[] { m_partitionParam, m_tableName, m_upsert, m_table };
+        }
+
+        @Override
+        public void clientCallback(final ClientResponse response) throws Exception {
+            if (response.getStatus() == ClientResponse.SUCCESS ||
+                    response.getStatus() == ClientResponse.SERVER_UNAVAILABLE) {
+                respond(response);
+                return;
+            }
+            m_es.execute(new Runnable() {
+                @Override
+                public void run() {
+                    reinsertRows(Batch.this);
+                }
+            });
+        }
+
+        void respond(ClientResponse response) {
+            for (ProcedureCallback callback : m_callbacks) {
+                invokeCallback(callback, response);
+            }
+        }
+    }
+
+    /**
+     * @return a batcher for the rows of the given procedure, or null if it is not the default
+     * insert or upsert procedure of a table the bulk load procedures can write to
+     */
+    static ImporterRowBatcher create(CatalogContext catalogContext, AbstractImporter importer,
+            String procName, int batchSize) {
+        if (batchSize <= 1 || catalogContext.procedures.get(procName) != null) {
+            return null;
+        }
+        final Procedure catProc = catalogContext.m_defaultProcs.checkForDefaultProcedure(procName);
+        if (catProc == null) {
+            return null;
+        }
+        final String action = catProc.getClassname().substring(catProc.getClassname().lastIndexOf('.') + 1);
+        final Table table = catProc.getPartitiontable();
+        if (!("insert".equals(action) || "upsert".equals(action)) || table == null ||
+                CatalogUtil.isTableExportOnly(catalogContext.database, table)) {
+            return null;
+        }
+        return new ImporterRowBatcherImpl(importer, procName, table, "upsert".equals(action), batchSize);
+    }
+
+    ImporterRowBatcherImpl(AbstractImporter importer, String procName, Table table, boolean upsert,
+            int batchSize) {
+        m_importer = importer;
+        m_procName = procName;
+        m_tableName = table.getTypeName();
+        m_upsert = (byte) (upsert ? 1 : 0);
+        m_batchSize = batchSize;
+        m_columnInfo = CatalogUtil.getVoltTable(table).getTableSchema();
+        m_columnClasses = new Class<?>[m_columnInfo.length];
+        for (int i = 0; i < m_columnInfo.length; i++) {
+            m_columnClasses[i] = m_columnInfo[i].type.classFromType();
+        }
+        if (table.getIsreplicated()) {
+            m_loadProcName = "@LoadMultipartitionTable";
+            m_partitionColumnIndex = -1;
+            m_partitionColumnType = VoltType.INVALID;
+        }
+        else {
+            m_loadProcName = "@LoadSinglepartitionTable";
+            m_partitionColumnIndex = table.getPartitioncolumn().getIndex();
+            m_partitionColumnType = VoltType.get((byte) table.getPartitioncolumn().getType());
+        }
+        m_es = CoreUtils.getSingleThreadExecutor(importer.getName() + " - " + m_tableName + " row batcher");
+    }
+
+    @Override
+    public boolean add(ProcedureCallback callback, Object... row) {
+        if (row == null || row.length != m_columnClasses.length) {
+            // Let the procedure report the error
+            return m_importer.callProcedure(new Invocation(m_procName, row), callback);
+        }
+        final Object[] convertedRow = new Object[row.length];
+        final int partition;
+        try {
+            for (int i = 0; i < row.length; i++) {
+                convertedRow[i] = ParameterConverter.tryToMakeCompatible(m_columnClasses[i], row[i]);
+            }
+            if (m_partitionColumnIndex < 0) {
+                partition = MpInitiator.MP_INIT_PID;
+            }
+            else {
+                final Object value = convertedRow[m_partitionColumnIndex];
+                if (VoltType.isVoltNullValue(value)) {
+                    return m_importer.callProcedure(new Invocation(m_procName, row), callback);
+                }
+                partition = TheHashinator.getPartitionForParameter(m_partitionColumnType, value);
+            }
+        } catch (Exception e) {
+            return m_importer.callProcedure(new Invocation(m_procName, row), callback);
+        }
+
+        Batch batch = m_batches.get(partition);
+        if (batch == null) {
+            batch = new Batch(m_partitionColumnIndex < 0 ? null :
+                    VoltType.valueToBytes(convertedRow[m_partitionColumnIndex]));
+            m_batches.put(partition, batch);
+        }
+        try {
+            batch.add(convertedRow, callback);
+        } catch (RuntimeException e) {
+            // e.g. a value too wide for its column
+            return m_importer.callProcedure(new Invocation(m_procName, row), callback);
+        }
+        if (batch.size() >= m_batchSize) {
+            m_batches.remove(partition);
+            submit(batch);
+        }
+        return true;
+    }
+
+    @Override
+    public void flush() {
+        if (m_batches.isEmpty()) {
+            return;
+        }
+        for (Batch batch : m_batches.values()) {
+            submit(batch);
+        }
+        m_batches.clear();
+    }
+
+    @Override
+    public void close() {
+        flush();
+        m_es.shutdown();
+    }
+
+    private void submit(Batch batch) {
+        // A single row goes through its procedure, there is nothing to save by loading it as a table
+        if (batch.size() == 1) {
+            if (!m_importer.callProcedure(new Invocation(m_procName, batch.m_rows.get(0)), batch.m_callbacks.get(0))) {
+                batch.respond(failure("Failed to queue the row"));
+            }
+            return;
+        }
+        if (!m_importer.callProcedure(new Invocation(m_loadProcName, batch.getParams()), batch)) {
+            batch.respond(failure("Failed to queue a batch of " + batch.size() + " rows"));
+        }
+    }
+
+    // Runs on m_es
+    private void reinsertRows(Batch batch) {
+        for (int i = 0; i < batch.size(); i++) {
+            final ProcedureCallback callback = batch.m_callbacks.get(i);
+            if (!m_importer.callProcedure(new Invocation(m_procName, batch.m_rows.get(i)), callback)) {
+                invokeCallback(callback, failure("Failed to queue the row"));
+            }
+        }
+    }
+
+    private static ClientResponse failure(String message) {
+        return new ClientResponseImpl(ClientResponse.GRACEFUL_FAILURE, new VoltTable[0], message);
+    }
+
+    private static void invokeCallback(ProcedureCallback callback, ClientResponse response) {
+        if (callback == null) {
+            return;
+        }
+        try {
+            callback.clientCallback(response);
+        } catch (Exception e) {
+            importLog.error("Importer row callback failed", e);
+        }
+    }
+}
@@ -18,6 +18,7 @@
 package org.voltdb;
 
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 
@@ -29,8 +30,8 @@ import org.voltdb.catalog.Table;
 import org.voltdb.client.BatchTimeoutOverrideType;
 import org.voltdb.client.ClientResponse;
 import org.voltdb.client.ProcedureCallback;
+import org.voltdb.common.Constants;
 import org.voltdb.iv2.MpInitiator;
-import org.voltdb.utils.MiscUtils;
 
 import com.google_voltpatches.common.collect.ImmutableMap;
 
@@ -48,6 +49,53 @@ public class InternalConnectionHandler {
     private final AtomicLong m_failedCount = new AtomicLong();
     private final AtomicLong m_submitSuccessCount = new AtomicLong();
     private volatile Map<Integer, InternalClientResponseAdapter> m_adapters = ImmutableMap.of();
+    // Procedure lookups for the streaming interface, valid for the catalog they were made in
+    private final ConcurrentHashMap<String, ImportProcedure> m_importProcedures = new ConcurrentHashMap<>();
+
+    /**
+     * What routing an imported row needs to know about its procedure. Importers call the
+     * same few procedures for every row, so this is looked up once per catalog version.
+     */
+    private static final class ImportProcedure {
+        final CatalogContext m_catalogContext;
+        final Procedure m_catProc;
+        final String m_procName;
+        final byte[] m_procNameBytes;
+        // Only set for single partition procedures
+        final CatalogContext.ProcedurePartitionInfo m_partitionInfo;
+
+        ImportProcedure(CatalogContext catalogContext, Procedure catProc, String procName) {
+            m_catalogContext = catalogContext;
+            m_catProc = catProc;
+            m_procName = procName;
+            m_procNameBytes = procName.getBytes(Constants.UTF8ENCODING);
+            m_partitionInfo = catProc.getSinglepartition() ?
+                    (CatalogContext.ProcedurePartitionInfo) catProc.getAttachment() : null;
+        }
+
+        int[] getPartitions(StoredProcedureInvocation task) {
+            if (m_partitionInfo != null) {
+                return new int[] { InvocationDispatcher.getPartitionForProcedureParameter(
+                        m_partitionInfo.index, m_partitionInfo.type, task) };
+            }
+            return InvocationDispatcher.getPartitionsForProcedure(m_catProc, task);
+        }
+    }
+
+    private ImportProcedure getImportProcedure(String procName) {
+        final CatalogContext catalogContext = getCatalogContext();
+        ImportProcedure importProc = m_importProcedures.get(procName);
+        if (importProc == null || importProc.m_catalogContext != catalogContext) {
+            final Procedure catProc = InvocationDispatcher.getProcedureFromName(procName, catalogContext);
+            if (catProc == null) {
+                m_importProcedures.remove(procName);
+                return null;
+            }
+            importProc = new ImportProcedure(catalogContext, catProc, procName);
+            m_importProcedures.put(procName, importProc);
+        }
+        return importProc;
+    }
 
     // Synchronized in case multiple partitions are added concurrently.
     public synchronized void addAdapter(int pid, InternalClientResponseAdapter adapter)
@@ -126,10 +174,9 @@ public class InternalConnectionHandler {
 
         StoredProcedureInvocation task = new StoredProcedureInvocation();
         task.setProcName(procName);
-        task.setParams(args);
 
         try {
-            task = MiscUtils.roundTripForCL(task);
+            task.setParamsAndSerialize(args);
         } catch (Exception e) {
             String fmt = "Cannot invoke procedure %s. failed to create task.";
             m_logger.rateLimitedLog(SUPPRESS_INTERVAL, Level.ERROR, null, fmt, procName);
@@ -170,20 +217,20 @@ public class InternalConnectionHandler {
                                  Function<Integer, Boolean> backPressurePredicate,
                                  InternalConnectionStatsCollector statsCollector,
                                  ProcedureCallback procCallback, String proc, Object... fieldList) {
-        Procedure catProc = InvocationDispatcher.getProcedureFromName(proc, getCatalogContext());
-        if (catProc == null) {
+        final ImportProcedure importProc = getImportProcedure(proc);
+        if (importProc == null) {
             String fmt = "Cannot invoke procedure %s from streaming interface %s. Procedure not found.";
             m_logger.rateLimitedLog(SUPPRESS_INTERVAL, Level.ERROR, null, fmt, proc, caller);
             m_failedCount.incrementAndGet();
             return false;
         }
+        final Procedure catProc = importProc.m_catProc;
 
         StoredProcedureInvocation task = new StoredProcedureInvocation();
 
-        task.setProcName(proc);
-        task.setParams(fieldList);
+        task.setProcName(importProc.m_procName, importProc.m_procNameBytes);
         try {
-            task = MiscUtils.roundTripForCL(task);
+            task.setParamsAndSerialize(fieldList);
         } catch (Exception e) {
             String fmt = "Cannot invoke procedure %s from streaming interface %s. failed to create task.";
             m_logger.rateLimitedLog(SUPPRESS_INTERVAL, Level.ERROR, null, fmt, proc, caller);
@@ -192,7 +239,7 @@ public class InternalConnectionHandler {
         }
         int[] partitions = null;
         try {
-            partitions = InvocationDispatcher.getPartitionsForProcedure(catProc, task);
+            partitions = importProc.getPartitions(task);
         } catch (Exception e) {
             String fmt = "Can not invoke procedure %s from streaming interface %s. Partition not found.";
             m_logger.rateLimitedLog(SUPPRESS_INTERVAL, Level.ERROR, e, fmt, proc, caller);
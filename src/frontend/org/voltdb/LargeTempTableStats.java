@@ -0,0 +1,70 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+
+import org.voltdb.VoltTable.ColumnInfo;
+import org.voltdb.jni.LargeTempTableBlockStore;
+
+/**
+ * Reports the large temp table blocks a site has spilled to disk as
+ * @Statistics SPILL. STALL_TIME is the time the site waited for spilled
+ * blocks to be read back, in milliseconds.
+ */
+public class LargeTempTableStats extends SiteStatsSource
+{
+    private final LargeTempTableBlockStore m_store;
+
+    public LargeTempTableStats(long siteId, LargeTempTableBlockStore store) {
+        super(siteId, false);
+        m_store = store;
+    }
+
+    @Override
+    protected void populateColumnSchema(ArrayList<ColumnInfo> columns) {
+        super.populateColumnSchema(columns);
+        columns.add(new ColumnInfo("BLOCKS_STORED", VoltType.INTEGER));
+        columns.add(new ColumnInfo("BLOCKS_WRITTEN", VoltType.BIGINT));
+        columns.add(new ColumnInfo("BYTES_WRITTEN", VoltType.BIGINT));
+        columns.add(new ColumnInfo("BLOCKS_READ", VoltType.BIGINT));
+        columns.add(new ColumnInfo("BYTES_READ", VoltType.BIGINT));
+        columns.add(new ColumnInfo("PREFETCH_HITS", VoltType.BIGINT));
+        columns.add(new ColumnInfo("STALL_TIME", VoltType.BIGINT));
+    }
+
+    @Override
+    protected void updateStatsRow(Object rowKey, Object[] rowValues) {
+        rowValues[columnNameToIndex.get("BLOCKS_STORED")] = m_store.getBlocksStored();
+        rowValues[columnNameToIndex.get("BLOCKS_WRITTEN")] = m_store.getBlocksWritten();
+        rowValues[columnNameToIndex.get("BYTES_WRITTEN")] = m_store.getBytesWritten();
+        rowValues[columnNameToIndex.get("BLOCKS_READ")] = m_store.getBlocksRead();
+        rowValues[columnNameToIndex.get("BYTES_READ")] = m_store.getBytesRead();
+        rowValues[columnNameToIndex.get("PREFETCH_HITS")] = m_store.getPrefetchHits();
+        rowValues[columnNameToIndex.get("STALL_TIME")] = m_store.getStallTime();
+        super.updateStatsRow(rowKey, rowValues);
+    }
+
+    @Override
+    protected Iterator<Object> getStatsRowKeyIterator(boolean interval)
+    {
+        return Collections.<Object>singletonList(m_store).iterator();
+    }
+}
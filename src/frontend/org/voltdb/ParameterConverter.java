@@ -631,6 +631,15 @@ public class ParameterConverter {
      * @throws InvocationTargetException
      */
     final static public VoltTable[] getResultsFromRawResults(String procedureName, Object result) throws InvocationTargetException {
+        return getResultsFromRawResults(procedureName, result, true);
+    }
+
+    /**
+     * @param convertToHeap false if the caller will copy the tables out of any ee cache
+     * buffer itself
+     */
+    final static public VoltTable[] getResultsFromRawResults(String procedureName, Object result,
+            boolean convertToHeap) throws InvocationTargetException {
         if (result == null) {
             return new VoltTable[0];
         }
@@ -642,7 +651,9 @@ public class ParameterConverter {
                     throw new InvocationTargetException(e);
                 }
                 // Make sure this table does not use an ee cache buffer
-                table.convertToHeapBuffer();
+                if (convertToHeap) {
+                    table.convertToHeapBuffer();
+                }
             }
 
             return retval;
@@ -650,7 +661,9 @@ public class ParameterConverter {
         if (result instanceof VoltTable) {
             VoltTable vt = (VoltTable) result;
             // Make sure this table does not use an ee cache buffer
-            vt.convertToHeapBuffer();
+            if (convertToHeap) {
+                vt.convertToHeapBuffer();
+            }
             return new VoltTable[] { vt };
         }
         if (result instanceof Long) {
@@ -0,0 +1,145 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import org.voltdb.VoltTable.ColumnInfo;
+import org.voltdb.compiler.AdHocCompilerCache;
+import org.voltdb.planner.ActivePlanRepository;
+import org.voltdb.utils.TinyLfuCache;
+
+/**
+ * Reports the hit rates of the three plan cache levels on this host as
+ * @Statistics PLANCACHE: the ad hoc literal SQL cache, the ad hoc
+ * parameterized core cache and the plan fragment cache shared by the sites.
+ */
+public class PlanCacheStats extends StatsSource
+{
+    public enum CacheLevel {
+        LITERAL,
+        CORE,
+        FRAGMENT
+    }
+
+    private static final int ENTRIES = 0;
+    private static final int WEIGHT = 1;
+    private static final int HITS = 2;
+    private static final int MISSES = 3;
+    private static final int INSERTIONS = 4;
+    private static final int EVICTIONS = 5;
+    private static final int REJECTIONS = 6;
+    private static final int COUNTERS = 7;
+
+    // Counter values at the last interval poll, per cache level
+    private final long[][] m_lastInterval = new long[CacheLevel.values().length][];
+    // The ad hoc cache the literal and core baselines were taken from
+    private AdHocCompilerCache m_lastAdHocCache = null;
+    private AdHocCompilerCache m_adHocCache = null;
+    private boolean m_interval = false;
+
+    public PlanCacheStats() {
+        super(false);
+    }
+
+    @Override
+    protected void populateColumnSchema(ArrayList<ColumnInfo> columns) {
+        super.populateColumnSchema(columns);
+        columns.add(new ColumnInfo("CACHE_LEVEL", VoltType.STRING));
+        columns.add(new ColumnInfo("ENTRIES", VoltType.BIGINT));
+        columns.add(new ColumnInfo("WEIGHT", VoltType.BIGINT));
+        columns.add(new ColumnInfo("HITS", VoltType.BIGINT));
+        columns.add(new ColumnInfo("MISSES", VoltType.BIGINT));
+        columns.add(new ColumnInfo("HIT_RATE", VoltType.FLOAT));
+        columns.add(new ColumnInfo("INSERTIONS", VoltType.BIGINT));
+        columns.add(new ColumnInfo("EVICTIONS", VoltType.BIGINT));
+        columns.add(new ColumnInfo("REJECTIONS", VoltType.BIGINT));
+    }
+
+    private static long[] counters(TinyLfuCache<?, ?> cache) {
+        if (cache == null) {
+            return new long[COUNTERS];
+        }
+        return new long[] { cache.size(), cache.weight(), cache.hitCount(), cache.missCount(),
+                            cache.insertionCount(), cache.evictionCount(), cache.rejectionCount() };
+    }
+
+    private long[] counters(CacheLevel level) {
+        switch (level) {
+        case LITERAL:
+            return counters(m_adHocCache == null ? null : m_adHocCache.getLiteralCache());
+        case CORE:
+            return counters(m_adHocCache == null ? null : m_adHocCache.getCoreCache());
+        case FRAGMENT:
+            // Fragments are never refused and are not weighed
+            return new long[] { ActivePlanRepository.getFragmentCacheSize(), 0,
+                                ActivePlanRepository.getFragmentCacheHits(),
+                                ActivePlanRepository.getFragmentCacheMisses(),
+                                ActivePlanRepository.getFragmentCacheMisses(),
+                                ActivePlanRepository.getFragmentCacheEvictions(), 0 };
+        default:
+            throw new IllegalArgumentException("Unknown cache level " + level);
+        }
+    }
+
+    @Override
+    protected void updateStatsRow(Object rowKey, Object[] rowValues) {
+        final CacheLevel level = (CacheLevel)rowKey;
+        final long[] values = counters(level);
+        if (m_interval) {
+            final long[] last = m_lastInterval[level.ordinal()];
+            m_lastInterval[level.ordinal()] = values.clone();
+            if (last != null) {
+                // Entries and weight are current values, not counters
+                for (int i = HITS; i < values.length; i++) {
+                    values[i] -= last[i];
+                }
+            }
+        }
+        rowValues[columnNameToIndex.get("CACHE_LEVEL")] = level.name();
+        rowValues[columnNameToIndex.get("ENTRIES")] = values[ENTRIES];
+        rowValues[columnNameToIndex.get("WEIGHT")] = values[WEIGHT];
+        rowValues[columnNameToIndex.get("HITS")] = values[HITS];
+        rowValues[columnNameToIndex.get("MISSES")] = values[MISSES];
+        final long lookups = values[HITS] + values[MISSES];
+        rowValues[columnNameToIndex.get("HIT_RATE")] = lookups == 0 ? 0.0 : (double)values[HITS] / lookups;
+        rowValues[columnNameToIndex.get("INSERTIONS")] = values[INSERTIONS];
+        rowValues[columnNameToIndex.get("EVICTIONS")] = values[EVICTIONS];
+        rowValues[columnNameToIndex.get("REJECTIONS")] = values[REJECTIONS];
+        super.updateStatsRow(rowKey, rowValues);
+    }
+
+    @Override
+    protected Iterator<Object> getStatsRowKeyIterator(boolean interval)
+    {
+        m_interval = interval;
+        final CatalogContext context = VoltDB.instance().getCatalogContext();
+        m_adHocCache = context == null ? null : AdHocCompilerCache.getCacheForCatalogHash(context.getCatalogHash());
+        if (m_adHocCache != m_lastAdHocCache) {
+            // A catalog update starts new ad hoc caches with fresh counters
+            m_lastInterval[CacheLevel.LITERAL.ordinal()] = null;
+            m_lastInterval[CacheLevel.CORE.ordinal()] = null;
+            m_lastAdHocCache = m_adHocCache;
+        }
+        final List<Object> keys = new ArrayList<Object>(Arrays.asList(CacheLevel.values()));
+        return keys.iterator();
+    }
+}
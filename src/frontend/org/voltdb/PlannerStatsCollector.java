@@ -19,10 +19,14 @@ package org.voltdb;
 
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.HdrHistogram_voltpatches.AbstractHistogram;
 import org.voltcore.logging.VoltLogger;
 import org.voltcore.utils.CoreUtils;
 import org.voltdb.VoltTable.ColumnInfo;
+import org.voltdb.dtxn.LatencyHistogramStats;
 
 /**
  * Collects global cache use stats
@@ -95,11 +99,6 @@ public class PlannerStatsCollector extends StatsSource {
     long m_cacheMisses = 0;
     long m_lastCacheMisses = 0;
 
-    /**
-     * Time of last planning start
-     */
-    Long m_currentStartTime = null;
-
     /**
      * Total amount of planning time
      */
@@ -131,6 +130,18 @@ public class PlannerStatsCollector extends StatsSource {
     long m_invocations = 0;
     long m_lastInvocations = 0;
 
+    /**
+     * Distribution of every planning time, in microseconds
+     */
+    final AbstractHistogram m_planTimes = LatencyHistogramStats.constructHistogram(true);
+    AbstractHistogram m_lastPlanTimes = LatencyHistogramStats.constructHistogram(false);
+
+    /**
+     * Planners available to ad hoc planning, and requests waiting for one of them
+     */
+    volatile int m_planners = 0;
+    final AtomicInteger m_queueDepth = new AtomicInteger();
+
     /**
      * Calculate the invocation count based on the cache hit/miss counts.
      * @return  invocation count
@@ -179,38 +190,43 @@ public class PlannerStatsCollector extends StatsSource {
 
     /**
      * Called before doing planning. Starts timer.
+     * Planning may run on several threads, so the caller keeps the start time.
+     *
+     * @return  start time to hand back to {@link #endStatsCollection}
      */
-    public void startStatsCollection() {
-        if (getInvocations() % m_collectionFrequency == 0) {
-            m_currentStartTime = System.nanoTime();
-        }
+    public long startStatsCollection() {
+        return System.nanoTime();
     }
 
     /**
      * Called after planning or failing to plan. Records timer and cache stats.
      *
+     * @param startTime    value returned by {@link #startStatsCollection}
      * @param cache1Size   number of entries in level 1 cache
      * @param cache2Size   number of entries in level 2 cache
      * @param cacheUse     where the planned statement came from
      * @param partitionId  partition id
      */
-    public void endStatsCollection(long cache1Size, long cache2Size, CacheUse cacheUse, long partitionId) {
-        if (m_currentStartTime != null) {
-            long delta = System.nanoTime() - m_currentStartTime;
-            if (delta < 0) {
-                if (Math.abs(delta) > 1000000000) {
-                    log.info("Planner statistics recorded a negative planning time larger than one second: " +
-                             delta);
-                }
+    public synchronized void endStatsCollection(long startTime, long cache1Size, long cache2Size,
+                                                CacheUse cacheUse, long partitionId) {
+        long delta = System.nanoTime() - startTime;
+        if (delta < 0) {
+            if (Math.abs(delta) > 1000000000) {
+                log.info("Planner statistics recorded a negative planning time larger than one second: " +
+                         delta);
             }
-            else {
+        }
+        else {
+            // The average only covers every Nth invocation, see getSampleCount()
+            if (getInvocations() % m_collectionFrequency == 0) {
                 m_totalPlanningTime += delta;
-                m_minPlanningTime = Math.min(delta, m_minPlanningTime);
-                m_maxPlanningTime = Math.max(delta, m_maxPlanningTime);
-                m_lastMinPlanningTime = Math.min(delta, m_lastMinPlanningTime);
-                m_lastMaxPlanningTime = Math.max(delta, m_lastMaxPlanningTime);
             }
-            m_currentStartTime = null;
+            m_minPlanningTime = Math.min(delta, m_minPlanningTime);
+            m_maxPlanningTime = Math.max(delta, m_maxPlanningTime);
+            m_lastMinPlanningTime = Math.min(delta, m_lastMinPlanningTime);
+            m_lastMaxPlanningTime = Math.max(delta, m_lastMaxPlanningTime);
+            m_planTimes.recordValue(Math.max(1, Math.min(TimeUnit.NANOSECONDS.toMicros(delta),
+                                                         m_planTimes.getHighestTrackableValue())));
         }
 
         m_cache1Level = cache1Size;
@@ -235,6 +251,27 @@ public class PlannerStatsCollector extends StatsSource {
         m_partitionId = partitionId;
     }
 
+    /**
+     * Set the number of planners in the ad hoc planner pool.
+     */
+    public void setPlannerCount(int planners) {
+        m_planners = planners;
+    }
+
+    /**
+     * Called when a statement starts waiting for a free planner.
+     */
+    public void plannerQueued() {
+        m_queueDepth.incrementAndGet();
+    }
+
+    /**
+     * Called when a waiting statement gets a planner.
+     */
+    public void plannerDequeued() {
+        m_queueDepth.decrementAndGet();
+    }
+
     /**
      * Update the rowValues array with the latest statistical information.
      * This method is overrides the super class version
@@ -242,7 +279,7 @@ public class PlannerStatsCollector extends StatsSource {
      * @param values Values of each column of the row of stats. Used as output.
      */
     @Override
-    protected void updateStatsRow(Object rowKey, Object rowValues[]) {
+    protected synchronized void updateStatsRow(Object rowKey, Object rowValues[]) {
         super.updateStatsRow(rowKey, rowValues);
 
         rowValues[columnNameToIndex.get("PARTITION_ID")] = m_partitionId;
@@ -255,6 +292,7 @@ public class PlannerStatsCollector extends StatsSource {
         long cache2Hits  = m_cache2Hits;
         long cacheMisses = m_cacheMisses;
         long failureCount = m_failures;
+        AbstractHistogram planTimes = m_planTimes.copy();
 
         if (m_interval) {
             totalTimedExecutionTime = m_totalPlanningTime - m_lastTimedPlanningTime;
@@ -284,6 +322,11 @@ public class PlannerStatsCollector extends StatsSource {
             m_lastFailures = m_failures;
 
             m_lastInvocations = m_invocations;
+
+            AbstractHistogram total = planTimes;
+            planTimes = total.copy();
+            planTimes.subtract(m_lastPlanTimes);
+            m_lastPlanTimes = total;
         }
 
         rowValues[columnNameToIndex.get(VoltSystemProcedure.CNAME_SITE_ID)] = CoreUtils.getSiteIdFromHSId(m_siteId);
@@ -302,6 +345,15 @@ public class PlannerStatsCollector extends StatsSource {
             rowValues[columnNameToIndex.get("PLAN_TIME_AVG")] = 0L;
         }
         rowValues[columnNameToIndex.get("FAILURES")] = failureCount;
+        // Percentiles are recorded in microseconds, report them in nanoseconds like the other times
+        rowValues[columnNameToIndex.get("PLAN_TIME_P50")] =
+                TimeUnit.MICROSECONDS.toNanos(planTimes.getValueAtPercentile(50D));
+        rowValues[columnNameToIndex.get("PLAN_TIME_P95")] =
+                TimeUnit.MICROSECONDS.toNanos(planTimes.getValueAtPercentile(95D));
+        rowValues[columnNameToIndex.get("PLAN_TIME_P99")] =
+                TimeUnit.MICROSECONDS.toNanos(planTimes.getValueAtPercentile(99D));
+        rowValues[columnNameToIndex.get("PLANNERS")] = m_planners;
+        rowValues[columnNameToIndex.get("QUEUE_DEPTH")] = m_queueDepth.get();
     }
 
     /**
@@ -322,6 +374,11 @@ public class PlannerStatsCollector extends StatsSource {
         columns.add(new ColumnInfo("PLAN_TIME_MAX", VoltType.BIGINT));
         columns.add(new ColumnInfo("PLAN_TIME_AVG", VoltType.BIGINT));
         columns.add(new ColumnInfo("FAILURES",      VoltType.BIGINT));
+        columns.add(new ColumnInfo("PLAN_TIME_P50", VoltType.BIGINT));
+        columns.add(new ColumnInfo("PLAN_TIME_P95", VoltType.BIGINT));
+        columns.add(new ColumnInfo("PLAN_TIME_P99", VoltType.BIGINT));
+        columns.add(new ColumnInfo("PLANNERS",      VoltType.INTEGER));
+        columns.add(new ColumnInfo("QUEUE_DEPTH",   VoltType.INTEGER));
     }
 
     @Override
@@ -37,6 +37,8 @@ import java.util.concurrent.ExecutionException;
 
 import org.voltcore.logging.VoltLogger;
 import org.voltcore.utils.CoreUtils;
+import org.voltcore.utils.DBBPool;
+import org.voltcore.utils.DBBPool.BBContainer;
 import org.voltdb.StatementStats.SingleCallStatsToken;
 import org.voltdb.VoltProcedure.VoltAbortException;
 import org.voltdb.catalog.PlanFragment;
@@ -80,6 +82,12 @@ public class ProcedureRunner {
         HOST_TRACE_ENABLED = log.isTraceEnabled();
     }
 
+    // Leave large read-only single partition results in a pooled direct buffer that the
+    // client interface writes to the socket as is, instead of copying them to the heap.
+    // Only done when the client is connected to this host, see ClientResponseImpl.setPooledResults().
+    static final boolean ZERO_COPY_RESULTS = Boolean.valueOf(System.getProperty("ZERO_COPY_RESULTS", "false"));
+    static final int ZERO_COPY_RESULT_THRESHOLD = Integer.getInteger("ZERO_COPY_RESULT_THRESHOLD", 1024 * 1024);
+
     // SQL statement queue info
     //
     // This must be less than or equal to MAX_BATCH_COUNT in src/ee/execution/VoltDBEngine.h
@@ -338,6 +346,7 @@ public class ProcedureRunner {
 
         try {
             VoltTable[] results = null;
+            final boolean zeroCopy = canZeroCopyResults();
 
             // inject sysproc execution context as the first parameter.
             if (isSystemProcedure()) {
@@ -378,7 +387,8 @@ public class ProcedureRunner {
                     }
                     try {
                         Object rawResult = m_procMethod.invoke(m_procedure, paramList);
-                        results = ParameterConverter.getResultsFromRawResults(m_procedureName, rawResult);
+                        results = ParameterConverter.getResultsFromRawResults(m_procedureName, rawResult,
+                                !zeroCopy);
                     } catch (IllegalAccessException e) {
                         // If reflection fails, invoke the same error handling that other exceptions do
                         throw new InvocationTargetException(e);
@@ -439,7 +449,9 @@ public class ProcedureRunner {
                     if (getNonVoltDBBackendIfExists() == null) {
                         m_batch.addAll(m_sqlStmts);
                         results = voltExecuteSQL(true);
-                        results = convertTablesToHeapBuffers(results);
+                        if (!zeroCopy) {
+                            results = convertTablesToHeapBuffers(results);
+                        }
                     }
                 } catch (SerializableException ex) {
                     retval = getErrorResponse(m_procedureName,
@@ -466,12 +478,22 @@ public class ProcedureRunner {
             }
 
             if (retval == null) {
+                BBContainer pooled = null;
+                if (zeroCopy) {
+                    pooled = flattenTablesToPool(results);
+                }
                 retval = new ClientResponseImpl(
                         m_statusCode,
                         m_appStatusCode,
                         m_appStatusString,
                         results,
                         m_statusString);
+                if (pooled != null) {
+                    retval.setPooledResults(DBBPool.refCounted(pooled), pooled.b().limit());
+                }
+            } else if (zeroCopy) {
+                // Results of a failed call are dropped, but they may still point into the ee cache
+                convertTablesToHeapBuffers(results);
             }
 
             // Even when the transaction fails, the computed hashes are valuable for diagnostic purpose,
@@ -581,6 +603,54 @@ public class ProcedureRunner {
         }
     }
 
+    /**
+     * Consecutive invocations of a single-partition procedure without Java code,
+     * whose only statement runs in a single plan fragment, may be executed by the
+     * site in one EE call. Each invocation still goes through {@link #call} as usual
+     * afterwards, and is handed the results the batch already computed for it.
+     *
+     * @return the statement of this procedure if it can be batched, otherwise null
+     */
+    public SQLStmt getBatchableStatement() {
+        if (m_hasJava || m_isSysProc || !m_isSinglePartition || m_sqlStmts.size() != 1 ||
+                getNonVoltDBBackendIfExists() != null) {
+            return null;
+        }
+        SQLStmt stmt = m_sqlStmts.get(0).stmt;
+        if (stmt.aggregator == null || stmt.collector != null) {
+            return null;
+        }
+        return stmt;
+    }
+
+    public long getBatchableFragmentId() {
+        return getBatchableStatement().aggregator.id;
+    }
+
+    /**
+     * Convert the parameters of an invocation of a batchable procedure into those
+     * of its statement, the same way {@link #call} does.
+     *
+     * @return the statement parameters, or null if the call would fail on them
+     */
+    public ParameterSet getBatchableParameters(Object[] paramListIn) {
+        SQLStmt stmt = getBatchableStatement();
+        assert(stmt != null);
+        if (paramListIn.length != m_paramTypes.length) {
+            return null;
+        }
+        try {
+            Object[] paramList = new Object[m_paramTypes.length];
+            for (int i = 0; i < m_paramTypes.length; i++) {
+                paramList[i] = ParameterConverter.tryToMakeCompatible(m_paramTypes[i], paramListIn[i]);
+            }
+            return getCleanParams(stmt, false,
+                    Arrays.copyOfRange(paramList, 0, stmt.statementParamTypes.length));
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
     public void setupTransaction(TransactionState txnState) {
         m_txnState = txnState;
     }
@@ -664,7 +734,7 @@ public class ProcedureRunner {
         }
 
         try {
-            AdHocPlannedStmtBatch batch = AdHocNTBase.plan(VoltDB.instance().getCatalogContext().m_ptool,
+            AdHocPlannedStmtBatch batch = AdHocNTBase.plan(VoltDB.instance().getCatalogContext().m_plannerPool,
                     sql, args, m_isSinglePartition);
 
             if (m_isReadOnly && !batch.isReadOnly()) {
@@ -1289,6 +1359,51 @@ public class ProcedureRunner {
         return new ClientResponseImpl(status, appStatus, appStatusString, new VoltTable[0], "VOLTDB ERROR: " + msg);
     }
 
+    /**
+     * Results can be left for the network to write from a pooled buffer only if the
+     * response never leaves this host. Reads are not replicated, so the response of a
+     * read-only single partition procedure goes from this site straight to the client
+     * interface that initiated it.
+     */
+    private boolean canZeroCopyResults() {
+        return ZERO_COPY_RESULTS &&
+               m_isReadOnly &&
+               m_isSinglePartition &&
+               !m_isSysProc &&
+               m_txnState != null &&
+               CoreUtils.getHostIdFromHSId(m_txnState.initiatorHSId) == m_site.getCorrespondingHostId();
+    }
+
+    /**
+     * Flatten the tables back to back into a pooled direct buffer and re-point them at it,
+     * which also moves them out of the ee cache buffer. Small results are copied to the heap
+     * as usual.
+     * @return the pooled buffer, or null if the results were copied to the heap
+     */
+    private BBContainer flattenTablesToPool(VoltTable[] results) {
+        long size = 0;
+        for (VoltTable table : results) {
+            size += table.getSerializedSize();
+        }
+        if (size < ZERO_COPY_RESULT_THRESHOLD || size > Integer.MAX_VALUE) {
+            convertTablesToHeapBuffers(results);
+            return null;
+        }
+
+        final BBContainer pooled = DBBPool.allocateDirectAndPool((int) size);
+        final ByteBuffer buf = pooled.b();
+        for (VoltTable table : results) {
+            table.flattenToBuffer(buf);
+        }
+        final ByteBuffer view = buf.duplicate();
+        view.flip();
+        for (VoltTable table : results) {
+            table.initFromBuffer(view);
+        }
+        buf.flip();
+        return pooled;
+    }
+
     final private VoltTable[] convertTablesToHeapBuffers(VoltTable[] results) {
         for (VoltTable table : results) {
             // Make sure this table does not use an ee cache buffer
@@ -18,7 +18,9 @@ package org.voltdb;
 
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.LinkedTransferQueue;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -30,12 +32,16 @@ import org.voltdb.iv2.SiteTasker;
  * A class to track and generate statistics regarding queue depth.
  * Generate information on instantaneous queue depth and number of tasks
  * pulled from queue, average wait time and max wait time (in microseconds)
- * within a 5-second window
+ * within a 5-second window, along with the number and sizes of the batches
+ * of single-partition procedures the site executed in that window.
  */
 public class QueueDepthTracker extends SiteStatsSource {
 
     private static final VoltLogger s_logger = new VoltLogger("HOST");
 
+    // The tracker of each site on this host, read by adaptive admission control
+    private static final Map<Long, QueueDepthTracker> s_trackers = new ConcurrentHashMap<>();
+
     private final AtomicInteger m_depth;
     private long m_lastWaitTime;
     private final ArrayBlockingQueue<QueueStatus> m_historicalData;
@@ -45,6 +51,9 @@ public class QueueDepthTracker extends SiteStatsSource {
     private volatile long m_recentMaxWaitTime;
     private long m_recentTotalWaitTime;
     private long m_recentPollCount;
+    private long m_recentBatchCount;
+    private long m_recentBatchedTaskCount;
+    private int m_recentMaxBatchSize;
     private long m_recentWindowSize = m_maxWaitTimeWindowSize / 10; // recent window size set to 0.5 second
 
     public class QueueStatus {
@@ -52,12 +61,19 @@ public class QueueDepthTracker extends SiteStatsSource {
         public long maxWait;
         public long totalWait;
         public long pollCount;
+        public long batchCount;
+        public long batchedTaskCount;
+        public int maxBatchSize;
 
-        public QueueStatus(long timestamp, long max, long total, long count) {
+        public QueueStatus(long timestamp, long max, long total, long count,
+                long batchCount, long batchedTaskCount, int maxBatchSize) {
             this.timestamp = timestamp;
             this.maxWait = max;
             this.totalWait = total;
             this.pollCount = count;
+            this.batchCount = batchCount;
+            this.batchedTaskCount = batchedTaskCount;
+            this.maxBatchSize = maxBatchSize;
         }
     }
 
@@ -71,6 +87,27 @@ public class QueueDepthTracker extends SiteStatsSource {
         m_recentTotalWaitTime = 0;
         m_recentPollCount = 0;
         m_tasks = tasks;
+        s_trackers.put(siteId, this);
+    }
+
+    /**
+     * @return how long in nanoseconds the oldest task queued at any site of this host has been waiting
+     */
+    public static long getMaxCurrentWaitNanos() {
+        final long currentTime = System.nanoTime();
+        long maxWait = 0;
+        for (QueueDepthTracker tracker : s_trackers.values()) {
+            maxWait = Math.max(maxWait, tracker.getCurrentWaitNanos(currentTime));
+        }
+        return maxWait;
+    }
+
+    private long getCurrentWaitNanos(long currentTime) {
+        SiteTasker nextTask = m_tasks.peek();
+        if (nextTask == null) {
+            return 0;
+        }
+        return currentTime - nextTask.getQueueOfferTime();
     }
 
     public void offerUpdate() {
@@ -98,17 +135,33 @@ public class QueueDepthTracker extends SiteStatsSource {
             if (!m_historicalData.offer(new QueueStatus(currentTime,
                     m_recentMaxWaitTime,
                     m_recentTotalWaitTime,
-                    m_recentPollCount))) {
+                    m_recentPollCount,
+                    m_recentBatchCount,
+                    m_recentBatchedTaskCount,
+                    m_recentMaxBatchSize))) {
                 //This should never happen...
                 s_logger.warn("Could not insert queue stats data. Current data size: " + m_historicalData.size());
             }
             m_recentMaxWaitTime = m_lastWaitTime;
             m_recentTotalWaitTime = m_lastWaitTime;
             m_recentPollCount = 1;
+            m_recentBatchCount = 0;
+            m_recentBatchedTaskCount = 0;
+            m_recentMaxBatchSize = 0;
             m_maxWaitLastLogTime = currentTime;
         }
     }
 
+    /**
+     * Called by the site thread after it took a batch of tasks off its queue,
+     * which it did after the pollUpdate() of every task of the batch.
+     */
+    public void batchUpdate(int batchSize) {
+        m_recentBatchCount++;
+        m_recentBatchedTaskCount += batchSize;
+        m_recentMaxBatchSize = Math.max(m_recentMaxBatchSize, batchSize);
+    }
+
     @Override
     protected void populateColumnSchema(ArrayList<ColumnInfo> columns) {
         super.populateColumnSchema(columns);
@@ -116,23 +169,23 @@ public class QueueDepthTracker extends SiteStatsSource {
         columns.add(new ColumnInfo("POLL_COUNT", VoltType.BIGINT));
         columns.add(new ColumnInfo("AVG_WAIT", VoltType.BIGINT));
         columns.add(new ColumnInfo("MAX_WAIT", VoltType.BIGINT));
+        columns.add(new ColumnInfo("BATCH_COUNT", VoltType.BIGINT));
+        columns.add(new ColumnInfo("AVG_BATCH_SIZE", VoltType.FLOAT));
+        columns.add(new ColumnInfo("MAX_BATCH_SIZE", VoltType.INTEGER));
     }
 
     @Override
     protected void updateStatsRow(Object rowKey, Object rowValues[]) {
         long currentTime = System.nanoTime();
         // check if current wait time exceeds the maxWaitTime
-        long currentWaitTime;
-        SiteTasker nextTask = m_tasks.peek();
-        if (nextTask == null) {
-            currentWaitTime = 0;
-        } else {
-            currentWaitTime = currentTime - nextTask.getQueueOfferTime();
-        }
+        long currentWaitTime = getCurrentWaitNanos(currentTime);
         // check historicalMaxWaitTime, report max wait time and mean wait time in window
         long maxWaitTimeInWindow = Math.max(currentWaitTime, m_recentMaxWaitTime);
         long totalWaitTimeInWindow = 0;
         long totalPollCountInWindow = 0;
+        long batchCountInWindow = m_recentBatchCount;
+        long batchedTaskCountInWindow = m_recentBatchedTaskCount;
+        int maxBatchSizeInWindow = m_recentMaxBatchSize;
         if (!m_historicalData.isEmpty()) {
             // iterate through all past max wait times
             // only process those within the window
@@ -141,6 +194,9 @@ public class QueueDepthTracker extends SiteStatsSource {
                     maxWaitTimeInWindow = Math.max(maxWaitTimeInWindow, status.maxWait);
                     totalWaitTimeInWindow += status.totalWait;
                     totalPollCountInWindow += status.pollCount;
+                    batchCountInWindow += status.batchCount;
+                    batchedTaskCountInWindow += status.batchedTaskCount;
+                    maxBatchSizeInWindow = Math.max(maxBatchSizeInWindow, status.maxBatchSize);
                 }
             }
         }
@@ -149,6 +205,10 @@ public class QueueDepthTracker extends SiteStatsSource {
         // wait times are in microseconds
         rowValues[columnNameToIndex.get("AVG_WAIT")] = (totalWaitTimeInWindow / Math.max(1, totalPollCountInWindow)) / 1000;
         rowValues[columnNameToIndex.get("MAX_WAIT")] = maxWaitTimeInWindow / 1000;
+        rowValues[columnNameToIndex.get("BATCH_COUNT")] = batchCountInWindow;
+        rowValues[columnNameToIndex.get("AVG_BATCH_SIZE")] =
+                batchCountInWindow == 0 ? 0.0 : (double) batchedTaskCountInWindow / batchCountInWindow;
+        rowValues[columnNameToIndex.get("MAX_BATCH_SIZE")] = maxBatchSizeInWindow;
 
         super.updateStatsRow(rowKey, rowValues);
     }
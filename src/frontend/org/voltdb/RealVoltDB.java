@@ -121,10 +121,12 @@ import org.voltdb.compiler.deploymentfile.ClusterType;
 import org.voltdb.compiler.deploymentfile.ConsistencyType;
 import org.voltdb.compiler.deploymentfile.DeploymentType;
 import org.voltdb.compiler.deploymentfile.DrRoleType;
+import org.voltdb.compiler.deploymentfile.ExportConfigurationType;
 import org.voltdb.compiler.deploymentfile.HeartbeatType;
 import org.voltdb.compiler.deploymentfile.PartitionDetectionType;
 import org.voltdb.compiler.deploymentfile.PathsType;
 import org.voltdb.compiler.deploymentfile.SecurityType;
+import org.voltdb.compiler.deploymentfile.ServerExportEnum;
 import org.voltdb.compiler.deploymentfile.SystemSettingsType;
 import org.voltdb.dtxn.InitiatorStats;
 import org.voltdb.dtxn.LatencyHistogramStats;
@@ -617,12 +619,19 @@ public class RealVoltDB implements VoltDBInterface, RestoreAgent.Callback, HostM
 
     private final List<String> pathsWithRecoverableArtifacts(DeploymentType deployment) {
         ImmutableList.Builder<String> nonEmptyPaths = ImmutableList.builder();
-        if (!MiscUtils.isPro()) {
-            return nonEmptyPaths.build();
-        }
         PathsType paths = deployment.getPaths();
         String voltDbRoot = getVoltDBRootPath(paths.getVoltdbroot());
         String path;
+        if (!MiscUtils.isPro()) {
+            // The community command log recovers from its own log and truncation snapshots
+            if (deployment.getCommandlog() != null && deployment.getCommandlog().isEnabled()) {
+                if ((path = managedPathEmptyCheck(voltDbRoot, getCommandLogPath(paths.getCommandlog()))) != null)
+                    nonEmptyPaths.add(path);
+                if ((path = managedPathEmptyCheck(voltDbRoot, getCommandLogSnapshotPath(paths.getCommandlogsnapshot()))) != null)
+                    nonEmptyPaths.add(path);
+            }
+            return nonEmptyPaths.build();
+        }
         if ((path = managedPathEmptyCheck(voltDbRoot, getSnapshotPath(paths.getSnapshots()))) != null)
             nonEmptyPaths.add(path);
         if ((path = managedPathEmptyCheck(voltDbRoot, getCommandLogPath(paths.getCommandlog()))) != null)
@@ -1278,6 +1287,11 @@ public class RealVoltDB implements VoltDBInterface, RestoreAgent.Callback, HostM
             m_initiatorStats = new InitiatorStats(m_myHostId);
             m_liveClientsStats = new LiveClientsStats();
             getStatsAgent().registerStatsSource(StatsSelector.LIVECLIENTS, 0, m_liveClientsStats);
+            getStatsAgent().registerStatsSource(StatsSelector.ADMISSION, 0, new AdmissionControlStats());
+            getStatsAgent().registerStatsSource(StatsSelector.COMPRESSION, 0, new CompressionStats());
+            getStatsAgent().registerStatsSource(StatsSelector.SNAPSHOTRESTORE, 0, new SnapshotRestoreStats());
+            getStatsAgent().registerStatsSource(StatsSelector.PLANCACHE, 0, new PlanCacheStats());
+            getStatsAgent().registerStatsSource(StatsSelector.EXPORT, 0, ExportManager.instance().getExportStats());
 
             m_latencyStats = new LatencyStats();
             getStatsAgent().registerStatsSource(StatsSelector.LATENCY, 0, m_latencyStats);
@@ -1501,8 +1515,7 @@ public class RealVoltDB implements VoltDBInterface, RestoreAgent.Callback, HostM
             if (m_configuredReplicationFactor == 0) {
                 consoleLog.warn("This is not a highly available cluster. K-Safety is set to 0.");
             }
-            boolean usingCommandLog = m_config.m_isEnterprise
-                    && (m_catalogContext.cluster.getLogconfig() != null)
+            boolean usingCommandLog = (m_catalogContext.cluster.getLogconfig() != null)
                     && (m_catalogContext.cluster.getLogconfig().get("log") != null)
                     && m_catalogContext.cluster.getLogconfig().get("log").getEnabled();
             if (!usingCommandLog) {
@@ -2345,18 +2358,24 @@ public class RealVoltDB implements VoltDBInterface, RestoreAgent.Callback, HostM
                             "in the community edition of VoltDB.");
                     shutdownDeployment = true;
                 }
-                if ((deployment.getCommandlog() != null) && (deployment.getCommandlog().isEnabled())) {
-                    consoleLog.error("Command logging is not supported " +
-                            "in the community edition of VoltDB.");
-                    shutdownDeployment = true;
-                }
-                if ((deployment.getExport() != null) && deployment.getExport().getConfiguration() != null && !deployment.getExport().getConfiguration().isEmpty()) {
-                    consoleLog.error("Export is not supported " +
-                            "in the community edition of VoltDB.");
-                    shutdownDeployment = true;
+                // the built-in export processor only writes to files and JDBC
+                if ((deployment.getExport() != null) && deployment.getExport().getConfiguration() != null) {
+                    for (ExportConfigurationType exportConfig : deployment.getExport().getConfiguration()) {
+                        if (exportConfig.isEnabled() &&
+                                exportConfig.getType() != ServerExportEnum.FILE &&
+                                exportConfig.getType() != ServerExportEnum.JDBC) {
+                            consoleLog.error("Export type \"" + exportConfig.getType().value() +
+                                    "\" is not supported in the community edition of VoltDB.");
+                            shutdownDeployment = true;
+                        }
+                    }
                 }
-                // check the start action for the community edition
-                if (m_config.m_startAction != StartAction.CREATE) {
+                // check the start action for the community edition, recovery
+                // is only possible from the command log
+                boolean commandLogEnabled = (deployment.getCommandlog() != null) &&
+                        deployment.getCommandlog().isEnabled();
+                if (m_config.m_startAction != StartAction.CREATE &&
+                        !(commandLogEnabled && m_config.m_startAction.doesRecover())) {
                     consoleLog.error("Start action \"" + m_config.m_startAction.getClass().getSimpleName() +
                             "\" is not supported in the community edition of VoltDB.");
                     shutdownAction = true;
@@ -2605,18 +2624,24 @@ public class RealVoltDB implements VoltDBInterface, RestoreAgent.Callback, HostM
                             "in the community edition of VoltDB.");
                     shutdownDeployment = true;
                 }
-                if ((deployment.getCommandlog() != null) && (deployment.getCommandlog().isEnabled())) {
-                    consoleLog.error("Command logging is not supported " +
-                            "in the community edition of VoltDB.");
-                    shutdownDeployment = true;
-                }
-                if ((deployment.getExport() != null) && deployment.getExport().getConfiguration() != null && !deployment.getExport().getConfiguration().isEmpty()) {
-                    consoleLog.error("Export is not supported " +
-                            "in the community edition of VoltDB.");
-                    shutdownDeployment = true;
+                // the built-in export processor only writes to files and JDBC
+                if ((deployment.getExport() != null) && deployment.getExport().getConfiguration() != null) {
+                    for (ExportConfigurationType exportConfig : deployment.getExport().getConfiguration()) {
+                        if (exportConfig.isEnabled() &&
+                                exportConfig.getType() != ServerExportEnum.FILE &&
+                                exportConfig.getType() != ServerExportEnum.JDBC) {
+                            consoleLog.error("Export type \"" + exportConfig.getType().value() +
+                                    "\" is not supported in the community edition of VoltDB.");
+                            shutdownDeployment = true;
+                        }
+                    }
                 }
-                // check the start action for the community edition
-                if (m_config.m_startAction != StartAction.CREATE) {
+                // check the start action for the community edition, recovery
+                // is only possible from the command log
+                boolean commandLogEnabled = (deployment.getCommandlog() != null) &&
+                        deployment.getCommandlog().isEnabled();
+                if (m_config.m_startAction != StartAction.CREATE &&
+                        !(commandLogEnabled && m_config.m_startAction.doesRecover())) {
                     consoleLog.error("Start action \"" + m_config.m_startAction.getClass().getSimpleName() +
                             "\" is not supported in the community edition of VoltDB.");
                     shutdownAction = true;
@@ -3821,7 +3846,7 @@ public class RealVoltDB implements VoltDBInterface, RestoreAgent.Callback, HostM
         try {
             final ZooKeeper zk = m_messenger.getZK();
             boolean logRecoveryCompleted = false;
-            if (getCommandLog().getClass().getName().equals("org.voltdb.CommandLogImpl")) {
+            if (getCommandLog().isEnabled()) {
                 String requestNode = zk.create(VoltZK.request_truncation_snapshot_node, null,
                         Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT_SEQUENTIAL);
                 if (m_rejoinTruncationReqId == null) {
@@ -485,7 +485,7 @@ SnapshotCompletionInterest, Promotable
         m_action = action;
         m_hostMessenger = hostMessenger;
         m_zk = hostMessenger.getZK();
-        m_clEnabled = VoltDB.instance().getConfig().m_isEnterprise ? clEnabled : false;
+        m_clEnabled = clEnabled;
         m_clPath = clPath;
         m_clSnapshotPath = clSnapshotPath;
         m_snapshotPath = snapshotPath;
@@ -516,6 +516,16 @@ SnapshotCompletionInterest, Promotable
                                                                     m_clPath,
                                                                     m_liveHosts);
             }
+            else if (m_clEnabled && startAction.doesRecover()) {
+                m_replayAgent = new GroupCommitCommandLogReinitiator(m_hostId,
+                                                                     startAction,
+                                                                     m_hostMessenger,
+                                                                     m_clPath,
+                                                                     m_liveHosts);
+            }
+            else {
+                m_replayAgent = new DefaultCommandLogReinitiator();
+            }
         } catch (Exception e) {
             VoltDB.crashGlobalVoltDB("Unable to instantiate command log reinitiator",
                                      true, e);
@@ -837,6 +847,16 @@ SnapshotCompletionInterest, Promotable
             return null;
         }
 
+        // Unchanged tables of an incremental snapshot can only be read if the files they refer to are intact
+        if (!s.m_incrementalBases.isEmpty() && !s.m_tableFiles.keySet().containsAll(digestTableNames)) {
+            m_snapshotErrLogStr.append("\nRejected snapshot ")
+                            .append(s.getNonce())
+                            .append(" because the files of snapshot ")
+                            .append(s.m_incrementalBases)
+                            .append(" holding its unchanged tables are missing or invalid.");
+            return null;
+        }
+
         if (s.m_catalogFile == null) {
             m_snapshotErrLogStr.append("\nRejected snapshot ")
                             .append(s.getNonce())
@@ -1377,10 +1397,8 @@ SnapshotCompletionInterest, Promotable
          * they can be set individually
          */
         Map<String, SnapshotPathType> paths = new HashMap<String, SnapshotPathType>();
-        if (VoltDB.instance().getConfig().m_isEnterprise) {
-            if (m_clSnapshotPath != null) {
-                paths.put(m_clSnapshotPath, SnapshotPathType.SNAP_CL);
-            }
+        if (m_clSnapshotPath != null) {
+            paths.put(m_clSnapshotPath, SnapshotPathType.SNAP_CL);
         }
         if (m_snapshotPath != null) {
             paths.put(m_snapshotPath, SnapshotPathType.SNAP_AUTO);
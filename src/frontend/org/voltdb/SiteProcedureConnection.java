@@ -199,6 +199,12 @@ public interface SiteProcedureConnection {
 
     public long[] getUSOForExportTable(String signature);
 
+    /**
+     * Get the number of changes applied to a table at this site.
+     * An unchanged count means the table still holds the same rows.
+     */
+    public long getTableModificationCount(int tableId);
+
     public TupleStreamStateInfo getDRTupleStreamStateInfo();
 
     public void setDRSequenceNumbers(Long partitionSequenceNumber, Long mpSequenceNumber);
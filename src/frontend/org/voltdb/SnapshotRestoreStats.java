@@ -0,0 +1,164 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.voltdb.VoltTable.ColumnInfo;
+
+/**
+ * Reports how far this host has got reading each table's snapshot files as
+ * @Statistics SNAPSHOTRESTORE. A table's row is reset when a file from a
+ * different snapshot is opened for it.
+ */
+public class SnapshotRestoreStats extends StatsSource
+{
+    private static final Map<String, TableProgress> s_tables = new ConcurrentHashMap<String, TableProgress>();
+
+    /**
+     * Read progress of one table, summed over the files of the table read on this host.
+     */
+    public static class TableProgress {
+        private final String m_tableName;
+        private long m_txnId;
+        private int m_files = 0;
+        private int m_openFiles = 0;
+        private long m_bytesTotal = 0;
+        private long m_bytesRead = 0;
+        private long m_chunks = 0;
+        private long m_rows = 0;
+        private long m_startNanos = 0;
+        private long m_endNanos = 0;
+
+        TableProgress(String tableName, long txnId) {
+            m_tableName = tableName;
+            m_txnId = txnId;
+        }
+
+        synchronized void fileOpened(long txnId, long bytes) {
+            if (txnId != m_txnId) {
+                m_txnId = txnId;
+                m_files = 0;
+                m_bytesTotal = 0;
+                m_bytesRead = 0;
+                m_chunks = 0;
+                m_rows = 0;
+            }
+            if (m_openFiles++ == 0) {
+                m_startNanos = System.nanoTime() - elapsedNanos();
+            }
+            m_files++;
+            m_bytesTotal += bytes;
+        }
+
+        public synchronized void bytesRead(long bytes) {
+            m_bytesRead += bytes;
+        }
+
+        public synchronized void chunkDelivered(int rows) {
+            m_chunks++;
+            m_rows += rows;
+        }
+
+        public synchronized void fileClosed() {
+            if (--m_openFiles == 0) {
+                m_endNanos = System.nanoTime();
+            }
+        }
+
+        // Time spent with at least one file open
+        private long elapsedNanos() {
+            if (m_files == 0) {
+                return 0;
+            }
+            return (m_openFiles > 0 ? System.nanoTime() : m_endNanos) - m_startNanos;
+        }
+
+        synchronized void populate(Map<String, Integer> columnNameToIndex, Object[] rowValues) {
+            final long elapsedNanos = elapsedNanos();
+            rowValues[columnNameToIndex.get("TABLE_NAME")] = m_tableName;
+            rowValues[columnNameToIndex.get("TXNID")] = m_txnId;
+            rowValues[columnNameToIndex.get("FILES")] = m_files;
+            rowValues[columnNameToIndex.get("BYTES_READ")] = m_bytesRead;
+            rowValues[columnNameToIndex.get("BYTES_TOTAL")] = m_bytesTotal;
+            rowValues[columnNameToIndex.get("PERCENT_COMPLETE")] =
+                    m_bytesTotal == 0 ? 100 : (int)(m_bytesRead * 100 / m_bytesTotal);
+            rowValues[columnNameToIndex.get("CHUNKS")] = m_chunks;
+            rowValues[columnNameToIndex.get("ROWS")] = m_rows;
+            rowValues[columnNameToIndex.get("ELAPSED_TIME")] = TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+            rowValues[columnNameToIndex.get("THROUGHPUT")] = elapsedNanos == 0 ?
+                    0.0 : m_bytesRead / (1024.0 * 1024.0) / (elapsedNanos / 1e9);
+        }
+    }
+
+    /**
+     * Called when a save file of the table starts being read.
+     * @param bytes the number of chunk bytes in the file
+     */
+    public static TableProgress startFile(String tableName, long txnId, long bytes) {
+        TableProgress progress = s_tables.get(tableName);
+        if (progress == null) {
+            final TableProgress newProgress = new TableProgress(tableName, txnId);
+            progress = s_tables.putIfAbsent(tableName, newProgress);
+            if (progress == null) {
+                progress = newProgress;
+            }
+        }
+        progress.fileOpened(txnId, bytes);
+        return progress;
+    }
+
+    static TableProgress getProgress(String tableName) {
+        return s_tables.get(tableName);
+    }
+
+    public SnapshotRestoreStats() {
+        super(false);
+    }
+
+    @Override
+    protected void populateColumnSchema(ArrayList<ColumnInfo> columns) {
+        super.populateColumnSchema(columns);
+        columns.add(new ColumnInfo("TABLE_NAME", VoltType.STRING));
+        columns.add(new ColumnInfo("TXNID", VoltType.BIGINT));
+        columns.add(new ColumnInfo("FILES", VoltType.INTEGER));
+        columns.add(new ColumnInfo("BYTES_READ", VoltType.BIGINT));
+        columns.add(new ColumnInfo("BYTES_TOTAL", VoltType.BIGINT));
+        columns.add(new ColumnInfo("PERCENT_COMPLETE", VoltType.INTEGER));
+        columns.add(new ColumnInfo("CHUNKS", VoltType.BIGINT));
+        columns.add(new ColumnInfo("ROWS", VoltType.BIGINT));
+        columns.add(new ColumnInfo("ELAPSED_TIME", VoltType.BIGINT));
+        columns.add(new ColumnInfo("THROUGHPUT", VoltType.FLOAT));
+    }
+
+    @Override
+    protected void updateStatsRow(Object rowKey, Object[] rowValues) {
+        ((TableProgress)rowKey).populate(columnNameToIndex, rowValues);
+        super.updateStatsRow(rowKey, rowValues);
+    }
+
+    @Override
+    protected Iterator<Object> getStatsRowKeyIterator(boolean interval)
+    {
+        return new ArrayList<Object>(s_tables.values()).iterator();
+    }
+}
@@ -199,6 +199,10 @@ public class SnapshotSaveAPI
             //From within this EE, record the sequence numbers as of the start of the snapshot (now)
             //so that the info can be put in the digest.
             SnapshotSiteProcessor.populateSequenceNumbersForExecutionSite(context);
+            if (format == SnapshotFormat.NATIVE && jsData != null &&
+                    jsData.optBoolean(SnapshotUtil.JSON_INCREMENTAL, false)) {
+                SnapshotSiteProcessor.populateTableModificationCountsForExecutionSite(context);
+            }
             Integer partitionId = TxnEgo.getPartitionId(partitionTxnId);
             SNAP_LOG.debug("Registering transaction id " + partitionTxnId + " for " + TxnEgo.getPartitionId(partitionTxnId));
             m_partitionLastSeenTransactionIds.put(partitionId, partitionTxnId);
@@ -263,8 +263,10 @@ public class SnapshotScanAgent extends OpsAgent
                             TableSaveFile savefile =
                                 new TableSaveFile(
                                         savefile_input,
+                                        f.getAbsoluteFile().getParentFile(),
                                         1,
-                                        null);
+                                        null,
+                                        false);
                             String partitions = "";
 
                             for (int partition : savefile.getPartitionIds()) {
@@ -55,6 +55,7 @@ import org.voltdb.iv2.SiteTaskerQueue;
 import org.voltdb.iv2.SnapshotTask;
 import org.voltdb.rejoin.StreamSnapshotDataTarget.StreamSnapshotTimeoutException;
 import org.voltdb.sysprocs.saverestore.SnapshotPredicates;
+import org.voltdb.sysprocs.saverestore.SnapshotUtil;
 import org.voltdb.utils.CatalogUtil;
 import org.voltdb.utils.CompressionService;
 import org.voltdb.utils.MiscUtils;
@@ -120,6 +121,12 @@ public class SnapshotSiteProcessor {
 
     private static final Map<Integer, TupleStreamStateInfo> m_drTupleStreamInfo = new HashMap<>();
 
+    /**
+     * Modification counts of the snapshotted tables by partition id and table name. This is
+     * repopulated before each incremental snapshot by each execution site that reaches the snapshot.
+     */
+    private static final Map<Integer, Map<String, Long>> m_tableModificationCounts = new HashMap<>();
+
     private ExtensibleSnapshotDigestData m_extraSnapshotData;
 
     /*
@@ -229,6 +236,26 @@ public class SnapshotSiteProcessor {
         }
     }
 
+    /*
+     * Synchronization is handled by SnapshotSaveAPI.startSnapshotting
+     * Store the modification count of every table at this site so the execution site that gets
+     * the setup permit can tell which tables are unchanged since the previous incremental snapshot.
+     */
+    public static void populateTableModificationCountsForExecutionSite(SystemProcedureExecutionContext context) {
+        Map<String, Long> counts = new HashMap<String, Long>();
+        for (Table t : SnapshotUtil.getTablesToSave(context.getDatabase())) {
+            counts.put(t.getTypeName(),
+                    context.getSiteProcedureConnection().getTableModificationCount(t.getRelativeIndex()));
+        }
+        m_tableModificationCounts.put(context.getPartitionId(), counts);
+    }
+
+    public static Map<Integer, Map<String, Long>> getTableModificationCounts() {
+        Map<Integer, Map<String, Long>> counts = ImmutableMap.copyOf(m_tableModificationCounts);
+        m_tableModificationCounts.clear();
+        return counts;
+    }
+
     public static Map<String, Map<Integer, Pair<Long, Long>>> getExportSequenceNumbers() {
         HashMap<String, Map<Integer, Pair<Long, Long>>> sequenceNumbers =
                 new HashMap<String, Map<Integer, Pair<Long, Long>>>(m_exportSequenceNumbers);
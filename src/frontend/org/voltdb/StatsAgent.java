@@ -565,6 +565,27 @@ public class StatsAgent extends OpsAgent
         case GC:
             stats = collectStats(StatsSelector.GC, interval);
             break;
+        case FUNCTION:
+            stats = collectStats(StatsSelector.FUNCTION, interval);
+            break;
+        case ADMISSION:
+            stats = collectStats(StatsSelector.ADMISSION, interval);
+            break;
+        case COMPRESSION:
+            stats = collectStats(StatsSelector.COMPRESSION, interval);
+            break;
+        case SNAPSHOTRESTORE:
+            stats = collectStats(StatsSelector.SNAPSHOTRESTORE, interval);
+            break;
+        case SPILL:
+            stats = collectStats(StatsSelector.SPILL, interval);
+            break;
+        case PLANCACHE:
+            stats = collectStats(StatsSelector.PLANCACHE, interval);
+            break;
+        case EXPORT:
+            stats = collectStats(StatsSelector.EXPORT, interval);
+            break;
         default:
             // Should have been successfully groomed in collectStatsImpl().  Log something
             // for our information but let the null check below return harmlessly
@@ -60,5 +60,12 @@ public enum StatsSelector {
     GC,             // return GC Stats
 
     COMMANDLOG,     // return number of outstanding bytes and txns on this node
-    IMPORTER
+    IMPORTER,
+    FUNCTION,       // return per-site invocation counters of the Java user-defined functions
+    ADMISSION,      // return the state of each client interface admission control group
+    COMPRESSION,    // return bytes processed, ratio and time spent for each compression codec
+    SNAPSHOTRESTORE,// return the read progress and throughput of each table's snapshot files
+    SPILL,          // return the large temp table blocks each site has written to and read from disk
+    PLANCACHE,      // return the hit rates of the ad hoc literal, ad hoc core and plan fragment caches
+    EXPORT          // return the throughput and lag of each export stream drained on this node
 }
@@ -124,6 +124,37 @@ public class StoredProcedureInvocation implements JSONString {
         serializedParams = null;
     }
 
+    /** Set both forms of the name, for callers that keep the encoded name around */
+    public void setProcName(String name, byte[] nameBytes) {
+        if (name == null || nameBytes == null) {
+            throw new IllegalArgumentException("SPI setProcName(String name, byte[] nameBytes) doesn't accept NULL.");
+        }
+        procName = name;
+        m_procNameBytes = nameBytes;
+    }
+
+    /**
+     * Serialize the parameters right away and keep only the serialized form, leaving
+     * the invocation as if it had been read from the wire. Callers inside the server
+     * use this instead of round tripping the whole invocation through a buffer.
+     * The parameters are not copied, they must not change until this returns.
+     */
+    public void setParamsAndSerialize(final Object... parameters) throws IOException {
+        final ParameterSet pset = ParameterSet.fromArrayNoCopy(parameters);
+        final ByteBuffer buf = ByteBuffer.allocate(pset.getSerializedSize());
+        pset.flattenToBuffer(buf);
+        buf.flip();
+        type = ProcedureInvocationType.VERSION2;
+        serializedParams = buf;
+        final ByteBuffer duplicate = buf.duplicate();
+        params = new FutureTask<ParameterSet>(new Callable<ParameterSet>() {
+            @Override
+            public ParameterSet call() throws Exception {
+                return ParameterSet.fromByteBuffer(duplicate);
+            }
+        });
+    }
+
     public ProcedureInvocationType getType() {
         return type;
     }
@@ -18,6 +18,9 @@
 package org.voltdb;
 
 import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.math.BigDecimal;
@@ -50,12 +53,17 @@ public class UserDefinedFunctionManager {
             "VoltDB was unable to load a function (%s) which was expected to be " +
             "in the catalog jarfile and will now exit.";
 
-    ImmutableMap<Integer, UserDefinedFunctionRunner> m_udfs = ImmutableMap.<Integer, UserDefinedFunctionRunner>builder().build();
+    volatile ImmutableMap<Integer, UserDefinedFunctionRunner> m_udfs = ImmutableMap.<Integer, UserDefinedFunctionRunner>builder().build();
 
     public UserDefinedFunctionRunner getFunctionRunnerById(int functionId) {
         return m_udfs.get(functionId);
     }
 
+    // Used by the statistics agent to report the per-function invocation counters.
+    public Iterable<UserDefinedFunctionRunner> getFunctionRunners() {
+        return m_udfs.values();
+    }
+
     // Load all the UDFs recorded in the catalog. Instantiate and register them in the system.
     public void loadFunctions(CatalogContext catalogContext) {
         final CatalogMap<Function> catalogFunctions = catalogContext.database.getFunctions();
@@ -102,18 +110,33 @@ public class UserDefinedFunctionManager {
 
     /**
      * This class maintains the necessary information for each UDF including the class instance and
-     * the method ID for the UDF implementation. We run UDFs from this runner.
+     * the method handle for the UDF implementation. We run UDFs from this runner.
      */
     public static class UserDefinedFunctionRunner {
         final String m_functionName;
         final int m_functionId;
         final Object m_functionInstance;
         Method m_functionMethod;
+        // The UDF method bound to the function instance, taking its parameters spread from an Object[].
+        // This avoids the access checks and the varargs array copy done by Method.invoke() on every call.
+        final MethodHandle m_functionHandle;
         final VoltType[] m_paramTypes;
         final boolean[] m_boxUpByteArray;
         final VoltType m_returnType;
         final int m_paramCount;
 
+        // Reused argument and result arrays, the runner is only called from its own site thread.
+        private final Object[] m_paramsIn;
+        private Object[] m_batchResults = new Object[0];
+
+        // Invocation counters, updated by the site thread and read by the statistics agent.
+        volatile long m_invocations = 0;
+        volatile long m_batches = 0;
+        volatile long m_failures = 0;
+        volatile long m_totalExecutionNanos = 0;
+        volatile long m_minExecutionNanos = Long.MAX_VALUE;
+        volatile long m_maxExecutionNanos = Long.MIN_VALUE;
+
         static final int VAR_LEN_SIZE = Integer.SIZE/8;
 
         public UserDefinedFunctionRunner(Function catalogFunction, Object funcInstance) {
@@ -152,6 +175,20 @@ public class UserDefinedFunctionManager {
                 m_boxUpByteArray[i] = paramTypeClasses[i] == Byte[].class;
             }
             m_returnType = VoltType.typeFromClass(m_functionMethod.getReturnType());
+            m_paramsIn = new Object[m_paramCount];
+
+            try {
+                m_functionHandle = MethodHandles.publicLookup()
+                        .unreflect(m_functionMethod)
+                        .bindTo(m_functionInstance)
+                        .asSpreader(Object[].class, m_paramCount)
+                        .asType(MethodType.methodType(Object.class, Object[].class));
+            }
+            catch (IllegalAccessException e) {
+                throw new RuntimeException(
+                        String.format("Error loading function %s: cannot access the %s() method.",
+                                m_functionName, methodName), e);
+            }
 
             m_logger.debug(String.format("The user-defined function manager is defining function %s (ID = %s)",
                     m_functionName, m_functionId));
@@ -301,15 +338,100 @@ public class UserDefinedFunctionManager {
             }
         }
 
-        public Object call(ByteBuffer udfBuffer) throws Throwable {
-            Object[] paramsIn = new Object[m_paramCount];
+        /**
+         * Get the number of bytes needed to serialize a return value with
+         * {@link #writeValueToBuffer(ByteBuffer, VoltType, Object)}.
+         */
+        public static int getSerializedSize(VoltType type, Object value) {
+            if (! type.isVariableLength()) {
+                // 1 byte for the type indicator.
+                return 1 + type.getLengthInBytesForFixedTypesWithoutCheck();
+            }
+            // 1 byte for the type indicator, 4 bytes for the prefixed length.
+            int sizeRequired = 1 + 4;
+            if (VoltType.isVoltNullValue(value)) {
+                return sizeRequired;
+            }
+            switch(type) {
+            case VARBINARY:
+                if (value instanceof byte[]) {
+                    sizeRequired += ((byte[])value).length;
+                }
+                else if (value instanceof Byte[]) {
+                    sizeRequired += ((Byte[])value).length;
+                }
+                break;
+            case STRING:
+                sizeRequired += ((String)value).getBytes(Constants.UTF8ENCODING).length;
+                break;
+            case GEOGRAPHY:
+                sizeRequired += ((GeographyValue)value).getLengthInBytes();
+                break;
+            default:
+            }
+            return sizeRequired;
+        }
+
+        private void readParameters(ByteBuffer udfBuffer) {
             for (int i = 0; i < m_paramCount; i++) {
-                paramsIn[i] = getValueFromBuffer(udfBuffer, m_paramTypes[i]);
+                m_paramsIn[i] = getValueFromBuffer(udfBuffer, m_paramTypes[i]);
                 if (m_boxUpByteArray[i]) {
-                    paramsIn[i] = SerializationHelper.boxUpByteArray((byte[])paramsIn[i]);
+                    m_paramsIn[i] = SerializationHelper.boxUpByteArray((byte[])m_paramsIn[i]);
                 }
             }
-            return m_functionMethod.invoke(m_functionInstance, paramsIn);
+        }
+
+        private void recordExecution(int invocations, long nanos, boolean failed) {
+            m_invocations += invocations;
+            m_batches++;
+            m_totalExecutionNanos += nanos;
+            if (nanos < m_minExecutionNanos) {
+                m_minExecutionNanos = nanos;
+            }
+            if (nanos > m_maxExecutionNanos) {
+                m_maxExecutionNanos = nanos;
+            }
+            if (failed) {
+                m_failures++;
+            }
+        }
+
+        public Object call(ByteBuffer udfBuffer) throws Throwable {
+            readParameters(udfBuffer);
+            final long start = System.nanoTime();
+            boolean failed = true;
+            try {
+                Object result = (Object) m_functionHandle.invokeExact(m_paramsIn);
+                failed = false;
+                return result;
+            }
+            finally {
+                recordExecution(1, System.nanoTime() - start, failed);
+            }
+        }
+
+        /**
+         * Run the function over a batch of argument tuples stored back to back in the UDF buffer.
+         * The returned array is owned by the runner and is reused by the next batch, only the first
+         * rowCount entries are valid.
+         */
+        public Object[] callBatch(ByteBuffer udfBuffer, int rowCount) throws Throwable {
+            if (m_batchResults.length < rowCount) {
+                m_batchResults = new Object[rowCount];
+            }
+            final Object[] results = m_batchResults;
+            int done = 0;
+            final long start = System.nanoTime();
+            try {
+                for (; done < rowCount; done++) {
+                    readParameters(udfBuffer);
+                    results[done] = (Object) m_functionHandle.invokeExact(m_paramsIn);
+                }
+                return results;
+            }
+            finally {
+                recordExecution(done, System.nanoTime() - start, done < rowCount);
+            }
         }
 
         public VoltType getReturnType() {
@@ -319,5 +441,9 @@ public class UserDefinedFunctionManager {
         public String getFunctionName() {
             return m_functionName;
         }
+
+        public int getFunctionId() {
+            return m_functionId;
+        }
     }
 }
@@ -0,0 +1,111 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.voltdb.UserDefinedFunctionManager.UserDefinedFunctionRunner;
+import org.voltdb.VoltTable.ColumnInfo;
+
+/**
+ * Per-site invocation counters for the Java user-defined functions,
+ * reported as @Statistics FUNCTION.
+ */
+public class UserDefinedFunctionStats extends SiteStatsSource {
+
+    private volatile UserDefinedFunctionManager m_functionManager = null;
+
+    // Counter values as of the last interval collection, keyed by function ID.
+    private final Map<Integer, long[]> m_lastIntervalValues = new HashMap<Integer, long[]>();
+    private boolean m_interval = false;
+
+    public UserDefinedFunctionStats(long siteId) {
+        super(siteId, false);
+    }
+
+    /**
+     * The function manager belongs to the execution engine, which is only
+     * created once the site thread starts running.
+     */
+    public void setFunctionManager(UserDefinedFunctionManager functionManager) {
+        m_functionManager = functionManager;
+    }
+
+    @Override
+    protected void populateColumnSchema(ArrayList<ColumnInfo> columns) {
+        super.populateColumnSchema(columns);
+        columns.add(new ColumnInfo("FUNCTION_NAME", VoltType.STRING));
+        columns.add(new ColumnInfo("FUNCTION_ID", VoltType.INTEGER));
+        columns.add(new ColumnInfo("INVOCATIONS", VoltType.BIGINT));
+        columns.add(new ColumnInfo("BATCHES", VoltType.BIGINT));
+        columns.add(new ColumnInfo("AVG_ROWS_PER_BATCH", VoltType.BIGINT));
+        columns.add(new ColumnInfo("AVG_EXECUTION_TIME", VoltType.BIGINT));
+        columns.add(new ColumnInfo("MIN_BATCH_EXECUTION_TIME", VoltType.BIGINT));
+        columns.add(new ColumnInfo("MAX_BATCH_EXECUTION_TIME", VoltType.BIGINT));
+        columns.add(new ColumnInfo("FAILURES", VoltType.BIGINT));
+    }
+
+    @Override
+    protected void updateStatsRow(Object rowKey, Object[] rowValues) {
+        UserDefinedFunctionRunner runner = (UserDefinedFunctionRunner) rowKey;
+        long invocations = runner.m_invocations;
+        long batches = runner.m_batches;
+        long nanos = runner.m_totalExecutionNanos;
+        long failures = runner.m_failures;
+        long minNanos = runner.m_minExecutionNanos;
+        long maxNanos = runner.m_maxExecutionNanos;
+
+        if (m_interval) {
+            long[] last = m_lastIntervalValues.get(runner.getFunctionId());
+            m_lastIntervalValues.put(runner.getFunctionId(), new long[] { invocations, batches, nanos, failures });
+            if (last != null && last[0] <= invocations) {
+                invocations -= last[0];
+                batches -= last[1];
+                nanos -= last[2];
+                failures -= last[3];
+            }
+        }
+
+        rowValues[columnNameToIndex.get("FUNCTION_NAME")] = runner.getFunctionName();
+        rowValues[columnNameToIndex.get("FUNCTION_ID")] = runner.getFunctionId();
+        rowValues[columnNameToIndex.get("INVOCATIONS")] = invocations;
+        rowValues[columnNameToIndex.get("BATCHES")] = batches;
+        rowValues[columnNameToIndex.get("AVG_ROWS_PER_BATCH")] = batches > 0 ? invocations / batches : 0;
+        rowValues[columnNameToIndex.get("AVG_EXECUTION_TIME")] = invocations > 0 ? nanos / invocations : 0;
+        rowValues[columnNameToIndex.get("MIN_BATCH_EXECUTION_TIME")] = minNanos == Long.MAX_VALUE ? 0 : minNanos;
+        rowValues[columnNameToIndex.get("MAX_BATCH_EXECUTION_TIME")] = maxNanos == Long.MIN_VALUE ? 0 : maxNanos;
+        rowValues[columnNameToIndex.get("FAILURES")] = failures;
+        super.updateStatsRow(rowKey, rowValues);
+    }
+
+    @Override
+    protected Iterator<Object> getStatsRowKeyIterator(boolean interval) {
+        m_interval = interval;
+        ArrayList<Object> runners = new ArrayList<Object>();
+        UserDefinedFunctionManager functionManager = m_functionManager;
+        if (functionManager != null) {
+            for (UserDefinedFunctionRunner runner : functionManager.getFunctionRunners()) {
+                runners.add(runner);
+            }
+        }
+        return runners.iterator();
+    }
+}
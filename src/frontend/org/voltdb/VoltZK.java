@@ -93,6 +93,8 @@ public class VoltZK {
     public static final String user_snapshot_request = "/db/user_snapshot_request";
     public static final String user_snapshot_response = "/db/user_snapshot_response";
     public static final String commandlog_init_barrier = "/db/commmandlog_init_barrier";
+    public static final String commandlog_replay_barrier = "/db/commandlog_replay_barrier";
+    public static final String commandlog_replay_mp_txns = "/db/commandlog_replay_mp_txns";
 
     // leader election
     public static final String iv2masters = "/db/iv2masters";
@@ -151,7 +153,8 @@ public class VoltZK {
             cluster_settings,
             catalogUpdateBlockers,
             request_truncation_snapshot,
-            host_ids_be_stopped
+            host_ids_be_stopped,
+            commandlog_replay_mp_txns
     };
 
     /**
@@ -0,0 +1,230 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.client;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Concurrent map from client handles to the bookkeeping of outstanding calls.
+ *
+ * Handles are kept in primitive arrays with open addressing and linear probing,
+ * so a put or remove allocates nothing and there is no boxed key or entry object
+ * per outstanding call. The table is split into independently locked segments
+ * to keep the network thread that removes completed calls from contending with
+ * the threads that add new ones.
+ */
+final class CallbackTable<V> {
+
+    interface Visitor<V> {
+        void visit(long handle, V value);
+    }
+
+    private static final int SEGMENT_BITS = 4;
+    private static final int SEGMENT_COUNT = 1 << SEGMENT_BITS;
+    private static final int INITIAL_SEGMENT_CAPACITY = 64;
+
+    private static final class Segment {
+        long[] m_keys;
+        // null marks an empty slot, so any long is a valid handle
+        Object[] m_values;
+        int m_size = 0;
+
+        Segment(int capacity) {
+            m_keys = new long[capacity];
+            m_values = new Object[capacity];
+        }
+
+        private int slot(long hash) {
+            return (int) hash & (m_keys.length - 1);
+        }
+
+        private int find(long handle, long hash) {
+            final int mask = m_keys.length - 1;
+            for (int i = slot(hash); m_values[i] != null; i = (i + 1) & mask) {
+                if (m_keys[i] == handle) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        synchronized Object get(long handle, long hash) {
+            final int i = find(handle, hash);
+            return i < 0 ? null : m_values[i];
+        }
+
+        synchronized Object put(long handle, long hash, Object value) {
+            final int existing = find(handle, hash);
+            if (existing >= 0) {
+                final Object old = m_values[existing];
+                m_values[existing] = value;
+                return old;
+            }
+            // Keep the load factor at or below one half so probe sequences stay short
+            if ((m_size + 1) * 2 > m_keys.length) {
+                resize(m_keys.length * 2);
+            }
+            insert(handle, hash, value);
+            m_size++;
+            return null;
+        }
+
+        synchronized Object remove(long handle, long hash) {
+            int i = find(handle, hash);
+            if (i < 0) {
+                return null;
+            }
+            final Object old = m_values[i];
+            m_size--;
+            // Shift later members of the probe sequence back so lookups never
+            // stop at the hole, instead of leaving a tombstone
+            final int mask = m_keys.length - 1;
+            int j = i;
+            while (true) {
+                j = (j + 1) & mask;
+                if (m_values[j] == null) {
+                    break;
+                }
+                final int home = slot(mix(m_keys[j]));
+                // Move j to i unless its home lies cyclically in (i, j]
+                if (i <= j ? (i < home && home <= j) : (i < home || home <= j)) {
+                    continue;
+                }
+                m_keys[i] = m_keys[j];
+                m_values[i] = m_values[j];
+                i = j;
+            }
+            m_keys[i] = 0;
+            m_values[i] = null;
+            return old;
+        }
+
+        synchronized void drainTo(List<Object> values, List<Long> handles) {
+            for (int i = 0; i < m_keys.length; i++) {
+                if (m_values[i] != null) {
+                    handles.add(m_keys[i]);
+                    values.add(m_values[i]);
+                    m_values[i] = null;
+                }
+            }
+            m_size = 0;
+        }
+
+        synchronized int size() {
+            return m_size;
+        }
+
+        private void insert(long handle, long hash, Object value) {
+            final int mask = m_keys.length - 1;
+            int i = slot(hash);
+            while (m_values[i] != null) {
+                i = (i + 1) & mask;
+            }
+            m_keys[i] = handle;
+            m_values[i] = value;
+        }
+
+        private void resize(int capacity) {
+            final long[] keys = m_keys;
+            final Object[] values = m_values;
+            m_keys = new long[capacity];
+            m_values = new Object[capacity];
+            for (int i = 0; i < keys.length; i++) {
+                if (values[i] != null) {
+                    insert(keys[i], mix(keys[i]), values[i]);
+                }
+            }
+        }
+    }
+
+    private final Segment[] m_segments = new Segment[SEGMENT_COUNT];
+
+    CallbackTable() {
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            m_segments[i] = new Segment(INITIAL_SEGMENT_CAPACITY);
+        }
+    }
+
+    /*
+     * Handles are mostly sequential, so spread them before picking a segment
+     * (from the top bits) and a slot (from the bottom bits).
+     */
+    private static long mix(long handle) {
+        long h = handle * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 32);
+    }
+
+    private Segment segment(long hash) {
+        return m_segments[(int) (hash >>> (64 - SEGMENT_BITS))];
+    }
+
+    @SuppressWarnings("unchecked")
+    V get(long handle) {
+        final long hash = mix(handle);
+        return (V) segment(hash).get(handle, hash);
+    }
+
+    boolean containsKey(long handle) {
+        return get(handle) != null;
+    }
+
+    /**
+     * @return the value previously stored for the handle, if any
+     */
+    @SuppressWarnings("unchecked")
+    V put(long handle, V value) {
+        assert(value != null);
+        final long hash = mix(handle);
+        return (V) segment(hash).put(handle, hash, value);
+    }
+
+    /**
+     * Only one of several threads racing to remove a handle gets its value back.
+     */
+    @SuppressWarnings("unchecked")
+    V remove(long handle) {
+        final long hash = mix(handle);
+        return (V) segment(hash).remove(handle, hash);
+    }
+
+    int size() {
+        int size = 0;
+        for (Segment s : m_segments) {
+            size += s.size();
+        }
+        return size;
+    }
+
+    /**
+     * Remove every entry and hand each to the visitor, outside of any lock.
+     */
+    @SuppressWarnings("unchecked")
+    void removeAll(Visitor<V> visitor) {
+        final List<Object> values = new ArrayList<>();
+        final List<Long> handles = new ArrayList<>();
+        for (Segment s : m_segments) {
+            values.clear();
+            handles.clear();
+            s.drainTo(values, handles);
+            for (int i = 0; i < values.size(); i++) {
+                visitor.visit(handles.get(i), (V) values.get(i));
+            }
+        }
+    }
+}
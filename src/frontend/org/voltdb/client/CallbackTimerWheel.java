@@ -0,0 +1,186 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.client;
+
+import java.util.ArrayList;
+
+/**
+ * Hashed timer wheel of call deadlines, so expiring calls only looks at the
+ * calls due in the elapsed ticks instead of every outstanding call.
+ *
+ * Buckets are intrusive doubly linked lists of the scheduled entries, so
+ * scheduling and cancelling allocate nothing and a completed call leaves
+ * nothing behind. Deadlines further out than one rotation stay in their
+ * bucket until the round in which they are due.
+ */
+final class CallbackTimerWheel<E extends CallbackTimerWheel.Entry> {
+
+    static class Entry {
+        long m_deadlineNanos;
+        Entry m_prev;
+        Entry m_next;
+        // The bucket holding this entry, null if not scheduled
+        volatile Bucket m_bucket;
+    }
+
+    interface Expirer<E> {
+        /**
+         * Called, without any wheel lock held, for each entry that has reached its deadline.
+         * @return a later deadline to schedule the entry again with, or
+         * {@link CallbackTimerWheel#DONE} to drop it
+         */
+        long expire(E entry, long nowNanos);
+    }
+
+    static final long DONE = Long.MIN_VALUE;
+
+    private static final class Bucket {
+        Entry m_head = null;
+        // Ticks up to and including this one have been expired from this bucket
+        long m_expiredTick = Long.MIN_VALUE;
+
+        void link(Entry e) {
+            e.m_prev = null;
+            e.m_next = m_head;
+            if (m_head != null) {
+                m_head.m_prev = e;
+            }
+            m_head = e;
+            e.m_bucket = this;
+        }
+
+        void unlink(Entry e) {
+            if (e.m_prev != null) {
+                e.m_prev.m_next = e.m_next;
+            } else {
+                m_head = e.m_next;
+            }
+            if (e.m_next != null) {
+                e.m_next.m_prev = e.m_prev;
+            }
+            e.m_prev = null;
+            e.m_next = null;
+            e.m_bucket = null;
+        }
+    }
+
+    private final long m_tickNanos;
+    private final Bucket[] m_buckets;
+    private final int m_mask;
+    // Entries whose bucket had already been expired for their tick when scheduled
+    private final Bucket m_overdue = new Bucket();
+    // Only touched by the thread calling expire()
+    private long m_lastTick;
+    private final ArrayList<Entry> m_due = new ArrayList<>();
+
+    /**
+     * @param size number of buckets, rounded up to a power of two
+     */
+    CallbackTimerWheel(long tickNanos, int size, long nowNanos) {
+        assert(tickNanos > 0 && size > 0);
+        m_tickNanos = tickNanos;
+        final int buckets = Integer.highestOneBit(Math.max(1, size - 1)) << 1;
+        m_buckets = new Bucket[buckets];
+        for (int i = 0; i < buckets; i++) {
+            m_buckets[i] = new Bucket();
+        }
+        m_mask = buckets - 1;
+        m_lastTick = tick(nowNanos) - 1;
+    }
+
+    private long tick(long nanos) {
+        // floor division; Math.floorDiv is not available to the Java 7 client build
+        return nanos >= 0 ? nanos / m_tickNanos : (nanos - m_tickNanos + 1) / m_tickNanos;
+    }
+
+    /**
+     * Schedule an entry that is not currently scheduled.
+     */
+    void schedule(E entry, long deadlineNanos) {
+        assert(entry.m_bucket == null);
+        entry.m_deadlineNanos = deadlineNanos;
+        final long tick = tick(deadlineNanos);
+        final Bucket bucket = m_buckets[(int) tick & m_mask];
+        synchronized (bucket) {
+            if (tick > bucket.m_expiredTick) {
+                bucket.link(entry);
+                return;
+            }
+        }
+        synchronized (m_overdue) {
+            m_overdue.link(entry);
+        }
+    }
+
+    /**
+     * Remove an entry if it is still scheduled. Safe to race with expire().
+     */
+    void cancel(E entry) {
+        Bucket bucket;
+        while ((bucket = entry.m_bucket) != null) {
+            synchronized (bucket) {
+                if (entry.m_bucket == bucket) {
+                    bucket.unlink(entry);
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Expire the entries of every tick that has fully elapsed. Must not be called concurrently.
+     * @return number of entries handed to the expirer
+     */
+    int expire(long nowNanos, Expirer<E> expirer) {
+        final long lastTick = tick(nowNanos) - 1;
+        // A long pause only needs one pass over the wheel
+        final long firstTick = Math.max(m_lastTick + 1, lastTick - m_mask);
+        for (long t = firstTick; t <= lastTick; t++) {
+            collectDue(m_buckets[(int) t & m_mask], t, nowNanos);
+        }
+        collectDue(m_overdue, Long.MIN_VALUE, nowNanos);
+        m_lastTick = Math.max(m_lastTick, lastTick);
+
+        final int count = m_due.size();
+        for (int i = 0; i < count; i++) {
+            @SuppressWarnings("unchecked")
+            final E entry = (E) m_due.get(i);
+            final long deadline = expirer.expire(entry, nowNanos);
+            if (deadline != DONE) {
+                schedule(entry, deadline);
+            }
+        }
+        m_due.clear();
+        return count;
+    }
+
+    private void collectDue(Bucket bucket, long tick, long nowNanos) {
+        synchronized (bucket) {
+            bucket.m_expiredTick = Math.max(bucket.m_expiredTick, tick);
+            Entry e = bucket.m_head;
+            while (e != null) {
+                final Entry next = e.m_next;
+                if (e.m_deadlineNanos <= nowNanos) {
+                    bucket.unlink(e);
+                    m_due.add(e);
+                }
+                e = next;
+            }
+        }
+    }
+}
@@ -33,8 +33,6 @@ import java.util.Map.Entry;
 import java.util.Random;
 import java.util.Set;
 import java.util.TreeMap;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executors;
@@ -91,6 +89,9 @@ class Distributer {
 
     static int RESUBSCRIPTION_DELAY_MS = Integer.getInteger("RESUBSCRIPTION_DELAY_MS", 10000);
     static final long PING_HANDLE = Long.MAX_VALUE;
+    // Call timeout wheel, one rotation covers more than the default procedure call timeout
+    static final long TIMER_WHEEL_TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    static final int TIMER_WHEEL_BUCKETS = 2048;
     public static final Long ASYNC_TOPO_HANDLE = PING_HANDLE - 1;
     public static final Long ASYNC_PROC_HANDLE = PING_HANDLE - 2;
     static final long USE_DEFAULT_CLIENT_TIMEOUT = 0;
@@ -346,26 +347,8 @@ class Distributer {
                         c.sendPing();
                     }
 
-                    // for each outstanding procedure
-                    for (final Map.Entry<Long, CallbackBookeeping> e : c.m_callbacks.entrySet()) {
-                        final long handle = e.getKey();
-                        final CallbackBookeeping cb = e.getValue();
-
-                        // if the timeout is expired, call the callback and remove the
-                        // bookeeping data
-                        final long deltaNanos = Math.max(1, nowNanos - cb.timestampNanos);
-                        if (deltaNanos > cb.procedureTimeoutNanos) {
-
-                            //For expected long operations don't use the default timeout
-                            //unless it is > MINIMUM_LONG_RUNNING_SYSTEM_CALL_TIMEOUT_MS
-                            final boolean isLongOp = isLongOp(cb.name);
-                            if (isLongOp && (deltaNanos < TimeUnit.MILLISECONDS.toNanos(MINIMUM_LONG_RUNNING_SYSTEM_CALL_TIMEOUT_MS))) {
-                                continue;
-                            }
-
-                            c.handleTimedoutCallback(handle, nowNanos);
-                        }
-                    }
+                    // expire the outstanding procedures that are due
+                    c.m_timeouts.expire(nowNanos, c);
                 }
             } catch (Throwable t) {
                 t.printStackTrace();
@@ -389,15 +372,17 @@ class Distributer {
         return false;
     }
 
-    class CallbackBookeeping {
-        public CallbackBookeeping(long timestampNanos, ProcedureCallback callback, String name, long timeoutNanos, boolean ignoreBackpressure) {
+    class CallbackBookeeping extends CallbackTimerWheel.Entry {
+        public CallbackBookeeping(long handle, long timestampNanos, ProcedureCallback callback, String name, long timeoutNanos, boolean ignoreBackpressure) {
             assert(callback != null);
+            this.handle = handle;
             this.timestampNanos = timestampNanos;
             this.callback = callback;
             this.name = name;
             this.procedureTimeoutNanos = timeoutNanos;
             this.ignoreBackpressure = ignoreBackpressure;
         }
+        final long handle;
         long timestampNanos;
         //Timeout in ms 0 means use conenction specified procedure timeoutMS.
         final long procedureTimeoutNanos;
@@ -406,9 +391,13 @@ class Distributer {
         boolean ignoreBackpressure;
     }
 
-    class NodeConnection extends VoltProtocolHandler implements org.voltcore.network.QueueMonitor {
+    class NodeConnection extends VoltProtocolHandler
+            implements org.voltcore.network.QueueMonitor, CallbackTimerWheel.Expirer<CallbackBookeeping> {
         private final AtomicInteger m_callbacksToInvoke = new AtomicInteger(0);
-        private final ConcurrentMap<Long, CallbackBookeeping> m_callbacks = new ConcurrentHashMap<>();
+        private final CallbackTable<CallbackBookeeping> m_callbacks = new CallbackTable<>();
+        // Advanced by CallExpiration
+        private final CallbackTimerWheel<CallbackBookeeping> m_timeouts =
+                new CallbackTimerWheel<>(TIMER_WHEEL_TICK_NANOS, TIMER_WHEEL_BUCKETS, System.nanoTime());
         private final NonBlockingHashMap<String, ClientStats> m_stats = new NonBlockingHashMap<>();
         private Connection m_connection;
         private volatile boolean m_isConnected = true;
@@ -464,7 +453,14 @@ class Distributer {
             assert(callbacksToInvoke >= 0);
 
             //Optimistically submit the task
-            m_callbacks.put(handle, new CallbackBookeeping(nowNanos, callback, name, timeoutNanos, ignoreBackpressure));
+            final CallbackBookeeping cb =
+                    new CallbackBookeeping(handle, nowNanos, callback, name, timeoutNanos, ignoreBackpressure);
+            m_callbacks.put(handle, cb);
+            //An infinite timeout overflows the deadline. A response that beats the
+            //scheduling leaves the entry on the wheel until it expires as a no-op.
+            if (timeoutTime >= nowNanos) {
+                m_timeouts.schedule(cb, timeoutTime);
+            }
 
             //Schedule the timeout to fire relative to the amount of time
             //spent getting to this point. Might fire immediately
@@ -483,6 +479,7 @@ class Distributer {
                 if (m_callbacks.remove(handle) == null) {
                     return;
                 }
+                m_timeouts.cancel(cb);
                 final ClientResponse r = new ClientResponseImpl(
                         ClientResponse.CONNECTION_LOST, new VoltTable[0],
                         "Connection to database host (" + m_connection.getHostnameAndIPAndPort() +
@@ -525,6 +522,23 @@ class Distributer {
             }, timeoutNanos, TimeUnit.NANOSECONDS);
         }
 
+        /*
+         * Called by the timer wheel for a call whose deadline has passed. Long running
+         * system procedures get at least MINIMUM_LONG_RUNNING_SYSTEM_CALL_TIMEOUT_MS.
+         */
+        @Override
+        public long expire(CallbackBookeeping cb, long nowNanos) {
+            if (isLongOp(cb.name)) {
+                final long longOpDeadline = cb.timestampNanos +
+                        TimeUnit.MILLISECONDS.toNanos(MINIMUM_LONG_RUNNING_SYSTEM_CALL_TIMEOUT_MS);
+                if (nowNanos < longOpDeadline) {
+                    return longOpDeadline;
+                }
+            }
+            handleTimedoutCallback(cb.handle, nowNanos);
+            return CallbackTimerWheel.DONE;
+        }
+
         /*
          * Factor out the boilerplate involved in checking whether a timed out callback
          * still exists and needs to be invoked, or has already been handled by another thread
@@ -538,6 +552,7 @@ class Distributer {
             if (cb == null) {
                 return;
             }
+            m_timeouts.cancel(cb);
 
             final long deltaNanos = Math.max(1, nowNanos - cb.timestampNanos);
 
@@ -695,6 +710,7 @@ class Distributer {
             }
             // handle a proper callback
             else {
+                m_timeouts.cancel(stuff);
                 final long callTimeNanos = stuff.timestampNanos;
                 final long deltaNanos = Math.max(1, nowNanos - callTimeNanos);
                 final ProcedureCallback cb = stuff.callback;
@@ -837,25 +853,25 @@ class Distributer {
                         ClientResponse.CONNECTION_LOST, new VoltTable[0],
                         "Connection to database host (" + m_connection.getHostnameAndIPAndPort() +
                 ") was lost before a response was received");
-            for (Map.Entry<Long, CallbackBookeeping> e : m_callbacks.entrySet()) {
-                //Check for race with other threads
-                if (m_callbacks.remove(e.getKey()) == null) {
-                    continue;
-                }
-                final CallbackBookeeping callBk = e.getValue();
-                try {
-                    callBk.callback.clientCallback(r);
-                }
-                catch (Exception ex) {
-                    uncaughtException(callBk.callback, r, ex);
-                }
+            //Removal from the table wins any race with the other threads
+            m_callbacks.removeAll(new CallbackTable.Visitor<CallbackBookeeping>() {
+                @Override
+                public void visit(long handle, CallbackBookeeping callBk) {
+                    m_timeouts.cancel(callBk);
+                    try {
+                        callBk.callback.clientCallback(r);
+                    }
+                    catch (Exception ex) {
+                        uncaughtException(callBk.callback, r, ex);
+                    }
 
-                //Drain needs to know when all callbacks have been invoked
-                final int remainingToInvoke = m_callbacksToInvoke.decrementAndGet();
-                assert(remainingToInvoke >= 0);
+                    //Drain needs to know when all callbacks have been invoked
+                    final int remainingToInvoke = m_callbacksToInvoke.decrementAndGet();
+                    assert(remainingToInvoke >= 0);
 
-                m_rateLimiter.transactionResponseReceived(System.nanoTime(), -1, callBk.ignoreBackpressure);
-            }
+                    m_rateLimiter.transactionResponseReceived(System.nanoTime(), -1, callBk.ignoreBackpressure);
+                }
+            });
         }
 
         @Override
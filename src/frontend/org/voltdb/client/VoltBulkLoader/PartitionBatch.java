@@ -0,0 +1,109 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.client.VoltBulkLoader;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.voltdb.VoltTable;
+
+/**
+ * One batch of rows for a partition, kept in the serialized form it is sent
+ * in. Rows are appended to the table as they arrive, so no per row object
+ * is held until the batch is sent. Only the handle of each row, the values
+ * it was inserted with and the loader that inserted it are kept, for the
+ * callbacks.
+ *
+ * A batch is reused once the response to its insert has been handled.
+ */
+class PartitionBatch {
+    final VoltTable m_table;
+    private final ArrayList<Object> m_handles;
+    private final ArrayList<Object[]> m_fieldLists;
+    private final ArrayList<VoltBulkLoader> m_loaders;
+
+    PartitionBatch(VoltTable.ColumnInfo[] columnInfo, int expectedRows) {
+        m_table = new VoltTable(columnInfo);
+        m_handles = new ArrayList<Object>(expectedRows);
+        m_fieldLists = new ArrayList<Object[]>(expectedRows);
+        m_loaders = new ArrayList<VoltBulkLoader>(expectedRows);
+    }
+
+    /**
+     * Append a row whose values already have the Java classes of the column types.
+     * @param fieldList the values as inserted, handed back to the failure callback
+     * @throws RuntimeException if the row can't be added to the table, e.g. it is too long
+     */
+    void add(VoltBulkLoader loader, Object rowHandle, Object[] convertedRow, Object[] fieldList) {
+        m_table.addRow(convertedRow);
+        m_handles.add(rowHandle);
+        m_fieldLists.add(fieldList);
+        m_loaders.add(loader);
+    }
+
+    int size() {
+        return m_handles.size();
+    }
+
+    List<Object> getHandles() {
+        return m_handles;
+    }
+
+    /**
+     * Count the batch as completed by the loaders that inserted its rows.
+     */
+    void completeRows() {
+        VoltBulkLoader last = null;
+        long rows = 0;
+        for (VoltBulkLoader loader : m_loaders) {
+            if (loader != last) {
+                completeRows(last, rows);
+                last = loader;
+                rows = 0;
+            }
+            rows++;
+        }
+        completeRows(last, rows);
+    }
+
+    private static void completeRows(VoltBulkLoader loader, long rows) {
+        if (loader != null) {
+            loader.m_loaderCompletedCnt.addAndGet(rows);
+            loader.m_outstandingRowCount.addAndGet(-rows);
+        }
+    }
+
+    /**
+     * The rows with the values they were inserted with, to insert them one at a
+     * time after the batch failed.
+     */
+    List<VoltBulkLoaderRow> toRows() {
+        final List<VoltBulkLoaderRow> rows = new ArrayList<VoltBulkLoaderRow>(size());
+        for (int i = 0; i < size(); i++) {
+            rows.add(new VoltBulkLoaderRow(m_loaders.get(i), m_handles.get(i), m_fieldLists.get(i)));
+        }
+        return rows;
+    }
+
+    void clear() {
+        m_table.clearRowData();
+        m_handles.clear();
+        m_fieldLists.clear();
+        m_loaders.clear();
+    }
+}
@@ -20,15 +20,11 @@ package org.voltdb.client.VoltBulkLoader;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.List;
-import java.util.ListIterator;
-import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 
 import org.voltcore.logging.VoltLogger;
@@ -45,6 +41,11 @@ import org.voltdb.client.ProcedureCallback;
 /**
  * Partition specific table potentially shared by multiple VoltBulkLoader instances,
  * provided that they are all inserting to the same table.
+ *
+ * Rows are appended to the VoltTable of the batch being filled as they are
+ * inserted. Each partition has two batches: while one is being sent and
+ * waits for its response, the other one fills. An insert that fills the
+ * batch waits until the previous batch has been acknowledged.
  */
 public class PerPartitionTable {
     private static final VoltLogger loaderLog = new VoltLogger("LOADER");
@@ -54,8 +55,10 @@ public class PerPartitionTable {
     //The index in loader tables and the PartitionProcessor number
     final int m_partitionId;
     final boolean m_isMP;
-    //Queue for processing pending rows for this table
-    LinkedBlockingQueue<VoltBulkLoaderRow> m_partitionRowQueue;
+    //The batch rows are appended to, and the other batch when it is not being sent.
+    //Guarded by this.
+    private PartitionBatch m_filling;
+    private PartitionBatch m_spare;
 
     final ExecutorService m_es;
 
@@ -63,8 +66,6 @@ public class PerPartitionTable {
     final int m_partitionedColumnIndex;
     //Partitioned column type
     final VoltType m_partitionColumnType;
-    //Table used to build up requests to the PartitionProcessor
-    VoltTable m_table;
     //Column information
     final VoltTable.ColumnInfo m_columnInfo[];
     //Column types
@@ -82,15 +83,14 @@ public class PerPartitionTable {
     //Whether to retry insertion when the connection is lost
     final boolean m_autoReconnect;
 
-    // Callback for batch submissions to the Client. A failed request submits the entire
-    // batch of rows to m_failedQueue for row by row processing on m_failureProcessor.
+    // Callback for batch submissions to the Client. A failed request takes the rows as
+    // inserted from the batch for row by row processing on m_es. Either way the batch is free to be
+    // filled again once the callback is done with it.
     class PartitionProcedureCallback implements ProcedureCallback {
-        final List<VoltBulkLoaderRow> m_batchRowList;
-        final Map<VoltBulkLoader, Long> m_batchSizes;
+        final PartitionBatch m_batch;
 
-        PartitionProcedureCallback(List<VoltBulkLoaderRow> batchRowList, Map<VoltBulkLoader, Long> batchSizes) {
-            m_batchRowList = batchRowList;
-            m_batchSizes = batchSizes;
+        PartitionProcedureCallback(PartitionBatch batch) {
+            m_batch = batch;
         }
 
         // Called by Client to inform us of the status of the bulk insert.
@@ -98,11 +98,13 @@ public class PerPartitionTable {
         public void clientCallback(final ClientResponse response) throws InterruptedException {
             if (response.getStatus() != ClientResponse.SUCCESS) {
                 // Queue up all rows for individual processing by originating BulkLoader's FailureProcessor.
+                final List<VoltBulkLoaderRow> rows = m_batch.toRows();
+                recycle(m_batch);
                 m_es.execute(new Runnable() {
                     @Override
                     public void run() {
                         try {
-                            reinsertFailed(m_batchRowList);
+                            reinsertFailed(rows);
                         } catch (Exception e) {
                             loaderLog.error("Failed to re-insert failed batch", e);
                         }
@@ -114,19 +116,18 @@ public class PerPartitionTable {
                 // necessary bookkeeping (like managing offsets, for example). Do this in the executor
                 // so as not to hold up the callback.
                 if (m_successCallback != null) {
+                    final List<Object> handles = new ArrayList<Object>(m_batch.getHandles());
                     m_es.execute(new Runnable() {
                         @Override
                         public void run() {
-                            for (VoltBulkLoaderRow r : m_batchRowList) {
-                                m_successCallback.success(r.m_rowHandle, response);
+                            for (Object handle : handles) {
+                                m_successCallback.success(handle, response);
                             }
                         }
                     });
                 }
-                for (Map.Entry<VoltBulkLoader, Long> e : m_batchSizes.entrySet()) {
-                    e.getKey().m_loaderCompletedCnt.addAndGet(e.getValue());
-                    e.getKey().m_outstandingRowCount.addAndGet(-1 * e.getValue());
-                }
+                m_batch.completeRows();
+                recycle(m_batch);
             }
         }
     }
@@ -138,7 +139,6 @@ public class PerPartitionTable {
         m_isMP = isMP;
         m_procName = firstLoader.m_procName;
         m_upsert = (byte) (firstLoader.m_upsert ? 1:0);
-        m_partitionRowQueue = new LinkedBlockingQueue<VoltBulkLoaderRow>(minBatchTriggerSize*5);
         m_minBatchTriggerSize = minBatchTriggerSize;
         m_columnInfo = firstLoader.m_colInfo;
         m_partitionedColumnIndex = firstLoader.m_partitionedColumnIndex;
@@ -146,7 +146,8 @@ public class PerPartitionTable {
         m_partitionColumnType = firstLoader.m_partitionColumnType;
         m_tableName = tableName;
         m_successCallback = successCallback;
-        m_table = new VoltTable(m_columnInfo);
+        m_filling = new PartitionBatch(m_columnInfo, minBatchTriggerSize);
+        m_spare = new PartitionBatch(m_columnInfo, minBatchTriggerSize);
         m_autoReconnect = m_clientImpl.isAutoReconnectEnabled();
 
         m_es = CoreUtils.getSingleThreadExecutor(tableName + "-" + partitionId);
@@ -164,25 +165,85 @@ public class PerPartitionTable {
      }
 
     /**
-     * Synchronized so that when the a single batch is filled up, we only queue one task to
-     * drain the queue. The task will drain the queue until it doesn't contain a single batch.
+     * Append a row to the batch being filled, and send the batch once it is full.
+     *
+     * @param convertedRow row values converted to the classes of the column types,
+     *                     only read during the call
+     * @param fieldList    row values as inserted, kept for the failure callback
      */
-    synchronized void insertRowInTable(final VoltBulkLoaderRow nextRow) throws InterruptedException {
-        m_partitionRowQueue.put(nextRow);
-        if (m_partitionRowQueue.size() == m_minBatchTriggerSize) {
-            m_es.execute(new Runnable() {
-                @Override
-                public void run() {
-                    try {
-                        while (m_partitionRowQueue.size() >= m_minBatchTriggerSize) {
-                            loadTable(buildTable(), m_table);
-                        }
-                    } catch (Exception e) {
-                        loaderLog.error("Failed to load batch", e);
-                    }
+    void insertRowInTable(VoltBulkLoader loader, Object rowHandle, Object[] convertedRow, Object[] fieldList)
+            throws InterruptedException {
+        String error = null;
+        PartitionBatch full = null;
+        synchronized (this) {
+            try {
+                m_filling.add(loader, rowHandle, convertedRow, fieldList);
+            } catch (RuntimeException e) {
+                // e.g. a row too long for a table
+                error = e.getMessage();
+            }
+            if (error == null) {
+                loader.m_outstandingRowCount.incrementAndGet();
+                if (m_filling.size() >= m_minBatchTriggerSize) {
+                    full = swapBatches(m_minBatchTriggerSize);
                 }
-            });
+            }
+        }
+        if (error != null) {
+            loader.generateError(rowHandle, fieldList, error);
+            return;
+        }
+        if (full == null) {
+            return;
         }
+        final PartitionBatch batch = full;
+        m_es.execute(new Runnable() {
+            @Override
+            public void run() {
+                sendBatch(batch);
+            }
+        });
+    }
+
+    /**
+     * Start filling the spare batch, once the response to its insert has been handled.
+     * @return the batch that was being filled, or null if another thread sent it
+     *         while this one waited and the new batch has fewer than minRows rows
+     */
+    private PartitionBatch swapBatches(int minRows) throws InterruptedException {
+        assert(Thread.holdsLock(this));
+        while (m_spare == null) {
+            wait();
+        }
+        if (m_filling.size() < minRows) {
+            return null;
+        }
+        final PartitionBatch full = m_filling;
+        m_filling = m_spare;
+        m_spare = null;
+        return full;
+    }
+
+    // Runs on m_es
+    private void sendBatch(PartitionBatch batch) {
+        try {
+            loadTable(new PartitionProcedureCallback(batch), batch.m_table);
+        } catch (Exception e) {
+            loaderLog.error("Failed to load batch", e);
+            // The callback won't run, fail the rows so that the batch can be reused
+            // and drain() doesn't wait for them.
+            for (VoltBulkLoaderRow row : batch.toRows()) {
+                row.m_loader.generateError(row.m_rowHandle, row.m_rowData, e.getMessage());
+                row.m_loader.m_outstandingRowCount.decrementAndGet();
+            }
+            recycle(batch);
+        }
+    }
+
+    private synchronized void recycle(PartitionBatch batch) {
+        batch.clear();
+        m_spare = batch;
+        notifyAll();
     }
 
     /**
@@ -194,7 +255,16 @@ public class PerPartitionTable {
         return m_es.submit(new Callable<Boolean>() {
             @Override
             public Boolean call() throws Exception {
-                loadTable(buildTable(), m_table);
+                final PartitionBatch batch;
+                synchronized (PerPartitionTable.this) {
+                    if (m_filling.size() == 0) {
+                        return true;
+                    }
+                    batch = swapBatches(1);
+                }
+                if (batch != null) {
+                    sendBatch(batch);
+                }
                 return true;
             }
         });
@@ -257,43 +327,10 @@ public class PerPartitionTable {
                 }
             };
             loadTable(callback, tmpTable);
+            tmpTable.clearRowData();
         }
     }
 
-    private PartitionProcedureCallback buildTable() {
-        ArrayList<VoltBulkLoaderRow> buf = new ArrayList<VoltBulkLoaderRow>(m_minBatchTriggerSize);
-        m_partitionRowQueue.drainTo(buf, m_minBatchTriggerSize);
-
-        Map<VoltBulkLoader, Long> batchSizes = new HashMap<>();
-        ListIterator<VoltBulkLoaderRow> it = buf.listIterator();
-        while (it.hasNext()) {
-            VoltBulkLoaderRow currRow = it.next();
-            VoltBulkLoader loader = currRow.m_loader;
-            Object row_args[];
-            row_args = new Object[currRow.m_rowData.length];
-            try {
-                for (int i = 0; i < row_args.length; i++) {
-                    final VoltType type = m_columnTypes[i];
-                    row_args[i] = ParameterConverter.tryToMakeCompatible(type.classFromType(),
-                            currRow.m_rowData[i]);
-                }
-            } catch (Exception e) {
-                loader.generateError(currRow.m_rowHandle, currRow.m_rowData, e.getMessage());
-                loader.m_outstandingRowCount.decrementAndGet();
-                it.remove();
-                continue;
-            }
-            m_table.addRow(row_args);
-
-            Long prevValue;
-            if ((prevValue = batchSizes.put(loader, 1L)) != null) {
-                batchSizes.put(loader, prevValue + 1);
-            }
-        }
-
-        return new PartitionProcedureCallback(buf, batchSizes);
-    }
-
     private void loadTable(ProcedureCallback callback, VoltTable toSend) throws Exception {
         if (toSend.getRowCount() <= 0) {
             return;
@@ -322,7 +359,6 @@ public class PerPartitionTable {
                 callback.clientCallback(r);
             }
         }
-        toSend.clearRowData();
     }
 
     private void load(ProcedureCallback callback, VoltTable toSend) throws Exception {
@@ -30,6 +30,7 @@ import java.util.concurrent.atomic.AtomicLong;
 import org.voltcore.logging.VoltLogger;
 import org.voltcore.utils.CoreUtils;
 import org.voltdb.ClientResponseImpl;
+import org.voltdb.ParameterConverter;
 import org.voltdb.VoltTable;
 import org.voltdb.VoltType;
 import org.voltdb.VoltTypeException;
@@ -88,6 +89,15 @@ public class VoltBulkLoader {
     TreeMap<Integer, VoltType> m_mappedColumnTypes;
     //In array form
     final VoltType[] m_columnTypes;
+    //Java classes the inserted values are converted to
+    final Class<?>[] m_columnClasses;
+    //Converted values of the row being inserted, per inserting thread
+    private final ThreadLocal<Object[]> m_convertedRow = new ThreadLocal<Object[]>() {
+        @Override
+        protected Object[] initialValue() {
+            return new Object[m_columnCnt];
+        }
+    };
     //Index of partitioned column in table
     int m_partitionedColumnIndex = -1;
     //Column Names
@@ -196,6 +206,10 @@ public class VoltBulkLoader {
             throw new IllegalArgumentException("Table Name parameter does not match any known table.");
         }
         m_columnTypes = getColumnTypes();
+        m_columnClasses = new Class<?>[m_columnCnt];
+        for (int i = 0; i < m_columnCnt; i++) {
+            m_columnClasses[i] = m_columnTypes[i].classFromType();
+        }
 
         //Build column info so we can build VoltTable
         m_colInfo = new VoltTable.ColumnInfo[m_columnCnt];
@@ -303,6 +317,12 @@ public class VoltBulkLoader {
     /**
      *  <p>Add new row to VoltBulkLoader table.</p>
      *
+     *  <p>The values are converted to the column types and appended to the batch of the
+     *  row's partition right away. fieldList itself is kept until the row has been
+     *  inserted and is passed to the failure callback if it can't be, so it must not be
+     *  modified after the call. The call blocks while the partition's batch is full and
+     *  the previous one has not been acknowledged.</p>
+     *
      * @param rowHandle User supplied object used to distinguish failed insert attempts
      * @param fieldList List of fields associated with a single row insertion
      * @throws java.lang.InterruptedException
@@ -330,21 +350,28 @@ public class VoltBulkLoader {
             generateError(rowHandle, fieldList, errMsg);
             return;
         }
-        VoltBulkLoaderRow newRow = new VoltBulkLoaderRow(this, rowHandle, fieldList);
+        final Object[] convertedRow = m_convertedRow.get();
+        try {
+            for (int i = 0; i < m_columnCnt; i++) {
+                convertedRow[i] = ParameterConverter.tryToMakeCompatible(m_columnClasses[i], fieldList[i]);
+            }
+        } catch (Exception e) {
+            generateError(rowHandle, fieldList, e.getMessage());
+            return;
+        }
         if (m_isMP) {
-            m_partitionTable[m_firstPartitionTable].insertRowInTable(newRow);
+            m_partitionTable[m_firstPartitionTable].insertRowInTable(this, rowHandle, convertedRow, fieldList);
         }
         else {
             try {
                 partitionId = (int)m_clientImpl.getPartitionForParameter(
                         m_partitionColumnType.getValue(), fieldList[m_partitionedColumnIndex]);
-                m_partitionTable[partitionId].insertRowInTable(newRow);
             } catch (VoltTypeException e) {
                 generateError(rowHandle, fieldList, e.getMessage());
                 return;
             }
+            m_partitionTable[partitionId].insertRowInTable(this, rowHandle, convertedRow, fieldList);
         }
-        m_outstandingRowCount.incrementAndGet();
     }
 
     /**
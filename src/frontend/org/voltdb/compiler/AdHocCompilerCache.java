@@ -19,18 +19,18 @@ package org.voltdb.compiler;
 
 import java.io.Serializable;
 import java.util.ArrayList;
-import java.util.LinkedHashMap;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
-import java.util.Timer;
-import java.util.TimerTask;
 
+import org.voltcore.utils.CoreUtils;
 import org.voltdb.common.Constants;
 import org.voltdb.planner.BoundPlan;
 import org.voltdb.utils.Encoder;
+import org.voltdb.utils.TinyLfuCache;
 
 import com.google_voltpatches.common.cache.Cache;
 import com.google_voltpatches.common.cache.CacheBuilder;
+import com.google_voltpatches.common.cache.Weigher;
 
 /**
  * Keep a cache two level cache of plans generated by the Ad Hoc
@@ -43,6 +43,10 @@ import com.google_voltpatches.common.cache.CacheBuilder;
  * statement mapped to core parameterized plans. These parameterized
  * plans need parameter values and sql literals in order to be
  * actually used.
+ *
+ * Both levels are read and written by every planner thread without a
+ * common lock, see {@link TinyLfuCache}. Their hit rates are reported by
+ * @Statistics PLANCACHE.
  */
 public class AdHocCompilerCache implements Serializable {
     private static final long serialVersionUID = 1L;
@@ -77,31 +81,24 @@ public class AdHocCompilerCache implements Serializable {
     // PER-INSTANCE AWESOMEC CACHING CODE
     //////////////////////////////////////////////////////////////////////////
 
+    // one stripe per planner thread, up to 16
+    static final int STRIPES = Math.min(16, CoreUtils.availableProcessors());
+
     // cache sizes determined at construction time
     final int MAX_LITERAL_ENTRIES;
-    // max cache size for parameterized plans
+    // max cache size for full plans
     final long MAX_LITERAL_MEM  = Long.getLong("ADHOC_COMPILER_CACHE_MAX_LITERAL_MEM_BYTES", 32*1024*1024);
     final int MAX_CORE_ENTRIES;
+    // max cache size for parameterized plans
+    final long MAX_CORE_MEM  = Long.getLong("ADHOC_COMPILER_CACHE_MAX_CORE_MEM_BYTES", 32*1024*1024);
 
     /** cache of literals to full plans */
-    final Map<String, AdHocPlannedStatement> m_literalCache;
+    final TinyLfuCache<String, AdHocPlannedStatement> m_literalCache;
     /** cache of parameterized plan descriptions to one or more core parameterized plans,
      *  each plan optionally has its own requirements for which parameters need to be bound
-     *  to what values to enable its specialized (expression-indexed) plan. */
-    final Map<String, List<BoundPlan> > m_coreCache;
-
-    // placeholder stats used during development that may/may not survive
-    long m_literalHits = 0;
-    long m_literalQueries = 0;
-    long m_literalInsertions = 0;
-    long m_literalEvictions = 0;
-    long m_planHits = 0;
-    long m_planQueries = 0;
-    long m_planInsertions = 0;
-    long m_planEvictions = 0;
-
-    /** {@see this#startPeriodicStatsPrinting() } */
-    Timer m_statsTimer = null;
+     *  to what values to enable its specialized (expression-indexed) plan.
+     *  The lists are never modified once cached, a new variant replaces the list. */
+    final TinyLfuCache<String, List<BoundPlan> > m_coreCache;
 
     /**
      * Constructor with default cache sizes.
@@ -114,129 +111,44 @@ public class AdHocCompilerCache implements Serializable {
      * Constructor with specific cache sizes is only called directly for testing.
      *
      * @param maxLiteralEntries cache size for literals
-     * @param maxLiteralMem cache memory for literals
+     * @param maxCoreEntries cache size for parameterized plans
      */
     AdHocCompilerCache(int maxLiteralEntries, int maxCoreEntries) {
-        MAX_LITERAL_ENTRIES = maxLiteralEntries;
-        MAX_CORE_ENTRIES = maxCoreEntries;
-
-        // an LRU cache map
-        m_literalCache = new AdHocStatementCache(MAX_LITERAL_ENTRIES, MAX_LITERAL_MEM);
-
-        // an LRU cache map
-        m_coreCache = new LinkedHashMap<String, List<BoundPlan> >(MAX_CORE_ENTRIES * 2, .75f, true) {
-            private static final long serialVersionUID = 1L;
-
-            // This method is called just after a new entry has been added
-            @Override
-            public boolean removeEldestEntry(Map.Entry<String, List<BoundPlan> > eldest) {
-                if (size() > MAX_CORE_ENTRIES) {
-                    ++m_planEvictions;
-                    return true;
-                }
-                return false;
-            }
-
-        };
+        this(maxLiteralEntries, maxCoreEntries, STRIPES);
     }
 
-    // define a LinkedHashMap based LRU cache bounds by both entry number and entry value on-heap size
-    // without changing Map.Entry, only works for value of type AdHocPlannedStatement
-    // only extend put, remove,clear and removeEldestEntry methods to account weight
-    public class AdHocStatementCache extends LinkedHashMap<String, AdHocPlannedStatement>{
-       private static final long serialVersionUID = 2988383448026641836L;
-        private final int maxEntries;
-        private final long maxMemory; // in bytes
-        private long currentMemory;   // in bytes
-
-        public AdHocStatementCache() {
-            // default max entry of 1000
-            // default max value size of 32MB
-            this(1000, 32 * 1024 * 1024);
-        }
-
-        public AdHocStatementCache(final int maxEntries) {
-            this(maxEntries, 32 * 1024 * 1024);
-        }
-
-        public AdHocStatementCache(final int maxEntries, final long maxMemory) {
-            // set accessOrder to true for LRU
-            super(maxEntries * 2, .75f, true);
-            this.maxEntries = maxEntries;
-            this.maxMemory = maxMemory;
-            this.currentMemory = 0;
-        }
-
-        // This method is called just after a new entry has been added
-        @Override
-        public boolean removeEldestEntry(final Map.Entry<String, AdHocPlannedStatement> eldest) {
-            if ((size() > maxEntries) || (this.currentMemory > this.maxMemory))  {
-                ++m_literalEvictions;
-                this.currentMemory -= eldest.getValue().getSerializedSize();
-                return true;
-            }
-            return false;
-        }
-
-        @Override
-        public AdHocPlannedStatement put(String key, AdHocPlannedStatement value) {
-            this.currentMemory += value.getSerializedSize();
-            return super.put(key,value);
-        }
-
-        @Override
-        public AdHocPlannedStatement remove(Object key) {
-            AdHocPlannedStatement value = super.remove(key);
-            if (value != null) {
-                this.currentMemory -= value.getSerializedSize();
-            }
-            return value;
-        }
-
-        @Override
-        public void clear() {
-            super.clear();
-            this.currentMemory = 0;
-        }
-    }
-
-    /**
-     * Stats printing method used during development.
-     * Probably shouldn't live past real stats integration.
-     */
-    synchronized void printStats() {
-        String line1 = String.format("CACHE STATS - Literals: Hits %d/%d (%.1f%%), Inserts %d Evictions %d\n",
-                m_literalHits, m_literalQueries, (m_literalHits * 100.0) / m_literalQueries,
-                m_literalInsertions, m_literalEvictions);
-        String line2 = String.format("CACHE STATS - Plans:    Hits %d/%d (%.1f%%), Inserts %d Evictions %d\n",
-                m_planHits, m_planQueries, (m_planHits * 100.0) /m_planQueries,
-                m_planInsertions, m_planEvictions);
-
-        System.out.print(line1 + line2);
-        System.out.flush();
+    AdHocCompilerCache(int maxLiteralEntries, int maxCoreEntries, int stripes) {
+        MAX_LITERAL_ENTRIES = maxLiteralEntries;
+        MAX_CORE_ENTRIES = maxCoreEntries;
 
-        // reset these
-        m_literalHits = 0;
-        m_literalQueries = 0;
-        m_literalInsertions = 0;
-        m_literalEvictions = 0;
-        m_planHits = 0;
-        m_planQueries = 0;
-        m_planInsertions = 0;
-        m_planEvictions = 0;
+        // bounded by both entry count and on-heap size of the plans
+        m_literalCache = new TinyLfuCache<String, AdHocPlannedStatement>(stripes, MAX_LITERAL_ENTRIES, MAX_LITERAL_MEM,
+                new Weigher<String, AdHocPlannedStatement>() {
+                    @Override
+                    public int weigh(String sql, AdHocPlannedStatement plan) {
+                        return plan.getSerializedSize();
+                    }
+                });
+
+        m_coreCache = new TinyLfuCache<String, List<BoundPlan> >(stripes, MAX_CORE_ENTRIES, MAX_CORE_MEM,
+                new Weigher<String, List<BoundPlan> >() {
+                    @Override
+                    public int weigh(String parsedToken, List<BoundPlan> boundVariants) {
+                        int size = 0;
+                        for (BoundPlan boundPlan : boundVariants) {
+                            size += boundPlan.m_core.getSerializedSize();
+                        }
+                        return size;
+                    }
+                });
     }
 
     /**
      * @param sql SQL literal
      * @return full, ready-to-go plan
      */
-    public synchronized AdHocPlannedStatement getWithSQL(String sql) {
-        ++m_literalQueries;
-        AdHocPlannedStatement retval = m_literalCache.get(sql);
-        if (retval != null) {
-            ++m_literalHits;
-        }
-        return retval;
+    public AdHocPlannedStatement getWithSQL(String sql) {
+        return m_literalCache.get(sql);
     }
 
     /**
@@ -244,13 +156,8 @@ public class AdHocCompilerCache implements Serializable {
      * SQL statement
      * @return A CorePlan that needs parameter values to run.
      */
-    public synchronized List<BoundPlan> getWithParsedToken(String parsedToken) {
-        ++m_planQueries;
-        List<BoundPlan> retval = m_coreCache.get(parsedToken);
-        if (retval != null) {
-            ++m_planHits;
-        }
-        return retval;
+    public List<BoundPlan> getWithParsedToken(String parsedToken) {
+        return m_coreCache.get(parsedToken);
     }
 
     /**
@@ -264,6 +171,9 @@ public class AdHocCompilerCache implements Serializable {
      * L1 cache (literal cache) cache SQL queries without user provided parameters.
      * L2 cache (core cache) cache parameterized queries: including user parameters and auto extracted parameters.
      *
+     * Planners may put the same statement at the same time. That may cost a
+     * bound variant or a literal entry, which is planned again on its next use.
+     *
      * @param sql               original query text
      * @param parsedToken       massaged query text, possibly with literals purged
      * @param planIn
@@ -271,12 +181,12 @@ public class AdHocCompilerCache implements Serializable {
      * @param hasUserQuestionMarkParameters is user provided parameterized query
      * @param hasAutoParameterizedException is the auto parameterized query has parameter exception
      */
-    public synchronized void put(String sql,
-                                 String parsedToken,
-                                 AdHocPlannedStatement planIn,
-                                 String[] extractedLiterals,
-                                 boolean hasUserQuestionMarkParameters,
-                                 boolean hasAutoParameterizedException)
+    public void put(String sql,
+                    String parsedToken,
+                    AdHocPlannedStatement planIn,
+                    String[] extractedLiterals,
+                    boolean hasUserQuestionMarkParameters,
+                    boolean hasAutoParameterizedException)
     {
         assert(sql != null);
         assert(parsedToken != null);
@@ -288,25 +198,14 @@ public class AdHocCompilerCache implements Serializable {
         // it means that a query can not be both user parameterized query and auto parameterized query.
         assert(!hasUserQuestionMarkParameters || !hasAutoParameterizedException);
 
-        // uncomment this to get some raw stdout cache performance stats every 5s
-        //startPeriodicStatsPrinting();
-
         // deal with L2 cache
         if (! hasAutoParameterizedException) {
             BoundPlan matched = null;
             BoundPlan unmatched = new BoundPlan(planIn.core, planIn.parameterBindings(extractedLiterals));
             // deal with the parameterized plan cache first
-            List<BoundPlan> boundVariants = m_coreCache.get(parsedToken);
+            List<BoundPlan> boundVariants = m_coreCache.peek(parsedToken);
             if (boundVariants == null) {
-                boundVariants = new ArrayList<BoundPlan>();
-                m_coreCache.put(parsedToken, boundVariants);
-                // Note that there is an edge case in which more than one plan is getting counted as one
-                // "plan insertion". This only happens when two different plans arose from the same parameterized
-                // query (token) because one invocation used the correct constants to trigger an expression index and
-                // another invocation did not.  These are not counted separately (which would have to happen below
-                // after each call to boundVariants.add) because they are not evicted separately.
-                // It seems saner to use consistent units when counting insertions vs. evictions.
-                ++m_planInsertions;
+                m_coreCache.put(parsedToken, Collections.singletonList(unmatched));
             } else {
                 for (BoundPlan boundPlan : boundVariants) {
                     if (boundPlan.equals(unmatched)) {
@@ -322,42 +221,35 @@ public class AdHocCompilerCache implements Serializable {
                         plan.setBoundConstants(matched.m_constants);
                     }
                 }
-            }
-            if (matched == null) {
-                // Don't count insertions (of possibly repeated tokens) here
-                //  -- see the comment above where only UNIQUE token insertions are being counted, instead.
-                boundVariants.add(unmatched);
+                else {
+                    // Readers may be iterating over the cached list
+                    List<BoundPlan> newVariants = new ArrayList<BoundPlan>(boundVariants.size() + 1);
+                    newVariants.addAll(boundVariants);
+                    newVariants.add(unmatched);
+                    m_coreCache.put(parsedToken, Collections.unmodifiableList(newVariants));
+                }
             }
         }
 
         // then deal with the L1 cache
         if (! hasUserQuestionMarkParameters) {
-            AdHocPlannedStatement cachedPlan = m_literalCache.get(sql);
-            if (cachedPlan == null) {
-                //* enable to debug */ System.out.println("DEBUG: Caching literal '" + sql + "'");
-                m_literalCache.put(sql, plan);
-                ++m_literalInsertions;
-            }
-            else {
-                assert(cachedPlan.equals(plan));
-            }
+            AdHocPlannedStatement cachedPlan = m_literalCache.putIfAbsent(sql, plan);
+            assert(cachedPlan == null || cachedPlan.equals(plan));
         }
     }
 
     /**
-     * Start a timer that prints cache stats to the console every 5s.
-     * Used for development until we get better stats integration.
+     * @return the literal (full plan) cache, for statistics
      */
-    public void startPeriodicStatsPrinting() {
-        if (m_statsTimer == null) {
-            m_statsTimer = new Timer();
-            m_statsTimer.scheduleAtFixedRate(new TimerTask() {
-                @Override
-                public void run() {
-                    printStats();
-                }
-            }, 5000, 5000);
-        }
+    public TinyLfuCache<String, AdHocPlannedStatement> getLiteralCache() {
+        return m_literalCache;
+    }
+
+    /**
+     * @return the core (parameterized plan) cache, for statistics
+     */
+    public TinyLfuCache<String, List<BoundPlan> > getCoreCache() {
+        return m_coreCache;
     }
 
     /**
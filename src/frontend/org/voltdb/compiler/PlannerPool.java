@@ -0,0 +1,186 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.compiler;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.voltcore.utils.CoreUtils;
+import org.voltdb.PlannerStatsCollector;
+import org.voltdb.catalog.Database;
+import org.voltdb.planner.StatementPartitioning;
+
+/**
+ * A set of planner tools for one schema, so ad hoc statements arriving on
+ * different threads can be planned at the same time. Each tool has its own
+ * HSQL instance; they all share the ad hoc compiler cache of the catalog.
+ *
+ * Loading HSQL costs about as much as a catalog update, so only the primary
+ * tool is created up front. Further tools are created when every existing
+ * one is busy, up to the pool size. Once the pool is full, statements wait
+ * for a free tool. Statements found in the literal cache never wait.
+ */
+public class PlannerPool {
+
+    /**
+     * Maximum number of planners per host.
+     */
+    public static final int POOL_SIZE =
+            Math.max(1, Integer.getInteger("PLANNER_POOL_SIZE", CoreUtils.availableProcessors()));
+
+    private final int m_size;
+    private final PlannerTool m_primary;
+    private final CopyOnWriteArrayList<PlannerTool> m_tools = new CopyOnWriteArrayList<PlannerTool>();
+    private final LinkedBlockingQueue<PlannerTool> m_idle = new LinkedBlockingQueue<PlannerTool>();
+    private final AtomicInteger m_created = new AtomicInteger(1);
+
+    private volatile Database m_database;
+    private volatile byte[] m_catalogHash;
+
+    public PlannerPool(final Database database, byte[] catalogHash)
+    {
+        this(database, catalogHash, POOL_SIZE);
+    }
+
+    public PlannerPool(final Database database, byte[] catalogHash, int size)
+    {
+        assert(size > 0);
+        m_size = size;
+        m_database = database;
+        m_catalogHash = catalogHash;
+        m_primary = new PlannerTool(database, catalogHash);
+        m_tools.add(m_primary);
+        m_idle.add(m_primary);
+        setPlannerCount();
+    }
+
+    /**
+     * The planner used outside of ad hoc planning, e.g. for default procedures
+     * and DDL. Its methods are synchronized, so it may be used while it is
+     * also part of the pool.
+     */
+    public PlannerTool getPrimary() {
+        return m_primary;
+    }
+
+    public int getSize() {
+        return m_size;
+    }
+
+    /**
+     * @return the number of planners created so far
+     */
+    public int getPlannerCount() {
+        return m_tools.size();
+    }
+
+    public synchronized PlannerPool updateWhenNoSchemaChange(Database database, byte[] catalogHash) {
+        m_database = database;
+        m_catalogHash = catalogHash;
+        for (PlannerTool tool : m_tools) {
+            tool.updateWhenNoSchemaChange(database, catalogHash);
+        }
+        return this;
+    }
+
+    /**
+     * Plan a statement on a free planner, see {@link PlannerTool#planSql}.
+     */
+    public AdHocPlannedStatement planSql(String sqlIn, StatementPartitioning partitioning,
+            boolean isExplainMode, final Object[] userParams, boolean isSwapTables) {
+        AdHocPlannedStatement cachedPlan = m_primary.getCachedPlan(sqlIn, partitioning);
+        if (cachedPlan != null) {
+            return cachedPlan;
+        }
+
+        final PlannerTool tool = acquire();
+        try {
+            return tool.planSql(sqlIn, partitioning, isExplainMode, userParams, isSwapTables);
+        }
+        finally {
+            m_idle.add(tool);
+        }
+    }
+
+    private PlannerTool acquire() {
+        PlannerTool tool = m_idle.poll();
+        if (tool != null) {
+            return tool;
+        }
+
+        int created;
+        while ((created = m_created.get()) < m_size) {
+            if (m_created.compareAndSet(created, created + 1)) {
+                return create();
+            }
+        }
+
+        final PlannerStatsCollector stats = PlannerTool.getPlannerStats();
+        if (stats != null) {
+            stats.plannerQueued();
+        }
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return m_idle.take();
+                }
+                catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        finally {
+            if (stats != null) {
+                stats.plannerDequeued();
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private PlannerTool create() {
+        Database database = m_database;
+        final PlannerTool tool;
+        try {
+            tool = new PlannerTool(database, m_catalogHash);
+        }
+        catch (RuntimeException e) {
+            m_created.decrementAndGet();
+            throw e;
+        }
+        synchronized (this) {
+            // Catch up with an update that happened while loading
+            if (database != m_database) {
+                tool.updateWhenNoSchemaChange(m_database, m_catalogHash);
+            }
+            m_tools.add(tool);
+        }
+        setPlannerCount();
+        return tool;
+    }
+
+    private void setPlannerCount() {
+        final PlannerStatsCollector stats = PlannerTool.getPlannerStats();
+        if (stats != null) {
+            stats.setPlannerCount(m_tools.size());
+        }
+    }
+}
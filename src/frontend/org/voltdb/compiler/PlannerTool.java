@@ -114,6 +114,28 @@ public class PlannerTool {
         return m_hsql;
     }
 
+    static PlannerStatsCollector getPlannerStats() {
+        return m_plannerStats;
+    }
+
+    /**
+     * Look a statement up in the literal cache without touching the planner,
+     * so cache hits don't have to wait for a free planner.
+     * @return the cached plan, or null if the statement has to be planned
+     */
+    AdHocPlannedStatement getCachedPlan(String sqlIn, StatementPartitioning partitioning) {
+        if (sqlIn == null || !partitioning.isInferred()) {
+            return null;
+        }
+        final long startTime = m_plannerStats != null ? m_plannerStats.startStatsCollection() : 0;
+        AdHocPlannedStatement cachedPlan = m_cache.getWithSQL(sqlIn);
+        if (cachedPlan != null && m_plannerStats != null) {
+            m_plannerStats.endStatsCollection(startTime, m_cache.getLiteralCacheSize(), m_cache.getCoreCacheSize(),
+                                              CacheUse.HIT1, -1);
+        }
+        return cachedPlan;
+    }
+
 
     public AdHocPlannedStatement planSqlForTest(String sqlIn) {
         StatementPartitioning infer = StatementPartitioning.inferPartitioning();
@@ -166,9 +188,7 @@ public class PlannerTool {
             boolean isExplainMode, final Object[] userParams, boolean isSwapTables) {
 
         CacheUse cacheUse = CacheUse.FAIL;
-        if (m_plannerStats != null) {
-            m_plannerStats.startStatsCollection();
-        }
+        final long startTime = m_plannerStats != null ? m_plannerStats.startStatsCollection() : 0;
         boolean hasUserQuestionMark = false;
         boolean wrongNumberParameters = false;
         try {
@@ -327,7 +347,7 @@ public class PlannerTool {
         }
         finally {
             if (m_plannerStats != null) {
-                m_plannerStats.endStatsCollection(m_cache.getLiteralCacheSize(), m_cache.getCoreCacheSize(), cacheUse, -1);
+                m_plannerStats.endStatsCollection(startTime, m_cache.getLiteralCacheSize(), m_cache.getCoreCacheSize(), cacheUse, -1);
             }
         }
     }
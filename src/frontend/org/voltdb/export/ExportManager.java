@@ -135,6 +135,11 @@ public class ExportManager
 
     private int m_exportTablesCount = 0;
 
+    /**
+     * Per stream counters of the processors, outlives processor replacement on generation rolls
+     */
+    private final ExportStats m_exportStats = new ExportStats();
+
     private int m_connCount = 0;
 
     /*
@@ -614,6 +619,10 @@ public class ExportManager
         m_processorConfig = config;
     }
 
+    public ExportStats getExportStats() {
+        return m_exportStats;
+    }
+
     public int getExportTablesCount() {
         return m_exportTablesCount;
     }
@@ -0,0 +1,165 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.export;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.voltdb.StatsSource;
+import org.voltdb.VoltTable.ColumnInfo;
+import org.voltdb.VoltType;
+
+/**
+ * Reports, as @Statistics EXPORT, how fast the export processor on this host
+ * drains each stream and how far behind the committed transactions it is.
+ * Processors register one set of counters per table and partition, and
+ * update them from whichever thread handles the stream's next block.
+ */
+public class ExportStats extends StatsSource
+{
+    /**
+     * Counters of one stream. Written by one thread at a time, the poller that
+     * owns the stream's outstanding block, and read by the stats thread.
+     */
+    public static class StreamCounters {
+        final String m_tableName;
+        final int m_partitionId;
+        final String m_target;
+        final long m_createTime = System.currentTimeMillis();
+        volatile boolean m_active = true;
+        volatile long m_tuples = 0;
+        volatile long m_blocks = 0;
+        volatile long m_bytes = 0;
+        volatile long m_failures = 0;
+        // Export timestamp of the last row written and the time it was written at
+        volatile long m_lastRowTimestamp = 0;
+        volatile long m_lastWriteTime = 0;
+
+        StreamCounters(String tableName, int partitionId, String target) {
+            m_tableName = tableName;
+            m_partitionId = partitionId;
+            m_target = target;
+        }
+
+        public void blockWritten(int tuples, int bytes, long lastRowTimestamp) {
+            m_tuples += tuples;
+            m_blocks++;
+            m_bytes += bytes;
+            if (tuples > 0) {
+                m_lastRowTimestamp = lastRowTimestamp;
+            }
+            m_lastWriteTime = System.currentTimeMillis();
+        }
+
+        public void writeFailed() {
+            m_failures++;
+        }
+
+        public void setActive(boolean active) {
+            m_active = active;
+        }
+
+        public long getTuples() {
+            return m_tuples;
+        }
+
+        public long getFailures() {
+            return m_failures;
+        }
+    }
+
+    private static final int TUPLES = 0;
+    private static final int BLOCKS = 1;
+    private static final int BYTES = 2;
+    private static final int FAILURES = 3;
+    private static final int TIME = 4;
+
+    private final ConcurrentHashMap<StreamCounters, long[]> m_streams =
+            new ConcurrentHashMap<StreamCounters, long[]>();
+    private boolean m_interval = false;
+
+    public ExportStats() {
+        super(false);
+    }
+
+    public StreamCounters register(String tableName, int partitionId, String target) {
+        final StreamCounters counters = new StreamCounters(tableName, partitionId, target);
+        m_streams.put(counters, new long[] { 0, 0, 0, 0, counters.m_createTime });
+        return counters;
+    }
+
+    public void deregister(StreamCounters counters) {
+        m_streams.remove(counters);
+    }
+
+    @Override
+    protected void populateColumnSchema(ArrayList<ColumnInfo> columns) {
+        super.populateColumnSchema(columns);
+        columns.add(new ColumnInfo("SOURCE", VoltType.STRING));
+        columns.add(new ColumnInfo("PARTITION_ID", VoltType.INTEGER));
+        columns.add(new ColumnInfo("TARGET", VoltType.STRING));
+        columns.add(new ColumnInfo("ACTIVE", VoltType.STRING));
+        columns.add(new ColumnInfo("TUPLES", VoltType.BIGINT));
+        columns.add(new ColumnInfo("BLOCKS", VoltType.BIGINT));
+        columns.add(new ColumnInfo("BYTES", VoltType.BIGINT));
+        columns.add(new ColumnInfo("TUPLES_PER_SECOND", VoltType.FLOAT));
+        columns.add(new ColumnInfo("FAILURES", VoltType.BIGINT));
+        columns.add(new ColumnInfo("LAG_MS", VoltType.BIGINT));
+    }
+
+    @Override
+    protected void updateStatsRow(Object rowKey, Object[] rowValues) {
+        final StreamCounters counters = (StreamCounters)rowKey;
+        final long now = System.currentTimeMillis();
+        final long[] values = new long[] { counters.m_tuples, counters.m_blocks, counters.m_bytes,
+                                           counters.m_failures, now };
+        final long[] delta = values.clone();
+        final long[] baseline = m_streams.get(counters);
+        if (m_interval && baseline != null) {
+            for (int i = 0; i < values.length; i++) {
+                delta[i] -= baseline[i];
+            }
+            System.arraycopy(values, 0, baseline, 0, values.length);
+        } else {
+            delta[TIME] = now - counters.m_createTime;
+        }
+        final long lastRowTimestamp = counters.m_lastRowTimestamp;
+        rowValues[columnNameToIndex.get("SOURCE")] = counters.m_tableName;
+        rowValues[columnNameToIndex.get("PARTITION_ID")] = counters.m_partitionId;
+        rowValues[columnNameToIndex.get("TARGET")] = counters.m_target;
+        rowValues[columnNameToIndex.get("ACTIVE")] = counters.m_active ? "TRUE" : "FALSE";
+        rowValues[columnNameToIndex.get("TUPLES")] = delta[TUPLES];
+        rowValues[columnNameToIndex.get("BLOCKS")] = delta[BLOCKS];
+        rowValues[columnNameToIndex.get("BYTES")] = delta[BYTES];
+        rowValues[columnNameToIndex.get("TUPLES_PER_SECOND")] =
+                delta[TIME] <= 0 ? 0.0 : delta[TUPLES] * 1000.0 / delta[TIME];
+        rowValues[columnNameToIndex.get("FAILURES")] = delta[FAILURES];
+        // How long the last exported row waited between its commit and being written
+        rowValues[columnNameToIndex.get("LAG_MS")] =
+                lastRowTimestamp == 0 ? 0L : Math.max(0L, counters.m_lastWriteTime - lastRowTimestamp);
+        super.updateStatsRow(rowKey, rowValues);
+    }
+
+    @Override
+    protected Iterator<Object> getStatsRowKeyIterator(boolean interval)
+    {
+        m_interval = interval;
+        return new ArrayList<Object>(m_streams.keySet()).iterator();
+    }
+}
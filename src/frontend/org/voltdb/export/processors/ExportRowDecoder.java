@@ -0,0 +1,160 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.export.processors;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.voltdb.VoltType;
+import org.voltdb.types.GeographyPointValue;
+import org.voltdb.types.GeographyValue;
+import org.voltdb.types.TimestampType;
+
+/**
+ * Decodes the rows of an export stream block in place.
+ *
+ * The EE appends each row as a native order 4 byte length, a null bitmap
+ * covering the six metadata columns and the table columns, the metadata
+ * columns and then the non-null table columns. The decoder walks a little
+ * endian view of the polled buffer and fills one reusable value array per
+ * row, so the block is never copied out.
+ */
+public class ExportRowDecoder {
+
+    public static final int METADATA_COLUMN_COUNT = 6;
+    public static final int TIMESTAMP_COLUMN = 1;
+
+    private final String[] m_names;
+    private final VoltType[] m_types;
+    private final int m_nullMaskLength;
+    // Scratch space for string decoding, grows to the longest string seen
+    private byte[] m_scratch = new byte[256];
+    private ByteBuffer m_block;
+
+    /**
+     * @param names names of all the columns, metadata columns included
+     * @param types VoltType values of all the columns, metadata columns included
+     */
+    public ExportRowDecoder(List<String> names, List<Integer> types) {
+        m_names = names.toArray(new String[names.size()]);
+        m_types = new VoltType[types.size()];
+        for (int i = 0; i < m_types.length; i++) {
+            m_types[i] = VoltType.get(types.get(i).byteValue());
+        }
+        m_nullMaskLength = ((m_types.length + 7) & -8) >> 3;
+    }
+
+    public int getColumnCount() {
+        return m_types.length;
+    }
+
+    public String getColumnName(int index) {
+        return m_names[index];
+    }
+
+    public VoltType getColumnType(int index) {
+        return m_types[index];
+    }
+
+    /**
+     * Start decoding a block. The buffer itself is left untouched.
+     */
+    public void reset(ByteBuffer block) {
+        m_block = block.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Decode the next row of the current block into values.
+     * @return false once the block has no more rows
+     */
+    public boolean next(Object[] values) {
+        final ByteBuffer buf = m_block;
+        if (buf == null || buf.remaining() < 4) {
+            return false;
+        }
+        final int rowLength = buf.getInt();
+        final int rowStart = buf.position();
+        if (rowLength < m_nullMaskLength || rowLength > buf.remaining()) {
+            throw new IllegalStateException("Corrupt export row of length " + rowLength +
+                    " with " + buf.remaining() + " bytes left in the block");
+        }
+        buf.position(rowStart + m_nullMaskLength);
+        for (int i = 0; i < m_types.length; i++) {
+            if ((buf.get(rowStart + (i >> 3)) & (0x80 >> (i & 7))) != 0) {
+                values[i] = null;
+            } else {
+                values[i] = decodeValue(buf, m_types[i]);
+            }
+        }
+        buf.position(rowStart + rowLength);
+        return true;
+    }
+
+    private Object decodeValue(ByteBuffer buf, VoltType type) {
+        switch (type) {
+        case TINYINT:
+            return buf.get();
+        case SMALLINT:
+            return buf.getShort();
+        case INTEGER:
+            return buf.getInt();
+        case BIGINT:
+            return buf.getLong();
+        case FLOAT:
+            return buf.getDouble();
+        case TIMESTAMP:
+            return new TimestampType(buf.getLong());
+        case DECIMAL: {
+            // Scale and length bytes, then the unscaled value in network order
+            final int scale = buf.get();
+            final int length = buf.get();
+            final byte[] unscaled = new byte[length];
+            buf.get(unscaled);
+            return new BigDecimal(new BigInteger(unscaled), scale);
+        }
+        case STRING: {
+            final int length = buf.getInt();
+            if (m_scratch.length < length) {
+                m_scratch = new byte[Math.max(length, m_scratch.length * 2)];
+            }
+            buf.get(m_scratch, 0, length);
+            return new String(m_scratch, 0, length, StandardCharsets.UTF_8);
+        }
+        case VARBINARY: {
+            final byte[] bytes = new byte[buf.getInt()];
+            buf.get(bytes);
+            return bytes;
+        }
+        case GEOGRAPHY_POINT:
+            return GeographyPointValue.unflattenFromBuffer(buf);
+        case GEOGRAPHY: {
+            final int length = buf.getInt();
+            final int start = buf.position();
+            final GeographyValue value = GeographyValue.unflattenFromBuffer(buf);
+            buf.position(start + length);
+            return value;
+        }
+        default:
+            throw new IllegalStateException("Unsupported export column type " + type);
+        }
+    }
+}
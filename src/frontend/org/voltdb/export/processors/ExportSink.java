@@ -0,0 +1,110 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.export.processors;
+
+import java.util.Properties;
+
+import org.voltdb.export.ExportDataProcessor;
+
+/**
+ * A destination the built-in export processor writes decoded rows to. A sink
+ * is built once per export target from the target's connector properties and
+ * opens one {@link StreamWriter} per table and partition it is fed.
+ */
+public abstract class ExportSink {
+
+    public static final String FILE_CLIENT = "org.voltdb.exportclient.ExportToFileClient";
+    public static final String JDBC_CLIENT = "org.voltdb.exportclient.JDBCExportClient";
+
+    /**
+     * Writes the rows of one stream. Only one thread uses a writer at a time.
+     * Rows written since the last commit form one stream block; they are
+     * either all made durable by commit() or all dropped by abort(), after
+     * which the processor retries the block.
+     */
+    public interface StreamWriter {
+        void write(Object[] row) throws Exception;
+        void commit() throws Exception;
+        void abort();
+        void close();
+    }
+
+    protected final String m_target;
+    protected final boolean m_skipInternals;
+
+    protected ExportSink(String target, Properties config) {
+        m_target = target;
+        m_skipInternals = Boolean.parseBoolean(config.getProperty("skipinternals", "false").trim());
+    }
+
+    public String getTarget() {
+        return m_target;
+    }
+
+    /**
+     * Index of the first column the sink writes.
+     */
+    protected int firstColumn() {
+        return m_skipInternals ? ExportRowDecoder.METADATA_COLUMN_COUNT : 0;
+    }
+
+    public abstract StreamWriter open(String tableName, int partitionId, long generation,
+                                      ExportRowDecoder decoder) throws Exception;
+
+    /**
+     * Build the sink for a target from its connector properties.
+     * @throws IllegalArgumentException if the export type is not supported
+     * or a property is missing or invalid
+     */
+    public static ExportSink create(String target, Properties config) {
+        final String type = config.getProperty(ExportDataProcessor.EXPORT_TO_TYPE);
+        if (FILE_CLIENT.equals(type)) {
+            return new FileExportSink(target, config);
+        } else if (JDBC_CLIENT.equals(type)) {
+            return new JdbcExportSink(target, config);
+        }
+        throw new IllegalArgumentException("Export target " + target + " uses " + type +
+                ", the built-in export processor only supports file and JDBC export");
+    }
+
+    static int intProperty(Properties config, String name, int defaultValue, int min) {
+        final String value = config.getProperty(name);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        final int parsed;
+        try {
+            parsed = Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Export property " + name + " must be an integer: " + value);
+        }
+        if (parsed < min) {
+            throw new IllegalArgumentException("Export property " + name + " must be at least " + min +
+                    ": " + value);
+        }
+        return parsed;
+    }
+
+    static String requiredProperty(Properties config, String name) {
+        final String value = config.getProperty(name);
+        if (value == null || value.trim().isEmpty()) {
+            throw new IllegalArgumentException("Export property " + name + " must be set");
+        }
+        return value.trim();
+    }
+}
@@ -0,0 +1,416 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.export.processors;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.avro.Schema;
+import org.apache.avro.file.DataFileWriter;
+import org.apache.avro.file.SeekableFileInput;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.codehaus.jackson.node.IntNode;
+import org.codehaus.jackson.node.NullNode;
+import org.voltdb.VoltType;
+import org.voltdb.types.GeographyPointValue;
+import org.voltdb.types.GeographyValue;
+import org.voltdb.types.TimestampType;
+import org.voltdb.types.VoltDecimalHelper;
+import org.voltdb.utils.Encoder;
+
+/**
+ * Writes each stream to rolling CSV, TSV or Avro files. Rows of a block are
+ * kept in memory and appended to the stream's active file on commit. Files
+ * are written with an "active-" prefix that is dropped once the file rolls,
+ * after the configured period or when the stream is closed, so readers only
+ * ever see complete files.
+ *
+ * Avro files are object container files with one nullable field per column.
+ * TIMESTAMP columns are microseconds since the epoch, DECIMAL columns are
+ * the unscaled bytes of the value with a scale of 12, and geography columns
+ * are their WKT text.
+ *
+ * Properties: outdir and nonce (required), type (csv, tsv or avro, default
+ * csv), period (minutes between rolls, default 60) and skipinternals.
+ */
+public class FileExportSink extends ExportSink {
+
+    public static final String ACTIVE_PREFIX = "active-";
+
+    private final File m_outdir;
+    private final String m_nonce;
+    private final String m_extension;
+    private final char m_delimiter;
+    private final long m_periodMillis;
+
+    public FileExportSink(String target, Properties config) {
+        super(target, config);
+        m_outdir = new File(requiredProperty(config, "outdir"));
+        m_nonce = requiredProperty(config, "nonce");
+        m_extension = config.getProperty("type", "csv").trim().toLowerCase();
+        if (m_extension.equals("csv")) {
+            m_delimiter = ',';
+        } else if (m_extension.equals("tsv")) {
+            m_delimiter = '\t';
+        } else if (m_extension.equals("avro")) {
+            m_delimiter = 0;
+        } else {
+            throw new IllegalArgumentException("Export property type must be csv, tsv or avro: " + m_extension);
+        }
+        m_periodMillis = intProperty(config, "period", 60, 1) * 60L * 1000L;
+        if (m_outdir.exists() && !m_outdir.isDirectory()) {
+            throw new IllegalArgumentException("Export outdir " + m_outdir + " is not a directory");
+        }
+    }
+
+    @Override
+    public StreamWriter open(String tableName, int partitionId, long generation, ExportRowDecoder decoder)
+            throws IOException {
+        if (!m_outdir.exists() && !m_outdir.mkdirs() && !m_outdir.isDirectory()) {
+            throw new IOException("Unable to create export directory " + m_outdir);
+        }
+        final String baseName = m_nonce + "-" + generation + "-" + tableName + "-" + partitionId;
+        if (m_delimiter == 0) {
+            return new AvroStreamWriter(baseName, avroSchema(tableName, decoder));
+        }
+        return new DelimitedStreamWriter(baseName, decoder);
+    }
+
+    /**
+     * Append a value, quoting it if it contains the delimiter, a quote or a line break.
+     */
+    static void appendValue(StringBuilder sb, Object value, char delimiter) {
+        if (value == null) {
+            return;
+        }
+        final String text;
+        if (value instanceof byte[]) {
+            text = Encoder.hexEncode((byte[])value);
+        } else if (value instanceof BigDecimal) {
+            text = ((BigDecimal)value).toPlainString();
+        } else {
+            text = value.toString();
+        }
+        boolean quote = false;
+        for (int i = 0; i < text.length() && !quote; i++) {
+            final char c = text.charAt(i);
+            quote = c == delimiter || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            sb.append(text);
+            return;
+        }
+        sb.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            final char c = text.charAt(i);
+            if (c == '"') {
+                sb.append('"');
+            }
+            sb.append(c);
+        }
+        sb.append('"');
+    }
+
+    /**
+     * Avro names start with a letter or underscore and hold only letters, digits and underscores.
+     */
+    static String avroName(String name) {
+        final StringBuilder sb = new StringBuilder(name.length() + 1);
+        for (int i = 0; i < name.length(); i++) {
+            final char c = name.charAt(i);
+            final boolean valid = c == '_' || (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') ||
+                    (i > 0 && c >= '0' && c <= '9');
+            sb.append(valid ? c : '_');
+        }
+        return sb.length() == 0 ? "_" : sb.toString();
+    }
+
+    /**
+     * The record schema of a stream, with a nullable field for each column the sink writes.
+     */
+    Schema avroSchema(String tableName, ExportRowDecoder decoder) {
+        final List<Schema.Field> fields = new ArrayList<>();
+        for (int i = firstColumn(); i < decoder.getColumnCount(); i++) {
+            final List<Schema> union = new ArrayList<>(2);
+            union.add(Schema.create(Schema.Type.NULL));
+            union.add(avroType(decoder.getColumnType(i)));
+            fields.add(new Schema.Field(avroName(decoder.getColumnName(i)), Schema.createUnion(union), null,
+                    NullNode.getInstance()));
+        }
+        final Schema schema = Schema.createRecord(avroName(tableName), null, null, false);
+        schema.setFields(fields);
+        return schema;
+    }
+
+    private static Schema avroType(VoltType type) {
+        switch (type) {
+        case TINYINT:
+        case SMALLINT:
+        case INTEGER:
+            return Schema.create(Schema.Type.INT);
+        case BIGINT:
+            return Schema.create(Schema.Type.LONG);
+        case TIMESTAMP: {
+            final Schema schema = Schema.create(Schema.Type.LONG);
+            schema.addProp("logicalType", "timestamp-micros");
+            return schema;
+        }
+        case FLOAT:
+            return Schema.create(Schema.Type.DOUBLE);
+        case DECIMAL: {
+            final Schema schema = Schema.create(Schema.Type.BYTES);
+            schema.addProp("logicalType", "decimal");
+            schema.addProp("precision", IntNode.valueOf(VoltDecimalHelper.kDefaultPrecision));
+            schema.addProp("scale", IntNode.valueOf(VoltDecimalHelper.kDefaultScale));
+            return schema;
+        }
+        case VARBINARY:
+            return Schema.create(Schema.Type.BYTES);
+        case STRING:
+        case GEOGRAPHY_POINT:
+        case GEOGRAPHY:
+            return Schema.create(Schema.Type.STRING);
+        default:
+            throw new IllegalArgumentException("Unsupported export column type " + type);
+        }
+    }
+
+    /**
+     * Convert a decoded value to the representation of its field in {@link #avroSchema}.
+     */
+    static Object avroValue(Object value) {
+        if (value == null) {
+            return null;
+        } else if (value instanceof Byte || value instanceof Short) {
+            return ((Number)value).intValue();
+        } else if (value instanceof TimestampType) {
+            return ((TimestampType)value).getTime();
+        } else if (value instanceof BigDecimal) {
+            final BigDecimal decimal = ((BigDecimal)value).setScale(VoltDecimalHelper.kDefaultScale,
+                    RoundingMode.UNNECESSARY);
+            return ByteBuffer.wrap(decimal.unscaledValue().toByteArray());
+        } else if (value instanceof byte[]) {
+            return ByteBuffer.wrap((byte[])value);
+        } else if (value instanceof GeographyPointValue) {
+            return ((GeographyPointValue)value).toWKT();
+        } else if (value instanceof GeographyValue) {
+            return ((GeographyValue)value).toWKT();
+        }
+        return value;
+    }
+
+    /**
+     * Writes the committed rows of a stream to its active file and rolls the file.
+     */
+    private abstract class RollingStreamWriter implements StreamWriter {
+        private final String m_baseName;
+        protected FileChannel m_channel = null;
+        protected File m_activeFile = null;
+        private String m_fileName = null;
+        private long m_openedAt = 0;
+        protected long m_committedSize = 0;
+
+        RollingStreamWriter(String baseName) {
+            m_baseName = baseName;
+        }
+
+        abstract boolean hasPending();
+
+        abstract void clearPending();
+
+        /**
+         * Write the rows since the last commit to m_channel.
+         */
+        abstract void writePending() throws IOException;
+
+        /**
+         * Called after m_channel was opened on a new file, and after it was truncated
+         * back to m_committedSize by an abort.
+         */
+        void fileReset() throws IOException {}
+
+        @Override
+        public void commit() throws IOException {
+            if (hasPending()) {
+                if (m_channel == null) {
+                    openFile();
+                }
+                writePending();
+                m_committedSize = m_channel.position();
+                clearPending();
+            }
+            if (m_channel != null && System.currentTimeMillis() - m_openedAt >= m_periodMillis) {
+                roll();
+            }
+        }
+
+        @Override
+        public void abort() {
+            clearPending();
+            if (m_channel != null) {
+                // Drop whatever part of a failed block made it to the file
+                try {
+                    m_channel.truncate(m_committedSize);
+                    m_channel.position(m_committedSize);
+                    fileReset();
+                } catch (IOException ignore) {}
+            }
+        }
+
+        @Override
+        public void close() {
+            clearPending();
+            if (m_channel != null) {
+                try {
+                    roll();
+                } catch (IOException ignore) {}
+            }
+        }
+
+        private void openFile() throws IOException {
+            m_openedAt = System.currentTimeMillis();
+            final String stamp = new SimpleDateFormat("yyyyMMddHHmmss").format(new Date(m_openedAt));
+            m_fileName = m_baseName + "-" + stamp + "." + m_extension;
+            m_activeFile = new File(m_outdir, ACTIVE_PREFIX + m_fileName);
+            m_channel = new FileOutputStream(m_activeFile, true).getChannel();
+            m_committedSize = m_channel.position();
+            fileReset();
+        }
+
+        private void roll() throws IOException {
+            try {
+                m_channel.force(false);
+                m_channel.close();
+            } finally {
+                m_channel = null;
+            }
+            if (m_committedSize == 0) {
+                m_activeFile.delete();
+            } else if (!m_activeFile.renameTo(new File(m_outdir, m_fileName))) {
+                throw new IOException("Unable to roll export file " + m_activeFile);
+            }
+        }
+    }
+
+    private final class DelimitedStreamWriter extends RollingStreamWriter {
+        private final int m_columnCount;
+        private final StringBuilder m_pending = new StringBuilder(64 * 1024);
+
+        DelimitedStreamWriter(String baseName, ExportRowDecoder decoder) {
+            super(baseName);
+            m_columnCount = decoder.getColumnCount();
+        }
+
+        @Override
+        public void write(Object[] row) {
+            for (int i = firstColumn(); i < m_columnCount; i++) {
+                if (i > firstColumn()) {
+                    m_pending.append(m_delimiter);
+                }
+                appendValue(m_pending, row[i], m_delimiter);
+            }
+            m_pending.append('\n');
+        }
+
+        @Override
+        boolean hasPending() {
+            return m_pending.length() > 0;
+        }
+
+        @Override
+        void clearPending() {
+            m_pending.setLength(0);
+        }
+
+        @Override
+        void writePending() throws IOException {
+            final ByteBuffer bytes = StandardCharsets.UTF_8.encode(CharBuffer.wrap(m_pending));
+            while (bytes.hasRemaining()) {
+                m_channel.write(bytes);
+            }
+        }
+    }
+
+    private final class AvroStreamWriter extends RollingStreamWriter {
+        private final Schema m_schema;
+        private final List<GenericRecord> m_pending = new ArrayList<>();
+        private DataFileWriter<GenericRecord> m_fileWriter = null;
+
+        AvroStreamWriter(String baseName, Schema schema) {
+            super(baseName);
+            m_schema = schema;
+        }
+
+        @Override
+        public void write(Object[] row) {
+            final GenericRecord record = new GenericData.Record(m_schema);
+            for (int i = firstColumn(); i < row.length; i++) {
+                record.put(i - firstColumn(), avroValue(row[i]));
+            }
+            m_pending.add(record);
+        }
+
+        @Override
+        boolean hasPending() {
+            return !m_pending.isEmpty();
+        }
+
+        @Override
+        void clearPending() {
+            m_pending.clear();
+        }
+
+        @Override
+        void writePending() throws IOException {
+            for (GenericRecord record : m_pending) {
+                m_fileWriter.append(record);
+            }
+            // Writes the rows as one block, after the header if the file is new
+            m_fileWriter.flush();
+        }
+
+        @Override
+        void fileReset() throws IOException {
+            // Rows the writer still buffers are from an aborted block. The writer is not
+            // closed because that would write them and close m_channel.
+            m_fileWriter = new DataFileWriter<>(new GenericDatumWriter<GenericRecord>(m_schema));
+            if (m_committedSize == 0) {
+                m_fileWriter.create(m_schema, Channels.newOutputStream(m_channel));
+            } else {
+                try (SeekableFileInput header = new SeekableFileInput(m_activeFile)) {
+                    m_fileWriter.appendTo(header, Channels.newOutputStream(m_channel));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,294 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.export.processors;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.voltcore.logging.Level;
+import org.voltcore.logging.VoltLogger;
+import org.voltcore.utils.CoreUtils;
+import org.voltcore.utils.DBBPool.BBContainer;
+import org.voltcore.utils.Pair;
+import org.voltcore.utils.RateLimitedLogger;
+import org.voltdb.export.ExportDataProcessor;
+import org.voltdb.export.ExportDataSource;
+import org.voltdb.export.ExportGeneration;
+import org.voltdb.export.ExportManager;
+import org.voltdb.export.ExportStats;
+
+import com.google_voltpatches.common.util.concurrent.ListenableFuture;
+
+/**
+ * The export processor ExportManager loads. Every stream of the current
+ * generation whose table belongs to a file or JDBC export target gets a
+ * poller; once the data source accepts mastership the poller keeps exactly
+ * one poll outstanding, decodes the polled block in place, writes it to
+ * the target's sink and acks it by discarding the container. Blocks of
+ * different streams are handled concurrently on a shared pool, blocks of
+ * one stream strictly in order. A block that fails to write is retried
+ * with backoff and is not acked until it succeeds.
+ */
+public class GuestProcessor implements ExportDataProcessor {
+
+    private static final int THREADS =
+            Integer.getInteger("EXPORT_PROCESSOR_THREADS", Math.max(2, CoreUtils.availableProcessors() / 2));
+    private static final long INITIAL_RETRY_DELAY_MS = 100;
+    private static final long MAX_RETRY_DELAY_MS = 30 * 1000;
+
+    private VoltLogger m_logger = new VoltLogger("EXPORT");
+    private final ExportStats m_stats;
+    private volatile ExportGeneration m_generation = null;
+    // Sinks keyed by upper cased table name
+    private final Map<String, ExportSink> m_sinksByTable = new HashMap<String, ExportSink>();
+    private final Map<ExportDataSource, StreamPoller> m_pollers = new HashMap<ExportDataSource, StreamPoller>();
+    private volatile ScheduledThreadPoolExecutor m_es = null;
+    private volatile boolean m_shutdown = false;
+
+    public GuestProcessor() {
+        this(ExportManager.instance() == null ? new ExportStats() : ExportManager.instance().getExportStats());
+    }
+
+    GuestProcessor(ExportStats stats) {
+        m_stats = stats;
+    }
+
+    @Override
+    public void addLogger(VoltLogger logger) {
+        m_logger = logger;
+    }
+
+    @Override
+    public void setExportGeneration(ExportGeneration generation) {
+        m_generation = generation;
+    }
+
+    @Override
+    public ExportGeneration getExportGeneration() {
+        return m_generation;
+    }
+
+    @Override
+    public synchronized void setProcessorConfig(Map<String, Pair<Properties, Set<String>>> config) {
+        m_sinksByTable.clear();
+        for (Map.Entry<String, Pair<Properties, Set<String>>> e : config.entrySet()) {
+            final ExportSink sink;
+            try {
+                sink = ExportSink.create(e.getKey(), e.getValue().getFirst());
+            } catch (IllegalArgumentException ex) {
+                m_logger.error("Export target " + e.getKey() + " will not be exported: " + ex.getMessage());
+                continue;
+            }
+            for (String table : e.getValue().getSecond()) {
+                m_sinksByTable.put(table.toUpperCase(Locale.ROOT), sink);
+            }
+        }
+    }
+
+    @Override
+    public void checkProcessorConfig(Properties config) {
+        ExportSink.create("check", config);
+    }
+
+    @Override
+    public synchronized void readyForData(boolean startup) {
+        if (m_es == null) {
+            m_es = CoreUtils.getScheduledThreadPoolExecutor("Export Processor", THREADS, CoreUtils.SMALL_STACK_SIZE);
+        }
+        if (!startup) {
+            startPolling();
+        }
+    }
+
+    /**
+     * Create pollers for the streams of the current generation that do not
+     * have one yet. Each starts polling when its data source becomes master.
+     */
+    @Override
+    public synchronized void startPolling() {
+        final ExportGeneration generation = m_generation;
+        if (generation == null || m_shutdown) {
+            return;
+        }
+        for (Map<String, ExportDataSource> sources : generation.getDataSourceByPartition().values()) {
+            for (ExportDataSource source : sources.values()) {
+                if (m_pollers.containsKey(source)) {
+                    continue;
+                }
+                final ExportSink sink = m_sinksByTable.get(source.getTableName().toUpperCase(Locale.ROOT));
+                if (sink == null) {
+                    m_logger.warn("No export target configured for stream " + source.getTableName() +
+                            ", its data will not be exported");
+                    continue;
+                }
+                final StreamPoller poller = new StreamPoller(source, sink);
+                m_pollers.put(source, poller);
+                source.setOnMastership(poller);
+            }
+        }
+    }
+
+    @Override
+    public void queueWork(Runnable r) {
+        m_es.execute(r);
+    }
+
+    @Override
+    public void shutdown() {
+        m_shutdown = true;
+        final ScheduledThreadPoolExecutor es = m_es;
+        if (es != null) {
+            es.shutdownNow();
+            try {
+                es.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException ignore) {}
+        }
+        synchronized (this) {
+            for (StreamPoller poller : m_pollers.values()) {
+                poller.close();
+            }
+            m_pollers.clear();
+        }
+    }
+
+    private synchronized void removePoller(StreamPoller poller) {
+        m_pollers.remove(poller.m_source);
+    }
+
+    private final class StreamPoller implements Runnable {
+        private final ExportDataSource m_source;
+        private final ExportSink m_sink;
+        private final ExportRowDecoder m_decoder;
+        private final Object[] m_row;
+        private final ExportStats.StreamCounters m_counters;
+        private final AtomicBoolean m_started = new AtomicBoolean(false);
+        private ExportSink.StreamWriter m_writer = null;
+        private long m_retryDelay = INITIAL_RETRY_DELAY_MS;
+
+        StreamPoller(ExportDataSource source, ExportSink sink) {
+            m_source = source;
+            m_sink = sink;
+            m_decoder = new ExportRowDecoder(source.m_columnNames, source.m_columnTypes);
+            m_row = new Object[m_decoder.getColumnCount()];
+            m_counters = m_stats.register(source.getTableName(), source.getPartitionId(), sink.getTarget());
+        }
+
+        /**
+         * Run by the data source once it accepts mastership
+         */
+        @Override
+        public void run() {
+            if (m_started.compareAndSet(false, true)) {
+                poll();
+            }
+        }
+
+        private void poll() {
+            if (m_shutdown) {
+                return;
+            }
+            final ListenableFuture<BBContainer> fut = m_source.poll();
+            fut.addListener(new Runnable() {
+                @Override
+                public void run() {
+                    handlePoll(fut);
+                }
+            }, m_es);
+        }
+
+        private void handlePoll(ListenableFuture<BBContainer> fut) {
+            final BBContainer cont;
+            try {
+                cont = fut.get();
+            } catch (InterruptedException | ExecutionException e) {
+                m_logger.error("Failed to poll export stream " + m_source.getTableName() +
+                        " partition " + m_source.getPartitionId(), e);
+                return;
+            }
+            if (cont == null) {
+                // End of stream, the generation has drained
+                close();
+                removePoller(this);
+                return;
+            }
+            export(cont);
+        }
+
+        private void export(final BBContainer cont) {
+            if (m_shutdown) {
+                // Leave the block unacked, it is polled again after restart
+                return;
+            }
+            try {
+                if (m_writer == null) {
+                    m_writer = m_sink.open(m_source.getTableName(), m_source.getPartitionId(),
+                            m_source.getGeneration(), m_decoder);
+                }
+                int rows = 0;
+                m_decoder.reset(cont.b());
+                while (m_decoder.next(m_row)) {
+                    m_writer.write(m_row);
+                    rows++;
+                }
+                m_writer.commit();
+                final Object timestamp = m_row[ExportRowDecoder.TIMESTAMP_COLUMN];
+                m_counters.blockWritten(rows, cont.b().remaining(),
+                        rows > 0 && timestamp != null ? (Long)timestamp : 0L);
+                m_retryDelay = INITIAL_RETRY_DELAY_MS;
+            } catch (Exception e) {
+                m_counters.writeFailed();
+                if (m_writer != null) {
+                    m_writer.abort();
+                }
+                RateLimitedLogger.tryLogForMessage(System.currentTimeMillis(), 10, TimeUnit.SECONDS, m_logger,
+                        Level.WARN, e, "Failed to export a block of stream %s partition %d to %s, retrying",
+                        m_source.getTableName(), m_source.getPartitionId(), m_sink.getTarget());
+                try {
+                    m_es.schedule(new Runnable() {
+                        @Override
+                        public void run() {
+                            export(cont);
+                        }
+                    }, m_retryDelay, TimeUnit.MILLISECONDS);
+                } catch (RejectedExecutionException shuttingDown) {}
+                m_retryDelay = Math.min(m_retryDelay * 2, MAX_RETRY_DELAY_MS);
+                return;
+            }
+            // Acks the block
+            cont.discard();
+            poll();
+        }
+
+        private void close() {
+            if (m_writer != null) {
+                m_writer.close();
+                m_writer = null;
+            }
+            m_counters.setActive(false);
+            m_stats.deregister(m_counters);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.export.processors;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Properties;
+
+import org.voltdb.VoltType;
+import org.voltdb.types.GeographyPointValue;
+import org.voltdb.types.GeographyValue;
+import org.voltdb.types.TimestampType;
+
+/**
+ * Inserts each stream into a table of the same name over JDBC. Every stream
+ * gets its own connection and prepared insert; the rows of a block go out as
+ * one batch in one transaction, so a failed block is rolled back and retried
+ * as a whole. Geography values are sent as WKT strings.
+ *
+ * Properties: jdbcurl (required), jdbcuser, jdbcpassword, jdbcdriver,
+ * schema and skipinternals.
+ */
+public class JdbcExportSink extends ExportSink {
+
+    private final String m_url;
+    private final String m_user;
+    private final String m_password;
+    private final String m_driver;
+    private final String m_schema;
+
+    public JdbcExportSink(String target, Properties config) {
+        super(target, config);
+        m_url = requiredProperty(config, "jdbcurl");
+        m_user = config.getProperty("jdbcuser", "").trim();
+        m_password = config.getProperty("jdbcpassword", "");
+        m_driver = config.getProperty("jdbcdriver", "").trim();
+        m_schema = config.getProperty("schema", "").trim();
+    }
+
+    @Override
+    public StreamWriter open(String tableName, int partitionId, long generation, ExportRowDecoder decoder)
+            throws ClassNotFoundException {
+        if (!m_driver.isEmpty()) {
+            Class.forName(m_driver);
+        }
+        return new JdbcStreamWriter(insertStatement(tableName, decoder), decoder);
+    }
+
+    String insertStatement(String tableName, ExportRowDecoder decoder) {
+        final StringBuilder sql = new StringBuilder("INSERT INTO ");
+        if (!m_schema.isEmpty()) {
+            sql.append(m_schema).append('.');
+        }
+        sql.append(tableName).append(" (");
+        for (int i = firstColumn(); i < decoder.getColumnCount(); i++) {
+            sql.append(i > firstColumn() ? ", " : "").append(decoder.getColumnName(i));
+        }
+        sql.append(") VALUES (");
+        for (int i = firstColumn(); i < decoder.getColumnCount(); i++) {
+            sql.append(i > firstColumn() ? ", ?" : "?");
+        }
+        return sql.append(')').toString();
+    }
+
+    private final class JdbcStreamWriter implements StreamWriter {
+        private final String m_sql;
+        private final ExportRowDecoder m_decoder;
+        private Connection m_conn = null;
+        private PreparedStatement m_insert = null;
+
+        JdbcStreamWriter(String sql, ExportRowDecoder decoder) {
+            m_sql = sql;
+            m_decoder = decoder;
+        }
+
+        @Override
+        public void write(Object[] row) throws SQLException {
+            if (m_conn == null) {
+                m_conn = m_user.isEmpty() ? DriverManager.getConnection(m_url)
+                                          : DriverManager.getConnection(m_url, m_user, m_password);
+                m_conn.setAutoCommit(false);
+                m_insert = m_conn.prepareStatement(m_sql);
+            }
+            int param = 1;
+            for (int i = firstColumn(); i < m_decoder.getColumnCount(); i++, param++) {
+                final Object value = row[i];
+                final VoltType type = m_decoder.getColumnType(i);
+                if (value == null) {
+                    m_insert.setNull(param, type.getJdbcSqlType());
+                } else if (value instanceof TimestampType) {
+                    m_insert.setTimestamp(param, ((TimestampType)value).asJavaTimestamp());
+                } else if (value instanceof GeographyValue || value instanceof GeographyPointValue) {
+                    m_insert.setString(param, value.toString());
+                } else {
+                    m_insert.setObject(param, value);
+                }
+            }
+            m_insert.addBatch();
+        }
+
+        @Override
+        public void commit() throws SQLException {
+            if (m_insert != null) {
+                m_insert.executeBatch();
+                m_conn.commit();
+            }
+        }
+
+        @Override
+        public void abort() {
+            // The connection may be what failed, reconnect on the next write
+            if (m_conn != null) {
+                try {
+                    m_conn.rollback();
+                } catch (SQLException ignore) {}
+            }
+            close();
+        }
+
+        @Override
+        public void close() {
+            try {
+                if (m_conn != null) {
+                    m_conn.close();
+                }
+            } catch (SQLException ignore) {
+            } finally {
+                m_conn = null;
+                m_insert = null;
+            }
+        }
+    }
+}
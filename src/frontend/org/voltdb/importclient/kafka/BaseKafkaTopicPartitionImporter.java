@@ -37,6 +37,7 @@ import org.voltdb.importclient.kafka.KafkaStreamImporterConfig.HostAndPort;
 import org.voltdb.importer.CommitTracker;
 import org.voltdb.importer.ImporterLifecycle;
 import org.voltdb.importer.ImporterLogger;
+import org.voltdb.importer.ImporterRowBatcher;
 import org.voltdb.importer.formatter.FormatException;
 import org.voltdb.importer.formatter.Formatter;
 
@@ -103,6 +104,21 @@ public abstract class BaseKafkaTopicPartitionImporter {
      */
     public abstract boolean invoke(Object[] params, TopicPartitionInvocationCallback cb);
 
+    /*
+     * Subclasses that can insert several messages in one transaction return a batcher, which then receives
+     * the messages instead of invoke(). Each message keeps its callback so offsets are committed one by one.
+     */
+    protected ImporterRowBatcher createRowBatcher() {
+        return null;
+    }
+
+    /*
+     * Subclasses that know the procedure parameter types override this to create a formatter that is told them.
+     */
+    protected Formatter createFormatter() {
+        return m_config.getFormatterBuilder().create();
+    }
+
     public BaseKafkaTopicPartitionImporter(KafkaStreamImporterConfig config, ImporterLifecycle lifecycle, ImporterLogger logger)
     {
         m_lifecycle = lifecycle;
@@ -391,9 +407,13 @@ public abstract class BaseKafkaTopicPartitionImporter {
         m_logger.info(null, "Starting partition fetcher for " + m_topicAndPartition);
         long submitCount = 0;
         PendingWorkTracker callbackTracker = new PendingWorkTracker();
-        Formatter formatter = m_config.getFormatterBuilder().create();
+        Formatter formatter = createFormatter();
+        ImporterRowBatcher batcher = null;
 
         try {
+            if (m_lifecycle.hasTransaction()) {
+                batcher = createRowBatcher();
+            }
             //Start with the starting leader.
             resetLeader();
 
@@ -483,7 +503,8 @@ public abstract class BaseKafkaTopicPartitionImporter {
                                 messageAndOffset.nextOffset(), callbackTracker, m_gapTracker, m_dead, m_pauseOffset);
 
                         if (m_lifecycle.hasTransaction()) {
-                            if (invoke(params, cb)) {
+                            final boolean queued = (batcher == null ? invoke(params, cb) : batcher.add(cb, params));
+                            if (queued) {
                                 callbackTracker.produceWork();
                             }
                             else {
@@ -504,6 +525,10 @@ public abstract class BaseKafkaTopicPartitionImporter {
                         break;
                     }
                 }
+                // Send what is left of this fetch before the commit point is computed or we wait for more
+                if (batcher != null) {
+                    batcher.flush();
+                }
                 if (!m_lifecycle.shouldRun()) {
                     break;
                 }
@@ -523,6 +548,9 @@ public abstract class BaseKafkaTopicPartitionImporter {
         } catch (Exception ex) {
             m_logger.error(ex, "Failed to start topic partition fetcher for " + m_topicAndPartition);
         } finally {
+            if (batcher != null) {
+                batcher.close();
+            }
             final boolean usePausedOffset = m_pauseOffset.get() != -1;
             boolean skipCommit = false;
             if (usePausedOffset) {
@@ -67,6 +67,8 @@ public class KafkaStreamImporterConfig implements ImporterConfig
     private final FormatterBuilder m_formatterBuilder;
     private final KafkaImporterCommitPolicy m_commitPolicy;
     private final long m_triggerValue;
+    // Rows inserted per transaction, 0 to invoke the procedure for each message
+    private int m_batchSize = 0;
 
     public KafkaStreamImporterConfig(URI uri, List<HostAndPort> brokers, String topic, int partition, HostAndPort partitionLeader,
             String groupId, int fetchSize, int soTimeout, String procedure, String commitPolicy,
@@ -155,6 +157,14 @@ public class KafkaStreamImporterConfig implements ImporterConfig
         return m_triggerValue;
     }
 
+    public int getBatchSize() {
+        return m_batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        m_batchSize = batchSize;
+    }
+
     public static Map<URI, ImporterConfig> createConfigEntries(Properties props,  FormatterBuilder formatterBuilder)
     {
         String brokers = props.getProperty("brokers", "").trim();
@@ -196,6 +206,10 @@ public class KafkaStreamImporterConfig implements ImporterConfig
             throw new IllegalArgumentException("Missing topic(s).");
         }
         String commitPolicy = props.getProperty("commit.policy", "none");
+        int batchSize = Integer.parseInt(props.getProperty("insert.batch.size", "0"));
+        if (batchSize < 0) {
+            throw new IllegalArgumentException("insert.batch.size can not be negative");
+        }
         Map<URI, ImporterConfig> configs = new HashMap<>();
         for (String topic : ttopicList) {
             if (topic.length() > topicMaxNameLength) {
@@ -206,7 +220,12 @@ public class KafkaStreamImporterConfig implements ImporterConfig
                 throw new IllegalArgumentException("topic name " + topic + " is illegal, contains a character other than ASCII alphanumerics, '_' and '-'");
             }
             try {
-                configs.putAll(getConfigsForPartitions(key, hapList, topic, groupId, procedure, soTimeout, fetchSize, commitPolicy, formatterBuilder));
+                Map<URI, KafkaStreamImporterConfig> partitionConfigs =
+                        getConfigsForPartitions(key, hapList, topic, groupId, procedure, soTimeout, fetchSize, commitPolicy, formatterBuilder);
+                for (KafkaStreamImporterConfig config : partitionConfigs.values()) {
+                    config.setBatchSize(batchSize);
+                }
+                configs.putAll(partitionConfigs);
             } catch(Exception e) {
                 m_logger.warn(String.format("Error trying to get partition information for topic [%s] on host [%s]", topic, hapList.get(0).getHost()), e);
             }
@@ -21,7 +21,9 @@ import java.net.URI;
 import org.voltdb.importer.AbstractImporter;
 import org.voltdb.importer.ImporterLifecycle;
 import org.voltdb.importer.ImporterLogger;
+import org.voltdb.importer.ImporterRowBatcher;
 import org.voltdb.importer.Invocation;
+import org.voltdb.importer.formatter.Formatter;
 
 /**
  * Implementation that imports from a single partition of a Kafka topic.
@@ -83,6 +85,26 @@ public class KafkaTopicPartitionImporter extends AbstractImporter
             return callProcedure(new Invocation(m_config.getProcedure(), params), cb);
         }
 
+        @Override
+        protected ImporterRowBatcher createRowBatcher() {
+            if (m_config.getBatchSize() <= 0) {
+                return null;
+            }
+            ImporterRowBatcher batcher = KafkaTopicPartitionImporter.this.createRowBatcher(m_config.getProcedure(),
+                    m_config.getBatchSize());
+            if (batcher == null) {
+                m_logger.warn(null, "Procedure %s can not be batched, only default insert and upsert procedures can, "
+                        + "messages will be imported one at a time.", m_config.getProcedure());
+            }
+            return batcher;
+        }
+
+        @Override
+        protected Formatter createFormatter() {
+            return KafkaTopicPartitionImporter.this.createFormatter(m_config.getFormatterBuilder(),
+                    m_config.getProcedure());
+        }
+
     }
 
 }
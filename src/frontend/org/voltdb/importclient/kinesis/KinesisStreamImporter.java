@@ -47,6 +47,7 @@ import org.voltcore.logging.Level;
 import org.voltdb.client.ClientResponse;
 import org.voltdb.client.ProcedureCallback;
 import org.voltdb.importer.AbstractImporter;
+import org.voltdb.importer.ImporterRowBatcher;
 import org.voltdb.importer.Invocation;
 import org.voltdb.importer.formatter.FormatException;
 import org.voltdb.importer.formatter.Formatter;
@@ -137,6 +138,7 @@ public class KinesisStreamImporter extends AbstractImporter {
 
         private String m_shardId = new String("unknown");
         private Formatter m_formatter;
+        private ImporterRowBatcher m_batcher;
         Gap m_gapTracker = new Gap(Integer.getInteger("KINESIS_IMPORT_GAP_LEAD", 32768));
         private BigInteger m_lastFetchCommittedSequenceNumber = BigInteger.ZERO;
 
@@ -148,7 +150,14 @@ public class KinesisStreamImporter extends AbstractImporter {
         public void initialize(InitializationInput initInput) {
 
             m_shardId = initInput.getShardId();
-            m_formatter = m_config.getFormatterBuilder().create();
+            m_formatter = createFormatter(m_config.getFormatterBuilder(), m_config.getProcedure());
+            if (m_config.getBatchSize() > 0) {
+                m_batcher = createRowBatcher(m_config.getProcedure(), m_config.getBatchSize());
+                if (m_batcher == null) {
+                    warn(null, "Procedure %s can not be batched, only default insert and upsert procedures can, "
+                            + "records will be imported one at a time.", m_config.getProcedure());
+                }
+            }
 
             String seq = initInput.getExtendedSequenceNumber().getSequenceNumber();
             if (NumberUtils.isDigits(seq)) {
@@ -188,10 +197,14 @@ public class KinesisStreamImporter extends AbstractImporter {
                 Object params[] = null;
                 try {
                     params = m_formatter.transform(record.getData());
-                    Invocation invocation = new Invocation(m_config.getProcedure(), params);
-
                     StreamProcedureCallback cb = new StreamProcedureCallback(m_gapTracker, offset, seqNum, m_cbcnt);
-                    if (!callProcedure(invocation, cb)) {
+                    final boolean queued;
+                    if (m_batcher != null) {
+                        queued = m_batcher.add(cb, params);
+                    } else {
+                        queued = callProcedure(new Invocation(m_config.getProcedure(), params), cb);
+                    }
+                    if (!queued) {
                         rateLimitedLog(Level.ERROR, null, "Call procedure error on shard %s", m_shardId);
                         m_gapTracker.commit(offset, seqNum);
                     }
@@ -204,12 +217,19 @@ public class KinesisStreamImporter extends AbstractImporter {
                 }
                 offset++;
             }
+            if (m_batcher != null) {
+                m_batcher.flush();
+            }
 
             commitCheckPoint(records.getCheckpointer());
         }
 
         @Override
         public void shutdown(ShutdownInput shutDownInput) {
+            if (m_batcher != null) {
+                m_batcher.close();
+                m_batcher = null;
+            }
 
             if (isDebugEnabled()) {
                 debug(null, "shard ID: " + m_shardId + ", shutdown reason: " + shutDownInput.getShutdownReason().name());
@@ -80,7 +80,7 @@ public class PullSocketImporter extends AbstractImporter {
 
         m_thread = Optional.of(Thread.currentThread());
         Optional<BufferedReader> reader = null;
-        Formatter formatter = m_config.getFormatterBuilder().create();
+        Formatter formatter = createFormatter(m_config.getFormatterBuilder(), m_config.getProcedure());
         while (!m_eos.get()) {
             try {
                 reader = attemptBufferedReader();
@@ -29,6 +29,7 @@ import java.util.List;
 
 import org.voltcore.logging.Level;
 import org.voltdb.importer.AbstractImporter;
+import org.voltdb.importer.ImporterRowBatcher;
 import org.voltdb.importer.Invocation;
 import org.voltdb.importer.formatter.FormatException;
 import org.voltdb.importer.formatter.Formatter;
@@ -113,12 +114,24 @@ public class ServerSocketImporter extends AbstractImporter {
         @Override
         public void run()
         {
+            ImporterRowBatcher batcher = null;
+            if (m_config.getBatchSize() > 0) {
+                batcher = createRowBatcher(m_procedure, m_config.getBatchSize());
+                if (batcher == null) {
+                    warn(null, "Procedure " + m_procedure + " can not be batched, only default insert and upsert"
+                            + " procedures can, lines will be imported one at a time.");
+                }
+            }
             try {
                 BufferedReader in = new BufferedReader(
                         new InputStreamReader(m_clientSocket.getInputStream()));
-                Formatter formatter = m_config.getFormatterBuilder().create();
+                Formatter formatter = createFormatter(m_config.getFormatterBuilder(), m_procedure);
                 Object params[] = null;
                 while (shouldRun()) {
+                    // Don't hold batched lines while blocked waiting for the client
+                    if (batcher != null && !in.ready()) {
+                        batcher.flush();
+                    }
                     String line = in.readLine();
                     if (line == null) {
                         break; // end of stream
@@ -127,8 +140,13 @@ public class ServerSocketImporter extends AbstractImporter {
                         params = formatter.transform(ByteBuffer.wrap(line.getBytes()));
                         //You should convert your data to params here.
                         if (params == null) continue;
-                        Invocation invocation = new Invocation(m_procedure, params);
-                        if (!callProcedure(invocation)) {
+                        final boolean queued;
+                        if (batcher != null) {
+                            queued = batcher.add(null, params);
+                        } else {
+                            queued = callProcedure(new Invocation(m_procedure, params));
+                        }
+                        if (!queued) {
                             rateLimitedLog(Level.ERROR, null, "Socket importer insertion failed");
                         }
                    } catch (FormatException e){
@@ -137,6 +155,10 @@ public class ServerSocketImporter extends AbstractImporter {
                 }
             } catch (IOException ioe) {
                 error(ioe, "IO exception reading from client socket connection in socket importer");
+            } finally {
+                if (batcher != null) {
+                    batcher.close();
+                }
             }
 
             try {
@@ -37,6 +37,7 @@ public class ServerSocketImporterConfig implements ImporterConfig
     private final FormatterBuilder m_formatterBuilder;
     private final String m_procedure;
     private final int m_port;
+    private final int m_batchSize;
     private final ServerSocket m_serverSocket;
 
     public ServerSocketImporterConfig(Properties props, FormatterBuilder formatterBuilder)
@@ -48,6 +49,16 @@ public class ServerSocketImporterConfig implements ImporterConfig
             throw new IllegalArgumentException("Missing procedure.");
         }
 
+        String batchSizeStr = propsCopy.getProperty("insert.batch.size", "0").trim();
+        try {
+            m_batchSize = Integer.parseInt(batchSizeStr);
+            if (m_batchSize < 0) {
+                throw new NumberFormatException();
+            }
+        } catch(NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid insert.batch.size specification: " + batchSizeStr);
+        }
+
         String portStr = (String) propsCopy.get("port");
         try {
             m_port = Integer.parseInt(portStr);
@@ -89,6 +100,14 @@ public class ServerSocketImporterConfig implements ImporterConfig
         return m_port;
     }
 
+    /**
+     * @return the number of lines inserted per transaction, 0 to call the procedure for each line
+     */
+    public int getBatchSize()
+    {
+        return m_batchSize;
+    }
+
     public ServerSocket getServerSocket()
     {
         return m_serverSocket;
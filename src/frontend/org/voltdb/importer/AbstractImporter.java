@@ -24,6 +24,9 @@ import org.voltcore.logging.Level;
 import org.voltcore.logging.VoltLogger;
 import org.voltdb.InternalConnectionContext;
 import org.voltdb.client.ProcedureCallback;
+import org.voltdb.importer.formatter.Formatter;
+import org.voltdb.importer.formatter.FormatterBuilder;
+import org.voltdb.importer.formatter.TypedFormatter;
 
 
 /**
@@ -120,6 +123,38 @@ public abstract class AbstractImporter
         }
     }
 
+    /**
+     * This may be used by importer implementations to insert rows several at a time instead of
+     * calling the procedure for each row. The batcher must only be used by the calling thread.
+     *
+     * @param procName the procedure the rows would be passed to, which must be the default insert
+     * or upsert procedure of a table
+     * @param batchSize the maximum number of rows inserted in one transaction
+     * @return the batcher, or null if the rows for this procedure can not be batched, in which case
+     * rows should be passed to <code>callProcedure</code>
+     */
+    protected final ImporterRowBatcher createRowBatcher(String procName, int batchSize)
+    {
+        return m_importServerAdapter.createRowBatcher(this, procName, batchSize);
+    }
+
+    /**
+     * Creates a formatter with the given builder. Formatters that can produce typed values
+     * are told the parameter types of the procedure the formatted rows will be passed to.
+     *
+     * @param builder the builder for the configured formatter
+     * @param procName the procedure the formatted rows will be passed to
+     * @return the new formatter
+     */
+    protected final Formatter createFormatter(FormatterBuilder builder, String procName)
+    {
+        Formatter formatter = builder.create();
+        if (formatter instanceof TypedFormatter) {
+            ((TypedFormatter) formatter).setParameterTypes(m_importServerAdapter.getParameterTypes(procName));
+        }
+        return formatter;
+    }
+
     /**
      * Called to stop the importer from processing more data.
      */
@@ -0,0 +1,51 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.importer;
+
+import org.voltdb.client.ProcedureCallback;
+
+/**
+ * Groups rows bound for a table's default insert or upsert procedure by partition and
+ * inserts each group in a single transaction. A batcher is used by one importer thread.
+ * <p> Every row keeps its own callback, which receives the response of the transaction
+ * that inserted the row, so importers can track offsets row by row as they do for
+ * single row invocations.
+ */
+public interface ImporterRowBatcher {
+
+    /**
+     * Adds a row to the batch of its partition, submitting the batch once it is full.
+     *
+     * @param callback the callback that will receive the status of the row's insert
+     * @param row the parameters of the insert procedure
+     * @return true if the row was queued and the callback will be called; false if the row
+     * was rejected and the callback will not be called.
+     */
+    public boolean add(ProcedureCallback callback, Object... row);
+
+    /**
+     * Submits all partially filled batches. Importers call this when they have handed
+     * over all the rows they have at hand, before waiting for more data.
+     */
+    public void flush();
+
+    /**
+     * Flushes the remaining rows and releases the resources of this batcher.
+     */
+    public void close();
+}
@@ -17,6 +17,7 @@
 
 package org.voltdb.importer;
 
+import org.voltdb.VoltType;
 import org.voltdb.client.ProcedureCallback;
 
 import java.util.function.Function;
@@ -49,6 +50,26 @@ public interface ImporterServerAdapter {
      */
     public boolean callProcedure(AbstractImporter importer, Function<Integer, Boolean> backPressurePredicate, ProcedureCallback callback, String proc, Object... fieldList);
 
+    /**
+     * Creates a batcher that inserts the rows an importer would pass to the given procedure
+     * several at a time, in one transaction per partition.
+     *
+     * @param importer the calling importer instance, which will execute the batches
+     * @param proc the name of the procedure the rows are meant for. Only the default insert
+     * and upsert procedures of a table can be batched.
+     * @param batchSize the maximum number of rows inserted in one transaction
+     * @return the batcher, or null if the rows for this procedure can not be batched
+     */
+    public ImporterRowBatcher createRowBatcher(AbstractImporter importer, String proc, int batchSize);
+
+    /**
+     * Returns the types of the parameters of the given procedure, in parameter order.
+     *
+     * @param proc the name of the procedure
+     * @return the parameter types, with null for array parameters, or null if the procedure is not known
+     */
+    public VoltType[] getParameterTypes(String proc);
+
     /**
      * This should be used by importers to report failure while trying to execute a procedure.
      *
@@ -44,6 +44,7 @@ public class ImporterStatsCollector extends SiteStatsSource
     public static final String FAILURE_COUNT_COL = "FAILURES";
     public static final String PENDING_COUNT_COL = "OUTSTANDING_REQUESTS";
     public static final String RETRY_COUNT_COL = "RETRIES";
+    public static final String AVG_CPU_PER_ROW_COL = "AVG_CPU_PER_ROW";
 
     // Holds stats info for each known importer-procname combination.
     // Using AtomicReferences with ImmutableMap to avoid locking and faster access
@@ -103,6 +104,13 @@ public class ImporterStatsCollector extends SiteStatsSource
         statsInfo.m_retryCount.incrementAndGet();
     }
 
+    // CPU nanoseconds the importer thread spent handing one row to the server, for a sample of the rows
+    public void reportSubmitCpuTime(String importerName, String procName, long cpuNanos) {
+        StatsInfo statsInfo = getStatsInfo(importerName, procName);
+        statsInfo.m_cpuSampleCount.incrementAndGet();
+        statsInfo.m_cpuSampleNanos.addAndGet(cpuNanos);
+    }
+
     private StatsInfo getStatsInfo(String importerName, String procName) {
         ImmutableMap<String, AtomicReference<ImmutableMap<String, StatsInfo>>> existingMap;
         ImmutableMap<String, AtomicReference<ImmutableMap<String, StatsInfo>>> newMap;
@@ -153,6 +161,7 @@ public class ImporterStatsCollector extends SiteStatsSource
         rowValues[columnNameToIndex.get(FAILURE_COUNT_COL)] = getFailureCountUpdateLast(stats);
         rowValues[columnNameToIndex.get(PENDING_COUNT_COL)] = getPendingCountUpdateLast(stats);
         rowValues[columnNameToIndex.get(RETRY_COUNT_COL)] = getRetryCountUpdateLast(stats);
+        rowValues[columnNameToIndex.get(AVG_CPU_PER_ROW_COL)] = getAvgCpuPerRowUpdateLast(stats);
 
         super.updateStatsRow(rowKey, rowValues);
     }
@@ -190,6 +199,21 @@ public class ImporterStatsCollector extends SiteStatsSource
         return value;
     }
 
+    private long getAvgCpuPerRowUpdateLast(StatsInfo stats) {
+        long samples = stats.m_cpuSampleCount.get();
+        long nanos = stats.m_cpuSampleNanos.get();
+        if (m_isInterval) {
+            final long currentSamples = samples;
+            final long currentNanos = nanos;
+            samples -= stats.m_lastCpuSampleCount;
+            nanos -= stats.m_lastCpuSampleNanos;
+            stats.m_lastCpuSampleCount = currentSamples;
+            stats.m_lastCpuSampleNanos = currentNanos;
+        }
+
+        return samples == 0 ? 0 : nanos / samples;
+    }
+
     private long getPendingCountUpdateLast(StatsInfo stats) {
         long current = stats.m_pendingCount.get();
         current = (current<0) ? 0 : current; // pending could be -ve if we get callback responses
@@ -219,6 +243,7 @@ public class ImporterStatsCollector extends SiteStatsSource
         columns.add(new ColumnInfo(FAILURE_COUNT_COL, VoltType.BIGINT));
         columns.add(new ColumnInfo(PENDING_COUNT_COL, VoltType.BIGINT));
         columns.add(new ColumnInfo(RETRY_COUNT_COL, VoltType.BIGINT));
+        columns.add(new ColumnInfo(AVG_CPU_PER_ROW_COL, VoltType.BIGINT));
     }
 
     private class StatsInfo
@@ -229,10 +254,14 @@ public class ImporterStatsCollector extends SiteStatsSource
         AtomicLong m_failureCount = new AtomicLong(0);
         AtomicLong m_pendingCount = new AtomicLong(0);
         AtomicLong m_retryCount = new AtomicLong(0);
+        AtomicLong m_cpuSampleCount = new AtomicLong(0);
+        AtomicLong m_cpuSampleNanos = new AtomicLong(0);
         long m_lastSuccessCount = 0;
         long m_lastFailureCount = 0;
         long m_lastPendingCount = 0;
         long m_lastRetryCount = 0;
+        long m_lastCpuSampleCount = 0;
+        long m_lastCpuSampleNanos = 0;
 
         public StatsInfo(String importerName, String procName) {
             m_importerName = importerName;
@@ -0,0 +1,37 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.importer.formatter;
+
+import org.voltdb.VoltType;
+
+/**
+ * A formatter that can produce values of the types the target procedure expects instead of
+ * strings, parsing them straight from the source bytes. Importers pass it the parameter types
+ * of their procedure right after creating it. Until then, or for values it can't convert
+ * itself, it returns strings like any formatter and the server converts them.
+ */
+public interface TypedFormatter extends Formatter {
+
+    /**
+     * Sets the types of the parameters the transformed values are passed to.
+     *
+     * @param types the parameter types of the target procedure in parameter order, an
+     * element is null for a parameter that should be left as a string
+     */
+    public void setParameterTypes(VoltType[] types);
+}
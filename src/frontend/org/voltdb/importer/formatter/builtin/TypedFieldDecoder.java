@@ -0,0 +1,181 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.importer.formatter.builtin;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+
+import org.voltdb.VoltType;
+import org.voltdb.types.TimestampType;
+
+/**
+ * Converts a field of a UTF-8 record to the value a procedure parameter expects, without
+ * creating a string first. Fields that are not in the plain form this understands (e.g. numbers
+ * with blanks or thousand separators, formatted dates) are returned as strings, so that the
+ * server converts them exactly as it converts the output of the string based formatters.
+ */
+final class TypedFieldDecoder {
+
+    private TypedFieldDecoder() {
+    }
+
+    static Object decode(byte[] buf, int start, int end, VoltType type) {
+        if (type == null) {
+            return string(buf, start, end);
+        }
+        switch (type) {
+        case TINYINT:
+        case SMALLINT:
+        case INTEGER:
+        case BIGINT:
+            return decodeInteger(buf, start, end, type);
+        case FLOAT:
+        case DECIMAL:
+            if (isNumeric(buf, start, end)) {
+                final String number = ascii(buf, start, end);
+                try {
+                    return type == VoltType.FLOAT ? Double.valueOf(number) : new BigDecimal(number);
+                } catch (NumberFormatException e) {
+                    return number;
+                }
+            }
+            break;
+        case TIMESTAMP:
+            // Plain numbers are microseconds since the epoch
+            if (isInteger(buf, start, end)) {
+                final long value = parseLong(buf, start, end);
+                if (value != Long.MIN_VALUE) {
+                    return new TimestampType(value);
+                }
+            }
+            break;
+        case VARBINARY:
+            final byte[] bytes = hexDecode(buf, start, end);
+            if (bytes != null) {
+                return bytes;
+            }
+            break;
+        default:
+            break;
+        }
+        return string(buf, start, end);
+    }
+
+    static String string(byte[] buf, int start, int end) {
+        return new String(buf, start, end - start, StandardCharsets.UTF_8);
+    }
+
+    // Checked as ASCII beforehand, the cheapest way to build a String
+    @SuppressWarnings("deprecation")
+    private static String ascii(byte[] buf, int start, int end) {
+        return new String(buf, 0, start, end - start);
+    }
+
+    private static Object decodeInteger(byte[] buf, int start, int end, VoltType type) {
+        if (!isInteger(buf, start, end)) {
+            return string(buf, start, end);
+        }
+        final long value = parseLong(buf, start, end);
+        // The lowest value of each type stands for NULL, leave those and overflows to the server
+        switch (type) {
+        case TINYINT:
+            if (value > Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+                return Byte.valueOf((byte) value);
+            }
+            break;
+        case SMALLINT:
+            if (value > Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+                return Short.valueOf((short) value);
+            }
+            break;
+        case INTEGER:
+            if (value > Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+                return Integer.valueOf((int) value);
+            }
+            break;
+        default:
+            if (value != Long.MIN_VALUE) {
+                return Long.valueOf(value);
+            }
+            break;
+        }
+        return string(buf, start, end);
+    }
+
+    // An optional sign followed by up to 18 digits, which can't overflow a long
+    private static boolean isInteger(byte[] buf, int start, int end) {
+        int i = start;
+        if (i < end && (buf[i] == '-' || buf[i] == '+')) {
+            i++;
+        }
+        if (i == end || end - i > 18) {
+            return false;
+        }
+        for (; i < end; i++) {
+            if (buf[i] < '0' || buf[i] > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long parseLong(byte[] buf, int start, int end) {
+        int i = start;
+        boolean negative = false;
+        if (buf[i] == '-' || buf[i] == '+') {
+            negative = buf[i] == '-';
+            i++;
+        }
+        long value = 0;
+        for (; i < end; i++) {
+            value = value * 10 + (buf[i] - '0');
+        }
+        return negative ? -value : value;
+    }
+
+    // Digits with an optional sign, decimal point and exponent
+    private static boolean isNumeric(byte[] buf, int start, int end) {
+        boolean digits = false;
+        for (int i = start; i < end; i++) {
+            final byte b = buf[i];
+            if (b >= '0' && b <= '9') {
+                digits = true;
+            }
+            else if (b != '-' && b != '+' && b != '.' && b != 'e' && b != 'E') {
+                return false;
+            }
+        }
+        return digits;
+    }
+
+    private static byte[] hexDecode(byte[] buf, int start, int end) {
+        if (((end - start) & 1) != 0) {
+            return null;
+        }
+        final byte[] bytes = new byte[(end - start) / 2];
+        for (int i = start, j = 0; i < end; i += 2, j++) {
+            final int high = Character.digit(buf[i], 16);
+            final int low = Character.digit(buf[i + 1], 16);
+            if (high < 0 || low < 0) {
+                return null;
+            }
+            bytes[j] = (byte) ((high << 4) | low);
+        }
+        return bytes;
+    }
+}
@@ -25,10 +25,17 @@ import org.voltdb.importer.formatter.Formatter;
 public class VoltCSVFormatterFactory extends AbstractFormatterFactory {
 
     public static final String[]  SUPER_CVS_PROPS = {"trimunquoted","nowhitespace","blank","nullstring"};
+    public static final String TYPED_PROP = "typed";
 
 
     @Override
     public Formatter create(String formatName, Properties props) {
+        if ("json".equalsIgnoreCase(formatName)) {
+            return new VoltJSONFormatter(formatName, props);
+        }
+        if (Boolean.parseBoolean(props.getProperty(TYPED_PROP, "false").trim())) {
+            return new VoltTypedCSVFormatter(formatName, props);
+        }
         if(useSuperCsv(props)){
             return new VoltSuperCSVFormatter(formatName, props);
         }
@@ -0,0 +1,363 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.importer.formatter.builtin;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import org.voltdb.VoltType;
+import org.voltdb.importer.formatter.FormatException;
+import org.voltdb.importer.formatter.TypedFormatter;
+
+/**
+ * Formatter for records that are a flat JSON array of the parameter values, or a JSON object.
+ * Object members are mapped to parameters by the comma separated member names of the
+ * <code>fields</code> property, members not listed are ignored and missing ones are null.
+ * Without that property the member values are taken in document order.
+ * <p> Scalars are converted straight from the record bytes to the parameter types, nested
+ * arrays and objects are passed on as their JSON text.
+ */
+public class VoltJSONFormatter implements TypedFormatter {
+    private static final byte[] ONE = { '1' };
+    private static final byte[] ZERO = { '0' };
+
+    private final Map<String, Integer> m_fieldIndexes;
+    private final int m_fieldCount;
+    private VoltType[] m_types = new VoltType[0];
+
+    // State of the record being parsed
+    private byte[] m_buf;
+    private int m_pos;
+    private int m_end;
+    private int m_recordStart;
+    private Object[] m_values = new Object[16];
+    private final StringBuilder m_unescaped = new StringBuilder();
+
+    public VoltJSONFormatter(String formatName, Properties prop) {
+        if (!"json".equalsIgnoreCase(formatName)) {
+            throw new IllegalArgumentException("Invalid format " + formatName + ", expected \"json\".");
+        }
+        String fields = prop.getProperty("fields", "").trim();
+        if (fields.isEmpty()) {
+            m_fieldIndexes = null;
+            m_fieldCount = 0;
+        }
+        else {
+            String[] names = fields.split("\\s*,\\s*");
+            m_fieldIndexes = new HashMap<>();
+            for (int i = 0; i < names.length; i++) {
+                if (m_fieldIndexes.put(names[i], i) != null) {
+                    throw new IllegalArgumentException("Field " + names[i] + " is listed more than once in fields.");
+                }
+            }
+            m_fieldCount = names.length;
+        }
+    }
+
+    @Override
+    public void setParameterTypes(VoltType[] types) {
+        m_types = types == null ? new VoltType[0] : types.clone();
+    }
+
+    @Override
+    public Object[] transform(ByteBuffer payload) throws FormatException {
+        if (payload == null) {
+            return null;
+        }
+        if (payload.hasArray()) {
+            m_buf = payload.array();
+            m_pos = payload.arrayOffset() + payload.position();
+            m_end = payload.arrayOffset() + payload.limit();
+        }
+        else {
+            m_buf = new byte[payload.remaining()];
+            payload.duplicate().get(m_buf);
+            m_pos = 0;
+            m_end = m_buf.length;
+        }
+        m_recordStart = m_pos;
+        try {
+            final Object[] result;
+            final byte first = next();
+            if (first == '[') {
+                result = parseArray();
+            }
+            else if (first == '{') {
+                result = parseObject();
+            }
+            else {
+                throw error("expected an array or an object");
+            }
+            skipWhitespace();
+            if (m_pos != m_end) {
+                throw error("unexpected content after the record");
+            }
+            return result;
+        } finally {
+            m_buf = null;
+        }
+    }
+
+    private Object[] parseArray() throws FormatException {
+        int count = 0;
+        skipWhitespace();
+        if (peek() == ']') {
+            m_pos++;
+            return new Object[0];
+        }
+        while (true) {
+            final Object value = parseValue(count < m_types.length ? m_types[count] : null);
+            if (count == m_values.length) {
+                m_values = Arrays.copyOf(m_values, count * 2);
+            }
+            m_values[count++] = value;
+            final byte b = next();
+            if (b == ']') {
+                return Arrays.copyOf(m_values, count);
+            }
+            if (b != ',') {
+                throw error("expected , or ]");
+            }
+        }
+    }
+
+    private Object[] parseObject() throws FormatException {
+        final Object[] result = m_fieldIndexes == null ? null : new Object[m_fieldCount];
+        int count = 0;
+        skipWhitespace();
+        if (peek() == '}') {
+            m_pos++;
+            return result == null ? new Object[0] : result;
+        }
+        while (true) {
+            if (next() != '"') {
+                throw error("expected a member name");
+            }
+            final String name = parseString();
+            if (next() != ':') {
+                throw error("expected :");
+            }
+            if (result == null) {
+                final Object value = parseValue(count < m_types.length ? m_types[count] : null);
+                if (count == m_values.length) {
+                    m_values = Arrays.copyOf(m_values, count * 2);
+                }
+                m_values[count++] = value;
+            }
+            else {
+                final Integer index = m_fieldIndexes.get(name);
+                if (index == null) {
+                    skipValue();
+                }
+                else {
+                    result[index] = parseValue(index < m_types.length ? m_types[index] : null);
+                }
+            }
+            final byte b = next();
+            if (b == '}') {
+                return result == null ? Arrays.copyOf(m_values, count) : result;
+            }
+            if (b != ',') {
+                throw error("expected , or }");
+            }
+        }
+    }
+
+    private Object parseValue(VoltType type) throws FormatException {
+        skipWhitespace();
+        final int start = m_pos;
+        final byte b = peek();
+        switch (b) {
+        case '"': {
+            m_pos++;
+            final int contentStart = m_pos;
+            while (m_pos < m_end && m_buf[m_pos] != '"' && m_buf[m_pos] != '\\') {
+                m_pos++;
+            }
+            if (m_pos < m_end && m_buf[m_pos] == '"') {
+                // Nothing to unescape, convert the bytes in place
+                m_pos++;
+                return TypedFieldDecoder.decode(m_buf, contentStart, m_pos - 1, type);
+            }
+            m_pos = start + 1;
+            return parseString();
+        }
+        case '{':
+        case '[':
+            skipValue();
+            return TypedFieldDecoder.string(m_buf, start, m_pos);
+        case 't':
+            expectLiteral("true");
+            return booleanValue(type, true);
+        case 'f':
+            expectLiteral("false");
+            return booleanValue(type, false);
+        case 'n':
+            expectLiteral("null");
+            return null;
+        default:
+            while (m_pos < m_end && isNumberByte(m_buf[m_pos])) {
+                m_pos++;
+            }
+            if (m_pos == start) {
+                throw error("expected a value");
+            }
+            return TypedFieldDecoder.decode(m_buf, start, m_pos, type);
+        }
+    }
+
+    private static Object booleanValue(VoltType type, boolean value) {
+        if (type != null && type.isAnyIntegerType()) {
+            final byte[] digit = value ? ONE : ZERO;
+            return TypedFieldDecoder.decode(digit, 0, 1, type);
+        }
+        return Boolean.toString(value);
+    }
+
+    // Parses the rest of a string whose opening quote has been consumed
+    private String parseString() throws FormatException {
+        m_unescaped.setLength(0);
+        int runStart = m_pos;
+        while (true) {
+            if (m_pos >= m_end) {
+                throw error("unterminated string");
+            }
+            final byte b = m_buf[m_pos];
+            if (b == '"') {
+                final String run = TypedFieldDecoder.string(m_buf, runStart, m_pos++);
+                if (m_unescaped.length() == 0) {
+                    return run;
+                }
+                return m_unescaped.append(run).toString();
+            }
+            if (b != '\\') {
+                m_pos++;
+                continue;
+            }
+            m_unescaped.append(TypedFieldDecoder.string(m_buf, runStart, m_pos));
+            if (m_pos + 1 >= m_end) {
+                throw error("unterminated string");
+            }
+            final byte escaped = m_buf[m_pos + 1];
+            m_pos += 2;
+            switch (escaped) {
+            case '"':  m_unescaped.append('"'); break;
+            case '\\': m_unescaped.append('\\'); break;
+            case '/':  m_unescaped.append('/'); break;
+            case 'b':  m_unescaped.append('\b'); break;
+            case 'f':  m_unescaped.append('\f'); break;
+            case 'n':  m_unescaped.append('\n'); break;
+            case 'r':  m_unescaped.append('\r'); break;
+            case 't':  m_unescaped.append('\t'); break;
+            case 'u':
+                if (m_pos + 4 > m_end) {
+                    throw error("truncated unicode escape");
+                }
+                int c = 0;
+                for (int i = 0; i < 4; i++) {
+                    final int digit = Character.digit(m_buf[m_pos++], 16);
+                    if (digit < 0) {
+                        throw error("invalid unicode escape");
+                    }
+                    c = (c << 4) | digit;
+                }
+                m_unescaped.append((char) c);
+                break;
+            default:
+                throw error("invalid escape");
+            }
+            runStart = m_pos;
+        }
+    }
+
+    // Moves past a value of any kind without converting it
+    private void skipValue() throws FormatException {
+        skipWhitespace();
+        final byte b = peek();
+        if (b == '"') {
+            m_pos++;
+            parseString();
+        }
+        else if (b == '{' || b == '[') {
+            int depth = 0;
+            do {
+                final byte c = peek();
+                if (c == '"') {
+                    m_pos++;
+                    parseString();
+                    continue;
+                }
+                if (c == '{' || c == '[') {
+                    depth++;
+                }
+                else if (c == '}' || c == ']') {
+                    depth--;
+                }
+                m_pos++;
+            } while (depth > 0);
+        }
+        else {
+            parseValue(null);
+        }
+    }
+
+    private void expectLiteral(String literal) throws FormatException {
+        if (m_pos + literal.length() > m_end) {
+            throw error("expected " + literal);
+        }
+        for (int i = 0; i < literal.length(); i++) {
+            if (m_buf[m_pos + i] != literal.charAt(i)) {
+                throw error("expected " + literal);
+            }
+        }
+        m_pos += literal.length();
+    }
+
+    private static boolean isNumberByte(byte b) {
+        return (b >= '0' && b <= '9') || b == '-' || b == '+' || b == '.' || b == 'e' || b == 'E';
+    }
+
+    private void skipWhitespace() {
+        while (m_pos < m_end && (m_buf[m_pos] == ' ' || m_buf[m_pos] == '\t' ||
+                m_buf[m_pos] == '\n' || m_buf[m_pos] == '\r')) {
+            m_pos++;
+        }
+    }
+
+    private byte peek() throws FormatException {
+        if (m_pos >= m_end) {
+            throw error("unexpected end of record");
+        }
+        return m_buf[m_pos];
+    }
+
+    private byte next() throws FormatException {
+        skipWhitespace();
+        final byte b = peek();
+        m_pos++;
+        return b;
+    }
+
+    private FormatException error(String reason) {
+        return new FormatException("failed to format %s, %s at offset %d",
+                TypedFieldDecoder.string(m_buf, m_recordStart, m_end), reason, m_pos - m_recordStart);
+    }
+}
@@ -0,0 +1,188 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.importer.formatter.builtin;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Properties;
+
+import org.voltdb.VoltType;
+import org.voltdb.importer.formatter.FormatException;
+import org.voltdb.importer.formatter.TypedFormatter;
+
+import au.com.bytecode.opencsv_voltpatches.CSVParser;
+
+/**
+ * CSV/TSV formatter that splits the record in place and converts each field straight from its
+ * bytes to the type of the matching procedure parameter. Selected with the formatter property
+ * <code>typed=true</code>. It supports the separator, quotechar and escape properties of
+ * {@link VoltCSVFormatter}, which must be ASCII characters.
+ */
+public class VoltTypedCSVFormatter implements TypedFormatter {
+    private static final byte[] NULL_BYTES = { 'N', 'U', 'L', 'L' };
+    private static final byte[] CSV_NULL_BYTES = { '\\', 'N' };
+
+    private final byte m_separator;
+    private final byte m_quote;
+    private final byte m_escape;
+    private VoltType[] m_types = new VoltType[0];
+
+    // Fields of the current record, and where unescaped quoted fields are assembled
+    private Object[] m_fields = new Object[16];
+    private byte[] m_scratch = new byte[256];
+    private int m_scratchLength;
+
+    public VoltTypedCSVFormatter(String formatName, Properties prop) {
+        if (!("csv".equalsIgnoreCase(formatName) || "tsv".equalsIgnoreCase(formatName))) {
+            throw new IllegalArgumentException("Invalid format " + formatName + ", choices are either \"csv\" or \"tsv\".");
+        }
+        m_separator = asciiProperty(prop, "separator", "csv".equalsIgnoreCase(formatName) ? ',' : '\t');
+        m_quote = asciiProperty(prop, "quotechar", CSVParser.DEFAULT_QUOTE_CHARACTER);
+        m_escape = asciiProperty(prop, "escape", CSVParser.DEFAULT_ESCAPE_CHARACTER);
+    }
+
+    private static byte asciiProperty(Properties prop, String name, char defaultValue) {
+        char value = defaultValue;
+        String property = prop.getProperty(name, "");
+        if (!property.isEmpty() && property.length() == 1) {
+            value = property.charAt(0);
+        }
+        if (value > 127) {
+            throw new IllegalArgumentException("The " + name + " of a typed formatter must be an ASCII character.");
+        }
+        return (byte) value;
+    }
+
+    @Override
+    public void setParameterTypes(VoltType[] types) {
+        m_types = types == null ? new VoltType[0] : types.clone();
+    }
+
+    @Override
+    public Object[] transform(ByteBuffer payload) throws FormatException {
+        if (payload == null) {
+            return null;
+        }
+        final byte[] buf;
+        int i;
+        final int end;
+        if (payload.hasArray()) {
+            buf = payload.array();
+            i = payload.arrayOffset() + payload.position();
+            end = payload.arrayOffset() + payload.limit();
+        }
+        else {
+            buf = new byte[payload.remaining()];
+            payload.duplicate().get(buf);
+            i = 0;
+            end = buf.length;
+        }
+
+        final int recordStart = i;
+        int count = 0;
+        while (true) {
+            Object value;
+            if (i < end && buf[i] == m_quote) {
+                i = readQuoted(buf, i + 1, end);
+                if (i < 0) {
+                    throw new FormatException("failed to format %s, unterminated quoted field",
+                            TypedFieldDecoder.string(buf, recordStart, end));
+                }
+                value = decode(m_scratch, 0, m_scratchLength, count);
+            }
+            else {
+                final int start = i;
+                while (i < end && buf[i] != m_separator) {
+                    i++;
+                }
+                value = decode(buf, start, i, count);
+            }
+            if (count == m_fields.length) {
+                m_fields = Arrays.copyOf(m_fields, count * 2);
+            }
+            m_fields[count++] = value;
+            if (i >= end) {
+                break;
+            }
+            // Skip the separator, a trailing one is followed by an empty field
+            i++;
+        }
+        return Arrays.copyOf(m_fields, count);
+    }
+
+    /**
+     * Copies the unescaped content of a quoted field, and anything that follows the closing
+     * quote up to the next separator, into m_scratch.
+     * @return the index of the separator or end of the record after the field, -1 if the quote is not closed
+     */
+    private int readQuoted(byte[] buf, int i, int end) {
+        m_scratchLength = 0;
+        boolean closed = false;
+        while (i < end) {
+            final byte b = buf[i];
+            if (!closed && b == m_escape && m_escape != m_quote && i + 1 < end) {
+                append(buf[i + 1]);
+                i += 2;
+            }
+            else if (!closed && b == m_quote) {
+                if (i + 1 < end && buf[i + 1] == m_quote) {
+                    append(m_quote);
+                    i += 2;
+                }
+                else {
+                    closed = true;
+                    i++;
+                }
+            }
+            else if (closed && b == m_separator) {
+                return i;
+            }
+            else {
+                append(b);
+                i++;
+            }
+        }
+        return closed ? i : -1;
+    }
+
+    private void append(byte b) {
+        if (m_scratchLength == m_scratch.length) {
+            m_scratch = Arrays.copyOf(m_scratch, m_scratchLength * 2);
+        }
+        m_scratch[m_scratchLength++] = b;
+    }
+
+    private Object decode(byte[] buf, int start, int end, int index) {
+        if (matches(buf, start, end, NULL_BYTES) || matches(buf, start, end, CSV_NULL_BYTES)) {
+            return null;
+        }
+        return TypedFieldDecoder.decode(buf, start, end, index < m_types.length ? m_types[index] : null);
+    }
+
+    private static boolean matches(byte[] buf, int start, int end, byte[] expected) {
+        if (end - start != expected.length) {
+            return false;
+        }
+        for (int i = 0; i < expected.length; i++) {
+            if (buf[start + i] != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,175 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.iv2;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.jctools_voltpatches.queues.atomic.MpscLinkedAtomicQueue;
+
+/**
+ * TransactionTaskQueue for SP sites that never blocks on a monitor.
+ *
+ * A caller that finds the backlog idle applies its offer or flush directly.
+ * Otherwise the operation is published as a command on a multi-producer
+ * single-consumer queue and the caller returns right away; whichever thread
+ * holds the drain flag applies every pending command to the backlog, in
+ * publication order, before its own. The backlog is therefore only ever touched by one
+ * thread at a time and the multi-part ordering rules are exactly those of
+ * the synchronized implementation.
+ *
+ * Because a command may be applied by another thread, the values returned by
+ * offer() and flush() reflect the caller's command only when the caller
+ * applied it itself; otherwise they are false and 0. The schedulers ignore
+ * them.
+ */
+public class LockFreeTransactionTaskQueue extends TransactionTaskQueue
+{
+    private static final int OFFER = 0;
+    private static final int FLUSH = 1;
+    private static final int RESTART = 2;
+
+    private static final class Command {
+        final int m_type;
+        final TransactionTask m_task;
+        final long m_txnId;
+        // Results, only read back by the thread that applied the command
+        boolean m_stored = false;
+        int m_offered = 0;
+        boolean m_applied = false;
+
+        Command(int type, TransactionTask task, long txnId) {
+            m_type = type;
+            m_task = task;
+            m_txnId = txnId;
+        }
+    }
+
+    private final MpscLinkedAtomicQueue<Command> m_commands = new MpscLinkedAtomicQueue<Command>();
+    private final AtomicBoolean m_draining = new AtomicBoolean(false);
+    private volatile int m_backlogSize = 0;
+
+    LockFreeTransactionTaskQueue(SiteTaskerQueue queue)
+    {
+        super(queue);
+    }
+
+    @Override
+    boolean offer(TransactionTask task)
+    {
+        if (m_draining.compareAndSet(false, true)) {
+            boolean stored;
+            try {
+                drainCommands(null);
+                stored = doOffer(task);
+            } finally {
+                release();
+            }
+            helpDrain(null);
+            return stored;
+        }
+        Command command = new Command(OFFER, task, 0);
+        m_commands.offer(command);
+        helpDrain(command);
+        return command.m_applied && command.m_stored;
+    }
+
+    @Override
+    int flush(long txnId)
+    {
+        if (m_draining.compareAndSet(false, true)) {
+            int offered;
+            try {
+                drainCommands(null);
+                offered = doFlush(txnId);
+            } finally {
+                release();
+            }
+            helpDrain(null);
+            return offered;
+        }
+        Command command = new Command(FLUSH, null, txnId);
+        m_commands.offer(command);
+        helpDrain(command);
+        return command.m_applied ? command.m_offered : 0;
+    }
+
+    @Override
+    void restart()
+    {
+        m_commands.offer(new Command(RESTART, null, 0));
+        helpDrain(null);
+    }
+
+    @Override
+    int size()
+    {
+        return m_backlogSize;
+    }
+
+    /**
+     * Apply queued commands if no other thread is doing so. Commands
+     * published while the previous drainer was releasing the flag would
+     * otherwise be stranded, so check again after every release.
+     */
+    private void helpDrain(Command mine)
+    {
+        while (!m_commands.isEmpty()) {
+            if (!m_draining.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                drainCommands(mine);
+            } finally {
+                release();
+            }
+        }
+    }
+
+    // Must hold m_draining
+    private void drainCommands(Command mine)
+    {
+        Command next;
+        while ((next = m_commands.poll()) != null) {
+            apply(next, next == mine);
+        }
+    }
+
+    private void release()
+    {
+        m_backlogSize = backlogSize();
+        m_draining.set(false);
+    }
+
+    private void apply(Command command, boolean mine)
+    {
+        switch (command.m_type) {
+        case OFFER:
+            command.m_stored = doOffer(command.m_task);
+            break;
+        case FLUSH:
+            command.m_offered = doFlush(command.m_txnId);
+            break;
+        case RESTART:
+            doRestart();
+            break;
+        default:
+            throw new IllegalStateException("Unknown command " + command.m_type);
+        }
+        command.m_applied = mine;
+    }
+}
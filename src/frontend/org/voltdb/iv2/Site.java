@@ -20,6 +20,8 @@ package org.voltdb.iv2;
 import java.io.IOException;
 import java.lang.reflect.Method;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Deque;
 import java.util.HashMap;
@@ -54,6 +56,7 @@ import org.voltdb.PartitionDRGateway;
 import org.voltdb.PostGISBackend;
 import org.voltdb.PostgreSQLBackend;
 import org.voltdb.ProcedureRunner;
+import org.voltdb.SQLStmt;
 import org.voltdb.SiteProcedureConnection;
 import org.voltdb.SiteSnapshotConnection;
 import org.voltdb.SnapshotDataTarget;
@@ -70,6 +73,7 @@ import org.voltdb.TableStreamType;
 import org.voltdb.TheHashinator;
 import org.voltdb.TheHashinator.HashinatorConfig;
 import org.voltdb.TupleStreamStateInfo;
+import org.voltdb.UserDefinedFunctionStats;
 import org.voltdb.VoltDB;
 import org.voltdb.VoltProcedure.VoltAbortException;
 import org.voltdb.VoltTable;
@@ -82,6 +86,7 @@ import org.voltdb.catalog.Database;
 import org.voltdb.catalog.Deployment;
 import org.voltdb.catalog.Procedure;
 import org.voltdb.catalog.Table;
+import org.voltdb.client.BatchTimeoutOverrideType;
 import org.voltdb.dtxn.SiteTracker;
 import org.voltdb.dtxn.TransactionState;
 import org.voltdb.dtxn.UndoAction;
@@ -103,6 +108,7 @@ import org.voltdb.sysprocs.SysProcFragmentId;
 import org.voltdb.utils.CompressionService;
 import org.voltdb.utils.LogKeys;
 import org.voltdb.utils.MinimumRatioMaintainer;
+import org.voltdb.utils.VoltTrace;
 
 import com.google_voltpatches.common.base.Charsets;
 import com.google_voltpatches.common.base.Preconditions;
@@ -146,6 +152,26 @@ public class Site implements Runnable, SiteProcedureConnection, SiteSnapshotConn
     // Manages pending tasks.
     final SiteTaskerQueue m_scheduler;
 
+    /*
+     * Consecutive queued invocations of the same single-statement, single-partition
+     * procedure (see ProcedureRunner.getBatchableStatement()) have their fragments
+     * executed in one EE call, up to this many at a time. The tasks then run one by
+     * one as usual and executePlanFragments() hands each its precomputed results.
+     * Batching is off unless SP_BATCH_MAX_SIZE is set above 1.
+     */
+    private static final int SP_BATCH_MAX_SIZE = Math.min(Integer.getInteger("SP_BATCH_MAX_SIZE", 1),
+                                                          ExecutionEngineJNI.MAX_SP_BATCH_SIZE);
+    private final List<SpProcedureTask> m_spBatch = new ArrayList<>();
+    private final Object[] m_spBatchParams = new Object[SP_BATCH_MAX_SIZE];
+    private final long[] m_spBatchTxnIds = new long[SP_BATCH_MAX_SIZE];
+    private final long[] m_spBatchSpHandles = new long[SP_BATCH_MAX_SIZE];
+    private final long[] m_spBatchUniqueIds = new long[SP_BATCH_MAX_SIZE];
+    private final long[] m_spBatchUndoTokens = new long[SP_BATCH_MAX_SIZE];
+    // Index of the batched task being run, and number of batched tasks the EE executed
+    private int m_spBatchCurrent = 0;
+    private int m_spBatchExecuted = 0;
+    private boolean m_spBatchResultTaken = false;
+
     /*
      * There is really no legitimate reason to touch the initiator mailbox from the site,
      * but it turns out to be necessary at startup when restoring a snapshot. The snapshot
@@ -161,6 +187,7 @@ public class Site implements Runnable, SiteProcedureConnection, SiteSnapshotConn
     // Stats
     final TableStats m_tableStats;
     final IndexStats m_indexStats;
+    final UserDefinedFunctionStats m_functionStats;
     final MemoryStats m_memStats;
 
     // Each execution site manages snapshot using a SnapshotSiteProcessor
@@ -655,11 +682,16 @@ public class Site implements Runnable, SiteProcedureConnection, SiteSnapshotConn
             agent.registerStatsSource(StatsSelector.INDEX,
                                       m_siteId,
                                       m_indexStats);
+            m_functionStats = new UserDefinedFunctionStats(m_siteId);
+            agent.registerStatsSource(StatsSelector.FUNCTION,
+                                      m_siteId,
+                                      m_functionStats);
             m_memStats = memStats;
         } else {
             // MPI doesn't need to track these stats
             m_tableStats = null;
             m_indexStats = null;
+            m_functionStats = null;
             m_memStats = null;
         }
     }
@@ -706,6 +738,9 @@ public class Site implements Runnable, SiteProcedureConnection, SiteSnapshotConn
             m_ee = initializeEE();
         }
         m_ee.loadFunctions(m_context);
+        if (m_functionStats != null) {
+            m_functionStats.setFunctionManager(m_ee.getFunctionManager());
+        }
 
         m_snapshotter = new SnapshotSiteProcessor(m_scheduler,
         m_snapshotPriority,
@@ -809,6 +844,10 @@ public class Site implements Runnable, SiteProcedureConnection, SiteSnapshotConn
                 if (m_rejoinState == kStateRunning) {
                     // Normal operation blocks the site thread on the sitetasker queue.
                     SiteTasker task = m_scheduler.take();
+                    if (task instanceof SpProcedureTask && SP_BATCH_MAX_SIZE > 1) {
+                        runSpProcedureTasks((SpProcedureTask)task);
+                        continue;
+                    }
                     if (task instanceof TransactionTask) {
                         m_currentTxnId = ((TransactionTask)task).getTxnId();
                         m_lastTxnTime = EstTime.currentTimeMillis();
@@ -879,6 +918,133 @@ public class Site implements Runnable, SiteProcedureConnection, SiteSnapshotConn
         }
     }
 
+    /**
+     * Run a single-partition procedure task, batching it with the tasks for the same
+     * procedure queued right behind it when that procedure can be batched.
+     */
+    private void runSpProcedureTasks(SpProcedureTask first)
+    {
+        final ProcedureRunner runner = (m_ee.canExecuteSinglePartitionBatch() &&
+                                        m_partitionId != MpInitiator.MP_INIT_PID) ?
+                                        m_loadedProcedures.getProcByName(first.m_procName) : null;
+        final SQLStmt stmt = (runner == null) ? null : runner.getBatchableStatement();
+        if (stmt == null || !addToSpBatch(first, runner)) {
+            runSpProcedureTask(first);
+            return;
+        }
+
+        try {
+            while (m_spBatch.size() < SP_BATCH_MAX_SIZE) {
+                SiteTasker next = m_scheduler.peek();
+                if (!(next instanceof SpProcedureTask) ||
+                        !first.m_procName.equals(((SpProcedureTask)next).m_procName) ||
+                        !addToSpBatch((SpProcedureTask)next, runner)) {
+                    break;
+                }
+                m_scheduler.poll();
+            }
+            if (m_spBatch.size() == 1) {
+                runSpProcedureTask(first);
+                return;
+            }
+
+            executeSpBatch(first.m_procName, runner.getBatchableFragmentId(), stmt);
+            m_scheduler.recordBatch(m_spBatch.size());
+
+            for (m_spBatchCurrent = 0; m_spBatchCurrent < m_spBatch.size(); ++m_spBatchCurrent) {
+                m_spBatchResultTaken = false;
+                runSpProcedureTask(m_spBatch.get(m_spBatchCurrent));
+                if (m_spBatchCurrent < m_spBatchExecuted && !m_spBatchResultTaken && !stmt.isReadOnly()) {
+                    // The batch was built with the checks the procedure call makes, so this is a defect.
+                    VoltDB.crashLocalVoltDB("Transaction " + m_spBatch.get(m_spBatchCurrent) +
+                            " completed without the results of its batched execution", true, null);
+                }
+            }
+        }
+        finally {
+            m_spBatch.clear();
+            Arrays.fill(m_spBatchParams, null);
+            m_spBatchCurrent = 0;
+            m_spBatchExecuted = 0;
+        }
+    }
+
+    private void runSpProcedureTask(SpProcedureTask task)
+    {
+        m_currentTxnId = task.getTxnId();
+        m_lastTxnTime = EstTime.currentTimeMillis();
+        task.run(getSiteProcedureConnection());
+    }
+
+    /**
+     * Add the task to the batch if the procedure call would get as far as executing its
+     * statement: the parameters are valid and hash to this partition, and the invocation
+     * does not set its own timeout.
+     */
+    private boolean addToSpBatch(SpProcedureTask task, ProcedureRunner runner)
+    {
+        final SpTransactionState txnState = (SpTransactionState)task.m_txnState;
+        if (BatchTimeoutOverrideType.isUserSetTimeout(txnState.getInvocation().getBatchTimeout())) {
+            return false;
+        }
+        final Object[] callerParams;
+        try {
+            callerParams = txnState.m_initiationMsg.getParameters();
+        } catch (RuntimeException e) {
+            return false;
+        }
+        if (callerParams == null || !runner.checkPartition(txnState, m_hashinator)) {
+            return false;
+        }
+        final ParameterSet params = runner.getBatchableParameters(callerParams);
+        if (params == null) {
+            return false;
+        }
+
+        final int index = m_spBatch.size();
+        m_spBatch.add(task);
+        m_spBatchParams[index] = params;
+        m_spBatchTxnIds[index] = txnState.txnId;
+        m_spBatchSpHandles[index] = txnState.m_spHandle;
+        m_spBatchUniqueIds[index] = txnState.uniqueId;
+        return true;
+    }
+
+    private void executeSpBatch(String procName, long fragmentId, SQLStmt stmt)
+    {
+        final int count = m_spBatch.size();
+        final long[] fragmentIds = new long[count];
+        final String[] sqlTexts = new String[count];
+        final long[] lastCommittedSpHandles = new long[count];
+        Arrays.fill(fragmentIds, fragmentId);
+        Arrays.fill(sqlTexts, stmt.getText());
+
+        // Hand out the undo tokens the transactions would get running one after the other.
+        long undoToken = m_latestUndoToken;
+        long lastCommittedSpHandle = m_lastCommittedSpHandle;
+        for (int i = 0; i < count; i++) {
+            m_spBatchUndoTokens[i] = stmt.isReadOnly() ? Long.MAX_VALUE : ++undoToken;
+            lastCommittedSpHandles[i] = lastCommittedSpHandle;
+            if (!stmt.isReadOnly()) {
+                lastCommittedSpHandle = m_spBatchSpHandles[i];
+            }
+        }
+
+        setProcedureName(procName);
+        try {
+            m_spBatchExecuted = m_ee.executeSinglePartitionBatch(count, fragmentIds, m_spBatchParams, sqlTexts,
+                    m_spBatchTxnIds, m_spBatchSpHandles, lastCommittedSpHandles, m_spBatchUniqueIds,
+                    m_spBatchUndoTokens, VoltTrace.log(VoltTrace.Category.EE) != null);
+        } finally {
+            setProcedureName(null);
+        }
+
+        if (m_spBatchExecuted < count && !stmt.isReadOnly()) {
+            // Drop what the failed transaction did; it runs again on its own, as do the ones after it.
+            m_ee.undoUndoToken(m_spBatchUndoTokens[m_spBatchExecuted]);
+        }
+    }
+
     ParticipantTransactionState global_replay_mpTxn = null;
     boolean replayFromTaskLog(MinimumRatioMaintainer mrm) throws IOException
     {
@@ -1165,6 +1331,11 @@ public class Site implements Runnable, SiteProcedureConnection, SiteSnapshotConn
         if (beginUndoToken == Site.kInvalidUndoToken) return;
         if (rollback) {
             m_ee.undoUndoToken(beginUndoToken);
+            if (m_spBatchCurrent + 1 < m_spBatchExecuted) {
+                // That also undid the batched transactions after this one. Their
+                // results are stale, so they execute again one at a time.
+                m_spBatchExecuted = m_spBatchCurrent + 1;
+            }
         }
         else {
             assert(m_latestUndoToken != Site.kInvalidUndoToken);
@@ -1206,6 +1377,12 @@ public class Site implements Runnable, SiteProcedureConnection, SiteSnapshotConn
         return m_ee.getUSOForExportTable(signature);
     }
 
+    @Override
+    public long getTableModificationCount(int tableId)
+    {
+        return m_ee.tableModificationCount(tableId);
+    }
+
     @Override
     public TupleStreamStateInfo getDRTupleStreamStateInfo()
     {
@@ -1482,6 +1659,18 @@ public class Site implements Runnable, SiteProcedureConnection, SiteSnapshotConn
             boolean traceOn)
                     throws EEException
     {
+        if (m_spBatchCurrent < m_spBatchExecuted && !m_spBatchResultTaken &&
+                spHandle == m_spBatchSpHandles[m_spBatchCurrent]) {
+            // This transaction's fragment was already executed as part of a batch.
+            assert(numFragmentIds == 1);
+            m_spBatchResultTaken = true;
+            if (!readOnly && getNextUndoTokenBroken() != m_spBatchUndoTokens[m_spBatchCurrent]) {
+                VoltDB.crashLocalVoltDB("Undo token of batched transaction " + TxnEgo.txnIdToString(txnId) +
+                        " does not match the token it was executed with", true, null);
+            }
+            return m_ee.takeSinglePartitionBatchResult(m_spBatchCurrent, determinismHash,
+                    isWriteFrags[0], sqlCRCs[0], parameterSets[0]);
+        }
         return m_ee.executePlanFragments(
                 numFragmentIds,
                 planFragmentIds,
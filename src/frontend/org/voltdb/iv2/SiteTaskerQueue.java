@@ -87,6 +87,11 @@ public class SiteTaskerQueue
         return m_tasks.peek();
     }
 
+    // Record that the site ran this many of its tasks as one batch.
+    public void recordBatch(int batchSize) {
+        m_queueDepthTracker.batchUpdate(batchSize);
+    }
+
     public boolean isEmpty() {
         return m_tasks.isEmpty();
     }
@@ -23,7 +23,7 @@ import org.voltcore.logging.VoltLogger;
 import org.voltdb.CommandLog;
 import org.voltdb.CommandLog.DurabilityListener;
 import org.voltdb.iv2.SpScheduler.DurableUniqueIdListener;
-import org.voltdb.utils.MiscUtils;
+import org.voltdb.utils.TraceRecorder;
 import org.voltdb.utils.VoltTrace;
 
 /**
@@ -152,11 +152,11 @@ public class SpDurabilityListener implements DurabilityListener {
         private void queuePendingTasks() {
             // Notify all sync transactions and the SP UniqueId listeners
             for (TransactionTask o : m_pendingTransactions) {
-                final VoltTrace.TraceEventBatch traceLog = VoltTrace.log(VoltTrace.Category.SPI);
-                if (traceLog != null) {
-                    traceLog.add(() -> VoltTrace.endAsync("durability",
-                                                          MiscUtils.hsIdTxnIdToString(m_spScheduler.m_mailbox.getHSId(),
-                                                                                      o.getSpHandle())));
+                final TraceRecorder traceRec = VoltTrace.recorder(VoltTrace.Category.SPI);
+                if (traceRec != null) {
+                    traceRec.begin(VoltTrace.Category.SPI, VoltTrace.TraceEventType.ASYNC_END, SpScheduler.TRACE_DURABILITY,
+                                   VoltTrace.IdFormat.HSID_TXNID, m_spScheduler.m_mailbox.getHSId(), o.getSpHandle(), 0, 0)
+                            .publish();
                 }
 
                 m_pendingTasks.offer(o);
@@ -249,4 +249,8 @@ public class SpDurabilityListener implements DurabilityListener {
         }
     }
 
+    @Override
+    public int getPartitionId() {
+        return m_spScheduler.m_partitionId;
+    }
 }
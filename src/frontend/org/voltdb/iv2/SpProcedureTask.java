@@ -33,7 +33,7 @@ import org.voltdb.messaging.InitiateResponseMessage;
 import org.voltdb.messaging.Iv2InitiateTaskMessage;
 import org.voltdb.rejoin.TaskLog;
 import org.voltdb.utils.LogKeys;
-import org.voltdb.utils.MiscUtils;
+import org.voltdb.utils.TraceRecorder;
 import org.voltdb.utils.VoltTrace;
 
 /**
@@ -59,10 +59,11 @@ public class SpProcedureTask extends ProcedureTask
 
     @Override
     protected void durabilityTraceEnd() {
-        final VoltTrace.TraceEventBatch traceLog = VoltTrace.log(VoltTrace.Category.SPI);
-        if (traceLog != null) {
-            traceLog.add(() -> VoltTrace.endAsync("durability",
-                                                  MiscUtils.hsIdTxnIdToString(m_initiator.getHSId(), getSpHandle())));
+        final TraceRecorder traceRec = VoltTrace.recorder(VoltTrace.Category.SPI);
+        if (traceRec != null) {
+            traceRec.begin(VoltTrace.Category.SPI, VoltTrace.TraceEventType.ASYNC_END, SpScheduler.TRACE_DURABILITY,
+                           VoltTrace.IdFormat.HSID_TXNID, m_initiator.getHSId(), getSpHandle(), 0, 0)
+                    .publish();
         }
     }
 
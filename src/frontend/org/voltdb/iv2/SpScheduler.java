@@ -65,6 +65,7 @@ import org.voltdb.messaging.Iv2LogFaultMessage;
 import org.voltdb.messaging.MultiPartitionParticipantMessage;
 import org.voltdb.messaging.RepairLogTruncationMessage;
 import org.voltdb.utils.MiscUtils;
+import org.voltdb.utils.TraceRecorder;
 import org.voltdb.utils.VoltTrace;
 
 import com.google_voltpatches.common.primitives.Ints;
@@ -76,6 +77,20 @@ public class SpScheduler extends Scheduler implements SnapshotCompletionInterest
 {
     static final VoltLogger tmLog = new VoltLogger("TM");
 
+    // Interned names for the per-transaction SPI trace events, recorded without allocating
+    static final int TRACE_INITSP = VoltTrace.intern("initsp");
+    static final int TRACE_REPLICATESP_BEGIN = VoltTrace.intern("replicateSP");
+    static final int TRACE_REPLICATESP = VoltTrace.intern("replicatesp");
+    static final int TRACE_DURABILITY = VoltTrace.intern("durability");
+    static final int TRACE_CI_HANDLE = VoltTrace.argKey("ciHandle", VoltTrace.ArgType.LONG);
+    static final int TRACE_TXN_ID = VoltTrace.argKey("txnId", VoltTrace.ArgType.TXNID);
+    static final int TRACE_PARTITION = VoltTrace.argKey("partition", VoltTrace.ArgType.LONG);
+    static final int TRACE_READ = VoltTrace.argKey("read", VoltTrace.ArgType.BOOLEAN);
+    static final int TRACE_PROC_NAME = VoltTrace.argKey("name", VoltTrace.ArgType.NAME);
+    static final int TRACE_HSID = VoltTrace.argKey("hsId", VoltTrace.ArgType.HSID);
+    static final int TRACE_DEST = VoltTrace.argKey("dest", VoltTrace.ArgType.HSID);
+    static final int TRACE_HASH = VoltTrace.argKey("hash", VoltTrace.ArgType.LONG);
+
     static class DuplicateCounterKey implements Comparable<DuplicateCounterKey> {
         private final long m_txnId;
         private final long m_spHandle;
@@ -140,6 +155,9 @@ public class SpScheduler extends Scheduler implements SnapshotCompletionInterest
     long m_sendToHSIds[] = new long[0];
 
     private final TransactionTaskQueue m_pendingTasks;
+    // Use the flat-combining backlog instead of the monitor-guarded one
+    static final boolean LOCK_FREE_TASK_QUEUE =
+            Boolean.valueOf(System.getProperty("LOCK_FREE_TASK_QUEUE", "false"));
     private final Map<Long, TransactionState> m_outstandingTxns =
         new HashMap<Long, TransactionState>();
     private final Map<DuplicateCounterKey, DuplicateCounter> m_duplicateCounters =
@@ -176,7 +194,11 @@ public class SpScheduler extends Scheduler implements SnapshotCompletionInterest
     SpScheduler(int partitionId, SiteTaskerQueue taskQueue, SnapshotCompletionMonitor snapMonitor)
     {
         super(partitionId, taskQueue);
-        m_pendingTasks = new TransactionTaskQueue(m_tasks);
+        if (LOCK_FREE_TASK_QUEUE) {
+            m_pendingTasks = new LockFreeTransactionTaskQueue(m_tasks);
+        } else {
+            m_pendingTasks = new TransactionTaskQueue(m_tasks);
+        }
         m_snapMonitor = snapMonitor;
         m_durabilityListener = new SpDurabilityListener(this, m_pendingTasks);
         m_uniqueIdGenerator = new UniqueIdGenerator(partitionId, 0);
@@ -523,14 +545,15 @@ public class SpScheduler extends Scheduler implements SnapshotCompletionInterest
             // The leader will be responsible to replicate messages to replicas.
             // Don't replicate reads, not matter FAST or SAFE.
             if (m_isLeader && (!msg.isReadOnly()) && (m_sendToHSIds.length > 0)) {
-                for (long hsId : m_sendToHSIds) {
-                    Iv2InitiateTaskMessage finalMsg = msg;
-                    final VoltTrace.TraceEventBatch traceLog = VoltTrace.log(VoltTrace.Category.SPI);
-                    if (traceLog != null) {
-                        traceLog.add(() -> VoltTrace.beginAsync("replicateSP",
-                                                                MiscUtils.hsIdPairTxnIdToString(m_mailbox.getHSId(), hsId, finalMsg.getSpHandle(), finalMsg.getClientInterfaceHandle()),
-                                                                "txnId", TxnEgo.txnIdToString(finalMsg.getTxnId()),
-                                                                "dest", CoreUtils.hsIdToString(hsId)));
+                final TraceRecorder traceRec = VoltTrace.recorder(VoltTrace.Category.SPI);
+                if (traceRec != null) {
+                    for (long hsId : m_sendToHSIds) {
+                        traceRec.begin(VoltTrace.Category.SPI, VoltTrace.TraceEventType.ASYNC_BEGIN, TRACE_REPLICATESP_BEGIN,
+                                       VoltTrace.IdFormat.HSID_PAIR_TXNID, m_mailbox.getHSId(), hsId,
+                                       msg.getSpHandle(), msg.getClientInterfaceHandle())
+                                .arg(TRACE_TXN_ID, msg.getTxnId())
+                                .arg(TRACE_DEST, hsId)
+                                .publish();
                     }
                 }
                 Iv2InitiateTaskMessage replmsg =
@@ -582,20 +605,19 @@ public class SpScheduler extends Scheduler implements SnapshotCompletionInterest
      */
     private void doLocalInitiateOffer(Iv2InitiateTaskMessage msg)
     {
-        final VoltTrace.TraceEventBatch traceLog = VoltTrace.log(VoltTrace.Category.SPI);
-        if (traceLog != null) {
-            final String threadName = Thread.currentThread().getName(); // Thread name has to be materialized here
-            traceLog.add(() -> VoltTrace.meta("process_name", "name", CoreUtils.getHostnameOrAddress()))
-                    .add(() -> VoltTrace.meta("thread_name", "name", threadName))
-                    .add(() -> VoltTrace.meta("thread_sort_index", "sort_index", Integer.toString(10000)))
-                    .add(() -> VoltTrace.beginAsync("initsp",
-                                                    MiscUtils.hsIdPairTxnIdToString(m_mailbox.getHSId(), m_mailbox.getHSId(), msg.getSpHandle(), msg.getClientInterfaceHandle()),
-                                                    "ciHandle", msg.getClientInterfaceHandle(),
-                                                    "txnId", TxnEgo.txnIdToString(msg.getTxnId()),
-                                                    "partition", m_partitionId,
-                                                    "read", msg.isReadOnly(),
-                                                    "name", msg.getStoredProcedureName(),
-                                                    "hsId", CoreUtils.hsIdToString(m_mailbox.getHSId())));
+        // The recorder names the process and thread itself when dumped
+        final TraceRecorder traceRec = VoltTrace.recorder(VoltTrace.Category.SPI);
+        if (traceRec != null) {
+            traceRec.begin(VoltTrace.Category.SPI, VoltTrace.TraceEventType.ASYNC_BEGIN, TRACE_INITSP,
+                           VoltTrace.IdFormat.HSID_PAIR_TXNID, m_mailbox.getHSId(), m_mailbox.getHSId(),
+                           msg.getSpHandle(), msg.getClientInterfaceHandle())
+                    .arg(TRACE_CI_HANDLE, msg.getClientInterfaceHandle())
+                    .arg(TRACE_TXN_ID, msg.getTxnId())
+                    .arg(TRACE_PARTITION, m_partitionId)
+                    .arg(TRACE_READ, msg.isReadOnly())
+                    .arg(TRACE_PROC_NAME, VoltTrace.intern(msg.getStoredProcedureName()))
+                    .arg(TRACE_HSID, m_mailbox.getHSId())
+                    .publish();
         }
 
         /**
@@ -611,11 +633,12 @@ public class SpScheduler extends Scheduler implements SnapshotCompletionInterest
             ListenableFuture<Object> durabilityBackpressureFuture =
                     m_cl.log(msg, msg.getSpHandle(), null, m_durabilityListener, task);
 
-            if (traceLog != null && durabilityBackpressureFuture != null) {
-                traceLog.add(() -> VoltTrace.beginAsync("durability",
-                                                        MiscUtils.hsIdTxnIdToString(m_mailbox.getHSId(), msg.getSpHandle()),
-                                                        "txnId", TxnEgo.txnIdToString(msg.getTxnId()),
-                                                        "partition", Integer.toString(m_partitionId)));
+            if (traceRec != null && durabilityBackpressureFuture != null) {
+                traceRec.begin(VoltTrace.Category.SPI, VoltTrace.TraceEventType.ASYNC_BEGIN, TRACE_DURABILITY,
+                               VoltTrace.IdFormat.HSID_TXNID, m_mailbox.getHSId(), msg.getSpHandle(), 0, 0)
+                        .arg(TRACE_TXN_ID, msg.getTxnId())
+                        .arg(TRACE_PARTITION, m_partitionId)
+                        .publish();
             }
 
             //Durability future is always null for sync command logging
@@ -738,14 +761,17 @@ public class SpScheduler extends Scheduler implements SnapshotCompletionInterest
         final long spHandle = message.getSpHandle();
         final DuplicateCounterKey dcKey = new DuplicateCounterKey(message.getTxnId(), spHandle);
         DuplicateCounter counter = m_duplicateCounters.get(dcKey);
-        final VoltTrace.TraceEventBatch traceLog = VoltTrace.log(VoltTrace.Category.SPI);
+        final TraceRecorder traceRec = VoltTrace.recorder(VoltTrace.Category.SPI);
 
         // All reads will have no duplicate counter.
         // Avoid all the lookup below.
         // Also, don't update the truncation handle, since it won't have meaning for anyone.
         if (message.isReadOnly()) {
-            if (traceLog != null) {
-                traceLog.add(() -> VoltTrace.endAsync("initsp", MiscUtils.hsIdPairTxnIdToString(m_mailbox.getHSId(), message.m_sourceHSId, message.getSpHandle(), message.getClientInterfaceHandle())));
+            if (traceRec != null) {
+                traceRec.begin(VoltTrace.Category.SPI, VoltTrace.TraceEventType.ASYNC_END, TRACE_INITSP,
+                               VoltTrace.IdFormat.HSID_PAIR_TXNID, m_mailbox.getHSId(), message.m_sourceHSId,
+                               message.getSpHandle(), message.getClientInterfaceHandle())
+                        .publish();
             }
 
             if (m_defaultConsistencyReadLevel == ReadLevel.FAST) {
@@ -764,14 +790,13 @@ public class SpScheduler extends Scheduler implements SnapshotCompletionInterest
         }
 
         if (counter != null) {
-            String traceName = "initsp";
-            if (message.m_sourceHSId != m_mailbox.getHSId()) {
-                traceName = "replicatesp";
-            }
-            String finalTraceName = traceName;
-            if (traceLog != null) {
-                traceLog.add(() -> VoltTrace.endAsync(finalTraceName, MiscUtils.hsIdPairTxnIdToString(m_mailbox.getHSId(), message.m_sourceHSId, message.getSpHandle(), message.getClientInterfaceHandle()),
-                                                      "hash", message.getClientResponseData().getHashes()[0]));
+            if (traceRec != null) {
+                final int traceName = message.m_sourceHSId != m_mailbox.getHSId() ? TRACE_REPLICATESP : TRACE_INITSP;
+                traceRec.begin(VoltTrace.Category.SPI, VoltTrace.TraceEventType.ASYNC_END, traceName,
+                               VoltTrace.IdFormat.HSID_PAIR_TXNID, m_mailbox.getHSId(), message.m_sourceHSId,
+                               message.getSpHandle(), message.getClientInterfaceHandle())
+                        .arg(TRACE_HASH, message.getClientResponseData().getHashes()[0])
+                        .publish();
             }
 
             int result = counter.offer(message);
@@ -807,8 +832,11 @@ public class SpScheduler extends Scheduler implements SnapshotCompletionInterest
             }
         }
         else {
-            if (traceLog != null) {
-                traceLog.add(() -> VoltTrace.endAsync("initsp", MiscUtils.hsIdPairTxnIdToString(m_mailbox.getHSId(), message.m_sourceHSId, message.getSpHandle(), message.getClientInterfaceHandle())));
+            if (traceRec != null) {
+                traceRec.begin(VoltTrace.Category.SPI, VoltTrace.TraceEventType.ASYNC_END, TRACE_INITSP,
+                               VoltTrace.IdFormat.HSID_PAIR_TXNID, m_mailbox.getHSId(), message.m_sourceHSId,
+                               message.getSpHandle(), message.getClientInterfaceHandle())
+                        .publish();
             }
             // the initiatorHSId is the ClientInterface mailbox.
             // this will be on SPI without k-safety or replica only with k-safety
@@ -1078,18 +1106,13 @@ public class SpScheduler extends Scheduler implements SnapshotCompletionInterest
         Queue<TransactionTask> pendingTasks = m_mpsPendingDurability.get(txnId);
         if (pendingTasks != null) {
             for (TransactionTask task : pendingTasks) {
-                if (task instanceof SpProcedureTask) {
-                    final VoltTrace.TraceEventBatch traceLog = VoltTrace.log(VoltTrace.Category.SPI);
-                    if (traceLog != null) {
-                        traceLog.add(() -> VoltTrace.endAsync("durability",
-                                                              MiscUtils.hsIdTxnIdToString(m_mailbox.getHSId(), task.getSpHandle())));
-                    }
-                } else if (task instanceof FragmentTask) {
-                    final VoltTrace.TraceEventBatch traceLog = VoltTrace.log(VoltTrace.Category.SPI);
-                    if (traceLog != null) {
-                        traceLog.add(() -> VoltTrace.endAsync("durability",
-                                                              MiscUtils.hsIdTxnIdToString(m_mailbox.getHSId(), ((FragmentTask) task).m_fragmentMsg.getSpHandle())));
-                    }
+                final TraceRecorder traceRec = VoltTrace.recorder(VoltTrace.Category.SPI);
+                if (traceRec != null && (task instanceof SpProcedureTask || task instanceof FragmentTask)) {
+                    final long spHandle = task instanceof SpProcedureTask ? task.getSpHandle()
+                                                                          : ((FragmentTask) task).m_fragmentMsg.getSpHandle();
+                    traceRec.begin(VoltTrace.Category.SPI, VoltTrace.TraceEventType.ASYNC_END, TRACE_DURABILITY,
+                                   VoltTrace.IdFormat.HSID_TXNID, m_mailbox.getHSId(), spHandle, 0, 0)
+                            .publish();
                 }
 
                 m_pendingTasks.offer(task);
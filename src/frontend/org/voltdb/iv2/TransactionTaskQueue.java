@@ -50,6 +50,15 @@ public class TransactionTaskQueue
      * @return true if this task was stored, false if not
      */
     synchronized boolean offer(TransactionTask task)
+    {
+        return doOffer(task);
+    }
+
+    /**
+     * Backlog logic for {@link #offer(TransactionTask)}. Callers must ensure
+     * exclusive access to the backlog.
+     */
+    final boolean doOffer(TransactionTask task)
     {
         Iv2Trace.logTransactionTaskQueueOffer(task);
         TransactionState txnState = task.getTransactionState();
@@ -100,6 +109,15 @@ public class TransactionTaskQueue
      * @return the number of TransactionTasks queued to the SiteTaskerQueue
      */
     synchronized int flush(long txnId)
+    {
+        return doFlush(txnId);
+    }
+
+    /**
+     * Backlog logic for {@link #flush(long)}. Callers must ensure exclusive
+     * access to the backlog.
+     */
+    final int doFlush(long txnId)
     {
         int offered = 0;
         // If the first entry of the backlog is a completed transaction, clear it so it no longer
@@ -154,6 +172,11 @@ public class TransactionTaskQueue
      * restart is necessary.
      */
     synchronized void restart()
+    {
+        doRestart();
+    }
+
+    final void doRestart()
     {
         taskQueueOffer(m_backlog.getFirst());
     }
@@ -163,6 +186,11 @@ public class TransactionTaskQueue
      * @return
      */
     synchronized int size()
+    {
+        return backlogSize();
+    }
+
+    final int backlogSize()
     {
         return m_backlog.size();
     }
@@ -173,8 +201,9 @@ public class TransactionTaskQueue
         StringBuilder sb = new StringBuilder();
         sb.append("TransactionTaskQueue:").append("\n");
         sb.append("\tSIZE: ").append(size());
-        if (!m_backlog.isEmpty()) {
-            sb.append("\tHEAD: ").append(m_backlog.getFirst());
+        TransactionTask head = m_backlog.peekFirst();
+        if (head != null) {
+            sb.append("\tHEAD: ").append(head);
         }
         return sb.toString();
     }
@@ -129,6 +129,7 @@ public abstract class ExecutionEngine implements FastDeserializer.Deserializatio
 
     /** Statistics collector (provided later) */
     private PlannerStatsCollector m_plannerStats = null;
+    private long m_statsStartTime = 0;
 
     // used for tracking statistics about the plan cache in the EE
     private int m_cacheMisses = 0;
@@ -166,6 +167,10 @@ public abstract class ExecutionEngine implements FastDeserializer.Deserializatio
         m_functionManager.loadFunctions(catalogContext);
     }
 
+    public UserDefinedFunctionManager getFunctionManager() {
+        return m_functionManager;
+    }
+
     /** Make the EE clean and ready to do new transactional work. */
     public void resetDirtyStatus() {
         m_dirty = false;
@@ -713,6 +718,89 @@ public abstract class ExecutionEngine implements FastDeserializer.Deserializatio
             long undoQuantumToken,
             boolean traceOn) throws EEException;
 
+    /**
+     * @return true if this engine implements {@link #executeSinglePartitionBatch}.
+     */
+    public boolean canExecuteSinglePartitionBatch() {
+        return false;
+    }
+
+    /**
+     * Run the single plan fragment of each of several consecutive single-partition
+     * transactions in one call into the EE. Every transaction gets its own undo quantum,
+     * exactly as if its fragment had been executed alone, and its own results, which
+     * {@link #takeSinglePartitionBatchResult} then hands out one transaction at a time.
+     *
+     * Execution stops at the first fragment that fails. Its work is left in its undo
+     * quantum, and the caller is expected to undo it and to run that transaction and
+     * the ones after it again on their own.
+     *
+     * @return the number of transactions whose fragment succeeded
+     */
+    public int executeSinglePartitionBatch(
+            int txnCount,
+            long[] planFragmentIds,
+            Object[] parameterSets,
+            String[] sqlTexts,
+            long[] txnIds,
+            long[] spHandles,
+            long[] lastCommittedSpHandles,
+            long[] uniqueIds,
+            long[] undoQuantumTokens,
+            boolean traceOn) throws EEException
+    {
+        try {
+            m_fragmentContext = (undoQuantumTokens[0] == Long.MAX_VALUE) ? FragmentContext.RO_BATCH : FragmentContext.RW_BATCH;
+            m_startTime = 0;
+            m_logDuration = INITIAL_LOG_DURATION;
+            m_sqlTexts = sqlTexts;
+
+            int succeeded = coreExecuteSinglePartitionBatch(txnCount, planFragmentIds, parameterSets,
+                    txnIds, spHandles, lastCommittedSpHandles, uniqueIds, undoQuantumTokens, traceOn);
+
+            m_plannerStats.updateEECacheStats(m_eeCacheSize, txnCount - m_cacheMisses,
+                    m_cacheMisses, m_partitionId);
+            return succeeded;
+        }
+        finally {
+            m_cacheMisses = 0;
+            m_sqlTexts = null;
+            m_fragmentContext = FragmentContext.UNKNOWN;
+        }
+    }
+
+    protected int coreExecuteSinglePartitionBatch(
+            int txnCount,
+            long[] planFragmentIds,
+            Object[] parameterSets,
+            long[] txnIds,
+            long[] spHandles,
+            long[] lastCommittedSpHandles,
+            long[] uniqueIds,
+            long[] undoQuantumTokens,
+            boolean traceOn) throws EEException
+    {
+        throw new UnsupportedOperationException("Single-partition batches are not supported by " +
+                                                getClass().getSimpleName());
+    }
+
+    /**
+     * Hand out the results of one transaction run by the last
+     * {@link #executeSinglePartitionBatch} call, in place of executing its fragment
+     * again. Its statement is added to the determinism hash and its execution time
+     * is left in the per-fragment stats, as executing the fragment would have done.
+     */
+    public FastDeserializer takeSinglePartitionBatchResult(
+            int index,
+            DeterminismHash determinismHash,
+            boolean isWriteFrag,
+            int sqlCRC,
+            Object parameterSet) throws EEException
+    {
+        throw new UnsupportedOperationException("Single-partition batches are not supported by " +
+                                                getClass().getSimpleName());
+    }
+
     public abstract void setPerFragmentTimingEnabled(boolean enabled);
 
     // Extract the per-fragment stats from the buffer.
@@ -800,6 +888,13 @@ public abstract class ExecutionEngine implements FastDeserializer.Deserializatio
      */
     public abstract long tableHashCode(int tableId);
 
+    /**
+     * Get the number of changes applied to a table. The count only grows, so
+     * a table whose count is unchanged still holds the same rows.
+     * @param tableId table to get the modification count for
+     */
+    public abstract long tableModificationCount(int tableId);
+
     /**
      * Compute the partition to which the parameter value maps using the
      * ExecutionEngine's hashinator.  Currently only valid for int types
@@ -980,6 +1075,21 @@ public abstract class ExecutionEngine implements FastDeserializer.Deserializatio
             long undoToken,
             boolean traceOn);
 
+    /**
+     * Executes the single plan fragment of each of several single-partition transactions.
+     * The parameter buffer holds, for each transaction, its txnId, spHandle,
+     * lastCommittedSpHandle, uniqueId and undo token, followed by its parameter set.
+     * @param pointer the VoltDBEngine pointer
+     * @param numTransactions number of transactions in the batch
+     * @param planFragmentIds ID of the plan fragment of each transaction
+     * @return error code
+     */
+    protected native int nativeExecuteSinglePartitionBatch(
+            long pointer,
+            int numTransactions,
+            long[] planFragmentIds,
+            boolean traceOn);
+
     /**
      * Serialize the result temporary table.
      * @param pointer the VoltDBEngine pointer
@@ -1072,6 +1182,13 @@ public abstract class ExecutionEngine implements FastDeserializer.Deserializatio
      */
     protected native boolean nativeSetLogLevels(long pointer, long logLevels);
 
+    /**
+     * Set how much memory the EE may use for large temp table blocks before
+     * spilling them through the topend. The limit is shared by all engines.
+     * @param bytes cache size in bytes
+     */
+    protected static native void nativeSetLargeTempTableCacheSize(long bytes);
+
     /**
      * Active a table stream of the specified type for a table.
      * @param pointer Pointer to an engine instance
@@ -1110,6 +1227,13 @@ public abstract class ExecutionEngine implements FastDeserializer.Deserializatio
      */
     protected native long nativeTableHashCode(long pointer, int tableId);
 
+    /**
+     * Get the number of changes applied to a table.
+     * @param pointer Pointer to an engine instance
+     * @param tableId table to get the modification count for
+     */
+    protected native long nativeTableModificationCount(long pointer, int tableId);
+
     protected native long nativeApplyBinaryLog(long pointer,
                                                long txnId,
                                                long spHandle,
@@ -1175,7 +1299,7 @@ public abstract class ExecutionEngine implements FastDeserializer.Deserializatio
      */
     protected void startStatsCollection() {
         if (m_plannerStats != null) {
-            m_plannerStats.startStatsCollection();
+            m_statsStartTime = m_plannerStats.startStatsCollection();
         }
     }
 
@@ -1187,7 +1311,7 @@ public abstract class ExecutionEngine implements FastDeserializer.Deserializatio
      */
     protected void endStatsCollection(long cacheSize, CacheUse cacheUse) {
         if (m_plannerStats != null) {
-            m_plannerStats.endStatsCollection(cacheSize, 0, cacheUse, m_partitionId);
+            m_plannerStats.endStatsCollection(m_statsStartTime, cacheSize, 0, cacheUse, m_partitionId);
         }
     }
 
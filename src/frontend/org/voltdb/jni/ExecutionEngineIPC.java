@@ -20,7 +20,6 @@ package org.voltdb.jni;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
-import java.lang.reflect.InvocationTargetException;
 import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.nio.ByteBuffer;
@@ -131,7 +130,8 @@ public class ExecutionEngineIPC extends ExecutionEngine {
         GetUSOs(25),
         updateHashinator(27),
         executeTask(28),
-        applyBinaryLog(29);
+        applyBinaryLog(29),
+        TableModificationCount(30);
         Commands(final int id) {
             m_id = id;
         }
@@ -270,6 +270,12 @@ public class ExecutionEngineIPC extends ExecutionEngine {
          */
         static final int kErrorCode_callJavaUserDefinedFunction = 107;
 
+        /**
+         * Instruct the Java side to invoke a user-defined function over
+         * a batch of argument tuples and return all the results.
+         */
+        static final int kErrorCode_callJavaUserDefinedFunctionBatch = 108;
+
         ByteBuffer getBytes(int size) throws IOException {
             ByteBuffer header = ByteBuffer.allocate(size);
             while (header.hasRemaining()) {
@@ -312,52 +318,78 @@ public class ExecutionEngineIPC extends ExecutionEngine {
             }
         }
 
+        // Read the UDF invocation request content from the wire.
+        private ByteBuffer readUDFRequest() throws IOException {
+            int bufferSize = m_connection.readInt();
+            final ByteBuffer udfBuffer = ByteBuffer.allocate(bufferSize);
+            while (udfBuffer.hasRemaining()) {
+                int read = m_socketChannel.read(udfBuffer);
+                if (read == -1) {
+                    throw new EOFException();
+                }
+            }
+            udfBuffer.flip();
+            return udfBuffer;
+        }
+
+        // Getting here means the execution was not successful, put return code = -1.
+        private void writeUDFError(Throwable throwable) throws IOException {
+            m_data.clear();
+            m_data.putInt(-1);
+            byte[] errorMsg = throwable.toString().getBytes(Constants.UTF8ENCODING);
+            SerializationHelper.writeVarbinary(errorMsg, m_data);
+            m_data.flip();
+            m_connection.write();
+        }
+
         // Internal function to receive and execute the UDF invocation request.
         void callJavaUserDefinedFunctionInternal() {
             try {
-                // Read the request content from the wire.
-                int bufferSize = m_connection.readInt();
-                final ByteBuffer udfBuffer = ByteBuffer.allocate(bufferSize);
-                while (udfBuffer.hasRemaining()) {
-                    int read = m_socketChannel.read(udfBuffer);
-                    if (read == -1) {
-                        throw new EOFException();
-                    }
-                }
-                udfBuffer.flip();
-
+                final ByteBuffer udfBuffer = readUDFRequest();
                 int functionId = udfBuffer.getInt();
                 UserDefinedFunctionRunner udfRunner = m_functionManager.getFunctionRunnerById(functionId);
                 assert(udfRunner != null);
-                Throwable throwable = null;
-                Object returnValue = null;
                 try {
                     // Call the user-defined function.
-                    returnValue = udfRunner.call(udfBuffer);
+                    Object returnValue = udfRunner.call(udfBuffer);
                     m_data.clear();
                     // Put the status code for success (zero) into the buffer.
                     m_data.putInt(0);
                     // Write the result to the buffer.
                     UserDefinedFunctionRunner.writeValueToBuffer(m_data, udfRunner.getReturnType(), returnValue);
-                    m_data.flip();
-                    m_connection.write();
-                    return;
                 }
-                catch (InvocationTargetException ex1) {
-                    // Exceptions thrown during Java reflection will be wrapped into this InvocationTargetException.
-                    // We need to get its cause and throw that to the user.
-                    throwable = ex1.getCause();
+                catch (Throwable ex) {
+                    writeUDFError(ex);
+                    return;
                 }
-                catch (Throwable ex2) {
-                    throwable = ex2;
+                m_data.flip();
+                m_connection.write();
+            }
+            catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        // Internal function to receive and execute a batched UDF invocation request.
+        void callJavaUserDefinedFunctionBatchInternal() {
+            try {
+                final ByteBuffer udfBuffer = readUDFRequest();
+                int functionId = udfBuffer.getInt();
+                int rowCount = udfBuffer.getInt();
+                UserDefinedFunctionRunner udfRunner = m_functionManager.getFunctionRunnerById(functionId);
+                assert(udfRunner != null);
+                try {
+                    Object[] returnValues = udfRunner.callBatch(udfBuffer, rowCount);
+                    m_data.clear();
+                    m_data.putInt(0);
+                    for (int i = 0; i < rowCount; i++) {
+                        UserDefinedFunctionRunner.writeValueToBuffer(m_data, udfRunner.getReturnType(), returnValues[i]);
+                        returnValues[i] = null;
+                    }
                 }
-                // Getting here means the execution was not successful.
-                m_data.clear();
-                if (throwable != null) {
-                    // Exception thrown, put return code = -1.
-                    m_data.putInt(-1);
-                    byte[] errorMsg = throwable.toString().getBytes(Constants.UTF8ENCODING);
-                    SerializationHelper.writeVarbinary(errorMsg, m_data);
+                catch (Throwable ex) {
+                    writeUDFError(ex);
+                    return;
                 }
                 m_data.flip();
                 m_connection.write();
@@ -534,6 +566,9 @@ public class ExecutionEngineIPC extends ExecutionEngine {
                 else if (status == kErrorCode_callJavaUserDefinedFunction) {
                     callJavaUserDefinedFunctionInternal();
                 }
+                else if (status == kErrorCode_callJavaUserDefinedFunctionBatch) {
+                    callJavaUserDefinedFunctionBatchInternal();
+                }
                 else {
                     break;
                 }
@@ -1610,6 +1645,32 @@ public class ExecutionEngineIPC extends ExecutionEngine {
         }
     }
 
+    @Override
+    public long tableModificationCount(int tableId) {
+        try {
+            m_data.clear();
+            m_data.putInt(Commands.TableModificationCount.m_id);
+            m_data.putInt(tableId);
+
+            m_data.flip();
+            m_connection.write();
+
+            m_connection.readStatusByte();
+            ByteBuffer count = ByteBuffer.allocate(8);
+            while (count.hasRemaining()) {
+                int read = m_connection.m_socketChannel.read(count);
+                if (read <= 0) {
+                    throw new EOFException();
+                }
+            }
+            count.flip();
+            return count.getLong();
+        } catch (final IOException e) {
+            System.out.println("Exception: " + e.getMessage());
+            throw new RuntimeException(e);
+        }
+    }
+
     @Override
     public int hashinate(Object value, HashinatorConfig config)
     {
@@ -17,8 +17,8 @@
 
 package org.voltdb.jni;
 
+import java.io.File;
 import java.io.IOException;
-import java.lang.reflect.InvocationTargetException;
 import java.nio.ByteBuffer;
 import java.util.List;
 
@@ -26,8 +26,10 @@ import org.voltcore.logging.VoltLogger;
 import org.voltcore.utils.DBBPool;
 import org.voltcore.utils.DBBPool.BBContainer;
 import org.voltcore.utils.Pair;
+import org.voltdb.LargeTempTableStats;
 import org.voltdb.ParameterSet;
 import org.voltdb.PrivateVoltTableFactory;
+import org.voltdb.StatsAgent;
 import org.voltdb.StatsSelector;
 import org.voltdb.TableStreamType;
 import org.voltdb.TheHashinator.HashinatorConfig;
@@ -41,7 +43,6 @@ import org.voltdb.exceptions.SerializableException;
 import org.voltdb.iv2.DeterminismHash;
 import org.voltdb.messaging.FastDeserializer;
 import org.voltdb.sysprocs.saverestore.SnapshotUtil;
-import org.voltdb.types.GeographyValue;
 import org.voltdb.utils.SerializationHelper;
 
 import com.google_voltpatches.common.base.Throwables;
@@ -135,6 +136,18 @@ public class ExecutionEngineJNI extends ExecutionEngine {
      */
     private ByteBuffer m_fallbackBuffer = null;
 
+    /** Matches MAX_BATCH_COUNT in VoltDBEngine.h */
+    public static final int MAX_SP_BATCH_SIZE = 1000;
+    /** The results of each transaction of the last single-partition batch */
+    private final ByteBuffer[] m_spBatchResults = new ByteBuffer[MAX_SP_BATCH_SIZE];
+    private final long[] m_spBatchExecutionTimes = new long[MAX_SP_BATCH_SIZE];
+    private boolean m_spBatchUsedFallbackBuffer = false;
+    /** Parameters of batched writes are serialized again here for the determinism hash */
+    private ByteBuffer m_spBatchHashBuffer = ByteBuffer.allocate(1024);
+
+    /** Where the EE spills large temp table blocks that do not fit in its cache */
+    private final LargeTempTableBlockStore m_largeBlockStore;
+
     private final BBContainer m_exceptionBufferOrigin = org.voltcore.utils.DBBPool.allocateDirect(1024 * 1024 * 5);
     private ByteBuffer m_exceptionBuffer = m_exceptionBufferOrigin.b();
 
@@ -181,6 +194,18 @@ public class ExecutionEngineJNI extends ExecutionEngine {
                     createDrReplicatedStream,
                     EE_COMPACTION_THRESHOLD);
         checkErrorCode(errorCode);
+        nativeSetLargeTempTableCacheSize(LargeTempTableBlockStore.CACHE_SIZE_MB * 1024L * 1024L);
+
+        // Engines created outside a running server spill to the working directory
+        final String voltDbRoot = VoltDB.instance().getCatalogContext() != null ?
+                VoltDB.instance().getVoltDBRootPath() : ".";
+        m_largeBlockStore = new LargeTempTableBlockStore(
+                new File(voltDbRoot, LargeTempTableBlockStore.SPILL_DIRECTORY), siteId);
+        final StatsAgent statsAgent = VoltDB.instance().getStatsAgent();
+        if (statsAgent != null) {
+            statsAgent.registerStatsSource(StatsSelector.SPILL, siteId,
+                    new LargeTempTableStats(siteId, m_largeBlockStore));
+        }
 
         setupPsetBuffer(smallBufferSize);
         setupPerFragmentStatsBuffer(smallBufferSize);
@@ -319,6 +344,7 @@ public class ExecutionEngineJNI extends ExecutionEngine {
         m_perFragmentStatsBuffer = null;
         m_udfBufferC.discard();
         m_udfBuffer = null;
+        m_largeBlockStore.close();
         LOG.trace("Released Execution Engine.");
     }
 
@@ -410,34 +436,13 @@ public class ExecutionEngineJNI extends ExecutionEngine {
         // serialize the param sets
         int allPsetSize = 0;
         for (int i = 0; i < batchSize; ++i) {
-            if (parameterSets[i] instanceof ByteBuffer) {
-                allPsetSize += ((ByteBuffer) parameterSets[i]).limit();
-            }
-            else {
-                allPsetSize += ((ParameterSet) parameterSets[i]).getSerializedSize();
-            }
+            allPsetSize += getSerializedSize(parameterSets[i]);
         }
 
         clearPsetAndEnsureCapacity(allPsetSize);
         for (int i = 0; i < batchSize; ++i) {
             int paramStart = m_psetBuffer.position();
-            Object param = parameterSets[i];
-            if (param instanceof ByteBuffer) {
-                ByteBuffer buf = (ByteBuffer) param;
-                m_psetBuffer.put(buf);
-            }
-            else {
-                ParameterSet pset = (ParameterSet) param;
-                try {
-                    pset.flattenToBuffer(m_psetBuffer);
-                }
-                catch (final IOException exception) {
-                    throw new RuntimeException("Error serializing parameters for SQL batch element: " +
-                                               i + " with plan fragment ID: " + planFragmentIds[i] +
-                                               " and with params: " +
-                                               pset.toJSONString(), exception);
-                }
-            }
+            flattenParameterSet(parameterSets[i], m_psetBuffer, i, planFragmentIds[i]);
             // determinismHash can be null in FragmentTask.processFragmentTask() and many tests
             if (determinismHash != null && isWriteFrags[i]){
                 determinismHash.offerStatement(sqlCRCs[i], paramStart, m_psetBuffer);
@@ -484,6 +489,139 @@ public class ExecutionEngineJNI extends ExecutionEngine {
         }
     }
 
+    private static int getSerializedSize(Object param) {
+        if (param instanceof ByteBuffer) {
+            return ((ByteBuffer) param).limit();
+        }
+        return ((ParameterSet) param).getSerializedSize();
+    }
+
+    private static void flattenParameterSet(Object param, ByteBuffer buffer, int index, long planFragmentId) {
+        if (param instanceof ByteBuffer) {
+            buffer.put((ByteBuffer) param);
+        }
+        else {
+            ParameterSet pset = (ParameterSet) param;
+            try {
+                pset.flattenToBuffer(buffer);
+            }
+            catch (final IOException exception) {
+                throw new RuntimeException("Error serializing parameters for SQL batch element: " +
+                                           index + " with plan fragment ID: " + planFragmentId +
+                                           " and with params: " +
+                                           pset.toJSONString(), exception);
+            }
+        }
+    }
+
+    @Override
+    public boolean canExecuteSinglePartitionBatch() {
+        return true;
+    }
+
+    @Override
+    protected int coreExecuteSinglePartitionBatch(
+            final int txnCount,
+            final long[] planFragmentIds,
+            final Object[] parameterSets,
+            final long[] txnIds,
+            final long[] spHandles,
+            final long[] lastCommittedSpHandles,
+            final long[] uniqueIds,
+            final long[] undoTokens,
+            final boolean traceOn) throws EEException
+    {
+        assert(txnCount > 0 && txnCount <= MAX_SP_BATCH_SIZE);
+
+        // Each transaction's context goes in front of its parameter set.
+        final int txnContextSize = 5 * 8;
+        int allPsetSize = 0;
+        for (int i = 0; i < txnCount; ++i) {
+            allPsetSize += txnContextSize + getSerializedSize(parameterSets[i]);
+        }
+        clearPsetAndEnsureCapacity(allPsetSize);
+        for (int i = 0; i < txnCount; ++i) {
+            m_psetBuffer.putLong(txnIds[i]);
+            m_psetBuffer.putLong(spHandles[i]);
+            m_psetBuffer.putLong(lastCommittedSpHandles[i]);
+            m_psetBuffer.putLong(uniqueIds[i]);
+            m_psetBuffer.putLong(undoTokens[i]);
+            flattenParameterSet(parameterSets[i], m_psetBuffer, i, planFragmentIds[i]);
+        }
+
+        // Every fragment is timed, since each transaction reports its own statement stats.
+        clearPerFragmentStatsAndEnsureCapacity(txnCount);
+        m_perFragmentStatsBuffer.put(0, (byte) 1);
+
+        m_firstDeserializer.clear();
+        final int errorCode = nativeExecuteSinglePartitionBatch(pointer, txnCount, planFragmentIds, traceOn);
+
+        try {
+            // A failed fragment is not reported here: its transaction runs again on its own,
+            // which raises the error for it.
+            if (errorCode != ERRORCODE_ERROR) {
+                checkErrorCode(errorCode);
+            }
+
+            m_perFragmentStatsBuffer.clear();
+            m_perFragmentStatsBuffer.get();
+            final int succeeded = m_perFragmentStatsBuffer.getInt();
+            assert(succeeded == txnCount || errorCode == ERRORCODE_ERROR);
+
+            // Every transaction's results start with their own dirty flag and size.
+            m_spBatchUsedFallbackBuffer = m_fallbackBuffer != null;
+            final ByteBuffer results = m_spBatchUsedFallbackBuffer ? m_fallbackBuffer : m_firstDeserializer.buffer();
+            int position = 0;
+            for (int i = 0; i < succeeded; ++i) {
+                final int end = position + 1 + 4 + results.getInt(position + 1);
+                final ByteBuffer txnResults = results.duplicate();
+                txnResults.limit(end);
+                txnResults.position(position);
+                m_spBatchResults[i] = txnResults.slice();
+                m_spBatchExecutionTimes[i] = m_perFragmentStatsBuffer.getLong();
+                position = end;
+            }
+            return succeeded;
+        } finally {
+            m_fallbackBuffer = null;
+        }
+    }
+
+    @Override
+    public FastDeserializer takeSinglePartitionBatchResult(
+            final int index,
+            final DeterminismHash determinismHash,
+            final boolean isWriteFrag,
+            final int sqlCRC,
+            final Object parameterSet) throws EEException
+    {
+        if (determinismHash != null && isWriteFrag) {
+            final int size = getSerializedSize(parameterSet);
+            if (m_spBatchHashBuffer.capacity() < size) {
+                m_spBatchHashBuffer = ByteBuffer.allocate(Math.max(size, m_spBatchHashBuffer.capacity() * 2));
+            }
+            m_spBatchHashBuffer.clear();
+            flattenParameterSet(parameterSet, m_spBatchHashBuffer, 0, 0);
+            determinismHash.offerStatement(sqlCRC, 0, m_spBatchHashBuffer);
+        }
+
+        // Leave the stats of a batch of one successful fragment, keeping the timing switch.
+        m_perFragmentStatsBuffer.putInt(1, 1);
+        m_perFragmentStatsBuffer.putLong(5, m_spBatchExecutionTimes[index]);
+
+        final ByteBuffer txnResults = m_spBatchResults[index];
+        m_spBatchResults[index] = null;
+        m_usingFallbackBuffer = m_spBatchUsedFallbackBuffer;
+        final FastDeserializer fds = new FastDeserializer(txnResults);
+        try {
+            m_dirty |= fds.readBoolean();
+        } catch (final IOException ex) {
+            LOG.error("Failed to deserialize result table" + ex);
+            throw new EEException(ERRORCODE_WRONG_SERIALIZED_BYTES);
+        }
+        return fds;
+    }
+
     @Override
     public VoltTable serializeTable(final int tableId) throws EEException {
         if (HOST_TRACE_ENABLED) {
@@ -692,6 +830,11 @@ public class ExecutionEngineJNI extends ExecutionEngine {
         return nativeTableHashCode(pointer, tableId);
     }
 
+    @Override
+    public long tableModificationCount(int tableId) {
+        return nativeTableModificationCount(pointer, tableId);
+    }
+
     @Override
     public int hashinate(
             Object value,
@@ -754,6 +897,45 @@ public class ExecutionEngineJNI extends ExecutionEngine {
         m_fallbackBuffer = buffer;
     }
 
+    /**
+     * Called by the EE to spill a large temp table block when its block cache is full.
+     * @return true if the block was stored and the EE can free it
+     */
+    public boolean storeLargeTempTableBlock(long blockId, ByteBuffer block) {
+        try {
+            m_largeBlockStore.store(blockId, block);
+            return true;
+        } catch (IOException e) {
+            LOG.error("Failed to spill large temp table block " + blockId, e);
+            return false;
+        }
+    }
+
+    /**
+     * Called by the EE to read back a spilled large temp table block.
+     * @return the block, valid until the next call into the block store, or null on failure
+     */
+    public ByteBuffer loadLargeTempTableBlock(long blockId) {
+        try {
+            return m_largeBlockStore.load(blockId);
+        } catch (IOException e) {
+            LOG.error("Failed to read spilled large temp table block " + blockId, e);
+            return null;
+        }
+    }
+
+    /**
+     * Called by the EE when a spilled block is no longer needed.
+     */
+    public boolean releaseLargeTempTableBlock(long blockId) {
+        try {
+            return m_largeBlockStore.release(blockId);
+        } catch (IOException e) {
+            LOG.error("Failed to release spilled large temp table block " + blockId, e);
+            return false;
+        }
+    }
+
     public void resizeUDFBuffer(int size) {
         // Read the size which we want to change to.
         setupUDFBuffer(size);
@@ -766,11 +948,9 @@ public class ExecutionEngineJNI extends ExecutionEngine {
         int functionId = m_udfBuffer.getInt();
         UserDefinedFunctionRunner udfRunner = m_functionManager.getFunctionRunnerById(functionId);
         assert(udfRunner != null);
-        Throwable throwable = null;
-        Object returnValue = null;
         try {
             // Call the user-defined function.
-            returnValue = udfRunner.call(m_udfBuffer);
+            Object returnValue = udfRunner.call(m_udfBuffer);
 
             VoltType returnType = udfRunner.getReturnType();
             // If the function we are running returns variable-length return value,
@@ -778,30 +958,9 @@ public class ExecutionEngineJNI extends ExecutionEngine {
             // Check the required buffer size and enlarge the existing buffer when necessary.
             // The default buffer size is 256K, which is more than enough for any
             // fixed-length data and NULL variable-length data (the buffer size will not go less than 256K).
-            if (returnType.isVariableLength() && ! VoltType.isVoltNullValue(returnValue)) {
-                // The minimum required size is 5 bytes:
-                // 1 byte for the type indicator, 4 bytes for the prefixed length.
-                int sizeRequired = 1 + 4;
-                switch(returnType) {
-                case VARBINARY:
-                    if (returnValue instanceof byte[]) {
-                        sizeRequired += ((byte[])returnValue).length;
-                    }
-                    else if (returnValue instanceof Byte[]) {
-                        sizeRequired += ((Byte[])returnValue).length;
-                    }
-                    break;
-                case STRING:
-                    sizeRequired += ((String)returnValue).getBytes(Constants.UTF8ENCODING).length;
-                    break;
-                case GEOGRAPHY:
-                    sizeRequired += ((GeographyValue)returnValue).getLengthInBytes();
-                    break;
-                default:
-                }
-                if (sizeRequired > m_udfBuffer.capacity()) {
-                    resizeUDFBuffer(sizeRequired);
-                }
+            int sizeRequired = UserDefinedFunctionRunner.getSerializedSize(returnType, returnValue);
+            if (sizeRequired > m_udfBuffer.capacity()) {
+                resizeUDFBuffer(sizeRequired);
             }
             // Write the result to the shared buffer.
             m_udfBuffer.clear();
@@ -809,17 +968,52 @@ public class ExecutionEngineJNI extends ExecutionEngine {
             // Return zero status code for a successful execution.
             return 0;
         }
-        catch (InvocationTargetException ex1) {
-            // Exceptions thrown during Java reflection will be wrapped into this InvocationTargetException.
-            // We need to get its cause and throw that to the user.
-            throwable = ex1.getCause();
+        catch (Throwable ex) {
+            writeUDFErrorToBuffer(ex);
+        }
+        return -1;
+    }
+
+    /**
+     * Vectorized version of {@link #callJavaUserDefinedFunction()}.
+     * The EE serializes the function ID, a row count N and then N argument tuples back to back.
+     * All N rows are evaluated in one crossing of the JNI boundary and the N return values are
+     * written back to the shared buffer in the same order.
+     */
+    public int callJavaUserDefinedFunctionBatch() {
+        m_udfBuffer.clear();
+        m_udfBuffer.getInt(); // skip the buffer size integer, it is only used by VoltDB IPC.
+        int functionId = m_udfBuffer.getInt();
+        int rowCount = m_udfBuffer.getInt();
+        UserDefinedFunctionRunner udfRunner = m_functionManager.getFunctionRunnerById(functionId);
+        assert(udfRunner != null);
+        try {
+            Object[] returnValues = udfRunner.callBatch(m_udfBuffer, rowCount);
+
+            VoltType returnType = udfRunner.getReturnType();
+            int sizeRequired = 0;
+            for (int i = 0; i < rowCount; i++) {
+                sizeRequired += UserDefinedFunctionRunner.getSerializedSize(returnType, returnValues[i]);
+            }
+            if (sizeRequired > m_udfBuffer.capacity()) {
+                resizeUDFBuffer(sizeRequired);
+            }
+            m_udfBuffer.clear();
+            for (int i = 0; i < rowCount; i++) {
+                UserDefinedFunctionRunner.writeValueToBuffer(m_udfBuffer, returnType, returnValues[i]);
+                returnValues[i] = null;
+            }
+            return 0;
         }
-        catch (Throwable ex2) {
-            throwable = ex2;
+        catch (Throwable ex) {
+            writeUDFErrorToBuffer(ex);
         }
-        // Getting here means the execution was not successful.
+        return -1;
+    }
+
+    // Getting here means the execution was not successful, pass the error message back to the EE.
+    private void writeUDFErrorToBuffer(Throwable throwable) {
         try {
-            assert(throwable != null);
             byte[] errorMsg = throwable.toString().getBytes(Constants.UTF8ENCODING);
             // It is very unlikely that the size of a user's error message will exceed the UDF buffer size.
             // But you never know.
@@ -832,7 +1026,6 @@ public class ExecutionEngineJNI extends ExecutionEngine {
         catch (IOException e) {
             throw new RuntimeException(e);
         }
-        return -1;
     }
 
     @Override
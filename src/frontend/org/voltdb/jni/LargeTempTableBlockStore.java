@@ -0,0 +1,358 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.jni;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.voltcore.logging.VoltLogger;
+import org.voltcore.utils.CoreUtils;
+import org.voltcore.utils.DBBPool;
+
+import com.google_voltpatches.common.util.concurrent.ListenableFuture;
+import com.google_voltpatches.common.util.concurrent.ListeningExecutorService;
+import com.google_voltpatches.common.util.concurrent.Uninterruptibles;
+
+/**
+ * Spill store behind the EE's large temp table block cache. When the cache is
+ * full the EE hands its least recently used block to {@link #store}, and gets
+ * it back from {@link #load} when a query touches the block again.
+ *
+ * Each site has one spill file, created on the first store. Blocks are written
+ * straight from EE memory and read back as read only mappings of the file, so
+ * neither direction copies through the Java heap. The space of loaded and
+ * released blocks is reused first fit and the file shrinks once its tail is free.
+ *
+ * The EE walks a table's blocks in id order, so after every load the next
+ * stored block is mapped and faulted in on a background thread.
+ *
+ * Only the site thread calls into the store; the counters are read by the
+ * statistics thread.
+ */
+public class LargeTempTableBlockStore {
+    private static final VoltLogger LOG = new VoltLogger("HOST");
+
+    public static final String SPILL_DIRECTORY = "large_query_swap";
+
+    /**
+     * Memory the EE may use for large temp table blocks before it starts
+     * spilling them, in megabytes.
+     */
+    public static final int CACHE_SIZE_MB = Integer.getInteger("LARGE_TEMP_TABLE_CACHE_MB", 50);
+
+    private static final class Extent {
+        final long m_offset;
+        final int m_length;
+
+        Extent(long offset, int length) {
+            m_offset = offset;
+            m_length = length;
+        }
+    }
+
+    private final File m_file;
+    private final ListeningExecutorService m_prefetcher;
+    private FileChannel m_channel = null;
+    private final Map<Long, Extent> m_blocks = new HashMap<Long, Extent>();
+    // Free space below m_fileLength, length by offset
+    private final TreeMap<Long, Long> m_free = new TreeMap<Long, Long>();
+    private long m_fileLength = 0;
+    private long m_physicalLength = 0;
+
+    // Mapping handed to the EE by the last load, unmapped on the next call
+    private MappedByteBuffer m_loaned = null;
+    private long m_prefetchBlockId = -1;
+    private ListenableFuture<MappedByteBuffer> m_prefetch = null;
+
+    private volatile int m_blocksStored = 0;
+    private volatile long m_blocksWritten = 0;
+    private volatile long m_bytesWritten = 0;
+    private volatile long m_blocksRead = 0;
+    private volatile long m_bytesRead = 0;
+    private volatile long m_prefetchHits = 0;
+    private volatile long m_stallNanos = 0;
+
+    public LargeTempTableBlockStore(File directory, long siteId) {
+        m_file = new File(directory, "host_" + CoreUtils.getHostIdFromHSId(siteId) +
+                "_site_" + CoreUtils.getSiteIdFromHSId(siteId) + ".swap");
+        m_prefetcher = CoreUtils.getCachedSingleThreadExecutor(
+                "Large temp table prefetch " + CoreUtils.hsIdToString(siteId), 15000);
+    }
+
+    /**
+     * Write a block to the spill file. The buffer is only read during the call.
+     */
+    public void store(long blockId, ByteBuffer block) throws IOException {
+        returnLoaned();
+        if (m_blocks.containsKey(blockId)) {
+            throw new IOException("Large temp table block " + blockId + " is already stored");
+        }
+        if (m_channel == null) {
+            open();
+        }
+
+        final int length = block.remaining();
+        final long offset = allocate(length);
+        long position = offset;
+        while (block.hasRemaining()) {
+            position += m_channel.write(block, position);
+        }
+        m_physicalLength = Math.max(m_physicalLength, position);
+        m_blocks.put(blockId, new Extent(offset, length));
+        m_blocksStored = m_blocks.size();
+        m_blocksWritten++;
+        m_bytesWritten += length;
+    }
+
+    /**
+     * Read a block back. The returned buffer stays valid until the next call
+     * into the store, by which time the EE has copied the block out of it.
+     */
+    public ByteBuffer load(long blockId) throws IOException {
+        returnLoaned();
+        final Extent extent = m_blocks.remove(blockId);
+        if (extent == null) {
+            throw new IOException("Large temp table block " + blockId + " is not stored");
+        }
+        m_blocksStored = m_blocks.size();
+
+        final long start = System.nanoTime();
+        MappedByteBuffer mapping = null;
+        if (m_prefetch != null && m_prefetchBlockId == blockId) {
+            try {
+                mapping = Uninterruptibles.getUninterruptibly(m_prefetch);
+                m_prefetchHits++;
+            } catch (ExecutionException e) {
+                LOG.warn("Failed to prefetch large temp table block " + blockId, e.getCause());
+            }
+            m_prefetch = null;
+        } else {
+            dropPrefetch();
+        }
+        if (mapping == null) {
+            mapping = map(extent);
+        }
+        m_stallNanos += System.nanoTime() - start;
+
+        // The space is only reused after the mapping has been returned
+        free(extent);
+        m_loaned = mapping;
+        m_blocksRead++;
+        m_bytesRead += extent.m_length;
+
+        prefetch(blockId + 1);
+        return mapping;
+    }
+
+    /**
+     * Forget a stored block whose table has been deleted.
+     * @return false if the block was not stored
+     */
+    public boolean release(long blockId) throws IOException {
+        returnLoaned();
+        if (m_prefetchBlockId == blockId) {
+            dropPrefetch();
+        }
+        final Extent extent = m_blocks.remove(blockId);
+        if (extent == null) {
+            return false;
+        }
+        m_blocksStored = m_blocks.size();
+        free(extent);
+        truncate();
+        return true;
+    }
+
+    public void close() {
+        try {
+            returnLoaned();
+        } catch (IOException e) {
+            LOG.warn("Failed to truncate large temp table spill file " + m_file, e);
+        }
+        dropPrefetch();
+        m_prefetcher.shutdown();
+        m_blocks.clear();
+        m_blocksStored = 0;
+        if (m_channel != null) {
+            try {
+                m_channel.close();
+            } catch (IOException e) {
+                LOG.warn("Failed to close large temp table spill file " + m_file, e);
+            }
+            m_channel = null;
+            m_file.delete();
+        }
+    }
+
+    private void open() throws IOException {
+        final File directory = m_file.getParentFile();
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Unable to create large temp table spill directory " + directory);
+        }
+        @SuppressWarnings("resource")
+        final RandomAccessFile raf = new RandomAccessFile(m_file, "rw");
+        // Anything left behind by an earlier process is garbage
+        raf.setLength(0);
+        m_channel = raf.getChannel();
+        m_fileLength = 0;
+        m_physicalLength = 0;
+    }
+
+    private MappedByteBuffer map(Extent extent) throws IOException {
+        final MappedByteBuffer mapping = m_channel.map(MapMode.READ_ONLY, extent.m_offset, extent.m_length);
+        mapping.load();
+        return mapping;
+    }
+
+    private void prefetch(long blockId) {
+        final Extent extent = m_blocks.get(blockId);
+        if (extent == null) {
+            return;
+        }
+        m_prefetchBlockId = blockId;
+        m_prefetch = m_prefetcher.submit(new Callable<MappedByteBuffer>() {
+            @Override
+            public MappedByteBuffer call() throws IOException {
+                return map(extent);
+            }
+        });
+    }
+
+    private void dropPrefetch() {
+        if (m_prefetch != null) {
+            try {
+                unmap(Uninterruptibles.getUninterruptibly(m_prefetch));
+            } catch (ExecutionException ignore) {}
+            m_prefetch = null;
+        }
+        m_prefetchBlockId = -1;
+    }
+
+    private void returnLoaned() throws IOException {
+        if (m_loaned != null) {
+            unmap(m_loaned);
+            m_loaned = null;
+            truncate();
+        }
+    }
+
+    private static void unmap(MappedByteBuffer mapping) {
+        if (mapping.capacity() > 0) {
+            DBBPool.wrapMBB(mapping).discard();
+        }
+    }
+
+    // Only shrink the file when no mapping can cover the tail
+    private void truncate() throws IOException {
+        if (m_loaned == null && m_channel != null && m_physicalLength > m_fileLength) {
+            m_channel.truncate(m_fileLength);
+            m_physicalLength = m_fileLength;
+        }
+    }
+
+    private long allocate(int length) {
+        final Iterator<Map.Entry<Long, Long>> it = m_free.entrySet().iterator();
+        while (it.hasNext()) {
+            final Map.Entry<Long, Long> free = it.next();
+            if (free.getValue() >= length) {
+                final long offset = free.getKey();
+                final long remaining = free.getValue() - length;
+                it.remove();
+                if (remaining > 0) {
+                    m_free.put(offset + length, remaining);
+                }
+                return offset;
+            }
+        }
+        final long offset = m_fileLength;
+        m_fileLength += length;
+        return offset;
+    }
+
+    private void free(Extent extent) {
+        if (m_blocks.isEmpty()) {
+            m_free.clear();
+            m_fileLength = 0;
+            return;
+        }
+        long offset = extent.m_offset;
+        long length = extent.m_length;
+        final Map.Entry<Long, Long> before = m_free.floorEntry(offset);
+        if (before != null && before.getKey() + before.getValue() == offset) {
+            m_free.remove(before.getKey());
+            offset = before.getKey();
+            length += before.getValue();
+        }
+        final Long after = m_free.remove(offset + length);
+        if (after != null) {
+            length += after;
+        }
+        if (offset + length == m_fileLength) {
+            m_fileLength = offset;
+        } else {
+            m_free.put(offset, length);
+        }
+    }
+
+    public int getBlocksStored() {
+        return m_blocksStored;
+    }
+
+    public long getBlocksWritten() {
+        return m_blocksWritten;
+    }
+
+    public long getBytesWritten() {
+        return m_bytesWritten;
+    }
+
+    public long getBlocksRead() {
+        return m_blocksRead;
+    }
+
+    public long getBytesRead() {
+        return m_bytesRead;
+    }
+
+    public long getPrefetchHits() {
+        return m_prefetchHits;
+    }
+
+    /**
+     * Time the site thread waited in {@link #load} for blocks to be read, in milliseconds.
+     */
+    public long getStallTime() {
+        return TimeUnit.NANOSECONDS.toMillis(m_stallNanos);
+    }
+
+    File getFile() {
+        return m_file;
+    }
+}
@@ -72,8 +72,13 @@ public abstract class AbstractParsedStmt {
 
     protected String m_contentDeterminismMessage = null;
 
-     // Internal statement counter
-    public static int NEXT_STMT_ID = 0;
+    // Internal statement counter, per thread since ad hoc statements are planned concurrently
+    private static final ThreadLocal<int[]> NEXT_STMT_ID = new ThreadLocal<int[]>() {
+        @Override
+        protected int[] initialValue() {
+            return new int[1];
+        }
+    };
 
     // The unique id to identify the statement
     public int m_stmtId;
@@ -187,7 +192,7 @@ public abstract class AbstractParsedStmt {
             throw new RuntimeException("Unexpected Element: " + stmtTypeElement.name);
         }
         // Set the unique id
-        retval.m_stmtId = NEXT_STMT_ID++;
+        retval.m_stmtId = nextStmtId();
         return retval;
     }
 
@@ -209,6 +214,13 @@ public abstract class AbstractParsedStmt {
         parsedStmt.postParse(sql, joinOrder);
     }
 
+    /**
+     * @return the next statement id for the statement being planned on this thread
+     */
+    public static int nextStmtId() {
+        return NEXT_STMT_ID.get()[0]++;
+    }
+
     /**
      *
      * @param sql
@@ -221,7 +233,7 @@ public abstract class AbstractParsedStmt {
             Database db, String joinOrder) {
 
         // reset the statement counters
-        NEXT_STMT_ID = 0;
+        NEXT_STMT_ID.get()[0] = 0;
         AbstractParsedStmt retval = getParsedStmt(stmtTypeElement, paramValues, db);
 
         parse(retval, sql, stmtTypeElement, joinOrder);
@@ -17,13 +17,25 @@
 
 package org.voltdb.planner;
 
-import java.util.HashMap;
 import java.util.Map.Entry;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.voltdb.jni.ExecutionEngine;
 import org.voltdb.jni.Sha1Wrapper;
 
+/**
+ * Plan fragments shared by all the sites of the host, keyed by plan hash and
+ * by the id used with the EE.
+ *
+ * Lookups and reference counting of cached fragments don't lock. Loading a
+ * new fragment, eviction and moving a disused fragment into the LRU map
+ * synchronize on FragInfo.class. A fragment is evicted by swinging its
+ * reference count from 0 to -1, so a concurrent add ref either wins and
+ * keeps it or sees -1 and loads the plan again.
+ */
 public abstract class ActivePlanRepository {
 
     /// A plan fragment entry in the cache.
@@ -31,7 +43,7 @@ public abstract class ActivePlanRepository {
         final Sha1Wrapper hash;
         final long fragId;
         final byte[] plan;
-        int refCount;
+        final AtomicInteger refCount;
         /// The ticker value current when this fragment was last (dis)used.
         /// A new FragInfo or any other not in the LRU map because it is being referenced has value 0.
         /// A non-zero value is either the fragment's current key in the LRU map OR its intended/future
@@ -47,14 +59,16 @@ public abstract class ActivePlanRepository {
             this.hash = key;
             this.plan = plan;
             this.fragId = nextId;
-            this.refCount = 0;
+            this.refCount = new AtomicInteger(0);
             this.lastUse = 0;
             this.stmtText = stmtText;
         }
     }
 
-    private static HashMap<Sha1Wrapper, FragInfo> m_plansByHash = new HashMap<Sha1Wrapper, FragInfo>();
-    private static HashMap<Long, FragInfo> m_plansById = new HashMap<Long, FragInfo>();
+    private static final ConcurrentHashMap<Sha1Wrapper, FragInfo> m_plansByHash =
+            new ConcurrentHashMap<Sha1Wrapper, FragInfo>();
+    private static final ConcurrentHashMap<Long, FragInfo> m_plansById = new ConcurrentHashMap<Long, FragInfo>();
+    /// Guarded by FragInfo.class
     private static TreeMap<Long, FragInfo> m_plansLRU = new TreeMap<Long, FragInfo>();
     /// A ticker that provides temporary ids for all cached fragments, for communicating with the EE.
     private static final long INITIAL_FRAG_ID = 5000;
@@ -62,15 +76,17 @@ public abstract class ActivePlanRepository {
     /// A ticker that allows the sequencing of all fragment uses, providing a key to the LRU map.
     private static long m_nextFragUse = 1;
 
+    /// Fragment cache statistics, see PlanCacheStats
+    private static final LongAdder m_hits = new LongAdder();
+    private static final LongAdder m_misses = new LongAdder();
+    private static final LongAdder m_evictions = new LongAdder();
+
     /**
      * Get the site-local fragment id for a given plan identified by 20-byte sha-1 hash
      */
     public static long getFragmentIdForPlanHash(byte[] planHash) {
         Sha1Wrapper key = new Sha1Wrapper(planHash);
-        FragInfo frag = null;
-        synchronized (FragInfo.class) {
-            frag = m_plansByHash.get(key);
-        }
+        FragInfo frag = m_plansByHash.get(key);
         assert(frag != null);
         return frag.fragId;
     }
@@ -80,10 +96,7 @@ public abstract class ActivePlanRepository {
      */
     public static String getStmtTextForPlanHash(byte[] planHash) {
         Sha1Wrapper key = new Sha1Wrapper(planHash);
-        FragInfo frag = null;
-        synchronized (FragInfo.class) {
-            frag = m_plansByHash.get(key);
-        }
+        FragInfo frag = m_plansByHash.get(key);
         assert(frag != null);
         // SQL statement text is not stored in the repository for ad hoc statements
         // -- it may be inaccurate because we parameterize the statement on its constants.
@@ -99,33 +112,57 @@ public abstract class ActivePlanRepository {
      */
     public static long loadOrAddRefPlanFragment(byte[] planHash, byte[] plan, String stmtText) {
         Sha1Wrapper key = new Sha1Wrapper(planHash);
+        FragInfo frag = m_plansByHash.get(key);
+        if (frag != null && tryAddRef(frag, stmtText)) {
+            m_hits.increment();
+            return frag.fragId;
+        }
+
         synchronized (FragInfo.class) {
-            FragInfo frag = m_plansByHash.get(key);
-            if (frag == null) {
-                frag = new FragInfo(key, plan, m_nextFragId++, stmtText);
-                m_plansByHash.put(frag.hash, frag);
-                m_plansById.put(frag.fragId, frag);
-                if (m_plansById.size() > ExecutionEngine.EE_PLAN_CACHE_SIZE) {
-                    evictLRUfragment();
-                }
+            frag = m_plansByHash.get(key);
+            if (frag != null && tryAddRef(frag, stmtText)) {
+                m_hits.increment();
+                return frag.fragId;
+            }
+            m_misses.increment();
+            frag = new FragInfo(key, plan, m_nextFragId++, stmtText);
+            frag.refCount.set(1);
+            m_plansByHash.put(frag.hash, frag);
+            m_plansById.put(frag.fragId, frag);
+            if (m_plansById.size() > ExecutionEngine.EE_PLAN_CACHE_SIZE) {
+                evictLRUfragment();
             }
+            return frag.fragId;
+        }
+    }
 
-            // Bit of a hack to work around an issue where a statement-less adhoc
-            // fragment could be identical to a statement-needing regular procedure.
-            // This doesn't really address the broader issue that fragment hashes
-            // are not 1-1 with SQL statements.
-            if (frag.stmtText == null) {
-                frag.stmtText = stmtText;
+    /**
+     * Add a reference to a cached fragment unless it has been evicted.
+     */
+    private static boolean tryAddRef(FragInfo frag, String stmtText) {
+        // The fragment MAY be in the LRU map.
+        // An incremented refCount is a lazy way to keep it safe from eviction
+        // without having to update the map.
+        // This optimizes for popular fragments in a small or stable cache that may be reused
+        // many times before the eviction process needs to take any notice.
+        while (true) {
+            int refCount = frag.refCount.get();
+            if (refCount < 0) {
+                return false;
             }
+            if (frag.refCount.compareAndSet(refCount, refCount + 1)) {
+                break;
+            }
+        }
 
-            // The fragment MAY be in the LRU map.
-            // An incremented refCount is a lazy way to keep it safe from eviction
-            // without having to update the map.
-            // This optimizes for popular fragments in a small or stable cache that may be reused
-            // many times before the eviction process needs to take any notice.
-            frag.refCount++;
-            return frag.fragId;
+        // Bit of a hack to work around an issue where a statement-less adhoc
+        // fragment could be identical to a statement-needing regular procedure.
+        // This doesn't really address the broader issue that fragment hashes
+        // are not 1-1 with SQL statements.
+        if (frag.stmtText == null) {
+            frag.stmtText = stmtText;
         }
+        return true;
     }
 
     private static void evictLRUfragment() {
@@ -139,7 +176,7 @@ public abstract class ActivePlanRepository {
             // Remove the earliest entry.
             Entry<Long, FragInfo> lru = m_plansLRU.pollFirstEntry();
             FragInfo frag = lru.getValue();
-            if (frag.refCount > 0) {
+            if (frag.refCount.get() > 0) {
                 // The fragment is being re-used, it is no longer an eviction candidate.
                 // It is only in the map due to the laziness in loadOrAddRefPlanFragment.
                 // It will be re-considered (at a later key) once it is no longer referenced.
@@ -160,11 +197,12 @@ public abstract class ActivePlanRepository {
                 // its key will now match its lastUse value.
                 m_plansLRU.put(frag.lastUse, frag);
             }
-            else {
+            else if (frag.refCount.compareAndSet(0, -1)) {
                 // Found and removed the actual up-to-date least recently used entry from the LRU map.
                 // Remove the entry from the other collections.
                 m_plansById.remove(frag.fragId);
                 m_plansByHash.remove(frag.hash);
+                m_evictions.increment();
                 // Normally, one eviction for each new fragment is enough to restore order.
                 // BUT, if a prior call ever failed to find an unused fragment in the cache,
                 // the cache may have grown beyond its normal size. In that rare case,
@@ -177,6 +215,10 @@ public abstract class ActivePlanRepository {
                 }
                 return;
             }
+            else {
+                // Referenced again since the first check, same as above.
+                frag.lastUse = 0;
+            }
         }
         // Strange. All FragInfo entries appear to be in use. There's nothing to evict.
         // Let the cache bloat a little and try again later after the next new fragment.
@@ -190,21 +232,24 @@ public abstract class ActivePlanRepository {
         // skip dummy/invalid fragment ids
         if (fragmentId <= 0) return;
 
-        FragInfo frag = null;
+        FragInfo frag = m_plansById.get(fragmentId);
+        // The assert that used to be here would fail in TestAdHocQueries when it
+        // re-initialized the RealVoltDB, clearing the m_plansById before
+        // all SQLStmts were finalized. Maybe that's just a "test bug" that would be
+        // better fixed with some kind of test-only cleanup hook?
+        // OR It's possible that this early return is covering for a minor bug.
+        // Maybe SQLStmt.finalize is calling this method when it shouldn't?
+        // Maybe that's because the SQLStmt site member should be null in more cases?
+        //assert(frag != null);
+        if (frag == null) {
+            return;
+        }
+        if (frag.refCount.decrementAndGet() != 0) {
+            return;
+        }
         synchronized (FragInfo.class) {
-            frag = m_plansById.get(fragmentId);
-            // The assert that used to be here would fail in TestAdHocQueries when it
-            // re-initialized the RealVoltDB, clearing the m_plansById before
-            // all SQLStmts were finalized. Maybe that's just a "test bug" that would be
-            // better fixed with some kind of test-only cleanup hook?
-            // OR It's possible that this early return is covering for a minor bug.
-            // Maybe SQLStmt.finalize is calling this method when it shouldn't?
-            // Maybe that's because the SQLStmt site member should be null in more cases?
-            //assert(frag != null);
-            if (frag == null) {
-                return;
-            }
-            if (--frag.refCount == 0) {
+            // Evicted or referenced again since the decrement
+            if (frag.refCount.get() == 0) {
                 // The disused fragment belongs in the LRU map at the end -- at the current "ticker".
                 // If its lastUse value is 0 like a new entry's, it is not currently in the map.
                 // Put into the map in its proper position.
@@ -231,10 +276,7 @@ public abstract class ActivePlanRepository {
     public static byte[] planForFragmentId(long fragmentId) {
         assert(fragmentId > 0);
 
-        FragInfo frag = null;
-        synchronized (FragInfo.class) {
-            frag = m_plansById.get(fragmentId);
-        }
+        FragInfo frag = m_plansById.get(fragmentId);
         assert(frag != null);
         return frag.plan;
     }
@@ -245,7 +287,7 @@ public abstract class ActivePlanRepository {
         synchronized (FragInfo.class) {
             FragInfo frag = new FragInfo(key, plan, fragmentId, stmtText);
             m_plansById.put(frag.fragId, frag);
-            frag.refCount++;
+            frag.refCount.incrementAndGet();
         }
     }
 
@@ -258,4 +300,20 @@ public abstract class ActivePlanRepository {
             m_nextFragUse = 1;
         }
     }
+
+    public static int getFragmentCacheSize() {
+        return m_plansById.size();
+    }
+
+    public static long getFragmentCacheHits() {
+        return m_hits.sum();
+    }
+
+    public static long getFragmentCacheMisses() {
+        return m_misses.sum();
+    }
+
+    public static long getFragmentCacheEvictions() {
+        return m_evictions.sum();
+    }
 }
@@ -50,10 +50,15 @@ public class ParameterizationInfo {
      * Stores the current count of parameters that we've
      * assigned to the parameter vector in the EE.
      *
-     * TODO: this will need to become thread safe
-     * when parallel planning is possible.
+     * Ad hoc statements are planned on several threads at once,
+     * each with its own planner, so the count is kept per thread.
      */
-    static private int curParamIndex = 0;
+    static private final ThreadLocal<int[]> curParamIndex = new ThreadLocal<int[]>() {
+        @Override
+        protected int[] initialValue() {
+            return new int[1];
+        }
+    };
 
     /**
      * Get the next parameter index for the current statement.
@@ -62,9 +67,7 @@ public class ParameterizationInfo {
      * @return the next index
      */
     public static int getNextParamIndex() {
-        int nextOffset = curParamIndex;
-        ++curParamIndex;
-        return nextOffset;
+        return curParamIndex.get()[0]++;
     }
 
     /**
@@ -72,7 +75,7 @@ public class ParameterizationInfo {
      * a new statement.
      */
     public static void resetCurrentParamIndex() {
-        curParamIndex = 0;
+        curParamIndex.get()[0] = 0;
     }
 
     /**
@@ -25,8 +25,10 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
+import org.voltdb.VoltType;
 import org.voltdb.catalog.Database;
 import org.voltdb.expressions.AbstractExpression;
+import org.voltdb.expressions.AbstractSubqueryExpression;
 import org.voltdb.expressions.ExpressionUtil;
 import org.voltdb.expressions.TupleValueExpression;
 import org.voltdb.planner.parseinfo.BranchNode;
@@ -38,11 +40,13 @@ import org.voltdb.planner.parseinfo.SubqueryLeafNode;
 import org.voltdb.plannodes.AbstractJoinPlanNode;
 import org.voltdb.plannodes.AbstractPlanNode;
 import org.voltdb.plannodes.AbstractReceivePlanNode;
+import org.voltdb.plannodes.HashJoinPlanNode;
 import org.voltdb.plannodes.IndexScanPlanNode;
 import org.voltdb.plannodes.IndexUseForOrderBy;
 import org.voltdb.plannodes.MaterializedScanPlanNode;
 import org.voltdb.plannodes.NestLoopIndexPlanNode;
 import org.voltdb.plannodes.NestLoopPlanNode;
+import org.voltdb.types.ExpressionType;
 import org.voltdb.types.JoinType;
 import org.voltdb.utils.PermutationGenerator;
 
@@ -57,6 +61,12 @@ import org.voltdb.utils.PermutationGenerator;
  */
 public class SelectSubPlanAssembler extends SubPlanAssembler {
 
+    /**
+     * Unindexed equi-joins on temp results are planned as nested loops
+     * unless -DENABLE_HASH_JOIN=true is set. Tests may set this directly.
+     */
+    static boolean HASH_JOIN_ENABLED = Boolean.getBoolean("ENABLE_HASH_JOIN");
+
     /** The list of generated plans. This allows their generation in batches.*/
     ArrayDeque<AbstractPlanNode> m_plans = new ArrayDeque<>();
 
@@ -575,9 +585,10 @@ public class SelectSubPlanAssembler extends SubPlanAssembler {
                                                               innerScanPlan);
             // Propagate information used for order by clauses in window functions
             // and the statement level order by clause.  This is only if the
-            // branch node is an inner join.
+            // branch node is an inner join that keeps the outer order.
             if ((answer != null)
                     && (branchJoinNode.getJoinType() == JoinType.INNER)
+                    && ! (answer instanceof HashJoinPlanNode)
                     && outerScanPlan instanceof IndexSortablePlanNode) {
                 IndexUseForOrderBy indexUseForJoin = answer.indexUse();
                 IndexUseForOrderBy indexUseFromScan = ((IndexSortablePlanNode)outerScanPlan).indexUse();
@@ -722,7 +733,6 @@ public class SelectSubPlanAssembler extends SubPlanAssembler {
 
         AbstractJoinPlanNode ajNode = null;
         if (canHaveNLJ) {
-            NestLoopPlanNode nljNode = new NestLoopPlanNode();
             // get all the clauses that join the applicable two tables
             // Copy innerAccessPath.joinExprs to leave it unchanged,
             // avoiding accumulation of redundant expressions when
@@ -763,6 +773,19 @@ public class SelectSubPlanAssembler extends SubPlanAssembler {
                 // the inner node ONLY, that can not be pushed down.
                 joinClauses.addAll(innerAccessPath.otherExprs);
             }
+
+            // An unindexed equi-join with a temp result on the inner side
+            // (a subquery, or partitioned rows sent to the coordinator) is
+            // better served by hashing than by rescanning that result for
+            // every outer tuple.
+            AbstractJoinPlanNode nljNode = null;
+            if (innerAccessPath.index == null &&
+                    (innerJoinNode instanceof SubqueryLeafNode || needInnerSendReceive)) {
+                nljNode = getHashJoinPlanNode(joinNode, joinClauses);
+            }
+            if (nljNode == null) {
+                nljNode = new NestLoopPlanNode();
+            }
             nljNode.setJoinPredicate(ExpressionUtil.combinePredicates(joinClauses));
 
             // combine the tails plan graph with the new head node
@@ -810,6 +833,82 @@ public class SelectSubPlanAssembler extends SubPlanAssembler {
         return ajNode;
     }
 
+    /**
+     * Build a hash join for the given join node if any of its join clauses
+     * are hashable equalities between the outer and the inner side.
+     * The clauses themselves stay with the caller, to become the join predicate.
+     *
+     * @param joinNode The join node to plan.
+     * @param joinClauses The inner-outer clauses of the join.
+     * @return A HashJoinPlanNode with its hash keys set, or null if the join
+     * can not be done by hashing.
+     */
+    private static HashJoinPlanNode getHashJoinPlanNode(BranchNode joinNode,
+                                                        List<AbstractExpression> joinClauses) {
+        if ( ! HASH_JOIN_ENABLED) {
+            return null;
+        }
+        // The unmatched inner tuples of a FULL join would need to be tracked
+        // in the hash table. Leave those to the NestLoopPlanNode.
+        JoinType joinType = joinNode.getJoinType();
+        if (joinType != JoinType.INNER && joinType != JoinType.LEFT) {
+            return null;
+        }
+        Collection<String> innerTables = joinNode.getRightNode().generateTableJoinOrder();
+        HashJoinPlanNode hjNode = null;
+        for (AbstractExpression clause : joinClauses) {
+            if (clause.getExpressionType() != ExpressionType.COMPARE_EQUAL ||
+                    clause.hasAnySubexpressionOfClass(AbstractSubqueryExpression.class)) {
+                continue;
+            }
+            AbstractExpression left = clause.getLeft();
+            AbstractExpression right = clause.getRight();
+            AbstractExpression outerKey;
+            AbstractExpression innerKey;
+            if (isHashKeyOfTables(left, innerTables, false) && isHashKeyOfTables(right, innerTables, true)) {
+                outerKey = left;
+                innerKey = right;
+            }
+            else if (isHashKeyOfTables(right, innerTables, false) && isHashKeyOfTables(left, innerTables, true)) {
+                outerKey = right;
+                innerKey = left;
+            }
+            else {
+                continue;
+            }
+            // Both sides must hash alike whenever they compare equal.
+            // Values of different types, and floats (0.0 = -0.0), may not.
+            VoltType keyType = outerKey.getValueType();
+            if (keyType == null || keyType != innerKey.getValueType() || keyType == VoltType.FLOAT) {
+                continue;
+            }
+            if (hjNode == null) {
+                hjNode = new HashJoinPlanNode();
+            }
+            hjNode.addHashKeys(outerKey, innerKey);
+        }
+        return hjNode;
+    }
+
+    /**
+     * @return true if the expression references columns only from the inner tables
+     * (wantInner) or only from the outer tables (! wantInner), and at least one column.
+     */
+    private static boolean isHashKeyOfTables(AbstractExpression expr,
+                                             Collection<String> innerTables,
+                                             boolean wantInner) {
+        List<TupleValueExpression> tves = ExpressionUtil.getTupleValueExpressions(expr);
+        if (tves.isEmpty()) {
+            return false;
+        }
+        for (TupleValueExpression tve : tves) {
+            if (innerTables.contains(tve.getTableAlias()) != wantInner) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * A method to filter out single-TVE expressions.
      *
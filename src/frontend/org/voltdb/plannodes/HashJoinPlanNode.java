@@ -0,0 +1,186 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.plannodes;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.json_voltpatches.JSONException;
+import org.json_voltpatches.JSONObject;
+import org.json_voltpatches.JSONStringer;
+import org.voltdb.catalog.Database;
+import org.voltdb.compiler.DatabaseEstimates;
+import org.voltdb.compiler.ScalarValueHints;
+import org.voltdb.expressions.AbstractExpression;
+import org.voltdb.expressions.ExpressionUtil;
+import org.voltdb.expressions.TupleValueExpression;
+import org.voltdb.types.PlanNodeType;
+import org.voltdb.types.SortDirectionType;
+
+/**
+ * An equi-join of two child results that hashes one side on its join keys
+ * and probes the hash table with the other side, instead of rescanning
+ * the inner child for every outer tuple.
+ *
+ * The OUTER_HASH_EXPRESSIONS are evaluated against outer tuples and the
+ * INNER_HASH_EXPRESSIONS against inner tuples, pairwise. The complete join
+ * predicate (including the equalities the keys came from) is kept and
+ * re-applied to each candidate pair, so a hash collision never produces
+ * a false match. The EE picks the build side at run time: the inner child
+ * for LEFT joins, otherwise whichever child produced fewer tuples.
+ * Because of that, the output order follows neither child.
+ */
+public class HashJoinPlanNode extends AbstractJoinPlanNode {
+
+    public enum Members {
+        OUTER_HASH_EXPRESSIONS,
+        INNER_HASH_EXPRESSIONS;
+    }
+
+    private List<AbstractExpression> m_outerHashExpressions = new ArrayList<>();
+    private List<AbstractExpression> m_innerHashExpressions = new ArrayList<>();
+
+    public HashJoinPlanNode() {
+        super();
+    }
+
+    @Override
+    public PlanNodeType getPlanNodeType() {
+        return PlanNodeType.HASHJOIN;
+    }
+
+    @Override
+    public void validate() throws Exception {
+        super.validate();
+
+        assert(m_outerHashExpressions.size() == m_innerHashExpressions.size());
+        if (m_outerHashExpressions.isEmpty()) {
+            throw new Exception("ERROR: Hash join has no hash key expressions");
+        }
+        for (AbstractExpression expr : m_outerHashExpressions) {
+            expr.validate();
+        }
+        for (AbstractExpression expr : m_innerHashExpressions) {
+            expr.validate();
+        }
+    }
+
+    /**
+     * Add a pair of join keys compared for equality by the join predicate.
+     * @param outerExpr the key as computed from the outer tuple
+     * @param innerExpr the key as computed from the inner tuple
+     */
+    public void addHashKeys(AbstractExpression outerExpr, AbstractExpression innerExpr) {
+        m_outerHashExpressions.add(outerExpr.clone());
+        m_innerHashExpressions.add(innerExpr.clone());
+    }
+
+    public List<AbstractExpression> getOuterHashExpressions() {
+        return m_outerHashExpressions;
+    }
+
+    public List<AbstractExpression> getInnerHashExpressions() {
+        return m_innerHashExpressions;
+    }
+
+    @Override
+    public void resolveColumnIndexes() {
+        super.resolveColumnIndexes();
+
+        // The keys of each side are evaluated against that side's tuple alone,
+        // so unlike the join predicates, every key TVE refers to table 0.
+        resolveHashKeys(m_outerHashExpressions, m_children.get(0).getOutputSchema());
+        resolveHashKeys(m_innerHashExpressions, m_children.get(1).getOutputSchema());
+    }
+
+    private static void resolveHashKeys(List<AbstractExpression> keys, NodeSchema schema) {
+        for (AbstractExpression key : keys) {
+            for (TupleValueExpression tve : ExpressionUtil.getTupleValueExpressions(key)) {
+                int index = tve.setColumnIndexUsingSchema(schema);
+                if (index == -1) {
+                    throw new RuntimeException(
+                            "Unable to resolve column index for hash join key TVE: " +
+                            tve.toString());
+                }
+                tve.setTableIndex(0);
+            }
+        }
+    }
+
+    @Override
+    public void computeCostEstimates(long childOutputTupleCountEstimate,
+                                     DatabaseEstimates estimates,
+                                     ScalarValueHints[] paramHints)
+    {
+        // Each child is read exactly once, to build and then to probe the hash table.
+        // That is also all the NestLoopPlanNode estimate accounts for, so the two are
+        // costed alike and the choice between join orders is left unchanged.
+        m_estimatedOutputTupleCount = childOutputTupleCountEstimate;
+        assert(m_children.size() == 2);
+        m_estimatedProcessedTupleCount = discountEstimatedProcessedTupleCount(m_children.get(0)) +
+                m_children.get(1).m_estimatedProcessedTupleCount;
+    }
+
+    @Override
+    public boolean isOutputOrdered(List<AbstractExpression> sortExpressions, List<SortDirectionType> sortDirections) {
+        // The build side is only chosen at run time.
+        return false;
+    }
+
+    @Override
+    public void resolveSortDirection() {
+        m_sortDirection = SortDirectionType.INVALID;
+    }
+
+    @Override
+    public void findAllExpressionsOfClass(Class< ? extends AbstractExpression> aeClass, Set<AbstractExpression> collected) {
+        super.findAllExpressionsOfClass(aeClass, collected);
+        for (AbstractExpression expr : m_outerHashExpressions) {
+            collected.addAll(expr.findAllSubexpressionsOfClass(aeClass));
+        }
+        for (AbstractExpression expr : m_innerHashExpressions) {
+            collected.addAll(expr.findAllSubexpressionsOfClass(aeClass));
+        }
+    }
+
+    @Override
+    public void toJSONString(JSONStringer stringer) throws JSONException {
+        super.toJSONString(stringer);
+        stringer.key(Members.OUTER_HASH_EXPRESSIONS.name()).array(m_outerHashExpressions);
+        stringer.key(Members.INNER_HASH_EXPRESSIONS.name()).array(m_innerHashExpressions);
+    }
+
+    @Override
+    public void loadFromJSONObject(JSONObject jobj, Database db) throws JSONException {
+        super.loadFromJSONObject(jobj, db);
+        m_outerHashExpressions.clear();
+        m_innerHashExpressions.clear();
+        AbstractExpression.loadFromJSONArrayChild(m_outerHashExpressions, jobj,
+                                                  Members.OUTER_HASH_EXPRESSIONS.name(), null);
+        AbstractExpression.loadFromJSONArrayChild(m_innerHashExpressions, jobj,
+                                                  Members.INNER_HASH_EXPRESSIONS.name(), null);
+    }
+
+    @Override
+    protected String explainPlanForNode(String indent) {
+        return "HASH " + this.m_joinType.toString() + " JOIN" +
+                explainFilters(indent);
+    }
+
+}
@@ -38,7 +38,7 @@ import org.voltdb.catalog.Database;
 import org.voltdb.client.ClientResponse;
 import org.voltdb.compiler.AdHocPlannedStatement;
 import org.voltdb.compiler.AdHocPlannedStmtBatch;
-import org.voltdb.compiler.PlannerTool;
+import org.voltdb.compiler.PlannerPool;
 import org.voltdb.parser.SQLLexer;
 import org.voltdb.planner.StatementPartitioning;
 import org.voltdb.utils.MiscUtils;
@@ -172,7 +172,7 @@ public abstract class AdHocNTBase extends UpdateApplicationBase {
      * Compile a batch of one or more SQL statements into a set of plans.
      * Parameters are valid iff there is exactly one DML/DQL statement.
      */
-    public static AdHocPlannedStatement compileAdHocSQL(PlannerTool plannerTool,
+    public static AdHocPlannedStatement compileAdHocSQL(PlannerPool plannerPool,
                                                         String sqlStatement,
                                                         boolean inferPartitioning,
                                                         Object userPartitionKey,
@@ -181,9 +181,8 @@ public abstract class AdHocNTBase extends UpdateApplicationBase {
                                                         Object[] userParamSet)
                                                                 throws AdHocPlanningException
     {
-        assert(plannerTool != null);
+        assert(plannerPool != null);
         assert(sqlStatement != null);
-        final PlannerTool ptool = plannerTool;
 
         // Take advantage of the planner optimization for inferring single partition work
         // when the batch has one statement.
@@ -200,7 +199,7 @@ public abstract class AdHocNTBase extends UpdateApplicationBase {
         }
 
         try {
-            return ptool.planSql(sqlStatement,
+            return plannerPool.planSql(sqlStatement,
                     partitioning,
                     explainMode != ExplainMode.NONE,
                     userParamSet,
@@ -273,7 +272,7 @@ public abstract class AdHocNTBase extends UpdateApplicationBase {
 
         for (final String sqlStatement : sqlStatements) {
             try {
-                AdHocPlannedStatement result = compileAdHocSQL(context.m_ptool,
+                AdHocPlannedStatement result = compileAdHocSQL(context.m_plannerPool,
                                                                sqlStatement,
                                                                inferSP,
                                                                userPartitionKey,
@@ -460,7 +459,7 @@ public abstract class AdHocNTBase extends UpdateApplicationBase {
         return callProcedure(procedureName, params);
     }
 
-    public static AdHocPlannedStmtBatch plan(PlannerTool ptool, String sql, Object[] userParams, boolean singlePartition)
+    public static AdHocPlannedStmtBatch plan(PlannerPool plannerPool, String sql, Object[] userParams, boolean singlePartition)
             throws AdHocPlanningException
     {
         List<String> sqlStatements = new ArrayList<>();
@@ -488,7 +487,7 @@ public abstract class AdHocNTBase extends UpdateApplicationBase {
         List<AdHocPlannedStatement> stmts = new ArrayList<>();
         AdHocPlannedStatement result = null;
 
-        result = compileAdHocSQL(ptool,
+        result = compileAdHocSQL(plannerPool,
                                  sql,
                                  false,
                                  partitionKey,
@@ -22,13 +22,18 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import org.json_voltpatches.JSONException;
 import org.json_voltpatches.JSONObject;
 import org.voltcore.utils.CoreUtils;
 import org.voltcore.utils.InstanceId;
+import org.voltcore.utils.Pair;
 import org.voltdb.DefaultSnapshotDataTarget;
 import org.voltdb.ExtensibleSnapshotDigestData;
 import org.voltdb.SnapshotDataFilter;
@@ -57,9 +62,74 @@ import com.google_voltpatches.common.collect.Maps;
  * responsibility for writing them is spread round-robin across the sites on a
  * node.  Partitioned tables are written to the same target per table by every
  * site on a node.
+ *
+ * An incremental snapshot does not scan tables that are unchanged since the previous
+ * incremental snapshot written by this host to the same path. The file for such a
+ * table holds no rows and names the file of the earlier snapshot that does instead.
  */
 public class NativeSnapshotWritePlan extends SnapshotWritePlan
 {
+    /**
+     * What is known about the last incremental snapshot completed by this host
+     */
+    private static class IncrementalBase
+    {
+        final String m_path;
+        final String m_nonce;
+        final long m_txnId;
+        final long m_catalogCRC;
+        final Set<Integer> m_partitions;
+        final int m_partitionCount;
+        final boolean m_isActiveActiveDRed;
+        // Table modification counts by partition id and table name as of the snapshot
+        final Map<Integer, Map<String, Long>> m_modificationCounts;
+        // The file holding the rows of each table, from an older snapshot if it was carried over
+        final Map<String, File> m_tableFiles;
+
+        IncrementalBase(String path, String nonce, long txnId, long catalogCRC,
+                        Set<Integer> partitions, int partitionCount, boolean isActiveActiveDRed,
+                        Map<Integer, Map<String, Long>> modificationCounts,
+                        Map<String, File> tableFiles)
+        {
+            m_path = path;
+            m_nonce = nonce;
+            m_txnId = txnId;
+            m_catalogCRC = catalogCRC;
+            m_partitions = partitions;
+            m_partitionCount = partitionCount;
+            m_isActiveActiveDRed = isActiveActiveDRed;
+            m_modificationCounts = modificationCounts;
+            m_tableFiles = tableFiles;
+        }
+
+        /**
+         * @return the file holding the rows of the table if no partition modified it since
+         * this snapshot was taken, null if the table has to be written again
+         */
+        File getFileForUnchangedTable(String tableName, Map<Integer, Map<String, Long>> modificationCounts)
+        {
+            final File file = m_tableFiles.get(tableName);
+            if (file == null || !m_modificationCounts.keySet().equals(modificationCounts.keySet())) {
+                return null;
+            }
+            for (Map.Entry<Integer, Map<String, Long>> e : modificationCounts.entrySet()) {
+                final Long count = e.getValue().get(tableName);
+                if (count == null || !count.equals(m_modificationCounts.get(e.getKey()).get(tableName))) {
+                    return null;
+                }
+            }
+            return file.exists() ? file : null;
+        }
+    }
+
+    private static volatile IncrementalBase m_incrementalBase = null;
+
+    // Tables not scanned by this snapshot and the file holding their rows
+    private final List<Pair<Table, File>> m_carriedTables = new ArrayList<Pair<Table, File>>();
+    private IncrementalBase m_carriedFrom = null;
+    // Becomes the base of the next incremental snapshot if this one succeeds
+    private IncrementalBase m_nextIncrementalBase = null;
+
     @Override
     public Callable<Boolean> createSetup(String file_path, String pathType,
                                             String file_nonce,
@@ -105,6 +175,21 @@ public class NativeSnapshotWritePlan extends SnapshotWritePlan
             tableArray = config.tables;
         }
 
+        final Map<Integer, Map<String, Long>> modificationCounts = SnapshotSiteProcessor.getTableModificationCounts();
+        final Set<Integer> localPartitions = new HashSet<Integer>(tracker.getPartitionsForHost(context.getHostId()));
+        final boolean isActiveActiveDRed = DrRoleType.XDCR.value().equals(context.getCluster().getDrrole());
+        final IncrementalBase base = m_incrementalBase;
+        final boolean incremental = config.incremental && !modificationCounts.isEmpty();
+        if (incremental && base != null &&
+                base.m_path.equals(file_path) &&
+                base.m_catalogCRC == context.getCatalogCRC() &&
+                base.m_partitions.equals(localPartitions) &&
+                base.m_partitionCount == context.getNumberOfPartitions() &&
+                base.m_isActiveActiveDRed == isActiveActiveDRed) {
+            m_carriedFrom = base;
+        }
+        final Map<String, File> tableFiles = new HashMap<String, File>();
+
         m_snapshotRecord =
             SnapshotRegistry.startSnapshot(
                     txnId,
@@ -119,6 +204,23 @@ public class NativeSnapshotWritePlan extends SnapshotWritePlan
         final ArrayList<SnapshotTableTask> replicatedSnapshotTasks =
             new ArrayList<SnapshotTableTask>();
         for (final Table table : tableArray) {
+            final File saveFile = SnapshotUtil.constructFileForTable(
+                    table, file_path, file_nonce, SnapshotFormat.NATIVE, context.getHostId());
+            final File baseFile = m_carriedFrom == null ? null :
+                    m_carriedFrom.getFileForUnchangedTable(table.getTypeName(), modificationCounts);
+            if (baseFile != null && !baseFile.getAbsoluteFile().equals(saveFile.getAbsoluteFile())) {
+                SNAP_LOG.debug("Table " + table.getTypeName() + " is unchanged, its rows are in " + baseFile);
+                m_carriedTables.add(Pair.of(table, baseFile));
+                tableFiles.put(table.getTypeName(), baseFile);
+                result.addRow(context.getHostId(),
+                        CoreUtils.getHostnameOrAddress(),
+                        table.getTypeName(),
+                        "SUCCESS",
+                        "");
+                continue;
+            }
+            tableFiles.put(table.getTypeName(), saveFile);
+
             final SnapshotTableTask task =
                     new SnapshotTableTask(
                             table,
@@ -141,10 +243,21 @@ public class NativeSnapshotWritePlan extends SnapshotWritePlan
                     "");
         }
 
-        if (tableArray.length > 0 && replicatedSnapshotTasks.isEmpty() && partitionedSnapshotTasks.isEmpty()) {
+        if (tableArray.length > 0 && replicatedSnapshotTasks.isEmpty() && partitionedSnapshotTasks.isEmpty() &&
+                m_carriedTables.isEmpty()) {
             SnapshotRegistry.discardSnapshot(m_snapshotRecord);
         }
 
+        if (incremental) {
+            if (!m_carriedTables.isEmpty()) {
+                SNAP_LOG.info("Incremental snapshot " + file_nonce + " refers to snapshot " + m_carriedFrom.m_nonce +
+                        " for " + m_carriedTables.size() + " unchanged tables");
+            }
+            m_nextIncrementalBase = new IncrementalBase(file_path, file_nonce, txnId, context.getCatalogCRC(),
+                    localPartitions, context.getNumberOfPartitions(), isActiveActiveDRed,
+                    modificationCounts, tableFiles);
+        }
+
         // Native snapshots place the partitioned tasks on every site and round-robin the
         // replicated tasks across all the sites on every host
         placePartitionedTasks(partitionedSnapshotTasks, tracker.getSitesForHost(context.getHostId()));
@@ -187,6 +300,9 @@ public class NativeSnapshotWritePlan extends SnapshotWritePlan
             {
                 final AtomicInteger numTables = new AtomicInteger(tables.length);
 
+                if (!m_carriedTables.isEmpty()) {
+                    extraSnapshotData.setIncrementalBase(describeCarriedTables());
+                }
                 NativeSnapshotWritePlan.createFileBasedCompletionTasks(file_path, pathType, file_nonce,
                         txnId, partitionTransactionIds, context, extraSnapshotData,
                         hashinatorData,
@@ -204,6 +320,30 @@ public class NativeSnapshotWritePlan extends SnapshotWritePlan
                     task.setTarget(target);
                 }
 
+                for (Pair<Table, File> carried : m_carriedTables) {
+                    createDataTargetForTable(file_path, file_nonce, carried.getFirst(), txnId,
+                                             context.getHostId(), context.getCluster().getTypeName(),
+                                             context.getDatabase().getTypeName(), context.getNumberOfPartitions(),
+                                             DrRoleType.XDCR.value().equals(context.getCluster().getDrrole()),
+                                             tracker, timestamp, numTables, snapshotRecord, carried.getSecond());
+                }
+
+                if (m_nextIncrementalBase != null) {
+                    final IncrementalBase nextBase = m_nextIncrementalBase;
+                    SnapshotSiteProcessor.m_tasksOnSnapshotCompletion.offer(new Runnable() {
+                        @Override
+                        public void run()
+                        {
+                            for (SnapshotDataTarget target : m_targets) {
+                                if (target.getLastWriteException() != null) {
+                                    return;
+                                }
+                            }
+                            m_incrementalBase = nextBase;
+                        }
+                    });
+                }
+
                 if (isTruncationSnapshot) {
                     // Only sync the DR Log on Native Snapshots
                     SnapshotSiteProcessor.m_tasksOnSnapshotCompletion.offer(new Runnable() {
@@ -235,7 +375,7 @@ public class NativeSnapshotWritePlan extends SnapshotWritePlan
                                                       context.getHostId(), context.getCluster().getTypeName(),
                                                       context.getDatabase().getTypeName(), context.getNumberOfPartitions(),
                                                       DrRoleType.XDCR.value().equals(context.getCluster().getDrrole()),
-                                                      tracker, timestamp, numTables, snapshotRecord);
+                                                      tracker, timestamp, numTables, snapshotRecord, null);
                     m_createdTargets.put(task.m_table.getRelativeIndex(), target);
                 }
                 return target;
@@ -255,7 +395,8 @@ public class NativeSnapshotWritePlan extends SnapshotWritePlan
                                                         SiteTracker tracker,
                                                         long timestamp,
                                                         AtomicInteger numTables,
-                                                        SnapshotRegistry.Snapshot snapshotRecord)
+                                                        SnapshotRegistry.Snapshot snapshotRecord,
+                                                        File baseFile)
             throws IOException
     {
         SnapshotDataTarget sdt;
@@ -267,7 +408,15 @@ public class NativeSnapshotWritePlan extends SnapshotWritePlan
                 SnapshotFormat.NATIVE,
                 hostId);
 
+        final VoltTable schemaTable;
         if (isActiveActiveDRed && table.getIsdred()) {
+            schemaTable = CatalogUtil.getVoltTable(table, CatalogUtil.DR_HIDDEN_COLUMN_INFO);
+        }
+        else {
+            schemaTable = CatalogUtil.getVoltTable(table);
+        }
+
+        if (baseFile != null) {
             sdt = new DefaultSnapshotDataTarget(saveFilePath,
                     hostId,
                     clusterName,
@@ -276,9 +425,10 @@ public class NativeSnapshotWritePlan extends SnapshotWritePlan
                     partitionCount,
                     table.getIsreplicated(),
                     tracker.getPartitionsForHost(hostId),
-                    CatalogUtil.getVoltTable(table, CatalogUtil.DR_HIDDEN_COLUMN_INFO),
+                    schemaTable,
                     txnId,
-                    timestamp);
+                    timestamp,
+                    baseFile);
         }
         else {
             sdt = new DefaultSnapshotDataTarget(saveFilePath,
@@ -289,7 +439,7 @@ public class NativeSnapshotWritePlan extends SnapshotWritePlan
                     partitionCount,
                     table.getIsreplicated(),
                     tracker.getPartitionsForHost(hostId),
-                    CatalogUtil.getVoltTable(table),
+                    schemaTable,
                     txnId,
                     timestamp);
         }
@@ -301,6 +451,23 @@ public class NativeSnapshotWritePlan extends SnapshotWritePlan
         return sdt;
     }
 
+    /**
+     * Describe the snapshot this one is based on and where the rows of the tables
+     * carried over from it are, to be recorded in the digest.
+     */
+    private JSONObject describeCarriedTables() throws JSONException
+    {
+        final JSONObject tables = new JSONObject();
+        for (Pair<Table, File> carried : m_carriedTables) {
+            tables.put(carried.getFirst().getTypeName(), carried.getSecond().getAbsolutePath());
+        }
+        final JSONObject base = new JSONObject();
+        base.put("nonce", m_carriedFrom.m_nonce);
+        base.put("txnId", m_carriedFrom.m_txnId);
+        base.put("tables", tables);
+        return base;
+    }
+
     static void createFileBasedCompletionTasks(
             String file_path, String pathType, String file_nonce,
             long txnId, Map<Integer, Long> partitionTransactionIds,
@@ -38,6 +38,11 @@ public class SnapshotRequestConfig {
 
     public final Table[] tables;
 
+    /**
+     * Tables unchanged since the previous incremental snapshot are not written again
+     */
+    public final boolean incremental;
+
     /**
      * @param tables    Tables to snapshot, cannot be null.
      */
@@ -45,11 +50,13 @@ public class SnapshotRequestConfig {
     {
         Preconditions.checkNotNull(tables);
         this.tables = tables.toArray(new Table[0]);
+        incremental = false;
     }
 
     public SnapshotRequestConfig(JSONObject jsData, Database catalogDatabase)
     {
         tables = getTablesToInclude(jsData, catalogDatabase);
+        incremental = jsData != null && jsData.optBoolean(SnapshotUtil.JSON_INCREMENTAL, false);
     }
 
     private static Table[] getTablesToInclude(JSONObject jsData,
@@ -131,5 +138,8 @@ public class SnapshotRequestConfig {
             }
             stringer.endArray();
         }
+        if (incremental) {
+            stringer.keySymbolValuePair(SnapshotUtil.JSON_INCREMENTAL, true);
+        }
     }
 }
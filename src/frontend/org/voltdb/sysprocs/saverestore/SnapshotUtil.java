@@ -112,6 +112,10 @@ public class SnapshotUtil {
      * milestone used to mark a shutdown save snapshot
      */
     public static final String JSON_TERMINUS = "terminus";
+    /**
+     * request that tables unchanged since the previous incremental snapshot refer to its files
+     */
+    public static final String JSON_INCREMENTAL = "incremental";
 
     public static final ColumnInfo nodeResultsColumns[] =
     new ColumnInfo[] {
@@ -649,6 +653,8 @@ public class SnapshotUtil {
         public final List<Set<String>> m_digestTables = new ArrayList<Set<String>>();
         public final Map<String, TableFiles> m_tableFiles = new TreeMap<String, TableFiles>();
         public File m_catalogFile = null;
+        // Nonces of the snapshots that unchanged tables of an incremental snapshot are read from
+        public final Set<String> m_incrementalBases = new TreeSet<String>();
         public final SnapshotPathType m_stype;
 
         private final String m_nonce;
@@ -841,6 +847,10 @@ public class SnapshotUtil {
                     }
                     named_s.m_digestTables.add(tableSet);
                     named_s.m_digests.add(f);
+                    JSONObject incrementalBase = digest.optJSONObject("incrementalBase");
+                    if (incrementalBase != null) {
+                        named_s.m_incrementalBases.add(incrementalBase.getString("nonce"));
+                    }
                 } else if (f.getName().endsWith(".jar")) {
                     String nonce = parseNonceFromSnapshotFilename(f.getName());
                     Snapshot named_s = namedSnapshots.get(nonce);
@@ -865,7 +875,7 @@ public class SnapshotUtil {
                     }
                 } else {
                     HashSet<Integer> partitionIds = new HashSet<Integer>();
-                    TableSaveFile saveFile = new TableSaveFile(fis, 1, null, true);
+                    TableSaveFile saveFile = new TableSaveFile(fis, f.getAbsoluteFile().getParentFile(), 1, null, true);
                     try {
                         for (Integer partitionId : saveFile.getPartitionIds()) {
                             partitionIds.add(partitionId);
@@ -940,6 +950,9 @@ public class SnapshotUtil {
         pw.println(indentString + "Date: " +
                 new Date(
                         org.voltcore.TransactionIdManager.getTimestampFromTransactionId(snapshotTxnId)));
+        if (!snapshot.m_incrementalBases.isEmpty()) {
+            pw.println(indentString + "Unchanged tables read from: " + snapshot.m_incrementalBases);
+        }
 
         pw.println(indentString + "Digests:");
         indentString = "\t";
@@ -18,6 +18,7 @@
 package org.voltdb.sysprocs.saverestore;
 
 import java.io.EOFException;
+import java.io.File;
 import java.io.FileDescriptor;
 import java.io.FileInputStream;
 import java.io.IOException;
@@ -26,9 +27,13 @@ import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.zip.Checksum;
@@ -41,19 +46,34 @@ import org.json_voltpatches.JSONObject;
 import org.voltcore.TransactionIdManager;
 import org.voltcore.logging.VoltLogger;
 import org.voltcore.utils.Bits;
+import org.voltcore.utils.CompressionCodecs;
+import org.voltcore.utils.CompressionStrategy;
+import org.voltcore.utils.CompressionStrategySnappy;
+import org.voltcore.utils.CoreUtils;
 import org.voltcore.utils.DBBPool;
 import org.voltcore.utils.DBBPool.BBContainer;
 import org.voltdb.EELibraryLoader;
+import org.voltdb.SnapshotRestoreStats;
 import org.voltdb.messaging.FastDeserializer;
 import org.voltdb.utils.CompressionService;
 import org.voltdb.utils.PosixAdvise;
 
+import com.google_voltpatches.common.util.concurrent.Futures;
+import com.google_voltpatches.common.util.concurrent.ListenableFuture;
+import com.google_voltpatches.common.util.concurrent.ListeningExecutorService;
+import com.google_voltpatches.common.util.concurrent.Uninterruptibles;
+
 /**
  * An abstraction around a table's save file for restore.  Deserializes the
  * meta-data that was stored when the table was saved and makes it available
  * to clients.  The meta data is stored as a JSON blob with length prefixing and a CRC
  * as well as a byte to that is set once the file is completely written and synced.
  * A VoltTable header describing the schema follows the JSON blob.
+ *
+ * A file written by an incremental snapshot for a table that was unchanged since the
+ * previous one has no chunks, its JSON blob names the file of the earlier snapshot
+ * holding the rows. The chunks are read from that file while the meta-data still
+ * describes this one, so restore sees a complete table with this snapshot's txnId.
  */
 public class TableSaveFile
 {
@@ -90,22 +110,54 @@ public class TableSaveFile
     private static final int DEFAULT_CHUNKSIZE =
             org.voltdb.SnapshotSiteProcessor.m_snapshotBufferLength + (1024 * 256);
 
+    private static final int MAX_COMPRESSED_CHUNKSIZE = CompressionService.maxCompressedLength(DEFAULT_CHUNKSIZE);
+
+    /**
+     * Number of threads shared by all save files to check and decompress chunks.
+     * Each file keeps at most its read ahead count of chunks in flight and still
+     * returns them in file order. With one thread chunks are decoded by the
+     * file's reader thread, as before.
+     */
+    static final int DECODER_THREADS = Integer.getInteger("SNAPSHOT_RESTORE_DECODER_THREADS",
+            Math.max(1, Math.min(8, CoreUtils.availableProcessors() / 2)));
+
+    private static class Decoders {
+        static final ListeningExecutorService POOL = DECODER_THREADS > 1 ?
+                CoreUtils.getListeningExecutorService("Snapshot Chunk Decoder", DECODER_THREADS) :
+                CoreUtils.LISTENINGSAMETHREADEXECUTOR;
+    }
+
     public TableSaveFile(
             FileInputStream fis,
             int readAheadChunks,
             Integer[] relevantPartitionIds) throws IOException {
-        this(fis, readAheadChunks, relevantPartitionIds, false);
+        this(fis, null, readAheadChunks, relevantPartitionIds, false);
     }
 
+    public TableSaveFile(
+            FileInputStream fis,
+            int readAheadChunks,
+            Integer[] relevantPartitionIds,
+            boolean continueOnCorruptedChunk) throws IOException {
+        this(fis, null, readAheadChunks, relevantPartitionIds, continueOnCorruptedChunk);
+    }
+
+    /**
+     * @param directory directory of the file being read, where the base file of an
+     *                  unchanged table of an incremental snapshot is looked up. May be
+     *                  null if the file is known not to be from an incremental snapshot.
+     */
     // XXX maybe consider an IOException subclass at some point
     public TableSaveFile(
             FileInputStream fis,
+            File directory,
             int readAheadChunks,
             Integer[] relevantPartitionIds,
             boolean continueOnCorruptedChunk) throws IOException
             {
                 m_fd = fis.getFD();
                 FileChannel dataIn = fis.getChannel();
+                String baseFile = null;
         try {
             EELibraryLoader.loadExecutionEngineLibrary(true);
             if (relevantPartitionIds == null) {
@@ -243,6 +295,7 @@ public class TableSaveFile
                 m_tableName = fd.readString();
                 m_isReplicated = fd.readBoolean();
                 m_isCompressed = false;
+                m_compressionCodec = CompressionStrategySnappy.INSTANCE;
                 m_checksumType = ChecksumType.CRC32;
                 if (!m_isReplicated) {
                     m_partitionIds = (int[])fd.readArray(int.class);
@@ -288,6 +341,8 @@ public class TableSaveFile
                 m_tableName = obj.getString("tableName");
                 m_isReplicated = obj.getBoolean("isReplicated");
                 m_isCompressed = obj.optBoolean("isCompressed", false);
+                // Files written before the codec was recorded are Snappy
+                m_compressionCodec = CompressionCodecs.forName(obj.optString("compressionCodec", "SNAPPY"));
                 m_checksumType = ChecksumType.valueOf(obj.optString("checksumType", "CRC32"));
                 if (!m_isReplicated) {
                     JSONArray partitionIds = obj.getJSONArray("partitionIds");
@@ -309,6 +364,7 @@ public class TableSaveFile
                         m_corruptedPartitions.add(0);
                     }
                 }
+                baseFile = obj.optString("baseFile", null);
             }
             /*
              * Several runtime exceptions can be thrown in valid failure cases where
@@ -323,6 +379,59 @@ public class TableSaveFile
         } catch (JSONException e) {
             throw new IOException(e);
         }
+        if (baseFile != null) {
+            if (directory == null) {
+                throw new IOException("Table " + m_tableName + " is stored in base file " + baseFile +
+                        ", which can't be located without the directory of the snapshot");
+            }
+            // Only the name is recorded, the base is always next to the file referring to it
+            m_baseFilePath = new File(directory, new File(baseFile).getName()).getPath();
+            m_baseInput = new FileInputStream(m_baseFilePath);
+            try {
+                m_baseFile = new TableSaveFile(m_baseInput, directory, readAheadChunks, relevantPartitionIds,
+                        continueOnCorruptedChunk);
+                checkBaseFile();
+            } catch (IOException e) {
+                m_baseInput.close();
+                throw e;
+            }
+        } else {
+            m_baseFilePath = null;
+            m_baseInput = null;
+            m_baseFile = null;
+        }
+    }
+
+    /**
+     * The file of an earlier snapshot holding the rows must be a complete save
+     * of the same table with the same layout.
+     */
+    private void checkBaseFile() throws IOException
+    {
+        if (!m_baseFile.getTableName().equals(m_tableName) ||
+                m_baseFile.isReplicated() != m_isReplicated ||
+                !Arrays.equals(m_baseFile.getPartitionIds(), m_partitionIds) ||
+                m_baseFile.getTotalPartitions() != m_totalPartitions) {
+            m_baseFile.close();
+            throw new IOException("Base file " + m_baseFilePath + " does not hold the same table partitions as " +
+                    m_tableName);
+        }
+        if (!m_baseFile.getCompleted()) {
+            m_baseFile.close();
+            throw new IOException("Base file " + m_baseFilePath + " was not completed");
+        }
+        if (!Arrays.equals(m_baseFile.getTableHeader().array(), m_tableHeader.array())) {
+            m_baseFile.close();
+            throw new IOException("Base file " + m_baseFilePath + " has a different schema than " + m_tableName);
+        }
+    }
+
+    /**
+     * @return the path of the earlier snapshot's file holding the rows, null if they are in this file
+     */
+    public String getBaseFile()
+    {
+        return m_baseFilePath;
     }
 
     public int[] getVersionNumber()
@@ -385,6 +494,13 @@ public class TableSaveFile
     }
 
     public void close() throws IOException {
+        if (m_baseFile != null) {
+            try {
+                m_baseFile.close();
+            } finally {
+                m_baseInput.close();
+            }
+        }
         Thread chunkReader;
         synchronized (this) {
             m_hasMoreChunks.set(false);
@@ -401,8 +517,19 @@ public class TableSaveFile
         }
 
         synchronized (this) {
-            while (!m_availableChunks.isEmpty()) {
-                m_availableChunks.poll().discard();
+            // Chunks still being decoded are waited for so their buffers can be freed
+            ListenableFuture<Container> chunk;
+            while ((chunk = m_availableChunks.poll()) != null) {
+                try {
+                    final Container c = Uninterruptibles.getUninterruptibly(chunk);
+                    if (c != null) {
+                        c.discard();
+                    }
+                } catch (ExecutionException ignore) {}
+            }
+            if (m_progress != null) {
+                m_progress.fileClosed();
+                m_progress = null;
             }
             notifyAll();
         }
@@ -414,9 +541,17 @@ public class TableSaveFile
         while ((cont = m_buffers.poll()) != null) {
             cont.discard();
         }
+        while ((cont = m_inputBuffers.poll()) != null) {
+            cont.discard();
+        }
     }
 
     public Set<Integer> getCorruptedPartitionIds() {
+        if (m_baseFile != null) {
+            Set<Integer> corruptedPartitions = new HashSet<Integer>(m_corruptedPartitions);
+            corruptedPartitions.addAll(m_baseFile.getCorruptedPartitionIds());
+            return corruptedPartitions;
+        }
         return m_corruptedPartitions;
     }
 
@@ -427,43 +562,66 @@ public class TableSaveFile
     // Will get the next chunk of the table that is just over the chunk size
     public synchronized BBContainer getNextChunk() throws IOException
     {
+        if (m_baseFile != null) {
+            return m_baseFile.getNextChunk();
+        }
         if (m_chunkReaderException != null) {
             throw m_chunkReaderException;
         }
-        if (!m_hasMoreChunks.get()) {
-            final Container c = m_availableChunks.poll();
-            return c;
-        }
 
-        if (m_chunkReader == null) {
+        if (m_chunkReader == null && m_hasMoreChunks.get()) {
+            m_progress = SnapshotRestoreStats.startFile(m_tableName, m_txnId,
+                    m_saveFile.size() - m_saveFile.position());
             m_chunkReader = new ChunkReader();
             m_chunkReaderThread = new Thread(m_chunkReader, "ChunkReader");
             m_chunkReaderThread.start();
         }
 
-        Container c = null;
-        while (c == null && (m_hasMoreChunks.get() || !m_availableChunks.isEmpty())) {
-            c = m_availableChunks.poll();
-            if (c == null) {
-                try {
-                    wait();
-                } catch (InterruptedException e) {
-                    throw new IOException(e);
+        while (true) {
+            ListenableFuture<Container> next = null;
+            while (next == null && (m_hasMoreChunks.get() || !m_availableChunks.isEmpty())) {
+                next = m_availableChunks.poll();
+                if (next == null) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        throw new IOException(e);
+                    }
                 }
             }
-        }
-        if (c != null) {
-            m_chunkReads.release();
-        } else {
-            if (m_chunkReaderException != null) {
+            if (next == null) {
+                if (m_chunkReaderException != null) {
+                    throw m_chunkReaderException;
+                }
+                return null;
+            }
+
+            final Container c;
+            try {
+                c = next.get();
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            } catch (ExecutionException e) {
+                m_hasMoreChunks.set(false);
+                m_chunkReaderException = e.getCause() instanceof IOException ?
+                        (IOException)e.getCause() : new IOException(e.getCause());
                 throw m_chunkReaderException;
             }
+            m_chunkReads.release();
+            // Skipped chunks complete as null, keep going until one is kept
+            if (c != null) {
+                // The row count follows the table header
+                m_progress.chunkDelivered(c.b().getInt(m_tableHeader.capacity()));
+                return c;
+            }
         }
-        return c;
     }
 
     public synchronized boolean hasMoreChunks() throws IOException
     {
+        if (m_baseFile != null) {
+            return m_baseFile.hasMoreChunks();
+        }
         if (m_chunkReaderException != null) {
             throw m_chunkReaderException;
         }
@@ -483,13 +641,19 @@ public class TableSaveFile
     private final String m_tableName;
     private final boolean m_isReplicated;
     private final boolean m_isCompressed;
+    private final CompressionStrategy m_compressionCodec;
     private final int m_partitionIds[];
     private final int m_totalPartitions;
     private final long m_txnId;
     private final long m_timestamp;
     private AtomicBoolean m_hasMoreChunks = new AtomicBoolean(true);
     private ConcurrentLinkedQueue<BBContainer> m_buffers = new ConcurrentLinkedQueue<BBContainer>();
-    private final ArrayDeque<Container> m_availableChunks = new ArrayDeque<Container>();
+    // Compressed chunks waiting to be decoded
+    private final ConcurrentLinkedQueue<BBContainer> m_inputBuffers = new ConcurrentLinkedQueue<BBContainer>();
+    // Chunks in file order, possibly still being decoded
+    private final ArrayDeque<ListenableFuture<Container>> m_availableChunks =
+            new ArrayDeque<ListenableFuture<Container>>();
+    private SnapshotRestoreStats.TableProgress m_progress = null;
     private final HashSet<Integer> m_relevantPartitionIds;
     private final ChecksumType m_checksumType;
 
@@ -504,13 +668,20 @@ public class TableSaveFile
      * Maintain a list of corrupted partitions. It is possible for uncorrupted partitions
      * to be recovered from a save file in the future
      */
-    private final HashSet<Integer> m_corruptedPartitions = new HashSet<Integer>();
+    private final Set<Integer> m_corruptedPartitions = Collections.synchronizedSet(new HashSet<Integer>());
 
     /**
      * Ignore corrupted chunks and continue validation of the rest of the chunks.
      */
     private final boolean m_continueOnCorruptedChunk;
 
+    /**
+     * The file of an earlier snapshot that the chunks are read from, if any
+     */
+    private final String m_baseFilePath;
+    private final FileInputStream m_baseInput;
+    private final TableSaveFile m_baseFile;
+
     /**
      * The thread reading chunks will read at most this number of chunks
      */
@@ -530,10 +701,6 @@ public class TableSaveFile
          * that should be easier to understand and validate.
          */
         private void readChunksV2() {
-            //For reading the compressed input.
-            final BBContainer fileInputBufferC =
-                    DBBPool.allocateDirect(CompressionService.maxCompressedLength(DEFAULT_CHUNKSIZE));
-            final ByteBuffer fileInputBuffer = fileInputBufferC.b();
             long sinceLastFAdvise = Long.MAX_VALUE;
             long positionAtLastFAdvise = 0;
 
@@ -575,16 +742,15 @@ public class TableSaveFile
                 }
 
                 /*
-                 * Limit the number of chunk materialized into memory at one time
+                 * Limit the number of chunks read ahead or being decoded at one time
                  */
                 try {
                     m_chunkReads.acquire();
                 } catch (InterruptedException e) {
-                    fileInputBufferC.discard();
                     return;
                 }
                 boolean expectedAnotherChunk = false;
-                Container c = null;
+                BBContainer inputC = null;
                 try {
 
                     /*
@@ -599,7 +765,7 @@ public class TableSaveFile
                         }
                         sinceLastFAdvise += read;
                     }
-                    int nextChunkLength = chunkLengthB.getInt(0);
+                    final int nextChunkLength = chunkLengthB.getInt(0);
                     expectedAnotherChunk = true;
 
                     /*
@@ -637,17 +803,17 @@ public class TableSaveFile
                         throw new IOException("Corrupted TableSaveFile chunk has negative chunk length");
                     }
 
-                    if (nextChunkLength > fileInputBuffer.capacity()) {
+                    if (nextChunkLength > MAX_COMPRESSED_CHUNKSIZE) {
                         throw new IOException("Corrupted TableSaveFile chunk has unreasonable length " +
                                 "> DEFAULT_CHUNKSIZE bytes");
                     }
 
                     /*
-                     * Go fetch the compressed data so that the uncompressed size is known
-                     * and use that to set nextChunkLength to be the uncompressed length,
-                     * the code ahead that constructs the volt table is expecting
-                     * the uncompressed size/data since it is producing an uncompressed table
+                     * Go fetch the compressed data. The CRC check and decompression are
+                     * left to the decoder pool so the next chunk can be read meanwhile.
                      */
+                    inputC = getInputBuffer();
+                    final ByteBuffer fileInputBuffer = inputC.b();
                     fileInputBuffer.clear();
                     fileInputBuffer.limit(nextChunkLength);
                     while (fileInputBuffer.hasRemaining()) {
@@ -658,87 +824,19 @@ public class TableSaveFile
                         sinceLastFAdvise += read;
                     }
                     fileInputBuffer.flip();
-                    nextChunkLength = CompressionService.uncompressedLength(fileInputBuffer);
-
-                    /*
-                     * Validate the rest of the chunk. This can fail if the data is corrupted
-                     * or the length value was corrupted.
-                     */
-                    final int calculatedCRC =
-                            DBBPool.getBufferCRC32C(fileInputBuffer, 0, fileInputBuffer.remaining());
-                    if (calculatedCRC != nextChunkCRC) {
-                        m_corruptedPartitions.add(nextChunkPartitionId);
-                        if (m_continueOnCorruptedChunk) {
-                            m_chunkReads.release();
-                            continue;
-                        } else {
-                            throw new IOException("CRC mismatch in saved table chunk");
-                        }
-                    }
-
-                    /*
-                     * Now allocate space to store the chunk using the VoltTable serialization representation.
-                     * The chunk will contain an integer row count preceding it so it can
-                     * be sucked straight in. There is a little funny business to overwrite the
-                     * partition id that is not part of the serialization format
-                     */
-                    c = getOutputBuffer(nextChunkPartitionId);
-
-                    /*
-                     * If the length value is wrong or not all data made it to disk this read will
-                     * not complete correctly. There could be overflow, underflow etc.
-                     * so use a try finally block to indicate that all partitions are now corrupt.
-                     * The enclosing exception handlers will do the right thing WRT to
-                     * propagating the error and closing the file.
-                     */
-                    boolean completedRead = false;
-                    try {
-                        final ByteBuffer buf = c.b();
-                        /*
-                         * Assemble a VoltTable out of the chunk of tuples.
-                         * Put in the header that was cached in the constructor,
-                         * then copy the tuple data.
-                         */
-                        buf.clear();
-                        buf.limit(nextChunkLength  + m_tableHeader.capacity());
-                        m_tableHeader.position(0);
-                        buf.put(m_tableHeader);
-                        //Doesn't move buffer position, does change the limit
-                        CompressionService.decompressBuffer(fileInputBuffer, buf);
-                        completedRead = true;
-                    } finally {
-                        if (!completedRead) {
-                            for (int partitionId : m_partitionIds) {
-                                m_corruptedPartitions.add(partitionId);
-                            }
-                            if (m_continueOnCorruptedChunk) {
-                                m_chunkReads.release();
-                                continue;
-                            } else {
-                                throw new IOException("Failed decompression of saved table chunk");
-                            }
+                    m_progress.bytesRead(chunkLengthB.capacity() + nextChunkLength);
+
+                    final BBContainer compressed = inputC;
+                    inputC = null;
+                    final ListenableFuture<Container> chunk = Decoders.POOL.submit(new Callable<Container>() {
+                        @Override
+                        public Container call() throws IOException {
+                            return decodeChunkV2(compressed, nextChunkPartitionId, nextChunkCRC);
                         }
-                    }
-
-                    /*
-                     * Skip irrelevant chunks after CRC is calculated. Always calulate the CRC
-                     * in case it is the length value that is corrupted
-                     */
-                    if (m_relevantPartitionIds != null) {
-                        if (!m_relevantPartitionIds.contains(nextChunkPartitionId)) {
-                            m_chunkReads.release();
-                            continue;
-                        }
-                    }
-
-                    /*
-                     * VoltTable wants the buffer at the home position 0
-                     */
-                    c.b().position(0);
+                    });
 
                     synchronized (TableSaveFile.this) {
-                        m_availableChunks.offer(c);
-                        c = null;
+                        m_availableChunks.offer(chunk);
                         TableSaveFile.this.notifyAll();
                     }
                 } catch (EOFException eof) {
@@ -776,10 +874,102 @@ public class TableSaveFile
                         TableSaveFile.this.notifyAll();
                     }
                 } finally {
-                    if (c != null) c.discard();
+                    if (inputC != null) inputC.discard();
                 }
             }
-            fileInputBufferC.discard();
+        }
+
+        /*
+         * Validate and decompress one chunk read by readChunksV2(). Runs on the decoder
+         * pool, so it must not synchronize on the save file. Returns null if the chunk
+         * is skipped.
+         */
+        private Container decodeChunkV2(BBContainer inputC, int partitionId, int expectedCRC) throws IOException {
+            final ByteBuffer fileInputBuffer = inputC.b();
+            Container c = null;
+            try {
+                /*
+                 * The code ahead that constructs the volt table is expecting
+                 * the uncompressed size/data since it is producing an uncompressed table
+                 */
+                final int uncompressedLength = m_compressionCodec.uncompressedLength(fileInputBuffer);
+
+                /*
+                 * Validate the rest of the chunk. This can fail if the data is corrupted
+                 * or the length value was corrupted.
+                 */
+                final int calculatedCRC =
+                        DBBPool.getBufferCRC32C(fileInputBuffer, 0, fileInputBuffer.remaining());
+                if (calculatedCRC != expectedCRC) {
+                    m_corruptedPartitions.add(partitionId);
+                    if (m_continueOnCorruptedChunk) {
+                        return null;
+                    } else {
+                        throw new IOException("CRC mismatch in saved table chunk");
+                    }
+                }
+
+                /*
+                 * Now allocate space to store the chunk using the VoltTable serialization representation.
+                 * The chunk will contain an integer row count preceding it so it can
+                 * be sucked straight in.
+                 */
+                c = getOutputBuffer(partitionId);
+
+                /*
+                 * If the length value is wrong or not all data made it to disk this read will
+                 * not complete correctly. There could be overflow, underflow etc.
+                 * so use a try finally block to indicate that all partitions are now corrupt.
+                 */
+                boolean completedRead = false;
+                try {
+                    final ByteBuffer buf = c.b();
+                    /*
+                     * Assemble a VoltTable out of the chunk of tuples.
+                     * Put in the header that was cached in the constructor,
+                     * then copy the tuple data. Decoders run concurrently, so
+                     * the shared header is copied from its backing array.
+                     */
+                    buf.clear();
+                    buf.limit(uncompressedLength  + m_tableHeader.capacity());
+                    buf.put(m_tableHeader.array(), 0, m_tableHeader.capacity());
+                    //Doesn't move buffer position, does change the limit
+                    m_compressionCodec.decompressBuffer(fileInputBuffer, buf);
+                    completedRead = true;
+                } finally {
+                    if (!completedRead) {
+                        for (int pid : m_partitionIds) {
+                            m_corruptedPartitions.add(pid);
+                        }
+                        if (m_continueOnCorruptedChunk) {
+                            return null;
+                        } else {
+                            throw new IOException("Failed decompression of saved table chunk");
+                        }
+                    }
+                }
+
+                /*
+                 * Skip irrelevant chunks after CRC is calculated. Always calulate the CRC
+                 * in case it is the length value that is corrupted
+                 */
+                if (m_relevantPartitionIds != null) {
+                    if (!m_relevantPartitionIds.contains(partitionId)) {
+                        return null;
+                    }
+                }
+
+                /*
+                 * VoltTable wants the buffer at the home position 0
+                 */
+                c.b().position(0);
+                final Container retval = c;
+                c = null;
+                return retval;
+            } finally {
+                if (c != null) c.discard();
+                m_inputBuffers.offer(inputC);
+            }
         }
 
         private void readChunks() {
@@ -812,6 +1002,7 @@ public class TableSaveFile
                     }
                     chunkLengthB.flip();
                     int nextChunkLength = chunkLengthB.getInt();
+                    final int diskChunkLength = nextChunkLength;
                     expectedAnotherChunk = true;
 
                     /*
@@ -880,7 +1071,7 @@ public class TableSaveFile
                             }
                         }
                         fileInputBuffer.flip();
-                        nextChunkLength = CompressionService.uncompressedLength(fileInputBuffer);
+                        nextChunkLength = m_compressionCodec.uncompressedLength(fileInputBuffer);
                     }
 
                     /*
@@ -926,7 +1117,7 @@ public class TableSaveFile
                         c.b().position(c.b().position() + 4);//Leave space for row count to be moved into
                         checksumStartPosition = c.b().position();
                         if (isCompressed()) {
-                            CompressionService.decompressBuffer(fileInputBuffer, c.b());
+                            m_compressionCodec.decompressBuffer(fileInputBuffer, c.b());
                             c.b().position(c.b().limit());
                         } else {
                             while (c.b().hasRemaining()) {
@@ -936,6 +1127,7 @@ public class TableSaveFile
                                 }
                             }
                         }
+                        m_progress.bytesRead(chunkLengthB.capacity() + diskChunkLength);
                         c.b().position(c.b().position() - 4);
                         rowCount = c.b().getInt();
                         c.b().position(checksumStartPosition);
@@ -1001,7 +1193,7 @@ public class TableSaveFile
                     }
 
                     synchronized (TableSaveFile.this) {
-                        m_availableChunks.offer(c);
+                        m_availableChunks.offer(Futures.immediateFuture(c));
                         c = null;
                         TableSaveFile.this.notifyAll();
                     }
@@ -1044,6 +1236,14 @@ public class TableSaveFile
             }
             fileInputBufferC.discard();
         }
+        private BBContainer getInputBuffer() {
+            final BBContainer c = m_inputBuffers.poll();
+            if (c == null) {
+                return DBBPool.allocateDirect(MAX_COMPRESSED_CHUNKSIZE);
+            }
+            return c;
+        }
+
         private Container getOutputBuffer(final int nextChunkPartitionId) {
             BBContainer c = m_buffers.poll();
             if (c == null) {
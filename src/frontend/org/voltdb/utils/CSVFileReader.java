@@ -37,7 +37,8 @@ import com.google_voltpatches.common.collect.HashBiMap;
 /**
  *
  * This is a single thread reader which feeds the lines after validating syntax
- * to CSVDataLoader.
+ * to CSVDataLoader. CSVParallelFileReader runs one per file chunk on each of
+ * its parser threads.
  *
  */
 class CSVFileReader implements Runnable {
@@ -60,12 +61,17 @@ class CSVFileReader implements Runnable {
     static Client m_csvClient = null;
     static ICsvListReader m_listReader = null;
     long m_parsingTime = 0;
+    // Time spent handing rows to the loader, mostly waiting for room in its queues
+    long m_insertTime = 0;
     private static final Map<VoltType, String> m_blankStrings = new EnumMap<VoltType, String>(VoltType.class);
     private static final VoltLogger m_log = new VoltLogger("CSVLOADER");
     private final CSVDataLoader m_loader;
     private final BulkLoaderErrorHandler m_errHandler;
     private final VoltType[] m_columnTypes;
     private final int m_columnCount;
+    private final ICsvListReader m_reader;
+    // Number of file lines before the reader's first line, -1 if reading the whole file
+    private final long m_firstLine;
     private int headerlen;
     private Integer[] order;
 
@@ -92,11 +98,27 @@ class CSVFileReader implements Runnable {
         m_errHandler = errorHandler;
         m_columnTypes = m_loader.getColumnTypes();
         m_columnCount = m_columnTypes.length;
+        m_reader = m_listReader;
+        m_firstLine = -1;
+    }
+
+    /**
+     * Reader for one chunk of the file, sharing the header column mapping
+     * of the given reader.
+     */
+    CSVFileReader(CSVFileReader template, ICsvListReader chunkReader, long firstLine) {
+        m_loader = template.m_loader;
+        m_errHandler = template.m_errHandler;
+        m_columnTypes = template.m_columnTypes;
+        m_columnCount = template.m_columnCount;
+        headerlen = template.headerlen;
+        order = template.order;
+        m_reader = chunkReader;
+        m_firstLine = firstLine;
     }
 
     @Override
     public void run() {
-        List<String> lineList;
         //if header option is true, check whether csv first line is valid
         if (m_config.header) {
             if (!checkHeader()) {
@@ -106,25 +128,50 @@ class CSVFileReader implements Runnable {
             }
         }
 
-        while ((m_config.limitrows-- > 0)) {
+        readRows();
+
+        //Now wait for processors to see endOfData and count down. After that drain to finish all callbacks
+        try {
+            m_log.debug("Waiting for CSVDataLoader to finish.");
+            m_loader.close();
+            m_log.debug("CSVDataLoader Done.");
+        } catch (Exception ex) {
+            m_log.warn("Stopped processing because of connection error. "
+                    + "A report will be generated with what we processed so far. Error: " + ex);
+        }
+    }
+
+    /**
+     * Read, check and insert the rows until the end of the input or the
+     * error limit.
+     * @return false if reading stopped before the end of the input
+     */
+    boolean readRows() {
+        List<String> lineList;
+        final boolean chunk = m_firstLine >= 0;
+        while (chunk || (m_config.limitrows-- > 0)) {
             if (m_errHandler.hasReachedErrorLimit()) {
-                break;
+                return false;
             }
 
             try {
                 //Initial setting of m_totalLineCount
-                if (m_listReader.getLineNumber() == 0) {
+                if (chunk) {
+                    // Counted once the chunk is done
+                } else if (m_reader.getLineNumber() == 0) {
                     m_totalLineCount.set(m_config.skip);
                 } else {
-                    m_totalLineCount.set(m_listReader.getLineNumber());
+                    m_totalLineCount.set(m_reader.getLineNumber());
                 }
                 long st = System.nanoTime();
-                lineList = m_listReader.read();
+                lineList = m_reader.read();
                 long end = System.nanoTime();
                 m_parsingTime += (end - st);
                 if (lineList == null) {
-                    if (m_totalLineCount.get() > m_listReader.getLineNumber()) {
-                        m_totalLineCount.set(m_listReader.getLineNumber());
+                    if (chunk) {
+                        m_totalLineCount.addAndGet(m_reader.getLineNumber());
+                    } else if (m_totalLineCount.get() > m_reader.getLineNumber()) {
+                        m_totalLineCount.set(m_reader.getLineNumber());
                     }
                     break;
                 }
@@ -139,85 +186,92 @@ class CSVFileReader implements Runnable {
                 String[] reorderValues = new String[m_columnCount];
                 if ((lineCheckResult = checkparams_trimspace_reorder(lineValues, reorderValues)) != null) {
                     final RowWithMetaData metaData
-                            = new RowWithMetaData(m_listReader.getUntokenizedRow(),
-                                    m_totalLineCount.get() + 1);
+                            = new RowWithMetaData(m_reader.getUntokenizedRow(), errorLineNumber());
                     if (m_errHandler.handleError(metaData, null, lineCheckResult)) {
-                        break;
+                        return false;
                     }
                     continue;
                 }
 
                 RowWithMetaData lineData
-                        = new RowWithMetaData(m_listReader.getUntokenizedRow(),
-                                m_listReader.getLineNumber());
+                        = new RowWithMetaData(m_reader.getUntokenizedRow(),
+                                (chunk ? m_firstLine : 0) + m_reader.getLineNumber());
+                st = System.nanoTime();
                 m_loader.insertRow(lineData, reorderValues);
+                m_insertTime += System.nanoTime() - st;
             } catch (SuperCsvException e) {
                 //Catch rows that can not be read by superCSV m_listReader.
                 // e.g. items without quotes when strictquotes is enabled.
                 final RowWithMetaData metaData
-                        = new RowWithMetaData(m_listReader.getUntokenizedRow(),
-                                m_totalLineCount.get() + 1);
+                        = new RowWithMetaData(m_reader.getUntokenizedRow(), errorLineNumber());
                 if (m_errHandler.handleError(metaData, null, e.getMessage())) {
-                    break;
+                    return false;
                 }
             } catch (IOException ex) {
                 m_log.error("Failed to read CSV line from file: " + ex);
-                break;
+                return false;
             } catch (InterruptedException e) {
                 m_log.error("CSVLoader interrupted: " + e);
-                break;
+                return false;
             }
         }
+        return true;
+    }
 
-        //Now wait for processors to see endOfData and count down. After that drain to finish all callbacks
-        try {
-            m_log.debug("Waiting for CSVDataLoader to finish.");
-            m_loader.close();
-            m_log.debug("CSVDataLoader Done.");
-        } catch (Exception ex) {
-            m_log.warn("Stopped processing because of connection error. "
-                    + "A report will be generated with what we processed so far. Error: " + ex);
+    // The line reported for a row that could not be inserted
+    private long errorLineNumber() {
+        if (m_firstLine >= 0) {
+            return m_firstLine + m_reader.getLineNumber();
         }
+        return m_totalLineCount.get() + 1;
     }
 
     private boolean checkHeader() {
         try {
-            String[] firstline = m_listReader.getHeader(false);
-            Set<String> firstset = new HashSet<String>();
-            BiMap<Integer, String> colNames = HashBiMap.create(m_loader.getColumnNames());
-            headerlen = firstline.length;
-            // remove duplicate.
-            for (String name : firstline) {
-                if (name != null) {
-                    firstset.add(name.toUpperCase());
-                } else {
-                    return false;
-                }
-            }
-            // whether column num matches.
-            if (headerlen < m_columnCount) {
-                return false;
+            return checkHeader(m_listReader.getHeader(false));
+        } catch (IOException ex) {
+            m_log.error("Failed to read CSV line from file: " + ex);
+        }
+        return true;
+    }
+
+    /**
+     * Check the column names of the file header against the table and map
+     * the file columns to the table columns.
+     */
+    boolean checkHeader(String[] firstline) {
+        Set<String> firstset = new HashSet<String>();
+        BiMap<Integer, String> colNames = HashBiMap.create(m_loader.getColumnNames());
+        headerlen = firstline.length;
+        // remove duplicate.
+        for (String name : firstline) {
+            if (name != null) {
+                firstset.add(name.toUpperCase());
             } else {
-                // whether column name has according table column.
-                int matchColCount = 0;
-                for (String name : firstset) {
-                    if (colNames.containsValue(name.trim())) {
-                        matchColCount++;
-                    }
-                }
-                if (matchColCount != m_columnCount) {
-                    return false;
+                return false;
+            }
+        }
+        // whether column num matches.
+        if (headerlen < m_columnCount) {
+            return false;
+        } else {
+            // whether column name has according table column.
+            int matchColCount = 0;
+            for (String name : firstset) {
+                if (colNames.containsValue(name.trim())) {
+                    matchColCount++;
                 }
             }
-            // get the mapping from file column num to table column num.
-            order = new Integer[headerlen];
-            for (int fileCol = 0; fileCol < headerlen; fileCol++) {
-                String name = firstline[fileCol];
-                Integer tableCol = colNames.inverse().get(name.trim().toUpperCase());
-                order[fileCol] = tableCol;
+            if (matchColCount != m_columnCount) {
+                return false;
             }
-        } catch (IOException ex) {
-            m_log.error("Failed to read CSV line from file: " + ex);
+        }
+        // get the mapping from file column num to table column num.
+        order = new Integer[headerlen];
+        for (int fileCol = 0; fileCol < headerlen; fileCol++) {
+            String name = firstline[fileCol];
+            Integer tableCol = colNames.inverse().get(name.trim().toUpperCase());
+            order[fileCol] = tableCol;
         }
         return true;
     }
@@ -24,6 +24,7 @@ import java.io.FileNotFoundException;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.nio.charset.Charset;
 import java.util.TimeZone;
 import java.util.concurrent.LinkedBlockingQueue;
 
@@ -77,6 +78,7 @@ public class CSVLoader implements BulkLoaderErrorHandler {
     private static BufferedWriter out_logfile;
     private static BufferedWriter out_reportfile;
     private static CsvPreference csvPreference = null;
+    private static CSVParallelFileReader parallelReader = null;
     /**
      * default CSV separator
      */
@@ -117,6 +119,14 @@ public class CSVLoader implements BulkLoaderErrorHandler {
      * Stop when all connections are lost?
      */
     public static final boolean DEFAULT_STOP_ON_DISCONNECT = false;
+    /**
+     * Number of threads parsing the file
+     */
+    public static final int DEFAULT_PARSERS = 1;
+    /**
+     * Size of the file chunks parsed in parallel
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 4 * 1024 * 1024;
     /**
      * Used for testing only.
      */
@@ -330,6 +340,12 @@ public class CSVLoader implements BulkLoaderErrorHandler {
 
         @Option(desc = "Stop when all connections are lost", hasArg = false)
         boolean stopondisconnect = DEFAULT_STOP_ON_DISCONNECT;
+
+        @Option(desc = "number of threads parsing the file, rows are then loaded in no particular order (default: 1)")
+        int parsers = DEFAULT_PARSERS;
+
+        @Option(desc = "size in bytes of the file chunks handed to the parser threads (default: 4194304 = 4MB)")
+        int chunksize = DEFAULT_CHUNK_SIZE;
         /**
          * Validate command line options.
          */
@@ -356,6 +372,12 @@ public class CSVLoader implements BulkLoaderErrorHandler {
             if (batch < 0) {
                 exitWithMessageAndUsage("batch size number must be >= 0");
             }
+            if (parsers < 1) {
+                exitWithMessageAndUsage("parsers must be >= 1");
+            }
+            if (chunksize < 1) {
+                exitWithMessageAndUsage("chunksize must be >= 1");
+            }
             if(!customNullString.isEmpty() && !blank.equals("error")){
                 blank = "empty";
             }
@@ -499,8 +521,10 @@ public class CSVLoader implements BulkLoaderErrorHandler {
             CSVFileReader.initializeReader(cfg, csvClient, listReader);
 
             CSVFileReader csvReader = new CSVFileReader(dataLoader, errHandler);
+            parallelReader = useParallelReader() ?
+                    new CSVParallelFileReader(cfg, csvReader, dataLoader, csvPreference) : null;
 
-            Thread readerThread = new Thread(csvReader);
+            Thread readerThread = new Thread(parallelReader != null ? parallelReader : csvReader);
             readerThread.setName("CSVFileReader");
             readerThread.setDaemon(true);
 
@@ -514,7 +538,7 @@ public class CSVLoader implements BulkLoaderErrorHandler {
 
             errHandler.waitForErrorFlushComplete();
 
-            readerTime = (csvReader.m_parsingTime) / 1000000;
+            readerTime = (parallelReader != null ? parallelReader.getParsingTime() : csvReader.m_parsingTime) / 1000000;
             insertCount = dataLoader.getProcessedRows();
             ackCount = insertCount - dataLoader.getFailedRows();
             rowsQueued = CSVFileReader.m_totalRowCount.get();
@@ -549,6 +573,25 @@ public class CSVLoader implements BulkLoaderErrorHandler {
         }
     }
 
+    /**
+     * Parse on several threads if asked to and if the file can be split.
+     */
+    private static boolean useParallelReader() {
+        if (config.parsers <= 1 || standin) {
+            return false;
+        }
+        if (config.limitrows != Integer.MAX_VALUE) {
+            m_log.warn("--limitrows reads the file on a single thread.");
+            return false;
+        }
+        if (!CSVParallelFileReader.canSplit(Charset.forName(config.charset), config)) {
+            m_log.warn("A file encoded in " + config.charset + " or with non-ASCII quote or escape characters "
+                    + "is read on a single thread.");
+            return false;
+        }
+        return true;
+    }
+
     private static void configuration() {
         csvPreference = new CsvPreference.Builder(config.quotechar, config.separator, "\n").build();
         if (config.file.equals("")) {
@@ -665,6 +708,9 @@ public class CSVLoader implements BulkLoaderErrorHandler {
                     + m_errorCount + "\n");
             out_reportfile.write("CSVLoader rate: " + insertCount
                     / elapsedTimeSec + " row/s\n");
+            if (parallelReader != null) {
+                parallelReader.writeReport(out_reportfile);
+            }
 
             m_log.info("Invalid row file: " + pathInvalidrowfile);
             m_log.info("Log file: " + pathLogfile);
@@ -0,0 +1,437 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.utils;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.supercsv.io.CsvListReader;
+import org.supercsv.io.ICsvListReader;
+import org.supercsv.prefs.CsvPreference;
+import org.supercsv_voltpatches.tokenizer.Tokenizer;
+import org.voltcore.logging.VoltLogger;
+import org.voltcore.utils.CoreUtils;
+
+/**
+ * Reads a CSV file with several parser threads.
+ *
+ * The reader thread splits the file into chunks of whole records. Records
+ * may span lines inside quotes, so the chunk boundaries are found by
+ * following the quote and escape characters byte by byte, which is much
+ * cheaper than tokenizing. Each parser thread tokenizes and checks the rows
+ * of one chunk at a time with a CSVFileReader and inserts them into the
+ * loader, which hashes them straight to the per partition queues of the
+ * bulk loader. Rows of different chunks are inserted in no particular order.
+ *
+ * The skipped lines and the header are handled by the reader thread before
+ * splitting, the same way the tokenizer handles them for the single
+ * threaded reader.
+ */
+class CSVParallelFileReader implements Runnable {
+    private static final VoltLogger m_log = new VoltLogger("CSVLOADER");
+    private static final long PROGRESS_INTERVAL_SECONDS = 10;
+
+    /**
+     * Whole records from the file.
+     */
+    private static final class Chunk {
+        final byte[] m_data;
+        final int m_length;
+        // Number of file lines before the chunk
+        final long m_firstLine;
+
+        Chunk(byte[] data, int length, long firstLine) {
+            m_data = data;
+            m_length = length;
+            m_firstLine = firstLine;
+        }
+    }
+
+    private static final Chunk END_OF_FILE = new Chunk(new byte[0], 0, -1);
+
+    private final CSVLoader.CSVConfig m_config;
+    private final CSVFileReader m_template;
+    private final CSVDataLoader m_loader;
+    private final CsvPreference m_preference;
+    private final Charset m_charset;
+    private final byte m_quote;
+    private final byte m_escape;
+    private final ArrayBlockingQueue<Chunk> m_chunks;
+    private final Thread[] m_parsers;
+    private volatile boolean m_stopped = false;
+
+    // Lines read by the last call to recordEnd or skipPrologue
+    private long m_scannedLines = 0;
+
+    // Stage counters
+    private final AtomicLong m_bytesRead = new AtomicLong(0);
+    private final AtomicLong m_chunksParsed = new AtomicLong(0);
+    // Time the reader thread waited for a parser to take a chunk
+    private final AtomicLong m_splitStallNanos = new AtomicLong(0);
+    // Time the parsers waited for the reader thread
+    private final AtomicLong m_parseIdleNanos = new AtomicLong(0);
+    private final AtomicLong m_parseNanos = new AtomicLong(0);
+    // Time the parsers waited for room in the loader queues
+    private final AtomicLong m_insertStallNanos = new AtomicLong(0);
+    private long m_lastProgressRows = 0;
+    private long m_lastProgressTime = System.nanoTime();
+
+    /**
+     * The chunk boundaries are found by looking at single bytes, which only
+     * works if no character of the file encoding can contain the byte of a
+     * newline, quote or escape character.
+     */
+    static boolean canSplit(Charset charset, CSVLoader.CSVConfig config) {
+        final String name = charset.name();
+        final boolean asciiCompatible = name.equals("UTF-8") || name.equals("US-ASCII") ||
+                name.startsWith("ISO-8859-") || name.startsWith("windows-125");
+        return asciiCompatible && config.quotechar < 0x80 && config.escape < 0x80;
+    }
+
+    CSVParallelFileReader(CSVLoader.CSVConfig config, CSVFileReader template, CSVDataLoader loader,
+            CsvPreference preference) {
+        m_config = config;
+        m_template = template;
+        m_loader = loader;
+        m_preference = preference;
+        m_charset = Charset.forName(config.charset);
+        m_quote = (byte) config.quotechar;
+        m_escape = (byte) config.escape;
+        m_chunks = new ArrayBlockingQueue<Chunk>(config.parsers);
+        m_parsers = new Thread[config.parsers];
+        for (int i = 0; i < m_parsers.length; i++) {
+            m_parsers[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    parse();
+                }
+            }, "CSVParser-" + i);
+            m_parsers[i].setDaemon(true);
+        }
+    }
+
+    @Override
+    public void run() {
+        final ScheduledThreadPoolExecutor progress =
+                CoreUtils.getScheduledThreadPoolExecutor("CSVLoader Progress", 1, CoreUtils.SMALL_STACK_SIZE);
+        progress.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                logProgress();
+            }
+        }, PROGRESS_INTERVAL_SECONDS, PROGRESS_INTERVAL_SECONDS, TimeUnit.SECONDS);
+
+        for (Thread parser : m_parsers) {
+            parser.start();
+        }
+        try {
+            try (FileInputStream in = new FileInputStream(m_config.file)) {
+                split(in);
+            } catch (IOException e) {
+                m_log.error("Failed to read CSV line from file: " + e);
+            }
+            for (int i = 0; i < m_parsers.length; i++) {
+                m_chunks.put(END_OF_FILE);
+            }
+            for (Thread parser : m_parsers) {
+                parser.join();
+            }
+        } catch (InterruptedException e) {
+            m_log.error("CSVLoader interrupted: " + e);
+            m_stopped = true;
+            for (Thread parser : m_parsers) {
+                parser.interrupt();
+            }
+        }
+        progress.shutdown();
+        logProgress();
+
+        //Now wait for processors to see endOfData and count down. After that drain to finish all callbacks
+        try {
+            m_log.debug("Waiting for CSVDataLoader to finish.");
+            m_loader.close();
+            m_log.debug("CSVDataLoader Done.");
+        } catch (Exception ex) {
+            m_log.warn("Stopped processing because of connection error. "
+                    + "A report will be generated with what we processed so far. Error: " + ex);
+        }
+    }
+
+    /**
+     * Cut the file into chunks of about --chunksize bytes. A record longer
+     * than that gets a chunk of its own.
+     */
+    private void split(InputStream in) throws IOException, InterruptedException {
+        byte[] buf = new byte[m_config.chunksize];
+        int length = 0;
+        long line = 0;
+        boolean prologue = true;
+        boolean eof = false;
+        while (!m_stopped) {
+            while (!eof && length < buf.length) {
+                final int read = in.read(buf, length, buf.length - length);
+                if (read < 0) {
+                    eof = true;
+                } else {
+                    length += read;
+                    m_bytesRead.addAndGet(read);
+                }
+            }
+
+            if (prologue) {
+                final int start = skipPrologue(buf, length, eof);
+                if (start < 0) {
+                    // The header or the skipped lines are longer than a chunk
+                    buf = Arrays.copyOf(buf, buf.length * 2);
+                    continue;
+                }
+                System.arraycopy(buf, start, buf, 0, length - start);
+                length -= start;
+                line = m_scannedLines;
+                CSVFileReader.m_totalLineCount.addAndGet(line);
+                prologue = false;
+                if (!eof) {
+                    continue;
+                }
+            }
+
+            final int end;
+            if (eof) {
+                end = length;
+            } else {
+                end = recordEnd(buf, 0, length, true);
+                if (end < 0) {
+                    // No record ends in the buffer
+                    buf = Arrays.copyOf(buf, buf.length * 2);
+                    continue;
+                }
+            }
+            if (end > 0) {
+                final long start = System.nanoTime();
+                m_chunks.put(new Chunk(buf, end, line));
+                m_splitStallNanos.addAndGet(System.nanoTime() - start);
+                line += m_scannedLines;
+            }
+            if (eof) {
+                return;
+            }
+            final byte[] next = new byte[Math.max(m_config.chunksize, 2 * (length - end))];
+            System.arraycopy(buf, end, next, 0, length - end);
+            length -= end;
+            buf = next;
+        }
+    }
+
+    /**
+     * Offset just past the first or the last newline in buf[start, length)
+     * that is not inside quotes, -1 if there is none. Also sets
+     * m_scannedLines to the number of lines up to there. Quotes are matched
+     * the way the tokenizer matches them: an escaped quote outside of quotes
+     * is a plain character, and a doubled quote inside quotes leaves and
+     * re-enters them.
+     */
+    int recordEnd(byte[] buf, int start, int length, boolean last) {
+        boolean quoted = false;
+        int end = -1;
+        long lines = 0;
+        m_scannedLines = 0;
+        for (int i = start; i < length; i++) {
+            final byte b = buf[i];
+            if (b == '\n') {
+                lines++;
+                if (!quoted) {
+                    end = i + 1;
+                    m_scannedLines = lines;
+                    if (!last) {
+                        break;
+                    }
+                }
+            } else if (quoted) {
+                if (b == m_quote) {
+                    quoted = false;
+                }
+            } else if (b == m_quote) {
+                quoted = true;
+            } else if (b == m_escape && i + 1 < length && buf[i + 1] != '\n') {
+                i++;
+            }
+        }
+        return end;
+    }
+
+    /**
+     * Find the header and skip the lines --skip asks for. Like the
+     * tokenizer, blank lines before the header are ignored and --skip counts
+     * the lines of the file, including the header.
+     * @return offset of the first line to load, or -1 if the buffer ends first
+     */
+    int skipPrologue(byte[] buf, int length, boolean eof) throws IOException {
+        boolean header = m_config.header;
+        long skip = m_config.skip;
+        long line = 0;
+        int pos = 0;
+        while (pos < length) {
+            int next = indexOf(buf, (byte) '\n', pos, length) + 1;
+            if (next == 0) {
+                if (!eof) {
+                    return -1;
+                }
+                next = length;
+            }
+            if (header) {
+                if (isBlank(buf, pos, next)) {
+                    pos = next;
+                    line++;
+                    continue;
+                }
+                int end = recordEnd(buf, pos, length, false);
+                long headerLines = m_scannedLines;
+                if (end < 0) {
+                    if (!eof) {
+                        return -1;
+                    }
+                    // The header is all there is, without a newline
+                    end = length;
+                    headerLines = 1;
+                }
+                checkHeader(buf, pos, end);
+                line += headerLines;
+                header = false;
+                skip++;
+                pos = end;
+                continue;
+            }
+            if (line + 1 > skip) {
+                break;
+            }
+            pos = next;
+            line++;
+        }
+        m_scannedLines = line;
+        return pos;
+    }
+
+    private static int indexOf(byte[] buf, byte b, int start, int length) {
+        for (int i = start; i < length; i++) {
+            if (buf[i] == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isBlank(byte[] buf, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (buf[i] > ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void checkHeader(byte[] buf, int start, int end) throws IOException {
+        final String text = new String(buf, start, end - start, m_charset);
+        final ICsvListReader reader = new CsvListReader(new Tokenizer(new StringReader(text), m_preference,
+                m_config.strictquotes, m_config.escape, m_config.columnsizelimit, 0, true), m_preference);
+        final String[] names = reader.getHeader(false);
+        if (names == null || !m_template.checkHeader(names)) {
+            m_log.error("In the CSV file " + m_config.file + ", the header "+ reader.getUntokenizedRow() +" does not match "
+                    + "an existing column in the table " + m_config.table + ".");
+            System.exit(-1);
+        }
+    }
+
+    private void parse() {
+        while (true) {
+            final Chunk chunk;
+            final long start = System.nanoTime();
+            try {
+                chunk = m_chunks.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            m_parseIdleNanos.addAndGet(System.nanoTime() - start);
+            if (chunk == END_OF_FILE) {
+                return;
+            }
+            if (m_stopped) {
+                // Let the reader thread finish
+                continue;
+            }
+
+            final ICsvListReader listReader = new CsvListReader(new Tokenizer(
+                    new InputStreamReader(new ByteArrayInputStream(chunk.m_data, 0, chunk.m_length), m_charset),
+                    m_preference, m_config.strictquotes, m_config.escape, m_config.columnsizelimit, 0, false),
+                    m_preference);
+            final CSVFileReader reader = new CSVFileReader(m_template, listReader, chunk.m_firstLine);
+            if (!reader.readRows()) {
+                m_stopped = true;
+            }
+            m_parseNanos.addAndGet(reader.m_parsingTime);
+            m_insertStallNanos.addAndGet(reader.m_insertTime);
+            m_chunksParsed.incrementAndGet();
+        }
+    }
+
+    /**
+     * @return the time spent tokenizing, summed over the parser threads, in nanoseconds
+     */
+    long getParsingTime() {
+        return m_parseNanos.get();
+    }
+
+    private synchronized void logProgress() {
+        final long rows = CSVFileReader.m_totalRowCount.get();
+        final long now = System.nanoTime();
+        final double seconds = (now - m_lastProgressTime) / 1e9;
+        m_log.info(String.format("Read %d MB in %d chunks, %d rows (%.0f rows/s). "
+                + "Reader waited %d ms for the parsers, parsers waited %d ms for the reader and %d ms for the loader.",
+                m_bytesRead.get() >> 20, m_chunksParsed.get(), rows,
+                seconds > 0 ? (rows - m_lastProgressRows) / seconds : 0.0,
+                TimeUnit.NANOSECONDS.toMillis(m_splitStallNanos.get()),
+                TimeUnit.NANOSECONDS.toMillis(m_parseIdleNanos.get()),
+                TimeUnit.NANOSECONDS.toMillis(m_insertStallNanos.get())));
+        m_lastProgressRows = rows;
+        m_lastProgressTime = now;
+    }
+
+    /**
+     * Add the time each stage waited for the others to the report file.
+     */
+    void writeReport(BufferedWriter out) throws IOException {
+        out.write("Number of parser threads: " + m_parsers.length + "\n");
+        out.write("Number of file chunks parsed: " + m_chunksParsed.get() + "\n");
+        out.write("Time reader waited for parsers: "
+                + TimeUnit.NANOSECONDS.toMillis(m_splitStallNanos.get()) + " ms\n");
+        out.write("Time parsers waited for reader: "
+                + TimeUnit.NANOSECONDS.toMillis(m_parseIdleNanos.get()) + " ms\n");
+        out.write("Time parsers waited for loader: "
+                + TimeUnit.NANOSECONDS.toMillis(m_insertStallNanos.get()) + " ms\n");
+    }
+}
@@ -1425,7 +1425,8 @@ public abstract class CatalogUtil {
         String formatBundle = importConfiguration.getFormat();
         String formatName = null;
         if (formatBundle != null && formatBundle.trim().length() > 0) {
-            if ("csv".equalsIgnoreCase(formatBundle) || "tsv".equalsIgnoreCase(formatBundle)) {
+            if ("csv".equalsIgnoreCase(formatBundle) || "tsv".equalsIgnoreCase(formatBundle)
+                    || "json".equalsIgnoreCase(formatBundle)) {
                 formatName = formatBundle;
                 formatBundle = "voltcsvformatter.jar";
             } else if (JAR_EXTENSION_RE.matcher(formatBundle).matches()) {
@@ -27,6 +27,8 @@ import java.util.concurrent.Future;
 import java.util.zip.DeflaterOutputStream;
 import java.util.zip.InflaterOutputStream;
 
+import org.voltcore.utils.CompressionStrategy;
+import org.voltcore.utils.CompressionStrategySnappy;
 import org.voltcore.utils.CoreUtils;
 import org.voltcore.utils.DBBPool;
 import org.voltcore.utils.DBBPool.BBContainer;
@@ -129,6 +131,12 @@ public final class CompressionService {
     }
 
     public static Future<BBContainer> compressAndCRC32cBufferAsync(final ByteBuffer inBuffer, final BBContainer outBufferC) {
+        return compressAndCRC32cBufferAsync(CompressionStrategySnappy.INSTANCE, inBuffer, outBufferC);
+    }
+
+    public static Future<BBContainer> compressAndCRC32cBufferAsync(final CompressionStrategy codec,
+                                                                   final ByteBuffer inBuffer,
+                                                                   final BBContainer outBufferC) {
         assert(inBuffer.isDirect());
         assert(outBufferC.b().isDirect());
         return submitCompressionTask(new Callable<BBContainer>() {
@@ -140,7 +148,7 @@ public final class CompressionService {
                 final int crcPosition = outBuffer.position();
                 outBuffer.position(outBuffer.position() + 4);
                 final int crcCalcStart = outBuffer.position();
-                compressBuffer(inBuffer, outBuffer);
+                codec.compressBuffer(inBuffer, outBuffer);
                 final int crc32c =
                         DBBPool.getCRC32C( outBufferC.address(), crcCalcStart, outBuffer.limit() - crcCalcStart);
                 outBuffer.putInt(crcPosition, crc32c);
@@ -153,7 +161,7 @@ public final class CompressionService {
     public static int compressBuffer(ByteBuffer buffer, ByteBuffer output) throws IOException {
         assert(buffer.isDirect());
         assert(output.isDirect());
-        return Snappy.compress(buffer, output);
+        return CompressionStrategySnappy.INSTANCE.compressBuffer(buffer, output);
     }
 
     public static byte[] compressBuffer(ByteBuffer buffer) throws IOException {
@@ -230,7 +238,7 @@ public final class CompressionService {
         assert(compressed.isDirect());
         assert(uncompressed.isDirect());
 
-        return Snappy.uncompress(compressed, uncompressed);
+        return CompressionStrategySnappy.INSTANCE.decompressBuffer(compressed, uncompressed);
     }
 
     public static byte[] decompressBytes(byte bytes[]) throws IOException {
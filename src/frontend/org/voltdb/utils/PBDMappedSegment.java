@@ -0,0 +1,545 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.utils;
+
+import org.voltcore.logging.VoltLogger;
+import org.voltcore.utils.CompressionStrategy;
+import org.voltcore.utils.DBBPool;
+import org.voltcore.utils.DBBPool.BBContainer;
+import org.voltcore.utils.DeferredSerialization;
+import org.voltdb.utils.BinaryDeque.OutputContainerFactory;
+
+import com.google_voltpatches.common.base.Preconditions;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Segment that uses the same file format as {@link PBDRegularSegment} but accesses the file
+ * through a memory mapping instead of reads and writes on the channel.
+ *
+ * Offers serialize or compress straight into the mapping and only update the header in memory,
+ * so a run of offers costs no system calls and the next {@link #sync()} flushes all of them at once.
+ * A segment open for write maps the full CHUNK_SIZE and trims the file back to the written length on close.
+ *
+ * Uncompressed entries are returned by poll as slices of the mapping rather than copies. Every
+ * outstanding slice holds a reference to the mapping, which is only unmapped after the segment is
+ * closed and the last slice has been discarded.
+ */
+public class PBDMappedSegment extends PBDSegment {
+    private static final VoltLogger LOG = new VoltLogger("HOST");
+
+    private static class Mapping {
+        private final MappedByteBuffer m_buf;
+        private final AtomicInteger m_refs = new AtomicInteger(1);
+
+        private Mapping(MappedByteBuffer buf) {
+            m_buf = buf;
+        }
+
+        private void retain() {
+            m_refs.incrementAndGet();
+        }
+
+        private void release() {
+            if (m_refs.decrementAndGet() == 0 && m_buf.capacity() > 0) {
+                DBBPool.wrapMBB(m_buf).discard();
+            }
+        }
+    }
+
+    private final Map<String, SegmentReader> m_readCursors = new HashMap<>();
+    private final Map<String, SegmentReader> m_closedCursors = new HashMap<>();
+
+    //ID of this segment
+    private final Long m_index;
+
+    private int m_numOfEntries = -1;
+    private int m_size = -1;
+
+    private Mapping m_mapping = null;
+    private boolean m_forWrite = false;
+    //Offset just past the last entry, where the next offer goes
+    private int m_writeOffset = SEGMENT_HEADER_BYTES;
+    //Mapping a file for write may have grown it, the first sync has to persist the new length
+    private boolean m_metadataSynced = false;
+
+    public PBDMappedSegment(Long index, File file) {
+        super(file);
+        m_index = index;
+        reset();
+    }
+
+    @Override
+    public long segmentId()
+    {
+        return m_index;
+    }
+
+    @Override
+    public File file()
+    {
+        return m_file;
+    }
+
+    @Override
+    public void reset()
+    {
+        m_syncedSinceLastEdit = false;
+    }
+
+    @Override
+    public int getNumEntries() throws IOException
+    {
+        if (m_closed) {
+            open(false, false);
+            closeReadersAndFile();
+        }
+        return m_numOfEntries;
+    }
+
+    @Override
+    public boolean isBeingPolled()
+    {
+        return !m_readCursors.isEmpty();
+    }
+
+    @Override
+    public boolean isOpenForReading(String cursorId) {
+        return m_readCursors.containsKey(cursorId);
+    }
+
+    @Override
+    public PBDSegmentReader openForRead(String cursorId) throws IOException
+    {
+        Preconditions.checkNotNull(cursorId, "Reader id must be non-null");
+        if (m_readCursors.containsKey(cursorId) || m_closedCursors.containsKey(cursorId)) {
+            throw new IOException("Segment is already open for reading for cursor " + cursorId);
+        }
+
+        if (m_closed) {
+            open(false, false);
+        }
+        SegmentReader reader = new SegmentReader(cursorId);
+        m_readCursors.put(cursorId, reader);
+        return reader;
+    }
+
+    @Override
+    public PBDSegmentReader getReader(String cursorId) {
+        PBDSegmentReader reader = m_closedCursors.get(cursorId);
+        return (reader == null) ? m_readCursors.get(cursorId) : reader;
+    }
+
+    @Override
+    protected void openForWrite(boolean emptyFile) throws IOException {
+        open(true, emptyFile);
+    }
+
+    private void open(boolean forWrite, boolean emptyFile) throws IOException {
+        if (!m_closed) {
+            throw new IOException("Segment is already opened");
+        }
+
+        if (!m_file.exists()) {
+            if (!forWrite) {
+                throw new IOException("File " + m_file + " does not exist");
+            }
+            m_syncedSinceLastEdit = false;
+        }
+        assert(m_ras == null);
+        m_ras = new RandomAccessFile( m_file, forWrite ? "rw" : "r");
+        m_fc = m_ras.getChannel();
+        try {
+            final long fileLength = m_fc.size();
+            if (forWrite) {
+                m_mapping = new Mapping(m_fc.map(MapMode.READ_WRITE, 0, Math.max(CHUNK_SIZE, fileLength)));
+            } else {
+                m_mapping = new Mapping(m_fc.map(MapMode.READ_ONLY, 0, fileLength));
+            }
+            m_forWrite = forWrite;
+            m_metadataSynced = false;
+            m_closed = false;
+
+            if (emptyFile) {
+                initNumEntries(0, 0);
+                m_writeOffset = SEGMENT_HEADER_BYTES;
+            } else if (fileLength >= SEGMENT_HEADER_BYTES) {
+                m_numOfEntries = m_mapping.m_buf.getInt(COUNT_OFFSET);
+                m_size = m_mapping.m_buf.getInt(SIZE_OFFSET);
+                m_writeOffset = endOfEntries();
+            } else {
+                m_numOfEntries = 0;
+                m_size = 0;
+                m_writeOffset = SEGMENT_HEADER_BYTES;
+            }
+        } catch (IOException e) {
+            closeReadersAndFile();
+            throw e;
+        }
+    }
+
+    /**
+     * Walk the entry headers to find where the last entry ends. The file length
+     * can't be used because a segment that wasn't closed cleanly is still CHUNK_SIZE long.
+     */
+    private int endOfEntries() throws IOException {
+        final ByteBuffer buf = m_mapping.m_buf;
+        int offset = SEGMENT_HEADER_BYTES;
+        for (int ii = 0; ii < m_numOfEntries; ii++) {
+            if (offset + OBJECT_HEADER_BYTES > buf.limit()) {
+                throw new EOFException();
+            }
+            final int length = buf.getInt(offset);
+            if (length < 1) {
+                throw new IOException("Read an invalid length");
+            }
+            offset += OBJECT_HEADER_BYTES + length;
+        }
+        if (offset > buf.limit()) {
+            throw new EOFException();
+        }
+        return offset;
+    }
+
+    private ByteBuffer slice(int offset, int length) {
+        final ByteBuffer dup = m_mapping.m_buf.duplicate();
+        dup.limit(offset + length);
+        dup.position(offset);
+        return dup.slice();
+    }
+
+    @Override
+    protected void initNumEntries(int count, int size) throws IOException {
+        m_numOfEntries = count;
+        m_size = size;
+
+        m_mapping.m_buf.putInt(COUNT_OFFSET, m_numOfEntries);
+        m_mapping.m_buf.putInt(SIZE_OFFSET, m_size);
+        m_syncedSinceLastEdit = false;
+    }
+
+    private void incrementNumEntries(int size)
+    {
+        m_numOfEntries++;
+        m_size += size;
+
+        m_mapping.m_buf.putInt(COUNT_OFFSET, m_numOfEntries);
+        m_mapping.m_buf.putInt(SIZE_OFFSET, m_size);
+        m_syncedSinceLastEdit = false;
+    }
+
+    /**
+     * Bytes of space available for inserting more entries
+     * @return
+     */
+    private int remaining() {
+        //Subtract 8 for the length and size prefix
+        return PBDSegment.CHUNK_SIZE - m_writeOffset - SEGMENT_HEADER_BYTES;
+    }
+
+    @Override
+    protected void truncate(long length) throws IOException {
+        m_writeOffset = (int) length;
+        m_syncedSinceLastEdit = false;
+    }
+
+    @Override
+    public void closeAndDelete() throws IOException {
+        close();
+        m_file.delete();
+
+        m_numOfEntries = -1;
+        m_size = -1;
+    }
+
+    @Override
+    public boolean isClosed()
+    {
+        return m_closed;
+    }
+
+    @Override
+    public void close() throws IOException {
+        m_closedCursors.clear();
+        closeReadersAndFile();
+    }
+
+    private void closeReadersAndFile() throws IOException {
+        m_readCursors.clear();
+        try {
+            // Give back the unused tail of the mapping. Outstanding slices
+            // never reach past the write offset so they stay valid.
+            if (m_forWrite && m_fc != null) {
+                m_fc.truncate(m_writeOffset);
+            }
+        } finally {
+            try {
+                if (m_mapping != null) {
+                    m_mapping.release();
+                }
+                if (m_ras != null) {
+                    m_ras.close();
+                }
+            } finally {
+                m_mapping = null;
+                m_forWrite = false;
+                m_ras = null;
+                m_fc = null;
+                m_closed = true;
+                reset();
+            }
+        }
+    }
+
+    @Override
+    public void sync() throws IOException {
+        if (m_closed) throw new IOException("Segment closed");
+        if (!m_syncedSinceLastEdit && m_forWrite) {
+            // Pages dirtied through the shared mapping are in the page cache, so fsync picks
+            // them up. MappedByteBuffer.force() would walk the whole mapping on every call.
+            m_fc.force(!m_metadataSynced);
+            m_metadataSynced = true;
+        }
+        m_syncedSinceLastEdit = true;
+    }
+
+    @Override
+    public boolean hasAllFinishedReading() throws IOException {
+        if (m_closed) throw new IOException("Segment closed");
+
+        if (m_readCursors.size() == 0) return false;
+
+        for (SegmentReader reader : m_readCursors.values()) {
+            if (reader.m_objectReadIndex < m_numOfEntries) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    @Override
+    public boolean offer(DBBPool.BBContainer cont, boolean compress) throws IOException
+    {
+        if (m_closed) throw new IOException("Segment closed");
+        final ByteBuffer buf = cont.b();
+        final int remaining = buf.remaining();
+        if (remaining < 32 || !buf.isDirect()) compress = false;
+        final int maxCompressedSize = (compress ? CODEC.maxCompressedLength(remaining) : remaining) + OBJECT_HEADER_BYTES;
+        if (remaining() < maxCompressedSize) return false;
+
+        m_syncedSinceLastEdit = false;
+
+        try {
+            final int dataOffset = m_writeOffset + OBJECT_HEADER_BYTES;
+            final int length;
+            if (compress) {
+                length = CODEC.compressBuffer(buf, slice(dataOffset, maxCompressedSize - OBJECT_HEADER_BYTES));
+            } else {
+                slice(dataOffset, remaining).put(buf);
+                length = remaining;
+            }
+            m_mapping.m_buf.putInt(m_writeOffset, length);
+            m_mapping.m_buf.putInt(m_writeOffset + 4, compress ? compressedFlags(CODEC) : NO_FLAGS);
+            m_writeOffset = dataOffset + length;
+
+            incrementNumEntries(remaining);
+        } finally {
+            cont.discard();
+        }
+
+        return true;
+    }
+
+    @Override
+    public int offer(DeferredSerialization ds) throws IOException
+    {
+        if (m_closed) throw new IOException("closed");
+        final int fullSize = ds.getSerializedSize() + OBJECT_HEADER_BYTES;
+        if (remaining() < fullSize) return -1;
+
+        m_syncedSinceLastEdit = false;
+        final int written = PBDUtils.writeDeferredSerialization(slice(m_writeOffset, fullSize), ds);
+        m_writeOffset += written + OBJECT_HEADER_BYTES;
+
+        incrementNumEntries(written);
+        return written;
+    }
+
+    @Override
+    public int size() {
+        return m_size;
+    }
+
+    @Override
+    protected int writeTruncatedEntry(BinaryDeque.TruncatorResponse entry, int length) throws IOException
+    {
+        // The replacement may be a slice of the entry it overwrites, so stage it in a separate buffer
+        int written = 0;
+        final DBBPool.BBContainer partialCont = DBBPool.allocateDirect(length);
+        try {
+            written += entry.writeTruncatedObject(partialCont.b());
+            partialCont.b().flip();
+
+            slice((int) m_fc.position(), partialCont.b().remaining()).put(partialCont.b());
+        } finally {
+            partialCont.discard();
+        }
+        return written;
+    }
+
+    private class SegmentReader implements PBDSegmentReader {
+        private final String m_cursorId;
+        private long m_readOffset = SEGMENT_HEADER_BYTES;
+        //Index of the next object to read, not an offset into the file
+        private int m_objectReadIndex = 0;
+        private int m_bytesRead = 0;
+        private int m_discardCount = 0;
+        private boolean m_closed = false;
+
+        public SegmentReader(String cursorId) {
+            assert(cursorId != null);
+            m_cursorId = cursorId;
+        }
+
+        @Override
+        public boolean hasMoreEntries() throws IOException {
+            return m_objectReadIndex < m_numOfEntries;
+        }
+
+        @Override
+        public boolean allReadAndDiscarded() throws IOException {
+            return m_discardCount == m_numOfEntries;
+        }
+
+        @Override
+        public BBContainer poll(OutputContainerFactory factory) throws IOException {
+            if (m_closed) throw new IOException("Reader closed");
+
+            if (!hasMoreEntries()) {
+                return null;
+            }
+
+            final ByteBuffer buf = m_mapping.m_buf;
+            final int entryOffset = (int) m_readOffset;
+            if (entryOffset + OBJECT_HEADER_BYTES > buf.limit()) {
+                throw new EOFException();
+            }
+            final int length = buf.getInt(entryOffset);
+            final int flags = buf.getInt(entryOffset + 4);
+            final boolean compressed = (flags & FLAG_COMPRESSED) != 0;
+            final int uncompressedLen;
+
+            if (length < 1) {
+                throw new IOException("Read an invalid length");
+            }
+            final int dataOffset = entryOffset + OBJECT_HEADER_BYTES;
+            if (dataOffset + length > buf.limit()) {
+                throw new EOFException();
+            }
+
+            final ByteBuffer data = slice(dataOffset, length);
+            final DBBPool.BBContainer retcont;
+            final Mapping mapping;
+            if (compressed) {
+                final CompressionStrategy codec = codecForFlags(flags);
+                uncompressedLen = codec.uncompressedLength(data);
+                retcont = factory.getContainer(uncompressedLen);
+                retcont.b().limit(uncompressedLen);
+                codec.decompressBuffer(data, retcont.b());
+                mapping = null;
+            } else {
+                uncompressedLen = length;
+                retcont = null;
+                mapping = m_mapping;
+                mapping.retain();
+            }
+
+            m_readOffset = dataOffset + length;
+            m_bytesRead += uncompressedLen;
+            m_objectReadIndex++;
+
+            return new DBBPool.BBContainer(compressed ? retcont.b() : data) {
+                private boolean m_discarded = false;
+
+                @Override
+                public void discard() {
+                    checkDoubleFree();
+                    if (m_discarded) {
+                        LOG.error("PBD Container discarded more than once");
+                        return;
+                    }
+
+                    m_discarded = true;
+                    if (retcont != null) {
+                        retcont.discard();
+                    } else {
+                        mapping.release();
+                    }
+                    m_discardCount++;
+                }
+            };
+        }
+
+        @Override
+        public int uncompressedBytesToRead() {
+            if (m_closed) throw new RuntimeException("Reader closed");
+
+            return m_size - m_bytesRead;
+        }
+
+        @Override
+        public long readOffset() {
+            return m_readOffset;
+        }
+
+        @Override
+        public int readIndex() {
+            return m_objectReadIndex;
+        }
+
+        @Override
+        public void rewindReadOffset(int byBytes) {
+            m_readOffset -= byBytes;
+        }
+
+        @Override
+        public void close() throws IOException {
+            m_closed = true;
+            m_readCursors.remove(m_cursorId);
+            m_closedCursors.put(m_cursorId, this);
+            if (m_readCursors.isEmpty()) {
+                closeReadersAndFile();
+            }
+        }
+
+        @Override
+        public boolean isClosed() {
+            return m_closed;
+        }
+    }
+}
@@ -18,6 +18,7 @@
 package org.voltdb.utils;
 
 import org.voltcore.logging.VoltLogger;
+import org.voltcore.utils.CompressionStrategy;
 import org.voltcore.utils.DBBPool;
 import org.voltcore.utils.DBBPool.BBContainer;
 import org.voltcore.utils.DeferredSerialization;
@@ -266,7 +267,7 @@ public class PBDRegularSegment extends PBDSegment {
         final ByteBuffer buf = cont.b();
         final int remaining = buf.remaining();
         if (remaining < 32 || !buf.isDirect()) compress = false;
-        final int maxCompressedSize = (compress ? CompressionService.maxCompressedLength(remaining) : remaining) + OBJECT_HEADER_BYTES;
+        final int maxCompressedSize = (compress ? CODEC.maxCompressedLength(remaining) : remaining) + OBJECT_HEADER_BYTES;
         if (remaining() < maxCompressedSize) return false;
 
         m_syncedSinceLastEdit = false;
@@ -277,11 +278,11 @@ public class PBDRegularSegment extends PBDSegment {
 
             if (compress) {
                 destBuf = DBBPool.allocateDirectAndPool(maxCompressedSize);
-                final int compressedSize = CompressionService.compressBuffer(buf, destBuf.b());
+                final int compressedSize = CODEC.compressBuffer(buf, destBuf.b());
                 destBuf.b().limit(compressedSize);
 
                 m_tmpHeaderBuf.b().putInt(compressedSize);
-                m_tmpHeaderBuf.b().putInt(FLAG_COMPRESSED);
+                m_tmpHeaderBuf.b().putInt(compressedFlags(CODEC));
             } else {
                 destBuf = cont;
                 m_tmpHeaderBuf.b().putInt(remaining);
@@ -419,6 +420,7 @@ public class PBDRegularSegment extends PBDSegment {
 
                 final DBBPool.BBContainer retcont;
                 if (compressed) {
+                    final CompressionStrategy codec = codecForFlags(flags);
                     final DBBPool.BBContainer compressedBuf = DBBPool.allocateDirectAndPool(length);
                     try {
                         while (compressedBuf.b().hasRemaining()) {
@@ -429,10 +431,10 @@ public class PBDRegularSegment extends PBDSegment {
                         }
                         compressedBuf.b().flip();
 
-                        uncompressedLen = CompressionService.uncompressedLength(compressedBuf.bDR());
+                        uncompressedLen = codec.uncompressedLength(compressedBuf.bDR());
                         retcont = factory.getContainer(uncompressedLen);
                         retcont.b().limit(uncompressedLen);
-                        CompressionService.decompressBuffer(compressedBuf.bDR(), retcont.b());
+                        codec.decompressBuffer(compressedBuf.bDR(), retcont.b());
                     } finally {
                         compressedBuf.discard();
                     }
@@ -17,6 +17,8 @@
 
 package org.voltdb.utils;
 
+import org.voltcore.utils.CompressionCodecs;
+import org.voltcore.utils.CompressionStrategy;
 import org.voltcore.utils.DBBPool;
 import org.voltcore.utils.DeferredSerialization;
 
@@ -99,6 +101,14 @@ public abstract class PBDSegment {
     private static final String TRUNCATOR_CURSOR = "__truncator__";
     static final int NO_FLAGS = 0;
     static final int FLAG_COMPRESSED = 1;
+    // Compressed entries carry the id of their codec in the second byte of the flags.
+    // Entries written before codecs could be chosen have 0 there, which is Snappy.
+    static final int CODEC_SHIFT = 8;
+    static final int CODEC_MASK = 0xFF;
+
+    // Codec for newly compressed entries, any registered codec can be read back
+    static final CompressionStrategy CODEC =
+            CompressionCodecs.forName(System.getProperty("PBD_COMPRESSION_CODEC", "SNAPPY"));
 
     static final int COUNT_OFFSET = 0;
     static final int SIZE_OFFSET = 4;
@@ -120,6 +130,19 @@ public abstract class PBDSegment {
         m_file = file;
     }
 
+    static int compressedFlags(CompressionStrategy codec) {
+        return FLAG_COMPRESSED | (codec.id() << CODEC_SHIFT);
+    }
+
+    static CompressionStrategy codecForFlags(int flags) throws IOException {
+        final int id = (flags >>> CODEC_SHIFT) & CODEC_MASK;
+        final CompressionStrategy codec = CompressionCodecs.forId(id);
+        if (codec == null) {
+            throw new IOException("Entry was compressed with unknown codec " + id);
+        }
+        return codec;
+    }
+
     abstract long segmentId();
     abstract File file();
 
@@ -167,6 +190,13 @@ public abstract class PBDSegment {
 
     abstract protected int writeTruncatedEntry(BinaryDeque.TruncatorResponse entry, int length) throws IOException;
 
+    /**
+     * Drop everything in the segment file past the given offset. Only called while open for write.
+     */
+    protected void truncate(long length) throws IOException {
+        m_fc.truncate(length);
+    }
+
     /**
      * Parse the segment and truncate the file if necessary.
      * @param truncator    A caller-supplied truncator that decides where in the segment to truncate
@@ -216,7 +246,7 @@ public abstract class PBDSegment {
                             entriesTruncated = initialEntryCount - (reader.readIndex() - 1);
                             //Don't forget to update the number of entries in the file
                             initNumEntries(reader.readIndex() - 1, sizeInBytes);
-                            m_fc.truncate(reader.readOffset() - (compressedLength + OBJECT_HEADER_BYTES));
+                            truncate(reader.readOffset() - (compressedLength + OBJECT_HEADER_BYTES));
                         }
                     } else {
                         assert retval.status == BinaryDeque.TruncatorResponse.Status.PARTIAL_TRUNCATE;
@@ -230,7 +260,7 @@ public abstract class PBDSegment {
                         sizeInBytes += written;
 
                         initNumEntries(reader.readIndex(), sizeInBytes);
-                        m_fc.truncate(partialEntryBeginOffset + written + OBJECT_HEADER_BYTES);
+                        truncate(partialEntryBeginOffset + written + OBJECT_HEADER_BYTES);
                     }
 
                     break;
@@ -254,6 +254,8 @@ public class PersistentBinaryDeque implements BinaryDeque {
     private final HashMap<String, ReadCursor> m_readCursors = new HashMap<>();
     private int m_numObjects;
     private int m_numDeleted;
+    // Memory mapped segments use the same file format, so this can change across restarts
+    private final boolean m_mappedSegments = Boolean.valueOf(System.getProperty("PBD_MMAP_SEGMENTS", "false"));
 
     /**
      * Create a persistent binary deque with the specified nonce and storage
@@ -483,6 +485,9 @@ public class PersistentBinaryDeque implements BinaryDeque {
     }
 
     private PBDSegment newSegment(long segmentId, File file) {
+        if (m_mappedSegments) {
+            return new PBDMappedSegment(segmentId, file);
+        }
         return new PBDRegularSegment(segmentId, file);
     }
 
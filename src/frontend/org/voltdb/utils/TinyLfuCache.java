@@ -0,0 +1,404 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.utils;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.google_voltpatches.common.cache.Weigher;
+
+/**
+ * A bounded cache for lookups from many threads that keeps the entries most
+ * likely to be used again.
+ *
+ * Keys are spread over independently locked stripes. Each stripe follows the
+ * W-TinyLFU design: a new entry goes into a small LRU window, and when it
+ * leaves the window it only displaces the least recently used entry of the
+ * main LRU area if it has been looked up more often. Lookup frequencies are
+ * estimated by a count-min sketch that is halved periodically, so it follows
+ * changes in the workload. A burst of one-off keys therefore cannot flush the
+ * entries that are used all the time.
+ *
+ * The cache is bounded by both entry count and total weight. The bounds are
+ * split evenly over the stripes, and an entry heavier than a stripe's share
+ * of the weight is not cached.
+ */
+public class TinyLfuCache<K, V> {
+    private static final int WINDOW_PERCENT = 1;
+
+    private static final class Entry<V> {
+        final V m_value;
+        final int m_weight;
+
+        Entry(V value, int weight) {
+            m_value = value;
+            m_weight = weight;
+        }
+    }
+
+    /**
+     * Count-min sketch with four counters per key, each capped at 15. Only
+     * the smallest of a key's counters are incremented, which keeps keys
+     * sharing a counter from inflating each other's estimates. Once the
+     * table has seen ten times as many additions as the stripe holds
+     * entries, every counter is halved.
+     */
+    static final class FrequencySketch {
+        private static final long[] SEEDS = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L };
+        private static final int MAX_COUNT = 15;
+
+        private final byte[] m_table;
+        private final int m_mask;
+        private final int m_sampleSize;
+        private int m_additions = 0;
+
+        FrequencySketch(int maxEntries) {
+            final int size = Integer.highestOneBit(Math.max(16, maxEntries * 16) - 1) << 1;
+            m_table = new byte[size];
+            m_mask = size - 1;
+            m_sampleSize = Math.max(16, maxEntries * 10);
+        }
+
+        void increment(int hash) {
+            final int frequency = frequency(hash);
+            if (frequency == MAX_COUNT) {
+                return;
+            }
+            for (int i = 0; i < SEEDS.length; i++) {
+                final int index = indexOf(hash, i);
+                if (m_table[index] == frequency) {
+                    m_table[index]++;
+                }
+            }
+            if (++m_additions >= m_sampleSize) {
+                reset();
+            }
+        }
+
+        int frequency(int hash) {
+            int frequency = MAX_COUNT;
+            for (int i = 0; i < SEEDS.length; i++) {
+                frequency = Math.min(frequency, m_table[indexOf(hash, i)]);
+            }
+            return frequency;
+        }
+
+        private void reset() {
+            for (int i = 0; i < m_table.length; i++) {
+                m_table[i] >>>= 1;
+            }
+            m_additions >>>= 1;
+        }
+
+        private int indexOf(int hash, int i) {
+            long h = (hash + SEEDS[i]) * SEEDS[i];
+            h += h >>> 32;
+            return (int) h & m_mask;
+        }
+    }
+
+    private static final class Stripe<K, V> {
+        // Both in access order, least recently used first
+        final LinkedHashMap<K, Entry<V>> m_window = new LinkedHashMap<K, Entry<V>>(16, .75f, true);
+        final LinkedHashMap<K, Entry<V>> m_main = new LinkedHashMap<K, Entry<V>>(16, .75f, true);
+        final FrequencySketch m_sketch;
+
+        final int m_windowMaxEntries;
+        final int m_mainMaxEntries;
+        final long m_maxWeight;
+        final long m_windowMaxWeight;
+        final long m_mainMaxWeight;
+        long m_windowWeight = 0;
+        long m_mainWeight = 0;
+
+        long m_hits = 0;
+        long m_misses = 0;
+        long m_insertions = 0;
+        long m_evictions = 0;
+        long m_rejections = 0;
+
+        Stripe(int maxEntries, long maxWeight) {
+            m_windowMaxEntries = Math.max(1, maxEntries * WINDOW_PERCENT / 100);
+            m_mainMaxEntries = Math.max(1, maxEntries - m_windowMaxEntries);
+            m_maxWeight = maxWeight;
+            m_windowMaxWeight = Math.max(1, maxWeight * WINDOW_PERCENT / 100);
+            m_mainMaxWeight = maxWeight;
+            m_sketch = new FrequencySketch(maxEntries);
+        }
+
+        synchronized V get(K key, int hash, boolean record) {
+            Entry<V> entry = m_window.get(key);
+            if (entry == null) {
+                entry = m_main.get(key);
+            }
+            if (record) {
+                m_sketch.increment(hash);
+                if (entry == null) {
+                    m_misses++;
+                }
+                else {
+                    m_hits++;
+                }
+            }
+            return entry == null ? null : entry.m_value;
+        }
+
+        synchronized V put(K key, int hash, V value, int weight, boolean onlyIfAbsent) {
+            Entry<V> existing = m_window.get(key);
+            if (existing == null) {
+                existing = m_main.get(key);
+            }
+            if (existing != null && onlyIfAbsent) {
+                return existing.m_value;
+            }
+
+            remove(key);
+            if (weight > m_maxWeight) {
+                m_rejections++;
+                return existing == null ? null : existing.m_value;
+            }
+            m_window.put(key, new Entry<V>(value, weight));
+            m_windowWeight += weight;
+            m_insertions++;
+
+            while (m_window.size() > m_windowMaxEntries || m_windowWeight > m_windowMaxWeight) {
+                final Map.Entry<K, Entry<V>> candidate = removeEldest(m_window);
+                m_windowWeight -= candidate.getValue().m_weight;
+                admit(candidate.getKey(), candidate.getValue());
+            }
+            return existing == null ? null : existing.m_value;
+        }
+
+        /**
+         * Move an entry leaving the window into the main area, if it is used
+         * more often than every entry it would displace. Nothing is evicted
+         * unless the entry is admitted.
+         */
+        private void admit(K key, Entry<V> candidate) {
+            final int frequency = m_sketch.frequency(spread(key.hashCode()));
+            int entries = m_main.size();
+            long weight = m_mainWeight;
+            int victims = 0;
+            final Iterator<Map.Entry<K, Entry<V>>> it = m_main.entrySet().iterator();
+            while (entries >= m_mainMaxEntries || weight + candidate.m_weight > m_mainMaxWeight) {
+                final Map.Entry<K, Entry<V>> victim = it.next();
+                if (frequency <= m_sketch.frequency(spread(victim.getKey().hashCode()))) {
+                    m_rejections++;
+                    return;
+                }
+                entries--;
+                weight -= victim.getValue().m_weight;
+                victims++;
+            }
+            for (int i = 0; i < victims; i++) {
+                m_mainWeight -= removeEldest(m_main).getValue().m_weight;
+                m_evictions++;
+            }
+            m_main.put(key, candidate);
+            m_mainWeight += candidate.m_weight;
+        }
+
+        synchronized V remove(K key) {
+            Entry<V> entry = m_window.remove(key);
+            if (entry != null) {
+                m_windowWeight -= entry.m_weight;
+                return entry.m_value;
+            }
+            entry = m_main.remove(key);
+            if (entry != null) {
+                m_mainWeight -= entry.m_weight;
+                return entry.m_value;
+            }
+            return null;
+        }
+
+        synchronized void clear() {
+            m_window.clear();
+            m_main.clear();
+            m_windowWeight = 0;
+            m_mainWeight = 0;
+        }
+
+        private static <K, V> Map.Entry<K, Entry<V>> removeEldest(LinkedHashMap<K, Entry<V>> map) {
+            final Iterator<Map.Entry<K, Entry<V>>> it = map.entrySet().iterator();
+            final Map.Entry<K, Entry<V>> eldest = it.next();
+            it.remove();
+            return eldest;
+        }
+    }
+
+    private final Stripe<K, V>[] m_stripes;
+    private final int m_shift;
+    private final Weigher<? super K, ? super V> m_weigher;
+
+    /**
+     * @param stripes     number of independently locked stripes, rounded up to a power of two
+     * @param maxEntries  maximum number of entries
+     * @param maxWeight   maximum total weight of the entries
+     * @param weigher     weight of an entry, e.g. its size in bytes
+     */
+    @SuppressWarnings("unchecked")
+    public TinyLfuCache(int stripes, int maxEntries, long maxWeight, Weigher<? super K, ? super V> weigher) {
+        assert(stripes > 0 && maxEntries > 0 && maxWeight > 0);
+        final int count = stripes == 1 ? 1 : Integer.highestOneBit(stripes - 1) << 1;
+        m_stripes = new Stripe[count];
+        for (int i = 0; i < count; i++) {
+            m_stripes[i] = new Stripe<K, V>(Math.max(1, maxEntries / count), Math.max(1, maxWeight / count));
+        }
+        m_shift = 32 - Integer.numberOfTrailingZeros(count);
+        m_weigher = weigher;
+    }
+
+    private static int spread(int hash) {
+        return hash * 0x9e3779b9;
+    }
+
+    private Stripe<K, V> stripeFor(int hash) {
+        // The low bits index the sketch, so pick the stripe from the high bits
+        return m_shift == 32 ? m_stripes[0] : m_stripes[hash >>> m_shift];
+    }
+
+    /**
+     * Look up a key. The lookup counts towards the key's frequency and the
+     * hit and miss counts.
+     * @return the cached value or null
+     */
+    public V get(K key) {
+        final int hash = spread(key.hashCode());
+        return stripeFor(hash).get(key, hash, true);
+    }
+
+    /**
+     * Look up a key without recording the lookup.
+     * @return the cached value or null
+     */
+    public V peek(K key) {
+        final int hash = spread(key.hashCode());
+        return stripeFor(hash).get(key, hash, false);
+    }
+
+    /**
+     * Cache a value, replacing any value cached for the key. The value may
+     * later be refused admission to the main area, or be evicted.
+     * @return the value previously cached for the key, or null
+     */
+    public V put(K key, V value) {
+        final int hash = spread(key.hashCode());
+        return stripeFor(hash).put(key, hash, value, m_weigher.weigh(key, value), false);
+    }
+
+    /**
+     * Cache a value if the key has no value yet.
+     * @return the value already cached for the key, or null if the given value was cached
+     */
+    public V putIfAbsent(K key, V value) {
+        final int hash = spread(key.hashCode());
+        return stripeFor(hash).put(key, hash, value, m_weigher.weigh(key, value), true);
+    }
+
+    public V remove(K key) {
+        return stripeFor(spread(key.hashCode())).remove(key);
+    }
+
+    public void invalidateAll() {
+        for (Stripe<K, V> stripe : m_stripes) {
+            stripe.clear();
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Stripe<K, V> stripe : m_stripes) {
+            synchronized (stripe) {
+                size += stripe.m_window.size() + stripe.m_main.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return the total weight of the cached entries
+     */
+    public long weight() {
+        long weight = 0;
+        for (Stripe<K, V> stripe : m_stripes) {
+            synchronized (stripe) {
+                weight += stripe.m_windowWeight + stripe.m_mainWeight;
+            }
+        }
+        return weight;
+    }
+
+    public long hitCount() {
+        long count = 0;
+        for (Stripe<K, V> stripe : m_stripes) {
+            synchronized (stripe) {
+                count += stripe.m_hits;
+            }
+        }
+        return count;
+    }
+
+    public long missCount() {
+        long count = 0;
+        for (Stripe<K, V> stripe : m_stripes) {
+            synchronized (stripe) {
+                count += stripe.m_misses;
+            }
+        }
+        return count;
+    }
+
+    public long insertionCount() {
+        long count = 0;
+        for (Stripe<K, V> stripe : m_stripes) {
+            synchronized (stripe) {
+                count += stripe.m_insertions;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return the number of entries removed from the main area to make room
+     */
+    public long evictionCount() {
+        long count = 0;
+        for (Stripe<K, V> stripe : m_stripes) {
+            synchronized (stripe) {
+                count += stripe.m_evictions;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return the number of entries that were not admitted to the main area
+     */
+    public long rejectionCount() {
+        long count = 0;
+        for (Stripe<K, V> stripe : m_stripes) {
+            synchronized (stripe) {
+                count += stripe.m_rejections;
+            }
+        }
+        return count;
+    }
+}
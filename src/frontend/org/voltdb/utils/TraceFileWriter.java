@@ -21,6 +21,8 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
+import java.util.Collections;
+import java.util.List;
 import java.util.Queue;
 import java.util.zip.GZIPOutputStream;
 
@@ -35,9 +37,18 @@ public class TraceFileWriter implements Runnable {
     private static final VoltLogger s_logger = new VoltLogger("TRACER");
 
     private final File m_path;
+    private final List<VoltTrace.TraceEventBatch> m_recorded;
     private final Queue<VoltTrace.TraceEventBatch> m_events;
 
     public TraceFileWriter(File path, Queue<VoltTrace.TraceEventBatch> events) {
+        this(path, Collections.emptyList(), events);
+    }
+
+    /**
+     * @param recorded Batches drained from the per-thread recorders, written before the queued events.
+     */
+    public TraceFileWriter(File path, List<VoltTrace.TraceEventBatch> recorded, Queue<VoltTrace.TraceEventBatch> events) {
+        m_recorded = recorded;
         m_events = events;
         m_path = path;
     }
@@ -50,8 +61,10 @@ public class TraceFileWriter implements Runnable {
         long count = 0;
 
         try {
+            int recordedIndex = 0;
             VoltTrace.TraceEventBatch eventSupplier;
-            while ((eventSupplier = m_events.poll()) != null) {
+            while ((eventSupplier = recordedIndex < m_recorded.size() ? m_recorded.get(recordedIndex++)
+                                                                       : m_events.poll()) != null) {
                 VoltTrace.TraceEvent event;
                 while ((event = eventSupplier.nextEvent()) != null) {
                     if (fileWriter == null) {
@@ -0,0 +1,282 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.voltdb.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.voltcore.utils.Bits;
+import org.voltcore.utils.CoreUtils;
+import org.voltdb.iv2.TxnEgo;
+
+/**
+ * Allocation free trace event recorder owned by a single thread. Events are
+ * written as fixed size records of primitives into a preallocated ring. Event
+ * names and argument keys are interned ids (see {@link VoltTrace#intern(String)}
+ * and {@link VoltTrace#argKey(String, VoltTrace.ArgType)}) and ids and argument
+ * values are raw longs, so nothing is formatted or boxed until the ring is
+ * dumped. When the ring is full the oldest events of this thread are
+ * overwritten.
+ *
+ * Usage from the owning thread:
+ * <pre>
+ * final TraceRecorder rec = VoltTrace.recorder(Category.SPI);
+ * if (rec != null) {
+ *     rec.begin(Category.SPI, TraceEventType.ASYNC_BEGIN, NAME, IdFormat.HSID_TXNID, hsId, spHandle, 0, 0)
+ *        .arg(TXN_ID, txnId)
+ *        .publish();
+ * }
+ * </pre>
+ *
+ * Publication is lock-free: the owner writes the record slots with plain
+ * stores and then lazily publishes the new sequence number. The dumper copies
+ * the published records and discards any that the owner may have overwritten
+ * while they were being copied.
+ */
+public final class TraceRecorder {
+    static final int RING_SIZE = ringSize(Integer.getInteger("VOLTTRACE_RING_SIZE", 8192));
+    static final int MAX_ARGS = 6;
+
+    // Record layout, in longs
+    private static final int NANOS = 0;
+    private static final int META = 1;
+    private static final int IDS = 2;
+    private static final int KEYS = 6;   // two arg keys per long
+    private static final int VALUES = 9;
+    static final int RECORD_LONGS = 16;
+
+    private final long[] m_ring;
+    private final int m_mask;
+    private final Thread m_thread;
+
+    // Sequence of the next record, only touched by the owner
+    private long m_next = 0;
+    // Record being staged by the owner between begin() and publish()
+    private int m_base;
+    private long m_meta;
+    private int m_argc;
+
+    // Number of records visible to the dumper
+    private final AtomicLong m_published = new AtomicLong();
+    // Number of records already handed to a dump, only touched by the dumper
+    private long m_consumed = 0;
+
+    TraceRecorder(Thread thread, int capacity) {
+        m_thread = thread;
+        m_ring = new long[capacity * RECORD_LONGS];
+        m_mask = capacity - 1;
+    }
+
+    private static int ringSize(int requested) {
+        final int size = Math.max(16, requested);
+        return Integer.bitCount(size) == 1 ? size : Integer.highestOneBit(size) << 1;
+    }
+
+    /**
+     * Start staging an event without an id.
+     */
+    public TraceRecorder begin(VoltTrace.Category cat, VoltTrace.TraceEventType type, int name) {
+        return begin(cat, type, name, VoltTrace.IdFormat.NONE, 0, 0, 0, 0);
+    }
+
+    /**
+     * Start staging an event. The timestamp is taken here. Nothing is visible
+     * to the dumper until {@link #publish()} is called.
+     * @param name   Interned event name.
+     * @param format How the id components are rendered into the event id.
+     */
+    public TraceRecorder begin(VoltTrace.Category cat, VoltTrace.TraceEventType type, int name,
+                               VoltTrace.IdFormat format, long id0, long id1, long id2, long id3) {
+        final long[] ring = m_ring;
+        final int base = (int) (m_next & m_mask) * RECORD_LONGS;
+        ring[base + NANOS] = System.nanoTime();
+        ring[base + IDS] = id0;
+        ring[base + IDS + 1] = id1;
+        ring[base + IDS + 2] = id2;
+        ring[base + IDS + 3] = id3;
+        ring[base + KEYS] = 0;
+        ring[base + KEYS + 1] = 0;
+        ring[base + KEYS + 2] = 0;
+        m_base = base;
+        m_argc = 0;
+        m_meta = type.ordinal() | (cat.ordinal() << 8) | (format.ordinal() << 16) | ((long) name << 32);
+        return this;
+    }
+
+    /**
+     * Add an argument to the staged event. Arguments past {@link #MAX_ARGS} are ignored.
+     * @param key   Argument key from {@link VoltTrace#argKey(String, VoltTrace.ArgType)}.
+     * @param value Raw value, rendered according to the key's type on dump.
+     */
+    public TraceRecorder arg(int key, long value) {
+        final int argc = m_argc;
+        if (argc < MAX_ARGS) {
+            final int base = m_base;
+            m_ring[base + KEYS + (argc >> 1)] |= (key & 0xFFFFFFFFL) << ((argc & 1) << 5);
+            m_ring[base + VALUES + argc] = value;
+            m_argc = argc + 1;
+        }
+        return this;
+    }
+
+    public TraceRecorder arg(int key, boolean value) {
+        return arg(key, value ? 1 : 0);
+    }
+
+    /**
+     * Make the staged event visible to the dumper.
+     */
+    public void publish() {
+        m_ring[m_base + META] = m_meta | ((long) m_argc << 24);
+        m_published.lazySet(++m_next);
+    }
+
+    Thread getThread() {
+        return m_thread;
+    }
+
+    boolean hasUnconsumed() {
+        return m_published.get() > m_consumed;
+    }
+
+    /**
+     * Copy the records published since the last drain. Only called from the
+     * VoltTrace work thread.
+     * @return The copied records, or null if there are none.
+     */
+    RecordedEventBatch drain() {
+        final long end = m_published.get();
+        final int capacity = m_mask + 1;
+        long start = Math.max(m_consumed, end - capacity);
+        if (start >= end) {
+            return null;
+        }
+
+        final long[] copy = new long[(int) (end - start) * RECORD_LONGS];
+        for (long seq = start; seq < end; seq++) {
+            System.arraycopy(m_ring, (int) (seq & m_mask) * RECORD_LONGS,
+                             copy, (int) (seq - start) * RECORD_LONGS, RECORD_LONGS);
+        }
+
+        // Records the owner may have started overwriting during the copy are torn. The
+        // slot of the next unpublished record holds the oldest published one, so it is
+        // never trusted either.
+        Bits.unsafe.loadFence();
+        final long after = m_published.get();
+        final long firstValid = Math.max(start, after - capacity + 1);
+        m_consumed = end;
+        if (firstValid >= end) {
+            return null;
+        }
+        return new RecordedEventBatch(m_thread.getId(), m_thread.getName(), copy,
+                                      (int) (firstValid - start), (int) (end - start));
+    }
+
+    /**
+     * A batch of records copied out of a ring, materialized into trace events
+     * one at a time by the trace file writer.
+     */
+    static class RecordedEventBatch extends VoltTrace.TraceEventBatch {
+        private final long m_tid;
+        private final String m_threadName;
+        private final long[] m_records;
+        private final int m_end;
+        private int m_pos;
+        private int m_metaLeft = 2;
+
+        RecordedEventBatch(long tid, String threadName, long[] records, int start, int end) {
+            super(null, tid);
+            m_tid = tid;
+            m_threadName = threadName;
+            m_records = records;
+            m_pos = start;
+            m_end = end;
+        }
+
+        long firstNanos() {
+            return m_records[m_pos * RECORD_LONGS + NANOS];
+        }
+
+        @Override
+        protected VoltTrace.TraceEvent nextEvent() {
+            final VoltTrace.TraceEvent event;
+            if (m_metaLeft > 0) {
+                // Name the process and thread, the record has no other way to carry them
+                event = m_metaLeft-- == 2 ? VoltTrace.meta("process_name", "name", CoreUtils.getHostnameOrAddress())
+                                          : VoltTrace.meta("thread_name", "name", m_threadName);
+                event.setNanos(firstNanos());
+            } else if (m_pos < m_end) {
+                event = toEvent(m_records, m_pos++ * RECORD_LONGS);
+            } else {
+                return null;
+            }
+            event.setTid(m_tid);
+            return event;
+        }
+    }
+
+    static VoltTrace.TraceEvent toEvent(long[] records, int base) {
+        final long meta = records[base + META];
+        final VoltTrace.TraceEventType type = VoltTrace.TraceEventType.values()[(int) (meta & 0xFF)];
+        final VoltTrace.Category cat = VoltTrace.Category.values()[(int) ((meta >> 8) & 0xFF)];
+        final VoltTrace.IdFormat format = VoltTrace.IdFormat.values()[(int) ((meta >> 16) & 0xFF)];
+        final int argc = (int) ((meta >> 24) & 0xFF);
+        final String name = VoltTrace.internedName((int) (meta >>> 32));
+
+        final Object[] args = new Object[argc * 2];
+        for (int i = 0; i < argc; i++) {
+            final int key = (int) (records[base + KEYS + (i >> 1)] >>> ((i & 1) << 5));
+            args[2 * i] = VoltTrace.internedName(key >>> 4);
+            args[2 * i + 1] = formatArg(VoltTrace.ArgType.values()[key & 0xF], records[base + VALUES + i]);
+        }
+
+        final VoltTrace.TraceEvent event = new VoltTrace.TraceEvent(type, name,
+                formatId(format, records[base + IDS], records[base + IDS + 1],
+                         records[base + IDS + 2], records[base + IDS + 3]),
+                args);
+        event.setCategory(cat);
+        event.setNanos(records[base + NANOS]);
+        return event;
+    }
+
+    private static String formatId(VoltTrace.IdFormat format, long id0, long id1, long id2, long id3) {
+        switch (format) {
+        case LONG:
+            return Long.toString(id0);
+        case HSID_TXNID:
+            return MiscUtils.hsIdTxnIdToString(id0, id1);
+        case HSID_PAIR_TXNID:
+            return MiscUtils.hsIdPairTxnIdToString(id0, id1, id2, id3);
+        default:
+            return null;
+        }
+    }
+
+    private static Object formatArg(VoltTrace.ArgType type, long value) {
+        switch (type) {
+        case TXNID:
+            return TxnEgo.txnIdToString(value);
+        case HSID:
+            return CoreUtils.hsIdToString(value);
+        case BOOLEAN:
+            return value != 0;
+        case NAME:
+            return VoltTrace.internedName((int) value);
+        default:
+            return value;
+        }
+    }
+}
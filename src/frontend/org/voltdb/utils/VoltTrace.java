@@ -19,14 +19,19 @@ package org.voltdb.utils;
 import java.io.File;
 import java.io.IOException;
 import java.text.DecimalFormat;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.LinkedTransferQueue;
@@ -53,6 +58,10 @@ import org.voltcore.utils.CoreUtils;
  * events will be removed to make room for new events. Events in the ring buffer
  * can be dumped to a file on user's request.
  *
+ * Hot paths can use {@link #recorder(Category)} instead, which records events
+ * as primitives into a preallocated per-thread ring and only formats them
+ * when they are dumped.
+ *
  * This class is thread-safe.
  */
 public class VoltTrace implements Runnable {
@@ -68,6 +77,22 @@ public class VoltTrace implements Runnable {
         CI, MPI, MPSITE, SPI, SPSITE, EE, DRPRODUCER, DRCONSUMER
     }
 
+    /**
+     * How the id components of a recorded event are rendered into the event id.
+     * These match the {@link MiscUtils} formatters used by the event suppliers
+     * so that recorded and supplied events with the same id still pair up.
+     */
+    public enum IdFormat {
+        NONE, LONG, HSID_TXNID, HSID_PAIR_TXNID
+    }
+
+    /**
+     * How the raw value of a recorded event argument is rendered.
+     */
+    public enum ArgType {
+        LONG, TXNID, HSID, BOOLEAN, NAME
+    }
+
     private static Map<Character, TraceEventType> s_typeMap = new HashMap<>();
     public enum TraceEventType {
 
@@ -295,8 +320,12 @@ public class VoltTrace implements Runnable {
         private LinkedList<TraceEventWrapper> m_events = new LinkedList<>();
 
         public TraceEventBatch(Category cat) {
+            this(cat, Thread.currentThread().getId());
+        }
+
+        TraceEventBatch(Category cat, long tid) {
             m_cat = cat;
-            m_tid = Thread.currentThread().getId();
+            m_tid = tid;
         }
 
         /**
@@ -347,6 +376,10 @@ public class VoltTrace implements Runnable {
     static final int QUEUE_SIZE = Integer.getInteger("VOLTTRACE_QUEUE_SIZE", 4096);
     private static volatile VoltTrace s_tracer;
 
+    // Interned event names and argument keys used by the recorders. Id 0 is the null name.
+    private static final ConcurrentHashMap<String, Integer> s_internIds = new ConcurrentHashMap<>();
+    private static volatile String[] s_internedNames = new String[] { null };
+
     // Events from trace producers are put into this queue.
     // TraceFileWriter takes events from this queue and writes them to files.
     private EvictingQueue<TraceEventBatch> m_traceEvents = EvictingQueue.create(QUEUE_SIZE);
@@ -359,6 +392,14 @@ public class VoltTrace implements Runnable {
     private volatile Set<Category> m_enabledCategories = ImmutableSet.of();
     private final LinkedTransferQueue<Runnable> m_work = new LinkedTransferQueue<>();
 
+    // Per-thread binary recorders, created on first use by each thread
+    private final ConcurrentLinkedQueue<TraceRecorder> m_recorders = new ConcurrentLinkedQueue<>();
+    private final ThreadLocal<TraceRecorder> m_recorder = ThreadLocal.withInitial(() -> {
+        final TraceRecorder recorder = new TraceRecorder(Thread.currentThread(), TraceRecorder.RING_SIZE);
+        m_recorders.offer(recorder);
+        return recorder;
+    });
+
     private boolean isCategoryEnabled(Category cat) {
         return m_enabledCategories.contains(cat);
     }
@@ -368,16 +409,48 @@ public class VoltTrace implements Runnable {
         // If queue is full, drop oldest events
     }
 
+    private boolean hasRecordedEvents() {
+        for (TraceRecorder recorder : m_recorders) {
+            if (recorder.hasUnconsumed()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Copy the published records out of every recorder, oldest first. Recorders
+     * of threads that have exited are dropped once drained.
+     */
+    private List<TraceEventBatch> drainRecorders() {
+        final List<TraceRecorder.RecordedEventBatch> batches = new ArrayList<>();
+        final Iterator<TraceRecorder> it = m_recorders.iterator();
+        while (it.hasNext()) {
+            final TraceRecorder recorder = it.next();
+            final boolean alive = recorder.getThread().isAlive();
+            final TraceRecorder.RecordedEventBatch batch = recorder.drain();
+            if (batch != null) {
+                batches.add(batch);
+            }
+            if (!alive) {
+                it.remove();
+            }
+        }
+        batches.sort(Comparator.comparingLong(TraceRecorder.RecordedEventBatch::firstNanos));
+        return new ArrayList<>(batches);
+    }
+
     private ListenableFuture dumpEvents(File path) {
-        if (m_emptyQueue == null || m_traceEvents.isEmpty()) {
+        if (m_emptyQueue == null || (m_traceEvents.isEmpty() && !hasRecordedEvents())) {
             return null;
         }
 
+        final List<TraceEventBatch> recorded = drainRecorders();
         final EvictingQueue<TraceEventBatch> writeQueue = m_traceEvents;
         m_traceEvents = m_emptyQueue;
         m_emptyQueue = null;
 
-        final ListenableFuture future = m_writerThread.submit(new TraceFileWriter(path, writeQueue));
+        final ListenableFuture future = m_writerThread.submit(new TraceFileWriter(path, recorded, writeQueue));
         future.addListener(() -> m_work.offer(() -> m_emptyQueue = writeQueue), CoreUtils.SAMETHREADEXECUTOR);
         return future;
     }
@@ -447,6 +520,62 @@ public class VoltTrace implements Runnable {
             return null;
         }
     }
+    /**
+     * Get the calling thread's binary recorder for the given category. Events
+     * recorded through it are allocation free and only converted to trace
+     * events when dumped. The recorder must only be used by the calling thread.
+     * @param cat The category the events will be recorded under.
+     * @return The recorder, or null if trace logging for the category is not enabled.
+     */
+    public static TraceRecorder recorder(Category cat) {
+        final VoltTrace tracer = s_tracer;
+        if (tracer != null && tracer.isCategoryEnabled(cat)) {
+            return tracer.m_recorder.get();
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Intern an event name or argument value for use with {@link TraceRecorder}.
+     * Callers on hot paths should intern fixed names once into constants.
+     * @return The id of the name, 0 for null.
+     */
+    public static int intern(String name) {
+        if (name == null) {
+            return 0;
+        }
+        final Integer id = s_internIds.get(name);
+        return id != null ? id : internSlow(name);
+    }
+
+    private static synchronized int internSlow(String name) {
+        Integer id = s_internIds.get(name);
+        if (id == null) {
+            final String[] names = s_internedNames;
+            id = names.length;
+            final String[] grown = Arrays.copyOf(names, names.length + 1);
+            grown[id] = name;
+            // Publish the name before the id can be handed out
+            s_internedNames = grown;
+            s_internIds.put(name, id);
+        }
+        return id;
+    }
+
+    static String internedName(int id) {
+        final String[] names = s_internedNames;
+        return id >= 0 && id < names.length ? names[id] : null;
+    }
+
+    /**
+     * Intern an argument key for use with {@link TraceRecorder#arg(int, long)}.
+     * @param type How the argument value is rendered when dumped.
+     */
+    public static int argKey(String name, ArgType type) {
+        return (intern(name) << 4) | type.ordinal();
+    }
+
     /**
      * Creates a metadata trace event. This method does not queue the
      * event. Call {@link TraceEventBatch#add(Supplier)} to queue the event.
@@ -0,0 +1,298 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltcore.messaging;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.voltcore.network.PicoNetwork;
+import org.voltcore.utils.CoreUtils;
+import org.voltcore.utils.DeferredSerialization;
+
+/**
+ * Sends messages through a ForeignHost with coalescing on, and feeds whatever it
+ * hands to the network back into the receiving side of a ForeignHost.
+ */
+public class TestForeignHostCoalescing {
+
+    private static final long SOURCE_HSID = CoreUtils.getHSIdFromHostAndSite(1, 3);
+    private static final long DEST1_HSID = CoreUtils.getHSIdFromHostAndSite(0, 1);
+    private static final long DEST2_HSID = CoreUtils.getHSIdFromHostAndSite(0, 2);
+
+    private HostMessenger m_messenger;
+    private Mailbox m_mailbox1;
+    private Mailbox m_mailbox2;
+    // Everything enqueued to the network, in order
+    private final List<Object> m_enqueued = new ArrayList<>();
+    private ForeignHost m_sender;
+    private ForeignHost m_receiver;
+
+    @Before
+    public void setUp() throws Exception {
+        m_messenger = mock(HostMessenger.class);
+        m_mailbox1 = mock(Mailbox.class);
+        m_mailbox2 = mock(Mailbox.class);
+        when(m_messenger.validateForeignHostId(anyInt())).thenReturn(true);
+        when(m_messenger.getMailbox(DEST1_HSID)).thenReturn(m_mailbox1);
+        when(m_messenger.getMailbox(DEST2_HSID)).thenReturn(m_mailbox2);
+        when(m_messenger.getMessageFactory()).thenReturn(new VoltMessageFactory());
+
+        PicoNetwork network = mock(PicoNetwork.class);
+        Answer<Object> capture = new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) {
+                m_enqueued.add(invocation.getArguments()[0]);
+                return null;
+            }
+        };
+        doAnswer(capture).when(network).enqueue(any(DeferredSerialization.class));
+        doAnswer(capture).when(network).enqueue(any(ByteBuffer.class));
+        doAnswer(capture).when(network).enqueueAndDrain(any(ByteBuffer.class));
+
+        m_sender = new ForeignHost(m_messenger, 0, mock(SocketChannel.class), 10000,
+                new InetSocketAddress(0), network);
+        m_sender.m_coalesceMaxBytes = 16 * 1024;
+        m_receiver = new ForeignHost(m_messenger, 1, mock(SocketChannel.class), 10000,
+                new InetSocketAddress(0), mock(PicoNetwork.class));
+    }
+
+    private static BinaryPayloadMessage message(int id, int payloadSize) {
+        BinaryPayloadMessage message = new BinaryPayloadMessage(
+                new byte[] { (byte) id }, new byte[payloadSize]);
+        message.m_sourceHSId = SOURCE_HSID;
+        return message;
+    }
+
+    /** What the network thread would write for an enqueued frame, length prefix included */
+    private static ByteBuffer serialize(Object frame) throws Exception {
+        if (frame instanceof ByteBuffer) {
+            return ((ByteBuffer) frame).duplicate();
+        }
+        DeferredSerialization ds = (DeferredSerialization) frame;
+        ByteBuffer buf = ByteBuffer.allocate(ds.getSerializedSize());
+        ds.serialize(buf);
+        return buf;
+    }
+
+    /** Strip the length prefix and hand the frame to the receiving side */
+    private void receive(ByteBuffer frame) throws Exception {
+        assertEquals(frame.remaining() - 4, frame.getInt());
+        m_receiver.m_handler.handleMessage(frame.slice(), null);
+    }
+
+    private static int frameType(ByteBuffer frame) {
+        return frame.getInt(4 + 8);
+    }
+
+    private List<BinaryPayloadMessage> deliveredTo(Mailbox mailbox, int count) {
+        ArgumentCaptor<VoltMessage> captor = ArgumentCaptor.forClass(VoltMessage.class);
+        verify(mailbox, times(count)).deliver(captor.capture());
+        List<BinaryPayloadMessage> messages = new ArrayList<>();
+        for (VoltMessage message : captor.getAllValues()) {
+            assertEquals(SOURCE_HSID, message.m_sourceHSId);
+            messages.add((BinaryPayloadMessage) message);
+        }
+        return messages;
+    }
+
+    private static void assertIds(List<BinaryPayloadMessage> messages, int... ids) {
+        assertEquals(ids.length, messages.size());
+        for (int ii = 0; ii < ids.length; ii++) {
+            assertArrayEquals(new byte[] { (byte) ids[ii] }, messages.get(ii).m_metadata);
+        }
+    }
+
+    @Test
+    public void testCoalescingIsOffByDefault() throws Exception {
+        assertEquals(0, ForeignHost.COALESCE_MAX_BYTES);
+        m_sender.m_coalesceMaxBytes = ForeignHost.COALESCE_MAX_BYTES;
+        for (int ii = 0; ii < 3; ii++) {
+            m_sender.send(new long[] { DEST1_HSID }, message(ii, 10));
+        }
+        assertEquals(3, m_enqueued.size());
+        for (Object frame : m_enqueued) {
+            ByteBuffer buf = serialize(frame);
+            assertEquals(1, frameType(buf));
+            receive(buf);
+        }
+        assertIds(deliveredTo(m_mailbox1, 3), 0, 1, 2);
+    }
+
+    @Test
+    public void testSingleMessage() throws Exception {
+        m_sender.send(new long[] { DEST1_HSID, DEST2_HSID }, message(7, 100));
+        assertEquals(1, m_enqueued.size());
+
+        // A frame holding one message goes out in the plain format
+        ByteBuffer frame = serialize(m_enqueued.get(0));
+        assertEquals(2, frameType(frame));
+        receive(frame);
+
+        assertIds(deliveredTo(m_mailbox1, 1), 7);
+        assertIds(deliveredTo(m_mailbox2, 1), 7);
+        assertEquals(100, deliveredTo(m_mailbox1, 1).get(0).m_payload.length);
+    }
+
+    @Test
+    public void testManyMessages() throws Exception {
+        for (int ii = 0; ii < 20; ii++) {
+            long destinations[] = ii % 2 == 0 ? new long[] { DEST1_HSID }
+                    : new long[] { DEST1_HSID, DEST2_HSID };
+            m_sender.send(destinations, message(ii, ii * 10));
+        }
+        // Nothing was serialized in between, so all of them share the first frame
+        assertEquals(1, m_enqueued.size());
+        ByteBuffer frame = serialize(m_enqueued.get(0));
+        assertEquals(ForeignHost.COALESCED_FRAME, frameType(frame));
+        assertEquals(20, frame.getInt(4 + 8 + 4));
+        receive(frame);
+
+        List<BinaryPayloadMessage> delivered = deliveredTo(m_mailbox1, 20);
+        assertIds(delivered, 0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17, 18, 19);
+        for (int ii = 0; ii < 20; ii++) {
+            assertEquals(ii * 10, delivered.get(ii).m_payload.length);
+        }
+        assertIds(deliveredTo(m_mailbox2, 10), 1, 3, 5, 7, 9, 11, 13, 15, 17, 19);
+
+        // The next message opens a new frame
+        m_sender.send(new long[] { DEST1_HSID }, message(20, 0));
+        assertEquals(2, m_enqueued.size());
+    }
+
+    @Test
+    public void testMaxBytesSplitsFrames() throws Exception {
+        final int maxBytes = 512;
+        m_sender.m_coalesceMaxBytes = maxBytes;
+        for (int ii = 0; ii < 30; ii++) {
+            m_sender.send(new long[] { DEST1_HSID }, message(ii, 100));
+        }
+        assertTrue(m_enqueued.size() > 1);
+
+        int[] ids = new int[30];
+        for (int ii = 0; ii < ids.length; ii++) {
+            ids[ii] = ii;
+        }
+        for (Object enqueued : m_enqueued) {
+            ByteBuffer frame = serialize(enqueued);
+            assertTrue(frame.remaining() - 4 <= maxBytes);
+            receive(frame);
+        }
+        assertIds(deliveredTo(m_mailbox1, 30), ids);
+
+        // A message bigger than the limit still goes out, in a frame of its own
+        m_sender.send(new long[] { DEST2_HSID }, message(30, 2 * maxBytes));
+        m_sender.send(new long[] { DEST2_HSID }, message(31, 10));
+        int frames = m_enqueued.size();
+        receive(serialize(m_enqueued.get(frames - 2)));
+        receive(serialize(m_enqueued.get(frames - 1)));
+        assertIds(deliveredTo(m_mailbox2, 2), 30, 31);
+    }
+
+    @Test
+    public void testStopNodeNoticeClosesFrame() throws Exception {
+        for (int ii = 0; ii < 3; ii++) {
+            m_sender.send(new long[] { DEST1_HSID }, message(ii, 10));
+        }
+        m_sender.sendStopNodeNotice(5);
+        for (int ii = 3; ii < 5; ii++) {
+            m_sender.send(new long[] { DEST1_HSID }, message(ii, 10));
+        }
+
+        // The notice is written after the messages sent before it and ahead of the later ones
+        assertEquals(3, m_enqueued.size());
+        assertTrue(m_enqueued.get(1) instanceof ByteBuffer);
+        ByteBuffer notice = serialize(m_enqueued.get(1));
+        assertEquals(ForeignHost.STOPNODE_NOTICE, frameType(notice));
+
+        final List<String> received = new ArrayList<>();
+        doAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) {
+                BinaryPayloadMessage message = (BinaryPayloadMessage) invocation.getArguments()[0];
+                received.add("message " + message.m_metadata[0]);
+                return null;
+            }
+        }).when(m_mailbox1).deliver(any(VoltMessage.class));
+        doAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) {
+                received.add("stop node " + invocation.getArguments()[0]);
+                return null;
+            }
+        }).when(m_messenger).addStopNodeNotice(anyInt());
+
+        for (Object enqueued : m_enqueued) {
+            receive(serialize(enqueued));
+        }
+        assertEquals(Arrays.asList("message 0", "message 1", "message 2", "stop node 5",
+                "message 3", "message 4"), received);
+    }
+
+    @Test
+    public void testPoisonPillClosesFrame() throws Exception {
+        for (int ii = 0; ii < 2; ii++) {
+            m_sender.send(new long[] { DEST1_HSID }, message(ii, 10));
+        }
+        m_sender.sendPoisonPill("test", ForeignHost.CRASH_SPECIFIED);
+        m_sender.send(new long[] { DEST1_HSID }, message(2, 10));
+
+        assertEquals(3, m_enqueued.size());
+        ByteBuffer pill = serialize(m_enqueued.get(1));
+        assertEquals(ForeignHost.POISON_PILL, frameType(pill));
+
+        // Receiving the pill would crash this process, so only the frames around it are read
+        ByteBuffer before = serialize(m_enqueued.get(0));
+        assertEquals(ForeignHost.COALESCED_FRAME, frameType(before));
+        receive(before);
+        assertIds(deliveredTo(m_mailbox1, 2), 0, 1);
+
+        ByteBuffer after = serialize(m_enqueued.get(2));
+        assertEquals(1, frameType(after));
+        receive(after);
+        assertIds(deliveredTo(m_mailbox1, 3), 0, 1, 2);
+        verify(m_mailbox2, never()).deliver(any(VoltMessage.class));
+        verify(m_messenger, never()).addStopNodeNotice(anyInt());
+    }
+}
@@ -59,8 +59,11 @@ import java.nio.channels.GatheringByteChannel;
 import java.nio.channels.SelectionKey;
 import java.util.concurrent.atomic.AtomicLong;
 
+import org.voltcore.utils.DBBPool;
+import org.voltcore.utils.DBBPool.BBContainer;
 import org.voltcore.utils.EstTime;
 import org.voltcore.utils.EstTimeUpdater;
+import org.voltcore.utils.ZeroCopySerialization;
 import org.voltdb.AdmissionControlGroup;
 
 import junit.framework.TestCase;
@@ -452,4 +455,156 @@ public class TestNIOWriteStream extends TestCase {
         assertEquals(0, queue.get());
     }
 
+    /**
+     * Channel that accepts a limited number of bytes through gathering
+     * writes and records what it was given.
+     */
+    private static class GatheringChannel extends MockChannel {
+        GatheringChannel() {
+            super(MockChannel.SINK, 0);
+        }
+        int m_budget = Integer.MAX_VALUE;
+        int m_gatheringWrites = 0;
+        final ByteBuffer m_received = ByteBuffer.allocate(4096);
+
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+            m_gatheringWrites++;
+            long written = 0;
+            for (int ii = offset; ii < offset + length && m_budget > 0; ii++) {
+                ByteBuffer src = srcs[ii];
+                while (src.hasRemaining() && m_budget > 0) {
+                    m_received.put(src.get());
+                    written++;
+                    m_budget--;
+                }
+            }
+            return written;
+        }
+    }
+
+    private static ByteBuffer message(int length, int first) {
+        ByteBuffer buf = ByteBuffer.allocate(length);
+        for (int ii = 0; ii < length; ii++) {
+            buf.put((byte)(first + ii));
+        }
+        buf.flip();
+        return buf;
+    }
+
+    public void testGatheringWriteCoalesces() throws IOException {
+        GatheringChannel channel = new GatheringChannel();
+        MockPort port = new MockPort();
+        NIOWriteStream wstream = new NIOWriteStream(port);
+        wstream.m_gatherWrites = true;
+
+        // 40 byte messages don't share the 64 byte pool buffers
+        for (int ii = 0; ii < 5; ii++) {
+            wstream.enqueue(message(40, ii * 40));
+        }
+        wstream.serializeQueuedWrites(pool);
+        assertEquals(200, wstream.drainTo(channel));
+        assertTrue(wstream.isEmpty());
+        // One gathering write took everything, the next found the channel drained
+        assertEquals(1, channel.m_gatheringWrites);
+        assertEquals(1, wstream.getBytesAndMessagesWritten(false)[2]);
+        channel.m_received.flip();
+        for (int ii = 0; ii < 200; ii++) {
+            assertEquals((byte)ii, channel.m_received.get());
+        }
+        wstream.shutdown();
+    }
+
+    public void testGatheringPartialWrite() throws IOException {
+        GatheringChannel channel = new GatheringChannel();
+        MockPort port = new MockPort();
+        NIOWriteStream wstream = new NIOWriteStream(port);
+        wstream.m_gatherWrites = true;
+
+        for (int ii = 0; ii < 4; ii++) {
+            wstream.enqueue(message(40, ii * 40));
+        }
+        wstream.serializeQueuedWrites(pool);
+
+        // Stop part way through the second buffer
+        channel.m_budget = 50;
+        int wrote = wstream.drainTo(channel);
+        assertEquals(50, wrote);
+        assertFalse(wstream.isEmpty());
+        assertTrue(wstream.hadBackPressure());
+
+        wstream.enqueue(message(40, 160));
+        wstream.serializeQueuedWrites(pool);
+        channel.m_budget = Integer.MAX_VALUE;
+        wrote += wstream.drainTo(channel);
+        assertEquals(200, wrote);
+        assertTrue(wstream.isEmpty());
+        assertFalse(wstream.hadBackPressure());
+
+        // Bytes arrive in order despite the requeue
+        channel.m_received.flip();
+        for (int ii = 0; ii < 200; ii++) {
+            assertEquals((byte)ii, channel.m_received.get());
+        }
+        wstream.shutdown();
+    }
+
+    public void testZeroCopyTrailingBuffer() throws IOException {
+        GatheringChannel channel = new GatheringChannel();
+        MockPort port = new MockPort();
+        NIOWriteStream wstream = new NIOWriteStream(port);
+        wstream.m_gatherWrites = true;
+
+        final boolean[] released = new boolean[1];
+        final DBBPool.RefCountedContainer body = DBBPool.refCounted(new BBContainer(message(100, 20)) {
+            @Override
+            public void discard() {
+                checkDoubleFree();
+                released[0] = true;
+            }
+        });
+        wstream.enqueue(message(10, 0));
+        wstream.enqueue(new ZeroCopySerialization() {
+            BBContainer m_trailing = null;
+
+            @Override
+            public int getSerializedSize() {
+                return 110;
+            }
+
+            @Override
+            public BBContainer takeTrailingBuffer() {
+                m_trailing = body.retain(0, 100);
+                body.discard();
+                return m_trailing;
+            }
+
+            @Override
+            public void serializeHeader(ByteBuffer buf) {
+                buf.put(message(10, 10));
+            }
+
+            @Override
+            public void serialize(ByteBuffer buf) {
+                fail("The trailing buffer should not be copied");
+            }
+
+            @Override
+            public void cancel() {}
+        });
+        wstream.enqueue(message(10, 120));
+        wstream.serializeQueuedWrites(pool);
+        assertFalse(released[0]);
+
+        assertEquals(130, wstream.drainTo(channel));
+        assertTrue(wstream.isEmpty());
+        // The body is given back once it is on the wire
+        assertTrue(released[0]);
+        assertEquals(0, body.refCount());
+        channel.m_received.flip();
+        for (int ii = 0; ii < 130; ii++) {
+            assertEquals((byte)ii, channel.m_received.get());
+        }
+        wstream.shutdown();
+    }
 }
@@ -0,0 +1,132 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.voltcore.utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class TestCompressionStrategy extends TestCase {
+
+    // Compressible but not trivially so
+    private static byte[] sampleData(int length) {
+        final Random r = new Random(42);
+        final byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) ('a' + r.nextInt(8));
+        }
+        return data;
+    }
+
+    public void testRegistry() {
+        assertSame(CompressionStrategySnappy.INSTANCE, CompressionCodecs.forId(0));
+        assertSame(CompressionStrategyLZ4.FAST, CompressionCodecs.forName("lz4"));
+        assertSame(CompressionStrategyLZ4.HIGH, CompressionCodecs.forName("LZ4HC"));
+        assertNull(CompressionCodecs.forId(200));
+        try {
+            CompressionCodecs.forName("zip");
+            fail();
+        } catch (IllegalArgumentException expected) {}
+
+        for (CompressionStrategy codec : CompressionCodecs.codecs()) {
+            assertSame(codec, CompressionCodecs.forId(codec.id()));
+        }
+    }
+
+    public void testByteArrayRoundTrip() throws IOException {
+        final byte[] data = sampleData(100000);
+        for (CompressionStrategy codec : CompressionCodecs.codecs()) {
+            final byte[] compressed = codec.compress(data);
+            assertTrue(codec.name(), compressed.length < data.length);
+            assertTrue(Arrays.equals(data, codec.uncompress(compressed)));
+        }
+    }
+
+    private static void checkBufferRoundTrip(CompressionStrategy codec, boolean direct) throws IOException {
+        final byte[] data = sampleData(65536);
+        final int maxLength = codec.maxCompressedLength(data.length);
+        final ByteBuffer input = direct ? ByteBuffer.allocateDirect(data.length + 10) : ByteBuffer.allocate(data.length + 10);
+        final ByteBuffer compressed = direct ? ByteBuffer.allocateDirect(maxLength + 16) : ByteBuffer.allocate(maxLength + 16);
+        final ByteBuffer output = direct ? ByteBuffer.allocateDirect(data.length + 32) : ByteBuffer.allocate(data.length + 32);
+
+        input.position(10);
+        input.put(data);
+        input.position(10);
+        compressed.position(16);
+        final int compressedLength = codec.compressBuffer(input, compressed);
+        assertTrue(compressedLength <= maxLength);
+        // The input is left alone and the output limit marks the end of the compressed data
+        assertEquals(10, input.position());
+        assertEquals(16, compressed.position());
+        assertEquals(16 + compressedLength, compressed.limit());
+
+        assertEquals(data.length, codec.uncompressedLength(compressed));
+        output.position(32);
+        assertEquals(data.length, codec.decompressBuffer(compressed, output));
+        assertEquals(16, compressed.position());
+        assertEquals(32, output.position());
+        assertEquals(32 + data.length, output.limit());
+        final byte[] result = new byte[data.length];
+        output.get(result);
+        assertTrue(codec.name(), Arrays.equals(data, result));
+    }
+
+    public void testBufferRoundTrip() throws IOException {
+        for (CompressionStrategy codec : CompressionCodecs.codecs()) {
+            checkBufferRoundTrip(codec, true);
+            // Snappy only works on direct buffers
+            if (codec != CompressionStrategySnappy.INSTANCE) {
+                checkBufferRoundTrip(codec, false);
+            }
+        }
+    }
+
+    public void testCorruptLZ4Data() throws IOException {
+        final byte[] compressed = CompressionStrategyLZ4.FAST.compress(sampleData(10000));
+        // Claim more data than the block holds
+        ByteBuffer.wrap(compressed).putInt(20000);
+        try {
+            CompressionStrategyLZ4.FAST.uncompress(compressed);
+            fail();
+        } catch (IOException expected) {}
+    }
+
+    public void testStatsCounters() throws IOException {
+        final CompressionStrategy codec = CompressionStrategyLZ4.HIGH;
+        final long bytesCompressed = codec.getBytesCompressed();
+        final long compressedBytes = codec.getCompressedBytes();
+        final long bytesDecompressed = codec.getBytesDecompressed();
+
+        final byte[] compressed = codec.compress(sampleData(5000));
+        codec.uncompress(compressed);
+
+        assertEquals(bytesCompressed + 5000, codec.getBytesCompressed());
+        assertEquals(compressedBytes + compressed.length, codec.getCompressedBytes());
+        assertEquals(bytesDecompressed + 5000, codec.getBytesDecompressed());
+        assertTrue(codec.getCompressNanos() > 0);
+        assertTrue(codec.getDecompressNanos() > 0);
+    }
+}
@@ -22,6 +22,8 @@
  */
 package org.voltdb;
 
+import org.voltdb.client.ClientResponse;
+
 import junit.framework.TestCase;
 
 public class TestAdmissionControlGroup extends TestCase {
@@ -142,4 +144,79 @@ public class TestAdmissionControlGroup extends TestCase {
             acg.reduceBackpressure(-1);
         } catch (IllegalArgumentException e) {}
     }
+
+    /*
+     * Complete a window worth of transactions with the given latency
+     */
+    private static long completeWindow(AdmissionControlGroup acg, long latencyMicros, long nowNanos) {
+        for (int ii = 0; ii < AdmissionControlGroup.ADAPTIVE_WINDOW_MIN_TXNS; ii++) {
+            acg.adaptPendingTxnLimit(latencyMicros, nowNanos);
+        }
+        return nowNanos + AdmissionControlGroup.ADAPTIVE_WINDOW_NANOS;
+    }
+
+    public void testAdaptiveLimitGrowsWhileLatencyHolds() {
+        AdmissionControlGroup adaptive = new AdmissionControlGroup(1024 * 1024 * 8, 1000, true);
+        adaptive.addMember(member);
+        assertEquals(1000, adaptive.getPendingTxnLimit());
+
+        // First window sets the baseline, the limit is not in use so it stays
+        long now = completeWindow(adaptive, 1000, System.nanoTime() + AdmissionControlGroup.ADAPTIVE_WINDOW_NANOS);
+        assertEquals(1000, adaptive.getPendingTxnLimit());
+        assertEquals(1000, adaptive.getBaselineLatencyMicros());
+
+        // Run into the limit, latency unchanged
+        for (int ii = 0; ii < 1001; ii++) {
+            adaptive.increaseBackpressure(1);
+        }
+        assertTrue(adaptive.hasBackPressure());
+        now = completeWindow(adaptive, 1100, now);
+        assertEquals(1000 + AdmissionControlGroup.LIMIT_INCREASE, adaptive.getPendingTxnLimit());
+        assertEquals(1, adaptive.getLimitIncreases());
+        // Still over 80% of the raised limit
+        assertTrue(adaptive.hasBackPressure());
+
+        completeWindow(adaptive, 1100, now);
+        assertEquals(1000 + 2 * AdmissionControlGroup.LIMIT_INCREASE, adaptive.getPendingTxnLimit());
+    }
+
+    public void testAdaptiveLimitShrinksOnLatency() {
+        AdmissionControlGroup adaptive = new AdmissionControlGroup(1024 * 1024 * 8, 1000, true);
+        adaptive.addMember(member);
+        long now = completeWindow(adaptive, 1000, System.nanoTime() + AdmissionControlGroup.ADAPTIVE_WINDOW_NANOS);
+        for (int ii = 0; ii < 800; ii++) {
+            adaptive.increaseBackpressure(1);
+        }
+        assertFalse(adaptive.hasBackPressure());
+
+        // Latency blows through the tolerance, 800 pending is now over the limit
+        now = completeWindow(adaptive, 5000, now);
+        assertEquals(750, adaptive.getPendingTxnLimit());
+        assertEquals(1, adaptive.getLimitDecreases());
+        assertEquals(5000, adaptive.getLastWindowLatencyMicros());
+        assertTrue(adaptive.hasBackPressure());
+        assertEquals(1, member.onBackpressure);
+
+        // Keeps shrinking but never below the floor
+        for (int ii = 0; ii < 50; ii++) {
+            now = completeWindow(adaptive, 5000, now);
+        }
+        assertEquals(50, adaptive.getPendingTxnLimit());
+
+        // Draining below 80% of the limit ends backpressure
+        for (int ii = 0; ii < 800; ii++) {
+            adaptive.reduceBackpressure(1);
+        }
+        assertFalse(adaptive.hasBackPressure());
+        assertEquals(1, member.offBackpressure);
+    }
+
+    public void testFixedLimitIgnoresLatency() {
+        AdmissionControlGroup fixed = new AdmissionControlGroup(1024 * 1024 * 8, 1000, false);
+        for (int ii = 0; ii < 10; ii++) {
+            fixed.logTransactionCompleted(1, "localhost", "Proc", 1000000L * (ii + 1), ClientResponse.SUCCESS);
+        }
+        assertEquals(1000, fixed.getPendingTxnLimit());
+        assertEquals(0, fixed.getBaselineLatencyMicros());
+    }
 }
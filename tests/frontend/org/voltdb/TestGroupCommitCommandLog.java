@@ -0,0 +1,280 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.voltdb;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.voltcore.utils.InstanceId;
+import org.voltdb.CommandLog.CompletionChecks;
+import org.voltdb.CommandLog.DurabilityListener;
+import org.voltdb.iv2.SpScheduler.DurableUniqueIdListener;
+import org.voltdb.iv2.TransactionTask;
+import org.voltdb.messaging.Iv2InitiateTaskMessage;
+import org.voltdb.utils.VoltFile;
+
+import com.google_voltpatches.common.collect.ImmutableSet;
+import com.google_voltpatches.common.util.concurrent.ListenableFuture;
+
+import junit.framework.TestCase;
+
+public class TestGroupCommitCommandLog extends TestCase {
+
+    /**
+     * Counts the tasks handed to it and the tasks released by the log.
+     */
+    static class CountingListener implements DurabilityListener {
+        final AtomicInteger m_released = new AtomicInteger();
+        final AtomicInteger m_batches = new AtomicInteger();
+        Checks m_current = new Checks();
+
+        class Checks implements CompletionChecks {
+            int m_tasks = 0;
+
+            @Override
+            public CompletionChecks startNewCheckList(int startSize) {
+                return new Checks();
+            }
+
+            @Override
+            public void addTask(TransactionTask task) {
+                m_tasks++;
+            }
+
+            @Override
+            public void setLastDurableUniqueId(long uniqueId) {}
+
+            @Override
+            public boolean isChanged() {
+                return m_tasks > 0;
+            }
+
+            @Override
+            public int getTaskListSize() {
+                return m_tasks;
+            }
+
+            @Override
+            public void processChecks() {}
+        }
+
+        @Override
+        public void setUniqueIdListener(DurableUniqueIdListener listener) {}
+
+        @Override
+        public void createFirstCompletionCheck(boolean isSyncLogging, boolean commandLoggingEnabled) {}
+
+        @Override
+        public boolean completionCheckInitialized() {
+            return true;
+        }
+
+        @Override
+        public void addTransaction(TransactionTask pendingTask) {
+            m_current.addTask(pendingTask);
+        }
+
+        @Override
+        public void initializeLastDurableUniqueId(long uniqueId) {}
+
+        @Override
+        public int getNumberOfTasks() {
+            return m_current.getTaskListSize();
+        }
+
+        @Override
+        public CompletionChecks startNewTaskList(int nextMaxRowCnt) {
+            Checks last = m_current;
+            m_current = (Checks) last.startNewCheckList(nextMaxRowCnt);
+            return last;
+        }
+
+        @Override
+        public void processDurabilityChecks(CompletionChecks completionChecks) {
+            m_batches.incrementAndGet();
+            m_released.addAndGet(completionChecks.getTaskListSize());
+        }
+
+        @Override
+        public int getPartitionId() {
+            return 0;
+        }
+    }
+
+    private File m_dir;
+
+    @Override
+    public void setUp() throws Exception {
+        m_dir = File.createTempFile("group_commit", "");
+        m_dir.delete();
+        m_dir.mkdirs();
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        VoltFile.recursivelyDelete(m_dir);
+    }
+
+    private static Iv2InitiateTaskMessage createInitiate(long txnId, boolean singlePart, String procName,
+                                                         Object... params) {
+        StoredProcedureInvocation spi = new StoredProcedureInvocation();
+        spi.setProcName(procName);
+        spi.setParams(params);
+        Iv2InitiateTaskMessage msg = new Iv2InitiateTaskMessage(1, 2, txnId - 1, txnId, txnId + 100,
+                false, singlePart, spi, 3, 4, false);
+        msg.setSpHandle(txnId);
+        return msg;
+    }
+
+    private static Map<String, Integer> statsColumns() {
+        Map<String, Integer> columns = new HashMap<String, Integer>();
+        for (CommandLogStats.StatName name : CommandLogStats.StatName.values()) {
+            columns.put(name.name(), name.ordinal());
+        }
+        return columns;
+    }
+
+    public void testSegmentRoundTrip() throws Exception {
+        Map<Integer, Long> initial = new TreeMap<Integer, Long>();
+        initial.put(0, 10L);
+        initial.put(1, 20L);
+        File segment = new File(m_dir, GroupCommitCommandLog.segmentFileName(1));
+        try (FileOutputStream fos = new FileOutputStream(segment)) {
+            ByteBuffer header = GroupCommitCommandLog.serializeHeader(3, 1, new InstanceId(5, 1234L), 99L, initial);
+            fos.getChannel().write(header);
+            fos.getChannel().write(GroupCommitCommandLog.serializeTxn(
+                    createInitiate(100, true, "Insert", 1, "one"), 100, 0, null));
+            fos.getChannel().write(GroupCommitCommandLog.serializeFault(7L, ImmutableSet.of(8L, 9L), 1, 101));
+            fos.getChannel().write(GroupCommitCommandLog.serializeTxn(
+                    createInitiate(200, false, "Update", 2L), 101, 1, new int[] {0, 1}));
+            // A torn record at the tail must be ignored
+            ByteBuffer torn = GroupCommitCommandLog.serializeTxn(createInitiate(300, true, "Insert", 3), 102, 0, null);
+            torn.limit(torn.limit() - 5);
+            fos.getChannel().write(torn);
+        }
+
+        List<File> segments = GroupCommitCommandLog.listSegments(m_dir);
+        assertEquals(1, segments.size());
+        try (GroupCommitCommandLog.SegmentReader reader = new GroupCommitCommandLog.SegmentReader(segments.get(0))) {
+            assertEquals(3, reader.m_hostId);
+            assertEquals(1, reader.m_segmentId);
+            assertEquals(new InstanceId(5, 1234L), reader.m_instanceId);
+            assertEquals(99L, reader.m_initialTxnId);
+            assertEquals(initial, reader.m_initialPartitionTxnIds);
+
+            GroupCommitCommandLog.TxnRecord sp = reader.next();
+            assertEquals(100, sp.m_spHandle);
+            assertEquals(0, sp.m_partitionId);
+            assertEquals(0, sp.m_involvedPartitions.length);
+            assertTrue(sp.m_message.isSinglePartition());
+            assertEquals(100, sp.m_message.getTxnId());
+            assertEquals(200, sp.m_message.getUniqueId());
+            assertEquals("Insert", sp.m_message.getStoredProcedureName());
+            assertEquals("one", sp.m_message.getStoredProcedureInvocation().getParameterAtIndex(1));
+
+            GroupCommitCommandLog.TxnRecord mp = reader.next();
+            assertEquals(101, mp.m_spHandle);
+            assertEquals(1, mp.m_partitionId);
+            assertEquals(2, mp.m_involvedPartitions.length);
+            assertFalse(mp.m_message.isSinglePartition());
+            assertEquals(200, mp.m_message.getTxnId());
+
+            assertNull(reader.next());
+        }
+    }
+
+    public void testReplayableFiltering() throws Exception {
+        assertTrue(GroupCommitCommandLog.isReplayable(createInitiate(1, true, "Insert")));
+        Iv2InitiateTaskMessage read = new Iv2InitiateTaskMessage(1, 2, 0, 1, 1, true, true,
+                createInitiate(1, true, "Select").getStoredProcedureInvocation(), 3, 4, false);
+        assertFalse(GroupCommitCommandLog.isReplayable(read));
+        assertFalse(GroupCommitCommandLog.isReplayable(createInitiate(1, false, "@Statistics")));
+    }
+
+    public void testSyncGroupCommitReleasesTasks() throws Exception {
+        GroupCommitCommandLog log = new GroupCommitCommandLog(true, 20, 1000, m_dir.getPath(), null);
+        try {
+            assertTrue(log.isSynchronous());
+            assertFalse(log.canOfferTask());
+            CountingListener listener = new CountingListener();
+            for (int i = 0; i < 50; i++) {
+                assertNull(log.log(null, i, null, listener, null));
+            }
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (listener.m_released.get() < 50 && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+            assertEquals(50, listener.m_released.get());
+            // Many transactions share one flush
+            assertTrue(listener.m_batches.get() < 50);
+        } finally {
+            log.shutdown();
+        }
+    }
+
+    public void testAsyncStats() throws Exception {
+        GroupCommitCommandLog log = new GroupCommitCommandLog(false, 10, 1000, m_dir.getPath(), null);
+        try {
+            assertTrue(log.canOfferTask());
+            CountingListener listener = new CountingListener();
+            for (int i = 0; i < 20; i++) {
+                ListenableFuture<Object> fut = log.log(null, i, null, listener, null);
+                assertNotNull(fut);
+                assertTrue(fut.isDone());
+            }
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (listener.m_released.get() < 20 && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+            assertEquals(20, listener.m_released.get());
+
+            Object[] row = new Object[CommandLogStats.StatName.values().length];
+            log.populateCommandLogStats(statsColumns(), row);
+            assertEquals(0L, row[CommandLogStats.StatName.OUTSTANDING_TXNS.ordinal()]);
+            assertTrue((Integer) row[CommandLogStats.StatName.AVG_BATCH_TXNS.ordinal()] > 0);
+            assertEquals(0L, row[CommandLogStats.StatName.MAX_FSYNC_LATENCY.ordinal()]);
+        } finally {
+            log.shutdown();
+        }
+    }
+
+    public void testListSegmentsOrdersById() throws Exception {
+        for (long id : new long[] {12, 3, 7}) {
+            new File(m_dir, GroupCommitCommandLog.segmentFileName(id)).createNewFile();
+        }
+        new File(m_dir, "unrelated.txt").createNewFile();
+        List<File> segments = GroupCommitCommandLog.listSegments(m_dir);
+        assertEquals(3, segments.size());
+        assertEquals(GroupCommitCommandLog.segmentFileName(3), segments.get(0).getName());
+        assertEquals(GroupCommitCommandLog.segmentFileName(12), segments.get(2).getName());
+        assertEquals(new HashSet<File>(segments).size(), 3);
+    }
+}
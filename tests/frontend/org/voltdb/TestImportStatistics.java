@@ -315,6 +315,7 @@ public class TestImportStatistics extends RegressionSuite {
             assertEquals(count-expectedFailures, row.getLong(ImporterStatsCollector.SUCCESS_COUNT_COL));
             assertEquals(0, row.getLong(ImporterStatsCollector.PENDING_COUNT_COL));
             assertEquals(0, row.getLong(ImporterStatsCollector.RETRY_COUNT_COL));
+            assertTrue(row.getLong(ImporterStatsCollector.AVG_CPU_PER_ROW_COL) >= 0);
             assertNotNull(row.getLong("TIMESTAMP"));
             assertNotNull(row.getLong(VoltSystemProcedure.CNAME_HOST_ID));
             assertNotNull(row.getString("HOSTNAME"));
@@ -0,0 +1,340 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.voltdb.benchmark.tpcc.TPCCProjectBuilder;
+import org.voltdb.catalog.Catalog;
+import org.voltdb.catalog.Table;
+import org.voltdb.client.ClientResponse;
+import org.voltdb.client.ProcedureCallback;
+import org.voltdb.importer.AbstractImporter;
+import org.voltdb.importer.ImporterRowBatcher;
+import org.voltdb.importer.ImporterServerAdapter;
+
+public class TestImporterRowBatcherImpl {
+
+    private static final String PROC_NAME = "NEW_ORDER.insert";
+    private static final int PARTITION_COUNT = 4;
+
+    private static Table s_table;
+
+    /** A procedure call the batcher made through the importer */
+    private static class Call {
+        final String m_proc;
+        final Object[] m_params;
+        final ProcedureCallback m_callback;
+
+        Call(String proc, Object[] params, ProcedureCallback callback) {
+            m_proc = proc;
+            m_params = params;
+            m_callback = callback;
+        }
+    }
+
+    /** Records every call instead of running it */
+    private static class RecordingAdapter implements ImporterServerAdapter {
+        final List<Call> m_calls = new ArrayList<>();
+        final Semaphore m_callCount = new Semaphore(0);
+
+        @Override
+        public synchronized boolean callProcedure(AbstractImporter importer,
+                Function<Integer, Boolean> backPressurePredicate, ProcedureCallback callback,
+                String proc, Object... fieldList) {
+            m_calls.add(new Call(proc, fieldList, callback));
+            m_callCount.release();
+            return true;
+        }
+
+        synchronized List<Call> calls() {
+            return new ArrayList<>(m_calls);
+        }
+
+        @Override
+        public ImporterRowBatcher createRowBatcher(AbstractImporter importer, String proc, int batchSize) {
+            return null;
+        }
+
+        @Override
+        public VoltType[] getParameterTypes(String proc) {
+            return null;
+        }
+
+        @Override
+        public void reportFailure(String importerName, String procName, boolean decrementPending) {}
+
+        @Override
+        public void reportQueued(String importerName, String procName) {}
+    }
+
+    private static class StubImporter extends AbstractImporter {
+        @Override
+        public String getName() {
+            return "StubImporter";
+        }
+
+        @Override
+        public URI getResourceID() {
+            return null;
+        }
+
+        @Override
+        protected void accept() {}
+
+        @Override
+        public void stop() {}
+    }
+
+    /** Keeps the responses a row got */
+    private static class RowCallback implements ProcedureCallback {
+        final List<ClientResponse> m_responses = new ArrayList<>();
+
+        @Override
+        public void clientCallback(ClientResponse response) {
+            m_responses.add(response);
+        }
+    }
+
+    private RecordingAdapter m_adapter;
+    private ImporterRowBatcherImpl m_batcher;
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        TheHashinator.initialize(TheHashinator.getConfiguredHashinatorClass(),
+                TheHashinator.getConfigureBytes(PARTITION_COUNT));
+        Catalog catalog = TPCCProjectBuilder.getTPCCSchemaCatalog();
+        s_table = catalog.getClusters().get("cluster").getDatabases().get("database")
+                .getTables().get("NEW_ORDER");
+        assertNotNull(s_table);
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+        s_table = null;
+    }
+
+    @Before
+    public void setUp() {
+        m_adapter = new RecordingAdapter();
+        StubImporter importer = new StubImporter();
+        importer.setImportServerAdapter(m_adapter);
+        m_batcher = new ImporterRowBatcherImpl(importer, PROC_NAME, s_table, false, 100);
+    }
+
+    // NEW_ORDER is (NO_O_ID, NO_D_ID, NO_W_ID) and partitioned on NO_W_ID
+    private static Object[] row(int orderId, Object warehouseId) {
+        return new Object[] { orderId, 1, warehouseId };
+    }
+
+    private static int partitionOf(int warehouseId) {
+        return TheHashinator.getPartitionForParameter(VoltType.SMALLINT, (short) warehouseId);
+    }
+
+    private static ClientResponse response(byte status) {
+        return new ClientResponseImpl(status, new VoltTable[0], null);
+    }
+
+    @Test
+    public void testRowsAreGroupedByPartition() throws Exception {
+        final int rowCount = 40;
+        Map<Integer, Set<Integer>> orderIdsByPartition = new HashMap<>();
+        List<RowCallback> callbacks = new ArrayList<>();
+        for (int ii = 0; ii < rowCount; ii++) {
+            RowCallback callback = new RowCallback();
+            callbacks.add(callback);
+            assertTrue(m_batcher.add(callback, row(ii, ii % 10)));
+            Set<Integer> orderIds = orderIdsByPartition.get(partitionOf(ii % 10));
+            if (orderIds == null) {
+                orderIds = new HashSet<>();
+                orderIdsByPartition.put(partitionOf(ii % 10), orderIds);
+            }
+            orderIds.add(ii);
+        }
+        assertTrue(orderIdsByPartition.size() > 1);
+        // Nothing goes out before the batches fill up or are flushed
+        assertTrue(m_adapter.calls().isEmpty());
+
+        m_batcher.flush();
+        List<Call> calls = m_adapter.calls();
+        assertEquals(orderIdsByPartition.size(), calls.size());
+        for (Call call : calls) {
+            assertEquals("@LoadSinglepartitionTable", call.m_proc);
+            assertEquals(4, call.m_params.length);
+            assertEquals("NEW_ORDER", call.m_params[1]);
+            assertEquals((byte) 0, call.m_params[2]);
+            VoltTable table = (VoltTable) call.m_params[3];
+
+            // Every row of the batch hashes to the partition the batch is sent to
+            int partition = -1;
+            Set<Integer> orderIds = new HashSet<>();
+            while (table.advanceRow()) {
+                int rowPartition = partitionOf((int) table.getLong(2));
+                if (partition == -1) {
+                    partition = rowPartition;
+                }
+                assertEquals(partition, rowPartition);
+                orderIds.add((int) table.getLong(0));
+            }
+            assertEquals(orderIdsByPartition.get(partition), orderIds);
+            table.resetRowPosition();
+            table.advanceRow();
+            assertArrayEquals(VoltType.valueToBytes((short) table.getLong(2)), (byte[]) call.m_params[0]);
+
+            call.m_callback.clientCallback(response(ClientResponse.SUCCESS));
+        }
+
+        // Each row gets the response of the batch it was in
+        for (RowCallback callback : callbacks) {
+            assertEquals(1, callback.m_responses.size());
+            assertEquals(ClientResponse.SUCCESS, callback.m_responses.get(0).getStatus());
+        }
+        m_batcher.close();
+    }
+
+    @Test
+    public void testFullBatchIsSentWithoutFlush() throws Exception {
+        StubImporter importer = new StubImporter();
+        importer.setImportServerAdapter(m_adapter);
+        m_batcher.close();
+        m_batcher = new ImporterRowBatcherImpl(importer, PROC_NAME, s_table, false, 3);
+        for (int ii = 0; ii < 3; ii++) {
+            m_batcher.add(new RowCallback(), row(ii, 5));
+        }
+        List<Call> calls = m_adapter.calls();
+        assertEquals(1, calls.size());
+        assertEquals("@LoadSinglepartitionTable", calls.get(0).m_proc);
+        assertEquals(3, ((VoltTable) calls.get(0).m_params[3]).getRowCount());
+        m_batcher.close();
+        assertEquals(1, m_adapter.calls().size());
+    }
+
+    @Test
+    public void testFailedBatchFallsBackToProcedure() throws Exception {
+        List<Object[]> rows = new ArrayList<>();
+        List<RowCallback> callbacks = new ArrayList<>();
+        for (int ii = 0; ii < 5; ii++) {
+            rows.add(row(ii, 3));
+            callbacks.add(new RowCallback());
+            m_batcher.add(callbacks.get(ii), rows.get(ii));
+        }
+        m_batcher.flush();
+        assertTrue(m_adapter.m_callCount.tryAcquire(1, 10, TimeUnit.SECONDS));
+        Call batchCall = m_adapter.calls().get(0);
+        assertEquals("@LoadSinglepartitionTable", batchCall.m_proc);
+
+        // e.g. a constraint violation in one of the rows
+        batchCall.m_callback.clientCallback(response(ClientResponse.GRACEFUL_FAILURE));
+
+        // The rows are re-inserted one at a time, off the response thread
+        assertTrue(m_adapter.m_callCount.tryAcquire(5, 10, TimeUnit.SECONDS));
+        List<Call> calls = m_adapter.calls();
+        assertEquals(6, calls.size());
+        for (int ii = 0; ii < 5; ii++) {
+            Call call = calls.get(ii + 1);
+            assertEquals(PROC_NAME, call.m_proc);
+            assertEquals(rows.get(ii)[0], call.m_params[0]);
+            assertEquals(((Integer) rows.get(ii)[2]).shortValue(), call.m_params[2]);
+            // with the callback of that row, which has not heard about the batch
+            assertSame(callbacks.get(ii), call.m_callback);
+            assertTrue(callbacks.get(ii).m_responses.isEmpty());
+        }
+
+        calls.get(1).m_callback.clientCallback(response(ClientResponse.GRACEFUL_FAILURE));
+        for (int ii = 2; ii <= 5; ii++) {
+            calls.get(ii).m_callback.clientCallback(response(ClientResponse.SUCCESS));
+        }
+        assertEquals(ClientResponse.GRACEFUL_FAILURE, callbacks.get(0).m_responses.get(0).getStatus());
+        for (int ii = 1; ii < 5; ii++) {
+            assertEquals(1, callbacks.get(ii).m_responses.size());
+            assertEquals(ClientResponse.SUCCESS, callbacks.get(ii).m_responses.get(0).getStatus());
+        }
+        m_batcher.close();
+    }
+
+    @Test
+    public void testUnbatchablePartitionKeyGoesToProcedure() throws Exception {
+        RowCallback nullKeyCallback = new RowCallback();
+        Object[] nullKeyRow = row(1, null);
+        assertTrue(m_batcher.add(nullKeyCallback, nullKeyRow));
+
+        RowCallback badKeyCallback = new RowCallback();
+        Object[] badKeyRow = row(2, "not a warehouse");
+        assertTrue(m_batcher.add(badKeyCallback, badKeyRow));
+
+        RowCallback shortRowCallback = new RowCallback();
+        Object[] shortRow = new Object[] { 3, 1 };
+        assertTrue(m_batcher.add(shortRowCallback, shortRow));
+
+        // Each one went straight to the procedure, as it was passed in
+        List<Call> calls = m_adapter.calls();
+        assertEquals(3, calls.size());
+        assertCall(calls.get(0), nullKeyRow, nullKeyCallback);
+        assertCall(calls.get(1), badKeyRow, badKeyCallback);
+        assertCall(calls.get(2), shortRow, shortRowCallback);
+
+        // and nothing was left behind in a batch
+        m_batcher.flush();
+        assertEquals(3, m_adapter.calls().size());
+        m_batcher.close();
+    }
+
+    private static void assertCall(Call call, Object[] row, ProcedureCallback callback) {
+        assertEquals(PROC_NAME, call.m_proc);
+        assertSame(row, call.m_params);
+        assertSame(callback, call.m_callback);
+    }
+
+    @Test
+    public void testSingleRowBatchGoesToProcedure() throws Exception {
+        RowCallback callback = new RowCallback();
+        m_batcher.add(callback, row(1, 7));
+        m_batcher.flush();
+        List<Call> calls = m_adapter.calls();
+        assertEquals(1, calls.size());
+        assertEquals(PROC_NAME, calls.get(0).m_proc);
+        assertSame(callback, calls.get(0).m_callback);
+        assertEquals((short) 7, calls.get(0).m_params[2]);
+        m_batcher.close();
+    }
+}
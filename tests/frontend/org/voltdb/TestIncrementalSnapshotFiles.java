@@ -0,0 +1,157 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.voltdb.VoltTable.ColumnInfo;
+import org.voltdb.sysprocs.saverestore.TableSaveFile;
+
+import junit.framework.TestCase;
+
+public class TestIncrementalSnapshotFiles extends TestCase {
+
+    private File m_dir;
+
+    @Override
+    public void setUp() throws Exception {
+        m_dir = File.createTempFile("incremental-snapshot", "");
+        m_dir.delete();
+        m_dir.mkdirs();
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        for (File f : m_dir.listFiles()) {
+            f.delete();
+        }
+        m_dir.delete();
+    }
+
+    private static VoltTable schema(VoltType type) {
+        return new VoltTable(new ColumnInfo("ID", VoltType.BIGINT), new ColumnInfo("VAL", type));
+    }
+
+    private File write(String name, VoltTable schema, long txnId, File baseFile) throws Exception {
+        File f = new File(m_dir, name);
+        DefaultSnapshotDataTarget target;
+        if (baseFile == null) {
+            target = new DefaultSnapshotDataTarget(f, 0, "cluster", "database", "T", 4, false,
+                    Arrays.asList(0, 1), schema, txnId, 1000);
+        } else {
+            target = new DefaultSnapshotDataTarget(f, 0, "cluster", "database", "T", 4, false,
+                    Arrays.asList(0, 1), schema, txnId, 2000, baseFile);
+        }
+        target.close();
+        return f;
+    }
+
+    private static TableSaveFile open(File f) throws IOException {
+        return new TableSaveFile(new FileInputStream(f), f.getParentFile(), 1, null, false);
+    }
+
+    public void testCarriedTableReportsOwnMetadata() throws Exception {
+        File base = write("base-T-host_0.vpt", schema(VoltType.STRING), 10, null);
+        File carried = write("next-T-host_0.vpt", schema(VoltType.STRING), 20, base);
+
+        TableSaveFile saveFile = open(carried);
+        try {
+            assertEquals(base.getPath(), saveFile.getBaseFile());
+            assertEquals(20, saveFile.getTxnId());
+            assertEquals("T", saveFile.getTableName());
+            assertTrue(saveFile.getCompleted());
+            assertTrue(Arrays.equals(new int[] { 0, 1 }, saveFile.getPartitionIds()));
+            assertTrue(saveFile.getCorruptedPartitionIds().isEmpty());
+            // The base holds no chunks, so neither does the carried table
+            assertNull(saveFile.getNextChunk());
+            assertFalse(saveFile.hasMoreChunks());
+        } finally {
+            saveFile.close();
+        }
+
+        saveFile = open(base);
+        try {
+            assertNull(saveFile.getBaseFile());
+            assertEquals(10, saveFile.getTxnId());
+        } finally {
+            saveFile.close();
+        }
+    }
+
+    public void testCarriedTableNeedsItsBase() throws Exception {
+        File base = write("base-T-host_0.vpt", schema(VoltType.STRING), 10, null);
+        File carried = write("next-T-host_0.vpt", schema(VoltType.STRING), 20, base);
+        assertTrue(base.delete());
+        try {
+            open(carried).close();
+            fail("A carried table without its base file can't be read");
+        } catch (IOException expected) {
+        }
+    }
+
+    public void testCarriedTableRejectsDifferentSchema() throws Exception {
+        File base = write("base-T-host_0.vpt", schema(VoltType.STRING), 10, null);
+        File carried = write("next-T-host_0.vpt", schema(VoltType.INTEGER), 20, base);
+        try {
+            open(carried).close();
+            fail("A base file with another schema must not be read");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage().contains("different schema"));
+        }
+    }
+
+    public void testCarriedTableFollowsMovedDirectory() throws Exception {
+        write("base-T-host_0.vpt", schema(VoltType.STRING), 10, null);
+        write("next-T-host_0.vpt", schema(VoltType.STRING), 20, new File(m_dir, "base-T-host_0.vpt"));
+
+        File moved = new File(m_dir.getPath() + "-moved");
+        assertTrue(m_dir.renameTo(moved));
+        m_dir = moved;
+
+        TableSaveFile saveFile = open(new File(moved, "next-T-host_0.vpt"));
+        try {
+            assertEquals(new File(moved, "base-T-host_0.vpt").getPath(), saveFile.getBaseFile());
+            assertEquals(20, saveFile.getTxnId());
+            assertNull(saveFile.getNextChunk());
+        } finally {
+            saveFile.close();
+        }
+    }
+
+    public void testCarriedTableNeedsItsDirectory() throws Exception {
+        File base = write("base-T-host_0.vpt", schema(VoltType.STRING), 10, null);
+        File carried = write("next-T-host_0.vpt", schema(VoltType.STRING), 20, base);
+        FileInputStream fis = new FileInputStream(carried);
+        try {
+            new TableSaveFile(fis, 1, null).close();
+            fail("The base file of a carried table can't be found without the snapshot directory");
+        } catch (IOException expected) {
+        } finally {
+            fis.close();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.voltdb;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.voltdb.VoltTable.ColumnInfo;
+
+import junit.framework.TestCase;
+
+public class TestSnapshotRestoreStats extends TestCase {
+
+    private static Map<String, Integer> columns() {
+        ArrayList<ColumnInfo> schema = new ArrayList<ColumnInfo>();
+        new SnapshotRestoreStats().populateColumnSchema(schema);
+        Map<String, Integer> columns = new HashMap<String, Integer>();
+        for (int i = 0; i < schema.size(); i++) {
+            columns.put(schema.get(i).name, i);
+        }
+        return columns;
+    }
+
+    private static Object[] row(SnapshotRestoreStats.TableProgress progress, Map<String, Integer> columns) {
+        Object[] row = new Object[columns.size()];
+        progress.populate(columns, row);
+        return row;
+    }
+
+    public void testProgressSumsFilesOfOneSnapshot() throws Exception {
+        final Map<String, Integer> columns = columns();
+        SnapshotRestoreStats.TableProgress first = SnapshotRestoreStats.startFile("PROGRESS_T", 10, 1000);
+        SnapshotRestoreStats.TableProgress second = SnapshotRestoreStats.startFile("PROGRESS_T", 10, 3000);
+        assertSame(first, second);
+        assertSame(first, SnapshotRestoreStats.getProgress("PROGRESS_T"));
+
+        first.bytesRead(1000);
+        first.chunkDelivered(7);
+        second.bytesRead(1000);
+        second.chunkDelivered(5);
+        first.fileClosed();
+
+        Object[] row = row(first, columns);
+        assertEquals("PROGRESS_T", row[columns.get("TABLE_NAME")]);
+        assertEquals(2, row[columns.get("FILES")]);
+        assertEquals(2000L, row[columns.get("BYTES_READ")]);
+        assertEquals(4000L, row[columns.get("BYTES_TOTAL")]);
+        assertEquals(50, row[columns.get("PERCENT_COMPLETE")]);
+        assertEquals(2L, row[columns.get("CHUNKS")]);
+        assertEquals(12L, row[columns.get("ROWS")]);
+
+        // The elapsed time stops once every file is closed
+        second.fileClosed();
+        final Object elapsed = row(first, columns)[columns.get("ELAPSED_TIME")];
+        Thread.sleep(20);
+        assertEquals(elapsed, row(first, columns)[columns.get("ELAPSED_TIME")]);
+    }
+
+    public void testNewSnapshotResetsProgress() throws Exception {
+        final Map<String, Integer> columns = columns();
+        SnapshotRestoreStats.TableProgress progress = SnapshotRestoreStats.startFile("RESET_T", 10, 1000);
+        progress.bytesRead(1000);
+        progress.chunkDelivered(3);
+        progress.fileClosed();
+
+        progress = SnapshotRestoreStats.startFile("RESET_T", 11, 500);
+        Object[] row = row(progress, columns);
+        assertEquals(11L, row[columns.get("TXNID")]);
+        assertEquals(1, row[columns.get("FILES")]);
+        assertEquals(0L, row[columns.get("BYTES_READ")]);
+        assertEquals(500L, row[columns.get("BYTES_TOTAL")]);
+        assertEquals(0L, row[columns.get("ROWS")]);
+        progress.fileClosed();
+    }
+}
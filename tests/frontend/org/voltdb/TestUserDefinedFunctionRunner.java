@@ -0,0 +1,124 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.voltdb;
+
+import java.nio.ByteBuffer;
+
+import org.voltdb.UserDefinedFunctionManager.UserDefinedFunctionRunner;
+import org.voltdb.catalog.Catalog;
+import org.voltdb.catalog.Database;
+import org.voltdb.catalog.Function;
+
+import junit.framework.TestCase;
+
+public class TestUserDefinedFunctionRunner extends TestCase {
+
+    public static class Adder {
+        public Integer add2Integer(Integer x, Integer y) {
+            if (x == null || y == null) {
+                return null;
+            }
+            if (x < 0) {
+                throw new IllegalArgumentException("negative input");
+            }
+            return x + y;
+        }
+    }
+
+    private UserDefinedFunctionRunner makeRunner() {
+        Catalog catalog = new Catalog();
+        Database db = catalog.getClusters().add("cluster").getDatabases().add("database");
+        Function function = db.getFunctions().add("add2integer");
+        function.setFunctionname("add2integer");
+        function.setClassname(Adder.class.getName());
+        function.setMethodname("add2Integer");
+        function.setFunctionid(1000000);
+        return new UserDefinedFunctionRunner(function, new Adder());
+    }
+
+    public void testSingleCall() throws Throwable {
+        UserDefinedFunctionRunner runner = makeRunner();
+        ByteBuffer buf = ByteBuffer.allocate(8);
+        buf.putInt(3).putInt(4).flip();
+        assertEquals(7, runner.call(buf));
+        assertEquals(1, runner.m_invocations);
+        assertEquals(1, runner.m_batches);
+        assertEquals(0, runner.m_failures);
+    }
+
+    public void testBatchCall() throws Throwable {
+        UserDefinedFunctionRunner runner = makeRunner();
+        final int rowCount = 100;
+        ByteBuffer buf = ByteBuffer.allocate(rowCount * 8);
+        for (int i = 0; i < rowCount; i++) {
+            buf.putInt(i).putInt(i * 2);
+        }
+        buf.flip();
+        Object[] results = runner.callBatch(buf, rowCount);
+        assertTrue(results.length >= rowCount);
+        for (int i = 0; i < rowCount; i++) {
+            assertEquals(i * 3, results[i]);
+        }
+        assertFalse(buf.hasRemaining());
+        assertEquals(rowCount, runner.m_invocations);
+        assertEquals(1, runner.m_batches);
+
+        // The results array is reused by the next batch.
+        buf.clear();
+        buf.putInt(10).putInt(10).flip();
+        assertSame(results, runner.callBatch(buf, 1));
+        assertEquals(20, results[0]);
+        assertEquals(rowCount + 1, runner.m_invocations);
+        assertEquals(2, runner.m_batches);
+    }
+
+    public void testBatchCallFailure() throws Throwable {
+        UserDefinedFunctionRunner runner = makeRunner();
+        ByteBuffer buf = ByteBuffer.allocate(3 * 8);
+        buf.putInt(1).putInt(1);
+        buf.putInt(-1).putInt(1);
+        buf.putInt(2).putInt(2);
+        buf.flip();
+        try {
+            runner.callBatch(buf, 3);
+            fail("The user exception should be thrown directly");
+        }
+        catch (IllegalArgumentException expected) {
+            assertEquals("negative input", expected.getMessage());
+        }
+        // Only the row before the failure counts as an invocation.
+        assertEquals(1, runner.m_invocations);
+        assertEquals(1, runner.m_failures);
+    }
+
+    public void testSerializedSize() throws Exception {
+        ByteBuffer buf = ByteBuffer.allocate(1024);
+        Object[] values = { 5, null, "abc", "", new byte[] { 1, 2, 3 } };
+        VoltType[] types = { VoltType.INTEGER, VoltType.STRING, VoltType.STRING, VoltType.STRING, VoltType.VARBINARY };
+        for (int i = 0; i < values.length; i++) {
+            buf.clear();
+            UserDefinedFunctionRunner.writeValueToBuffer(buf, types[i], values[i]);
+            assertEquals(buf.position(), UserDefinedFunctionRunner.getSerializedSize(types[i], values[i]));
+        }
+    }
+}
@@ -0,0 +1,168 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.client;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the Distributer's callback bookkeeping before and after the move to
+ * a primitive keyed table and a timer wheel, with a fixed number of calls
+ * outstanding: the cost of a call starting and completing, and the cost of one
+ * expiration pass that finds nothing to expire.
+ *
+ * Usage: CallbackTableMicrobench [outstanding calls...]
+ */
+public class CallbackTableMicrobench {
+
+    private static final long RUN_NANOS = TimeUnit.SECONDS.toNanos(2);
+    private static final long TIMEOUT_NANOS = TimeUnit.MINUTES.toNanos(2);
+    private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    static class Call extends CallbackTimerWheel.Entry {
+        final long m_handle;
+        final long m_timestampNanos;
+        Call(long handle, long timestampNanos) {
+            m_handle = handle;
+            m_timestampNanos = timestampNanos;
+        }
+    }
+
+    private static volatile long s_sink;
+
+    /*
+     * Each iteration completes the oldest outstanding call and starts a new one.
+     * The nanosecond clock stands in for time so the wheel sees calls spread over
+     * its buckets.
+     */
+    private static double mapCallsPerSecond(int outstanding) {
+        final Map<Long, Call> map = new ConcurrentHashMap<>();
+        long next = 0;
+        for (; next < outstanding; next++) {
+            map.put(next, new Call(next, System.nanoTime()));
+        }
+        final long start = System.nanoTime();
+        long calls = 0;
+        while (calls % 1000 != 0 || System.nanoTime() - start < RUN_NANOS) {
+            map.remove(next - outstanding);
+            map.put(next, new Call(next, System.nanoTime()));
+            next++;
+            calls++;
+        }
+        return calls * 1e9 / (System.nanoTime() - start);
+    }
+
+    private static double tableCallsPerSecond(int outstanding) {
+        final CallbackTable<Call> table = new CallbackTable<>();
+        final CallbackTimerWheel<Call> wheel = new CallbackTimerWheel<>(TICK_NANOS, 2048, System.nanoTime());
+        long next = 0;
+        for (; next < outstanding; next++) {
+            final Call call = new Call(next, System.nanoTime());
+            table.put(next, call);
+            wheel.schedule(call, call.m_timestampNanos + TIMEOUT_NANOS);
+        }
+        final long start = System.nanoTime();
+        long calls = 0;
+        while (calls % 1000 != 0 || System.nanoTime() - start < RUN_NANOS) {
+            wheel.cancel(table.remove(next - outstanding));
+            final Call call = new Call(next, System.nanoTime());
+            table.put(next, call);
+            wheel.schedule(call, call.m_timestampNanos + TIMEOUT_NANOS);
+            next++;
+            calls++;
+        }
+        return calls * 1e9 / (System.nanoTime() - start);
+    }
+
+    private static double mapScanMicros(int outstanding) {
+        final Map<Long, Call> map = new ConcurrentHashMap<>();
+        for (long i = 0; i < outstanding; i++) {
+            map.put(i, new Call(i, System.nanoTime()));
+        }
+        final int passes = 50;
+        final long start = System.nanoTime();
+        for (int p = 0; p < passes; p++) {
+            final long nowNanos = System.nanoTime();
+            long expired = 0;
+            for (Map.Entry<Long, Call> e : map.entrySet()) {
+                if (nowNanos - e.getValue().m_timestampNanos > TIMEOUT_NANOS) {
+                    expired += e.getKey();
+                }
+            }
+            s_sink += expired;
+        }
+        return (System.nanoTime() - start) / 1000.0 / passes;
+    }
+
+    private static double wheelExpireMicros(int outstanding) {
+        // Calls started over the last 30 seconds, expiration runs once a second
+        final long startNanos = 0;
+        final CallbackTimerWheel<Call> wheel = new CallbackTimerWheel<>(TICK_NANOS, 2048, startNanos);
+        final long spread = TimeUnit.SECONDS.toNanos(30);
+        for (long i = 0; i < outstanding; i++) {
+            final long timestamp = startNanos + spread * i / outstanding;
+            wheel.schedule(new Call(i, timestamp), timestamp + TIMEOUT_NANOS);
+        }
+        final CallbackTimerWheel.Expirer<Call> expirer = new CallbackTimerWheel.Expirer<Call>() {
+            @Override
+            public long expire(Call entry, long nowNanos) {
+                s_sink += entry.m_handle;
+                return CallbackTimerWheel.DONE;
+            }
+        };
+        final int passes = 50;
+        long nowNanos = spread;
+        final long start = System.nanoTime();
+        for (int p = 0; p < passes; p++) {
+            nowNanos += TimeUnit.SECONDS.toNanos(1);
+            s_sink += wheel.expire(nowNanos, expirer);
+        }
+        return (System.nanoTime() - start) / 1000.0 / passes;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int[] outstandingCounts = new int[] { 1000, 20000, 200000 };
+        if (args.length > 0) {
+            outstandingCounts = new int[args.length];
+            for (int i = 0; i < args.length; i++) {
+                outstandingCounts[i] = Integer.parseInt(args[i]);
+            }
+        }
+
+        // warm up both paths
+        mapCallsPerSecond(1000);
+        tableCallsPerSecond(1000);
+        mapScanMicros(1000);
+        wheelExpireMicros(1000);
+
+        for (int outstanding : outstandingCounts) {
+            System.out.printf("%d outstanding: map %.0f calls/s, table and wheel %.0f calls/s%n",
+                    outstanding, mapCallsPerSecond(outstanding), tableCallsPerSecond(outstanding));
+            System.out.printf("%d outstanding: full scan %.1f us/pass, wheel %.1f us/pass%n",
+                    outstanding, mapScanMicros(outstanding), wheelExpireMicros(outstanding));
+        }
+        System.exit(0);
+    }
+}
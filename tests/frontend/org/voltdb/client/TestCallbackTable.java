@@ -0,0 +1,120 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.client;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import junit.framework.TestCase;
+
+public class TestCallbackTable extends TestCase {
+
+    public void testPutGetRemove() {
+        CallbackTable<String> table = new CallbackTable<>();
+        assertNull(table.put(1, "one"));
+        assertNull(table.put(-1, "minus one"));
+        assertNull(table.put(Long.MAX_VALUE, "ping"));
+        assertNull(table.put(0, "zero"));
+        assertEquals(4, table.size());
+        assertEquals("one", table.get(1));
+        assertEquals("minus one", table.get(-1));
+        assertEquals("ping", table.get(Long.MAX_VALUE));
+        assertEquals("zero", table.get(0));
+        assertFalse(table.containsKey(2));
+
+        assertEquals("one", table.put(1, "uno"));
+        assertEquals("uno", table.remove(1));
+        assertNull(table.remove(1));
+        assertEquals(3, table.size());
+    }
+
+    public void testAgainstHashMap() {
+        // Enough entries to grow every segment several times, with removals
+        // interleaved so backward shifting is exercised across wrapped probes
+        CallbackTable<Long> table = new CallbackTable<>();
+        Map<Long, Long> expected = new HashMap<>();
+        Random r = new Random(42);
+        for (int i = 0; i < 200000; i++) {
+            long handle = r.nextInt(50000) - 1000;
+            if (r.nextInt(3) == 0) {
+                assertEquals(expected.remove(handle), table.remove(handle));
+            } else {
+                assertEquals(expected.put(handle, (long) i), table.put(handle, (long) i));
+            }
+        }
+        assertEquals(expected.size(), table.size());
+        for (long handle = -1000; handle < 49000; handle++) {
+            assertEquals(expected.get(handle), table.get(handle));
+        }
+    }
+
+    public void testRemoveAll() {
+        final CallbackTable<Long> table = new CallbackTable<>();
+        for (long i = 0; i < 10000; i++) {
+            table.put(i, i * 2);
+        }
+        final AtomicLong visited = new AtomicLong();
+        table.removeAll(new CallbackTable.Visitor<Long>() {
+            @Override
+            public void visit(long handle, Long value) {
+                assertEquals(handle * 2, value.longValue());
+                visited.incrementAndGet();
+            }
+        });
+        assertEquals(10000, visited.get());
+        assertEquals(0, table.size());
+        assertNull(table.get(5));
+    }
+
+    public void testConcurrentRemoveOnce() throws Exception {
+        final CallbackTable<Long> table = new CallbackTable<>();
+        final int count = 100000;
+        for (long i = 0; i < count; i++) {
+            table.put(i, i);
+        }
+        // Two threads race to remove every handle, each must be won exactly once
+        final AtomicLong won = new AtomicLong();
+        Thread[] threads = new Thread[2];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    for (long i = 0; i < count; i++) {
+                        if (table.remove(i) != null) {
+                            won.incrementAndGet();
+                        }
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        assertEquals(count, won.get());
+        assertEquals(0, table.size());
+    }
+}
@@ -0,0 +1,138 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.client;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class TestCallbackTimerWheel extends TestCase {
+
+    static class Call extends CallbackTimerWheel.Entry {
+        final long m_id;
+        Call(long id) {
+            m_id = id;
+        }
+    }
+
+    static class Recorder implements CallbackTimerWheel.Expirer<Call> {
+        final List<Long> m_expired = new ArrayList<>();
+        long m_extendTo = CallbackTimerWheel.DONE;
+
+        @Override
+        public long expire(Call entry, long nowNanos) {
+            m_expired.add(entry.m_id);
+            long extendTo = m_extendTo;
+            m_extendTo = CallbackTimerWheel.DONE;
+            return extendTo;
+        }
+    }
+
+    public void testExpiresOnlyDueEntries() {
+        CallbackTimerWheel<Call> wheel = new CallbackTimerWheel<>(10, 8, 0);
+        Recorder recorder = new Recorder();
+        wheel.schedule(new Call(1), 15);
+        wheel.schedule(new Call(2), 35);
+        // A rotation later than call 1 in the same bucket
+        wheel.schedule(new Call(3), 95);
+
+        assertEquals(0, wheel.expire(9, recorder));
+        wheel.expire(20, recorder);
+        assertEquals(1, recorder.m_expired.size());
+        assertEquals(1L, (long) recorder.m_expired.get(0));
+
+        wheel.expire(40, recorder);
+        assertEquals(2, recorder.m_expired.size());
+        assertEquals(2L, (long) recorder.m_expired.get(1));
+
+        // Only ticks that have fully elapsed are expired
+        wheel.expire(90, recorder);
+        assertEquals(2, recorder.m_expired.size());
+        wheel.expire(100, recorder);
+        assertEquals(3, recorder.m_expired.size());
+        assertEquals(3L, (long) recorder.m_expired.get(2));
+    }
+
+    public void testCancel() {
+        CallbackTimerWheel<Call> wheel = new CallbackTimerWheel<>(10, 8, 0);
+        Recorder recorder = new Recorder();
+        Call call = new Call(1);
+        wheel.schedule(call, 15);
+        wheel.cancel(call);
+        // Cancelling twice is harmless
+        wheel.cancel(call);
+        assertEquals(0, wheel.expire(100, recorder));
+        assertTrue(recorder.m_expired.isEmpty());
+    }
+
+    public void testReschedule() {
+        CallbackTimerWheel<Call> wheel = new CallbackTimerWheel<>(10, 8, 0);
+        Recorder recorder = new Recorder();
+        wheel.schedule(new Call(1), 15);
+        recorder.m_extendTo = 55;
+        wheel.expire(20, recorder);
+        wheel.expire(50, recorder);
+        assertEquals(1, recorder.m_expired.size());
+        wheel.expire(60, recorder);
+        assertEquals(2, recorder.m_expired.size());
+    }
+
+    public void testLateScheduleAndLongPause() {
+        CallbackTimerWheel<Call> wheel = new CallbackTimerWheel<>(10, 8, 0);
+        Recorder recorder = new Recorder();
+        wheel.expire(50, recorder);
+        // Deadline already behind the wheel
+        wheel.schedule(new Call(1), 25);
+        wheel.expire(51, recorder);
+        assertEquals(1, recorder.m_expired.size());
+
+        // Skip several rotations at once
+        for (int i = 0; i < 20; i++) {
+            wheel.schedule(new Call(100 + i), 60 + i * 10);
+        }
+        wheel.expire(1000, recorder);
+        assertEquals(21, recorder.m_expired.size());
+    }
+
+    public void testNegativeClock() {
+        // System.nanoTime() may be negative; ticks must still round down
+        CallbackTimerWheel<Call> wheel = new CallbackTimerWheel<>(10, 8, -100);
+        Recorder recorder = new Recorder();
+        wheel.schedule(new Call(1), -85);
+        wheel.schedule(new Call(2), -5);
+        wheel.schedule(new Call(3), 5);
+
+        wheel.expire(-90, recorder);
+        assertTrue(recorder.m_expired.isEmpty());
+        wheel.expire(-80, recorder);
+        assertEquals(1, recorder.m_expired.size());
+        wheel.expire(-1, recorder);
+        assertEquals(1, recorder.m_expired.size());
+        wheel.expire(0, recorder);
+        assertEquals(2, recorder.m_expired.size());
+        wheel.expire(10, recorder);
+        assertEquals(3, recorder.m_expired.size());
+    }
+}
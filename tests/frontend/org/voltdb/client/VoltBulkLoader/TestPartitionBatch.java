@@ -0,0 +1,98 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.voltdb.client.VoltBulkLoader;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+
+import org.junit.Test;
+import org.voltdb.VoltTable;
+import org.voltdb.VoltType;
+import org.voltdb.types.TimestampType;
+
+public class TestPartitionBatch {
+
+    private static final VoltTable.ColumnInfo[] COLUMNS = {
+        new VoltTable.ColumnInfo("ID", VoltType.INTEGER),
+        new VoltTable.ColumnInfo("NAME", VoltType.STRING),
+        new VoltTable.ColumnInfo("TS", VoltType.TIMESTAMP)
+    };
+    @Test
+    public void testFailedRowsKeepInsertedValues() {
+        PartitionBatch batch = new PartitionBatch(COLUMNS, 10);
+        Object[] converted = new Object[3];
+        Object[][] inserted = new Object[5][];
+        for (int i = 0; i < 5; i++) {
+            // The caller's values, before conversion to the column types
+            inserted[i] = new Object[] { String.valueOf(i), i % 2 == 0 ? "row" + i : null, (long) i * 1000 };
+            // The same converted array for every row, like VoltBulkLoader does
+            converted[0] = i;
+            converted[1] = inserted[i][1];
+            converted[2] = new TimestampType(i * 1000L);
+            batch.add(null, "handle" + i, converted, inserted[i]);
+        }
+        assertEquals(5, batch.size());
+        assertEquals(5, batch.m_table.getRowCount());
+        batch.m_table.advanceRow();
+        assertEquals(0, batch.m_table.getLong(0));
+        assertEquals(new TimestampType(0), batch.m_table.getTimestampAsTimestamp(2));
+
+        List<VoltBulkLoaderRow> rows = batch.toRows();
+        assertEquals(5, rows.size());
+        for (int i = 0; i < 5; i++) {
+            VoltBulkLoaderRow r = rows.get(i);
+            assertEquals("handle" + i, r.m_rowHandle);
+            assertSame(inserted[i], r.m_rowData);
+        }
+
+        batch.clear();
+        assertEquals(0, batch.size());
+        assertEquals(0, batch.m_table.getRowCount());
+        assertEquals(0, batch.toRows().size());
+    }
+
+    @Test
+    public void testRejectedRowLeavesBatchIntact() {
+        PartitionBatch batch = new PartitionBatch(COLUMNS, 10);
+        Object[] good = { 1, "one", new TimestampType(1) };
+        batch.add(null, "good", good, good);
+        Object[] bad = { 2, new StringBuilder("not a string"), new TimestampType(2) };
+        try {
+            batch.add(null, "bad", bad, bad);
+            fail();
+        }
+        catch (RuntimeException expected) {}
+        Object[] good2 = { 3, "three", new TimestampType(3) };
+        batch.add(null, "good2", good2, good2);
+
+        assertEquals(2, batch.m_table.getRowCount());
+        List<VoltBulkLoaderRow> rows = batch.toRows();
+        assertEquals(2, rows.size());
+        assertArrayEquals(new Object[] { 3, "three", new TimestampType(3) }, rows.get(1).m_rowData);
+        assertEquals("good2", rows.get(1).m_rowHandle);
+    }
+}
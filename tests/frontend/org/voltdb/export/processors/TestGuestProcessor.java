@@ -0,0 +1,289 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.voltdb.export.processors;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.avro.Schema;
+import org.apache.avro.file.DataFileReader;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericRecord;
+import org.voltdb.VoltType;
+import org.voltdb.export.ExportDataProcessor;
+import org.voltdb.types.TimestampType;
+import org.voltdb.utils.VoltFile;
+
+import junit.framework.TestCase;
+
+public class TestGuestProcessor extends TestCase {
+
+    private static final List<String> NAMES = Arrays.asList(
+            "VOLT_TRANSACTION_ID", "VOLT_EXPORT_TIMESTAMP", "VOLT_EXPORT_SEQUENCE_NUMBER",
+            "VOLT_PARTITION_ID", "VOLT_SITE_ID", "VOLT_EXPORT_OPERATION",
+            "ID", "NAME", "PRICE", "TS", "DATA");
+    private static final List<Integer> TYPES = Arrays.asList(
+            (int)VoltType.BIGINT.getValue(), (int)VoltType.BIGINT.getValue(), (int)VoltType.BIGINT.getValue(),
+            (int)VoltType.BIGINT.getValue(), (int)VoltType.BIGINT.getValue(), (int)VoltType.TINYINT.getValue(),
+            (int)VoltType.INTEGER.getValue(), (int)VoltType.STRING.getValue(), (int)VoltType.DECIMAL.getValue(),
+            (int)VoltType.TIMESTAMP.getValue(), (int)VoltType.VARBINARY.getValue());
+
+    private File m_dir;
+
+    @Override
+    public void setUp() throws Exception {
+        m_dir = File.createTempFile("guest_processor", "");
+        m_dir.delete();
+        m_dir.mkdirs();
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        VoltFile.recursivelyDelete(m_dir);
+    }
+
+    /**
+     * Append a row the way the EE's ExportTupleStream does. A null name is
+     * exported as a null column.
+     */
+    private static void appendRow(ByteBuffer buf, long seq, int id, String name, BigDecimal price,
+                                  long micros, byte[] data) {
+        final int lengthPos = buf.position();
+        buf.putInt(0);
+        final int nullPos = buf.position();
+        buf.putShort((short)0);
+        buf.putLong(seq * 10).putLong(1000 + seq).putLong(seq).putLong(3).putLong(7).put((byte)1);
+        buf.putInt(id);
+        if (name == null) {
+            // Column 7 is in the first null byte
+            buf.put(nullPos, (byte)0x01);
+        } else {
+            final byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+            buf.putInt(bytes.length).put(bytes);
+        }
+        buf.put((byte)12).put((byte)16);
+        final byte[] unscaled = price.setScale(12).unscaledValue().toByteArray();
+        for (int i = unscaled.length; i < 16; i++) {
+            buf.put(price.signum() < 0 ? (byte)-1 : 0);
+        }
+        buf.put(unscaled);
+        buf.putLong(micros);
+        buf.putInt(data.length).put(data);
+        buf.putInt(lengthPos, buf.position() - lengthPos - 4);
+    }
+
+    private static ByteBuffer block() {
+        final ByteBuffer buf = ByteBuffer.allocateDirect(4096).order(ByteOrder.LITTLE_ENDIAN);
+        appendRow(buf, 1, 10, "plain", new BigDecimal("1.5"), 1000000L, new byte[] { 1, 2 });
+        appendRow(buf, 2, 20, null, new BigDecimal("-2.25"), 2000000L, new byte[0]);
+        appendRow(buf, 3, 30, "has, \"quotes\"", BigDecimal.ZERO, 3000000L, new byte[] { (byte)0xff });
+        buf.flip();
+        return buf.order(ByteOrder.BIG_ENDIAN);
+    }
+
+    public void testDecodeRowsInPlace() throws Exception {
+        final ExportRowDecoder decoder = new ExportRowDecoder(NAMES, TYPES);
+        final ByteBuffer block = block();
+        decoder.reset(block);
+        final Object[] row = new Object[decoder.getColumnCount()];
+
+        assertTrue(decoder.next(row));
+        assertEquals(10L, row[0]);
+        assertEquals(1001L, row[ExportRowDecoder.TIMESTAMP_COLUMN]);
+        assertEquals((byte)1, row[5]);
+        assertEquals(10, row[6]);
+        assertEquals("plain", row[7]);
+        assertEquals(0, new BigDecimal("1.5").compareTo((BigDecimal)row[8]));
+        assertEquals(new TimestampType(1000000L), row[9]);
+        assertTrue(Arrays.equals(new byte[] { 1, 2 }, (byte[])row[10]));
+
+        assertTrue(decoder.next(row));
+        assertEquals(20, row[6]);
+        assertNull(row[7]);
+        assertEquals(0, new BigDecimal("-2.25").compareTo((BigDecimal)row[8]));
+
+        assertTrue(decoder.next(row));
+        assertEquals("has, \"quotes\"", row[7]);
+        assertFalse(decoder.next(row));
+        // The polled buffer itself is not consumed
+        assertEquals(0, block.position());
+    }
+
+    private Properties fileConfig() {
+        final Properties config = new Properties();
+        config.setProperty(ExportDataProcessor.EXPORT_TO_TYPE, ExportSink.FILE_CLIENT);
+        config.setProperty("outdir", m_dir.getPath());
+        config.setProperty("nonce", "test");
+        config.setProperty("skipinternals", "true");
+        return config;
+    }
+
+    private List<File> listFiles() {
+        return new ArrayList<File>(Arrays.asList(m_dir.listFiles()));
+    }
+
+    public void testFileSinkCommitsBlocksAndRolls() throws Exception {
+        final ExportSink sink = ExportSink.create("files", fileConfig());
+        final ExportRowDecoder decoder = new ExportRowDecoder(NAMES, TYPES);
+        final ExportSink.StreamWriter writer = sink.open("ORDERS", 3, 5, decoder);
+        final Object[] row = new Object[decoder.getColumnCount()];
+
+        decoder.reset(block());
+        while (decoder.next(row)) {
+            writer.write(row);
+        }
+        writer.commit();
+
+        // A failed block leaves nothing behind
+        decoder.reset(block());
+        while (decoder.next(row)) {
+            writer.write(row);
+        }
+        writer.abort();
+
+        List<File> files = listFiles();
+        assertEquals(1, files.size());
+        assertTrue(files.get(0).getName().startsWith(FileExportSink.ACTIVE_PREFIX + "test-5-ORDERS-3-"));
+
+        writer.close();
+        files = listFiles();
+        assertEquals(1, files.size());
+        final File rolled = files.get(0);
+        assertTrue(rolled.getName().startsWith("test-5-ORDERS-3-"));
+        assertTrue(rolled.getName().endsWith(".csv"));
+
+        final List<String> lines = Files.readAllLines(rolled.toPath(), StandardCharsets.UTF_8);
+        assertEquals(3, lines.size());
+        assertEquals("10,plain,1.500000000000,1970-01-01 00:00:01.000000,0102", lines.get(0));
+        assertEquals("20,,-2.250000000000,1970-01-01 00:00:02.000000,", lines.get(1));
+        assertTrue(lines.get(2).startsWith("30,\"has, \"\"quotes\"\"\",0.000000000000,"));
+    }
+
+    public void testAvroFileSink() throws Exception {
+        final Properties config = fileConfig();
+        config.setProperty("type", "avro");
+        final ExportSink sink = ExportSink.create("files", config);
+        final ExportRowDecoder decoder = new ExportRowDecoder(NAMES, TYPES);
+        final ExportSink.StreamWriter writer = sink.open("ORDERS", 3, 5, decoder);
+        final Object[] row = new Object[decoder.getColumnCount()];
+
+        // Committed, aborted and committed again, so rows are appended after an abort
+        for (int block = 0; block < 3; block++) {
+            decoder.reset(block());
+            while (decoder.next(row)) {
+                writer.write(row);
+            }
+            if (block == 1) {
+                writer.abort();
+            } else {
+                writer.commit();
+            }
+        }
+        writer.close();
+
+        final List<File> files = listFiles();
+        assertEquals(1, files.size());
+        final File rolled = files.get(0);
+        assertTrue(rolled.getName().startsWith("test-5-ORDERS-3-"));
+        assertTrue(rolled.getName().endsWith(".avro"));
+
+        try (DataFileReader<GenericRecord> reader =
+                new DataFileReader<>(rolled, new GenericDatumReader<GenericRecord>())) {
+            final Schema schema = reader.getSchema();
+            assertEquals("ORDERS", schema.getName());
+            assertEquals(Arrays.asList("ID", "NAME", "PRICE", "TS", "DATA"), fieldNames(schema));
+            assertEquals("decimal", schema.getField("PRICE").schema().getTypes().get(1).getProp("logicalType"));
+
+            final List<GenericRecord> records = new ArrayList<>();
+            for (GenericRecord record : reader) {
+                records.add(record);
+            }
+            assertEquals(6, records.size());
+            for (int i = 0; i < 6; i += 3) {
+                assertEquals(10, records.get(i).get("ID"));
+                assertEquals("plain", records.get(i).get("NAME").toString());
+                assertEquals(new BigDecimal("1.5").setScale(12), new BigDecimal(
+                        new BigInteger(bytes((ByteBuffer)records.get(i).get("PRICE"))), 12));
+                assertEquals(1000000L, records.get(i).get("TS"));
+                assertTrue(Arrays.equals(new byte[] { 1, 2 }, bytes((ByteBuffer)records.get(i).get("DATA"))));
+
+                assertNull(records.get(i + 1).get("NAME"));
+                assertEquals(new BigDecimal("-2.25").setScale(12), new BigDecimal(
+                        new BigInteger(bytes((ByteBuffer)records.get(i + 1).get("PRICE"))), 12));
+                assertEquals("has, \"quotes\"", records.get(i + 2).get("NAME").toString());
+            }
+        }
+    }
+
+    private static List<String> fieldNames(Schema schema) {
+        final List<String> names = new ArrayList<>();
+        for (Schema.Field field : schema.getFields()) {
+            names.add(field.name());
+        }
+        return names;
+    }
+
+    private static byte[] bytes(ByteBuffer buf) {
+        final byte[] bytes = new byte[buf.remaining()];
+        buf.duplicate().get(bytes);
+        return bytes;
+    }
+
+    public void testConfigurationChecks() throws Exception {
+        final GuestProcessor processor = new GuestProcessor();
+        processor.checkProcessorConfig(fileConfig());
+
+        final Properties noNonce = fileConfig();
+        noNonce.remove("nonce");
+        try {
+            processor.checkProcessorConfig(noNonce);
+            fail("file export without a nonce should be refused");
+        } catch (IllegalArgumentException expected) {}
+
+        final Properties kafka = new Properties();
+        kafka.setProperty(ExportDataProcessor.EXPORT_TO_TYPE, "org.voltdb.exportclient.kafka.KafkaExportClient");
+        try {
+            processor.checkProcessorConfig(kafka);
+            fail("kafka export is not built in");
+        } catch (IllegalArgumentException expected) {}
+        processor.shutdown();
+
+        final Properties jdbc = new Properties();
+        jdbc.setProperty(ExportDataProcessor.EXPORT_TO_TYPE, ExportSink.JDBC_CLIENT);
+        jdbc.setProperty("jdbcurl", "jdbc:none:");
+        jdbc.setProperty("schema", "ARCHIVE");
+        jdbc.setProperty("skipinternals", "true");
+        final JdbcExportSink sink = (JdbcExportSink)ExportSink.create("db", jdbc);
+        assertEquals("INSERT INTO ARCHIVE.ORDERS (ID, NAME, PRICE, TS, DATA) VALUES (?, ?, ?, ?, ?)",
+                sink.insertStatement("ORDERS", new ExportRowDecoder(NAMES, TYPES)));
+    }
+}
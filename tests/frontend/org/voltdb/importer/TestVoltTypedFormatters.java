@@ -0,0 +1,175 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.importer;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Properties;
+
+import org.junit.Test;
+import org.voltdb.VoltType;
+import org.voltdb.importer.formatter.FormatException;
+import org.voltdb.importer.formatter.Formatter;
+import org.voltdb.importer.formatter.builtin.VoltCSVFormatterFactory;
+import org.voltdb.importer.formatter.builtin.VoltJSONFormatter;
+import org.voltdb.importer.formatter.builtin.VoltTypedCSVFormatter;
+import org.voltdb.types.TimestampType;
+
+import junit.framework.TestCase;
+
+public class TestVoltTypedFormatters extends TestCase {
+    private static final VoltType[] TYPES = { VoltType.BIGINT, VoltType.INTEGER, VoltType.STRING,
+            VoltType.FLOAT, VoltType.DECIMAL, VoltType.TIMESTAMP, VoltType.VARBINARY };
+
+    private static ByteBuffer utf8(String record) {
+        return ByteBuffer.wrap(record.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static VoltTypedCSVFormatter typedCsv(String formatName, Properties props) {
+        VoltTypedCSVFormatter formatter = new VoltTypedCSVFormatter(formatName, props);
+        formatter.setParameterTypes(TYPES);
+        return formatter;
+    }
+
+    private static VoltJSONFormatter json(Properties props) {
+        VoltJSONFormatter formatter = new VoltJSONFormatter("json", props);
+        formatter.setParameterTypes(TYPES);
+        return formatter;
+    }
+
+    private static void assertRow(Object[] row) {
+        assertEquals(7, row.length);
+        assertEquals(Long.valueOf(12), row[0]);
+        assertEquals(Integer.valueOf(-3), row[1]);
+        assertEquals("a, \"b\"", row[2]);
+        assertEquals(Double.valueOf(1.5), row[3]);
+        assertEquals(new BigDecimal("2.25"), row[4]);
+        assertEquals(new TimestampType(1000000L), row[5]);
+        assertTrue(Arrays.equals(new byte[] { 0x0a, (byte) 0xff }, (byte[]) row[6]));
+    }
+
+    @Test
+    public void testTypedCSV() throws Exception {
+        assertRow(typedCsv("csv", new Properties()).transform(utf8("12,-3,\"a, \"\"b\"\"\",1.5,2.25,1000000,0AFF")));
+    }
+
+    @Test
+    public void testTypedTSV() throws Exception {
+        assertRow(typedCsv("tsv", new Properties()).transform(utf8("12\t-3\ta, \"b\"\t1.5\t2.25\t1000000\t0aff")));
+    }
+
+    @Test
+    public void testTypedCSVSlicedAndDirectBuffers() throws Exception {
+        VoltTypedCSVFormatter formatter = typedCsv("csv", new Properties());
+        byte[] bytes = "xx7,8,9yy".getBytes(StandardCharsets.UTF_8);
+        ByteBuffer sliced = ByteBuffer.wrap(bytes, 2, 5).slice();
+        assertEquals(Arrays.asList((Object) 7L, 8, "9"), Arrays.asList(formatter.transform(sliced)));
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(5);
+        direct.put("7,8,9".getBytes(StandardCharsets.UTF_8)).flip();
+        assertEquals(Arrays.asList((Object) 7L, 8, "9"), Arrays.asList(formatter.transform(direct)));
+    }
+
+    @Test
+    public void testTypedCSVNullsAndFallback() throws Exception {
+        Object[] row = typedCsv("csv", new Properties()).transform(utf8("NULL,\\N,,2017-01-01,abc,2016-12-01 10:00:00.000,"));
+        assertEquals(7, row.length);
+        assertNull(row[0]);
+        assertNull(row[1]);
+        assertEquals("", row[2]);
+        // Values that can not be decoded in place are left for the server side conversion
+        assertEquals("2017-01-01", row[3]);
+        assertEquals("abc", row[4]);
+        assertEquals("2016-12-01 10:00:00.000", row[5]);
+        assertEquals(0, ((byte[]) row[6]).length);
+    }
+
+    @Test
+    public void testTypedCSVWithoutTypes() throws Exception {
+        Object[] row = new VoltTypedCSVFormatter("csv", new Properties()).transform(utf8("1,two,3.0"));
+        assertEquals(Arrays.asList((Object) "1", "two", "3.0"), Arrays.asList(row));
+    }
+
+    @Test
+    public void testTypedCSVUnterminatedQuote() {
+        try {
+            typedCsv("csv", new Properties()).transform(utf8("1,\"2"));
+            fail("unterminated quote should not be formatted");
+        } catch (FormatException expected) {
+        }
+    }
+
+    @Test
+    public void testJSONArray() throws Exception {
+        assertRow(json(new Properties()).transform(
+                utf8(" [12, -3, \"a, \\\"b\\\"\", 1.5, 2.25, 1000000, \"0AFF\"] ")));
+    }
+
+    @Test
+    public void testJSONObjectWithFields() throws Exception {
+        Properties props = new Properties();
+        props.setProperty("fields", "id, count, name, score, price, ts, data");
+        Object[] row = json(props).transform(utf8("{\"data\":\"0aff\",\"ts\":1000000,\"ignored\":{\"x\":[1,\"]\"]},"
+                + "\"price\":\"2.25\",\"score\":1.5,\"name\":\"a, \\\"b\\\"\",\"count\":-3,\"id\":12}"));
+        assertRow(row);
+
+        row = json(props).transform(utf8("{\"id\":5}"));
+        assertEquals(7, row.length);
+        assertEquals(Long.valueOf(5), row[0]);
+        assertNull(row[1]);
+    }
+
+    @Test
+    public void testJSONValues() throws Exception {
+        Object[] row = json(new Properties()).transform(utf8("[true, null, {\"a\": [1, 2]}, \"\\u00e9\\n\"]"));
+        assertEquals(Long.valueOf(1), row[0]);
+        assertNull(row[1]);
+        assertEquals("{\"a\": [1, 2]}", row[2]);
+        assertEquals("é\n", row[3]);
+    }
+
+    @Test
+    public void testJSONMalformed() {
+        String[] records = { "", "12", "[1,", "[1 2]", "{\"a\" 1}", "[\"abc]", "[1] x", "[tru]" };
+        for (String record : records) {
+            try {
+                json(new Properties()).transform(utf8(record));
+                fail("malformed record " + record + " should not be formatted");
+            } catch (FormatException expected) {
+            }
+        }
+    }
+
+    @Test
+    public void testFactory() {
+        VoltCSVFormatterFactory factory = new VoltCSVFormatterFactory();
+        Properties props = new Properties();
+        assertTrue(factory.create("json", props) instanceof VoltJSONFormatter);
+        props.setProperty(VoltCSVFormatterFactory.TYPED_PROP, "true");
+        Formatter formatter = factory.create("csv", props);
+        assertTrue(formatter instanceof VoltTypedCSVFormatter);
+    }
+}
@@ -0,0 +1,92 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.iv2;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+
+public class TestLockFreeTransactionTaskQueue extends TestTransactionTaskQueue
+{
+    @Override
+    TransactionTaskQueue createQueue(SiteTaskerQueue taskQueue) {
+        return new LockFreeTransactionTaskQueue(taskQueue);
+    }
+
+    public void testConcurrentProducersKeepTheirOrder() throws Exception
+    {
+        final int producers = 4;
+        final int perProducer = 2000;
+        SiteTaskerQueue task_queue = getSiteTaskerQueue();
+        final TransactionTaskQueue dut = createQueue(task_queue);
+
+        // Each producer owns a contiguous range of sp handles
+        final List<List<TransactionTask>> tasks = new ArrayList<List<TransactionTask>>();
+        for (int p = 0; p < producers; p++) {
+            List<TransactionTask> mine = new ArrayList<TransactionTask>();
+            for (int i = 0; i < perProducer; i++) {
+                mine.add(createSpProc(p * perProducer + i, dut));
+            }
+            tasks.add(mine);
+        }
+
+        final CyclicBarrier barrier = new CyclicBarrier(producers);
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int p = 0; p < producers; p++) {
+            final List<TransactionTask> mine = tasks.get(p);
+            Thread t = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        barrier.await();
+                    } catch (Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                    for (TransactionTask task : mine) {
+                        dut.offer(task);
+                        dut.flush(task.getTxnId());
+                    }
+                }
+            };
+            threads.add(t);
+            t.start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        assertEquals(0, dut.size());
+
+        long[] lastSeen = new long[producers];
+        for (int p = 0; p < producers; p++) {
+            lastSeen[p] = -1;
+        }
+        for (int i = 0; i < producers * perProducer; i++) {
+            long spHandle = ((TransactionTask)task_queue.take()).getSpHandle();
+            int producer = (int)(spHandle / perProducer);
+            assertTrue(spHandle > lastSeen[producer]);
+            lastSeen[producer] = spHandle;
+        }
+        assertNull(task_queue.poll());
+    }
+}
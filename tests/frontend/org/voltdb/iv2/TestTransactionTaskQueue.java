@@ -41,17 +41,22 @@ import junit.framework.TestCase;
 public class TestTransactionTaskQueue extends TestCase
 {
 
-    private static SiteTaskerQueue getSiteTaskerQueue() {
+    static SiteTaskerQueue getSiteTaskerQueue() {
         SiteTaskerQueue queue = new SiteTaskerQueue(0);
         queue.setStarvationTracker(new StarvationTracker(0));
         queue.setupQueueDepthTracker(0);
         return queue;
     }
 
+    // Overridden to run the same cases against the other implementations
+    TransactionTaskQueue createQueue(SiteTaskerQueue taskQueue) {
+        return new TransactionTaskQueue(taskQueue);
+    }
+
     // Cases to test:
     // several single part txns
 
-    private SpProcedureTask createSpProc(long localTxnId,
+    SpProcedureTask createSpProc(long localTxnId,
                                          TransactionTaskQueue queue)
     {
         // Mock an initiate message; override its txnid to return
@@ -113,7 +118,7 @@ public class TestTransactionTaskQueue extends TestCase
         return task;
     }
 
-    private void addTask(TransactionTask task, TransactionTaskQueue dut,
+    void addTask(TransactionTask task, TransactionTaskQueue dut,
                          Deque<TransactionTask> teststorage)
     {
         if (teststorage != null) {
@@ -129,7 +134,7 @@ public class TestTransactionTaskQueue extends TestCase
         long localTxnId = 0;
         long mpTxnId = 0;
         SiteTaskerQueue task_queue = getSiteTaskerQueue();
-        TransactionTaskQueue dut = new TransactionTaskQueue(task_queue);
+        TransactionTaskQueue dut = createQueue(task_queue);
         Deque<TransactionTask> expected_order =
             new ArrayDeque<TransactionTask>();
 
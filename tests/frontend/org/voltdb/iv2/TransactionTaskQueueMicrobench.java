@@ -0,0 +1,144 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.iv2;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.voltdb.StarvationTracker;
+import org.voltdb.messaging.Iv2InitiateTaskMessage;
+
+/**
+ * Measures single part offer throughput from several network threads into
+ * one site's LinkedTransferQueue-backed SiteTaskerQueue, through either the
+ * synchronized TransactionTaskQueue or the lock-free one.
+ *
+ * Usage: TransactionTaskQueueMicrobench [producer counts...]
+ */
+public class TransactionTaskQueueMicrobench {
+
+    private static final long RUN_MILLIS = 2000;
+
+    interface QueueFactory {
+        TransactionTaskQueue create(SiteTaskerQueue taskQueue);
+    }
+
+    private static SpProcedureTask createSpProc(long spHandle, TransactionTaskQueue queue) {
+        Iv2InitiateTaskMessage init = mock(Iv2InitiateTaskMessage.class);
+        when(init.getTxnId()).thenReturn(Iv2InitiateTaskMessage.UNUSED_MP_TXNID);
+        when(init.getSpHandle()).thenReturn(spHandle);
+        InitiatorMailbox mbox = mock(InitiatorMailbox.class);
+        when(mbox.getHSId()).thenReturn(1337l);
+        return new SpProcedureTask(mbox, "TestProc", queue, init);
+    }
+
+    private static double run(QueueFactory factory, int producers) throws Exception {
+        final SiteTaskerQueue taskQueue = new SiteTaskerQueue(0);
+        taskQueue.setStarvationTracker(new StarvationTracker(0));
+        taskQueue.setupQueueDepthTracker(0);
+        final TransactionTaskQueue dut = factory.create(taskQueue);
+        final CyclicBarrier barrier = new CyclicBarrier(producers + 2);
+        final long stopTime = System.currentTimeMillis() + RUN_MILLIS;
+        final AtomicLong offered = new AtomicLong();
+        final Thread[] threads = new Thread[producers + 1];
+
+        for (int i = 0; i < producers; i++) {
+            final SpProcedureTask task = createSpProc(i, dut);
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        barrier.await();
+                        long count = 0;
+                        while (count % 100 != 0 || System.currentTimeMillis() < stopTime) {
+                            dut.offer(task);
+                            count++;
+                        }
+                        offered.addAndGet(count);
+                    } catch (Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            };
+        }
+        // The site thread
+        threads[producers] = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    barrier.await();
+                    while (System.currentTimeMillis() < stopTime || taskQueue.poll() != null) {
+                        taskQueue.poll();
+                    }
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+        for (Thread t : threads) {
+            t.start();
+        }
+        final long startTime = System.currentTimeMillis();
+        barrier.await();
+        for (Thread t : threads) {
+            t.join();
+        }
+        return offered.get() * 1000.0 / (System.currentTimeMillis() - startTime);
+    }
+
+    public static void main(String[] args) throws Exception {
+        int[] producerCounts = new int[] { 1, 2, 4, 8 };
+        if (args.length > 0) {
+            producerCounts = new int[args.length];
+            for (int i = 0; i < args.length; i++) {
+                producerCounts[i] = Integer.parseInt(args[i]);
+            }
+        }
+        final QueueFactory synced = new QueueFactory() {
+            @Override
+            public TransactionTaskQueue create(SiteTaskerQueue taskQueue) {
+                return new TransactionTaskQueue(taskQueue);
+            }
+        };
+        final QueueFactory lockFree = new QueueFactory() {
+            @Override
+            public TransactionTaskQueue create(SiteTaskerQueue taskQueue) {
+                return new LockFreeTransactionTaskQueue(taskQueue);
+            }
+        };
+
+        // warm up both paths
+        run(synced, 2);
+        run(lockFree, 2);
+
+        for (int producers : producerCounts) {
+            System.out.printf("%d producers: synchronized %.0f offers/s, lock-free %.0f offers/s%n",
+                    producers, run(synced, producers), run(lockFree, producers));
+        }
+        System.exit(0);
+    }
+}
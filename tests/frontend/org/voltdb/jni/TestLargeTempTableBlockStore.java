@@ -0,0 +1,133 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.voltdb.jni;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.voltcore.utils.CoreUtils;
+import org.voltdb.utils.VoltFile;
+
+import junit.framework.TestCase;
+
+public class TestLargeTempTableBlockStore extends TestCase {
+
+    private File m_dir;
+    private LargeTempTableBlockStore m_store;
+
+    @Override
+    public void setUp() throws Exception {
+        m_dir = File.createTempFile("ltt_store", "");
+        m_dir.delete();
+        m_store = new LargeTempTableBlockStore(new File(m_dir, LargeTempTableBlockStore.SPILL_DIRECTORY),
+                CoreUtils.getHSIdFromHostAndSite(1, 2));
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        m_store.close();
+        VoltFile.recursivelyDelete(m_dir);
+    }
+
+    private static ByteBuffer block(int length, int seed) {
+        ByteBuffer buf = ByteBuffer.allocateDirect(length);
+        for (int i = 0; i < length; i++) {
+            buf.put((byte) (seed + i));
+        }
+        buf.flip();
+        return buf;
+    }
+
+    private static void assertBlock(ByteBuffer buf, int length, int seed) {
+        assertEquals(length, buf.remaining());
+        for (int i = 0; i < length; i++) {
+            assertEquals((byte) (seed + i), buf.get(buf.position() + i));
+        }
+    }
+
+    public void testStoreAndLoad() throws Exception {
+        m_store.store(0, block(1000, 0));
+        m_store.store(1, block(2000, 1));
+        m_store.store(2, block(3000, 2));
+        assertEquals(3, m_store.getBlocksStored());
+        assertEquals(6000, m_store.getBytesWritten());
+        assertEquals("host_1_site_2.swap", m_store.getFile().getName());
+        assertEquals(6000, m_store.getFile().length());
+
+        assertBlock(m_store.load(0), 1000, 0);
+        // Block 1 was mapped after block 0 was loaded
+        assertBlock(m_store.load(1), 2000, 1);
+        assertEquals(1, m_store.getPrefetchHits());
+        assertBlock(m_store.load(2), 3000, 2);
+        assertEquals(2, m_store.getPrefetchHits());
+        assertEquals(3, m_store.getBlocksRead());
+        assertEquals(6000, m_store.getBytesRead());
+        assertEquals(0, m_store.getBlocksStored());
+
+        // Everything has been read back, the file is empty again
+        m_store.store(3, block(10, 3));
+        assertEquals(10, m_store.getFile().length());
+        assertBlock(m_store.load(3), 10, 3);
+    }
+
+    public void testSpaceIsReused() throws Exception {
+        m_store.store(0, block(1000, 0));
+        m_store.store(1, block(1000, 1));
+        m_store.store(2, block(1000, 2));
+        assertTrue(m_store.release(1));
+        assertFalse(m_store.release(1));
+
+        // Fits in the hole left by block 1
+        m_store.store(3, block(600, 3));
+        assertEquals(3000, m_store.getFile().length());
+
+        // Freeing the last block shrinks the file down to the highest stored block
+        assertTrue(m_store.release(2));
+        assertEquals(1600, m_store.getFile().length());
+
+        assertBlock(m_store.load(3), 600, 3);
+        assertBlock(m_store.load(0), 1000, 0);
+        assertEquals(0, m_store.getPrefetchHits());
+    }
+
+    public void testMissingBlocks() throws Exception {
+        try {
+            m_store.load(5);
+            fail();
+        } catch (IOException expected) {}
+        m_store.store(5, block(10, 5));
+        try {
+            m_store.store(5, block(10, 5));
+            fail();
+        } catch (IOException expected) {}
+    }
+
+    public void testCloseDeletesFile() throws Exception {
+        m_store.store(0, block(100, 0));
+        File file = m_store.getFile();
+        assertTrue(file.exists());
+        m_store.close();
+        assertFalse(file.exists());
+    }
+}
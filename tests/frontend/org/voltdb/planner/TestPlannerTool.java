@@ -27,12 +27,20 @@ import static org.mockito.Mockito.mock;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.voltcore.messaging.HostMessenger;
 import org.voltdb.CatalogContext;
 import org.voltdb.benchmark.tpcc.TPCCProjectBuilder;
 import org.voltdb.catalog.Catalog;
 import org.voltdb.compiler.AdHocPlannedStatement;
+import org.voltdb.compiler.PlannerPool;
 import org.voltdb.compiler.PlannerTool;
 import org.voltdb.compiler.VoltProjectBuilder;
 import org.voltdb.settings.ClusterSettings;
@@ -171,4 +179,66 @@ public class TestPlannerTool extends TestCase {
         // would return a Stream Closed error
         m_pt.planSqlForTest("select * from A;");
     }
+
+    public void testPlannerPool() throws Exception
+    {
+        VoltProjectBuilder builder = new VoltProjectBuilder();
+        builder.addLiteralSchema("CREATE TABLE A (C1 BIGINT NOT NULL, C2 VARCHAR(10), PRIMARY KEY(C1));" +
+                                 "CREATE TABLE B (C1 BIGINT NOT NULL, C2 INTEGER);");
+        builder.addPartitionInfo("A", "C1");
+        final File jar = new File("testplannerpool-oop.jar");
+        jar.deleteOnExit();
+        builder.compile("testplannerpool-oop.jar");
+        byte[] bytes = MiscUtils.fileToBytes(jar);
+        String serializedCatalog = CatalogUtil.getSerializedCatalogStringFromJar(CatalogUtil.loadAndUpgradeCatalogFromJar(bytes, false).getFirst());
+        Catalog c = new Catalog();
+        c.execute(serializedCatalog);
+        DbSettings settings = new DbSettings(ClusterSettings.create().asSupplier(), NodeSettings.create());
+        CatalogContext context = new CatalogContext(c, settings, 0, 0, bytes, null, new byte[] {}, mock(HostMessenger.class));
+
+        final String[] queries = new String[] {
+                "select * from A where C1 = 5;",
+                "select A.C2, count(*) from A, B where A.C1 = B.C1 and B.C2 > 3 group by A.C2;",
+                "select T.C2 from (select C1, C2 from B where C2 > 1) T where T.C1 in (select C1 from B where C2 < 9) order by T.C2;",
+                "select * from A where C1 > ? and C2 = ?;"
+        };
+        final Object[][] params = new Object[][] { null, null, null, new Object[] { 1, "a" } };
+
+        // Forced MP statements are never cached, so every one of them is planned
+        final PlannerPool pool = new PlannerPool(context.database, context.getCatalogHash(), 3);
+        final List<AdHocPlannedStatement> expected = new ArrayList<>();
+        for (int i = 0; i < queries.length; i++) {
+            expected.add(pool.planSql(queries[i], StatementPartitioning.forceMP(), false, params[i], false));
+        }
+        assertEquals(1, pool.getPlannerCount());
+
+        ExecutorService es = Executors.newFixedThreadPool(6);
+        try {
+            List<Future<AdHocPlannedStatement>> results = new ArrayList<>();
+            for (int i = 0; i < 60; i++) {
+                final int q = i % queries.length;
+                results.add(es.submit(new Callable<AdHocPlannedStatement>() {
+                    @Override
+                    public AdHocPlannedStatement call() {
+                        return pool.planSql(queries[q], StatementPartitioning.forceMP(), false, params[q], false);
+                    }
+                }));
+            }
+            for (int i = 0; i < results.size(); i++) {
+                AdHocPlannedStatement stmt = results.get(i).get();
+                AdHocPlannedStatement exp = expected.get(i % queries.length);
+                // Same plan node and parameter numbering as the serial plans
+                assertTrue(Arrays.equals(exp.core.aggregatorFragment, stmt.core.aggregatorFragment));
+                assertTrue(Arrays.equals(exp.core.collectorFragment, stmt.core.collectorFragment));
+            }
+        }
+        finally {
+            es.shutdown();
+        }
+        assertTrue(pool.getPlannerCount() <= 3);
+
+        // Statements in the literal cache don't need a planner
+        AdHocPlannedStatement first = pool.planSql(queries[0], StatementPartitioning.inferPartitioning(), false, null, false);
+        assertSame(first, pool.planSql(queries[0], StatementPartitioning.inferPartitioning(), false, null, false));
+    }
 }
@@ -0,0 +1,124 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.voltdb.planner;
+
+import java.util.List;
+
+import org.voltdb.plannodes.AbstractPlanNode;
+import org.voltdb.plannodes.HashJoinPlanNode;
+import org.voltdb.plannodes.NestLoopPlanNode;
+import org.voltdb.types.JoinType;
+import org.voltdb.types.PlanNodeType;
+
+public class TestPlansHashJoin extends PlannerTestCase {
+    @Override
+    protected void setUp() throws Exception {
+        setupSchema(TestPlansHashJoin.class.getResource("testplans-subqueries-ddl.sql"), "ddl", false);
+        SelectSubPlanAssembler.HASH_JOIN_ENABLED = true;
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        SelectSubPlanAssembler.HASH_JOIN_ENABLED = false;
+        super.tearDown();
+    }
+
+    private HashJoinPlanNode checkHashJoin(String sql, JoinType joinType, int keyCount) {
+        AbstractPlanNode pn = compileSPWithJoinOrder(sql, "R1,T1");
+        //* enable to debug */ System.out.println(pn.toExplainPlanString());
+        List<AbstractPlanNode> joins = pn.findAllNodesOfType(PlanNodeType.HASHJOIN);
+        assertEquals(1, joins.size());
+        assertTrue(pn.findAllNodesOfType(PlanNodeType.NESTLOOP).isEmpty());
+        HashJoinPlanNode hj = (HashJoinPlanNode) joins.get(0);
+        assertEquals(joinType, hj.getJoinType());
+        assertEquals(keyCount, hj.getOuterHashExpressions().size());
+        assertEquals(keyCount, hj.getInnerHashExpressions().size());
+        assertNotNull(hj.getJoinPredicate());
+        return hj;
+    }
+
+    private void checkNestLoop(String sql) {
+        AbstractPlanNode pn = compileSPWithJoinOrder(sql, "R1,T1");
+        //* enable to debug */ System.out.println(pn.toExplainPlanString());
+        assertTrue(pn.findAllNodesOfType(PlanNodeType.HASHJOIN).isEmpty());
+        List<AbstractPlanNode> joins = pn.findAllNodesOfType(PlanNodeType.NESTLOOP);
+        assertEquals(1, joins.size());
+        assertTrue(joins.get(0) instanceof NestLoopPlanNode);
+    }
+
+    public void testEquiJoinOnSubquery() {
+        HashJoinPlanNode hj = checkHashJoin(
+                "select R1.A, T1.C from R1 join (select A, C from R3 limit 5) T1 on R1.A = T1.A",
+                JoinType.INNER, 1);
+        assertEquals(PlanNodeType.SEQSCAN, hj.getChild(0).getPlanNodeType());
+        assertTrue(hj.toExplainPlanString().contains("HASH INNER JOIN"));
+
+        checkHashJoin(
+                "select R1.A, T1.C from R1 join (select A, C from R3 limit 5) T1 " +
+                "on R1.A = T1.A and R1.C = T1.C",
+                JoinType.INNER, 2);
+
+        // Other join conditions are kept in the join predicate, but only the equalities are keys
+        checkHashJoin(
+                "select R1.A, T1.C from R1 join (select A, C from R3 limit 5) T1 " +
+                "on R1.A = T1.A and R1.D > T1.C",
+                JoinType.INNER, 1);
+    }
+
+    public void testLeftJoinOnSubquery() {
+        checkHashJoin(
+                "select R1.A, T1.C from R1 left join (select A, C from R3 limit 5) T1 on R1.A = T1.A",
+                JoinType.LEFT, 1);
+    }
+
+    public void testEquiJoinOnReceivedRows() {
+        List<AbstractPlanNode> lpn = compileToFragments("select * from R1 left join P1 on R1.C = P1.C");
+        assertEquals(2, lpn.size());
+        //* enable to debug */ System.out.println(lpn.get(0).toExplainPlanString());
+        List<AbstractPlanNode> joins = lpn.get(0).findAllNodesOfType(PlanNodeType.HASHJOIN);
+        assertEquals(1, joins.size());
+        HashJoinPlanNode hj = (HashJoinPlanNode) joins.get(0);
+        assertEquals(JoinType.LEFT, hj.getJoinType());
+        assertEquals(PlanNodeType.RECEIVE, hj.getChild(1).getPlanNodeType());
+    }
+
+    public void testOffByDefault() {
+        SelectSubPlanAssembler.HASH_JOIN_ENABLED = false;
+        checkNestLoop("select R1.A, T1.C from R1 join (select A, C from R3 limit 5) T1 on R1.A = T1.A");
+        checkNestLoop("select R1.A, T1.C from R1 left join (select A, C from R3 limit 5) T1 on R1.A = T1.A");
+    }
+
+    public void testNoHashJoin() {
+        // No equality between the two sides
+        checkNestLoop("select R1.A, T1.C from R1 join (select A, C from R3 limit 5) T1 on R1.A > T1.A");
+
+        // Keys of different types would not hash alike
+        checkNestLoop("select R1.A, T1.B from R1 join " +
+                "(select cast(A as bigint) B from R3 limit 5) T1 on R1.A = T1.B");
+
+        // The build side of a FULL join is not supported
+        checkNestLoop("select R1.A, T1.C from R1 full join (select A, C from R3 limit 5) T1 on R1.A = T1.A");
+    }
+}
@@ -0,0 +1,133 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.regressionsuites;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import junit.framework.Test;
+
+import org.voltdb.BackendTarget;
+import org.voltdb.client.Client;
+import org.voltdb.client.ClientResponse;
+import org.voltdb.compiler.VoltProjectBuilder;
+import org.voltdb.export.processors.FileExportSink;
+import org.voltdb.utils.VoltFile;
+
+/**
+ * Starts a deployment with a file export target, which the community edition
+ * accepts because the built-in export processor writes it, and checks that
+ * the rows inserted into a stream show up in the export files.
+ */
+public class TestCommunityFileExportSuite extends RegressionSuite {
+
+    static final File OUTDIR = new File("/tmp/" + System.getProperty("user.name"), "community-file-export");
+    static final String NONCE = "communityexport";
+
+    public TestCommunityFileExportSuite(String name) {
+        super(name);
+    }
+
+    /**
+     * Read the rows exported so far, including those in files not yet rolled.
+     */
+    static TreeMap<Integer, String> readExportedRows() throws IOException {
+        TreeMap<Integer, String> rows = new TreeMap<>();
+        File[] files = OUTDIR.listFiles();
+        if (files == null) {
+            return rows;
+        }
+        for (File file : files) {
+            String name = file.getName();
+            if (name.startsWith(FileExportSink.ACTIVE_PREFIX)) {
+                name = name.substring(FileExportSink.ACTIVE_PREFIX.length());
+            }
+            if (!name.startsWith(NONCE) || !name.endsWith(".csv")) {
+                continue;
+            }
+            for (String line : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)) {
+                int comma = line.indexOf(',');
+                if (comma > 0) {
+                    rows.put(Integer.valueOf(line.substring(0, comma)), line.substring(comma + 1));
+                }
+            }
+        }
+        return rows;
+    }
+
+    public void testFileExportWritesRows() throws Exception {
+        final Client client = getClient();
+        final int count = 200;
+        for (int i = 0; i < count; i++) {
+            ClientResponse response = client.callProcedure("PEOPLE.insert", i, "name" + i);
+            assertEquals(ClientResponse.SUCCESS, response.getStatus());
+        }
+
+        // streams are pushed to the export processor in the background
+        TreeMap<Integer, String> rows = readExportedRows();
+        final long deadline = System.currentTimeMillis() + 60 * 1000;
+        while (rows.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(500);
+            rows = readExportedRows();
+        }
+        assertEquals(count, rows.size());
+        for (int i = 0; i < count; i++) {
+            assertEquals("name" + i, rows.get(i));
+        }
+    }
+
+    static public Test suite() throws IOException {
+        VoltServerConfig config = null;
+        MultiConfigSuiteBuilder builder = new MultiConfigSuiteBuilder(TestCommunityFileExportSuite.class);
+
+        // rows left over from an earlier run would satisfy the test
+        VoltFile.recursivelyDelete(OUTDIR);
+
+        VoltProjectBuilder project = new VoltProjectBuilder();
+        project.addLiteralSchema(
+                "CREATE STREAM PEOPLE PARTITION ON COLUMN ID (" +
+                " ID INTEGER NOT NULL," +
+                " NAME VARCHAR(32) NOT NULL" +
+                ");");
+        Properties props = new Properties();
+        props.setProperty("outdir", OUTDIR.getPath());
+        props.setProperty("nonce", NONCE);
+        props.setProperty("type", "csv");
+        props.setProperty("skipinternals", "true");
+        project.addExport(true /* enabled */, "file", props);
+
+        boolean success;
+
+        config = new LocalCluster("community-file-export.jar", 2, 1, 0, BackendTarget.NATIVE_EE_JNI);
+        success = config.compile(project);
+        assert(success);
+        builder.addServerConfig(config);
+
+        return builder;
+    }
+}
@@ -24,11 +24,15 @@
 package org.voltdb.regressionsuites;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.voltdb.BackendTarget;
 import org.voltdb.VoltTable;
 import org.voltdb.VoltTableRow;
+import org.voltdb.VoltType;
 import org.voltdb.client.Client;
+import org.voltdb.client.ClientResponse;
 import org.voltdb.client.NoConnectionsException;
 import org.voltdb.client.ProcCallException;
 import org.voltdb.compiler.VoltProjectBuilder;
@@ -46,6 +50,9 @@ public class TestJoinsSuite extends RegressionSuite {
     // filters to minimally enable partition table joins.
     private static final String[] JOIN_OPS = {"=", "IS NOT DISTINCT FROM"};
 
+    // Prefix of the configuration that plans hash joins, with a 1MB temp table limit
+    private static final String HASH_JOIN_PREFIX = "hashjoin";
+
     public TestJoinsSuite(String name) {
         super(name);
     }
@@ -1797,6 +1804,206 @@ public class TestJoinsSuite extends RegressionSuite {
         validateTableOfLongs(client, query, toExpect);
     }
 
+    private boolean isHashJoinConfig() {
+        return m_config.getName().startsWith("localCluster-" + HASH_JOIN_PREFIX);
+    }
+
+    // On the hash join configuration, make sure the query really runs a hash join
+    private void checkHashJoinPlan(Client client, String query, String join) throws Exception {
+        if ( ! isHashJoinConfig()) {
+            return;
+        }
+        VoltTable vt = client.callProcedure("@Explain", query).getResults()[0];
+        assertTrue(vt.advanceRow());
+        String plan = vt.getString(0);
+        assertTrue(plan, plan.contains(join));
+    }
+
+    private static List<long[]> joinRows(Long[][] outer, Long[][] inner, boolean left) {
+        List<long[]> rows = new ArrayList<long[]>();
+        for (Long[] o : outer) {
+            boolean matched = false;
+            for (Long[] i : inner) {
+                if (o[1] != null && o[1].equals(i[1])) {
+                    rows.add(new long[] { o[0], i[0] });
+                    matched = true;
+                }
+            }
+            if (left && ! matched) {
+                rows.add(new long[] { o[0], NULL_VALUE });
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Equi-joins whose inner side is a subquery or rows received from the
+     * partitions. Hash joins must return what nested loop joins return.
+     */
+    public void testHashJoins() throws Exception {
+        Client client = getClient();
+        truncateTables(client, SEQ_TABLES);
+
+        // (A, C) of each table, C is the join key. R1.C is never null.
+        Long[][] r1 = new Long[30][];
+        for (int i = 0; i < r1.length; i++) {
+            r1[i] = new Long[] { (long) i, (long) (i % 10) };
+            client.callProcedure("R1.INSERT", i, i % 10, i);
+        }
+        Long[][] r1Small = new Long[3][];
+        System.arraycopy(r1, 0, r1Small, 0, r1Small.length);
+        Long[][] r2 = new Long[20][];
+        for (int i = 0; i < r2.length; i++) {
+            r2[i] = new Long[] { (long) i, i % 4 == 0 ? null : (long) (i % 12) };
+            client.callProcedure("R2.INSERT", i, r2[i][1]);
+        }
+        Long[][] p1 = new Long[20][];
+        for (int i = 0; i < p1.length; i++) {
+            p1[i] = new Long[] { (long) i, i % 5 == 0 ? null : (long) (i % 7) };
+            client.callProcedure("P1.INSERT", i, p1[i][1]);
+        }
+
+        String r1All = "(SELECT A, C FROM R1 LIMIT 1000)";
+        String r1Few = "(SELECT A, C FROM R1 WHERE A < 3 LIMIT 1000)";
+        String r2All = "(SELECT A, C FROM R2 LIMIT 1000)";
+        String query;
+
+        // Inner joins, with the smaller input on either side
+        query = "SELECT T1.A, T2.A FROM " + r1All + " T1 JOIN " + r2All + " T2 " +
+                "ON T1.C = T2.C ORDER BY T1.A, T2.A";
+        checkHashJoinPlan(client, query, "HASH INNER JOIN");
+        validateTableOfLongs(client, query, joinRows(r1, r2, false).toArray(new long[0][]));
+
+        query = "SELECT T1.A, T2.A FROM " + r1Few + " T1 JOIN " + r2All + " T2 " +
+                "ON T1.C = T2.C ORDER BY T1.A, T2.A";
+        checkHashJoinPlan(client, query, "HASH INNER JOIN");
+        validateTableOfLongs(client, query, joinRows(r1Small, r2, false).toArray(new long[0][]));
+
+        query = "SELECT T2.A, T1.A FROM " + r2All + " T2 JOIN " + r1Few + " T1 " +
+                "ON T2.C = T1.C ORDER BY T2.A, T1.A";
+        checkHashJoinPlan(client, query, "HASH INNER JOIN");
+        validateTableOfLongs(client, query, joinRows(r2, r1Small, false).toArray(new long[0][]));
+
+        // Left joins keep the outer rows with NULL keys and those without a match
+        query = "SELECT T2.A, T1.A FROM " + r2All + " T2 LEFT JOIN " + r1All + " T1 " +
+                "ON T2.C = T1.C ORDER BY T2.A, T1.A";
+        checkHashJoinPlan(client, query, "HASH LEFT JOIN");
+        validateTableOfLongs(client, query, joinRows(r2, r1, true).toArray(new long[0][]));
+
+        query = "SELECT T1.A, T2.A FROM " + r1Few + " T1 LEFT JOIN " + r2All + " T2 " +
+                "ON T1.C = T2.C ORDER BY T1.A, T2.A";
+        checkHashJoinPlan(client, query, "HASH LEFT JOIN");
+        validateTableOfLongs(client, query, joinRows(r1Small, r2, true).toArray(new long[0][]));
+
+        // Only the equality is hashed, the rest of the ON clause still applies
+        query = "SELECT T2.A, T1.A FROM " + r2All + " T2 LEFT JOIN " + r1All + " T1 " +
+                "ON T2.C = T1.C AND T1.A >= 10 ORDER BY T2.A, T1.A";
+        checkHashJoinPlan(client, query, "HASH LEFT JOIN");
+        Long[][] r1From10 = new Long[r1.length - 10][];
+        System.arraycopy(r1, 10, r1From10, 0, r1From10.length);
+        validateTableOfLongs(client, query, joinRows(r2, r1From10, true).toArray(new long[0][]));
+
+        // The partitioned table is joined on the coordinator
+        query = "SELECT R2.A, P1.A FROM R2 LEFT JOIN P1 ON R2.C = P1.C ORDER BY R2.A, P1.A";
+        checkHashJoinPlan(client, query, "HASH LEFT JOIN");
+        validateTableOfLongs(client, query, joinRows(r2, p1, true).toArray(new long[0][]));
+
+        // Inline LIMIT and OFFSET count only the rows that pass the join
+        int innerCount = joinRows(r1, r2, false).size();
+        int leftCount = joinRows(r2, r1, true).size();
+        subtestHashJoinLimit(client, "SELECT T1.A, T1.C, T2.A, T2.C FROM " + r1All + " T1 JOIN " + r2All + " T2 " +
+                "ON T1.C = T2.C", "HASH INNER JOIN", innerCount);
+        subtestHashJoinLimit(client, "SELECT T1.A, T1.C, T2.A, T2.C FROM " + r1Few + " T1 JOIN " + r2All + " T2 " +
+                "ON T1.C = T2.C", "HASH INNER JOIN", joinRows(r1Small, r2, false).size());
+        subtestHashJoinLimit(client, "SELECT T2.A, T2.C, T1.A, T1.C FROM " + r2All + " T2 LEFT JOIN " + r1All + " T1 " +
+                "ON T2.C = T1.C", "HASH LEFT JOIN", leftCount);
+    }
+
+    private void subtestHashJoinLimit(Client client, String join, String joinNode, int joinCount) throws Exception {
+        int[][] limitOffsets = { { 4, 0 }, { 4, 3 }, { 5, Math.max(0, joinCount - 2) }, { 3, joinCount } };
+        for (int[] limitOffset : limitOffsets) {
+            String query = join + " LIMIT " + limitOffset[0] + " OFFSET " + limitOffset[1];
+            checkHashJoinPlan(client, query, joinNode);
+            VoltTable vt = client.callProcedure("@AdHoc", query).getResults()[0];
+            int expected = Math.max(0, Math.min(limitOffset[0], joinCount - limitOffset[1]));
+            assertEquals(query, expected, vt.getRowCount());
+            while (vt.advanceRow()) {
+                long innerKey = vt.getLong(3);
+                if ( ! vt.wasNull()) {
+                    assertEquals(query, vt.getLong(1), innerKey);
+                }
+            }
+        }
+    }
+
+    private static void loadRows(Client client, String table, VoltTable rows) throws Exception {
+        ClientResponse cr = client.callProcedure("@LoadMultipartitionTable", table, (byte) 0, rows);
+        assertEquals(ClientResponse.SUCCESS, cr.getStatus());
+        rows.clearRowData();
+    }
+
+    /**
+     * With a 1MB temp table limit, hashing 40000 rows does not fit, so the
+     * build input is split into large temp table partitions that are joined
+     * one at a time.
+     */
+    public void testHashJoinSpill() throws Exception {
+        if ( ! isHashJoinConfig()) {
+            return;
+        }
+        Client client = getClient();
+        truncateTables(client, SEQ_TABLES);
+        final int rowCount = 40000;
+        // R1 is (i, i, i). R2 is (i, 2 * i), with a NULL key for every 100th row.
+        VoltTable r1 = new VoltTable(new VoltTable.ColumnInfo("A", VoltType.INTEGER),
+                new VoltTable.ColumnInfo("C", VoltType.INTEGER), new VoltTable.ColumnInfo("D", VoltType.INTEGER));
+        VoltTable r2 = new VoltTable(new VoltTable.ColumnInfo("A", VoltType.INTEGER),
+                new VoltTable.ColumnInfo("C", VoltType.INTEGER));
+        for (int i = 0; i < rowCount; i++) {
+            r1.addRow(i, i, i);
+            r2.addRow(i, i % 100 == 0 ? null : 2 * i);
+            if (r1.getRowCount() == 5000) {
+                loadRows(client, "R1", r1);
+                loadRows(client, "R2", r2);
+            }
+        }
+        validateTableOfScalarLongs(client, "SELECT COUNT(*) FROM R1", new long[] { rowCount });
+        validateTableOfScalarLongs(client, "SELECT COUNT(*) FROM R2", new long[] { rowCount });
+
+        long matches = 0;
+        long sum = 0;
+        for (int i = 0; 2 * i < rowCount; i++) {
+            if (i % 100 != 0) {
+                matches++;
+                sum += 2 * i;
+            }
+        }
+
+        String r1All = "(SELECT A, C FROM R1 LIMIT 100000)";
+        String r2All = "(SELECT A, C FROM R2 LIMIT 100000)";
+        String query;
+
+        query = "SELECT COUNT(*), SUM(T1.A) FROM " + r1All + " T1 JOIN " + r2All + " T2 ON T1.C = T2.C";
+        checkHashJoinPlan(client, query, "HASH INNER JOIN");
+        validateTableOfLongs(client, query, new long[][] { { matches, sum } });
+
+        query = "SELECT COUNT(*), COUNT(T1.A) FROM " + r2All + " T2 LEFT JOIN " + r1All + " T1 ON T2.C = T1.C";
+        checkHashJoinPlan(client, query, "HASH LEFT JOIN");
+        validateTableOfLongs(client, query, new long[][] { { rowCount, matches } });
+
+        // A limit reached before every partition has been joined
+        query = "SELECT T1.A, T1.C, T2.A, T2.C FROM " + r1All + " T1 JOIN " + r2All + " T2 ON T1.C = T2.C " +
+                "LIMIT 10 OFFSET 5";
+        checkHashJoinPlan(client, query, "HASH INNER JOIN");
+        VoltTable vt = client.callProcedure("@AdHoc", query).getResults()[0];
+        assertEquals(10, vt.getRowCount());
+        while (vt.advanceRow()) {
+            assertEquals(vt.getLong(1), vt.getLong(3));
+        }
+
+        truncateTables(client, SEQ_TABLES);
+    }
+
     static public junit.framework.Test suite() {
         MultiConfigSuiteBuilder builder = new MultiConfigSuiteBuilder(TestJoinsSuite.class);
         VoltProjectBuilder project = new VoltProjectBuilder();
@@ -1820,6 +2027,19 @@ public class TestJoinsSuite extends RegressionSuite {
         assertTrue(config.compile(project));
         builder.addServerConfig(config);
 
+        // Hash joins, which are off by default. The small temp table limit
+        // makes large build inputs go through partitioned large temp tables.
+        VoltProjectBuilder hashJoinProject = new VoltProjectBuilder();
+        hashJoinProject.addSchema(TestJoinsSuite.class.getResource("testjoins-ddl.sql"));
+        hashJoinProject.setMaxTempTableMemory(1);
+        config = new LocalCluster("testjoin-hashjoin.jar", 2, 1, 0, BackendTarget.NATIVE_EE_JNI);
+        config.setPrefix(HASH_JOIN_PREFIX);
+        // The planner of the server process needs the property
+        config.setHasLocalServer(false);
+        config.setJavaProperty("ENABLE_HASH_JOIN", "true");
+        assertTrue(config.compile(hashJoinProject));
+        builder.addServerConfig(config);
+
         // HSQLDB
         config = new LocalCluster("testjoin-hsql.jar", 1, 1, 0, BackendTarget.HSQLDB_BACKEND);
         assertTrue(config.compile(project));
@@ -0,0 +1,156 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.regressionsuites;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.Test;
+
+import org.voltdb.BackendTarget;
+import org.voltdb.VoltTable;
+import org.voltdb.benchmark.tpcc.TPCCProjectBuilder;
+import org.voltdb.client.Client;
+import org.voltdb.client.ClientResponse;
+import org.voltdb.client.ProcedureCallback;
+import org.voltdb_testprocs.regressionsuites.rollbackprocs.SinglePartitionJavaAbort;
+
+/**
+ * Queue runs of a single-statement insert procedure, which the site executes in
+ * batches, interleaved with inserts that violate the primary key and with Java
+ * procedures that insert and then abort. Every transaction must get its own
+ * response and the table must hold exactly the rows of the committed ones.
+ */
+public class TestSpBatchRollbackSuite extends RegressionSuite {
+
+    static final Class<?>[] PROCEDURES = {
+        SinglePartitionJavaAbort.class
+    };
+
+    // All rows go to the partition of this warehouse
+    static final byte W_ID = 2;
+
+    public TestSpBatchRollbackSuite(String name) {
+        super(name);
+    }
+
+    static class ResponseCallback implements ProcedureCallback {
+        final int m_index;
+        final ClientResponse[] m_responses;
+
+        ResponseCallback(int index, ClientResponse[] responses) {
+            m_index = index;
+            m_responses = responses;
+        }
+
+        @Override
+        public void clientCallback(ClientResponse clientResponse) {
+            synchronized (m_responses) {
+                m_responses[m_index] = clientResponse;
+            }
+        }
+    }
+
+    public void testBatchedInsertsWithFailures() throws Exception {
+        final Client client = getClient();
+        final int count = 500;
+        final ClientResponse[] responses = new ClientResponse[count];
+        final byte[] expectedStatus = new byte[count];
+        final List<Long> committed = new ArrayList<>();
+
+        for (int i = 0; i < count; i++) {
+            final ResponseCallback callback = new ResponseCallback(i, responses);
+            switch (i % 10) {
+            case 3:
+                // Duplicates the row inserted just before it, possibly in the same batch
+                client.callProcedure(callback, "InsertNewOrder", i - 1, 1, W_ID);
+                expectedStatus[i] = ClientResponse.GRACEFUL_FAILURE;
+                break;
+            case 7:
+                // Inserts (W_ID, W_ID, W_ID) and aborts, splitting the run of inserts.
+                // The next one fails on a duplicate key unless this row was undone.
+                client.callProcedure(callback, "SinglePartitionJavaAbort", W_ID);
+                expectedStatus[i] = ClientResponse.USER_ABORT;
+                break;
+            default:
+                client.callProcedure(callback, "InsertNewOrder", i, 1, W_ID);
+                expectedStatus[i] = ClientResponse.SUCCESS;
+                committed.add((long) i);
+            }
+        }
+        client.drain();
+
+        synchronized (responses) {
+            for (int i = 0; i < count; i++) {
+                assertNotNull("No response for call " + i, responses[i]);
+                assertEquals("Status of call " + i + ": " + responses[i].getStatusString(),
+                        expectedStatus[i], responses[i].getStatus());
+                if (expectedStatus[i] == ClientResponse.SUCCESS) {
+                    assertEquals(1, responses[i].getResults()[0].asScalarLong());
+                }
+            }
+        }
+
+        final long[] expectedIds = new long[committed.size()];
+        long sum = 0;
+        for (int i = 0; i < expectedIds.length; i++) {
+            expectedIds[i] = committed.get(i);
+            sum += expectedIds[i];
+        }
+        validateTableOfScalarLongs(client,
+                "SELECT NO_O_ID FROM NEW_ORDER WHERE NO_W_ID = " + W_ID + " ORDER BY NO_O_ID;", expectedIds);
+
+        // The view is maintained in the same undo quanta as the table
+        VoltTable view = client.callProcedure("@AdHoc",
+                "SELECT NUM, S FROM MATVIEW_N_O WHERE NO_W_ID = " + W_ID + ";").getResults()[0];
+        assertTrue(view.advanceRow());
+        assertEquals(expectedIds.length, view.getLong(0));
+        assertEquals(sum, view.getLong(1));
+    }
+
+    static public Test suite() {
+        VoltServerConfig config = null;
+        MultiConfigSuiteBuilder builder = new MultiConfigSuiteBuilder(TestSpBatchRollbackSuite.class);
+
+        TPCCProjectBuilder project = new TPCCProjectBuilder();
+        project.addSchema(SinglePartitionJavaAbort.class.getResource("tpcc-extraview-ddl.sql"));
+        project.addDefaultPartitioning();
+        project.addPartitionInfo("ALL_TYPES", "ID");
+        project.addProcedures(PROCEDURES);
+        project.addStmtProcedure("InsertNewOrder", "INSERT INTO NEW_ORDER VALUES (?, ?, ?);", "NEW_ORDER.NO_W_ID: 2");
+
+        boolean success;
+
+        // One site, so every transaction queues up behind the others
+        config = new LocalCluster("spbatch-onesite.jar", 1, 1, 0, BackendTarget.NATIVE_EE_JNI);
+        // The property only reaches servers in their own process
+        ((LocalCluster) config).setHasLocalServer(false);
+        ((LocalCluster) config).setJavaProperty("SP_BATCH_MAX_SIZE", "32");
+        success = config.compile(project);
+        assert(success);
+        builder.addServerConfig(config);
+
+        return builder;
+    }
+}
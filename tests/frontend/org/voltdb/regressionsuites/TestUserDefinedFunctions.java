@@ -818,6 +818,53 @@ public class TestUserDefinedFunctions extends RegressionSuite {
                     VoltType.GEOGRAPHY, UserDefinedTestException.class);
     }
 
+    // Test UDF calls over many rows. The ORDER BY puts a projection node on top
+    // of the sort, which evaluates the UDF's for a batch of rows at a time ...
+
+    private static final int MANY_ROWS = 2500;
+
+    private void insertManyRows(String tableName, int throwingId) throws IOException, ProcCallException {
+        Client client = getClient();
+        for (int id = 0; id < MANY_ROWS; id++) {
+            int intValue = (id == throwingId ? UDF_TEST.THROW_NumberFormatException : 3 * id);
+            ClientResponse cr = client.callProcedure("@AdHoc",
+                    "INSERT INTO "+tableName+" (ID, INT, VCHAR) VALUES (?, ?, ?)", id, intValue, "v" + id);
+            assertEquals(ClientResponse.SUCCESS, cr.getStatus());
+        }
+    }
+
+    private void testFunctionsOverManyRows(String tableName) throws IOException, ProcCallException {
+        insertManyRows(tableName, -1);
+        Client client = getClient();
+        VoltTable vt = client.callProcedure("@AdHoc", "SELECT ID, add2Integer(INT, ID), "
+                + "add2Varchar(VCHAR, 'x') FROM "+tableName+" ORDER BY INT DESC, ID").getResults()[0];
+        assertEquals(MANY_ROWS, vt.getRowCount());
+        for (int id = MANY_ROWS - 1; id >= 0; id--) {
+            assertTrue(vt.advanceRow());
+            assertEquals(id, vt.getLong(0));
+            assertEquals(4 * id, vt.getLong(1));
+            assertEquals("v" + id + "x", vt.getString(2));
+        }
+        client.callProcedure("@AdHoc", "TRUNCATE TABLE "+tableName);
+    }
+
+    public void testReplicatedFunctionsOverManyRows() throws IOException, ProcCallException {
+        testFunctionsOverManyRows("R1");
+    }
+    public void testPartitionedFunctionsOverManyRows() throws IOException, ProcCallException {
+        testFunctionsOverManyRows("P1");
+    }
+    public void testExceptionOverManyRows() throws IOException, ProcCallException {
+        // The throwing row sorts last, so it is in the last batch of rows
+        insertManyRows("R1", 1500);
+        try {
+            getClient().callProcedure("@AdHoc", "SELECT ID, add2Integer(INT, ID) FROM R1 ORDER BY INT DESC, ID");
+            fail("add2Integer did not throw for row 1500");
+        } catch (ProcCallException ex) {
+            assertTrue(ex.getMessage(), ex.getMessage().contains("NumberFormatException"));
+        }
+        getClient().callProcedure("@AdHoc", "TRUNCATE TABLE R1");
+    }
 
     /** Simple constructor that passes parameter on to superclass.
      *  @param name The name of the method to run as a test. (JUnit magic) */
@@ -48,7 +48,7 @@ public class TestStatisticsCommandLogStats extends StatisticsTestSuiteBase {
 
         Client client  = getFullyConnectedClient();
 
-        VoltTable.ColumnInfo[] expectedSchema = new VoltTable.ColumnInfo[8];
+        VoltTable.ColumnInfo[] expectedSchema = new VoltTable.ColumnInfo[11];
         expectedSchema[0] = new VoltTable.ColumnInfo("TIMESTAMP", VoltType.BIGINT);
         expectedSchema[1] = new VoltTable.ColumnInfo("HOST_ID", VoltType.INTEGER);
         expectedSchema[2] = new VoltTable.ColumnInfo("HOSTNAME", VoltType.STRING);
@@ -57,6 +57,9 @@ public class TestStatisticsCommandLogStats extends StatisticsTestSuiteBase {
         expectedSchema[5] = new VoltTable.ColumnInfo(CommandLogStats.StatName.IN_USE_SEGMENT_COUNT.name(), VoltType.INTEGER);
         expectedSchema[6] = new VoltTable.ColumnInfo(CommandLogStats.StatName.SEGMENT_COUNT.name(), VoltType.INTEGER);
         expectedSchema[7] = new VoltTable.ColumnInfo(CommandLogStats.StatName.FSYNC_INTERVAL.name(), VoltType.INTEGER);
+        expectedSchema[8] = new VoltTable.ColumnInfo(CommandLogStats.StatName.AVG_BATCH_TXNS.name(), VoltType.INTEGER);
+        expectedSchema[9] = new VoltTable.ColumnInfo(CommandLogStats.StatName.AVG_FSYNC_LATENCY.name(), VoltType.BIGINT);
+        expectedSchema[10] = new VoltTable.ColumnInfo(CommandLogStats.StatName.MAX_FSYNC_LATENCY.name(), VoltType.BIGINT);
         VoltTable expectedTable = new VoltTable(expectedSchema);
 
         VoltTable[] results = null;
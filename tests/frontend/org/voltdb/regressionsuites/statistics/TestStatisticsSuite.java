@@ -491,7 +491,7 @@ public class TestStatisticsSuite extends StatisticsTestSuiteBase {
         // Based on doc, not code
         // HOST_ID, SITE_ID, and PARTITION_ID all differ.  Fixed to match
         // reality so tests would pass, but, ugh.
-        ColumnInfo[] expectedSchema = new ColumnInfo[9];
+        ColumnInfo[] expectedSchema = new ColumnInfo[16];
         expectedSchema[0] = new ColumnInfo("TIMESTAMP", VoltType.BIGINT);
         expectedSchema[1] = new ColumnInfo("HOST_ID", VoltType.INTEGER);
         expectedSchema[2] = new ColumnInfo("HOSTNAME", VoltType.STRING);
@@ -501,6 +501,13 @@ public class TestStatisticsSuite extends StatisticsTestSuiteBase {
         expectedSchema[6] = new ColumnInfo("MESSAGES_READ", VoltType.BIGINT);
         expectedSchema[7] = new ColumnInfo("BYTES_WRITTEN", VoltType.BIGINT);
         expectedSchema[8] = new ColumnInfo("MESSAGES_WRITTEN", VoltType.BIGINT);
+        expectedSchema[9] = new ColumnInfo("WRITE_CALLS", VoltType.BIGINT);
+        expectedSchema[10] = new ColumnInfo("AVG_BYTES_PER_WRITE", VoltType.BIGINT);
+        expectedSchema[11] = new ColumnInfo("SELECTS", VoltType.BIGINT);
+        expectedSchema[12] = new ColumnInfo("SELECTS_PER_SECOND", VoltType.BIGINT);
+        expectedSchema[13] = new ColumnInfo("AVG_WRITES_PER_SELECT", VoltType.FLOAT);
+        expectedSchema[14] = new ColumnInfo("MESSAGES_PER_FRAME", VoltType.FLOAT);
+        expectedSchema[15] = new ColumnInfo("AVG_COALESCE_DELAY", VoltType.BIGINT);
         VoltTable expectedTable = new VoltTable(expectedSchema);
 
         VoltTable[] results = null;
@@ -656,7 +663,7 @@ public class TestStatisticsSuite extends StatisticsTestSuiteBase {
     public void testQueueDepthStatistics() throws Exception {
         System.out.println("\n\nTESTING QUEUEDEPTH STATS\n\n\n");
         Client client  = getFullyConnectedClient();
-        ColumnInfo[] expectedSchema = new ColumnInfo[8];
+        ColumnInfo[] expectedSchema = new ColumnInfo[11];
         expectedSchema[0] = new ColumnInfo("TIMESTAMP", VoltType.BIGINT);
         expectedSchema[1] = new ColumnInfo("HOST_ID", VoltType.INTEGER);
         expectedSchema[2] = new ColumnInfo("HOSTNAME", VoltType.STRING);
@@ -665,6 +672,9 @@ public class TestStatisticsSuite extends StatisticsTestSuiteBase {
         expectedSchema[5] = new ColumnInfo("POLL_COUNT", VoltType.BIGINT);
         expectedSchema[6] = new ColumnInfo("AVG_WAIT", VoltType.BIGINT);
         expectedSchema[7] = new ColumnInfo("MAX_WAIT", VoltType.BIGINT);
+        expectedSchema[8] = new ColumnInfo("BATCH_COUNT", VoltType.BIGINT);
+        expectedSchema[9] = new ColumnInfo("AVG_BATCH_SIZE", VoltType.FLOAT);
+        expectedSchema[10] = new ColumnInfo("MAX_BATCH_SIZE", VoltType.INTEGER);
 
         VoltTable expectedTable = new VoltTable(expectedSchema);
 
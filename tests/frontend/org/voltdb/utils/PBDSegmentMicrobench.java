@@ -0,0 +1,157 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.voltdb.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.voltcore.utils.DBBPool;
+import org.voltcore.utils.DBBPool.BBContainer;
+import org.voltdb.utils.BinaryDeque.OutputContainerFactory;
+import org.voltdb.utils.PBDSegment.PBDSegmentReader;
+
+/**
+ * Compares channel backed and memory mapped PBD segments: offer throughput with a
+ * sync every few offers, then poll throughput, for a range of segment sizes. A
+ * segment is rolled over once it holds the given number of bytes, the mapping
+ * itself is always CHUNK_SIZE (-DPBDSEGMENT_CHUNK_SIZE).
+ *
+ * Usage: PBDSegmentMicrobench [entry bytes] [offers per sync] [segment megabytes...]
+ */
+public class PBDSegmentMicrobench {
+
+    private static final OutputContainerFactory DIRECT_FACTORY = new OutputContainerFactory() {
+        @Override
+        public BBContainer getContainer(int minimumSize) {
+            return DBBPool.allocateDirect(minimumSize);
+        }
+    };
+
+    private static volatile long s_sink;
+
+    private static PBDSegment newSegment(boolean mapped, File file) {
+        return mapped ? new PBDMappedSegment(0L, file) : new PBDRegularSegment(0L, file);
+    }
+
+    private static long pollAll(PBDSegment segment, String cursorId) throws IOException {
+        final long start = System.nanoTime();
+        final PBDSegmentReader reader = segment.openForRead(cursorId);
+        BBContainer cont;
+        while ((cont = reader.poll(DIRECT_FACTORY)) != null) {
+            // Consumers read the whole entry, a copying reader has already paged it in
+            final ByteBuffer b = cont.b();
+            long sum = 0;
+            while (b.remaining() > 7) {
+                sum += b.getLong();
+            }
+            s_sink += sum;
+            cont.discard();
+        }
+        return System.nanoTime() - start;
+    }
+
+    /*
+     * Returns throughput in MB/s for offers, for polls that trail the writer on the
+     * open segment, and for polls of a closed segment opened again. Entries are not
+     * compressed so both implementations move the same bytes.
+     */
+    private static double[] run(boolean mapped, File dir, int entryBytes, int offersPerSync,
+                                int segmentBytes, int totalBytes) throws IOException {
+        final ByteBuffer payload = ByteBuffer.allocateDirect(entryBytes);
+        while (payload.hasRemaining()) {
+            payload.put((byte) payload.position());
+        }
+        final int perSegment = Math.min(segmentBytes, PBDSegment.CHUNK_SIZE - PBDSegment.SEGMENT_HEADER_BYTES * 2)
+                / (entryBytes + PBDSegment.OBJECT_HEADER_BYTES);
+        final int segments = Math.max(1, totalBytes / (perSegment * entryBytes));
+
+        long offerNanos = 0;
+        long tailPollNanos = 0;
+        long reopenPollNanos = 0;
+        for (int s = 0; s < segments; s++) {
+            final File file = new File(dir, "bench." + s + ".pbd");
+            PBDSegment segment = newSegment(mapped, file);
+            final long start = System.nanoTime();
+            segment.openForWrite(true);
+            for (int ii = 0; ii < perSegment; ii++) {
+                payload.clear();
+                segment.offer(DBBPool.dummyWrapBB(payload), false);
+                if ((ii + 1) % offersPerSync == 0) {
+                    segment.sync();
+                }
+            }
+            segment.sync();
+            offerNanos += System.nanoTime() - start;
+
+            tailPollNanos += pollAll(segment, "tail");
+            segment.close();
+
+            // Like a recovered PBD, read the entry count before polling
+            segment = newSegment(mapped, file);
+            segment.getNumEntries();
+            reopenPollNanos += pollAll(segment, "reopen");
+            segment.closeAndDelete();
+        }
+        final double megabytes = (double) segments * perSegment * entryBytes / (1024 * 1024);
+        return new double[] { megabytes * 1e9 / offerNanos,
+                              megabytes * 1e9 / tailPollNanos,
+                              megabytes * 1e9 / reopenPollNanos };
+    }
+
+    public static void main(String[] args) throws Exception {
+        final int entryBytes = args.length > 0 ? Integer.parseInt(args[0]) : 4096;
+        final int offersPerSync = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+        int[] segmentMegabytes = new int[] { 4, 16, 64 };
+        if (args.length > 2) {
+            segmentMegabytes = new int[args.length - 2];
+            for (int i = 2; i < args.length; i++) {
+                segmentMegabytes[i - 2] = Integer.parseInt(args[i]);
+            }
+        }
+
+        final File dir = File.createTempFile("pbd_bench", "");
+        dir.delete();
+        dir.mkdirs();
+        try {
+            final int totalBytes = 256 * 1024 * 1024;
+            // warm up both paths
+            run(false, dir, entryBytes, offersPerSync, 4 * 1024 * 1024, 16 * 1024 * 1024);
+            run(true, dir, entryBytes, offersPerSync, 4 * 1024 * 1024, 16 * 1024 * 1024);
+
+            for (int megabytes : segmentMegabytes) {
+                final int segmentBytes = megabytes * 1024 * 1024;
+                final double[] regular = run(false, dir, entryBytes, offersPerSync, segmentBytes, totalBytes);
+                final double[] mapped = run(true, dir, entryBytes, offersPerSync, segmentBytes, totalBytes);
+                System.out.printf("%dMB segments, %d byte entries, sync every %d:%n" +
+                        "  channel offer %.0f MB/s, tail poll %.0f MB/s, reopened poll %.0f MB/s%n" +
+                        "  mapped  offer %.0f MB/s, tail poll %.0f MB/s, reopened poll %.0f MB/s%n",
+                        megabytes, entryBytes, offersPerSync,
+                        regular[0], regular[1], regular[2], mapped[0], mapped[1], mapped[2]);
+            }
+        } finally {
+            VoltFile.recursivelyDelete(dir);
+        }
+        System.exit(0);
+    }
+}
@@ -0,0 +1,203 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.voltdb.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.supercsv.prefs.CsvPreference;
+import org.voltdb.VoltType;
+import org.voltdb.client.ClientResponse;
+
+public class TestCSVParallelFileReader {
+
+    /**
+     * Collects the inserted rows and the errors instead of talking to a database.
+     */
+    static class CollectingLoader implements CSVDataLoader, BulkLoaderErrorHandler {
+        final Map<Integer, Object[]> m_rows = new ConcurrentHashMap<Integer, Object[]>();
+        final Map<Integer, Long> m_lines = new ConcurrentHashMap<Integer, Long>();
+        final List<Long> m_errorLines = new CopyOnWriteArrayList<Long>();
+        volatile boolean m_closed = false;
+
+        @Override
+        public VoltType[] getColumnTypes() {
+            return new VoltType[] { VoltType.INTEGER, VoltType.STRING, VoltType.STRING };
+        }
+
+        @Override
+        public Map<Integer, String> getColumnNames() {
+            Map<Integer, String> names = new TreeMap<Integer, String>();
+            names.put(0, "ID");
+            names.put(1, "NAME");
+            names.put(2, "NOTE");
+            return names;
+        }
+
+        @Override
+        public void insertRow(RowWithMetaData metaData, Object[] values) {
+            int id = Integer.parseInt((String) values[0]);
+            m_rows.put(id, values);
+            m_lines.put(id, metaData.lineNumber);
+        }
+
+        @Override
+        public boolean handleError(RowWithMetaData metaData, ClientResponse response, String error) {
+            m_errorLines.add(metaData.lineNumber);
+            return false;
+        }
+
+        @Override
+        public boolean hasReachedErrorLimit() {
+            return false;
+        }
+
+        @Override
+        public void close() {
+            m_closed = true;
+        }
+
+        @Override
+        public long getProcessedRows() {
+            return m_rows.size();
+        }
+
+        @Override
+        public long getFailedRows() {
+            return m_errorLines.size();
+        }
+
+        @Override
+        public void setFlushInterval(int delay, int seconds) {}
+
+        @Override
+        public void flush() {}
+
+        @Override
+        public void resumeLoading() {}
+    }
+
+    private File m_file;
+
+    @Before
+    public void setUp() throws Exception {
+        m_file = File.createTempFile("parallel", ".csv");
+        CSVFileReader.m_totalRowCount.set(0);
+        CSVFileReader.m_totalLineCount.set(0);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        m_file.delete();
+    }
+
+    private CollectingLoader load(String[] lines, boolean header, long skip, int chunkSize) throws Exception {
+        try (Writer out = new OutputStreamWriter(new FileOutputStream(m_file), "UTF-8")) {
+            for (String line : lines) {
+                out.write(line + "\n");
+            }
+        }
+        CSVLoader.CSVConfig config = new CSVLoader.CSVConfig();
+        config.file = m_file.getPath();
+        config.table = "T";
+        config.header = header;
+        config.skip = skip;
+        config.parsers = 3;
+        config.chunksize = chunkSize;
+        assertTrue(CSVParallelFileReader.canSplit(Charset.forName(config.charset), config));
+
+        CollectingLoader loader = new CollectingLoader();
+        CSVFileReader.initializeReader(config, null, null);
+        CSVFileReader template = new CSVFileReader(loader, loader);
+        CsvPreference preference = new CsvPreference.Builder(config.quotechar, config.separator, "\n").build();
+        new CSVParallelFileReader(config, template, loader, preference).run();
+        assertTrue(loader.m_closed);
+        return loader;
+    }
+
+    @Test
+    public void testQuotedNewlinesAcrossChunks() throws Exception {
+        String[] lines = new String[3000];
+        for (int i = 0; i < 1000; i++) {
+            // Every row spans three lines, and the middle one looks like a row
+            lines[3 * i] = i + ",\"name " + i + ", \"\"x\"\"";
+            lines[3 * i + 1] = "99999,second,line";
+            lines[3 * i + 2] = "end\",\\\"plain";
+        }
+        CollectingLoader loader = load(lines, false, 0, 64);
+        assertEquals(1000, loader.m_rows.size());
+        assertTrue(loader.m_errorLines.isEmpty());
+        for (int i = 0; i < 1000; i++) {
+            Object[] row = loader.m_rows.get(i);
+            assertEquals("name " + i + ", \"x\"\n99999,second,line\nend", row[1]);
+            assertEquals("\"plain", row[2]);
+            assertEquals(3 * i + 3, (long) loader.m_lines.get(i));
+        }
+        assertEquals(1000, CSVFileReader.m_totalRowCount.get());
+        assertEquals(3000, CSVFileReader.m_totalLineCount.get());
+    }
+
+    @Test
+    public void testHeaderAndSkip() throws Exception {
+        String[] lines = new String[203];
+        lines[0] = "";
+        lines[1] = "note,ID,name";
+        for (int i = 0; i < 200; i++) {
+            lines[i + 2] = "n" + i + "," + i + ",name" + i;
+        }
+        lines[202] = "1,2";
+        // Skips the first two data lines
+        CollectingLoader loader = load(lines, true, 3, 100);
+        assertEquals(198, loader.m_rows.size());
+        for (int i = 2; i < 200; i++) {
+            Object[] row = loader.m_rows.get(i);
+            assertEquals("name" + i, row[1]);
+            assertEquals("n" + i, row[2]);
+            assertEquals(i + 3, (long) loader.m_lines.get(i));
+        }
+        assertEquals(1, loader.m_errorLines.size());
+        assertEquals(203, (long) loader.m_errorLines.get(0));
+        assertEquals(203, CSVFileReader.m_totalLineCount.get());
+    }
+
+    @Test
+    public void testSkipWholeFile() throws Exception {
+        CollectingLoader loader = load(new String[] { "1,a,b", "2,c,d" }, false, 10, 1024);
+        assertEquals(0, loader.m_rows.size());
+        assertEquals(2, CSVFileReader.m_totalLineCount.get());
+    }
+}
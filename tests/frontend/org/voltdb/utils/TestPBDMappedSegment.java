@@ -0,0 +1,290 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.voltdb.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.voltcore.utils.CompressionCodecs;
+import org.voltcore.utils.CompressionStrategy;
+import org.voltcore.utils.DBBPool;
+import org.voltcore.utils.DBBPool.BBContainer;
+import org.voltcore.utils.DeferredSerialization;
+import org.voltdb.utils.BinaryDeque.BinaryDequeTruncator;
+import org.voltdb.utils.BinaryDeque.OutputContainerFactory;
+import org.voltdb.utils.BinaryDeque.TruncatorResponse;
+import org.voltdb.utils.PBDSegment.PBDSegmentReader;
+
+public class TestPBDMappedSegment {
+
+    private static final String CURSOR_ID = "testMapped";
+
+    private static final OutputContainerFactory DIRECT_FACTORY = new OutputContainerFactory() {
+        @Override
+        public BBContainer getContainer(int minimumSize) {
+            return DBBPool.allocateDirect(minimumSize);
+        }
+    };
+
+    private File m_file;
+
+    private static BBContainer filledContainer(int size, long fillValue) {
+        ByteBuffer buf = ByteBuffer.allocateDirect(size);
+        while (buf.remaining() > 7) {
+            buf.putLong(fillValue);
+        }
+        buf.clear();
+        return DBBPool.wrapBB(buf);
+    }
+
+    private static void assertFilled(ByteBuffer buf, int size, long fillValue) {
+        assertEquals(size, buf.remaining());
+        while (buf.remaining() > 7) {
+            assertEquals(fillValue, buf.getLong());
+        }
+    }
+
+    private static DeferredSerialization longsSerialization(final int count, final long fillValue) {
+        return new DeferredSerialization() {
+            @Override
+            public void serialize(ByteBuffer buf) throws IOException {
+                for (int ii = 0; ii < count; ii++) {
+                    buf.putLong(fillValue);
+                }
+            }
+
+            @Override
+            public void cancel() {}
+
+            @Override
+            public int getSerializedSize() {
+                return count * 8;
+            }
+        };
+    }
+
+    // Alternates compressed, uncompressed and deferred entries
+    private static void offerEntries(PBDSegment segment, int count) throws IOException {
+        for (int ii = 0; ii < count; ii++) {
+            switch (ii % 3) {
+            case 0:
+                assertTrue(segment.offer(filledContainer(4096, ii), true));
+                break;
+            case 1:
+                assertTrue(segment.offer(filledContainer(4096, ii), false));
+                break;
+            default:
+                assertEquals(4096, segment.offer(longsSerialization(512, ii)));
+            }
+        }
+    }
+
+    private static void pollEntries(PBDSegment segment, int count) throws IOException {
+        PBDSegmentReader reader = segment.openForRead(CURSOR_ID);
+        for (int ii = 0; ii < count; ii++) {
+            BBContainer cont = reader.poll(DIRECT_FACTORY);
+            try {
+                assertFilled(cont.b(), 4096, ii);
+            } finally {
+                cont.discard();
+            }
+        }
+        assertNull(reader.poll(DIRECT_FACTORY));
+        assertTrue(reader.allReadAndDiscarded());
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        m_file = File.createTempFile("pbd_mapped", ".pbd");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        m_file.delete();
+        System.gc();
+        System.runFinalization();
+    }
+
+    @Test
+    public void testOfferThenPoll() throws Exception {
+        PBDMappedSegment segment = new PBDMappedSegment(0L, m_file);
+        segment.openForWrite(true);
+        offerEntries(segment, 30);
+        segment.sync();
+        assertEquals(30, segment.getNumEntries());
+        assertEquals(30 * 4096, segment.size());
+
+        pollEntries(segment, 30);
+        segment.close();
+    }
+
+    @Test
+    public void testFileFormatMatchesRegularSegment() throws Exception {
+        PBDMappedSegment mapped = new PBDMappedSegment(0L, m_file);
+        mapped.openForWrite(true);
+        offerEntries(mapped, 30);
+        mapped.close();
+        // The unused part of the mapping is trimmed off on close
+        assertTrue(m_file.length() < 31 * (4096 + PBDSegment.OBJECT_HEADER_BYTES));
+
+        PBDRegularSegment regular = new PBDRegularSegment(0L, m_file);
+        assertEquals(30, regular.getNumEntries());
+        pollEntries(regular, 30);
+        regular.close();
+
+        regular = new PBDRegularSegment(0L, m_file);
+        regular.openForWrite(true);
+        offerEntries(regular, 30);
+        regular.close();
+
+        mapped = new PBDMappedSegment(0L, m_file);
+        assertEquals(30, mapped.getNumEntries());
+        pollEntries(mapped, 30);
+        mapped.close();
+    }
+
+    @Test
+    public void testSliceOutlivesSegment() throws Exception {
+        PBDMappedSegment segment = new PBDMappedSegment(0L, m_file);
+        segment.openForWrite(true);
+        assertTrue(segment.offer(filledContainer(4096, 7), false));
+
+        PBDSegmentReader reader = segment.openForRead(CURSOR_ID);
+        BBContainer cont = reader.poll(DIRECT_FACTORY);
+        // Uncompressed entries come back as slices of the mapping
+        assertTrue(cont.b().isDirect());
+        assertFalse(reader.allReadAndDiscarded());
+
+        segment.closeAndDelete();
+        assertFilled(cont.b(), 4096, 7);
+        cont.discard();
+    }
+
+    @Test
+    public void testReopenSegmentThatWasNotTrimmed() throws Exception {
+        PBDMappedSegment segment = new PBDMappedSegment(0L, m_file);
+        segment.openForWrite(true);
+        offerEntries(segment, 10);
+        segment.sync();
+        segment.close();
+
+        // A crash before close leaves the file at the full mapping size
+        try (RandomAccessFile ras = new RandomAccessFile(m_file, "rw")) {
+            ras.setLength(PBDSegment.CHUNK_SIZE);
+        }
+
+        segment = new PBDMappedSegment(0L, m_file);
+        assertEquals(10, segment.getNumEntries());
+        segment.openForWrite(false);
+        for (int ii = 10; ii < 20; ii++) {
+            assertTrue(segment.offer(filledContainer(4096, ii), false));
+        }
+        segment.close();
+        assertTrue(m_file.length() < PBDSegment.CHUNK_SIZE);
+
+        segment = new PBDMappedSegment(0L, m_file);
+        pollEntries(segment, 20);
+        segment.close();
+    }
+
+    @Test
+    public void testParseAndTruncate() throws Exception {
+        PBDMappedSegment segment = new PBDMappedSegment(0L, m_file);
+        segment.openForWrite(true);
+        // Compressed entries would need the native unsafe container factory
+        for (int ii = 0; ii < 10; ii++) {
+            assertTrue(segment.offer(filledContainer(4096, ii), false));
+        }
+        segment.close();
+
+        final int truncated = segment.parseAndTruncate(new BinaryDequeTruncator() {
+            @Override
+            public TruncatorResponse parse(BBContainer bbc) {
+                if (bbc.b().getLong(0) == 7) {
+                    ByteBuffer replacement = bbc.b().duplicate();
+                    replacement.limit(1024);
+                    return new PersistentBinaryDeque.ByteBufferTruncatorResponse(replacement.slice());
+                }
+                return null;
+            }
+        });
+        assertEquals(2, truncated);
+
+        segment = new PBDMappedSegment(0L, m_file);
+        PBDSegmentReader reader = segment.openForRead(CURSOR_ID);
+        for (int ii = 0; ii < 7; ii++) {
+            BBContainer cont = reader.poll(DIRECT_FACTORY);
+            assertFilled(cont.b(), 4096, ii);
+            cont.discard();
+        }
+        BBContainer cont = reader.poll(DIRECT_FACTORY);
+        assertFilled(cont.b(), 1024, 7);
+        cont.discard();
+        assertNull(reader.poll(DIRECT_FACTORY));
+        segment.close();
+    }
+
+    @Test
+    public void testReadsEntriesCompressedWithAnyCodec() throws Exception {
+        // Hand write a segment holding one entry per codec
+        final ByteBuffer file = ByteBuffer.allocate(1024 * 1024);
+        final int count = CompressionCodecs.codecs().size();
+        file.putInt(count);
+        file.putInt(count * 4096);
+        for (CompressionStrategy codec : CompressionCodecs.codecs()) {
+            BBContainer entry = filledContainer(4096, codec.id());
+            ByteBuffer compressed = ByteBuffer.allocateDirect(codec.maxCompressedLength(4096));
+            final int length = codec.compressBuffer(entry.b(), compressed);
+            entry.discard();
+            file.putInt(length);
+            file.putInt(PBDSegment.compressedFlags(codec));
+            file.put(compressed);
+        }
+        file.flip();
+        try (RandomAccessFile ras = new RandomAccessFile(m_file, "rw")) {
+            ras.getChannel().write(file);
+        }
+
+        for (PBDSegment segment : new PBDSegment[] { new PBDMappedSegment(0L, m_file),
+                                                     new PBDRegularSegment(0L, m_file) }) {
+            assertEquals(count, segment.getNumEntries());
+            PBDSegmentReader reader = segment.openForRead(CURSOR_ID);
+            for (CompressionStrategy codec : CompressionCodecs.codecs()) {
+                BBContainer cont = reader.poll(DIRECT_FACTORY);
+                assertFilled(cont.b(), 4096, codec.id());
+                cont.discard();
+            }
+            segment.close();
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.voltdb.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.google_voltpatches.common.cache.Weigher;
+
+public class TestTinyLfuCache {
+
+    private static final Weigher<Integer, String> LENGTH = new Weigher<Integer, String>() {
+        @Override
+        public int weigh(Integer key, String value) {
+            return value.length();
+        }
+    };
+
+    @Test
+    public void testBoundedByEntries() {
+        TinyLfuCache<Integer, String> cache = new TinyLfuCache<Integer, String>(4, 200, Long.MAX_VALUE / 2, LENGTH);
+        for (int i = 0; i < 10000; i++) {
+            cache.get(i);
+            cache.put(i, "v" + i);
+        }
+        assertTrue(cache.size() <= 200 + 4);
+        assertEquals(10000, cache.insertionCount());
+        assertEquals(10000, cache.missCount());
+        assertEquals(0, cache.hitCount());
+        assertTrue(cache.evictionCount() + cache.rejectionCount() >= 10000 - cache.size());
+    }
+
+    @Test
+    public void testFrequentEntriesSurviveScan() {
+        TinyLfuCache<Integer, String> cache = new TinyLfuCache<Integer, String>(1, 100, 1 << 20, LENGTH);
+        for (int i = 0; i < 50; i++) {
+            cache.put(i, "hot" + i);
+        }
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < 50; i++) {
+                assertNotNull(cache.get(i));
+            }
+        }
+        // A scan of one-off keys, several times the size of the cache
+        for (int i = 1000; i < 2000; i++) {
+            cache.get(i);
+            cache.put(i, "cold" + i);
+        }
+        for (int i = 0; i < 50; i++) {
+            assertNotNull(cache.peek(i));
+        }
+        assertTrue(cache.rejectionCount() > 0);
+        assertTrue(cache.size() <= 100);
+    }
+
+    @Test
+    public void testBoundedByWeight() {
+        TinyLfuCache<Integer, String> cache = new TinyLfuCache<Integer, String>(1, 1000, 100, LENGTH);
+        // Heavier than the whole cache, never cached
+        assertNull(cache.put(1, new String(new char[101])));
+        assertNull(cache.peek(1));
+        assertEquals(1, cache.rejectionCount());
+
+        for (int i = 0; i < 100; i++) {
+            cache.get(i);
+            cache.put(i, "0123456789");
+        }
+        assertTrue(cache.weight() <= 100);
+        assertTrue(cache.size() <= 10);
+    }
+
+    @Test
+    public void testRejectedCandidateEvictsNothing() {
+        TinyLfuCache<Integer, String> cache = new TinyLfuCache<Integer, String>(1, 1000, 100, LENGTH);
+        cache.get(1);
+        for (int i = 0; i < 5; i++) {
+            cache.get(2);
+        }
+        cache.get(3);
+        cache.get(3);
+        cache.put(1, new String(new char[40]));
+        cache.put(2, new String(new char[40]));
+        assertEquals(80, cache.weight());
+
+        // Used more often than 1 but not 2, and only fits if both go
+        cache.put(3, new String(new char[70]));
+        assertNull(cache.peek(3));
+        assertNotNull(cache.peek(1));
+        assertNotNull(cache.peek(2));
+        assertEquals(80, cache.weight());
+        assertEquals(0, cache.evictionCount());
+        assertEquals(1, cache.rejectionCount());
+    }
+
+    @Test
+    public void testPutIfAbsentAndRemove() {
+        TinyLfuCache<Integer, String> cache = new TinyLfuCache<Integer, String>(2, 100, 1000, LENGTH);
+        assertNull(cache.putIfAbsent(1, "a"));
+        assertEquals("a", cache.putIfAbsent(1, "b"));
+        assertEquals("a", cache.get(1));
+        assertEquals("a", cache.put(1, "cc"));
+        assertEquals("cc", cache.get(1));
+        assertEquals(2, cache.weight());
+        assertEquals(2, cache.hitCount());
+        assertEquals("cc", cache.remove(1));
+        assertNull(cache.get(1));
+        assertEquals(1, cache.missCount());
+        assertEquals(0, cache.weight());
+
+        cache.put(2, "x");
+        cache.put(3, "y");
+        cache.invalidateAll();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.weight());
+    }
+}
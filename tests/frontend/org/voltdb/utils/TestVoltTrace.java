@@ -39,6 +39,8 @@ import java.util.zip.GZIPInputStream;
 
 import com.google_voltpatches.common.collect.Sets;
 import org.codehaus.jackson.map.ObjectMapper;
+import org.voltcore.utils.CoreUtils;
+import org.voltdb.iv2.TxnEgo;
 
 import org.junit.After;
 import org.junit.Before;
@@ -150,6 +152,99 @@ public class TestVoltTrace {
         verifyFileContents(sender.getSentList(), VoltTrace.closeAllAndShutdown(m_tempDir.getAbsolutePath(), 0));
     }
 
+    @Test
+    public void testRecorderMatchesSuppliedEvents() throws IOException {
+        assertNull(VoltTrace.recorder(VoltTrace.Category.SPI));
+        VoltTrace.enableCategories(VoltTrace.Category.SPI);
+        assertNull(VoltTrace.recorder(VoltTrace.Category.CI));
+
+        final long hsId = CoreUtils.getHSIdFromHostAndSite(1, 2);
+        final long destHsId = CoreUtils.getHSIdFromHostAndSite(3, 4);
+        final long txnId = TxnEgo.makeZero(5).makeNext().getTxnId();
+        final TraceRecorder recorder = VoltTrace.recorder(VoltTrace.Category.SPI);
+        assertNotNull(recorder);
+        assertSame(recorder, VoltTrace.recorder(VoltTrace.Category.SPI));
+        recorder.begin(VoltTrace.Category.SPI, VoltTrace.TraceEventType.ASYNC_BEGIN, VoltTrace.intern("initsp"),
+                       VoltTrace.IdFormat.HSID_PAIR_TXNID, hsId, destHsId, txnId, 42)
+                .arg(VoltTrace.argKey("ciHandle", VoltTrace.ArgType.LONG), 42)
+                .arg(VoltTrace.argKey("txnId", VoltTrace.ArgType.TXNID), txnId)
+                .arg(VoltTrace.argKey("read", VoltTrace.ArgType.BOOLEAN), true)
+                .arg(VoltTrace.argKey("name", VoltTrace.ArgType.NAME), VoltTrace.intern("Insert"))
+                .arg(VoltTrace.argKey("hsId", VoltTrace.ArgType.HSID), hsId)
+                .publish();
+        recorder.begin(VoltTrace.Category.SPI, VoltTrace.TraceEventType.ASYNC_END, VoltTrace.intern("durability"),
+                       VoltTrace.IdFormat.HSID_TXNID, hsId, txnId, 0, 0)
+                .publish();
+
+        final List<VoltTrace.TraceEvent> expected = new ArrayList<>();
+        expected.add(VoltTrace.beginAsync("initsp", MiscUtils.hsIdPairTxnIdToString(hsId, destHsId, txnId, 42),
+                                          "ciHandle", 42,
+                                          "txnId", TxnEgo.txnIdToString(txnId),
+                                          "read", true,
+                                          "name", "Insert",
+                                          "hsId", CoreUtils.hsIdToString(hsId)));
+        expected.add(VoltTrace.endAsync("durability", MiscUtils.hsIdTxnIdToString(hsId, txnId)));
+        long nanos = 0;
+        for (VoltTrace.TraceEvent event : expected) {
+            event.setCategory(VoltTrace.Category.SPI);
+            event.setTid(Thread.currentThread().getId());
+            event.setNanos(nanos++);
+        }
+
+        final List<VoltTrace.TraceEvent> read = readFile(VoltTrace.closeAllAndShutdown(m_tempDir.getAbsolutePath(), 0));
+        // The recorder names its process and thread ahead of its events
+        assertEquals(expected.size() + 2, read.size());
+        assertEquals("process_name", read.get(0).getName());
+        assertEquals("thread_name", read.get(1).getName());
+        assertEquals(Thread.currentThread().getName(), read.get(1).getArgs().get("name"));
+        for (int i = 0; i < expected.size(); i++) {
+            compare(expected.get(i), read.get(i + 2));
+        }
+    }
+
+    @Test
+    public void testRecorderWraparound() {
+        final TraceRecorder recorder = new TraceRecorder(Thread.currentThread(), 16);
+        final int name = VoltTrace.intern("wrap");
+        final int key = VoltTrace.argKey("value", VoltTrace.ArgType.LONG);
+        for (int i = 0; i < 40; i++) {
+            recorder.begin(VoltTrace.Category.SPSITE, VoltTrace.TraceEventType.INSTANT, name,
+                           VoltTrace.IdFormat.LONG, i, 0, 0, 0)
+                    .arg(key, i)
+                    .publish();
+        }
+
+        // Only the newest events survive, less the oldest slot which the owner writes next
+        assertTrue(recorder.hasUnconsumed());
+        List<VoltTrace.TraceEvent> events = drainEvents(recorder.drain());
+        assertEquals(15, events.size());
+        for (int i = 0; i < events.size(); i++) {
+            assertEquals(Integer.toString(25 + i), events.get(i).getId());
+            assertEquals(Integer.toString(25 + i), events.get(i).getArgs().get("value"));
+            assertEquals("SPSITE", events.get(i).getCategory());
+        }
+
+        // Drained events are not dumped again
+        assertFalse(recorder.hasUnconsumed());
+        assertNull(recorder.drain());
+        recorder.begin(VoltTrace.Category.SPSITE, VoltTrace.TraceEventType.INSTANT, name).publish();
+        events = drainEvents(recorder.drain());
+        assertEquals(1, events.size());
+        assertEquals("wrap", events.get(0).getName());
+        assertNull(events.get(0).getId());
+    }
+
+    private static List<VoltTrace.TraceEvent> drainEvents(VoltTrace.TraceEventBatch batch) {
+        final List<VoltTrace.TraceEvent> events = new ArrayList<>();
+        VoltTrace.TraceEvent event;
+        while ((event = batch.nextEvent()) != null) {
+            if (event.getType() != VoltTrace.TraceEventType.METADATA) {
+                events.add(event);
+            }
+        }
+        return events;
+    }
+
     private ArrayList<VoltTrace.TraceEventType> m_allEventTypes = new ArrayList<>(EnumSet.allOf(VoltTrace.TraceEventType.class));
     private Random m_random = new Random();
     private VoltTrace.TraceEvent randomEvent() {
@@ -243,6 +338,21 @@ public class TestVoltTrace {
 
     private void verifyFileContents(List<VoltTrace.TraceEvent> expectedList, String outfile)
         throws IOException {
+        List<VoltTrace.TraceEvent> readEvents = readFile(outfile);
+        assertEquals(expectedList.size(), readEvents.size());
+
+        readEvents.sort(Comparator.comparingDouble(VoltTrace.TraceEvent::getTs));
+        expectedList.sort(Comparator.comparingDouble(VoltTrace.TraceEvent::getNanos));
+        System.out.println("Expected");
+        expectedList.forEach(System.out::println);
+        System.out.println("Read");
+        readEvents.forEach(System.out::println);
+        for (int i = 0; i < expectedList.size(); i++) {
+            compare(expectedList.get(i), readEvents.get(i));
+        }
+    }
+
+    private List<VoltTrace.TraceEvent> readFile(String outfile) throws IOException {
         List<VoltTrace.TraceEvent> readEvents = new ArrayList<>();
         BufferedReader reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(new FileInputStream(outfile))));
         String line;
@@ -258,17 +368,7 @@ public class TestVoltTrace {
             readEvents.add(m_mapper.readValue(line, VoltTrace.TraceEvent.class));
         }
         reader.close();
-        assertEquals(expectedList.size(), readEvents.size());
-
-        readEvents.sort(Comparator.comparingDouble(VoltTrace.TraceEvent::getTs));
-        expectedList.sort(Comparator.comparingDouble(VoltTrace.TraceEvent::getNanos));
-        System.out.println("Expected");
-        expectedList.forEach(System.out::println);
-        System.out.println("Read");
-        readEvents.forEach(System.out::println);
-        for (int i = 0; i < expectedList.size(); i++) {
-            compare(expectedList.get(i), readEvents.get(i));
-        }
+        return readEvents;
     }
 
     private void compare(VoltTrace.TraceEvent expected, VoltTrace.TraceEvent actual) {
@@ -0,0 +1,105 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.jmh;
+
+import java.io.IOException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.voltcore.network.ReverseDNSCache;
+import org.voltdb.client.Client;
+import org.voltdb.client.ClientConfig;
+import org.voltdb.client.ClientFactory;
+import org.voltdb.client.ClientResponse;
+import org.voltdb.client.NoConnectionsException;
+import org.voltdb.client.ProcedureCallback;
+
+/**
+ * Calls a procedure through the client library against a local stub server,
+ * synchronously to measure the round trip and asynchronously with a bounded
+ * number of outstanding calls to measure throughput.
+ */
+@State(Scope.Benchmark)
+public class ClientCallProcedureBenchmark {
+
+    private static final int MAX_OUTSTANDING = 256;
+
+    private StubVoltServer m_server;
+    private Client m_client;
+    private final Semaphore m_outstanding = new Semaphore(MAX_OUTSTANDING);
+    private final ProcedureCallback m_callback = new ProcedureCallback() {
+        @Override
+        public void clientCallback(ClientResponse clientResponse) {
+            m_outstanding.release();
+        }
+    };
+
+    @Setup
+    public void setup() throws IOException {
+        ReverseDNSCache.start();
+        m_server = new StubVoltServer();
+        m_server.start();
+        m_client = ClientFactory.createClient(new ClientConfig());
+        m_client.createConnection("localhost", m_server.getPort());
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        m_client.close();
+        m_server.shutdown();
+    }
+
+    @TearDown(Level.Iteration)
+    public void drain() throws NoConnectionsException, InterruptedException {
+        m_client.drain();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public ClientResponse syncCall() throws Exception {
+        return m_client.callProcedure("Stub", 1L);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public boolean asyncCall() throws Exception {
+        m_outstanding.acquire();
+        if (!m_client.callProcedure(m_callback, "Stub", 1L)) {
+            m_outstanding.release();
+            return false;
+        }
+        return true;
+    }
+}
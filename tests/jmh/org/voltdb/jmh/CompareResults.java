@@ -0,0 +1,135 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.jmh;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.json_voltpatches.JSONArray;
+import org.json_voltpatches.JSONException;
+import org.json_voltpatches.JSONObject;
+
+/**
+ * Compares two JMH result files written with -rf json, for instance the results
+ * of the previous release and of the current build, and exits with status 1 if
+ * any benchmark present in both got worse by more than the threshold, beyond
+ * the error bounds JMH reported for the two scores.
+ *
+ * Usage: CompareResults baseline.json current.json [threshold percent, default 10]
+ */
+public class CompareResults {
+
+    private static class Score {
+        final String mode;
+        final double score;
+        final double error;
+        final String unit;
+
+        Score(JSONObject result) throws JSONException {
+            mode = result.getString("mode");
+            final JSONObject metric = result.getJSONObject("primaryMetric");
+            score = metric.getDouble("score");
+            final double error = metric.optDouble("scoreError", 0.0);
+            // JMH reports NaN when there were too few iterations to compute it
+            this.error = Double.isNaN(error) ? 0.0 : error;
+            unit = metric.getString("scoreUnit");
+        }
+
+        // Throughput is better when higher, every other mode measures time
+        boolean higherIsBetter() {
+            return mode.equals("thrpt");
+        }
+    }
+
+    private static Map<String, Score> load(String path) throws Exception {
+        final String json = new String(Files.readAllBytes(new File(path).toPath()), StandardCharsets.UTF_8);
+        final JSONArray results = new JSONArray(json);
+        final Map<String, Score> scores = new TreeMap<>();
+        for (int i = 0; i < results.length(); i++) {
+            final JSONObject result = results.getJSONObject(i);
+            final StringBuilder key = new StringBuilder(result.getString("benchmark"));
+            final JSONObject params = result.optJSONObject("params");
+            if (params != null) {
+                final Map<String, String> sorted = new TreeMap<>();
+                final Iterator<String> names = params.keys();
+                while (names.hasNext()) {
+                    final String name = names.next();
+                    sorted.put(name, params.getString(name));
+                }
+                key.append(sorted);
+            }
+            key.append(" (").append(result.getString("mode")).append(")");
+            scores.put(key.toString(), new Score(result));
+        }
+        return scores;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2 || args.length > 3) {
+            System.err.println("Usage: CompareResults baseline.json current.json [threshold percent]");
+            System.exit(2);
+        }
+        final double threshold = args.length == 3 ? Double.parseDouble(args[2]) / 100.0 : 0.10;
+        final Map<String, Score> baseline = load(args[0]);
+        final Map<String, Score> current = load(args[1]);
+
+        int regressions = 0;
+        for (Map.Entry<String, Score> e : current.entrySet()) {
+            final Score now = e.getValue();
+            final Score then = baseline.get(e.getKey());
+            if (then == null) {
+                System.out.printf("NEW        %s: %.3f %s%n", e.getKey(), now.score, now.unit);
+                continue;
+            }
+            if (!then.unit.equals(now.unit)) {
+                System.out.printf("SKIPPED    %s: unit changed from %s to %s%n", e.getKey(), then.unit, now.unit);
+                continue;
+            }
+            final double change = then.score == 0.0 ? 0.0 : (now.score - then.score) / then.score;
+            final boolean regressed;
+            if (now.higherIsBetter()) {
+                regressed = (now.score + now.error) < (then.score - then.error) * (1.0 - threshold);
+            } else {
+                regressed = (now.score - now.error) > (then.score + then.error) * (1.0 + threshold);
+            }
+            if (regressed) {
+                regressions++;
+            }
+            System.out.printf("%-10s %s: %.3f -> %.3f %s (%+.1f%%)%n",
+                    regressed ? "REGRESSED" : "OK", e.getKey(), then.score, now.score, now.unit, change * 100.0);
+        }
+        for (String key : baseline.keySet()) {
+            if (!current.containsKey(key)) {
+                System.out.printf("MISSING    %s%n", key);
+            }
+        }
+        System.out.printf("%d of %d benchmarks regressed by more than %.0f%%%n",
+                regressions, current.size(), threshold * 100.0);
+        System.exit(regressions == 0 ? 0 : 1);
+    }
+}
@@ -0,0 +1,93 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.jmh;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+import org.voltdb.messaging.FastDeserializer;
+import org.voltdb.messaging.FastSerializer;
+
+/**
+ * Writes and reads back a record of ints, longs and strings with the
+ * serializers used for catalog, invocation and message encoding.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class FastSerializerBenchmark {
+
+    private static final int FIELDS = 16;
+
+    private FastSerializer m_serializer;
+    private ByteBuffer m_serialized;
+
+    @Setup
+    public void setup() throws IOException {
+        m_serializer = new FastSerializer();
+        final FastSerializer source = new FastSerializer();
+        writeRecord(source);
+        m_serialized = source.getBuffer();
+    }
+
+    @TearDown
+    public void tearDown() {
+        m_serializer.discard();
+    }
+
+    private static void writeRecord(FastSerializer fs) throws IOException {
+        for (int i = 0; i < FIELDS; i++) {
+            fs.writeInt(i);
+            fs.writeLong(i * 1000003L);
+            fs.writeString("field");
+        }
+    }
+
+    @Benchmark
+    public int serialize() throws IOException {
+        m_serializer.clear();
+        writeRecord(m_serializer);
+        return m_serializer.size();
+    }
+
+    @Benchmark
+    public void deserialize(Blackhole bh) throws IOException {
+        final FastDeserializer fds = new FastDeserializer(m_serialized.duplicate());
+        for (int i = 0; i < FIELDS; i++) {
+            bh.consume(fds.readInt());
+            bh.consume(fds.readLong());
+            bh.consume(fds.readString());
+        }
+    }
+}
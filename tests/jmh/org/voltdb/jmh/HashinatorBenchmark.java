@@ -0,0 +1,90 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.voltdb.ElasticHashinator;
+import org.voltdb.VoltType;
+
+/**
+ * Routes partitioning parameters of the common key types to partitions, as
+ * the client interface does for every single partition invocation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class HashinatorBenchmark {
+
+    private static final int KEYS = 1024;
+
+    @Param({"8", "64"})
+    public int partitions;
+
+    private ElasticHashinator m_hashinator;
+    private final Long[] m_longKeys = new Long[KEYS];
+    private final String[] m_stringKeys = new String[KEYS];
+    private final byte[][] m_binaryKeys = new byte[KEYS][];
+    private int m_next;
+
+    @Setup
+    public void setup() {
+        m_hashinator = new ElasticHashinator(
+                ElasticHashinator.getConfigureBytes(partitions, ElasticHashinator.DEFAULT_TOTAL_TOKENS),
+                false);
+        for (int i = 0; i < KEYS; i++) {
+            m_longKeys[i] = i * 7919L;
+            m_stringKeys[i] = "customer-" + i;
+            m_binaryKeys[i] = m_stringKeys[i].getBytes();
+        }
+    }
+
+    private int nextKey() {
+        m_next = (m_next + 1) & (KEYS - 1);
+        return m_next;
+    }
+
+    @Benchmark
+    public int bigintKey() {
+        return m_hashinator.getHashedPartitionForParameter(VoltType.BIGINT, m_longKeys[nextKey()]);
+    }
+
+    @Benchmark
+    public int varcharKey() {
+        return m_hashinator.getHashedPartitionForParameter(VoltType.STRING, m_stringKeys[nextKey()]);
+    }
+
+    @Benchmark
+    public int varbinaryKey() {
+        return m_hashinator.getHashedPartitionForParameter(VoltType.VARBINARY, m_binaryKeys[nextKey()]);
+    }
+}
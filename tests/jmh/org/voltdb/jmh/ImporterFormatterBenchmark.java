@@ -0,0 +1,111 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.jmh;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.voltdb.ParameterConverter;
+import org.voltdb.VoltType;
+import org.voltdb.importer.formatter.FormatException;
+import org.voltdb.importer.formatter.builtin.VoltCSVFormatter;
+import org.voltdb.importer.formatter.builtin.VoltJSONFormatter;
+import org.voltdb.importer.formatter.builtin.VoltTypedCSVFormatter;
+
+/**
+ * Turns importer records into procedure parameters of their declared types, with the
+ * string CSV formatter followed by the server side conversion an invocation goes
+ * through, and with the typed CSV and JSON formatters that parse the record bytes directly.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ImporterFormatterBenchmark {
+
+    private static final int RECORDS = 1024;
+    private static final VoltType[] TYPES = {
+            VoltType.BIGINT, VoltType.INTEGER, VoltType.STRING, VoltType.FLOAT, VoltType.TIMESTAMP, VoltType.STRING };
+
+    private final ByteBuffer[] m_csvRecords = new ByteBuffer[RECORDS];
+    private final ByteBuffer[] m_jsonRecords = new ByteBuffer[RECORDS];
+    private final Class<?>[] m_paramClasses = new Class<?>[TYPES.length];
+    private VoltCSVFormatter m_csvFormatter;
+    private VoltTypedCSVFormatter m_typedCsvFormatter;
+    private VoltJSONFormatter m_jsonFormatter;
+    private int m_next;
+
+    @Setup
+    public void setup() {
+        for (int i = 0; i < RECORDS; i++) {
+            long id = i * 7919L;
+            String csv = id + "," + (i % 1000) + ",customer-" + i + "," + (i * 0.25) + ","
+                    + (1480000000000000L + i) + ",\"Main St, apt " + i + "\"";
+            String json = "[" + id + "," + (i % 1000) + ",\"customer-" + i + "\"," + (i * 0.25) + ","
+                    + (1480000000000000L + i) + ",\"Main St, apt " + i + "\"]";
+            m_csvRecords[i] = ByteBuffer.wrap(csv.getBytes(StandardCharsets.UTF_8));
+            m_jsonRecords[i] = ByteBuffer.wrap(json.getBytes(StandardCharsets.UTF_8));
+        }
+        for (int i = 0; i < TYPES.length; i++) {
+            m_paramClasses[i] = TYPES[i].classFromType();
+        }
+        m_csvFormatter = new VoltCSVFormatter("csv", new Properties());
+        m_typedCsvFormatter = new VoltTypedCSVFormatter("csv", new Properties());
+        m_typedCsvFormatter.setParameterTypes(TYPES);
+        m_jsonFormatter = new VoltJSONFormatter("json", new Properties());
+        m_jsonFormatter.setParameterTypes(TYPES);
+    }
+
+    private int nextRecord() {
+        m_next = (m_next + 1) & (RECORDS - 1);
+        return m_next;
+    }
+
+    @Benchmark
+    public Object[] csvThenConvert() throws FormatException {
+        Object[] params = m_csvFormatter.transform(m_csvRecords[nextRecord()].duplicate());
+        for (int i = 0; i < params.length; i++) {
+            params[i] = ParameterConverter.tryToMakeCompatible(m_paramClasses[i], params[i]);
+        }
+        return params;
+    }
+
+    @Benchmark
+    public Object[] typedCsv() throws FormatException {
+        return m_typedCsvFormatter.transform(m_csvRecords[nextRecord()].duplicate());
+    }
+
+    @Benchmark
+    public Object[] typedJson() throws FormatException {
+        return m_jsonFormatter.transform(m_jsonRecords[nextRecord()].duplicate());
+    }
+}
@@ -0,0 +1,120 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.jmh;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.voltcore.logging.VoltLogger;
+import org.voltcore.utils.DBBPool;
+import org.voltcore.utils.DBBPool.BBContainer;
+import org.voltdb.utils.BinaryDeque.BinaryDequeReader;
+import org.voltdb.utils.BinaryDeque.OutputContainerFactory;
+import org.voltdb.utils.PersistentBinaryDeque;
+
+/**
+ * Offers entries to a persistent binary deque and polls them back, as export
+ * and DR buffers move through it. Entries are heap buffers so they are written
+ * uncompressed. Run with -DPBD_MMAP_SEGMENTS=true (through the jvm arguments)
+ * to measure the memory mapped segments instead.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PersistentBinaryDequeBenchmark {
+
+    private static final int BATCH = 100;
+    private static final String CURSOR = "jmh";
+
+    private static final OutputContainerFactory HEAP_FACTORY = new OutputContainerFactory() {
+        @Override
+        public BBContainer getContainer(int minimumSize) {
+            return DBBPool.wrapBB(ByteBuffer.allocate(minimumSize));
+        }
+    };
+
+    @Param({"64", "4096"})
+    public int entryBytes;
+
+    private File m_dir;
+    private PersistentBinaryDeque m_pbd;
+    private BinaryDequeReader m_reader;
+    private byte[] m_entry;
+
+    @Setup
+    public void setup() throws IOException {
+        m_dir = Files.createTempDirectory("pbdbench").toFile();
+        m_pbd = new PersistentBinaryDeque("bench", m_dir, new VoltLogger("HOST"));
+        m_reader = m_pbd.openForRead(CURSOR);
+        m_entry = new byte[entryBytes];
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        m_pbd.closeAndDelete();
+        for (File f : m_dir.listFiles()) {
+            f.delete();
+        }
+        m_dir.delete();
+    }
+
+    private void pollOne() throws IOException {
+        final BBContainer cont = m_reader.poll(HEAP_FACTORY);
+        if (cont == null) {
+            throw new IOException("Deque unexpectedly empty");
+        }
+        cont.discard();
+    }
+
+    @Benchmark
+    public void offerPoll() throws IOException {
+        m_pbd.offer(DBBPool.wrapBB(ByteBuffer.wrap(m_entry)));
+        pollOne();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void offerSyncPollBatch() throws IOException {
+        for (int i = 0; i < BATCH; i++) {
+            m_pbd.offer(DBBPool.wrapBB(ByteBuffer.wrap(m_entry)));
+        }
+        m_pbd.sync();
+        for (int i = 0; i < BATCH; i++) {
+            pollOne();
+        }
+    }
+}
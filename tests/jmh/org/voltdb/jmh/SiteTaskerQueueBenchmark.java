@@ -0,0 +1,107 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.jmh;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.voltdb.SiteProcedureConnection;
+import org.voltdb.StarvationTracker;
+import org.voltdb.iv2.SiteTasker;
+import org.voltdb.iv2.SiteTaskerQueue;
+import org.voltdb.rejoin.TaskLog;
+
+/**
+ * Hands tasks to a site through its queue, including the queue depth and
+ * starvation tracking. The uncontended case offers and takes on one thread.
+ * The contended case has initiator threads offering while the site thread polls,
+ * polling rather than taking so the site never blocks once the offers stop.
+ * Offers are skipped while MAX_OUTSTANDING tasks are queued so a slower site
+ * does not let the queue grow without bound.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SiteTaskerQueueBenchmark {
+
+    private static final SiteTasker NOOP = new SiteTasker() {
+        @Override
+        public void run(SiteProcedureConnection siteConnection) {}
+
+        @Override
+        public void runForRejoin(SiteProcedureConnection siteConnection, TaskLog rejoinTaskLog) {}
+    };
+
+    private static final int MAX_OUTSTANDING = 1024;
+
+    @State(Scope.Group)
+    public static class QueueState {
+        SiteTaskerQueue m_queue;
+        final AtomicInteger m_outstanding = new AtomicInteger();
+
+        @Setup
+        public void setup() {
+            m_queue = new SiteTaskerQueue(0);
+            m_queue.setStarvationTracker(new StarvationTracker(0));
+            m_queue.setupQueueDepthTracker(0);
+        }
+    }
+
+    @Benchmark
+    @Group("uncontended")
+    public SiteTasker offerTake(QueueState state) throws InterruptedException {
+        state.m_queue.offer(NOOP);
+        return state.m_queue.take();
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(3)
+    public boolean offer(QueueState state) {
+        if (state.m_outstanding.get() >= MAX_OUTSTANDING) {
+            return false;
+        }
+        state.m_outstanding.incrementAndGet();
+        return state.m_queue.offer(NOOP);
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(1)
+    public SiteTasker poll(QueueState state) {
+        final SiteTasker task = state.m_queue.poll();
+        if (task != null) {
+            state.m_outstanding.decrementAndGet();
+        }
+        return task;
+    }
+}
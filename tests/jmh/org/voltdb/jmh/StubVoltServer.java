@@ -0,0 +1,204 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.jmh;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.voltcore.network.Connection;
+import org.voltcore.network.QueueMonitor;
+import org.voltcore.network.VoltNetworkPool;
+import org.voltcore.network.VoltProtocolHandler;
+import org.voltdb.ClientResponseImpl;
+import org.voltdb.StoredProcedureInvocation;
+import org.voltdb.VoltTable;
+import org.voltdb.VoltType;
+import org.voltdb.client.ClientAuthScheme;
+
+/**
+ * A server that accepts any login and answers every invocation with a one row
+ * result right away, so client benchmarks measure the client library and the
+ * loopback network only. System procedures get an empty result.
+ */
+class StubVoltServer extends Thread {
+
+    private final ServerSocketChannel m_socket;
+    private final VoltNetworkPool m_network;
+    private final List<SocketChannel> m_channels = new ArrayList<>();
+    private volatile boolean m_shutdown = false;
+
+    StubVoltServer() throws IOException {
+        super("Stub VoltDB server");
+        setDaemon(true);
+        m_network = new VoltNetworkPool();
+        m_network.start();
+        m_socket = ServerSocketChannel.open();
+        m_socket.socket().bind(new InetSocketAddress("localhost", 0));
+    }
+
+    int getPort() {
+        return m_socket.socket().getLocalPort();
+    }
+
+    private static ByteBuffer read(SocketChannel client, int length) throws IOException {
+        final ByteBuffer buf = ByteBuffer.allocate(length);
+        while (buf.hasRemaining()) {
+            if (client.read(buf) < 0) {
+                throw new IOException("Client hung up during login");
+            }
+        }
+        buf.flip();
+        return buf;
+    }
+
+    private void login(SocketChannel client) throws IOException {
+        read(client, 4);  // length
+        read(client, 1);  // version
+        final ClientAuthScheme scheme = ClientAuthScheme.get(read(client, 1).get());
+        read(client, read(client, 4).getInt());  // service
+        read(client, read(client, 4).getInt());  // username
+        read(client, ClientAuthScheme.getDigestLength(scheme));
+
+        final ByteBuffer responseBuffer = ByteBuffer.allocate(34);
+        responseBuffer.putInt(30);
+        responseBuffer.put((byte)0);//version
+        responseBuffer.put((byte)0);//success response
+        responseBuffer.putInt(0);//hostId
+        responseBuffer.putLong(0);//connectionId
+        responseBuffer.putLong(0);//instanceId
+        responseBuffer.putInt(0);//instanceId pt 2
+        responseBuffer.putInt(0);
+        responseBuffer.flip();
+        while (responseBuffer.hasRemaining()) {
+            client.write(responseBuffer);
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (!m_shutdown) {
+                final SocketChannel client = m_socket.accept();
+                client.configureBlocking(true);
+                login(client);
+                client.configureBlocking(false);
+                client.socket().setTcpNoDelay(true);
+                synchronized (m_channels) {
+                    m_channels.add(client);
+                }
+                m_network.registerChannel(client, new StubInputHandler(), null, null);
+            }
+        } catch (ClosedChannelException e) {
+            // shut down
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    void shutdown() throws InterruptedException {
+        m_shutdown = true;
+        try {
+            m_socket.close();
+        } catch (IOException ignored) {
+        }
+        join();
+        m_network.shutdown();
+        synchronized (m_channels) {
+            for (SocketChannel sc : m_channels) {
+                try {
+                    sc.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    private static class StubInputHandler extends VoltProtocolHandler {
+
+        @Override
+        public int getMaxRead() {
+            return Integer.MAX_VALUE;
+        }
+
+        @Override
+        public void handleMessage(ByteBuffer message, Connection c) throws IOException {
+            final StoredProcedureInvocation spi = new StoredProcedureInvocation();
+            spi.initFromBuffer(message);
+
+            VoltTable results[];
+            if (spi.getProcName().startsWith("@")) {
+                results = new VoltTable[0];
+            } else {
+                results = new VoltTable[] { new VoltTable(new VoltTable.ColumnInfo("C", VoltType.BIGINT)) };
+                results[0].addRow(1);
+            }
+            final ClientResponseImpl response =
+                    new ClientResponseImpl(ClientResponseImpl.SUCCESS, results, null, spi.getClientHandle());
+            final ByteBuffer buf = ByteBuffer.allocate(4 + response.getSerializedSize());
+            buf.putInt(buf.capacity() - 4);
+            response.flattenToBuffer(buf);
+            buf.clear();
+            c.writeStream().enqueue(buf);
+        }
+
+        @Override
+        public void starting(Connection c) {}
+
+        @Override
+        public void started(Connection c) {}
+
+        @Override
+        public void stopping(Connection c) {}
+
+        @Override
+        public void stopped(Connection c) {}
+
+        @Override
+        public Runnable onBackPressure() {
+            return new Runnable() {
+                @Override
+                public void run() {}
+            };
+        }
+
+        @Override
+        public Runnable offBackPressure() {
+            return new Runnable() {
+                @Override
+                public void run() {}
+            };
+        }
+
+        @Override
+        public QueueMonitor writestreamMonitor() {
+            return null;
+        }
+    }
+}
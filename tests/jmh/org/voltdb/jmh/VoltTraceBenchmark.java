@@ -0,0 +1,129 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.jmh;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.voltcore.utils.CoreUtils;
+import org.voltdb.iv2.TxnEgo;
+import org.voltdb.utils.MiscUtils;
+import org.voltdb.utils.TraceRecorder;
+import org.voltdb.utils.VoltTrace;
+
+/**
+ * Cost of tracing the begin of a single partition transaction on the SPI, with the
+ * category disabled and enabled, through a supplier queued in an event batch and
+ * through the calling thread's binary recorder. Neither path writes a file, so this
+ * is the overhead paid by the traced thread.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class VoltTraceBenchmark {
+
+    private static final int TXNS = 1024;
+    private static final int INITSP = VoltTrace.intern("initsp");
+    private static final int CI_HANDLE = VoltTrace.argKey("ciHandle", VoltTrace.ArgType.LONG);
+    private static final int TXN_ID = VoltTrace.argKey("txnId", VoltTrace.ArgType.TXNID);
+    private static final int PARTITION = VoltTrace.argKey("partition", VoltTrace.ArgType.LONG);
+    private static final int READ = VoltTrace.argKey("read", VoltTrace.ArgType.BOOLEAN);
+    private static final int PROC_NAME = VoltTrace.argKey("name", VoltTrace.ArgType.NAME);
+    private static final int HSID = VoltTrace.argKey("hsId", VoltTrace.ArgType.HSID);
+
+    @Param({"false", "true"})
+    public boolean enabled;
+
+    private final long m_hsId = CoreUtils.getHSIdFromHostAndSite(0, 1);
+    private final String m_procName = "Insert";
+    private final long[] m_txnIds = new long[TXNS];
+    private int m_next;
+    private long m_ciHandle;
+
+    @Setup
+    public void setup() throws IOException {
+        TxnEgo ego = TxnEgo.makeZero(1);
+        for (int i = 0; i < TXNS; i++) {
+            ego = ego.makeNext();
+            m_txnIds[i] = ego.getTxnId();
+        }
+        if (enabled) {
+            VoltTrace.enableCategories(VoltTrace.Category.SPI);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        VoltTrace.closeAllAndShutdown(null, 0);
+    }
+
+    @Benchmark
+    public void supplierEvent() {
+        final long txnId = nextTxnId();
+        final long ciHandle = m_ciHandle;
+        final VoltTrace.TraceEventBatch traceLog = VoltTrace.log(VoltTrace.Category.SPI);
+        if (traceLog != null) {
+            traceLog.add(() -> VoltTrace.beginAsync("initsp",
+                                                    MiscUtils.hsIdPairTxnIdToString(m_hsId, m_hsId, txnId, ciHandle),
+                                                    "ciHandle", ciHandle,
+                                                    "txnId", TxnEgo.txnIdToString(txnId),
+                                                    "partition", 1,
+                                                    "read", false,
+                                                    "name", m_procName,
+                                                    "hsId", CoreUtils.hsIdToString(m_hsId)));
+        }
+    }
+
+    @Benchmark
+    public void recordedEvent() {
+        final long txnId = nextTxnId();
+        final TraceRecorder traceRec = VoltTrace.recorder(VoltTrace.Category.SPI);
+        if (traceRec != null) {
+            traceRec.begin(VoltTrace.Category.SPI, VoltTrace.TraceEventType.ASYNC_BEGIN, INITSP,
+                           VoltTrace.IdFormat.HSID_PAIR_TXNID, m_hsId, m_hsId, txnId, m_ciHandle)
+                    .arg(CI_HANDLE, m_ciHandle)
+                    .arg(TXN_ID, txnId)
+                    .arg(PARTITION, 1)
+                    .arg(READ, false)
+                    .arg(PROC_NAME, VoltTrace.intern(m_procName))
+                    .arg(HSID, m_hsId)
+                    .publish();
+        }
+    }
+
+    private long nextTxnId() {
+        m_next = (m_next + 1) & (TXNS - 1);
+        m_ciHandle++;
+        return m_txnIds[m_next];
+    }
+}